@@ -159,7 +159,8 @@ public class ConfigurationActivity extends ActionBarActivity {
             @Override
             public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
 
-                if (position == 0) {
+                String parameter = DatabaseHelper.configurationParameters[position];
+                if (position == 0 || parameter.equals(DatabaseHelper.grid_recalculation_threshold)) {
                     findViewById(R.id.normalParam).setVisibility(View.GONE);
                     findViewById(R.id.normalInitialRangeParam).setVisibility(View.VISIBLE);
                     findViewById(R.id.latLonViewParam).setVisibility(View.GONE);
@@ -197,7 +198,8 @@ public class ConfigurationActivity extends ActionBarActivity {
                     initialTimeRange.setMax(SIGNIFICANT_FIGURES_MAX_VALUE);
                     units = " ";
                     progressBarValue.setText(String.valueOf(SIGNIFICANT_FIGURES_MIN_VALUE) + " " + units);
-                } else if(position == 6){
+                } else if(position == 6 || parameter.equals(DatabaseHelper.sync_batch_size)
+                        || parameter.equals(DatabaseHelper.sync_binary_encoding) || parameter.equals(DatabaseHelper.gossip_port)){
                     findViewById(R.id.normalParam).setVisibility(View.VISIBLE);
                     findViewById(R.id.latLonViewParam).setVisibility(View.GONE);
                     findViewById(R.id.normalInitialRangeParam).setVisibility(View.GONE);
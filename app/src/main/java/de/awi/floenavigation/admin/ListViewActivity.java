@@ -244,7 +244,7 @@ public class ListViewActivity extends ActionBarActivity {
     /**
      * This function is called from {@link #deleteEntry(String, int, long)} (String)}
      * Based on the waypoint label ID, its entry from the local internal database is removed
-     * Also inserts the waypoint name into the waypoint deleted table {@link #insertIntoWaypointsDeletedTable(SQLiteDatabase, String)}, which is later used for synchronization purpose
+     * The deletion is recorded in the {@link DatabaseHelper#changeJournalTable}, which is later used for synchronization purpose
      * @param waypointToBeRemoved waypoint label ID
      * @return <code>true</code> if successful in deleting the entry from the database
      *         <code>false</code> otherwise
@@ -255,7 +255,6 @@ public class ListViewActivity extends ActionBarActivity {
             SQLiteDatabase db = dbHelper.getReadableDatabase();
             if (checkEntryInWaypointsTable(db, waypointToBeRemoved)) {
                 db.delete(DatabaseHelper.waypointsTable, DatabaseHelper.labelID + " = ?", new String[]{waypointToBeRemoved});
-                insertIntoWaypointsDeletedTable(db, waypointToBeRemoved);
                 Toast.makeText(getApplicationContext(), "Removed from waypoints table", Toast.LENGTH_SHORT).show();
                 return true;
             }else {
@@ -272,7 +271,7 @@ public class ListViewActivity extends ActionBarActivity {
     /**
      * This function is called from {@link #deleteEntry(String, int, long)} (String)}
      * Based on the static station name, its entry from the local internal database is removed
-     * Also inserts the static station name into the static station deleted table {@link #insertIntoStaticStationDeletedTable(SQLiteDatabase, String)}, which is later used for synchronization purpose
+     * The deletion is recorded in the {@link DatabaseHelper#changeJournalTable}, which is later used for synchronization purpose
      * @param stationToBeRemoved static station name to be removed
      * @return <code>true</code> if successful in deleting the entry from the database
      *         <code>false</code> otherwise
@@ -283,7 +282,6 @@ public class ListViewActivity extends ActionBarActivity {
             SQLiteDatabase db = dbHelper.getReadableDatabase();
             if (checkEntryInStaticStnTable(db, stationToBeRemoved)) {
                 db.delete(DatabaseHelper.staticStationListTable, DatabaseHelper.staticStationName + " = ?", new String[]{stationToBeRemoved});
-                insertIntoStaticStationDeletedTable(db, stationToBeRemoved);
                 Toast.makeText(getApplicationContext(), "Removed from static station table", Toast.LENGTH_SHORT).show();
             }else {
                 Toast.makeText(this, "No Entry in DB", Toast.LENGTH_SHORT).show();
@@ -299,10 +297,7 @@ public class ListViewActivity extends ActionBarActivity {
     /**
      * This function is called from {@link #deleteEntry(String, int, long)} (String)}
      * Based on the mmsi of the station, its entry from the local internal database is removed
-     * Also inserts the mmsi into the deleted tables {@link #insertIntoFixedStationDeletedTable(SQLiteDatabase, String)},
-     * {@link #insertIntoBaseStationDeletedTable(SQLiteDatabase, String)}}
-     * {@link #insertIntoStationListDeletedTable(SQLiteDatabase, String)}
-     * which is later used for synchronization purpose
+     * The deletion is recorded in the {@link DatabaseHelper#changeJournalTable}, which is later used for synchronization purpose
      * @param mmsiToBeRemoved mmsi to be removed
      * @return <code>true</code> if successful in deleting the entry from the database
      *         <code>false</code> otherwise
@@ -322,16 +317,11 @@ public class ListViewActivity extends ActionBarActivity {
                             || Integer.parseInt(mmsiToBeRemoved) == baseStnMMSI[DatabaseHelper.secondStationIndex]) {
 
                         db.delete(DatabaseHelper.stationListTable, DatabaseHelper.mmsi + " = ?", new String[]{mmsiToBeRemoved});
-                        insertIntoStationListDeletedTable(db, mmsiToBeRemoved);
-                        insertIntoFixedStationDeletedTable(db, mmsiToBeRemoved);
-                        insertIntoBaseStationDeletedTable(db, mmsiToBeRemoved);
                         updataMMSIInDBTables(Integer.parseInt(mmsiToBeRemoved), db, (Integer.parseInt(mmsiToBeRemoved) == baseStnMMSI[DatabaseHelper.firstStationIndex]));
 
                     } else {
                         db.delete(DatabaseHelper.stationListTable, DatabaseHelper.mmsi + " = ?", new String[]{mmsiToBeRemoved});
                         db.delete(DatabaseHelper.fixedStationTable, DatabaseHelper.mmsi + " = ?", new String[]{mmsiToBeRemoved});
-                        insertIntoStationListDeletedTable(db, mmsiToBeRemoved);
-                        insertIntoFixedStationDeletedTable(db, mmsiToBeRemoved);
                     }
                     Toast.makeText(getApplicationContext(), "Removed from DB tables", Toast.LENGTH_SHORT).show();
                     return true;
@@ -349,7 +339,7 @@ public class ListViewActivity extends ActionBarActivity {
     /**
      * This function is called from {@link #deleteEntry(String, int, long)} (String)}
      * Based on the user name, its entry from the local internal database is removed
-     * Also inserts the user name into the deleted tables {@link #insertIntoUsersDeletedTable(SQLiteDatabase, String)}, which is later used for synchronization purpose
+     * The deletion is recorded in the {@link DatabaseHelper#changeJournalTable}, which is later used for synchronization purpose
      * @param name user name  to be removed
      * @return <code>true</code> if successful in deleting the entry from the database
      *         <code>false</code> otherwise
@@ -361,7 +351,6 @@ public class ListViewActivity extends ActionBarActivity {
             long numOfUsers = DatabaseUtils.queryNumEntries(db, DatabaseHelper.usersTable);
             if(numOfUsers > 1) {
                 db.delete(DatabaseHelper.usersTable, DatabaseHelper.userName + " = ?", new String[]{name});
-                insertIntoUsersDeletedTable(db, name);
                 Toast.makeText(getApplicationContext(), "User Removed", Toast.LENGTH_SHORT).show();
                 return true;
             } else{
@@ -375,78 +364,6 @@ public class ListViewActivity extends ActionBarActivity {
         return false;
     }
 
-    /**
-     * Inserts the user name to be removed into the {@link DatabaseHelper#userDeletedTable}
-     * @param db SQLiteDatabase object
-     * @param user user name to be removed
-     */
-    private void insertIntoUsersDeletedTable(SQLiteDatabase db, String user) {
-        ContentValues deletedUser = new ContentValues();
-        deletedUser.put(DatabaseHelper.userName, user);
-        deletedUser.put(DatabaseHelper.deleteTime, String.valueOf(System.currentTimeMillis() - super.timeDiff));
-        db.insert(DatabaseHelper.userDeletedTable, null, deletedUser);
-    }
-
-    /**
-     * Inserts the mmsi to be removed into the {@link DatabaseHelper#baseStationDeletedTable}
-     * @param db SQLiteDatabase object
-     * @param mmsi mmsi to be removed
-     */
-    private void insertIntoBaseStationDeletedTable(SQLiteDatabase db, String mmsi) {
-        ContentValues deletedBaseStation = new ContentValues();
-        deletedBaseStation.put(DatabaseHelper.mmsi, mmsi);
-        deletedBaseStation.put(DatabaseHelper.deleteTime, String.valueOf(System.currentTimeMillis() - super.timeDiff));
-        db.insert(DatabaseHelper.baseStationDeletedTable, null, deletedBaseStation);
-    }
-
-    /**
-     * Inserts the mmsi to be removed into the {@link DatabaseHelper#fixedStationDeletedTable}
-     * @param db SQLiteDatabase object
-     * @param mmsiToBeAdded mmsi to be removed
-     */
-    private void insertIntoFixedStationDeletedTable(SQLiteDatabase db, String mmsiToBeAdded) {
-        ContentValues deletedStation = new ContentValues();
-        deletedStation.put(DatabaseHelper.mmsi, Integer.valueOf(mmsiToBeAdded));
-        deletedStation.put(DatabaseHelper.deleteTime, String.valueOf(System.currentTimeMillis() - super.timeDiff));
-        db.insert(DatabaseHelper.fixedStationDeletedTable, null, deletedStation);
-    }
-
-    /**
-     * Inserts the mmsi to be removed into the {@link DatabaseHelper#stationListDeletedTable}
-     * @param db SQLiteDatabase object
-     * @param mmsiToBeAdded mmsi to be removed
-     */
-    private void insertIntoStationListDeletedTable(SQLiteDatabase db, String mmsiToBeAdded){
-        ContentValues deletedStation = new ContentValues();
-        deletedStation.put(DatabaseHelper.mmsi, Integer.valueOf(mmsiToBeAdded));
-        deletedStation.put(DatabaseHelper.deleteTime, String.valueOf(System.currentTimeMillis() - super.timeDiff));
-        db.insert(DatabaseHelper.stationListDeletedTable, null, deletedStation);
-    }
-
-    /**
-     * Inserts the static station name to be removed into the {@link DatabaseHelper#staticStationDeletedTable}
-     * @param db SQLiteDatabase object
-     * @param staticStnName static station name to be removed
-     */
-    private void insertIntoStaticStationDeletedTable(SQLiteDatabase db, String staticStnName) {
-        ContentValues deletedStation = new ContentValues();
-        deletedStation.put(DatabaseHelper.staticStationName, staticStnName);
-        deletedStation.put(DatabaseHelper.deleteTime, String.valueOf(System.currentTimeMillis() - super.timeDiff));
-        db.insert(DatabaseHelper.staticStationDeletedTable, null, deletedStation);
-    }
-
-    /**
-     * Inserts the waypoint label ID to be removed into the {@link DatabaseHelper#waypointDeletedTable}
-     * @param db SQLiteDatabase object
-     * @param labelID waypoint label ID to be removed
-     */
-    private void insertIntoWaypointsDeletedTable(SQLiteDatabase db, String labelID) {
-        ContentValues deletedWaypoint = new ContentValues();
-        deletedWaypoint.put(DatabaseHelper.labelID, labelID);
-        deletedWaypoint.put(DatabaseHelper.deleteTime, String.valueOf(System.currentTimeMillis() - super.timeDiff));
-        db.insert(DatabaseHelper.waypointDeletedTable, null, deletedWaypoint);
-    }
-
     /**
      * If the removed station is one of the base station that was used for initial grid setup
      * Change the mmsi number to either {@link DatabaseHelper#BASESTN1} or {@link DatabaseHelper#BASESTN2} based on whether the station is origin or x-axis
@@ -90,8 +90,16 @@ public class ParameterViewActivity extends ListActivity {
                     || paramName.equals(DatabaseHelper.packet_threshold_time)) {
                    paramValue = String.valueOf(Integer.parseInt(paramValue) / 60000);
                    paramValue = paramValue + " mins";
-               } else if(paramName.equals(DatabaseHelper.error_threshold)){
+               } else if(paramName.equals(DatabaseHelper.error_threshold) || paramName.equals(DatabaseHelper.grid_recalculation_threshold)){
                    paramValue = paramValue + " meters";
+               } else if(paramName.equals(DatabaseHelper.sync_batch_size)){
+                   paramValue = paramValue.equals("0") ? "Off" : paramValue + " rows";
+               } else if(paramName.equals(DatabaseHelper.sync_binary_encoding)){
+                   paramValue = paramValue.equals("1") ? "On" : "Off";
+               } else if(paramName.equals(DatabaseHelper.gossip_port)){
+                   paramValue = paramValue.equals("0") ? "Off" : "UDP " + paramValue;
+               } else if(paramName.equals(DatabaseHelper.gossip_peers)){
+                   paramValue = paramValue.trim().isEmpty() ? "Multicast only" : paramValue;
                }
 
 
@@ -101,7 +101,6 @@ public class RecoveryActivity extends ActionBarActivity {
                 }
                 if (checkEntryInStaticStnTable(db, staticStnName)) {
                     db.delete(DatabaseHelper.staticStationListTable, DatabaseHelper.staticStationName + " = ?", new String[]{staticStnName});
-                    insertIntoStaticStationDeletedTable(db, staticStnName);
                     Toast.makeText(getApplicationContext(), "Removed from static station table", Toast.LENGTH_SHORT).show();
                 }else{
                     Toast.makeText(this, "No Entry in DB", Toast.LENGTH_SHORT).show();
@@ -158,8 +157,7 @@ public class RecoveryActivity extends ActionBarActivity {
     /**
      * The function is responsible for deleting the mmsi of the fixed station from the internal database tables
      * {@value DatabaseHelper#stationListTable}, {@value DatabaseHelper#fixedStationTable}, {@value DatabaseHelper#baseStationTable}
-     * Also insert the mmsi into the deleted tables {@value DatabaseHelper#fixedStationDeletedTable}, {@value DatabaseHelper#stationListDeletedTable},
-     * {@value DatabaseHelper#baseStationDeletedTable} for synchronization purpose
+     * The deletion is recorded in the {@link DatabaseHelper#changeJournalTable} for synchronization purpose
      * @param mmsiToBeRemoved mmsi to be recovered
      */
     private void deleteEntryfromDBTables(String mmsiToBeRemoved){
@@ -176,16 +174,11 @@ public class RecoveryActivity extends ActionBarActivity {
                             || Integer.parseInt(mmsiToBeRemoved) == baseStnMMSI[DatabaseHelper.secondStationIndex]) {
 
                         db.delete(DatabaseHelper.stationListTable, DatabaseHelper.mmsi + " = ?", new String[]{mmsiToBeRemoved});
-                        insertIntoStationListDeletedTable(db, mmsiToBeRemoved);
-                        insertIntoFixedStationDeletedTable(db, mmsiToBeRemoved);
-                        insertIntoBaseStationDeletedTable(db, mmsiToBeRemoved);
                         updataMMSIInDBTables(Integer.parseInt(mmsiToBeRemoved), db, (Integer.parseInt(mmsiToBeRemoved) == baseStnMMSI[DatabaseHelper.firstStationIndex]));
 
                     } else {
                         db.delete(DatabaseHelper.stationListTable, DatabaseHelper.mmsi + " = ?", new String[]{mmsiToBeRemoved});
                         db.delete(DatabaseHelper.fixedStationTable, DatabaseHelper.mmsi + " = ?", new String[]{mmsiToBeRemoved});
-                        insertIntoFixedStationDeletedTable(db, mmsiToBeRemoved);
-                        insertIntoStationListDeletedTable(db, mmsiToBeRemoved);
                     }
                     Toast.makeText(getApplicationContext(), "Removed from DB tables", Toast.LENGTH_SHORT).show();
                     Toast.makeText(getApplicationContext(), "Device Recovered", Toast.LENGTH_SHORT).show();
@@ -198,54 +191,6 @@ public class RecoveryActivity extends ActionBarActivity {
         }
     }
 
-    /**
-     * Function is used to add the mmsi into the {@value DatabaseHelper#baseStationDeletedTable} table
-     * @param db SQLiteDatabase object
-     * @param mmsi mmsi recovered
-     */
-    private void insertIntoBaseStationDeletedTable(SQLiteDatabase db, String mmsi) {
-        ContentValues deletedBaseStation = new ContentValues();
-        deletedBaseStation.put(DatabaseHelper.mmsi, mmsi);
-        deletedBaseStation.put(DatabaseHelper.deleteTime, String.valueOf(System.currentTimeMillis() - super.timeDiff));
-        db.insert(DatabaseHelper.baseStationDeletedTable, null, deletedBaseStation);
-    }
-
-    /**
-     * Function is used to add the mmsi into the {@value DatabaseHelper#fixedStationDeletedTable} table
-     * @param db SQLiteDatabase object
-     * @param mmsiToBeAdded mmsi recovered
-     */
-    private void insertIntoFixedStationDeletedTable(SQLiteDatabase db, String mmsiToBeAdded) {
-        ContentValues deletedStation = new ContentValues();
-        deletedStation.put(DatabaseHelper.mmsi, Integer.valueOf(mmsiToBeAdded));
-        deletedStation.put(DatabaseHelper.deleteTime, String.valueOf(System.currentTimeMillis() - super.timeDiff));
-        db.insert(DatabaseHelper.fixedStationDeletedTable, null, deletedStation);
-    }
-
-    /**
-     * Function is used to add the mmsi into the {@value DatabaseHelper#stationListDeletedTable} table
-     * @param db SQLiteDatabase object
-     * @param mmsiToBeAdded mmsi recovered
-     */
-    private void insertIntoStationListDeletedTable(SQLiteDatabase db, String mmsiToBeAdded){
-        ContentValues deletedStation = new ContentValues();
-        deletedStation.put(DatabaseHelper.mmsi, Integer.valueOf(mmsiToBeAdded));
-        deletedStation.put(DatabaseHelper.deleteTime, String.valueOf(System.currentTimeMillis() - super.timeDiff));
-        db.insert(DatabaseHelper.stationListDeletedTable, null, deletedStation);
-    }
-
-    /**
-     * Function is used to add the recovered static station into the {@value DatabaseHelper#staticStationDeletedTable} table
-     * @param db SQLiteDatabase object
-     * @param staticStnName mmsi recovered
-     */
-    private void insertIntoStaticStationDeletedTable(SQLiteDatabase db, String staticStnName) {
-        ContentValues deletedStation = new ContentValues();
-        deletedStation.put(DatabaseHelper.staticStationName, staticStnName);
-        deletedStation.put(DatabaseHelper.deleteTime, String.valueOf(System.currentTimeMillis() - super.timeDiff));
-        db.insert(DatabaseHelper.staticStationDeletedTable, null, deletedStation);
-    }
-
     /**
      * If the recovered fixed stations are part of the original base stations which were used to setup the initial grid
      * then the mmsi's for those stations are assigned {@value DatabaseHelper#BASESTN1} or {@value DatabaseHelper#BASESTN2} values such that the predictions for these
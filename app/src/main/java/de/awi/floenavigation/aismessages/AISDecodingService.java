@@ -1,11 +1,8 @@
 package de.awi.floenavigation.aismessages;
 
 import android.app.IntentService;
-import android.content.BroadcastReceiver;
 import android.content.ContentValues;
-import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
 import android.database.SQLException;
@@ -16,8 +13,11 @@ import android.util.Log;
 import android.widget.Toast;
 
 import de.awi.floenavigation.helperclasses.DatabaseHelper;
+import de.awi.floenavigation.helperclasses.GPSClock;
 import de.awi.floenavigation.initialsetup.CoordinateFragment;
-import de.awi.floenavigation.services.GPS_Service;
+import de.awi.floenavigation.network.PeerGossip;
+import de.awi.floenavigation.services.AlphaCalculationService;
+import de.awi.floenavigation.services.ValidationService;
 
 import static de.awi.floenavigation.aismessages.AIVDM.strbuildtodec;
 
@@ -110,6 +110,36 @@ public class AISDecodingService extends IntentService {
      */
     public static final int STATIC_VOYAGE_DATA_CLASSB = 5;
 
+    /**
+     * Intent extra with the mmsi of a position report received from another tablet by {@link PeerGossip}, which is stored instead
+     * of decoding an AIS packet
+     */
+    public static final String PEER_FIX_MMSI = "PeerFixMMSI";
+    /**
+     * Intent extra with the latitude of a position report received from another tablet
+     */
+    public static final String PEER_FIX_LATITUDE = "PeerFixLatitude";
+    /**
+     * Intent extra with the longitude of a position report received from another tablet
+     */
+    public static final String PEER_FIX_LONGITUDE = "PeerFixLongitude";
+    /**
+     * Intent extra with the speed over ground of a position report received from another tablet
+     */
+    public static final String PEER_FIX_SPEED = "PeerFixSpeed";
+    /**
+     * Intent extra with the course over ground of a position report received from another tablet
+     */
+    public static final String PEER_FIX_COURSE = "PeerFixCourse";
+    /**
+     * Intent extra with the GPS time in msecs at which the other tablet received the position report
+     */
+    public static final String PEER_FIX_TIME = "PeerFixTime";
+    /**
+     * Intent extra with the message type of a position report received from another tablet
+     */
+    public static final String PEER_FIX_PACKET_TYPE = "PeerFixPacketType";
+
     /**
      * This is the decoded MMSI number decoded from the payload received
      */
@@ -150,18 +180,6 @@ public class AISDecodingService extends IntentService {
      */
     private int packetType;
 
-    /**
-     * It is used to receive the broadcasted gps time
-     */
-    private BroadcastReceiver broadcastReceiver;
-    /**
-     * Stores the received gps time from the {@link GPS_Service}
-     */
-    private long gpsTime;
-    /**
-     * Stores the difference between the system time in milliseconds and the received gps time
-     */
-    private long timeDiff;
 
     /**
      * Default Constructor.
@@ -176,45 +194,14 @@ public class AISDecodingService extends IntentService {
         dataReportObj = new StaticDataReport(); //24
     }
 
-    /**
-     * Initializes and registers broadcast receiver and implements on onReceive
-     * onReceive calculates the time difference between the system time and the gps time
-     * This is required since the gps time is received after certain interval periodically, this helps in synchronizing the
-     * time stamp of the received packets with the gps time
-     */
-    @Override
-    public void onCreate() {
-        super.onCreate();
-        if(broadcastReceiver == null){
-            broadcastReceiver = new BroadcastReceiver(){
-                @Override
-                public void onReceive(Context context, Intent intent){
-                    gpsTime = Long.parseLong(intent.getExtras().get(GPS_Service.GPSTime).toString());
-                    timeDiff = System.currentTimeMillis() - gpsTime;
-
-                }
-            };
-        }
-        registerReceiver(broadcastReceiver, new IntentFilter(GPS_Service.GPSBroadcast));
-    }
-
-    /**
-     * Broadcast receiver is unregistered in this callback function
-     */
-    @Override
-    public void onDestroy() {
-        super.onDestroy();
-        if(broadcastReceiver != null){
-            unregisterReceiver(broadcastReceiver);
-            broadcastReceiver = null;
-        }
-    }
-
     /**
      * This function splits the received packet on the basis of comma and sends the data to be decoded to the {@link AIVDM} class
      * After the payload is decoded the required parameters are stored into the corrsponding tables of the internal local database
      * If the received mmsi is present in the {@link DatabaseHelper#stationListTable} the decoded payload along with the mmsi is stored in {@link DatabaseHelper#fixedStationTable}
      * else it is stored in {@link DatabaseHelper#mobileStationTable}
+     * Decoded position reports are sent to the other tablets with {@link PeerGossip#publishFix(long, double, double, double, double, int, long)}.
+     * A position report received from another tablet, given by the <code>PEER_FIX_</code> extras, is stored in the same way, but only if
+     * it is newer than the position already stored for the station.
      * If there is error in any SQLite Database instructions, the exceptions are handled using try catch exception handlers and appropriate
      * log messages are added.
      * @param intent It is used to extract the packet send as an intent extras
@@ -235,8 +222,19 @@ public class AISDecodingService extends IntentService {
 
 
             int msgType = 0;
-
-            if(packet != null) {
+            boolean isPeerFix = intent.hasExtra(PEER_FIX_MMSI);
+
+            if(isPeerFix) {
+                recvdMMSI = intent.getLongExtra(PEER_FIX_MMSI, 0);
+                recvdLat = intent.getDoubleExtra(PEER_FIX_LATITUDE, 0);
+                recvdLon = intent.getDoubleExtra(PEER_FIX_LONGITUDE, 0);
+                recvdSpeed = intent.getDoubleExtra(PEER_FIX_SPEED, 0);
+                recvdCourse = intent.getDoubleExtra(PEER_FIX_COURSE, 0);
+                recvdTimeStamp = String.valueOf(intent.getLongExtra(PEER_FIX_TIME, 0));
+                packetType = intent.getIntExtra(PEER_FIX_PACKET_TYPE, POSITION_REPORT_CLASSA_TYPE_1);
+                msgType = packetType;
+                Log.d(TAG, "Position of " + recvdMMSI + " received from another tablet");
+            } else if(packet != null) {
                 Log.d(TAG, packet);
                 String[] dataExtr = packet.split(",");
                 aivdmObj.setData(dataExtr);
@@ -244,6 +242,17 @@ public class AISDecodingService extends IntentService {
                 msgType = (int) strbuildtodec(0, 5, 6, binary, int.class, false);
                 msgDecoding(msgType, binary);
                 Log.d(TAG, String.valueOf(recvdMMSI));
+                if(isPositionReport(msgType)) {
+                    PeerGossip.publishFix(recvdMMSI, recvdLat, recvdLon, recvdSpeed, recvdCourse, packetType, Long.parseLong(recvdTimeStamp));
+                }
+            }
+
+            //A position from another tablet must not replace a newer position received here
+            String selection = DatabaseHelper.mmsi + " = ?";
+            String[] selectionArgs = new String[]{String.valueOf(recvdMMSI)};
+            if(isPeerFix) {
+                selection += " AND (" + DatabaseHelper.updateTime + " IS NULL OR CAST(" + DatabaseHelper.updateTime + " AS INTEGER) < ?)";
+                selectionArgs = new String[]{String.valueOf(recvdMMSI), recvdTimeStamp};
             }
 
             cursor_stnlist = db.query(DatabaseHelper.stationListTable,
@@ -271,7 +280,10 @@ public class AISDecodingService extends IntentService {
                     decodedValues.put(DatabaseHelper.isPredicted, 0);
                 }
                 Log.d(TAG, "Updated DB " + String.valueOf(recvdMMSI));
-                int a = db.update(DatabaseHelper.fixedStationTable, decodedValues, DatabaseHelper.mmsi + " = ?", new String[]{String.valueOf(recvdMMSI)});
+                int a = db.update(DatabaseHelper.fixedStationTable, decodedValues, selection, selectionArgs);
+                if ((msgType != STATIC_VOYAGE_DATA_CLASSB) && (msgType != STATIC_DATA_CLASSA) && a > 0) {
+                    ValidationService.onFixedStationReport((int) recvdMMSI, recvdLat, recvdLon, Long.parseLong(recvdTimeStamp));
+                }
                 //Log.d(TAG, "Update Result: " + recvdTimeStamp);
 
 
@@ -290,12 +302,15 @@ public class AISDecodingService extends IntentService {
                     decodedValues.put(DatabaseHelper.sog, recvdSpeed);
                     decodedValues.put(DatabaseHelper.cog, recvdCourse);
                     decodedValues.put(DatabaseHelper.updateTime, recvdTimeStamp);
+                    AlphaCalculationService.putGridCoordinates(decodedValues, recvdLat, recvdLon);
                 }
-                int result = db.update(DatabaseHelper.mobileStationTable, decodedValues, DatabaseHelper.mmsi + " = ?", new String[]{String.valueOf(recvdMMSI)});
+                int result = db.update(DatabaseHelper.mobileStationTable, decodedValues, selection, selectionArgs);
                 //Log.d(TAG, "Mobile Station Update Result: " + String.valueOf(result));
                 //Log.d(TAG, "Mobile Station MMSI: " + String.valueOf(recvdMMSI));
 
-                if(result == 0){
+                //A fix of another tablet is not stored if the station has a newer position
+                if(result == 0 && !(isPeerFix && DatabaseUtils.queryNumEntries(db, DatabaseHelper.mobileStationTable,
+                        DatabaseHelper.mmsi + " = ?", new String[]{String.valueOf(recvdMMSI)}) > 0)){
                     long a = db.insert(DatabaseHelper.mobileStationTable, null, decodedValues);
                     //Log.d(TAG, "Mobile Station Insertion Result: " + String.valueOf(a));
                 }
@@ -322,6 +337,15 @@ public class AISDecodingService extends IntentService {
         }
     }
 
+    /**
+     * @param msgType message type of the AIS message
+     * @return <code>true</code> if the message is a position report of a class A or class B transponder
+     */
+    private static boolean isPositionReport(int msgType){
+        return msgType == POSITION_REPORT_CLASSA_TYPE_1 || msgType == POSITION_REPORT_CLASSA_TYPE_2
+                || msgType == POSITION_REPORT_CLASSA_TYPE_3 || msgType == POSITION_REPORT_CLASSB;
+    }
+
     /**
      * This function is called from {@link #onHandleIntent(Intent)}
      * Based on the message type corresponding classes are called to decode the payload
@@ -350,7 +374,7 @@ public class AISDecodingService extends IntentService {
                 recvdSpeed = posObjA.getSpeed();
                 recvdCourse = posObjA.getCourse();
                 //recvdTimeStamp = String.valueOf(SystemClock.elapsedRealtime());//String.valueOf(posObjA.getSeconds());
-                recvdTimeStamp = String.valueOf(System.currentTimeMillis() - timeDiff);
+                recvdTimeStamp = String.valueOf(GPSClock.nowGpsMillis());
                 packetType = POSITION_REPORT_CLASSA_TYPE_1;
                 break;
             case STATIC_VOYAGE_DATA_CLASSB:
@@ -367,7 +391,7 @@ public class AISDecodingService extends IntentService {
                 recvdSpeed = posObjB.getSpeed();
                 recvdCourse = posObjB.getCourse();
                 //recvdTimeStamp = String.valueOf(SystemClock.elapsedRealtime());//String.valueOf(posObjA.getSeconds());
-                recvdTimeStamp = String.valueOf(System.currentTimeMillis() - timeDiff);
+                recvdTimeStamp = String.valueOf(GPSClock.nowGpsMillis());
                 packetType = POSITION_REPORT_CLASSB;
                 break;
             case STATIC_DATA_CLASSA:
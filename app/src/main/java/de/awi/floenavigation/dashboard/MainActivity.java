@@ -27,12 +27,14 @@ import de.awi.floenavigation.helperclasses.ActionBarActivity;
 import de.awi.floenavigation.helperclasses.DatabaseHelper;
 import de.awi.floenavigation.helperclasses.DialogActivity;
 import de.awi.floenavigation.network.NetworkService;
+import de.awi.floenavigation.network.PeerGossip;
 import de.awi.floenavigation.sample_measurement.SampleMeasurementActivity;
 import de.awi.floenavigation.services.AlphaCalculationService;
 import de.awi.floenavigation.services.AngleCalculationService;
 import de.awi.floenavigation.services.GPS_Service;
 import de.awi.floenavigation.services.PredictionService;
 import de.awi.floenavigation.services.ValidationService;
+import de.awi.floenavigation.synchronization.SyncOutbox;
 import de.awi.floenavigation.waypoint.WaypointActivity;
 
 /**
@@ -100,6 +102,12 @@ public class MainActivity extends ActionBarActivity {
             Log.d(TAG, "GPSService Already Running");
         }
 
+        //Send the batches of the batched push left from an earlier run
+        SyncOutbox.getInstance(this).drain();
+
+        //Exchange the live station state with the other tablets, if switched on
+        PeerGossip.start(this);
+
         try {
             SQLiteOpenHelper dbHelper = DatabaseHelper.getDbInstance(getApplicationContext());
             SQLiteDatabase db = dbHelper.getReadableDatabase();
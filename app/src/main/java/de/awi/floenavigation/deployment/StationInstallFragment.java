@@ -417,15 +417,7 @@ public class StationInstallFragment extends Fragment implements View.OnClickList
                     Log.d(TAG, "Station Removed from Mobile Station Table");
                 }
 
-                if (checkStationInFixedDeleteTable(db, mmsi)) {
-                    db.delete(DatabaseHelper.fixedStationDeletedTable, DatabaseHelper.mmsi + " = ?", new String[]{String.valueOf(mmsi)});
-                    Log.d(TAG, "Station Removed from Fixed Station Delete Table");
-                }
-
-                if (checkStationInStationListDeleteTable(db, mmsi)) {
-                    db.delete(DatabaseHelper.stationListDeletedTable, DatabaseHelper.mmsi + " = ?", new String[]{String.valueOf(mmsi)});
-                    Log.d(TAG, "Station Removed from Station List Delete Table");
-                }
+                //The inserts replace a deletion of the MMSI in the change journal, so the station is no longer deleted on the Sync Server
                 db.insert(DatabaseHelper.stationListTable, null, station);
                 db.insert(DatabaseHelper.fixedStationTable, null, fixedStation);
             }
@@ -581,56 +573,6 @@ public class StationInstallFragment extends Fragment implements View.OnClickList
         return isPresent;
     }
 
-    /**
-     * Checks if the given MMSI already exists in {@link DatabaseHelper#fixedStationDeletedTable}
-     * @param db An instance {@link SQLiteDatabase}
-     * @param MMSI The MMSI number to be checked
-     * @return <code>true</code> if the given MMSI exists in {@link DatabaseHelper#fixedStationDeletedTable}
-     */
-    private boolean checkStationInFixedDeleteTable(SQLiteDatabase db, int MMSI){
-        boolean isPresent = false;
-        Cursor mFixedStationDeleteCursor = null;
-        try{
-            mFixedStationDeleteCursor = db.query(DatabaseHelper.fixedStationDeletedTable, new String[]{DatabaseHelper.mmsi}, DatabaseHelper.mmsi + " = ?",
-                    new String[]{String.valueOf(MMSI)}, null, null, null);
-            isPresent = mFixedStationDeleteCursor.moveToFirst();
-        }catch (SQLException e){
-            Log.d(TAG, "SQLiteException");
-            e.printStackTrace();
-        } finally {
-            if (mFixedStationDeleteCursor != null){
-                mFixedStationDeleteCursor.close();
-            }
-        }
-
-        return isPresent;
-    }
-
-    /**
-     * Checks if the given MMSI already exists in {@link DatabaseHelper#stationListDeletedTable}
-     * @param db An instance {@link SQLiteDatabase}
-     * @param MMSI The MMSI number to be checked
-     * @return <code>true</code> if the given MMSI exists in {@link DatabaseHelper#stationListDeletedTable}
-     */
-    private boolean checkStationInStationListDeleteTable(SQLiteDatabase db, int MMSI){
-        boolean isPresent = false;
-        Cursor mStationListDeleteCursor = null;
-        try{
-            mStationListDeleteCursor = db.query(DatabaseHelper.stationListDeletedTable, new String[]{DatabaseHelper.mmsi}, DatabaseHelper.mmsi + " = ?",
-                    new String[]{String.valueOf(MMSI)}, null, null, null);
-
-            isPresent =  mStationListDeleteCursor.moveToFirst();
-        }catch (SQLException e){
-            Log.d(TAG, "SQLiteException");
-            e.printStackTrace();
-        } finally {
-            if (mStationListDeleteCursor != null){
-                mStationListDeleteCursor.close();
-            }
-        }
-        return isPresent;
-    }
-
     /**
      * Checks if the given MMSI already exists in {@link DatabaseHelper#staticStationListTable}
      * @param db An instance {@link SQLiteDatabase}
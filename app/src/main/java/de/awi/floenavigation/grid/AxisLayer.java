@@ -0,0 +1,439 @@
+package de.awi.floenavigation.grid;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * Background of the grid drawn by {@link GridRenderer}: the grid lines and the axis labels.
+ * <p>
+ *     The background is rendered into three offscreen bitmaps: the grid lines, the x axis labels below the content area and the
+ *     y axis labels left of it. Each bitmap covers the visible part of the grid plus a margin of {@value #PAN_MARGIN} of the content
+ *     area on either side, along the axis it moves with. While the grid is panned by less than the margin, the bitmaps are only
+ *     translated: the grid lines along both axes, the x labels horizontally and the y labels vertically. They are rendered again
+ *     when the grid has been panned further, the view size has changed or the grid has been zoomed.
+ * </p>
+ * <p>
+ *     While the grid is being zoomed, its scale changes every frame, so rendering the bitmaps would only add work. The background
+ *     is then drawn directly onto the canvas until the scale has stayed the same for one frame.
+ * </p>
+ * <p>
+ *     An instance is confined to the thread of its renderer.
+ * </p>
+ */
+final class AxisLayer {
+
+    /**
+     * Fraction of the content area by which the bitmaps extend beyond it on either side
+     */
+    private static final float PAN_MARGIN = 0.25f;
+    /**
+     * Relative tolerance within which two scales of the grid are treated as equal. Panning recreates the viewport from its
+     * corners, which may change its size in the last bits.
+     */
+    private static final float SCALE_TOLERANCE = 1e-4f;
+    /**
+     * The x labels use meters instead of kilometers if the interval between two stops is at most this many meters
+     */
+    private static final int METER_SCALE_INTERVAL = 500;
+
+    private final Paint mLabelTextPaint;
+    private final Paint mGridPaint;
+    private final int mLabelSeparation;
+    private final int mLabelHeight;
+    private final int mMaxLabelWidth;
+
+    // Buffers for storing current X and Y stops. See the computeAxisStops method for more details.
+    private final AxisStops mXStopsBuffer = new AxisStops();
+    private final AxisStops mYStopsBuffer = new AxisStops();
+
+    /**
+     * Buffers used during drawing. These are defined as fields to avoid allocation during
+     * draw calls
+     */
+    private float[] mAxisXPositionsBuffer = new float[]{};
+    private float[] mAxisYPositionsBuffer = new float[]{};
+    private float[] mAxisXLinesBuffer = new float[]{};
+    private float[] mAxisYLinesBuffer = new float[]{};
+    private final char[] mLabelBuffer = new char[100];
+
+    /**
+     * Grid lines of the content area and its margins
+     */
+    private Bitmap gridBitmap;
+    /**
+     * x axis labels below the content area and its horizontal margins
+     */
+    private Bitmap xLabelBitmap;
+    /**
+     * y axis labels left of the content area and its vertical margins
+     */
+    private Bitmap yLabelBitmap;
+    /**
+     * Canvas reused to render into the bitmaps
+     */
+    private final Canvas bitmapCanvas = new Canvas();
+    /**
+     * <code>true</code> if the bitmaps have been rendered for {@link #cachedViewport}, {@link #cachedContentRect} and the view size
+     */
+    private boolean cacheValid = false;
+    /**
+     * Viewport the bitmaps were rendered for
+     */
+    private final RectF cachedViewport = new RectF();
+    /**
+     * Content area the bitmaps were rendered for
+     */
+    private final Rect cachedContentRect = new Rect();
+    private int cachedWidth;
+    private int cachedHeight;
+    /**
+     * Margins of the bitmaps in pixels
+     */
+    private int marginX;
+    private int marginY;
+    /**
+     * Screen positions of the left of {@link #xLabelBitmap} and the top of {@link #yLabelBitmap} when they were rendered
+     */
+    private int xLabelLeft;
+    private int yLabelTop;
+    /**
+     * Size of the viewport in the previous frame, to detect zooming
+     */
+    private float lastViewportWidth;
+    private float lastViewportHeight;
+
+    AxisLayer(Paint labelTextPaint, Paint gridPaint, int labelSeparation, int labelHeight, int maxLabelWidth){
+        mLabelTextPaint = labelTextPaint;
+        mGridPaint = gridPaint;
+        mLabelSeparation = labelSeparation;
+        mLabelHeight = labelHeight;
+        mMaxLabelWidth = maxLabelWidth;
+    }
+
+    /**
+     * Draws the grid lines and the axis labels of the frame, from the bitmaps if possible
+     * @param canvas canvas to draw on
+     * @param frame frame being drawn
+     */
+    void draw(Canvas canvas, GridFrame frame){
+        RectF viewport = frame.viewport;
+        Rect contentRect = frame.contentRect;
+        boolean zooming = !sameScale(viewport.width(), lastViewportWidth) || !sameScale(viewport.height(), lastViewportHeight);
+        lastViewportWidth = viewport.width();
+        lastViewportHeight = viewport.height();
+        if (zooming || contentRect.width() <= 0 || contentRect.height() <= 0) {
+            cacheValid = false;
+            drawDirect(canvas, frame);
+            return;
+        }
+
+        float dx = 0;
+        float dy = 0;
+        if (cacheValid && frame.width == cachedWidth && frame.height == cachedHeight && contentRect.equals(cachedContentRect)
+                && sameScale(viewport.width(), cachedViewport.width()) && sameScale(viewport.height(), cachedViewport.height())) {
+            dx = (cachedViewport.left - viewport.left) * contentRect.width() / viewport.width();
+            dy = (viewport.top - cachedViewport.top) * contentRect.height() / viewport.height();
+        } else {
+            cacheValid = false;
+        }
+        if (!cacheValid || Math.abs(dx) > marginX || Math.abs(dy) > marginY) {
+            render(frame);
+            dx = 0;
+            dy = 0;
+        }
+
+        int restoreCount = canvas.save();
+        canvas.clipRect(contentRect);
+        canvas.drawBitmap(gridBitmap, contentRect.left - marginX + dx, contentRect.top - marginY + dy, null);
+        canvas.restoreToCount(restoreCount);
+
+        restoreCount = canvas.save();
+        canvas.clipRect(contentRect.left - mMaxLabelWidth / 2, contentRect.bottom, contentRect.right + mMaxLabelWidth / 2, frame.height);
+        canvas.drawBitmap(xLabelBitmap, xLabelLeft + dx, contentRect.bottom, null);
+        canvas.restoreToCount(restoreCount);
+
+        restoreCount = canvas.save();
+        canvas.clipRect(0, contentRect.top - mLabelHeight, contentRect.left, contentRect.bottom + mLabelHeight);
+        canvas.drawBitmap(yLabelBitmap, 0, yLabelTop + dy, null);
+        canvas.restoreToCount(restoreCount);
+    }
+
+    /**
+     * Releases the bitmaps. They are rendered again by the next call to {@link #draw(Canvas, GridFrame)}.
+     */
+    void release(){
+        cacheValid = false;
+        gridBitmap = recycle(gridBitmap);
+        xLabelBitmap = recycle(xLabelBitmap);
+        yLabelBitmap = recycle(yLabelBitmap);
+    }
+
+    /**
+     * Draws the grid lines and the axis labels of the visible part of the grid onto the canvas.
+     */
+    private void drawDirect(Canvas canvas, GridFrame frame){
+        computeStops(frame, 0, 0);
+        drawGridLines(canvas, frame, 0, 0);
+        drawXLabels(canvas, frame);
+        drawYLabels(canvas, frame);
+    }
+
+    /**
+     * Renders the grid lines and the axis labels of the visible part of the grid and its margins into the bitmaps
+     */
+    private void render(GridFrame frame){
+        Rect contentRect = frame.contentRect;
+        marginX = Math.round(contentRect.width() * PAN_MARGIN);
+        marginY = Math.round(contentRect.height() * PAN_MARGIN);
+        xLabelLeft = contentRect.left - marginX - mMaxLabelWidth;
+        yLabelTop = contentRect.top - marginY - mLabelHeight;
+        computeStops(frame, marginX, marginY);
+
+        int restoreCount;
+        gridBitmap = prepare(gridBitmap, contentRect.width() + 2 * marginX, contentRect.height() + 2 * marginY);
+        bitmapCanvas.setBitmap(gridBitmap);
+        restoreCount = bitmapCanvas.save();
+        bitmapCanvas.translate(marginX - contentRect.left, marginY - contentRect.top);
+        drawGridLines(bitmapCanvas, frame, marginX, marginY);
+        bitmapCanvas.restoreToCount(restoreCount);
+
+        xLabelBitmap = prepare(xLabelBitmap, contentRect.width() + 2 * (marginX + mMaxLabelWidth), Math.max(1, frame.height - contentRect.bottom));
+        bitmapCanvas.setBitmap(xLabelBitmap);
+        restoreCount = bitmapCanvas.save();
+        bitmapCanvas.translate(-xLabelLeft, -contentRect.bottom);
+        drawXLabels(bitmapCanvas, frame);
+        bitmapCanvas.restoreToCount(restoreCount);
+
+        yLabelBitmap = prepare(yLabelBitmap, Math.max(1, contentRect.left), contentRect.height() + 2 * (marginY + mLabelHeight));
+        bitmapCanvas.setBitmap(yLabelBitmap);
+        restoreCount = bitmapCanvas.save();
+        bitmapCanvas.translate(0, -yLabelTop);
+        drawYLabels(bitmapCanvas, frame);
+        bitmapCanvas.restoreToCount(restoreCount);
+
+        bitmapCanvas.setBitmap(null);
+        cachedViewport.set(frame.viewport);
+        cachedContentRect.set(contentRect);
+        cachedWidth = frame.width;
+        cachedHeight = frame.height;
+        cacheValid = true;
+    }
+
+    /**
+     * Computes the axis stops of the visible part of the grid extended by the given margins, and their screen positions
+     * @param extendX margin in pixels on the left and the right of the content area
+     * @param extendY margin in pixels above and below the content area
+     */
+    private void computeStops(GridFrame frame, int extendX, int extendY){
+        RectF viewport = frame.viewport;
+        Rect contentRect = frame.contentRect;
+        float extendXMeters = extendX * viewport.width() / contentRect.width();
+        float extendYMeters = extendY * viewport.height() / contentRect.height();
+
+        computeAxisStops(
+                viewport.left,
+                viewport.right,
+                frame.width / mMaxLabelWidth / 2,
+                extendXMeters,
+                mXStopsBuffer);
+        computeAxisStops(
+                viewport.top,
+                viewport.bottom,
+                frame.height / mLabelHeight / 2,
+                extendYMeters,
+                mYStopsBuffer);
+
+        // Avoid unnecessary allocations during drawing. Re-use allocated
+        // arrays and only reallocate if the number of stops grows.
+        if (mAxisXPositionsBuffer.length < mXStopsBuffer.numStops) {
+            mAxisXPositionsBuffer = new float[mXStopsBuffer.numStops];
+        }
+        if (mAxisYPositionsBuffer.length < mYStopsBuffer.numStops) {
+            mAxisYPositionsBuffer = new float[mYStopsBuffer.numStops];
+        }
+        if (mAxisXLinesBuffer.length < mXStopsBuffer.numStops * 4) {
+            mAxisXLinesBuffer = new float[mXStopsBuffer.numStops * 4];
+        }
+        if (mAxisYLinesBuffer.length < mYStopsBuffer.numStops * 4) {
+            mAxisYLinesBuffer = new float[mYStopsBuffer.numStops * 4];
+        }
+
+        // Compute positions
+        for (int i = 0; i < mXStopsBuffer.numStops; i++) {
+            mAxisXPositionsBuffer[i] = (float) frame.getDrawX(mXStopsBuffer.stops[i]);
+        }
+        for (int i = 0; i < mYStopsBuffer.numStops; i++) {
+            mAxisYPositionsBuffer[i] = (float) frame.getDrawY(mYStopsBuffer.stops[i]);
+        }
+    }
+
+    /**
+     * Draws the grid lines across the content area extended by the given margins
+     */
+    private void drawGridLines(Canvas canvas, GridFrame frame, int extendX, int extendY){
+        Rect contentRect = frame.contentRect;
+        int i;
+        // Draws grid lines using drawLines (faster than individual drawLine calls)
+        for (i = 0; i < mXStopsBuffer.numStops; i++) {
+            mAxisXLinesBuffer[i * 4 + 0] = (float) Math.floor(mAxisXPositionsBuffer[i]);
+            mAxisXLinesBuffer[i * 4 + 1] = contentRect.top - extendY;
+            mAxisXLinesBuffer[i * 4 + 2] = (float) Math.floor(mAxisXPositionsBuffer[i]);
+            mAxisXLinesBuffer[i * 4 + 3] = contentRect.bottom + extendY;
+        }
+        canvas.drawLines(mAxisXLinesBuffer, 0, mXStopsBuffer.numStops * 4, mGridPaint);
+
+        for (i = 0; i < mYStopsBuffer.numStops; i++) {
+            mAxisYLinesBuffer[i * 4 + 0] = contentRect.left - extendX;
+            mAxisYLinesBuffer[i * 4 + 1] = (float) Math.floor(mAxisYPositionsBuffer[i]);
+            mAxisYLinesBuffer[i * 4 + 2] = contentRect.right + extendX;
+            mAxisYLinesBuffer[i * 4 + 3] = (float) Math.floor(mAxisYPositionsBuffer[i]);
+        }
+        canvas.drawLines(mAxisYLinesBuffer, 0, mYStopsBuffer.numStops * 4, mGridPaint);
+    }
+
+    /**
+     * Draws the x axis labels below the content area
+     */
+    private void drawXLabels(Canvas canvas, GridFrame frame){
+        boolean scaleXInMeters = mXStopsBuffer.interval <= METER_SCALE_INTERVAL;
+        mLabelTextPaint.setTextAlign(Paint.Align.CENTER);
+        for (int i = 0; i < mXStopsBuffer.numStops; i++) {
+            // Do not use String.format in high-performance code such as onDraw code.
+            float stop = scaleXInMeters ? mXStopsBuffer.stops[i] : mXStopsBuffer.stops[i] / 1000;
+            int labelLength = GridRenderer.formatFloat(mLabelBuffer, stop, mXStopsBuffer.decimals);
+            int labelOffset = mLabelBuffer.length - labelLength;
+            canvas.drawText(
+                    mLabelBuffer, labelOffset, labelLength,
+                    mAxisXPositionsBuffer[i],
+                    frame.contentRect.bottom + mLabelHeight + mLabelSeparation,
+                    mLabelTextPaint);
+        }
+    }
+
+    /**
+     * Draws the y axis labels left of the content area
+     */
+    private void drawYLabels(Canvas canvas, GridFrame frame){
+        boolean scaleYInMeters = mYStopsBuffer.interval <= METER_SCALE_INTERVAL;
+        mLabelTextPaint.setTextAlign(Paint.Align.RIGHT);
+        for (int i = 0; i < mYStopsBuffer.numStops; i++) {
+            // Do not use String.format in high-performance code such as onDraw code.
+            float stop = scaleYInMeters ? mYStopsBuffer.stops[i] : mYStopsBuffer.stops[i] / 1000;
+            int labelLength = GridRenderer.formatFloat(mLabelBuffer, stop, mYStopsBuffer.decimals);
+            int labelOffset = mLabelBuffer.length - labelLength;
+            canvas.drawText(
+                    mLabelBuffer, labelOffset, labelLength,
+                    frame.contentRect.left - mLabelSeparation,
+                    mAxisYPositionsBuffer[i] + mLabelHeight / 2,
+                    mLabelTextPaint);
+        }
+    }
+
+    private static boolean sameScale(float a, float b){
+        return Math.abs(a - b) <= SCALE_TOLERANCE * Math.abs(a);
+    }
+
+    /**
+     * @return a cleared bitmap of the given size, reusing the given bitmap if it has that size
+     */
+    private static Bitmap prepare(Bitmap bitmap, int width, int height){
+        if (bitmap == null || bitmap.isRecycled() || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+            recycle(bitmap);
+            return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+        bitmap.eraseColor(Color.TRANSPARENT);
+        return bitmap;
+    }
+
+    private static Bitmap recycle(Bitmap bitmap){
+        if (bitmap != null) {
+            bitmap.recycle();
+        }
+        return null;
+    }
+
+    /**
+     * Computes the set of axis labels to show given start and stop boundaries and an ideal number
+     * of stops between these boundaries.
+     *
+     * @param start The minimum extreme (e.g. the left edge) for the axis.
+     * @param stop The maximum extreme (e.g. the right edge) for the axis.
+     * @param steps The ideal number of stops to create. This should be based on available screen
+     *              space; the more space there is, the more stops should be shown.
+     * @param extend Distance beyond the start and the stop up to which stops are created with the
+     *               same interval, to fill the margins of the bitmaps.
+     * @param outStops The destination {@link AxisStops} object to populate.
+     */
+    private static void computeAxisStops(float start, float stop, int steps, float extend, AxisStops outStops) {
+        double range = stop - start;
+        if (steps == 0 || range <= 0) {
+            outStops.numStops = 0;
+            return;
+        }
+
+        double rawInterval = range / steps;
+        double interval = roundToOneSignificantFigure(rawInterval);
+        double intervalMagnitude = Math.pow(10, (int) Math.log10(interval));
+        int intervalSigDigit = (int) (interval / intervalMagnitude);
+        if (intervalSigDigit > 5) {
+            // Use one order of magnitude higher, to avoid intervals like 0.9 or 90
+            interval = Math.floor(10 * intervalMagnitude);
+        }
+
+        double first = Math.ceil((start - extend) / interval) * interval;
+        double last = Math.nextUp(Math.floor((stop + extend) / interval) * interval);
+
+        double f;
+        int i;
+        int n = 0;
+        for (f = first; f <= last; f += interval) {
+            ++n;
+        }
+
+        outStops.numStops = n;
+        outStops.interval = interval;
+
+        if (outStops.stops.length < n) {
+            // Ensure stops contains at least numStops elements.
+            outStops.stops = new float[n];
+        }
+
+        for (f = first, i = 0; i < n; f += interval, ++i) {
+            outStops.stops[i] = (float) f;
+        }
+
+        if (interval < 1) {
+            outStops.decimals = (int) Math.ceil(-Math.log10(interval));
+        } else {
+            outStops.decimals = 0;
+        }
+    }
+
+    /**
+     * A simple class representing axis label values.
+     *
+     * @see #computeAxisStops
+     */
+    private static class AxisStops {
+        float[] stops = new float[]{};
+        int numStops;
+        int decimals;
+        double interval;
+    }
+
+    /**
+     * Rounds the given number to the given number of significant digits. Based on an answer on
+     * <a href="http://stackoverflow.com/questions/202302">Stack Overflow</a>.
+     */
+    private static float roundToOneSignificantFigure(double num) {
+        final float d = (float) Math.ceil((float) Math.log10(num < 0 ? -num : num));
+        final int power = 1 - (int) d;
+        final float magnitude = (float) Math.pow(10, power);
+        final long shifted = Math.round(num * magnitude);
+        return shifted / magnitude;
+    }
+}
@@ -6,7 +6,6 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
@@ -27,7 +26,7 @@ import android.view.View;
 import android.widget.LinearLayout;
 import android.widget.Toast;
 
-import java.util.HashMap;
+import java.io.File;
 import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
@@ -46,11 +45,12 @@ import de.awi.floenavigation.R;
 /**
  * {@link GridActivity} class takes care of creating and initializing async tasks to
  * read {x,y} values from all the database tables of interest.
- * Separate {@link AsyncTask} tasks are created to handle each database table.
+ * A single {@link AsyncTask} loads the changes of all database tables through the {@link GridDataLoader}.
  * It runs on a background thread.
  * It periodically runs at a rate of {@value #ASYNC_TASK_TIMER_PERIOD}.
- * The values extracted from the database tables are stored in the corresponding {@link HashMap}
- * which are send to {@link MapView} using setters.
+ * Only the rows changed since the last run are read, so a run which finds no changes costs a few indexed queries.
+ * The values extracted from each database table are stored in the primitive arrays of a {@link StationSnapshot.Layer}
+ * which is send to {@link MapView} using setters.
  * It also takes care of handling of status bar icons and tablet location updates.
  */
 public class GridActivity extends Activity implements View.OnClickListener{
@@ -97,10 +97,6 @@ public class GridActivity extends Activity implements View.OnClickListener{
      * Variable stores the origin y value in meters on the sea ice
      */
     private double originY;
-    /**
-     * Stores the origin fixed station mmsi value
-     */
-    private int originMMSI;
     /**
      * Variable used to store the value of {@value DatabaseHelper#beta}
      * It is the angle between the x-axis and the geographic longitudinal axis
@@ -148,62 +144,16 @@ public class GridActivity extends Activity implements View.OnClickListener{
      */
     public static boolean showWaypointStation = true;
     /**
-     * Hashmaps to store index and x position of fixed stations in a key-value pair
-     */
-    public static HashMap<Integer, Double> mFixedStationXs;
-    /**
-     * Hashmaps to store index and y position of fixed stations in a key-value pair
-     */
-    public static HashMap<Integer, Double> mFixedStationYs;
-    /**
-     * Hashmaps to store index and mmsi's of fixed stations in a key-value pair
-     */
-    public static HashMap<Integer, Integer> mFixedStationMMSIs;
-    /**
-     * Hashmaps to store index and fixed station names in a key-value pair
-     */
-    public static HashMap<Integer, String> mFixedStationNames;
-    /**
-     * Hashmaps to store index and x position of mobile stations in a key-value pair
-     */
-    public static HashMap<Integer, Double> mMobileStationXs;
-    /**
-     * Hashmaps to store index and y position of mmobile stations in a key-value pair
-     */
-    public static HashMap<Integer, Double> mMobileStationYs;
-    /*
-     * Hashmaps to store index and mmsi's of mobile stations in a key-value pair
-     */
-    public static HashMap<Integer, Integer> mMobileStationMMSIs;
-    /**
-     * Hashmaps to store index and mobile station names in a key-value pair
-     */
-    public static HashMap<Integer, String> mMobileStationNames;
-    /**
-     * Hashmaps to store index and x position of static stations in a key-value pair
-     */
-    public static HashMap<Integer, Double> mStaticStationXs;
-    /**
-     * Hashmaps to store index and y position of static stations in a key-value pair
-     */
-    public static HashMap<Integer, Double> mStaticStationYs;
-    /**
-     * Hashmaps to store index and static station names in a key-value pair
-     */
-    public static HashMap<Integer, String> mStaticStationNames;
-    /**
-     * Hashmaps to store index and x position of waypoints in a key-value pair
-     */
-    public static HashMap<Integer, Double> mWaypointsXs;
-    /**
-     * Hashmaps to store index and y position of waypoints in a key-value pair
+     * if <code>true</code> checks the checkbox on the menubar list and displays the recent tracks of the shown fixed and mobile stations
+     * on the grid
+     * <code>false</code> otherwise
      */
-    public static HashMap<Integer, Double> mWaypointsYs;
+    public static boolean showTrails = false;
     /**
-     * Hashmaps to store index and labels of waypoints in a key-value pair
+     * Loads the changes of the stations, waypoints and grid reference from the database. It is kept while the app runs, so neither the
+     * tables nor the trails of the stations are read again when the activity is restarted.
      */
-    public static HashMap<Integer, String> mWaypointsLabels;
-
+    private static final GridDataLoader gridDataLoader = new GridDataLoader();
     /**
      * Used to provide location service
      */
@@ -249,16 +199,6 @@ public class GridActivity extends Activity implements View.OnClickListener{
      */
     private ActionButton buttonView;
 
-    /**
-     * Time at which the position was last predicted
-     */
-    private double predictionTime;
-
-    /**
-     * Time at which the AIS packet was last received
-     */
-    private double updateTime;
-
 
 
     /**
@@ -271,6 +211,7 @@ public class GridActivity extends Activity implements View.OnClickListener{
         setContentView(R.layout.activity_grid);
 
         myGridView = (MapView) findViewById(R.id.GridView);
+        myGridView.setRenderSurface((GridSurfaceView) findViewById(R.id.GridSurface));
         myView = this.findViewById(R.id.GridView);
         buttonView = this.findViewById(R.id.action_button);
         buttonView.setOnClickListener(this);
@@ -286,75 +227,34 @@ public class GridActivity extends Activity implements View.OnClickListener{
     }
 
     /**
-     * Initializes the hashmaps
-     * and schedules async tasks
+     * Schedules async tasks
      */
     @Override
     protected void onStart() {
         super.onStart();
         Log.d(TAG, "LifeCycle OnStart");
         asyncTaskTimer = new Timer();
-        mFixedStationXs = new HashMap<>();
-        mFixedStationYs = new HashMap<>();
-        mFixedStationMMSIs = new HashMap<>();
-        mFixedStationNames = new HashMap<>();
-        mMobileStationXs = new HashMap<>();
-        mMobileStationYs = new HashMap<>();
-        mMobileStationMMSIs = new HashMap<>();
-        mMobileStationNames = new HashMap<>();
-        mStaticStationXs = new HashMap<>();
-        mStaticStationYs = new HashMap<>();
-        mStaticStationNames = new HashMap<>();
-        mWaypointsXs = new HashMap<>();
-        mWaypointsYs = new HashMap<>();
-        mWaypointsLabels = new HashMap<>();
-        myView.postInvalidateOnAnimation();
 
-        //Broadcast receiver for tablet location
-        myGridView.initRefreshTimer();
         //initializeArrayList();
         actionBarUpdatesFunction();
-        new ReadStaticStationsFromDB().execute();
-        new ReadWaypointsFromDB().execute();
-        new ReadOriginFromDB().execute();
-        new ReadFixedStationsFromDB().execute();
-        new ReadMobileStationsFromDB().execute();
 
         asyncTaskTimer.schedule(new TimerTask() {
             @Override
             public void run() {
-                new ReadOriginFromDB().execute();
-                new ReadFixedStationsFromDB().execute();
-                new ReadMobileStationsFromDB().execute();
-
+                new LoadGridData().execute();
             }
         }, ASYNC_TASK_TIMER_DELAY, ASYNC_TASK_TIMER_PERIOD);
     }
 
     /**
-     * OnResume method is called when the app gets back its focus
-     * So it was required to restart the {@link #asyncTaskTimer}
-     * to run the async tasks
+     * OnResume method is called when the app gets back its focus.
+     * The {@link #asyncTaskTimer} is scheduled in {@link #onStart()}, which always runs before this method after the activity was stopped.
      */
     @Override
     protected void onResume() {
         super.onResume();
         Log.d(TAG, "LifeCycle OnResume");
         myView.postInvalidateOnAnimation();
-
-        //Broadcast receiver for tablet location
-        myGridView.initRefreshTimer();
-        //initializeArrayList();
-
-        asyncTaskTimer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                new ReadOriginFromDB().execute();
-                new ReadFixedStationsFromDB().execute();
-                new ReadMobileStationsFromDB().execute();
-
-            }
-        }, ASYNC_TASK_TIMER_DELAY, ASYNC_TASK_TIMER_PERIOD);
     }
 
     /**
@@ -387,7 +287,6 @@ public class GridActivity extends Activity implements View.OnClickListener{
         gpsBroadcastReceiver = null;
         unregisterReceiver(aisPacketBroadcastReceiver);
         aisPacketBroadcastReceiver = null;
-        MapView.refreshScreenTimer.cancel();
         asyncTaskTimer.cancel();
 
 
@@ -395,14 +294,13 @@ public class GridActivity extends Activity implements View.OnClickListener{
 
     /**
      * onDestroy handles the cancelling of the
-     * {@link #asyncTaskTimer} timer and refresh timer of the map view
+     * {@link #asyncTaskTimer} timer
      */
     @Override
     public void onDestroy(){
         super.onDestroy();
         Log.d(TAG, "Lifecycle OnDestroy");
         asyncTaskTimer.cancel();
-        MapView.refreshScreenTimer.cancel();
     }
 
     /**
@@ -444,6 +342,12 @@ public class GridActivity extends Activity implements View.OnClickListener{
         staticStationItem.setChecked(showStaticStation);
         MenuItem waypointsStationItem = menu.findItem(R.id.Waypoint);
         waypointsStationItem.setChecked(showWaypointStation);
+        MenuItem trailsItem = menu.findItem(R.id.Trails);
+        trailsItem.setChecked(showTrails);
+        MenuItem renderStatsItem = menu.findItem(R.id.RenderStats);
+        renderStatsItem.setChecked(myGridView.isStatsOverlayEnabled());
+        MenuItem recordRenderStatsItem = menu.findItem(R.id.RecordRenderStats);
+        recordRenderStatsItem.setChecked(myGridView.isStatsRecording());
         return super.onCreateOptionsMenu(menu);
     }
 
@@ -479,32 +383,51 @@ public class GridActivity extends Activity implements View.OnClickListener{
            case R.id.FixedStation:
                showFixedStation = !showFixedStation;
                item.setChecked(showFixedStation);
-               myView.postInvalidateOnAnimation();
-               //ViewCompat.postInvalidateOnAnimation(myGridView);
+               myGridView.onSelectionChanged();
                return true;
 
            case R.id.MobileStation:
                showMobileStation = !showMobileStation;
                item.setChecked(showMobileStation);
-               myView.postInvalidateOnAnimation();
-               //ViewCompat.postInvalidateOnAnimation(myGridView);
+               myGridView.onSelectionChanged();
                return true;
 
            case R.id.StaticStation:
                showStaticStation = !showStaticStation;
                item.setChecked(showStaticStation);
-               myView.postInvalidateOnAnimation();
-               //ViewCompat.postInvalidateOnAnimation(myGridView);
+               myGridView.onSelectionChanged();
                return true;
 
            case R.id.Waypoint:
                showWaypointStation = !showWaypointStation;
                item.setChecked(showWaypointStation);
-               myView.postInvalidateOnAnimation();
-               //ViewCompat.postInvalidateOnAnimation(myGridView);
+               myGridView.onSelectionChanged();
+               return true;
+
+           case R.id.Trails:
+               showTrails = !showTrails;
+               item.setChecked(showTrails);
+               myGridView.onSelectionChanged();
                return true;
 
+           case R.id.RenderStats:
+               myGridView.setStatsOverlayEnabled(!myGridView.isStatsOverlayEnabled());
+               item.setChecked(myGridView.isStatsOverlayEnabled());
+               return true;
 
+           case R.id.RecordRenderStats:
+               if (myGridView.isStatsRecording()) {
+                   myGridView.stopStatsRecording();
+               } else {
+                   File statsFile = new File(getExternalFilesDir(null), "render_stats_" + System.currentTimeMillis() + ".csv");
+                   if (myGridView.startStatsRecording(statsFile)) {
+                       Toast.makeText(this, "Recording to " + statsFile.getAbsolutePath(), Toast.LENGTH_LONG).show();
+                   } else {
+                       Toast.makeText(this, "Render statistics could not be recorded", Toast.LENGTH_LONG).show();
+                   }
+               }
+               item.setChecked(myGridView.isStatsRecording());
+               return true;
 
         }
         return super.onOptionsItemSelected(item);
@@ -578,7 +501,6 @@ public class GridActivity extends Activity implements View.OnClickListener{
                     tabletLat = intent.getExtras().getDouble(GPS_Service.latitude);
                     tabletLon = intent.getExtras().getDouble(GPS_Service.longitude);
                     locationStatus = intent.getExtras().getBoolean(GPS_Service.locationStatus);
-                    //tabletTime = Long.parseLong(intent.getExtras().get(GPS_Service.GPSTime).toString());
 
                     //Log.d(TAG, "Tablet Lat: " + String.valueOf(tabletLat));
                     //Log.d(TAG, "Tablet Lon: " + String.valueOf(tabletLon));
@@ -654,385 +576,55 @@ public class GridActivity extends Activity implements View.OnClickListener{
 
     /**
      * Async task runs in the background thread periodically.
-     * This class handles the retrieval of origin fixed station parameters from the database table. The latest values are available from the database whenever exceuted.
-     * Initially, it obtains the origin mmsi from the {@link DatabaseHelper#baseStationTable},
-     * then it obtains the origin geographic coordinates and the (x, y) positions from the {@link DatabaseHelper#fixedStationTable},
-     * then it obtains the {@link DatabaseHelper#beta} from the {@link DatabaseHelper#betaTable}.
-     * {@link DatabaseHelper#beta} is used to calculate the tablet position {@link #calculateTabletGridCoordinates()}.
-     * Origin coordinates are
-     * After the retrieval the each respective cursors are closed.
+     * It passes the rows changed since its last run to the {@link #gridDataLoader}, which patches them into its copy of the
+     * fixed station, mobile station, static station and waypoint tables and reads the origin and {@link DatabaseHelper#beta} again if they changed.
+     * The onPostExecute method implements the call to the setter functions of the {@link MapView}, which ignore unchanged layers,
+     * and calculates the tablet position again if the origin or {@link DatabaseHelper#beta} changed.
      */
-    private class ReadOriginFromDB extends AsyncTask<Void, Void, Boolean>{
+    private class LoadGridData extends AsyncTask<Void, Void, GridDataLoader.Result>{
 
-        @SuppressLint("WrongThread")
         @Override
-        protected Boolean doInBackground(Void... voids) {
-            Cursor baseStationCursor = null;
-            Cursor fixedStationCursor = null;
-            Cursor betaCursor = null;
-            try {
-                int i = 0;
-                DatabaseHelper databaseHelper = DatabaseHelper.getDbInstance(getApplicationContext());
-                SQLiteDatabase db = databaseHelper.getReadableDatabase();
-                baseStationCursor = db.query(DatabaseHelper.baseStationTable,
-                        new String[] {DatabaseHelper.mmsi},
-                        DatabaseHelper.isOrigin + " = ?",
-                        new String[]{String.valueOf(DatabaseHelper.ORIGIN)},
-                        null, null, null);
-                Log.d(TAG, String.valueOf(baseStationCursor.getCount()));
-                if (baseStationCursor.getCount() != 1){
-                    Log.d(TAG, "Error Reading from BaseStation Table");
-                    return false;
-                } else{
-                    if(baseStationCursor.moveToFirst()){
-                        originMMSI = baseStationCursor.getInt(baseStationCursor.getColumnIndex(DatabaseHelper.mmsi));
-                    }
-                }
-
-
-                fixedStationCursor = db.query(DatabaseHelper.fixedStationTable,
-                        new String[] {DatabaseHelper.latitude, DatabaseHelper.longitude, DatabaseHelper.xPosition, DatabaseHelper.yPosition,
-                                DatabaseHelper.recvdLatitude, DatabaseHelper.recvdLongitude, DatabaseHelper.predictionTime, DatabaseHelper.updateTime},
-                        DatabaseHelper.mmsi +" = ? AND " + DatabaseHelper.isLocationReceived + " = ?",
-                        new String[] {String.valueOf(originMMSI), String.valueOf(DatabaseHelper.LOCATIONRECEIVED)},
-                        null, null, null);
-                if (fixedStationCursor.getCount() != 1){
-                    Log.d(TAG, "Error Reading Origin Latitude Longitude");
-                    return false;
-                } else{
-                    if(fixedStationCursor.moveToFirst()){
-                        updateTime = fixedStationCursor.getDouble(fixedStationCursor.getColumnIndexOrThrow(DatabaseHelper.updateTime));
-                        predictionTime = fixedStationCursor.getDouble(fixedStationCursor.getColumnIndexOrThrow(DatabaseHelper.predictionTime));
-                        if (updateTime >= predictionTime) {
-                            originLatitude = fixedStationCursor.getDouble(fixedStationCursor.getColumnIndex(DatabaseHelper.recvdLatitude));
-                            originLongitude = fixedStationCursor.getDouble(fixedStationCursor.getColumnIndex(DatabaseHelper.recvdLongitude));
-                        }else {
-                            originLatitude = fixedStationCursor.getDouble(fixedStationCursor.getColumnIndex(DatabaseHelper.latitude));
-                            originLongitude = fixedStationCursor.getDouble(fixedStationCursor.getColumnIndex(DatabaseHelper.longitude));
-                        }
-                        originX = fixedStationCursor.getDouble(fixedStationCursor.getColumnIndex(DatabaseHelper.xPosition));
-                        originY = fixedStationCursor.getDouble(fixedStationCursor.getColumnIndex(DatabaseHelper.yPosition));
-                        myGridView.setOriginX(originX);
-                        myGridView.setOriginY(originY);
-                    }
-                }
-
-                betaCursor = db.query(DatabaseHelper.betaTable,
-                        new String[]{DatabaseHelper.beta, DatabaseHelper.updateTime},
-                        null, null,
-                        null, null, null);
-                if (betaCursor.getCount() == 1) {
-                    if (betaCursor.moveToFirst()) {
-                        beta = betaCursor.getDouble(betaCursor.getColumnIndex(DatabaseHelper.beta));
-                    }
-
-                } else {
-                    Log.d(TAG, "Error in Beta Table");
-                    return false;
-                }
-                return true;
-            } catch(SQLiteException e){
-                Log.d(TAG, "Database Error");
-                e.printStackTrace();
-                return false;
-            }finally {
-                if (betaCursor != null) {
-                    betaCursor.close();
-                }
-                if (baseStationCursor != null) {
-                    baseStationCursor.close();
-                }
-                if (fixedStationCursor != null) {
-                    fixedStationCursor.close();
-                }
-            }
-        }
-
-        @Override
-        protected void onPostExecute(Boolean result){
-            if(!result){
-                Log.d(TAG, "ReadOriginFromDB AsyncTask Error");
-            }
-        }
-
-    }
-
-    /**
-     * Async task runs in the background thread periodically.
-     * MMSIs, X, Y and Names of the fixed stations are obtained from the fixed station database table {@link DatabaseHelper#fixedStationTable}.
-     * The latest values are available from the database whenever exceuted.
-     * One by one these values are stored in the respective hashmaps in a key-value pair format.
-     * These hashmaps are used by the {@link MapView} to display all the fixed stations on the grid.
-     * The onPostExecute method implements the call to setter functions of the {@link MapView}
-     */
-    private class ReadFixedStationsFromDB extends AsyncTask<Void, Void, Boolean>{
-
-        @Override
-        protected Boolean doInBackground(Void... voids) {
-            Cursor mFixedStnCursor = null;
-            try {
-                SQLiteOpenHelper dbHelper = DatabaseHelper.getDbInstance(getApplicationContext());
-                SQLiteDatabase db = dbHelper.getReadableDatabase();
-
-                //double xPosition, yPosition;
-                //int mmsi;
-
-                mFixedStnCursor = db.query(DatabaseHelper.fixedStationTable, new String[]{DatabaseHelper.mmsi, DatabaseHelper.xPosition, DatabaseHelper.yPosition, DatabaseHelper.stationName},
-                        null,
-                        null,
-                        null, null, null, null);
-                //mFixedStationMMSIs = new int[mFixedStnCursor.getCount()];
-                //mFixedStationXs = new double[mFixedStnCursor.getCount()];
-                //mFixedStationYs = new double[mFixedStnCursor.getCount()];
-                mFixedStationMMSIs.clear();
-                mFixedStationXs.clear();
-                mFixedStationYs.clear();
-                mFixedStationNames.clear();
-                MapView.clearFixedStationHashTables();
-                if (mFixedStnCursor.moveToFirst()) {
-                    for (int i = 0; i < mFixedStnCursor.getCount(); i++) {
-                        Log.d(TAG, "FixedStnIndex " + String.valueOf(i));
-                        mFixedStationMMSIs.put(i, mFixedStnCursor.getInt(mFixedStnCursor.getColumnIndex(DatabaseHelper.mmsi)));
-                        mFixedStationXs.put(i, mFixedStnCursor.getDouble(mFixedStnCursor.getColumnIndex(DatabaseHelper.xPosition)));
-                        mFixedStationYs.put(i, mFixedStnCursor.getDouble(mFixedStnCursor.getColumnIndex(DatabaseHelper.yPosition)));
-                        mFixedStationNames.put(i, mFixedStnCursor.getString(mFixedStnCursor.getColumnIndex(DatabaseHelper.stationName)));
-                        Log.d(TAG, "Fixed Station MMSI: " + mFixedStationMMSIs.get(i) + " xPos: " + mFixedStationXs.get(i) + " yPos: " + mFixedStationYs.get(i));
-                        mFixedStnCursor.moveToNext();
-                    }
-                    return true;
-                } else {
-
-                    Log.d(TAG, "FixedStationTable Cursor Error");
-                    return false;
-                }
-            } catch (SQLiteException e) {
-                Log.d(TAG, "Error reading database");
-                e.printStackTrace();
-                return false;
-            } finally {
-                if (mFixedStnCursor != null){
-                    mFixedStnCursor.close();
-                }
-            }
-        }
-
-        @Override
-        protected void onPostExecute(Boolean result){
-            if(!result){
-                Log.d(TAG, "ReadFixedStationParams AsyncTask Error");
-            }
-            else{
-                myGridView.setmFixedStationMMSIs(mFixedStationMMSIs);
-                myGridView.setmFixedStationXs(mFixedStationXs);
-                myGridView.setmFixedStationYs(mFixedStationYs);
-                myGridView.setmFixedStationNamess(mFixedStationNames);
-            }
-        }
-    }
-
-    /**
-     * Async task runs in the background thread periodically.
-     * MMSIs, X, Y and Names of the fixed stations are obtained from the mobile station database table {@link DatabaseHelper#mobileStationTable}.
-     * The latest values are available from the database whenever exceuted.
-     * One by one these values are stored in the respective hashmaps in a key-value pair format.
-     * These hashmaps are used by the {@link MapView} to display all the fixed stations on the grid.
-     * The onPostExecute method implements the call to setter functions of the {@link MapView}
-     */
-    private class ReadMobileStationsFromDB extends AsyncTask<Void, Void, Boolean>{
-
-        @Override
-        protected Boolean doInBackground(Void... voids) {
-            Cursor mMobileStnCursor = null;
+        protected GridDataLoader.Result doInBackground(Void... voids) {
             try {
                 SQLiteOpenHelper dbHelper = DatabaseHelper.getDbInstance(getApplicationContext());
                 SQLiteDatabase db = dbHelper.getReadableDatabase();
-
-                //double xPosition, yPosition;
-                //int mmsi;
-
-                mMobileStnCursor = db.query(DatabaseHelper.mobileStationTable,
-                        new String[]{DatabaseHelper.mmsi, DatabaseHelper.stationName, DatabaseHelper.xPosition, DatabaseHelper.yPosition, DatabaseHelper.isCalculated},
-                        DatabaseHelper.isCalculated + " = ?",
-                        new String[] {Integer.toString(DatabaseHelper.MOBILE_STATION_IS_CALCULATED)},
-                        null, null, null, null);
-                //mMobileStationXs = new double[mMobileStnCursor.getCount()];
-                //mMobileStationYs = new double[mMobileStnCursor.getCount()];
-                //mMobileStationMMSIs = new int[mMobileStnCursor.getCount()];
-                mMobileStationMMSIs.clear();
-                mMobileStationXs.clear();
-                mMobileStationYs.clear();
-                mMobileStationNames.clear();
-                MapView.clearMobileStationHashTables();
-                if (mMobileStnCursor.moveToFirst()) {
-                    for (int i = 0; i < mMobileStnCursor.getCount(); i++) {
-                        mMobileStationMMSIs.put(i, mMobileStnCursor.getInt(mMobileStnCursor.getColumnIndex(DatabaseHelper.mmsi)));
-                        mMobileStationXs.put(i, mMobileStnCursor.getDouble(mMobileStnCursor.getColumnIndex(DatabaseHelper.xPosition)));
-                        mMobileStationYs.put(i, mMobileStnCursor.getDouble(mMobileStnCursor.getColumnIndex(DatabaseHelper.yPosition)));
-                        mMobileStationNames.put(i, mMobileStnCursor.getString(mMobileStnCursor.getColumnIndex(DatabaseHelper.stationName)));
-                        //Log.d(TAG, "Mobile Station MMSI: " + mMobileStationMMSIs.get(i) + " X: " + mMobileStationXs.get(i) + " Y: " + mMobileStationYs.get(i));
-                        mMobileStnCursor.moveToNext();
-                    }
-                    return true;
-                } else {
-
-                    Log.d(TAG, "MobileStation Cursor Error");
-                    return false;
-                }
+                return gridDataLoader.load(db);
             } catch (SQLiteException e) {
                 Log.d(TAG, "Error reading database");
                 e.printStackTrace();
-                return false;
-            } finally {
-                if (mMobileStnCursor != null){
-                    mMobileStnCursor.close();
-                }
+                return null;
             }
         }
 
         @Override
-        protected void onPostExecute(Boolean result){
-            if(!result){
-                Log.d(TAG, "ReadMobileStationFromDB AsyncTask Error");
-            } else{
-                myGridView.setmMobileStationMMSIs(mMobileStationMMSIs);
-                myGridView.setmMobileStationXs(mMobileStationXs);
-                myGridView.setmMobileStationYs(mMobileStationYs);
-                myGridView.setmMobileStationNamess(mMobileStationNames);
-            }
-        }
-    }
-
-    /**
-     * Async task runs in the background thread periodically.
-     * X, Y and Names of the static stations are obtained from the static station database table {@link DatabaseHelper#staticStationListTable}.
-     * The latest values are available from the database whenever exceuted.
-     * One by one these values are stored in the respective hashmaps in a key-value pair format.
-     * These hashmaps are used by the {@link MapView} to display all the fixed stations on the grid.
-     * The onPostExecute method implements the call to setter functions of the {@link MapView}
-     */
-    private class ReadStaticStationsFromDB extends AsyncTask<Void, Void, Boolean>{
-
-        @Override
-        protected Boolean doInBackground(Void... voids) {
-            Cursor mStaticStationCursor = null;
-            try {
-                SQLiteOpenHelper dbHelper = DatabaseHelper.getDbInstance(getApplicationContext());
-                SQLiteDatabase db = dbHelper.getReadableDatabase();
-
-                //double xPosition, yPosition;
-                //int mmsi;
-
-                mStaticStationCursor = db.query(DatabaseHelper.staticStationListTable, new String[]{DatabaseHelper.staticStationName, DatabaseHelper.xPosition, DatabaseHelper.yPosition},
-                        null,
-                        null,
-                        null, null, null, null);
-                //mStaticStationXs = new double[mStaticStationCursor.getCount()];
-                //mStaticStationYs = new double[mStaticStationCursor.getCount()];
-                //mStaticStationNames = new String[mStaticStationCursor.getCount()];
-                mStaticStationNames.clear();
-                mStaticStationXs.clear();
-                mStaticStationYs.clear();
-                MapView.clearStaticStationHashTables();
-                if (mStaticStationCursor.moveToFirst()) {
-                    for(int i = 0; i < mStaticStationCursor.getCount(); i++){
-                        mStaticStationNames.put(i, mStaticStationCursor.getString(mStaticStationCursor.getColumnIndex(DatabaseHelper.staticStationName)));
-                        mStaticStationXs.put(i, mStaticStationCursor.getDouble(mStaticStationCursor.getColumnIndex(DatabaseHelper.xPosition)));
-                        mStaticStationYs.put(i, mStaticStationCursor.getDouble(mStaticStationCursor.getColumnIndex(DatabaseHelper.yPosition)));
-                        mStaticStationCursor.moveToNext();
-                    }
-                    return true;
-                }
-                else {
-                    Log.d(TAG, "StaticStation Cursor Error");
-                    return false;
-                }
-
-            } catch (SQLiteException e) {
-                Log.d(TAG, "Error reading database");
-                e.printStackTrace();
-                return false;
-            } finally {
-                if (mStaticStationCursor != null) {
-                    mStaticStationCursor.close();
-                }
+        protected void onPostExecute(GridDataLoader.Result result){
+            if(result == null){
+                Log.d(TAG, "LoadGridData AsyncTask Error");
+                return;
             }
-        }
-
-        @Override
-        protected void onPostExecute(Boolean result){
-            if(!result){
-                Log.d(TAG, "ReadStaticStationFromDB AsyncTask Error");
-            } else{
-                myGridView.setmStaticStationNamess(mStaticStationNames);
-                myGridView.setmStaticStationXs(mStaticStationXs);
-                myGridView.setmStaticStationYs(mStaticStationYs);
+            myGridView.setFixedStations(result.fixedStations);
+            myGridView.setFixedStationTrails(result.fixedTrails);
+            myGridView.setMobileStations(result.mobileStations);
+            myGridView.setMobileStationTrails(result.mobileTrails);
+            myGridView.setStaticStations(result.staticStations);
+            myGridView.setWaypoints(result.waypoints);
+            for (int category = 0; category < RenderStats.CATEGORY_COUNT; category++) {
+                myGridView.getRenderStats().onLayerLoaded(category, result.loadNanos[category]);
             }
-        }
-    }
-
-    /**
-     * Async task runs in the background thread periodically.
-     * Labels, X, Y and Names of the waypoints are obtained from the waypoint database table {@link DatabaseHelper#waypointsTable}.
-     * The latest values are available from the database whenever exceuted.
-     * One by one these values are stored in the respective hashmaps in a key-value pair format.
-     * These hashmaps are used by the {@link MapView} to display all the fixed stations on the grid.
-     * The onPostExecute method implements the call to setter functions of the {@link MapView}
-     */
-    private class ReadWaypointsFromDB extends AsyncTask<Void, Void, Boolean>{
 
-        @Override
-        protected Boolean doInBackground(Void... voids) {
-            Cursor mWaypointsCursor = null;
-            try {
-                SQLiteOpenHelper dbHelper = DatabaseHelper.getDbInstance(getApplicationContext());
-                SQLiteDatabase db = dbHelper.getReadableDatabase();
-
-                //double xPosition, yPosition;
-                //int mmsi;
-
-                mWaypointsCursor = db.query(DatabaseHelper.waypointsTable, new String[]{DatabaseHelper.labelID, DatabaseHelper.xPosition, DatabaseHelper.yPosition},
-                        null,
-                        null,
-                        null, null, null, null);
-                //mWaypointsXs = new double[mWaypointsCursor.getCount()];
-                //mWaypointsYs = new double[mWaypointsCursor.getCount()];
-                //mWaypointsLabels = new String[mWaypointsCursor.getCount()];
-                mWaypointsLabels.clear();
-                mWaypointsXs.clear();
-                mWaypointsYs.clear();
-                MapView.clearWaypointHashTables();
-                if (mWaypointsCursor.moveToFirst()) {
-                    for(int i = 0; i < mWaypointsCursor.getCount(); i++){
-                        mWaypointsLabels.put(i, mWaypointsCursor.getString(mWaypointsCursor.getColumnIndex(DatabaseHelper.labelID)));
-                        mWaypointsXs.put(i, mWaypointsCursor.getDouble(mWaypointsCursor.getColumnIndex(DatabaseHelper.xPosition)));
-                        mWaypointsYs.put(i, mWaypointsCursor.getDouble(mWaypointsCursor.getColumnIndex(DatabaseHelper.yPosition)));
-                        mWaypointsCursor.moveToNext();
-                    }
-                    return true;
-                }
-                else {
-                    Log.d(TAG, "Waypoints Cursor Error");
-                    return false;
-                }
-            } catch (SQLiteException e) {
-                Log.d(TAG, "Error reading database");
-                e.printStackTrace();
-                return false;
-            } finally {
-                if (mWaypointsCursor != null){
-                    mWaypointsCursor.close();
-                }
+            if (!result.referenceValid){
+                Log.d(TAG, "Origin or Beta not available");
+                return;
             }
-        }
-
-        @Override
-        protected void onPostExecute(Boolean result){
-            if(!result){
-                Log.d(TAG, "ReadWaypointsFromDB AsyncTask Error");
-            } else{
-                myGridView.setmWapointLabels(mWaypointsLabels);
-                myGridView.setmWaypointsXs(mWaypointsXs);
-                myGridView.setmWapointsYs(mWaypointsYs);
+            originX = result.originX;
+            originY = result.originY;
+            myGridView.setOriginX(originX);
+            myGridView.setOriginY(originY);
+            if (result.originLatitude != originLatitude || result.originLongitude != originLongitude || result.beta != beta) {
+                originLatitude = result.originLatitude;
+                originLongitude = result.originLongitude;
+                beta = result.beta;
+                calculateTabletGridCoordinates();
             }
         }
     }
@@ -0,0 +1,625 @@
+package de.awi.floenavigation.grid;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.HashMap;
+
+import de.awi.floenavigation.helperclasses.DatabaseHelper;
+
+/**
+ * Loads everything {@link GridActivity} shows on the grid: the fixed stations, the mobile stations, the static stations, the waypoints
+ * and the origin and beta used to calculate the tablet position.
+ * <p>
+ *     Every table is read completely only once. Afterwards the loader remembers the highest version of the table it has seen in the
+ *     {@link DatabaseHelper#changeJournalTable} and on every call to {@link #load(SQLiteDatabase)} it only reads the journal entries above
+ *     it, joined with their rows. Each changed row is patched into the in-memory copy of its table and a deleted row is removed from it,
+ *     so the cost of a load grows with the number of rows changed since the last load and not with the size of the tables. A table is
+ *     read completely again if the Sync Classes have deleted journal entries above its version after a push, see
+ *     {@link DatabaseHelper#prunedVersion}. A new
+ *     {@link StationSnapshot.Layer} is only built if a row of the table has actually changed, otherwise the previous instance is returned.
+ *     The origin and beta are only read again if the journal shows a change of the base stations, the beta or the row of the origin.
+ * </p>
+ * <p>
+ *     The loader is kept while the app runs, so a restarted {@link GridActivity} does not read the tables again. It is only used by the
+ *     async tasks of {@link GridActivity}, which run one after the other; {@link #load(SQLiteDatabase)} is nevertheless synchronized.
+ * </p>
+ */
+final class GridDataLoader {
+
+    /**
+     * String for logging purpose
+     */
+    private static final String TAG = "GridDataLoader";
+
+    /**
+     * In-memory copy of the fixed stations
+     */
+    private final TableCopy fixedStations = new TableCopy(DatabaseHelper.fixedStationTable, DatabaseHelper.mmsi,
+            DatabaseHelper.stationName, true, null);
+    /**
+     * In-memory copy of the mobile stations whose grid coordinates have been calculated
+     */
+    private final TableCopy mobileStations = new TableCopy(DatabaseHelper.mobileStationTable, DatabaseHelper.mmsi,
+            DatabaseHelper.stationName, true, DatabaseHelper.isCalculated + " = " + DatabaseHelper.MOBILE_STATION_IS_CALCULATED);
+    /**
+     * In-memory copy of the static stations
+     */
+    private final TableCopy staticStations = new TableCopy(DatabaseHelper.staticStationListTable, DatabaseHelper.staticStationName,
+            DatabaseHelper.staticStationName, false, null);
+    /**
+     * In-memory copy of the waypoints
+     */
+    private final TableCopy waypoints = new TableCopy(DatabaseHelper.waypointsTable, DatabaseHelper.labelID,
+            DatabaseHelper.labelID, false, null);
+    /**
+     * Records the recent positions of the fixed stations
+     */
+    private final TrailRecorder fixedStationTrails = new TrailRecorder();
+    /**
+     * Records the recent positions of the mobile stations
+     */
+    private final TrailRecorder mobileStationTrails = new TrailRecorder();
+    /**
+     * Trails of the fixed stations as of the last load
+     */
+    private StationTrails fixedTrails = StationTrails.EMPTY;
+    /**
+     * Trails of the mobile stations as of the last load
+     */
+    private StationTrails mobileTrails = StationTrails.EMPTY;
+
+    /**
+     * Version of the {@link DatabaseHelper#baseStationTable} the origin mmsi was read at, or -1
+     */
+    private long baseStationVersion = -1;
+    /**
+     * Version of the row of the origin in the {@link DatabaseHelper#fixedStationTable} its position was read at, or -1
+     */
+    private long originVersion = -1;
+    /**
+     * Version of the {@link DatabaseHelper#betaTable} the beta was read at, or -1
+     */
+    private long betaVersion = -1;
+    /**
+     * mmsi of the origin, or -1 if it is unknown
+     */
+    private int originMMSI = -1;
+    /**
+     * <code>true</code> if the origin has been read from the {@link DatabaseHelper#fixedStationTable}
+     */
+    private boolean originValid = false;
+    /**
+     * <code>true</code> if the beta has been read from the {@link DatabaseHelper#betaTable}
+     */
+    private boolean betaValid = false;
+    /**
+     * Latitude of the origin
+     */
+    private double originLatitude;
+    /**
+     * Longitude of the origin
+     */
+    private double originLongitude;
+    /**
+     * x position of the origin on the grid in meters
+     */
+    private double originX;
+    /**
+     * y position of the origin on the grid in meters
+     */
+    private double originY;
+    /**
+     * Angle between the x-axis and the geographic longitudinal axis
+     */
+    private double beta;
+
+    /**
+     * Reads the rows changed since the last load and patches them into the in-memory copies of the tables.
+     * @param db database to read from
+     * @return the layers, trails and grid reference as of this load
+     * @throws android.database.SQLException if the database cannot be read. Rows read before the error are kept and are not read again.
+     */
+    synchronized Result load(SQLiteDatabase db){
+        Result result = new Result();
+        int changedRows = 0;
+
+        long startTime = System.nanoTime();
+        changedRows += fixedStations.load(db);
+        StationSnapshot.Layer previousFixedStations = fixedStations.layer;
+        result.fixedStations = fixedStations.toLayer();
+        if (result.fixedStations != previousFixedStations) {
+            fixedTrails = fixedStationTrails.record(result.fixedStations);
+        }
+        result.fixedTrails = fixedTrails;
+        result.loadNanos[RenderStats.FIXED_STATIONS] = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        changedRows += mobileStations.load(db);
+        StationSnapshot.Layer previousMobileStations = mobileStations.layer;
+        result.mobileStations = mobileStations.toLayer();
+        if (result.mobileStations != previousMobileStations) {
+            mobileTrails = mobileStationTrails.record(result.mobileStations);
+        }
+        result.mobileTrails = mobileTrails;
+        result.loadNanos[RenderStats.MOBILE_STATIONS] = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        changedRows += staticStations.load(db);
+        result.staticStations = staticStations.toLayer();
+        result.loadNanos[RenderStats.STATIC_STATIONS] = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        changedRows += waypoints.load(db);
+        result.waypoints = waypoints.toLayer();
+        result.loadNanos[RenderStats.WAYPOINTS] = System.nanoTime() - startTime;
+
+        loadReference(db);
+        result.referenceValid = originValid && betaValid;
+        result.originLatitude = originLatitude;
+        result.originLongitude = originLongitude;
+        result.originX = originX;
+        result.originY = originY;
+        result.beta = beta;
+
+        if (changedRows > 0) {
+            Log.d(TAG, "Rows changed: " + changedRows);
+        }
+        return result;
+    }
+
+    /**
+     * Reads the origin mmsi, the position of the origin and the beta again if their tables have changed since they were last read
+     */
+    private void loadReference(SQLiteDatabase db){
+        long version = tableVersion(db, DatabaseHelper.baseStationTable);
+        if (version != baseStationVersion) {
+            baseStationVersion = version;
+            originMMSI = readOriginMMSI(db);
+            originVersion = -1;
+        }
+
+        if (originMMSI == -1) {
+            originValid = false;
+        } else {
+            version = rowVersion(db, DatabaseHelper.fixedStationTable, String.valueOf(originMMSI));
+            if (version != originVersion) {
+                originVersion = version;
+                originValid = readOrigin(db);
+            }
+        }
+
+        version = tableVersion(db, DatabaseHelper.betaTable);
+        if (version != betaVersion) {
+            betaVersion = version;
+            betaValid = readBeta(db);
+        }
+    }
+
+    /**
+     * @return the mmsi of the origin from the {@link DatabaseHelper#baseStationTable}, or -1
+     */
+    private int readOriginMMSI(SQLiteDatabase db){
+        Cursor baseStationCursor = null;
+        try {
+            baseStationCursor = db.query(DatabaseHelper.baseStationTable,
+                    new String[] {DatabaseHelper.mmsi},
+                    DatabaseHelper.isOrigin + " = ?",
+                    new String[]{String.valueOf(DatabaseHelper.ORIGIN)},
+                    null, null, null);
+            if (baseStationCursor.getCount() != 1 || !baseStationCursor.moveToFirst()){
+                Log.d(TAG, "Error Reading from BaseStation Table");
+                return -1;
+            }
+            return baseStationCursor.getInt(baseStationCursor.getColumnIndex(DatabaseHelper.mmsi));
+        } finally {
+            if (baseStationCursor != null) {
+                baseStationCursor.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the position of the origin from the {@link DatabaseHelper#fixedStationTable}. The received position is used if it is newer
+     * than the predicted position.
+     * @return <code>true</code> if the origin has been read
+     */
+    private boolean readOrigin(SQLiteDatabase db){
+        Cursor fixedStationCursor = null;
+        try {
+            fixedStationCursor = db.query(DatabaseHelper.fixedStationTable,
+                    new String[] {DatabaseHelper.latitude, DatabaseHelper.longitude, DatabaseHelper.xPosition, DatabaseHelper.yPosition,
+                            DatabaseHelper.recvdLatitude, DatabaseHelper.recvdLongitude, DatabaseHelper.predictionTime, DatabaseHelper.updateTime},
+                    DatabaseHelper.mmsi +" = ? AND " + DatabaseHelper.isLocationReceived + " = ?",
+                    new String[] {String.valueOf(originMMSI), String.valueOf(DatabaseHelper.LOCATIONRECEIVED)},
+                    null, null, null);
+            if (fixedStationCursor.getCount() != 1 || !fixedStationCursor.moveToFirst()){
+                Log.d(TAG, "Error Reading Origin Latitude Longitude");
+                return false;
+            }
+            double updateTime = fixedStationCursor.getDouble(fixedStationCursor.getColumnIndexOrThrow(DatabaseHelper.updateTime));
+            double predictionTime = fixedStationCursor.getDouble(fixedStationCursor.getColumnIndexOrThrow(DatabaseHelper.predictionTime));
+            if (updateTime >= predictionTime) {
+                originLatitude = fixedStationCursor.getDouble(fixedStationCursor.getColumnIndex(DatabaseHelper.recvdLatitude));
+                originLongitude = fixedStationCursor.getDouble(fixedStationCursor.getColumnIndex(DatabaseHelper.recvdLongitude));
+            } else {
+                originLatitude = fixedStationCursor.getDouble(fixedStationCursor.getColumnIndex(DatabaseHelper.latitude));
+                originLongitude = fixedStationCursor.getDouble(fixedStationCursor.getColumnIndex(DatabaseHelper.longitude));
+            }
+            originX = fixedStationCursor.getDouble(fixedStationCursor.getColumnIndex(DatabaseHelper.xPosition));
+            originY = fixedStationCursor.getDouble(fixedStationCursor.getColumnIndex(DatabaseHelper.yPosition));
+            return true;
+        } finally {
+            if (fixedStationCursor != null) {
+                fixedStationCursor.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the beta from the {@link DatabaseHelper#betaTable}
+     * @return <code>true</code> if the beta has been read
+     */
+    private boolean readBeta(SQLiteDatabase db){
+        Cursor betaCursor = null;
+        try {
+            betaCursor = db.query(DatabaseHelper.betaTable,
+                    new String[]{DatabaseHelper.beta},
+                    null, null,
+                    null, null, null);
+            if (betaCursor.getCount() != 1 || !betaCursor.moveToFirst()) {
+                Log.d(TAG, "Error in Beta Table");
+                return false;
+            }
+            beta = betaCursor.getDouble(betaCursor.getColumnIndex(DatabaseHelper.beta));
+            return true;
+        } finally {
+            if (betaCursor != null) {
+                betaCursor.close();
+            }
+        }
+    }
+
+    /**
+     * @return the highest version of the given table in the {@link DatabaseHelper#changeJournalTable}, or 0 if it has no entries
+     */
+    private static long tableVersion(SQLiteDatabase db, String table){
+        Cursor versionCursor = null;
+        try {
+            versionCursor = db.rawQuery("SELECT MAX(_id) FROM " + DatabaseHelper.changeJournalTable +
+                    " WHERE " + DatabaseHelper.journalTableName + " = ?", new String[]{table});
+            return versionCursor.moveToFirst() ? versionCursor.getLong(0) : 0;
+        } finally {
+            if (versionCursor != null) {
+                versionCursor.close();
+            }
+        }
+    }
+
+    /**
+     * @return the highest version of the given table whose entry has been deleted from the {@link DatabaseHelper#changeJournalTable},
+     * or 0 if none has been deleted
+     */
+    private static long prunedVersion(SQLiteDatabase db, String table){
+        Cursor versionCursor = null;
+        try {
+            versionCursor = db.rawQuery("SELECT " + DatabaseHelper.prunedVersion + " FROM " + DatabaseHelper.syncStateTable +
+                    " WHERE " + DatabaseHelper.journalTableName + " = ?", new String[]{table});
+            return versionCursor.moveToFirst() ? versionCursor.getLong(0) : 0;
+        } finally {
+            if (versionCursor != null) {
+                versionCursor.close();
+            }
+        }
+    }
+
+    /**
+     * @return the version of the given row in the {@link DatabaseHelper#changeJournalTable}, or 0 if it has no entry
+     */
+    private static long rowVersion(SQLiteDatabase db, String table, String key){
+        Cursor versionCursor = null;
+        try {
+            versionCursor = db.rawQuery("SELECT _id FROM " + DatabaseHelper.changeJournalTable +
+                    " WHERE " + DatabaseHelper.journalTableName + " = ? AND " + DatabaseHelper.rowKey + " = ?", new String[]{table, key});
+            return versionCursor.moveToFirst() ? versionCursor.getLong(0) : 0;
+        } finally {
+            if (versionCursor != null) {
+                versionCursor.close();
+            }
+        }
+    }
+
+    /**
+     * Everything shown on the grid as of one load. It is filled by {@link #load(SQLiteDatabase)} and must not be modified afterwards.
+     */
+    static final class Result {
+        /**
+         * Fixed stations; the same instance as on the previous load if none has changed
+         */
+        StationSnapshot.Layer fixedStations;
+        /**
+         * Mobile stations; the same instance as on the previous load if none has changed
+         */
+        StationSnapshot.Layer mobileStations;
+        /**
+         * Static stations; the same instance as on the previous load if none has changed
+         */
+        StationSnapshot.Layer staticStations;
+        /**
+         * Waypoints; the same instance as on the previous load if none has changed
+         */
+        StationSnapshot.Layer waypoints;
+        /**
+         * Trails of the fixed stations
+         */
+        StationTrails fixedTrails;
+        /**
+         * Trails of the mobile stations
+         */
+        StationTrails mobileTrails;
+        /**
+         * <code>true</code> if the origin and the beta below have been read
+         */
+        boolean referenceValid;
+        /**
+         * Latitude of the origin
+         */
+        double originLatitude;
+        /**
+         * Longitude of the origin
+         */
+        double originLongitude;
+        /**
+         * x position of the origin on the grid in meters
+         */
+        double originX;
+        /**
+         * y position of the origin on the grid in meters
+         */
+        double originY;
+        /**
+         * Angle between the x-axis and the geographic longitudinal axis
+         */
+        double beta;
+        /**
+         * Time in nanoseconds taken to load each category of {@link RenderStats}
+         */
+        final long[] loadNanos = new long[RenderStats.CATEGORY_COUNT];
+    }
+
+    /**
+     * In-memory copy of the position and name of every row of one table, stored in growable parallel arrays
+     * with a map from the key of each row to its index
+     */
+    private static final class TableCopy {
+        /**
+         * Table which is copied
+         */
+        private final String table;
+        /**
+         * Column which identifies a row; the same column as the one given to the journal triggers of the table
+         */
+        private final String keyColumn;
+        /**
+         * Column of the station name or waypoint label
+         */
+        private final String nameColumn;
+        /**
+         * <code>true</code> if the key is the mmsi of the row
+         */
+        private final boolean hasMMSIs;
+        /**
+         * Condition a row must fulfil to be shown, or <code>null</code>
+         */
+        private final String selection;
+
+        /**
+         * Highest version of the table which has been read, or -1 if the table has not been read yet
+         */
+        private long version = -1;
+        /**
+         * Number of rows
+         */
+        private int size = 0;
+        /**
+         * Key of each row
+         */
+        private String[] keys = new String[16];
+        /**
+         * x position of each row on the grid in meters
+         */
+        private float[] xs = new float[16];
+        /**
+         * y position of each row on the grid in meters
+         */
+        private float[] ys = new float[16];
+        /**
+         * mmsi of each row, or <code>null</code>
+         */
+        private int[] mmsis;
+        /**
+         * Station name or waypoint label of each row
+         */
+        private String[] names = new String[16];
+        /**
+         * Index of each key in the arrays
+         */
+        private final HashMap<String, Integer> indices = new HashMap<>();
+        /**
+         * Layer built from the arrays by {@link #toLayer()}
+         */
+        private StationSnapshot.Layer layer = StationSnapshot.Layer.EMPTY;
+        /**
+         * <code>true</code> if the arrays have changed since {@link #layer} was built
+         */
+        private boolean changed = false;
+
+        private TableCopy(String table, String keyColumn, String nameColumn, boolean hasMMSIs, String selection){
+            this.table = table;
+            this.keyColumn = keyColumn;
+            this.nameColumn = nameColumn;
+            this.hasMMSIs = hasMMSIs;
+            this.selection = selection;
+            this.mmsis = hasMMSIs ? new int[16] : null;
+        }
+
+        /**
+         * Reads the whole table on the first call and only the rows changed since the previous call afterwards, unless journal
+         * entries the copy has not seen have been deleted since
+         * @return the number of rows which have been read
+         */
+        private int load(SQLiteDatabase db){
+            if (version == -1 || prunedVersion(db, table) > version) {
+                return loadAll(db);
+            }
+            Cursor changeCursor = null;
+            try {
+                changeCursor = db.rawQuery("SELECT j._id, j." + DatabaseHelper.rowKey +
+                        ", t." + nameColumn + ", t." + DatabaseHelper.xPosition + ", t." + DatabaseHelper.yPosition +
+                        ", t." + keyColumn + " IS NOT NULL" +
+                        " FROM " + DatabaseHelper.changeJournalTable + " j LEFT JOIN " + table + " t ON t." + keyColumn + " = j." + DatabaseHelper.rowKey +
+                        (selection != null ? " AND t." + selection : "") +
+                        " WHERE j." + DatabaseHelper.journalTableName + " = ? AND j._id > ? ORDER BY j._id",
+                        new String[]{table, String.valueOf(version)});
+                int rows = 0;
+                while (changeCursor.moveToNext()) {
+                    String key = changeCursor.getString(1);
+                    if (changeCursor.getInt(5) != 0) {
+                        put(key, changeCursor.getString(2), (float) changeCursor.getDouble(3), (float) changeCursor.getDouble(4));
+                    } else {
+                        remove(key);
+                    }
+                    version = changeCursor.getLong(0);
+                    rows++;
+                }
+                return rows;
+            } finally {
+                if (changeCursor != null) {
+                    changeCursor.close();
+                }
+            }
+        }
+
+        /**
+         * Reads every row of the table. The version is read first, so a row changed while the table is read is read again on the next call.
+         * @return the number of rows which have been read
+         */
+        private int loadAll(SQLiteDatabase db){
+            long tableVersion = tableVersion(db, table);
+            Cursor tableCursor = null;
+            try {
+                tableCursor = db.query(table, new String[]{keyColumn, nameColumn, DatabaseHelper.xPosition, DatabaseHelper.yPosition},
+                        selection,
+                        null,
+                        null, null, null, null);
+                size = 0;
+                indices.clear();
+                while (tableCursor.moveToNext()) {
+                    put(tableCursor.getString(0), tableCursor.getString(1), (float) tableCursor.getDouble(2), (float) tableCursor.getDouble(3));
+                }
+                changed = true;
+                version = tableVersion;
+                return size;
+            } finally {
+                if (tableCursor != null) {
+                    tableCursor.close();
+                }
+            }
+        }
+
+        /**
+         * Adds a row or replaces the row with the same key
+         */
+        private void put(String key, String name, float x, float y){
+            Integer index = indices.get(key);
+            int i;
+            if (index != null) {
+                i = index;
+                if (xs[i] == x && ys[i] == y && (name == null ? names[i] == null : name.equals(names[i]))) {
+                    return;
+                }
+            } else {
+                if (size == keys.length) {
+                    grow();
+                }
+                i = size++;
+                keys[i] = key;
+                if (hasMMSIs) {
+                    mmsis[i] = Integer.parseInt(key);
+                }
+                indices.put(key, i);
+            }
+            xs[i] = x;
+            ys[i] = y;
+            names[i] = name;
+            changed = true;
+        }
+
+        /**
+         * Removes the row with the given key by moving the last row into its place
+         */
+        private void remove(String key){
+            Integer index = indices.remove(key);
+            if (index == null) {
+                return;
+            }
+            int i = index;
+            int last = --size;
+            if (i != last) {
+                keys[i] = keys[last];
+                xs[i] = xs[last];
+                ys[i] = ys[last];
+                names[i] = names[last];
+                if (hasMMSIs) {
+                    mmsis[i] = mmsis[last];
+                }
+                indices.put(keys[i], i);
+            }
+            keys[last] = null;
+            names[last] = null;
+            changed = true;
+        }
+
+        private void grow(){
+            int capacity = keys.length * 2;
+            String[] newKeys = new String[capacity];
+            float[] newXs = new float[capacity];
+            float[] newYs = new float[capacity];
+            String[] newNames = new String[capacity];
+            System.arraycopy(keys, 0, newKeys, 0, size);
+            System.arraycopy(xs, 0, newXs, 0, size);
+            System.arraycopy(ys, 0, newYs, 0, size);
+            System.arraycopy(names, 0, newNames, 0, size);
+            keys = newKeys;
+            xs = newXs;
+            ys = newYs;
+            names = newNames;
+            if (hasMMSIs) {
+                int[] newMMSIs = new int[capacity];
+                System.arraycopy(mmsis, 0, newMMSIs, 0, size);
+                mmsis = newMMSIs;
+            }
+        }
+
+        /**
+         * @return a new layer with the rows if they have changed since the last call, otherwise the layer of the last call
+         */
+        private StationSnapshot.Layer toLayer(){
+            if (!changed) {
+                return layer;
+            }
+            StationSnapshot.Layer newLayer = new StationSnapshot.Layer(size, hasMMSIs);
+            System.arraycopy(xs, 0, newLayer.xs, 0, size);
+            System.arraycopy(ys, 0, newLayer.ys, 0, size);
+            System.arraycopy(names, 0, newLayer.names, 0, size);
+            if (hasMMSIs) {
+                System.arraycopy(mmsis, 0, newLayer.mmsis, 0, size);
+            }
+            newLayer.index();
+            layer = newLayer;
+            changed = false;
+            return layer;
+        }
+    }
+}
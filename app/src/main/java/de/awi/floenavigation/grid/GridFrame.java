@@ -0,0 +1,124 @@
+package de.awi.floenavigation.grid;
+
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * Copy of everything {@link GridRenderer} needs to draw one frame of the grid.
+ * <p>
+ *     A frame is captured by {@link MapView} on the UI thread after a gesture, a new tablet position or a new {@link StationSnapshot}
+ *     and handed over as a whole to the thread drawing the grid. The viewport of {@link MapView} keeps changing while a frame
+ *     is drawn, so it is copied instead of shared, and the render thread never reads a field of {@link MapView} or {@link GridActivity}.
+ * </p>
+ * <p>
+ *     The frames are reused so that drawing allocates nothing: {@link MapView} captures every frame into the same instance with
+ *     {@link #set(RectF, Rect, int, int, double, double, boolean, boolean, boolean, boolean, boolean, StationSnapshot)}, and
+ *     {@link GridSurfaceView} copies it into its own buffers with {@link #set(GridFrame)}. A frame is only read and written by one
+ *     thread at a time.
+ * </p>
+ */
+final class GridFrame {
+
+    /**
+     * Visible part of the grid in meters. Its top is the smaller y value.
+     */
+    final RectF viewport = new RectF();
+    /**
+     * Area of the view in pixels in which the grid is drawn, excluding the axis labels
+     */
+    final Rect contentRect = new Rect();
+    /**
+     * Width of the view in pixels
+     */
+    int width;
+    /**
+     * Height of the view in pixels
+     */
+    int height;
+    /**
+     * Tablet x position on the grid
+     */
+    double tabletX;
+    /**
+     * Tablet y position on the grid
+     */
+    double tabletY;
+    /**
+     * <code>true</code> if the fixed stations are drawn
+     */
+    boolean showFixedStations;
+    /**
+     * <code>true</code> if the mobile stations are drawn
+     */
+    boolean showMobileStations;
+    /**
+     * <code>true</code> if the static stations are drawn
+     */
+    boolean showStaticStations;
+    /**
+     * <code>true</code> if the waypoints are drawn
+     */
+    boolean showWaypoints;
+    /**
+     * <code>true</code> if the trails of the shown fixed and mobile stations are drawn
+     */
+    boolean showTrails;
+    /**
+     * Stations and waypoints drawn on the grid
+     */
+    StationSnapshot snapshot;
+
+    /**
+     * Captures a frame
+     * @param viewport visible part of the grid in meters, copied
+     * @param contentRect area of the view in pixels in which the grid is drawn, copied
+     * @return this frame
+     */
+    GridFrame set(RectF viewport, Rect contentRect, int width, int height, double tabletX, double tabletY,
+                  boolean showFixedStations, boolean showMobileStations, boolean showStaticStations, boolean showWaypoints,
+                  boolean showTrails, StationSnapshot snapshot){
+        this.viewport.set(viewport);
+        this.contentRect.set(contentRect);
+        this.width = width;
+        this.height = height;
+        this.tabletX = tabletX;
+        this.tabletY = tabletY;
+        this.showFixedStations = showFixedStations;
+        this.showMobileStations = showMobileStations;
+        this.showStaticStations = showStaticStations;
+        this.showWaypoints = showWaypoints;
+        this.showTrails = showTrails;
+        this.snapshot = snapshot;
+        return this;
+    }
+
+    /**
+     * Copies another frame into this one
+     * @param frame frame to copy
+     */
+    void set(GridFrame frame){
+        set(frame.viewport, frame.contentRect, frame.width, frame.height, frame.tabletX, frame.tabletY, frame.showFixedStations,
+                frame.showMobileStations, frame.showStaticStations, frame.showWaypoints, frame.showTrails, frame.snapshot);
+    }
+
+    /**
+     * Computes the pixel offset for the given X chart value. This may be outside the view bounds.
+     */
+    double getDrawX(double x) {
+        return contentRect.left + contentRect.width() * (x - viewport.left) / viewport.width();
+    }
+
+    /**
+     * Computes the pixel offset for the given Y chart value. This may be outside the view bounds.
+     */
+    double getDrawY(double y) {
+        return contentRect.bottom - contentRect.height() * (y - viewport.top) / viewport.height();
+    }
+
+    /**
+     * Computes the number of meters on the grid covered by one pixel of the content area, along the more zoomed out axis.
+     */
+    float getMetersPerPixel() {
+        return Math.max(viewport.width() / contentRect.width(), viewport.height() / contentRect.height());
+    }
+}
@@ -0,0 +1,357 @@
+package de.awi.floenavigation.grid;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.Log;
+
+import java.util.Arrays;
+
+import de.awi.floenavigation.helperclasses.DatabaseHelper;
+
+/**
+ * Draws one {@link GridFrame} of the grid: the axes with their labels, the tablet, the stations, the waypoints and the border of
+ * the content area.
+ * <p>
+ *     A renderer is confined to the thread which draws with it. {@link MapView} draws with its own renderer on the UI thread, and
+ *     {@link GridSurfaceView} with a second one on its render thread, so the paints, the buffers and the {@link SymbolAtlas} of a
+ *     renderer are never shared between threads and need no locking.
+ * </p>
+ */
+final class GridRenderer {
+
+    /**
+     * String for logging purpose
+     */
+    private static final String TAG = "GridRenderer";
+    /**
+     * Width of the trail lines in pixels
+     */
+    private static final float TRAIL_THICKNESS = 2;
+    /**
+     * Opacity of the trail lines, so that the markers drawn on top stay visible
+     */
+    private static final int TRAIL_ALPHA = 128;
+    /**
+     * Distance in pixels outside the content area within which a marker is still drawn, as its symbol may reach into the content
+     * area. It is the size of the largest symbol.
+     */
+    private static final int CULL_MARGIN = MapView.StarSize;
+
+    /**
+     * Paint for the border of the content area
+     */
+    private final Paint mAxisPaint;
+    /**
+     * Paint for the number of stations drawn on a cluster of mobile stations
+     */
+    private final Paint mClusterTextPaint;
+    /**
+     * Paint for the trails of the fixed stations
+     */
+    private final Paint mFixedTrailPaint;
+    /**
+     * Paint for the trails of the mobile stations
+     */
+    private final Paint mMobileTrailPaint;
+    /**
+     * Height of an axis label in pixels
+     */
+    private final int mLabelHeight;
+    /**
+     * Width of the widest expected axis label in pixels
+     */
+    private final int mMaxLabelWidth;
+    /**
+     * Pre-rendered symbols of the tablet, the mothership, the stations and the waypoints
+     */
+    private SymbolAtlas symbolAtlas;
+    /**
+     * Clusters of the mobile stations at the zoom level of the last frame
+     */
+    private final StationClusters mobileStationClusters = new StationClusters();
+    /**
+     * Simplified trails of the fixed stations
+     */
+    private final TrailLines fixedTrailLines = new TrailLines();
+    /**
+     * Simplified trails of the mobile stations
+     */
+    private final TrailLines mobileTrailLines = new TrailLines();
+
+    /**
+     * Grid lines and axis labels
+     */
+    private final AxisLayer axisLayer;
+    /**
+     * Buffer for the number of stations of a cluster. It is defined as a field to avoid allocation during draw calls.
+     */
+    private final char[] mLabelBuffer = new char[100];
+    /**
+     * Statistics the frames are reported to
+     */
+    private final RenderStats stats;
+    /**
+     * Markers drawn per category in the current frame
+     */
+    private final int[] drawnMarkers = new int[RenderStats.CATEGORY_COUNT];
+    /**
+     * Markers outside the content area per category in the current frame
+     */
+    private final int[] culledMarkers = new int[RenderStats.CATEGORY_COUNT];
+    /**
+     * Indices of the points of a layer returned by {@link #queryVisible(GridFrame, StationSnapshot.Layer)}, grown to the largest layer
+     */
+    private int[] visiblePoints = new int[0];
+
+    GridRenderer(float labelTextSize, int labelTextColor, int labelSeparation,
+                 float gridThickness, int gridColor, float axisThickness, int axisColor, RenderStats stats){
+        this.stats = stats;
+        Paint labelTextPaint = new Paint();
+        labelTextPaint.setAntiAlias(true);
+        labelTextPaint.setTextSize(labelTextSize);
+        labelTextPaint.setColor(labelTextColor);
+        mLabelHeight = (int) Math.abs(labelTextPaint.getFontMetrics().top);
+        mMaxLabelWidth = (int) labelTextPaint.measureText("0000");
+
+        Paint gridPaint = new Paint();
+        gridPaint.setStrokeWidth(gridThickness);
+        gridPaint.setColor(gridColor);
+        gridPaint.setStyle(Paint.Style.STROKE);
+        axisLayer = new AxisLayer(labelTextPaint, gridPaint, labelSeparation, mLabelHeight, mMaxLabelWidth);
+
+        mAxisPaint = new Paint();
+        mAxisPaint.setStrokeWidth(axisThickness);
+        mAxisPaint.setColor(axisColor);
+        mAxisPaint.setStyle(Paint.Style.STROKE);
+
+        mClusterTextPaint = new Paint();
+        mClusterTextPaint.setAntiAlias(true);
+        mClusterTextPaint.setColor(Color.WHITE);
+        mClusterTextPaint.setTextAlign(Paint.Align.CENTER);
+        mClusterTextPaint.setTextSize(MapView.ClusterSize);
+
+        mFixedTrailPaint = new Paint();
+        mFixedTrailPaint.setAntiAlias(true);
+        mFixedTrailPaint.setStrokeWidth(TRAIL_THICKNESS);
+        mFixedTrailPaint.setColor(Color.argb(TRAIL_ALPHA, 0, 160, 0));
+
+        mMobileTrailPaint = new Paint();
+        mMobileTrailPaint.setAntiAlias(true);
+        mMobileTrailPaint.setStrokeWidth(TRAIL_THICKNESS);
+        mMobileTrailPaint.setColor(Color.argb(TRAIL_ALPHA, 0, 0, 255));
+    }
+
+    /**
+     * @return height of an axis label in pixels
+     */
+    int getLabelHeight(){
+        return mLabelHeight;
+    }
+
+    /**
+     * @return width of the widest expected axis label in pixels
+     */
+    int getMaxLabelWidth(){
+        return mMaxLabelWidth;
+    }
+
+    /**
+     * Releases the bitmaps of the {@link SymbolAtlas} and the {@link AxisLayer}. They are rendered again by the next call to
+     * {@link #draw(Canvas, GridFrame)}.
+     */
+    void release(){
+        if (symbolAtlas != null) {
+            symbolAtlas.recycle();
+        }
+        axisLayer.release();
+    }
+
+    /**
+     * Draws the axes and labels, then the trails, the tablet, the fixed, mobile and static stations and the waypoints of the frame
+     * clipped to its content area, and finally the border of the content area.
+     * <p>
+     *     Each point is drawn by copying its symbol from {@link #symbolAtlas} at the screen position calculated by
+     *     {@link GridFrame#getDrawX(double)} and {@link GridFrame#getDrawY(double)}. The mothership is drawn as a red star.
+     *     When the grid is zoomed out, mobile stations which are close to each other on the screen are drawn as a single cluster
+     *     showing the number of its stations, as calculated by {@link StationClusters}. The mothership is never clustered.
+     *     The trails of each category are drawn with a single call by {@link TrailLines}. Markers outside the content area are
+     *     culled. The draw time and the number of drawn and culled markers are reported to {@link RenderStats}.
+     *     Apart from growing its buffers, drawing a frame does not allocate any objects.
+     * </p>
+     * @param canvas canvas to draw on
+     * @param frame state of the grid to draw
+     */
+    void draw(Canvas canvas, GridFrame frame){
+        long startNanos = System.nanoTime();
+        Arrays.fill(drawnMarkers, 0);
+        Arrays.fill(culledMarkers, 0);
+        if (symbolAtlas == null || symbolAtlas.isRecycled()) {
+            symbolAtlas = new SymbolAtlas(MapView.CircleSize, MapView.TabTriangleWidth, MapView.TabTriangleHeight,
+                    MapView.WayTriangleWidth, MapView.WayTriangleHeight, MapView.StarSize, MapView.ClusterSize);
+        }
+
+        // Draws axes and text labels
+        axisLayer.draw(canvas, frame);
+
+        // Clips the next few drawing operations to the content area
+        int clipRestoreCount = canvas.save();
+        canvas.clipRect(frame.contentRect);
+
+        try {
+            //Draw Tablet Position
+            symbolAtlas.draw(canvas, SymbolAtlas.TABLET, (float) frame.getDrawX(frame.tabletX), (float) frame.getDrawY(frame.tabletY));
+
+            StationSnapshot snapshot = frame.snapshot;
+
+            //Trails are drawn below the markers
+            if (frame.showTrails) {
+                if (frame.showFixedStations) {
+                    fixedTrailLines.draw(canvas, mFixedTrailPaint, snapshot.fixedTrails, frame);
+                }
+                if (frame.showMobileStations) {
+                    mobileTrailLines.draw(canvas, mMobileTrailPaint, snapshot.mobileTrails, frame);
+                }
+            }
+
+            //For Loop Fixed Station
+            if (frame.showFixedStations) {
+                drawLayer(canvas, frame, snapshot.fixedStations, SymbolAtlas.FIXED_STATION, RenderStats.FIXED_STATIONS);
+            }
+
+            //For Loop Mobile Station
+            if (frame.showMobileStations) {
+                StationSnapshot.Layer mobileStations = snapshot.mobileStations;
+                mobileStationClusters.update(snapshot, frame.getMetersPerPixel());
+                int visibleCount = queryVisible(frame, mobileStations);
+                culledMarkers[RenderStats.MOBILE_STATIONS] += mobileStations.size - visibleCount;
+                for (int k = 0; k < visibleCount; k++) {
+                    int i = visiblePoints[k];
+                    if (mobileStationClusters.clusterOf[i] != StationClusters.NOT_CLUSTERED) {
+                        continue;
+                    }
+                    float drawX = (float) frame.getDrawX(mobileStations.xs[i]);
+                    float drawY = (float) frame.getDrawY(mobileStations.ys[i]);
+                    drawnMarkers[RenderStats.MOBILE_STATIONS]++;
+                    if(mobileStations.mmsis[i] != DatabaseHelper.MOTHER_SHIP_MMSI) {
+                        symbolAtlas.draw(canvas, SymbolAtlas.MOBILE_STATION, drawX, drawY);
+                    } else{
+                        symbolAtlas.draw(canvas, SymbolAtlas.MOTHER_SHIP, drawX, drawY);
+                    }
+                }
+                float textOffset = mClusterTextPaint.getTextSize() / 3;
+                for (int c = 0; c < mobileStationClusters.clusterCount; c++) {
+                    if (mobileStationClusters.sizes[c] < 2) {
+                        continue;
+                    }
+                    float drawX = (float) frame.getDrawX(mobileStationClusters.xs[c]);
+                    float drawY = (float) frame.getDrawY(mobileStationClusters.ys[c]);
+                    if (!isVisible(frame, drawX, drawY)) {
+                        culledMarkers[RenderStats.MOBILE_STATIONS]++;
+                        continue;
+                    }
+                    drawnMarkers[RenderStats.MOBILE_STATIONS]++;
+                    symbolAtlas.draw(canvas, SymbolAtlas.MOBILE_CLUSTER, drawX, drawY);
+                    int labelLength = formatFloat(mLabelBuffer, mobileStationClusters.sizes[c], 0);
+                    canvas.drawText(mLabelBuffer, mLabelBuffer.length - labelLength, labelLength, drawX, drawY + textOffset, mClusterTextPaint);
+                }
+            }
+
+            //For Loop Static Station
+            if (frame.showStaticStations) {
+                drawLayer(canvas, frame, snapshot.staticStations, SymbolAtlas.STATIC_STATION, RenderStats.STATIC_STATIONS);
+            }
+
+            //For Loop Waypoint
+            if (frame.showWaypoints) {
+                drawLayer(canvas, frame, snapshot.waypoints, SymbolAtlas.WAYPOINT, RenderStats.WAYPOINTS);
+            }
+        } catch(NullPointerException e){
+            e.printStackTrace();
+            Log.d(TAG, "Null Pointer Exception");
+        }
+
+        // Removes clipping rectangle
+        canvas.restoreToCount(clipRestoreCount);
+
+        // Draws chart container
+        canvas.drawRect(frame.contentRect, mAxisPaint);
+
+        stats.onFrame(System.nanoTime() - startNanos, drawnMarkers, culledMarkers);
+    }
+
+    /**
+     * Draws every point of the layer which is within the content area with the given symbol
+     * @param category category of the layer in {@link RenderStats}
+     */
+    private void drawLayer(Canvas canvas, GridFrame frame, StationSnapshot.Layer layer, int symbol, int category){
+        int visibleCount = queryVisible(frame, layer);
+        for (int k = 0; k < visibleCount; k++) {
+            int i = visiblePoints[k];
+            symbolAtlas.draw(canvas, symbol, (float) frame.getDrawX(layer.xs[i]), (float) frame.getDrawY(layer.ys[i]));
+        }
+        drawnMarkers[category] += visibleCount;
+        culledMarkers[category] += layer.size - visibleCount;
+    }
+
+    /**
+     * Finds the points of the layer whose symbol may overlap the content area with the {@link SpatialIndex} of the layer,
+     * so the points far outside the viewport are never visited.
+     * @return the number of points, whose indices are written to {@link #visiblePoints}
+     */
+    private int queryVisible(GridFrame frame, StationSnapshot.Layer layer){
+        if (visiblePoints.length < layer.size) {
+            visiblePoints = new int[layer.size];
+        }
+        float margin = CULL_MARGIN * frame.getMetersPerPixel();
+        return layer.index().query(frame.viewport.left - margin, frame.viewport.top - margin,
+                frame.viewport.right + margin, frame.viewport.bottom + margin, visiblePoints);
+    }
+
+    /**
+     * @return <code>true</code> if a symbol at the given screen position may overlap the content area
+     */
+    private static boolean isVisible(GridFrame frame, float drawX, float drawY){
+        return drawX >= frame.contentRect.left - CULL_MARGIN && drawX <= frame.contentRect.right + CULL_MARGIN
+                && drawY >= frame.contentRect.top - CULL_MARGIN && drawY <= frame.contentRect.bottom + CULL_MARGIN;
+    }
+
+    private static final int POW10[] = {1, 10, 100, 1000, 10000, 100000, 1000000};
+    /**
+     * Formats a float value to the given number of decimals. Returns the length of the string.
+     * The string begins at out.length - [return value].
+     */
+    static int formatFloat(final char[] out, float val, int digits) {
+        boolean negative = false;
+        if (val == 0) {
+            out[out.length - 1] = '0';
+            return 1;
+        }
+        if (val < 0) {
+            negative = true;
+            val = -val;
+        }
+        if (digits > POW10.length) {
+            digits = POW10.length - 1;
+        }
+        val *= POW10[digits];
+        long lval = Math.round(val);
+        int index = out.length - 1;
+        int charCount = 0;
+        while (lval != 0 || charCount < (digits + 1)) {
+            int digit = (int) (lval % 10);
+            lval = lval / 10;
+            out[index--] = (char) (digit + '0');
+            charCount++;
+            if (charCount == digits) {
+                out[index--] = '.';
+                charCount++;
+            }
+        }
+        if (negative) {
+            out[index--] = '-';
+            charCount++;
+        }
+        return charCount;
+    }
+}
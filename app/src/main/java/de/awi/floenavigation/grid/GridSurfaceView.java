@@ -0,0 +1,234 @@
+package de.awi.floenavigation.grid;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Optional rendering backend of {@link MapView} which draws the grid on a dedicated render thread instead of the UI thread.
+ * <p>
+ *     The surface lies directly behind {@link MapView}, which keeps handling the touch events, the gestures and the bubble dialog
+ *     box. Whenever {@link MapView} would have drawn a frame, it captures a {@link GridFrame} and hands it over with
+ *     {@link #requestRender(GridFrame)}. The hand over is lock free and allocates nothing: the frame is copied into one of three
+ *     {@link GridFrame} buffers, one written by the UI thread, one drawn by the render thread and the latest complete frame between
+ *     them, which the two threads swap with their own buffer through an {@link AtomicInteger}. The render thread is only woken up if
+ *     it does not already have a frame pending. Frames which are replaced before they are drawn are never drawn.
+ * </p>
+ * <p>
+ *     The render thread paces its frames with its own {@link Choreographer}, so it draws at most one frame per vsync however many
+ *     frames are requested. It is started when the surface is created and stopped before {@link #surfaceDestroyed(SurfaceHolder)}
+ *     returns, so the surface is never drawn on after it has been destroyed.
+ * </p>
+ */
+public class GridSurfaceView extends SurfaceView implements SurfaceHolder.Callback {
+
+    /**
+     * String for logging purpose
+     */
+    private static final String TAG = "GridSurfaceView";
+    /**
+     * Name of the render thread
+     */
+    private static final String RENDER_THREAD_NAME = "GridRenderThread";
+    /**
+     * Maximum time in msecs to wait for the render thread to finish when the surface is destroyed
+     */
+    private static final long RENDER_THREAD_JOIN_TIMEOUT = 1000;
+    /**
+     * Color the surface is cleared with before each frame
+     */
+    private static final int BACKGROUND_COLOR = Color.WHITE;
+
+    /**
+     * Bits of {@link #latestBuffer} holding the index of the buffer in {@link #buffers}
+     */
+    private static final int BUFFER_INDEX = 0x3;
+    /**
+     * Bit of {@link #latestBuffer} set if the buffer holds a frame the render thread has not taken yet
+     */
+    private static final int BUFFER_FRESH = 0x4;
+
+    /**
+     * Frames requested by {@link MapView}, triple buffered between the UI thread and the render thread
+     */
+    private final GridFrame[] buffers = {new GridFrame(), new GridFrame(), new GridFrame()};
+    /**
+     * Index of the buffer the next frame is copied into. Only used on the UI thread.
+     */
+    private int writeBuffer = 0;
+    /**
+     * Index of the buffer holding the latest complete frame, and {@link #BUFFER_FRESH} if it has not been taken by the render thread
+     */
+    private final AtomicInteger latestBuffer = new AtomicInteger(1);
+    /**
+     * Index of the buffer drawn by the render thread. Only used on the render thread.
+     */
+    private int drawBuffer = 2;
+    /**
+     * <code>true</code> once a frame has been requested
+     */
+    private volatile boolean hasFrame = false;
+    /**
+     * <code>true</code> if the render thread has been asked to draw the latest frame and has not started drawing it yet
+     */
+    private final AtomicBoolean frameRequested = new AtomicBoolean(false);
+    /**
+     * Renderer used only on the render thread
+     */
+    private GridRenderer renderer;
+    /**
+     * Thread drawing the grid while the surface exists, or <code>null</code>
+     */
+    private HandlerThread renderThread;
+    /**
+     * Handler of {@link #renderThread}, or <code>null</code> while the surface does not exist. Only used on the UI thread.
+     */
+    private Handler renderHandler;
+    /**
+     * Number of frames drawn by the render thread
+     */
+    private volatile long framesRendered = 0;
+
+    /**
+     * Runs on the render thread and draws the latest frame at the next vsync
+     */
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            frameRequested.set(false);
+            if ((latestBuffer.get() & BUFFER_FRESH) != 0) {
+                drawBuffer = latestBuffer.getAndSet(drawBuffer) & BUFFER_INDEX;
+            }
+            drawFrame(buffers[drawBuffer]);
+        }
+    };
+
+    /**
+     * Runs on the render thread and waits for the next vsync of its own {@link Choreographer}
+     */
+    private final Runnable scheduleFrame = new Runnable() {
+        @Override
+        public void run() {
+            Choreographer.getInstance().postFrameCallback(frameCallback);
+        }
+    };
+
+    public GridSurfaceView(Context context) {
+        this(context, null);
+    }
+
+    public GridSurfaceView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        getHolder().addCallback(this);
+    }
+
+    /**
+     * Sets the renderer used by the render thread. Must be called before the surface is created.
+     * @param renderer renderer which is not used by any other thread
+     */
+    void setRenderer(GridRenderer renderer) {
+        this.renderer = renderer;
+    }
+
+    /**
+     * Hands a frame over to the render thread. Must be called on the UI thread.
+     * @param frame frame to draw at the next vsync of the render thread, which is copied and can be reused by the caller
+     */
+    void requestRender(GridFrame frame) {
+        buffers[writeBuffer].set(frame);
+        writeBuffer = latestBuffer.getAndSet(writeBuffer | BUFFER_FRESH) & BUFFER_INDEX;
+        hasFrame = true;
+        scheduleRender();
+    }
+
+    /**
+     * @return number of frames drawn by the render thread since the view was created
+     */
+    public long getFramesRendered() {
+        return framesRendered;
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        renderThread = new HandlerThread(RENDER_THREAD_NAME, Process.THREAD_PRIORITY_DISPLAY);
+        renderThread.start();
+        renderHandler = new Handler(renderThread.getLooper());
+        frameRequested.set(false);
+        Log.d(TAG, "Render thread started");
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        scheduleRender();
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        if (renderHandler == null) {
+            return;
+        }
+        Handler handler = renderHandler;
+        renderHandler = null;
+        handler.removeCallbacksAndMessages(null);
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                Choreographer.getInstance().removeFrameCallback(frameCallback);
+                if (renderer != null) {
+                    renderer.release();
+                }
+                Looper.myLooper().quit();
+            }
+        });
+        try {
+            renderThread.join(RENDER_THREAD_JOIN_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Log.d(TAG, "Interrupted while stopping the render thread");
+        }
+        renderThread = null;
+        Log.d(TAG, "Render thread stopped after " + framesRendered + " frames");
+    }
+
+    /**
+     * Wakes up the render thread if there is a frame to draw and it has not been woken up yet
+     */
+    private void scheduleRender() {
+        if (renderHandler != null && hasFrame && frameRequested.compareAndSet(false, true)) {
+            renderHandler.post(scheduleFrame);
+        }
+    }
+
+    /**
+     * Draws a frame on the surface. Runs on the render thread.
+     */
+    private void drawFrame(GridFrame frame) {
+        if (frame.snapshot == null || renderer == null) {
+            return;
+        }
+        SurfaceHolder holder = getHolder();
+        Canvas canvas = holder.lockCanvas();
+        if (canvas == null) {
+            return;
+        }
+        try {
+            canvas.drawColor(BACKGROUND_COLOR);
+            renderer.draw(canvas, frame);
+            framesRendered++;
+        } finally {
+            holder.unlockCanvasAndPost(canvas);
+        }
+    }
+}
@@ -6,16 +6,16 @@ import android.content.res.TypedArray;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.Path;
 import android.graphics.Point;
 import android.graphics.PointF;
 import android.graphics.Rect;
 import android.graphics.RectF;
+import android.graphics.Typeface;
 import android.support.v4.view.GestureDetectorCompat;
-import android.support.v4.view.ViewCompat;
 import android.support.v4.widget.EdgeEffectCompat;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.ScaleGestureDetector;
@@ -23,9 +23,8 @@ import android.view.View;
 import android.widget.LinearLayout;
 import android.widget.OverScroller;
 
-import java.util.HashMap;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.io.File;
+
 
 import de.awi.floenavigation.helperclasses.DatabaseHelper;
 import de.awi.floenavigation.R;
@@ -96,129 +95,143 @@ public class MapView extends View{
      * <code>false</code> otherwise
      */
     private boolean isBubbleShowing;
-    /**
-     * The x value on the grid at the centre of the star symbol used to represent the mothership
-     */
-    private double StarMidPointX = 0.0;
-    /**
-     * The y value on the grid at the centre of the star symbol used to represent the mothership
-     */
-    private double StarMidPointY = 0.0;
     /**
      * Tablet Triangle width
      */
-    private static final int TabTriangleWidth = 15;
+    static final int TabTriangleWidth = 15;
     /**
      * Tablet Triangle height
      */
-    private static final int TabTriangleHeight = 15;
+    static final int TabTriangleHeight = 15;
     /**
      * Waypoint triangle width
      */
-    private static final int WayTriangleWidth = 11;
+    static final int WayTriangleWidth = 11;
     /**
      * Waypoint triangle height
      */
-    private static final int WayTriangleHeight = 11;
+    static final int WayTriangleHeight = 11;
     /**
-     * Hashmaps to store index and x position of fixed stations in a key-value pair
+     * Fixed, mobile and static stations and waypoints drawn on the grid. The whole snapshot is replaced whenever
+     * {@link GridActivity} has read one of its layers from the database.
      */
-    public static HashMap<Integer, Double> mFixedStationXs;
+    private static volatile StationSnapshot stationSnapshot = StationSnapshot.EMPTY;
+
     /**
-     * Hashmaps to store index and y position of fixed stations in a key-value pair
+     * Constant value to verify whether fixed station point was touched on the grid
      */
-    public static HashMap<Integer, Double> mFixedStationYs;
+    private static final int FIXED_STATION = 0;
     /**
-     * Hashmaps to store index and mmsi's of fixed stations in a key-value pair
+     * Constant value to verify whether mobile station point was touched on the grid
      */
-    public static HashMap<Integer, Integer> mFixedStationMMSIs;
+    private static final int MOBILE_STATION = 1;
     /**
-     * Hashmaps to store index and fixed station names in a key-value pair
+     * Constant value to verify whether static station point was touched on the grid
      */
-    public static HashMap<Integer, String> mFixedStationNames;
+    private static final int STATIC_STATION = 2;
     /**
-     * Hashmaps to store index and x position of mobile stations in a key-value pair
+     * Constant value to verify whether waypoint was touched on the grid
      */
-    public static HashMap<Integer, Double> mMobileStationXs;
+    private static final int WAYPOINT = 3;
     /**
-     * Hashmaps to store index and y position of mmobile stations in a key-value pair
+     * Constant value to verify whether tablet point was touched on the grid
      */
-    public static HashMap<Integer, Double> mMobileStationYs;
-    /*
-     * Hashmaps to store index and mmsi's of mobile stations in a key-value pair
+    private static final int TABLET_POSITION = 4;
+    /**
+     * Constant value to verify whether a cluster of mobile stations was touched on the grid
      */
-    public static HashMap<Integer, Integer> mMobileStationMMSIs;
+    private static final int MOBILE_CLUSTER = 5;
     /**
-     * Hashmaps to store index and mobile station names in a key-value pair
+     * String for logging purpose
      */
-    public static HashMap<Integer, String> mMobileStationNames;
+    private static final String TAG = "MapView";
     /**
-     * Hashmaps to store index and x position of static stations in a key-value pair
+     * Context of the activity
      */
-    public static HashMap<Integer, Double> mStaticStationXs;
+    private Context context;
+
     /**
-     * Hashmaps to store index and y position of static stations in a key-value pair
+     * <code>true</code> if a frame has been requested from the {@link Choreographer} and has not been drawn yet
      */
-    public static HashMap<Integer, Double> mStaticStationYs;
+    private boolean frameScheduled = false;
     /**
-     * Hashmaps to store index and static station names in a key-value pair
+     * Number of frames drawn by {@link #onDraw(Canvas)}
      */
-    public static HashMap<Integer, String> mStaticStationNames;
+    private long framesRendered = 0;
     /**
-     * Hashmaps to store index and x position of waypoints in a key-value pair
+     * Number of updates which did not cause a frame, because nothing visible had changed or a frame was already scheduled
      */
-    public static HashMap<Integer, Double> mWaypointsXs;
+    private long framesSkipped = 0;
     /**
-     * Hashmaps to store index and y position of waypoints in a key-value pair
+     * Indices of the points of a layer near the touch position, grown to the largest layer. Only used on the UI thread.
      */
-    public static HashMap<Integer, Double> mWaypointsYs;
+    private int[] touchCandidates = new int[0];
     /**
-     * Hashmaps to store index and labels of waypoints in a key-value pair
+     * Index of the closest point found by {@link #checkInRange(StationSnapshot, float, float)} so far, or -1
      */
-    public static HashMap<Integer, String> mWaypointsLabels;
-
+    private int hitIndex;
     /**
-     * Constant value to verify whether fixed station point was touched on the grid
+     * Type of the closest point found by {@link #checkInRange(StationSnapshot, float, float)} so far, or -1
      */
-    private static final int FIXED_STATION = 0;
+    private int hitType;
     /**
-     * Constant value to verify whether mobile station point was touched on the grid
+     * Distance in pixels of the closest point found by {@link #checkInRange(StationSnapshot, float, float)} so far
      */
-    private static final int MOBILE_STATION = 1;
+    private double hitDistance;
+
     /**
-     * Constant value to verify whether static station point was touched on the grid
+     * Frame captured by {@link #captureFrame()} and reused on every call of {@link #onDraw(Canvas)}. Only used on the UI thread.
      */
-    private static final int STATIC_STATION = 2;
+    private final GridFrame frame = new GridFrame();
+
     /**
-     * Constant value to verify whether waypoint was touched on the grid
+     * Frame times, redraw requests, markers and layer build times of the grid
      */
-    private static final int WAYPOINT = 3;
+    private final RenderStats renderStats = new RenderStats();
     /**
-     * Constant value to verify whether tablet point was touched on the grid
+     * <code>true</code> if the debug overlay with {@link #renderStats} is shown
      */
-    private static final int TABLET_POSITION = 4;
+    private boolean statsOverlayEnabled = false;
     /**
-     * String for logging purpose
+     * Paint for the text of the debug overlay
      */
-    private static final String TAG = "MapView";
+    private Paint mStatsTextPaint;
     /**
-     * Context of the activity
+     * Paint for the background of the debug overlay
      */
-    private Context context;
-
+    private Paint mStatsBackgroundPaint;
     /**
-     * Refresh rate of the screen
+     * Samples {@link #renderStats} once per second while the overlay is shown or the statistics are recorded
      */
-    private static final int SCREEN_REFRESH_TIMER_PERIOD = 10 * 1000;
+    private final Runnable statsTicker = new Runnable() {
+        @Override
+        public void run() {
+            renderStats.sample();
+            if (statsOverlayEnabled) {
+                invalidate();
+            }
+            postDelayed(this, STATS_SAMPLE_PERIOD);
+        }
+    };
     /**
-     * Time delay before the start of the timer
+     * Period in msecs at which {@link #renderStats} is sampled
      */
-    private static final int SCREEN_REFRESH_TIMER_DELAY = 0;
+    private static final int STATS_SAMPLE_PERIOD = 1000;
+    /**
+     * Padding in pixels of the debug overlay
+     */
+    private static final int STATS_OVERLAY_PADDING = 8;
 
     /**
-     * Timer for refreshing the grid periodically
+     * Invalidates the view on the next frame requested by {@link #requestRender()}
      */
-    public static Timer refreshScreenTimer;
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            frameScheduled = false;
+            invalidate();
+        }
+    };
 
     /**
      * Default color for the paint
@@ -227,11 +240,15 @@ public class MapView extends View{
     /**
      * Circle radius
      */
-    private static final int CircleSize = 6;
+    static final int CircleSize = 6;
     /**
      * Star size
      */
-    private static final int StarSize = 35;
+    static final int StarSize = 35;
+    /**
+     * Radius of the circle of a cluster of mobile stations
+     */
+    static final int ClusterSize = 12;
     /**
      * Focus button zoom level, set to 1km radius
      */
@@ -281,30 +298,39 @@ public class MapView extends View{
      */
     private static RectF mCurrentViewport = null;// = new RectF(AXIS_X_MIN, AXIS_Y_MIN, AXIS_X_MAX, AXIS_Y_MAX);
     private static RectF previousViewPort;
-    private int mMaxLabelWidth;
-    private int mLabelHeight;
 
     // Current attribute values and Paints.
     private float mLabelTextSize;
     private int mLabelSeparation;
     private int mLabelTextColor;
-    private Paint mLabelTextPaint;
     private float mGridThickness;
     private int mGridColor;
-    private Paint mGridPaint;
     private float mAxisThickness;
     private int mAxisColor;
-    private Paint mAxisPaint;
     private float mDataThickness;
     private int mDataColor;
     /**
      * Paint object for drawing on the screen
      */
     private Paint mDataPaint;
-
-    // Buffers for storing current X and Y stops. See the computeAxisStops method for more details.
-    private final AxisStops mXStopsBuffer = new AxisStops();
-    private final AxisStops mYStopsBuffer = new AxisStops();
+    /**
+     * Draws the grid on the UI thread, and provides the size of the axis labels
+     */
+    private GridRenderer renderer;
+    /**
+     * <code>true</code> if the grid is to be drawn by the render thread of a {@link GridSurfaceView}, set by the
+     * <code>renderThread</code> attribute of the layout
+     */
+    private boolean renderThreadEnabled;
+    /**
+     * Surface behind this view whose render thread draws the grid, or <code>null</code> if the grid is drawn on the UI thread
+     */
+    private GridSurfaceView renderSurface;
+    /**
+     * Clusters of the mobile stations at the current zoom level, used to find the touched cluster. The renderers have their own
+     * clusters, as they may be used on a different thread.
+     */
+    private final StationClusters mobileStationClusters = new StationClusters();
 
 
     // Edge effect / overscroll tracking objects.
@@ -326,12 +352,7 @@ public class MapView extends View{
      * Buffers used during drawing. These are defined as fields to avoid allocation during
      * draw calls
      */
-    private float[] mAxisXPositionsBuffer = new float[]{};
-    private float[] mAxisYPositionsBuffer = new float[]{};
-    private float[] mAxisXLinesBuffer = new float[]{};
-    private float[] mAxisYLinesBuffer = new float[]{};
     private float[] mSeriesLinesBuffer = new float[(DRAW_STEPS + 1) * 4];
-    private final char[] mLabelBuffer = new char[100];
     private Point mSurfaceSizeBuffer = new Point();
 
     private boolean mEdgeEffectTopActive;
@@ -385,12 +406,14 @@ public class MapView extends View{
                     R.styleable.MapView_dataThickness, mDataThickness);
             mDataColor = a.getColor(
                     R.styleable.MapView_dataColor, mDataColor);
+
+            renderThreadEnabled = a.getBoolean(
+                    R.styleable.MapView_renderThread, false);
         } finally {
             a.recycle();
         }
 
         initPaints();
-        initRefreshTimer();
 
 
 
@@ -409,40 +432,46 @@ public class MapView extends View{
     }
 
     /**
-     * Initializes a timer to execute the task
-     * The timer task periodically runs at a rate of {@link #SCREEN_REFRESH_TIMER_PERIOD}
+     * Requests the grid to be redrawn on the next frame of the {@link Choreographer}. The grid is only redrawn when something visible
+     * has changed: the stations, the tablet position, the viewport or the layers selected in {@link GridActivity}.
+     * Several requests before the next frame are drawn as a single frame. Must be called on the UI thread.
      */
-    public void initRefreshTimer(){
-        refreshScreenTimer = new Timer();
-        refreshScreenTimer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                ViewCompat.postInvalidateOnAnimation(MapView.this);
-            }
-        }, SCREEN_REFRESH_TIMER_DELAY, SCREEN_REFRESH_TIMER_PERIOD);
+    private void requestRender(){
+        renderStats.onInvalidate();
+        if (frameScheduled){
+            framesSkipped++;
+            return;
+        }
+        frameScheduled = true;
+        Choreographer.getInstance().postFrameCallback(frameCallback);
+    }
+
+    /**
+     * Redraws the grid after the layers selected in the options menu of {@link GridActivity} have changed
+     */
+    public void onSelectionChanged(){
+        requestRender();
+    }
+
+    /**
+     * @return number of frames drawn since the view was created
+     */
+    public long getFramesRendered(){
+        return framesRendered;
+    }
 
+    /**
+     * @return number of updates since the view was created which did not cause a frame
+     */
+    public long getFramesSkipped(){
+        return framesSkipped;
     }
 
     /**
      * (Re)initializes {@link Paint} objects based on current attribute values.
      */
     private void initPaints() {
-        mLabelTextPaint = new Paint();
-        mLabelTextPaint.setAntiAlias(true);
-        mLabelTextPaint.setTextSize(mLabelTextSize);
-        mLabelTextPaint.setColor(mLabelTextColor);
-        mLabelHeight = (int) Math.abs(mLabelTextPaint.getFontMetrics().top);
-        mMaxLabelWidth = (int) mLabelTextPaint.measureText("0000");
-
-        mGridPaint = new Paint();
-        mGridPaint.setStrokeWidth(mGridThickness);
-        mGridPaint.setColor(mGridColor);
-        mGridPaint.setStyle(Paint.Style.STROKE);
-
-        mAxisPaint = new Paint();
-        mAxisPaint.setStrokeWidth(mAxisThickness);
-        mAxisPaint.setColor(mAxisColor);
-        mAxisPaint.setStyle(Paint.Style.STROKE);
+        renderer = createRenderer();
 
         mDataPaint = new Paint();
         mDataPaint.setStrokeWidth(mDataThickness);
@@ -450,6 +479,135 @@ public class MapView extends View{
         //mDataPaint.setStyle(Paint.Style.STROKE);
         mDataPaint.setAntiAlias(true);
 
+        mStatsTextPaint = new Paint();
+        mStatsTextPaint.setAntiAlias(true);
+        mStatsTextPaint.setColor(Color.WHITE);
+        mStatsTextPaint.setTypeface(Typeface.MONOSPACE);
+        mStatsTextPaint.setTextSize(mLabelTextSize * 0.8f);
+
+        mStatsBackgroundPaint = new Paint();
+        mStatsBackgroundPaint.setColor(Color.argb(160, 0, 0, 0));
+    }
+
+    /**
+     * @return a new renderer drawing the grid with the current attribute values
+     */
+    private GridRenderer createRenderer() {
+        return new GridRenderer(mLabelTextSize, mLabelTextColor, mLabelSeparation, mGridThickness, mGridColor, mAxisThickness, mAxisColor,
+                renderStats);
+    }
+
+    /**
+     * Lets the grid be drawn by the render thread of the given surface, which must lie directly behind this view.
+     * If the <code>renderThread</code> attribute of this view is not set, the surface is hidden and the grid is drawn on the UI thread.
+     * @param surface surface behind this view
+     */
+    public void setRenderSurface(GridSurfaceView surface) {
+        if (!renderThreadEnabled) {
+            surface.setVisibility(View.GONE);
+            return;
+        }
+        surface.setRenderer(createRenderer());
+        renderSurface = surface;
+        requestRender();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (frameScheduled) {
+            Choreographer.getInstance().removeFrameCallback(frameCallback);
+            frameScheduled = false;
+        }
+        Log.d(TAG, "Frames rendered: " + framesRendered + " skipped: " + framesSkipped);
+        removeCallbacks(statsTicker);
+        renderStats.stopRecording();
+        renderer.release();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        updateStatsTicker();
+    }
+
+    /**
+     * @return statistics of the frames drawn and the layers loaded
+     */
+    RenderStats getRenderStats(){
+        return renderStats;
+    }
+
+    /**
+     * Shows or hides the debug overlay with the frame times, the redraw requests, the markers and the layer build times
+     * @param enabled <code>true</code> to show the overlay
+     */
+    public void setStatsOverlayEnabled(boolean enabled){
+        statsOverlayEnabled = enabled;
+        updateStatsTicker();
+        requestRender();
+    }
+
+    /**
+     * @return <code>true</code> if the debug overlay is shown
+     */
+    public boolean isStatsOverlayEnabled(){
+        return statsOverlayEnabled;
+    }
+
+    /**
+     * Starts recording the statistics shown by the debug overlay to a CSV file, one line per second
+     * @param file file which is created or overwritten
+     * @return <code>true</code> if the file could be opened
+     */
+    public boolean startStatsRecording(File file){
+        boolean started = renderStats.startRecording(file);
+        updateStatsTicker();
+        return started;
+    }
+
+    /**
+     * Stops recording the statistics and closes the file
+     */
+    public void stopStatsRecording(){
+        renderStats.stopRecording();
+        updateStatsTicker();
+    }
+
+    /**
+     * @return <code>true</code> while the statistics are recorded
+     */
+    public boolean isStatsRecording(){
+        return renderStats.isRecording();
+    }
+
+    /**
+     * Runs {@link #statsTicker} while the overlay is shown or the statistics are recorded
+     */
+    private void updateStatsTicker(){
+        removeCallbacks(statsTicker);
+        if (statsOverlayEnabled || renderStats.isRecording()) {
+            postDelayed(statsTicker, STATS_SAMPLE_PERIOD);
+        }
+    }
+
+    /**
+     * Draws the lines of {@link RenderStats} on a translucent box in the top left corner of the content area
+     */
+    private void drawStatsOverlay(Canvas canvas){
+        String[] lines = renderStats.getOverlayLines();
+        float lineHeight = mStatsTextPaint.getTextSize() * 1.25f;
+        float left = mContentRect.left + STATS_OVERLAY_PADDING;
+        float top = mContentRect.top + STATS_OVERLAY_PADDING;
+        float width = 0;
+        for (String line : lines) {
+            width = Math.max(width, mStatsTextPaint.measureText(line));
+        }
+        canvas.drawRect(left, top, left + width + 2 * STATS_OVERLAY_PADDING, top + lines.length * lineHeight + 2 * STATS_OVERLAY_PADDING,
+                mStatsBackgroundPaint);
+        for (int i = 0; i < lines.length; i++) {
+            canvas.drawText(lines[i], left + STATS_OVERLAY_PADDING, top + STATS_OVERLAY_PADDING + (i + 1) * lineHeight, mStatsTextPaint);
+        }
     }
 
     /**
@@ -463,13 +621,13 @@ public class MapView extends View{
      * onDraw is fdr drawing a custom view
      * It is a canvas object that the view can use to draw itself.
      * <p>
-     *     Fixed stations {@link #mFixedStationMMSIs} are iterated over and each fixed station is drawn on the grid using
+     *     The fixed stations of {@link #stationSnapshot} are iterated over and each fixed station is drawn on the grid using
      *     green circle at the calculated grid position. The (x, y) position is translated to the screen coordinates using {@link #getDrawX(double)}
      *     and {@link #getDrawY(double)} functions.
      *     The fixed stations are only displayed if {@link GridActivity#showFixedStation} is set to true.
      * </p>
      * <p>
-     *     Mobile stations {@link #mMobileStationMMSIs} are iterated over and each mobile station is drawn on the grid using
+     *     The mobile stations of {@link #stationSnapshot} are iterated over and each mobile station is drawn on the grid using
      *     blue circle at the calculated grid position. The (x, y) position is translated to the screen coordinates using {@link #getDrawX(double)}
      *     and {@link #getDrawY(double)} functions.
      *     The mobile stations are only displayed if {@link GridActivity#showMobileStation} is set to true.
@@ -477,217 +635,58 @@ public class MapView extends View{
      *     this to be true.
      * </p>
      * <p>
-     *     Static stations {@link #mStaticStationNames} are iterated over and each static station is drawn on the grid using
+     *     When the grid is zoomed out, mobile stations which are close to each other on the screen are drawn as a single cluster
+     *     showing the number of its stations, as calculated by {@link StationClusters}. The mothership is never clustered.
+     * </p>
+     * <p>
+     *     The static stations of {@link #stationSnapshot} are iterated over and each static station is drawn on the grid using
      *     yellow circle at the calculated grid position. The (x, y) position is translated to the screen coordinates using {@link #getDrawX(double)}
      *     and {@link #getDrawY(double)} functions.
      *     The static stations are only displayed if {@link GridActivity#showStaticStation} is set to true.
      * </p>
      * <p>
-     *     Waypoints {@link #mWaypointsLabels} are iterated over and each static station is drawn on the grid using
+     *     The waypoints of {@link #stationSnapshot} are iterated over and each static station is drawn on the grid using
      *     black inverted triangle at the calculated grid position. The (x, y) position is translated to the screen coordinates using {@link #getDrawX(double)}
      *     and {@link #getDrawY(double)} functions.
      *     The waypoints are only displayed if {@link GridActivity#showWaypointStation} is set to true.
      * </p>
+     * <p>
+     *     The points are drawn by {@link #renderer} from the {@link #frame} captured on every call. If a {@link GridSurfaceView}
+     *     has been set by {@link #setRenderSurface(GridSurfaceView)}, the frame is only handed over to its render thread and this
+     *     view, which lies transparently on top of the surface, only draws the edge effects.
+     * </p>
      * @param canvas canvas object
      */
     @Override
     protected void onDraw(Canvas canvas) {
 
-        int width = getMeasuredWidth();
-        int height = getMeasuredHeight();
-
-        //Interactive Graph Area Code//
-        // Draws axes and text labels
-        drawAxes(canvas);
+        framesRendered++;
+        captureFrame();
+        if (renderSurface != null) {
+            //The grid is drawn by the render thread of the surface behind this view
+            renderSurface.requestRender(frame);
+        } else {
+            renderer.draw(canvas, frame);
+        }
 
-        // Clips the next few drawing operations to the content area
+        // Clips the edge effects to the content area
         int clipRestoreCount = canvas.save();
         canvas.clipRect(mContentRect);
-
-        //drawDataSeriesUnclipped(canvas);
         drawEdgeEffectsUnclipped(canvas);
-
-
-
-        try {
-            //Draw Tablet Position
-            setLineColor(Color.RED);
-            Log.d(TAG, "tabletX " + this.getTabletX() + " " + "tabletY " + this.getTabletY());
-            //Log.d(TAG, "GETDRAWtabletX " + getDrawX((float) getTabletX()) + " " + "GETDRAWtabletY " + getDrawY((float)getTabletY()));
-            drawTriangle((float) getDrawX(getTabletX()), (float) getDrawY(getTabletY()), TabTriangleWidth, TabTriangleHeight, false, mDataPaint, canvas);
-            //drawStar((float) getDrawX(getTabletX()), (float) getDrawY(getTabletY()), 20, canvas);
-
-
-            //For Loop Fixed Station
-            if (GridActivity.showFixedStation) {
-                setLineColor(Color.GREEN);
-                if (GridActivity.mFixedStationMMSIs != null && GridActivity.mFixedStationXs != null && GridActivity.mFixedStationYs != null) {
-                    for (int i = 0; i < getFixedStationSize(); i++) {
-                        canvas.drawCircle((float) getDrawX(getFixedStationX(i)), (float) getDrawY(getFixedStationY(i)), CircleSize, mDataPaint);
-                        Log.d(TAG, "FixedStationX: " + String.valueOf(getFixedStationX(i)));
-                        Log.d(TAG, "FixedStationY: " + String.valueOf(getFixedStationY(i)));
-                        //Log.d(TAG, "Loop Counter: " + String.valueOf(i));
-                        Log.d(TAG, "Length: " + String.valueOf(getFixedStationSize()));
-                        Log.d(TAG, "MMSIs: " + String.valueOf(getFixedStationMMSI(i)));
-                        Log.d(TAG, "FixedStation TranslatedX: " + getDrawX(getFixedStationX(i)));
-                        Log.d(TAG, "FixedStation TranslatedY: " + getDrawY(getFixedStationY(i)));
-                    }
-                }
-            }
-
-
-            //For Loop Mobile Station
-            if (GridActivity.showMobileStation) {
-
-                if (GridActivity.mMobileStationMMSIs != null && GridActivity.mMobileStationXs != null && GridActivity.mMobileStationYs != null) {
-                    for (int i = 0; i < getMobileStationSize(); i++) {  //
-                        if(getMobileStationMMSI(i) != DatabaseHelper.MOTHER_SHIP_MMSI) {
-                            setLineColor(Color.BLUE);
-                            canvas.drawCircle((float) getDrawX(getMobileXposition(i)), (float) getDrawY(getMobileYposition(i)), CircleSize, mDataPaint);
-                        } else{
-                            setLineColor(Color.RED);
-                            drawStar((float) getDrawX(getMobileXposition(i)), (float) getDrawY(getMobileYposition(i)), StarSize, StarSize, mDataPaint, canvas);
-                            //drawTriangle((float) getDrawX(getMobileXposition(i)), (float) getDrawY(getMobileYposition(i)), TabTriangleWidth, TabTriangleHeight, false, mDataPaint, canvas);
-
-                        }
-                    }
-                }
-            }
-
-            //For Loop Static Station
-            if (GridActivity.showStaticStation) {
-                setLineColor(Color.YELLOW);
-                if (GridActivity.mStaticStationNames != null && GridActivity.mStaticStationXs != null && GridActivity.mStaticStationYs != null) {
-                    for (int i = 0; i < getStaticStationSize(); i++) {
-                        canvas.drawCircle((float) getDrawX(getStaticXposition(i)), (float) getDrawY(getStaticYposition(i)), CircleSize, mDataPaint);
-                        //Log.d(TAG, "StaticStation TranslatedX: " + String.valueOf(translateCoord(mStaticStationXs.get(i)) * getWidth()/numColumns));
-                        //Log.d(TAG, "StaticStation TranslatedY: " + String.valueOf(translateCoord(mStaticStationYs.get(i)) * getHeight()/numRows));
-                    }
-                }
-            }
-
-
-            //For Loop Waypoint
-            if (GridActivity.showWaypointStation) {
-                setLineColor(Color.BLACK);
-                if (GridActivity.mWaypointsLabels != null && GridActivity.mWaypointsXs != null && GridActivity.mWaypointsYs != null) {
-                    for (int i = 0; i < getWaypointSize(); i++) {
-                        drawTriangle((float) getDrawX(getWaypointXposition(i)), (float) getDrawY(getWaypointYposition(i)), WayTriangleWidth, WayTriangleHeight, true, mDataPaint, canvas);
-                    }
-                }
-            }
-        } catch(NullPointerException e){
-            e.printStackTrace();
-            Log.d(TAG, "Null Pointer Exception");
-        }
-
-        // Removes clipping rectangle
         canvas.restoreToCount(clipRestoreCount);
 
-        // Draws chart container
-        canvas.drawRect(mContentRect, mAxisPaint);
-
+        if (statsOverlayEnabled) {
+            drawStatsOverlay(canvas);
+        }
     }
 
     /**
-     * Draws the chart axes and labels onto the canvas.
+     * Copies the viewport, the tablet position, the selected layers and the stations to be drawn in the next frame into {@link #frame}
      */
-    private void drawAxes(Canvas canvas) {
-        // Computes axis stops (in terms of numerical value and position on screen)
-        int i;
-
-        computeAxisStops(
-                mCurrentViewport.left,
-                mCurrentViewport.right,
-                getWidth() / mMaxLabelWidth / 2,
-                mXStopsBuffer);
-        computeAxisStops(
-                mCurrentViewport.top,
-                mCurrentViewport.bottom,
-                getHeight() / mLabelHeight / 2,
-                mYStopsBuffer);
-
-        // Avoid unnecessary allocations during drawing. Re-use allocated
-        // arrays and only reallocate if the number of stops grows.
-        if (mAxisXPositionsBuffer.length < mXStopsBuffer.numStops) {
-            mAxisXPositionsBuffer = new float[mXStopsBuffer.numStops];
-        }
-        if (mAxisYPositionsBuffer.length < mYStopsBuffer.numStops) {
-            mAxisYPositionsBuffer = new float[mYStopsBuffer.numStops];
-        }
-        if (mAxisXLinesBuffer.length < mXStopsBuffer.numStops * 4) {
-            mAxisXLinesBuffer = new float[mXStopsBuffer.numStops * 4];
-        }
-        if (mAxisYLinesBuffer.length < mYStopsBuffer.numStops * 4) {
-            mAxisYLinesBuffer = new float[mYStopsBuffer.numStops * 4];
-        }
-
-        // Compute positions
-        for (i = 0; i < mXStopsBuffer.numStops; i++) {
-            mAxisXPositionsBuffer[i] = (float)getDrawX(mXStopsBuffer.stops[i]);
-        }
-        for (i = 0; i < mYStopsBuffer.numStops; i++) {
-            mAxisYPositionsBuffer[i] = (float) getDrawY(mYStopsBuffer.stops[i]);
-        }
-
-        // Draws grid lines using drawLines (faster than individual drawLine calls)
-        for (i = 0; i < mXStopsBuffer.numStops; i++) {
-            mAxisXLinesBuffer[i * 4 + 0] = (float) Math.floor(mAxisXPositionsBuffer[i]);
-            mAxisXLinesBuffer[i * 4 + 1] = mContentRect.top;
-            mAxisXLinesBuffer[i * 4 + 2] = (float) Math.floor(mAxisXPositionsBuffer[i]);
-            mAxisXLinesBuffer[i * 4 + 3] = mContentRect.bottom;
-        }
-        canvas.drawLines(mAxisXLinesBuffer, 0, mXStopsBuffer.numStops * 4, mGridPaint);
-
-        for (i = 0; i < mYStopsBuffer.numStops; i++) {
-            mAxisYLinesBuffer[i * 4 + 0] = mContentRect.left;
-            mAxisYLinesBuffer[i * 4 + 1] = (float) Math.floor(mAxisYPositionsBuffer[i]);
-            mAxisYLinesBuffer[i * 4 + 2] = mContentRect.right;
-            mAxisYLinesBuffer[i * 4 + 3] = (float) Math.floor(mAxisYPositionsBuffer[i]);
-        }
-        canvas.drawLines(mAxisYLinesBuffer, 0, mYStopsBuffer.numStops * 4, mGridPaint);
-
-        // Draws X labels
-        int labelOffset;
-        int labelLength;
-        boolean scaleXInMeters = false;
-        boolean scaleYInMeters = false;
-        mLabelTextPaint.setTextAlign(Paint.Align.CENTER);
-        if(Math.abs((mXStopsBuffer.stops[1] - mXStopsBuffer.stops[0])) <= 500){
-            scaleXInMeters = true;
-        }
-
-        if(Math.abs((mYStopsBuffer.stops[1] - mYStopsBuffer.stops[0])) <= 500){
-            scaleYInMeters = true;
-        }
-        for (i = 0; i < mXStopsBuffer.numStops; i++) {
-            // Do not use String.format in high-performance code such as onDraw code.
-            //mXStopsBuffer.stops[i] = (mXStopsBuffer.stops[i] > 1000) ? mXStopsBuffer.stops[i] / 1000 : mXStopsBuffer.stops[i];
-            mXStopsBuffer.stops[i] = scaleXInMeters ? mXStopsBuffer.stops[i] : mXStopsBuffer.stops[i] / 1000;
-            labelLength = formatFloat(mLabelBuffer, mXStopsBuffer.stops[i], mXStopsBuffer.decimals);
-            labelOffset = mLabelBuffer.length - labelLength;
-            Log.d(TAG, "Stops" + String.valueOf(mXStopsBuffer.stops[i]));
-            canvas.drawText(
-                    mLabelBuffer, labelOffset, labelLength,
-                    mAxisXPositionsBuffer[i],
-                    mContentRect.bottom + mLabelHeight + mLabelSeparation,
-                    mLabelTextPaint);
-        }
-
-        // Draws Y labels
-        mLabelTextPaint.setTextAlign(Paint.Align.RIGHT);
-        for (i = 0; i < mYStopsBuffer.numStops; i++) {
-            // Do not use String.format in high-performance code such as onDraw code.
-            //mYStopsBuffer.stops[i] = (mYStopsBuffer.stops[i] > 1000) ? mYStopsBuffer.stops[i] / 1000 : mYStopsBuffer.stops[i];
-            mYStopsBuffer.stops[i] = scaleYInMeters ? mYStopsBuffer.stops[i] : mYStopsBuffer.stops[i] / 1000;
-            labelLength = formatFloat(mLabelBuffer, mYStopsBuffer.stops[i], mYStopsBuffer.decimals);
-            labelOffset = mLabelBuffer.length - labelLength;
-            canvas.drawText(
-                    mLabelBuffer, labelOffset, labelLength,
-                    mContentRect.left - mLabelSeparation,
-                    mAxisYPositionsBuffer[i] + mLabelHeight / 2,
-                    mLabelTextPaint);
-        }
+    private void captureFrame() {
+        frame.set(mCurrentViewport, mContentRect, getWidth(), getHeight(), getTabletX(), getTabletY(),
+                GridActivity.showFixedStation, GridActivity.showMobileStation, GridActivity.showStaticStation,
+                GridActivity.showWaypointStation, GridActivity.showTrails, stationSnapshot);
     }
 
 
@@ -773,7 +772,7 @@ public class MapView extends View{
         }
 
         if (needsInvalidate) {
-            ViewCompat.postInvalidateOnAnimation(this);
+            requestRender();
         }
     }
 
@@ -786,140 +785,9 @@ public class MapView extends View{
             mCurrentViewport.set((float) (originX - DEFAULT_ZOOM_LEVEL), (float) (originY - DEFAULT_ZOOM_LEVEL), (float) (originX + DEFAULT_ZOOM_LEVEL), (float) (originY + DEFAULT_ZOOM_LEVEL));
         }
         constrainViewport();
-        ViewCompat.postInvalidateOnAnimation(MapView.this);
+        requestRender();
     }
 
-    /**
-     * Computes the set of axis labels to show given start and stop boundaries and an ideal number
-     * of stops between these boundaries.
-     *
-     * @param start The minimum extreme (e.g. the left edge) for the axis.
-     * @param stop The maximum extreme (e.g. the right edge) for the axis.
-     * @param steps The ideal number of stops to create. This should be based on available screen
-     *              space; the more space there is, the more stops should be shown.
-     * @param outStops The destination {@link AxisStops} object to populate.
-     */
-    private static void computeAxisStops(float start, float stop, int steps, AxisStops outStops) {
-        double range = stop - start;
-        if (steps == 0 || range <= 0) {
-            outStops.stops = new float[]{};
-            outStops.numStops = 0;
-            return;
-        }
-
-        double rawInterval = range / steps;
-        double interval = roundToOneSignificantFigure(rawInterval);
-        double intervalMagnitude = Math.pow(10, (int) Math.log10(interval));
-        int intervalSigDigit = (int) (interval / intervalMagnitude);
-        if (intervalSigDigit > 5) {
-            // Use one order of magnitude higher, to avoid intervals like 0.9 or 90
-            interval = Math.floor(10 * intervalMagnitude);
-        }
-
-        double first = Math.ceil(start / interval) * interval;
-        double last = Math.nextUp(Math.floor(stop / interval) * interval);
-
-        double f;
-        int i;
-        int n = 0;
-        for (f = first; f <= last; f += interval) {
-            ++n;
-        }
-
-        outStops.numStops = n;
-
-        if (outStops.stops.length < n) {
-            // Ensure stops contains at least numStops elements.
-            outStops.stops = new float[n];
-        }
-
-        for (f = first, i = 0; i < n; f += interval, ++i) {
-            outStops.stops[i] = (float) f;
-        }
-
-        if (interval < 1) {
-            outStops.decimals = (int) Math.ceil(-Math.log10(interval));
-        } else {
-            outStops.decimals = 0;
-        }
-    }
-
-    /**
-     * Function to draw triangle on the grid
-     * @param x x position on the grid
-     * @param y y position on the grid
-     * @param width width of the triangle
-     * @param height height of the triangle
-     * @param inverted <code>true</code> triangle is inverted; <code>false</code> otherwise
-     * @param paint paint object
-     * @param canvas canvas
-     */
-    private void drawTriangle(float x, float y, int width, int height, boolean inverted, Paint paint, Canvas canvas){
-
-        PointF p1 = new PointF(x,y);
-        float pointX = x + width/2f;
-        float pointY = inverted?  y + height : y - height;
-
-        PointF p2 = new PointF(pointX,pointY);
-        PointF p3 = new PointF(x+width,y);
-
-        Path path = new Path();
-        path.setFillType(Path.FillType.EVEN_ODD);
-        path.moveTo(p1.x,p1.y);
-        path.lineTo(p2.x,p2.y);
-        path.lineTo(p3.x,p3.y);
-        path.close();
-
-        canvas.drawPath(path, paint);
-    }
-
-    /**
-     * Function to draw star on the grid to represent mothership
-     * @param xPos x position on the grid
-     * @param yPos y position on the grid
-     * @param width width of the star
-     * @param height height of the star
-     * @param paint paint object
-     * @param canvas canvas
-     */
-    private void drawStar(float xPos, float yPos, int width, int height, Paint paint, Canvas canvas)
-    {
-        float mid = width / 2;
-        float min = Math.min(width, height);
-        float fat = min / 17;
-        float half = min / 2;
-        mid = mid - half;
-
-        paint.setStrokeWidth(fat);
-        paint.setStyle(Paint.Style.STROKE);
-        Path path = new Path();
-        Paint circlePaint = new Paint();
-        circlePaint.setColor(Color.TRANSPARENT);
-        canvas.drawCircle(xPos + mid + half, yPos + half, CircleSize, circlePaint);
-        StarMidPointX = xPos + mid + half;
-        StarMidPointY = yPos + half;
-        path.reset();
-
-        paint.setStyle(Paint.Style.FILL);
-
-        // top left
-        path.moveTo(xPos + mid + half * 0.5f, yPos + half * 0.84f);
-        // top right
-        path.lineTo(xPos + mid + half * 1.5f, yPos + half * 0.84f);
-        // bottom left
-        path.lineTo(xPos + mid + half * 0.68f, yPos + half * 1.45f);
-        // top tip
-        path.lineTo(xPos + mid + half * 1.0f, yPos + half * 0.5f);
-
-        // bottom right
-        path.lineTo(xPos + mid + half * 1.32f, yPos + half * 1.45f);
-        // top left
-        path.lineTo(xPos + mid + half * 0.5f, yPos + half * 0.84f);
-
-        path.close();
-        canvas.drawPath(path, paint);
-
-    }
 
     /**
      * The scale listener, used for handling multi-finger scale gestures.
@@ -962,7 +830,7 @@ public class MapView extends View{
             mCurrentViewport.right = mCurrentViewport.left + newWidth;
             mCurrentViewport.bottom = mCurrentViewport.top + newHeight;
             constrainViewport();
-            ViewCompat.postInvalidateOnAnimation(MapView.this);
+            requestRender();
             lastSpan = span;
             return true;
         }
@@ -1013,7 +881,7 @@ public class MapView extends View{
             releaseEdgeEffects();
             mScrollerStartViewport.set(mCurrentViewport);
             mScroller.forceFinished(true);
-            ViewCompat.postInvalidateOnAnimation(MapView.this);
+            requestRender();
             return true;
         }
 
@@ -1023,7 +891,7 @@ public class MapView extends View{
             if (hitTest(e.getX(), e.getY(), mZoomFocalPoint)) {
                 mZoomer.startZoom(ZOOM_AMOUNT);
             }
-            ViewCompat.postInvalidateOnAnimation(MapView.this);
+            requestRender();
             return true;
         }
 
@@ -1086,10 +954,10 @@ public class MapView extends View{
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
         super.onSizeChanged(w, h, oldw, oldh);
         mContentRect.set(
-                getPaddingLeft()  + mMaxLabelWidth + mLabelSeparation,
+                getPaddingLeft()  + renderer.getMaxLabelWidth() + mLabelSeparation,
                 getPaddingTop(),
                 getWidth() - getPaddingRight(),
-                getHeight() - getPaddingBottom() - mLabelHeight - mLabelSeparation);
+                getHeight() - getPaddingBottom() - renderer.getLabelHeight() - mLabelSeparation);
     }
 
     @Override
@@ -1097,11 +965,11 @@ public class MapView extends View{
         int minChartSize = getResources().getDimensionPixelSize(R.dimen.min_chart_size);
         setMeasuredDimension(
                 Math.max(getSuggestedMinimumWidth(),
-                        resolveSize(minChartSize + getPaddingLeft() + mMaxLabelWidth
+                        resolveSize(minChartSize + getPaddingLeft() + renderer.getMaxLabelWidth()
                                         + mLabelSeparation + getPaddingRight(),
                                 widthMeasureSpec)),
                 Math.max(getSuggestedMinimumHeight(),
-                        resolveSize(minChartSize + getPaddingTop() + mLabelHeight
+                        resolveSize(minChartSize + getPaddingTop() + renderer.getLabelHeight()
                                         + mLabelSeparation + getPaddingBottom(),
                                 heightMeasureSpec)));
     }
@@ -1140,7 +1008,7 @@ public class MapView extends View{
                 0, mSurfaceSizeBuffer.y - mContentRect.height(),
                 mContentRect.width() / 2,
                 mContentRect.height() / 2);
-        ViewCompat.postInvalidateOnAnimation(this);
+        requestRender();
     }
 
 
@@ -1235,7 +1103,7 @@ public class MapView extends View{
         }
 
         if (needsInvalidate) {
-            ViewCompat.postInvalidateOnAnimation(this);
+            requestRender();
         }
     }
 
@@ -1256,7 +1124,7 @@ public class MapView extends View{
      * <p>
      *     It checks whether the {@link #isBubbleShowing} is set to true, if then it will close the bubble dialog box.
      *     It calculates the {@link #xTouch} and {@link #yTouch} and checks whether this position is in the range of the point of interest.
-     *     Depending on the return value of {@link #checkInRange(float, float)}, this function decides the point which was clicked and takes appropriate action.
+     *     Depending on the {@link #hitIndex} and {@link #hitType} found by {@link #checkInRange(StationSnapshot, float, float)}, this function decides the point which was clicked and takes appropriate action.
      *     It draws a bubble {@link #drawableBubble} at the point where the user/admin touched and displays the corresponding information.
      *     Different set of information are displayed for each fixed station, mobile station, waypoint, static station and tablet.
      * </p>
@@ -1276,59 +1144,72 @@ public class MapView extends View{
                 }
                 xTouch = event.getX();
                 yTouch = event.getY();
-                Log.d(TAG, "XTouch1: " + xTouch + " YTouch1: " + yTouch);
-                //Log.d(TAG, "XTouch: " + getDrawX(xTouch) + " YTouch: " + getDrawY(yTouch));
-                int[] checkValues = checkInRange(xTouch, yTouch);
-                int index = checkValues[0];
+                StationSnapshot snapshot = stationSnapshot;
+                checkInRange(snapshot, xTouch, yTouch);
+                int index = hitIndex;
                 if(index != -1){
-                    Log.d(TAG, "Station Touched");
-                    if (checkValues[1] == TABLET_POSITION){
+                    if (hitType == TABLET_POSITION){
                         drawableBubble.setCoordinates((float) getDrawX(getTabletX()) + TabTriangleWidth/2f, (float) getDrawY(getTabletY()) - TabTriangleHeight);
                         postnMsg = String.format("x: %1.4f y: %2.4f", getTabletX(), getTabletY());
                         drawableBubble.setMessages("Current Position", null, postnMsg);
                         linearLayout.setBackground(drawableBubble);
                         linearLayout.setVisibility(View.VISIBLE);
                         isBubbleShowing = true;
-                    } else if(checkValues[1] == FIXED_STATION) {
+                    } else if(hitType == FIXED_STATION) {
                         if(GridActivity.showFixedStation) {
-                            drawableBubble.setCoordinates((float) getDrawX(getFixedStationX(index)), (float) getDrawY(getFixedStationY(index)));
-                            postnMsg = String.format("x: %1.4f y: %2.4f", getFixedStationX(index), getFixedStationY(index));
-                            if(getFixedStationMMSI(index) != 1000 && getFixedStationMMSI(index) != 1001) {
-                                drawableBubble.setMessages(String.valueOf(getFixedStationMMSI(index)), getFixedStationName(index), postnMsg);
+                            StationSnapshot.Layer fixedStations = snapshot.fixedStations;
+                            drawableBubble.setCoordinates((float) getDrawX(fixedStations.xs[index]), (float) getDrawY(fixedStations.ys[index]));
+                            postnMsg = String.format("x: %1.4f y: %2.4f", fixedStations.xs[index], fixedStations.ys[index]);
+                            if(fixedStations.mmsis[index] != 1000 && fixedStations.mmsis[index] != 1001) {
+                                drawableBubble.setMessages(String.valueOf(fixedStations.mmsis[index]), fixedStations.names[index], postnMsg);
                             } else{
-                                drawableBubble.setMessages(null, getFixedStationName(index), postnMsg);
+                                drawableBubble.setMessages(null, fixedStations.names[index], postnMsg);
                             }
                             linearLayout.setBackground(drawableBubble);
                             linearLayout.setVisibility(View.VISIBLE);
                             isBubbleShowing = true;
                         }
-                    } else if(checkValues[1] == MOBILE_STATION){
+                    } else if(hitType == MOBILE_STATION){
                         if(GridActivity.showMobileStation) {
-                            if(getMobileStationMMSI(index) != DatabaseHelper.MOTHER_SHIP_MMSI) {
-                                drawableBubble.setCoordinates((float) getDrawX(getMobileXposition(index)), (float) getDrawY(getMobileYposition(index)));
+                            StationSnapshot.Layer mobileStations = snapshot.mobileStations;
+                            if(mobileStations.mmsis[index] != DatabaseHelper.MOTHER_SHIP_MMSI) {
+                                drawableBubble.setCoordinates((float) getDrawX(mobileStations.xs[index]), (float) getDrawY(mobileStations.ys[index]));
                             } else{
-                                drawableBubble.setCoordinates((float) StarMidPointX, (float) StarMidPointY);
+                                drawableBubble.setCoordinates((float) getDrawX(mobileStations.xs[index]) + StarSize / 2f, (float) getDrawY(mobileStations.ys[index]) + StarSize / 2f);
                             }
-                            postnMsg = String.format("x: %1.4f y: %2.4f", getMobileXposition(index), getMobileYposition(index));
-                            drawableBubble.setMessages(String.valueOf(getMobileStationMMSI(index)), getMobileStationName(index), postnMsg);
+                            postnMsg = String.format("x: %1.4f y: %2.4f", mobileStations.xs[index], mobileStations.ys[index]);
+                            drawableBubble.setMessages(String.valueOf(mobileStations.mmsis[index]), mobileStations.names[index], postnMsg);
                             linearLayout.setBackground(drawableBubble);
                             linearLayout.setVisibility(View.VISIBLE);
                             isBubbleShowing = true;
                         }
-                    } else if(checkValues[1] == STATIC_STATION){
+                    } else if(hitType == MOBILE_CLUSTER){
+                        if(GridActivity.showMobileStation) {
+                            float clusterX = mobileStationClusters.xs[index];
+                            float clusterY = mobileStationClusters.ys[index];
+                            drawableBubble.setCoordinates((float) getDrawX(clusterX), (float) getDrawY(clusterY) - ClusterSize);
+                            postnMsg = String.format("x: %1.4f y: %2.4f", clusterX, clusterY);
+                            drawableBubble.setMessages(mobileStationClusters.sizes[index] + " Mobile Stations", "Zoom in to show the stations", postnMsg);
+                            linearLayout.setBackground(drawableBubble);
+                            linearLayout.setVisibility(View.VISIBLE);
+                            isBubbleShowing = true;
+                        }
+                    } else if(hitType == STATIC_STATION){
                         if(GridActivity.showStaticStation) {
-                            drawableBubble.setCoordinates((float) getDrawX(getStaticXposition(index)), (float) getDrawY(getStaticYposition(index)));
-                            postnMsg = String.format("x: %1.4f y: %2.4f", getStaticXposition(index), getStaticYposition(index));
-                            drawableBubble.setMessages(String.valueOf(getStaticStationName(index)), null, postnMsg);
+                            StationSnapshot.Layer staticStations = snapshot.staticStations;
+                            drawableBubble.setCoordinates((float) getDrawX(staticStations.xs[index]), (float) getDrawY(staticStations.ys[index]));
+                            postnMsg = String.format("x: %1.4f y: %2.4f", staticStations.xs[index], staticStations.ys[index]);
+                            drawableBubble.setMessages(String.valueOf(staticStations.names[index]), null, postnMsg);
                             linearLayout.setBackground(drawableBubble);
                             linearLayout.setVisibility(View.VISIBLE);
                             isBubbleShowing = true;
                         }
-                    } else if (checkValues[1] == WAYPOINT){
+                    } else if (hitType == WAYPOINT){
                         if(GridActivity.showWaypointStation) {
-                            drawableBubble.setCoordinates((float) getDrawX(getWaypointXposition(index)) + WayTriangleWidth/2f, (float) getDrawY(getWaypointYposition(index)));
-                            postnMsg = String.format("x: %1.4f y: %2.4f", getWaypointXposition(index), getWaypointYposition(index));
-                            drawableBubble.setMessages(String.valueOf(getWaypointLabel(index)), null, postnMsg);
+                            StationSnapshot.Layer waypoints = snapshot.waypoints;
+                            drawableBubble.setCoordinates((float) getDrawX(waypoints.xs[index]) + WayTriangleWidth/2f, (float) getDrawY(waypoints.ys[index]));
+                            postnMsg = String.format("x: %1.4f y: %2.4f", waypoints.xs[index], waypoints.ys[index]);
+                            drawableBubble.setMessages(String.valueOf(waypoints.names[index]), null, postnMsg);
                             linearLayout.setBackground(drawableBubble);
                             linearLayout.setVisibility(View.VISIBLE);
                             isBubbleShowing = true;
@@ -1347,106 +1228,106 @@ public class MapView extends View{
      * Checks the range around the (x, y) position where the touch event happened.
      * If the distance between the touch position and the tablet/fixed station/mobile station/static station/waypoint position
      * on the grid is less than a calibrated value of {@value #CircleSize} + 10,
-     * then it means that the point is clicked by the user/admin and returns an array with a corresponding constant value,
-     * which notifies the {@link #onTouchEvent(MotionEvent)} the respective operation to be handled.
-     * @param touchX
-     * @param touchY
-     * @return
-     */
-    private int[] checkInRange(float touchX, float touchY){
-        int index = -1;
-
-        try {
-
-            //Check if Tablet is Clicked
-            double xTab = getTabletX();
-            double yTab = getTabletY();
-            xTab = getDrawX(xTab);
-            yTab = getDrawY(yTab);
-            double tabDistance =  Math.sqrt(Math.pow((xTab - touchX), 2) + Math.pow((yTab - touchY), 2));
-            if(tabDistance < CircleSize + 10){
-                index = 0;
-                return new int[] {index, TABLET_POSITION};
+     * then it means that the point is clicked by the user/admin and its index and a corresponding constant value are stored in
+     * {@link #hitIndex} and {@link #hitType}, which notify the {@link #onTouchEvent(MotionEvent)} the respective operation to be handled.
+     * If several points are in range, the one closest to the touch position is returned.
+     * The candidates of each layer are found with the {@link SpatialIndex} of the layer, so only the points near the touch are checked.
+     * @param snapshot stations and waypoints drawn on the grid
+     * @param touchX x position of the touch on the screen
+     * @param touchY y position of the touch on the screen
+     */
+    private void checkInRange(StationSnapshot snapshot, float touchX, float touchY){
+        hitIndex = -1;
+        hitType = -1;
+        hitDistance = Double.MAX_VALUE;
+
+        //Check if Tablet is Clicked
+        checkHit(0, TABLET_POSITION, getDrawX(getTabletX()), getDrawY(getTabletY()), touchX, touchY, CircleSize + 10);
+
+        //Check in Fixed Station
+        if(GridActivity.showFixedStation) {
+            findNearest(snapshot.fixedStations, FIXED_STATION, touchX, touchY);
+        }
+
+        //Check in Mobile Stations
+        if(GridActivity.showMobileStation) {
+            StationSnapshot.Layer mobileStations = snapshot.mobileStations;
+            mobileStationClusters.update(snapshot, getMetersPerPixel());
+            int candidates = queryTouchCandidates(mobileStations, touchX, touchY, StarSize + 10);
+            for (int k = 0; k < candidates; k++) {
+                int i = touchCandidates[k];
+                if (mobileStationClusters.clusterOf[i] != StationClusters.NOT_CLUSTERED) {
+                    continue;
+                }
+                int range = mobileStations.mmsis[i] != DatabaseHelper.MOTHER_SHIP_MMSI ? CircleSize + 10 : StarSize + 10;
+                checkHit(i, MOBILE_STATION, getDrawX(mobileStations.xs[i]), getDrawY(mobileStations.ys[i]), touchX, touchY, range);
             }
-            //Check in Fixed Station
-            if(GridActivity.showFixedStation) {
-                for (int i = 0; i < getFixedStationSize(); i++) {
-                    double xp = getFixedStationX(i);
-                    double yp = getFixedStationY(i);
-                    xp = getDrawX(xp);
-                    yp = getDrawY(yp);
-                    double distance = Math.sqrt(Math.pow((xp - touchX), 2) + Math.pow((yp - touchY), 2));
-                    Log.d(TAG, "TouchDistance " + distance);
-                    if (distance < CircleSize + 10) {
-                        index = i;
-                        return new int[]{index, FIXED_STATION};
-                    }
+            for (int c = 0; c < mobileStationClusters.clusterCount; c++) {
+                if (mobileStationClusters.sizes[c] < 2) {
+                    continue;
                 }
+                checkHit(c, MOBILE_CLUSTER, getDrawX(mobileStationClusters.xs[c]), getDrawY(mobileStationClusters.ys[c]),
+                        touchX, touchY, ClusterSize + 10);
             }
+        }
 
-            //Check in Mobile Stations
-            if(GridActivity.showMobileStation) {
-                for (int i = 0; i < getMobileStationSize(); i++) {
-                    double xp = getMobileXposition(i);
-                    double yp = getMobileYposition(i);
-                    int mmsi = getMobileStationMMSI(i);
-                    xp = getDrawX(xp);
-                    yp = getDrawY(yp);
-                    double distance = Math.sqrt(Math.pow((xp - touchX), 2) + Math.pow((yp - touchY), 2));
-                    Log.d(TAG, "TouchDistance " + distance);
-                    if(mmsi != DatabaseHelper.MOTHER_SHIP_MMSI) {
-                        if (distance < CircleSize + 10) {
-                            index = i;
-                            return new int[]{index, MOBILE_STATION};
-                        }
-                    } else{
-                        if (distance < StarSize + 10) {
-                            index = i;
-                            return new int[]{index, MOBILE_STATION};
-                        }
-                    }
+        //Check in Static Stations
+        if(GridActivity.showStaticStation) {
+            findNearest(snapshot.staticStations, STATIC_STATION, touchX, touchY);
+        }
 
-                }
-            }
+        //Check in Waypoints
+        if(GridActivity.showWaypointStation) {
+            findNearest(snapshot.waypoints, WAYPOINT, touchX, touchY);
+        }
+    }
 
-            //Check in Static Stations
-            if(GridActivity.showStaticStation) {
-                for (int i = 0; i < getStaticStationSize(); i++) {
-                    double xp = getStaticXposition(i);
-                    double yp = getStaticYposition(i);
-                    xp = getDrawX(xp);
-                    yp = getDrawY(yp);
-                    double distance = Math.sqrt(Math.pow((xp - touchX), 2) + Math.pow((yp - touchY), 2));
-                    Log.d(TAG, "TouchDistance " + distance);
-                    if (distance < CircleSize + 10) {
-                        index = i;
-                        return new int[]{index, STATIC_STATION};
-                    }
-                }
-            }
+    /**
+     * Checks the points of a layer whose distance on the screen from the touch position may be less than {@value #CircleSize} + 10
+     * with {@link #checkHit(int, int, double, double, float, float, int)}
+     * @param layer points to check
+     * @param type type of the points returned by {@link #checkInRange(StationSnapshot, float, float)}
+     * @param touchX x position of the touch on the screen
+     * @param touchY y position of the touch on the screen
+     */
+    private void findNearest(StationSnapshot.Layer layer, int type, float touchX, float touchY){
+        int candidates = queryTouchCandidates(layer, touchX, touchY, CircleSize + 10);
+        for (int k = 0; k < candidates; k++) {
+            int i = touchCandidates[k];
+            checkHit(i, type, getDrawX(layer.xs[i]), getDrawY(layer.ys[i]), touchX, touchY, CircleSize + 10);
+        }
+    }
 
-            //Check in Waypoints
-            if(GridActivity.showWaypointStation) {
-                for (int i = 0; i < getWaypointSize(); i++) {
-                    double xp = getWaypointXposition(i);
-                    double yp = getWaypointYposition(i);
-                    xp = getDrawX(xp);
-                    yp = getDrawY(yp);
-                    double distance = Math.sqrt(Math.pow((xp - touchX), 2) + Math.pow((yp - touchY), 2));
-                    Log.d(TAG, "TouchDistance " + distance);
-                    if (distance < CircleSize + 10) {
-                        index = i;
-                        return new int[]{index, WAYPOINT};
-                    }
-                }
-            }
+    /**
+     * Finds the points of a layer within the square around the touch position with the {@link SpatialIndex} of the layer
+     * @param range half the side of the square in pixels
+     * @return the number of points, whose indices are written to {@link #touchCandidates}
+     */
+    private int queryTouchCandidates(StationSnapshot.Layer layer, float touchX, float touchY, int range){
+        if (touchCandidates.length < layer.size) {
+            touchCandidates = new int[layer.size];
+        }
+        double touchGridX = mCurrentViewport.left + (touchX - mContentRect.left) * mCurrentViewport.width() / mContentRect.width();
+        double touchGridY = mCurrentViewport.top + (mContentRect.bottom - touchY) * mCurrentViewport.height() / mContentRect.height();
+        float gridRange = range * getMetersPerPixel();
+        return layer.index().query((float) touchGridX - gridRange, (float) touchGridY - gridRange,
+                (float) touchGridX + gridRange, (float) touchGridY + gridRange, touchCandidates);
+    }
 
-        } catch (NullPointerException e){
-            index = -1;
-            e.printStackTrace();
-            Log.d(TAG, "Null Pointer Exception");
+    /**
+     * Remembers the point as the touched point if its distance on the screen from the touch position is less than the range
+     * and less than the distance of the touched point found so far
+     * @param range maximum distance in pixels
+     */
+    private void checkHit(int index, int type, double drawX, double drawY, float touchX, float touchY, int range){
+        double dx = drawX - touchX;
+        double dy = drawY - touchY;
+        double distance = Math.sqrt(dx * dx + dy * dy);
+        if (distance < range && distance < hitDistance) {
+            hitIndex = index;
+            hitType = type;
+            hitDistance = distance;
         }
-        return new int[] {index, index};
     }
 
     /**
@@ -1468,7 +1349,7 @@ public class MapView extends View{
         y = Math.max(AXIS_Y_MIN + curHeight, Math.min(y, AXIS_Y_MAX));
 
         mCurrentViewport.set(x, y - curHeight, x + curWidth, y);
-        ViewCompat.postInvalidateOnAnimation(this);
+        requestRender();
     }
 
     public void setTabletLon(double tabletLon) {
@@ -1487,16 +1368,6 @@ public class MapView extends View{
         previousViewPort = mCurrentViewport;
     }
 
-    /**
-     * A simple class representing axis label values.
-     *
-     * @see #computeAxisStops
-     */
-    private static class AxisStops {
-        float[] stops = new float[]{};
-        int numStops;
-        int decimals;
-    }
 
     /**
      * Computes the pixel offset for the given X chart value. This may be outside the view bounds.
@@ -1508,17 +1379,13 @@ public class MapView extends View{
     }
 
     /**
-     * Rounds the given number to the given number of significant digits. Based on an answer on
-     * <a href="http://stackoverflow.com/questions/202302">Stack Overflow</a>.
+     * Computes the number of meters on the grid covered by one pixel of the content area, along the more zoomed out axis.
      */
-    private static float roundToOneSignificantFigure(double num) {
-        final float d = (float) Math.ceil((float) Math.log10(num < 0 ? -num : num));
-        final int power = 1 - (int) d;
-        final float magnitude = (float) Math.pow(10, power);
-        final long shifted = Math.round(num * magnitude);
-        return shifted / magnitude;
+    private float getMetersPerPixel() {
+        return Math.max(mCurrentViewport.width() / mContentRect.width(), mCurrentViewport.height() / mContentRect.height());
     }
 
+
     /**
      * Computes the pixel offset for the given Y chart value. This may be outside the view bounds.
      */
@@ -1536,44 +1403,6 @@ public class MapView extends View{
         return (float) Math.pow(x, 3) - x / 4;
     }
 
-    private static final int POW10[] = {1, 10, 100, 1000, 10000, 100000, 1000000};
-    /**
-     * Formats a float value to the given number of decimals. Returns the length of the string.
-     * The string begins at out.length - [return value].
-     */
-    private static int formatFloat(final char[] out, float val, int digits) {
-        boolean negative = false;
-        if (val == 0) {
-            out[out.length - 1] = '0';
-            return 1;
-        }
-        if (val < 0) {
-            negative = true;
-            val = -val;
-        }
-        if (digits > POW10.length) {
-            digits = POW10.length - 1;
-        }
-        val *= POW10[digits];
-        long lval = Math.round(val);
-        int index = out.length - 1;
-        int charCount = 0;
-        while (lval != 0 || charCount < (digits + 1)) {
-            int digit = (int) (lval % 10);
-            lval = lval / 10;
-            out[index--] = (char) (digit + '0');
-            charCount++;
-            if (charCount == digits) {
-                out[index--] = '.';
-                charCount++;
-            }
-        }
-        if (negative) {
-            out[index--] = '-';
-            charCount++;
-        }
-        return charCount;
-    }
 
 
     /**
@@ -1581,9 +1410,12 @@ public class MapView extends View{
      * @param x x value
      */
     public void setTabletX(double x){
+        if (tabletX == x){
+            framesSkipped++;
+            return;
+        }
         tabletX = x;
-        ViewCompat.postInvalidateOnAnimation(MapView.this);
-
+        requestRender();
     }
 
     /**
@@ -1591,454 +1423,134 @@ public class MapView extends View{
      * @param y y value
      */
     public void setTabletY(double y){
+        if (tabletY == y){
+            framesSkipped++;
+            return;
+        }
         tabletY = y;
-        ViewCompat.postInvalidateOnAnimation(MapView.this);
+        requestRender();
     }
 
     /**
-     * Set origin x
+     * Set origin x. The origin is not drawn, it is only used to centre the grid in {@link #resetContentRect()}
      * @param x x value
      */
     public void setOriginX(double x){
         originX = x;
-        ViewCompat.postInvalidateOnAnimation(MapView.this);
-
     }
 
     /**
-     * Set origin y
+     * Set origin y. The origin is not drawn, it is only used to centre the grid in {@link #resetContentRect()}
      * @param y y value
      */
     public void setOriginY(double y){
         originY = y;
-        ViewCompat.postInvalidateOnAnimation(MapView.this);
-    }
-
-    /**
-     * set fixed station mmsi's
-     * @param MMSIs mmsi
-     */
-    public void setmFixedStationMMSIs(HashMap<Integer, Integer> MMSIs){
-        mFixedStationMMSIs = MMSIs;
-    }
-
-    /**
-     * Set fixed station X values
-     * @param Xs x position
-     */
-    public void setmFixedStationXs(HashMap<Integer, Double> Xs){
-        mFixedStationXs = Xs;
-    }
-
-    /**
-     * Set fixed station Y values
-     * @param Ys y position
-     */
-    public void setmFixedStationYs(HashMap<Integer, Double> Ys){
-        mFixedStationYs = Ys;
-    }
-
-    /**
-     * Set fixed station names
-     * @param Names names
-     */
-    public void setmFixedStationNamess(HashMap<Integer, String> Names){
-        mFixedStationNames = Names;
-    }
-
-    /**
-     * Set mobile station mmsi's
-     * @param MMSIs mmsi
-     */
-    public void setmMobileStationMMSIs(HashMap<Integer, Integer> MMSIs){
-        mMobileStationMMSIs = MMSIs;
-    }
-
-    /**
-     * Set mobile station Xs
-     * @param Xs X values
-     */
-    public void setmMobileStationXs(HashMap<Integer, Double> Xs){
-        mMobileStationXs = Xs;
-    }
-
-    /**
-     * Set mobile station Ys
-     * @param Ys Y values
-     */
-    public void setmMobileStationYs(HashMap<Integer, Double> Ys){
-       mMobileStationYs = Ys;
-    }
-
-    /**
-     * Set mobile station names
-     * @param Names names
-     */
-    public void setmMobileStationNamess(HashMap<Integer, String> Names){
-        mMobileStationNames = Names;
-    }
-
-    /**
-     * Set static station names
-     * @param Names names
-     */
-    public void setmStaticStationNamess(HashMap<Integer, String> Names){
-        mStaticStationNames = Names;
-    }
-
-    /**
-     * Set static station X values
-     * @param Xs X positions
-     */
-    public void setmStaticStationXs(HashMap<Integer, Double> Xs){
-        mStaticStationXs = Xs;
     }
 
     /**
-     * Set Static station Y values
-     * @param Ys Y positions
+     * Publishes the fixed stations read from the database. Must be called on the UI thread.
+     * @param layer fixed stations with their mmsi and station name
      */
-    public void setmStaticStationYs(HashMap<Integer, Double> Ys){
-        mStaticStationYs = Ys;
-    }
-
-    /**
-     * Set waypoint labels
-     * @param Labels labels
-     */
-    public void setmWapointLabels(HashMap<Integer, String> Labels){
-        mWaypointsLabels = Labels;
-    }
-
-    /**
-     * Set Waypoint X values
-     * @param Xs X values
-     */
-    public void setmWaypointsXs(HashMap<Integer, Double> Xs){
-        mWaypointsXs = Xs;
-    }
-
-    /**
-     * Set Waypoint Y values
-     * @param Ys Y values
-     */
-    public void setmWapointsYs(HashMap<Integer, Double> Ys){
-        mWaypointsYs = Ys;
-    }
-
-    /**
-     * Get Tablet X value
-     * @return Tablet X value
-     */
-    public double getTabletX(){
-        return tabletX;
-    }
-
-    /**
-     *
-     * @return Tablet Y value
-     */
-    public double getTabletY(){
-        return tabletY;
-    }
-
-
-    /**
-     *
-     * @return Fixed station mmsi
-     */
-    public int getFixedStationSize(){
-        if(mFixedStationMMSIs != null) {
-            return mFixedStationMMSIs.size();
-        } else {
-            return 0;
+    void setFixedStations(StationSnapshot.Layer layer){
+        StationSnapshot current = stationSnapshot;
+        if (layer == current.fixedStations || layer.contentEquals(current.fixedStations)){
+            framesSkipped++;
+            return;
         }
+        stationSnapshot = current.withFixedStations(layer);
+        requestRender();
     }
 
     /**
-     *
-     * @param index index of the fixed station in the hashmap to be returned
-     * @return fixed station mmsi
+     * Publishes the mobile stations read from the database. Must be called on the UI thread.
+     * @param layer mobile stations with their mmsi and station name
      */
-    public int getFixedStationMMSI(int index){
-        if(mFixedStationMMSIs != null) {
-            return mFixedStationMMSIs.get(index);
-        } else{
-            return -1;
+    void setMobileStations(StationSnapshot.Layer layer){
+        StationSnapshot current = stationSnapshot;
+        if (layer == current.mobileStations || layer.contentEquals(current.mobileStations)){
+            framesSkipped++;
+            return;
         }
+        stationSnapshot = current.withMobileStations(layer);
+        requestRender();
     }
 
     /**
-     *
-     * @param index index of the fixed station in the hashmap to be returned
-     * @return fixed station X value
+     * Publishes the static stations read from the database. Must be called on the UI thread.
+     * @param layer static stations with their station name
      */
-    public double getFixedStationX(int index){
-        if(mFixedStationXs != null) {
-            return mFixedStationXs.get(index);
-        } else{
-            return -1;
+    void setStaticStations(StationSnapshot.Layer layer){
+        StationSnapshot current = stationSnapshot;
+        if (layer == current.staticStations || layer.contentEquals(current.staticStations)){
+            framesSkipped++;
+            return;
         }
+        stationSnapshot = current.withStaticStations(layer);
+        requestRender();
     }
 
     /**
-     *
-     * @param index index of the fixed station in the hashmap to be returned
-     * @return fixed station Y value
+     * Publishes the waypoints read from the database. Must be called on the UI thread.
+     * @param layer waypoints with their label
      */
-    public double getFixedStationY(int index){
-        if(mFixedStationYs != null) {
-            return mFixedStationYs.get(index);
-        } else{
-            return -1;
+    void setWaypoints(StationSnapshot.Layer layer){
+        StationSnapshot current = stationSnapshot;
+        if (layer == current.waypoints || layer.contentEquals(current.waypoints)){
+            framesSkipped++;
+            return;
         }
+        stationSnapshot = current.withWaypoints(layer);
+        requestRender();
     }
 
     /**
-     *
-     * @param index index of the fixed station in the hashmap to be returned
-     * @return fixed station name
+     * Publishes the trails of the fixed stations. Must be called on the UI thread.
+     * @param trails trails recorded by {@link TrailRecorder}
      */
-    public String getFixedStationName(int index){
-        if(mFixedStationNames != null) {
-            return mFixedStationNames.get(index);
-        } else{
-            return "";
+    void setFixedStationTrails(StationTrails trails){
+        StationSnapshot current = stationSnapshot;
+        if (trails == current.fixedTrails){
+            return;
         }
-    }
-
-    /**
-     *
-     * @return number of mobile stations
-     */
-    public int getMobileStationSize(){
-        if(mMobileStationMMSIs != null){
-            return  mMobileStationMMSIs.size();
+        stationSnapshot = current.withFixedTrails(trails);
+        if (GridActivity.showTrails && GridActivity.showFixedStation) {
+            requestRender();
         } else {
-            return 0;
-        }
-    }
-
-    /**
-     *
-     * @param index index of the mobile station in the hashmap to be returned
-     * @return mobile station mmsi
-     */
-    public int getMobileStationMMSI(int index){
-        if(mMobileStationMMSIs != null) {
-            return mMobileStationMMSIs.get(index);
-        } else{
-            return -1;
+            framesSkipped++;
         }
     }
 
     /**
-     *
-     * @param index index of the mobile station in the hashmap to be returned
-     * @return mobile station X value
+     * Publishes the trails of the mobile stations. Must be called on the UI thread.
+     * @param trails trails recorded by {@link TrailRecorder}
      */
-    public double getMobileXposition(int index){
-        if(mMobileStationXs != null) {
-            return mMobileStationXs.get(index);
-        } else{
-            return -1;
-        }
-    }
-
-    /**
-     *
-     * @param index index of the mobile station in the hashmap to be returned
-     * @return mobile station Y value
-     */
-    public double getMobileYposition(int index){
-        if (mMobileStationYs != null) {
-            return mMobileStationYs.get(index);
-        } else{
-            return -1;
-        }
-    }
-
-    /**
-     *
-     * @param index index of the mobile station in the hashmap to be returned
-     * @return name of the mobile station
-     */
-    public String getMobileStationName(int index){
-        if (mMobileStationNames != null) {
-            return mMobileStationNames.get(index);
-        } else{
-            return "";
-        }
-    }
-
-    /**
-     *
-     * @return number of static stations
-     */
-    public int getStaticStationSize(){
-
-        if(mStaticStationNames != null) {
-            return mStaticStationNames.size();
-        } else{
-
-            return 0;
-        }
-    }
-
-    /**
-     *
-     * @param index index of the static station in the hashmap to be returned
-     * @return name of the static station
-     */
-    public String getStaticStationName(int index){
-        if(mStaticStationNames != null) {
-            return mStaticStationNames.get(index);
-        } else{
-            return "";
-        }
-    }
-
-    /**
-     *
-     * @param index index of the static station in the hashmap to be returned
-     * @return static station X value
-     */
-    public double getStaticXposition(int index){
-        if(mStaticStationXs != null) {
-            return mStaticStationXs.get(index);
-        } else{
-            return -1;
-        }
-    }
-
-    /**
-     *
-     * @param index index of the static station in the hashmap to be returned
-     * @return static station Y value
-     */
-    public double getStaticYposition(int index){
-        if(mStaticStationYs != null) {
-            return mStaticStationYs.get(index);
-        } else{
-            return -1;
-        }
-    }
-
-    /**
-     *
-     * @param index index of the waypoint in the hashmap to be returned
-     * @return waypoint label
-     */
-    public String getWaypointLabel(int index){
-        if(mWaypointsLabels != null) {
-            return mWaypointsLabels.get(index);
-        } else{
-            return "";
+    void setMobileStationTrails(StationTrails trails){
+        StationSnapshot current = stationSnapshot;
+        if (trails == current.mobileTrails){
+            return;
         }
-    }
-
-    /**
-     *
-     * @return number of waypoints
-     */
-    public int getWaypointSize(){
-        if(mWaypointsLabels != null) {
-            return mWaypointsLabels.size();
+        stationSnapshot = current.withMobileTrails(trails);
+        if (GridActivity.showTrails && GridActivity.showMobileStation) {
+            requestRender();
         } else {
-            return 0;
+            framesSkipped++;
         }
     }
 
     /**
-     *
-     * @param index index of the waypoint in the hashmap to be returned
-     * @return waypoint X value
+     * Get Tablet X value
+     * @return Tablet X value
      */
-    public double getWaypointXposition(int index){
-        if(mWaypointsXs != null) {
-            return mWaypointsXs.get(index);
-        } else{
-            return -1;
-        }
+    public double getTabletX(){
+        return tabletX;
     }
 
     /**
      *
-     * @param index index of the waypoint in the hashmap to be returned
-     * @return waypoint Y value
-     */
-    public double getWaypointYposition(int index){
-        if (mWaypointsYs != null){
-            return  mWaypointsYs.get(index);
-        } else{
-            return -1;
-        }
-    }
-
-    /**
-     * clear fixed station hash tables
-     */
-    public static void clearFixedStationHashTables(){
-        if(mFixedStationNames != null) {
-            mFixedStationNames.clear();
-        }
-        if(mFixedStationMMSIs != null) {
-            mFixedStationMMSIs.clear();
-        }
-        if(mFixedStationXs != null) {
-            mFixedStationXs.clear();
-        }
-        if(mFixedStationYs != null) {
-            mFixedStationYs.clear();
-        }
-    }
-
-    /**
-     * Clear mobile station hash tables
-     */
-    public static void clearMobileStationHashTables(){
-        if(mMobileStationNames != null) {
-            mMobileStationNames.clear();
-        }
-        if(mMobileStationMMSIs != null) {
-            mMobileStationMMSIs.clear();
-        }
-        if(mMobileStationXs != null) {
-            mMobileStationXs.clear();
-        }
-        if(mMobileStationYs != null) {
-            mMobileStationYs.clear();
-        }
-    }
-
-    /**
-     * Clear Static station hash tables
-     */
-    public static void clearStaticStationHashTables(){
-        if(mStaticStationNames != null) {
-            mStaticStationNames.clear();
-        }
-        if(mStaticStationXs != null) {
-            mStaticStationXs.clear();
-        }
-        if(mStaticStationYs != null) {
-            mStaticStationYs.clear();
-        }
-    }
-
-    /**
-     * Clear waypoint hash tables
+     * @return Tablet Y value
      */
-    public static void clearWaypointHashTables(){
-        if(mWaypointsLabels != null) {
-            mWaypointsLabels.clear();
-        }
-        if(mWaypointsXs != null) {
-            mWaypointsXs.clear();
-        }
-        if(mWaypointsYs != null) {
-            mWaypointsYs.clear();
-        }
+    public double getTabletY(){
+        return tabletY;
     }
 
 }
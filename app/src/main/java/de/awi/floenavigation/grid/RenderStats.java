@@ -0,0 +1,279 @@
+package de.awi.floenavigation.grid;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Lightweight statistics of the grid map, shown by the debug overlay of {@link MapView} and optionally recorded to a CSV file.
+ * <p>
+ *     {@link GridRenderer} reports the draw time of every frame and the number of markers drawn and culled per category,
+ *     {@link MapView} reports every redraw request and {@link GridActivity} reports how long it took to read each
+ *     {@link StationSnapshot.Layer} from the database. Once per second {@link #sample()} turns the counters into the lines of the
+ *     overlay: the 50th and 95th percentile of the recent frame times, the redraw requests per second, the markers and the build
+ *     time and age of each layer. This tells apart jank caused by rendering from jank caused by the database queries.
+ * </p>
+ * <p>
+ *     The frames may be drawn on the render thread of {@link GridSurfaceView}, so all methods are synchronized. Each call only
+ *     updates a few counters. The CSV lines are written by a single background thread.
+ * </p>
+ */
+final class RenderStats {
+
+    /**
+     * Category of the fixed stations
+     */
+    static final int FIXED_STATIONS = 0;
+    /**
+     * Category of the mobile stations, including the clusters
+     */
+    static final int MOBILE_STATIONS = 1;
+    /**
+     * Category of the static stations
+     */
+    static final int STATIC_STATIONS = 2;
+    /**
+     * Category of the waypoints
+     */
+    static final int WAYPOINTS = 3;
+    /**
+     * Number of categories
+     */
+    static final int CATEGORY_COUNT = 4;
+
+    /**
+     * String for logging purpose
+     */
+    private static final String TAG = "RenderStats";
+    /**
+     * Short names of the categories shown in the overlay and the CSV header
+     */
+    private static final String[] CATEGORY_NAMES = {"fixed", "mobile", "static", "waypoint"};
+    /**
+     * Number of recent frames the percentiles are calculated from
+     */
+    private static final int FRAME_WINDOW = 120;
+
+    /**
+     * Draw times of the recent frames in nanoseconds
+     */
+    private final long[] frameNanos = new long[FRAME_WINDOW];
+    /**
+     * Sorted copy of {@link #frameNanos}, reused by {@link #sample()}
+     */
+    private final long[] sortedFrameNanos = new long[FRAME_WINDOW];
+    /**
+     * Index in {@link #frameNanos} of the next frame
+     */
+    private int frameHead = 0;
+    /**
+     * Number of valid entries in {@link #frameNanos}
+     */
+    private int frameCount = 0;
+    /**
+     * Frames drawn since the last sample
+     */
+    private int framesSinceSample = 0;
+    /**
+     * Markers drawn per category in the last frame
+     */
+    private final int[] drawn = new int[CATEGORY_COUNT];
+    /**
+     * Markers outside the content area per category in the last frame
+     */
+    private final int[] culled = new int[CATEGORY_COUNT];
+    /**
+     * Redraw requests since the last sample
+     */
+    private int invalidationsSinceSample = 0;
+    /**
+     * Time of the last sample in msecs since boot
+     */
+    private long lastSampleTime = SystemClock.elapsedRealtime();
+    /**
+     * Time taken to read the last layer of each category from the database in nanoseconds
+     */
+    private final long[] layerBuildNanos = new long[CATEGORY_COUNT];
+    /**
+     * Time the last layer of each category was loaded in msecs since boot, or 0
+     */
+    private final long[] layerLoadedAt = new long[CATEGORY_COUNT];
+    /**
+     * Lines shown by the overlay, updated by {@link #sample()}
+     */
+    private String[] overlayLines = new String[0];
+    /**
+     * Writes the CSV lines while recording, or <code>null</code>
+     */
+    private BufferedWriter recordWriter;
+    /**
+     * Thread writing {@link #recordWriter}
+     */
+    private ExecutorService recordExecutor;
+
+    /**
+     * Called by {@link GridRenderer} after each frame
+     * @param durationNanos time taken to draw the frame
+     * @param drawnMarkers markers drawn per category
+     * @param culledMarkers markers outside the content area per category
+     */
+    synchronized void onFrame(long durationNanos, int[] drawnMarkers, int[] culledMarkers){
+        frameNanos[frameHead] = durationNanos;
+        frameHead = (frameHead + 1) % FRAME_WINDOW;
+        if (frameCount < FRAME_WINDOW) {
+            frameCount++;
+        }
+        framesSinceSample++;
+        System.arraycopy(drawnMarkers, 0, drawn, 0, CATEGORY_COUNT);
+        System.arraycopy(culledMarkers, 0, culled, 0, CATEGORY_COUNT);
+    }
+
+    /**
+     * Called by {@link MapView} whenever a redraw is requested, whether or not it causes a frame
+     */
+    synchronized void onInvalidate(){
+        invalidationsSinceSample++;
+    }
+
+    /**
+     * Called by {@link GridActivity} when a layer has been read from the database
+     * @param category one of {@link #FIXED_STATIONS}, {@link #MOBILE_STATIONS}, {@link #STATIC_STATIONS} or {@link #WAYPOINTS}
+     * @param buildNanos time taken to read and build the layer
+     */
+    synchronized void onLayerLoaded(int category, long buildNanos){
+        layerBuildNanos[category] = buildNanos;
+        layerLoadedAt[category] = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * @return the lines of the overlay as of the last call to {@link #sample()}
+     */
+    synchronized String[] getOverlayLines(){
+        return overlayLines;
+    }
+
+    /**
+     * Updates the overlay lines from the counters and resets the per second counters. While recording, the values are also written
+     * as a CSV line. Called once per second on the UI thread.
+     */
+    synchronized void sample(){
+        long now = SystemClock.elapsedRealtime();
+        float seconds = Math.max(1, now - lastSampleTime) / 1000f;
+        lastSampleTime = now;
+        float invalidationsPerSecond = invalidationsSinceSample / seconds;
+        float framesPerSecond = framesSinceSample / seconds;
+        invalidationsSinceSample = 0;
+        framesSinceSample = 0;
+
+        System.arraycopy(frameNanos, 0, sortedFrameNanos, 0, frameCount);
+        Arrays.sort(sortedFrameNanos, 0, frameCount);
+        float p50 = percentileMillis(0.50);
+        float p95 = percentileMillis(0.95);
+
+        String[] lines = new String[2 + CATEGORY_COUNT];
+        lines[0] = String.format(Locale.US, "frame p50 %.2f ms  p95 %.2f ms", p50, p95);
+        lines[1] = String.format(Locale.US, "%.1f invalidations/s  %.1f frames/s", invalidationsPerSecond, framesPerSecond);
+        StringBuilder csv = new StringBuilder();
+        csv.append(now).append(',').append(p50).append(',').append(p95).append(',')
+                .append(invalidationsPerSecond).append(',').append(framesPerSecond);
+        for (int c = 0; c < CATEGORY_COUNT; c++) {
+            float buildMillis = layerBuildNanos[c] / 1e6f;
+            long ageSeconds = layerLoadedAt[c] == 0 ? -1 : (now - layerLoadedAt[c]) / 1000;
+            lines[2 + c] = String.format(Locale.US, "%s: %d drawn %d culled  build %.1f ms  age %d s",
+                    CATEGORY_NAMES[c], drawn[c], culled[c], buildMillis, ageSeconds);
+            csv.append(',').append(drawn[c]).append(',').append(culled[c]).append(',').append(buildMillis).append(',').append(ageSeconds);
+        }
+        overlayLines = lines;
+        if (recordWriter != null) {
+            write(csv.toString());
+        }
+    }
+
+    /**
+     * Starts writing one CSV line per sample to the given file
+     * @param file file which is created or overwritten
+     * @return <code>true</code> if the file could be opened
+     */
+    synchronized boolean startRecording(File file){
+        stopRecording();
+        try {
+            recordWriter = new BufferedWriter(new FileWriter(file));
+        } catch (IOException e) {
+            Log.d(TAG, "Error opening " + file);
+            e.printStackTrace();
+            return false;
+        }
+        recordExecutor = Executors.newSingleThreadExecutor();
+        StringBuilder header = new StringBuilder("time_ms,frame_p50_ms,frame_p95_ms,invalidations_per_s,frames_per_s");
+        for (String name : CATEGORY_NAMES) {
+            header.append(',').append(name).append("_drawn,").append(name).append("_culled,")
+                    .append(name).append("_build_ms,").append(name).append("_age_s");
+        }
+        write(header.toString());
+        Log.d(TAG, "Recording render statistics to " + file);
+        return true;
+    }
+
+    /**
+     * Stops recording and closes the file
+     */
+    synchronized void stopRecording(){
+        if (recordWriter == null) {
+            return;
+        }
+        final BufferedWriter writer = recordWriter;
+        recordWriter = null;
+        recordExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    Log.d(TAG, "Error closing the render statistics");
+                    e.printStackTrace();
+                }
+            }
+        });
+        recordExecutor.shutdown();
+        recordExecutor = null;
+    }
+
+    /**
+     * @return <code>true</code> while the statistics are being recorded
+     */
+    synchronized boolean isRecording(){
+        return recordWriter != null;
+    }
+
+    private void write(final String line){
+        final BufferedWriter writer = recordWriter;
+        recordExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    writer.write(line);
+                    writer.newLine();
+                } catch (IOException e) {
+                    Log.d(TAG, "Error writing the render statistics");
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    private float percentileMillis(double percentile){
+        if (frameCount == 0) {
+            return 0;
+        }
+        int index = Math.min(frameCount - 1, (int) Math.ceil(percentile * frameCount) - 1);
+        return sortedFrameNanos[Math.max(0, index)] / 1e6f;
+    }
+}
@@ -0,0 +1,172 @@
+package de.awi.floenavigation.grid;
+
+/**
+ * Immutable uniform grid over the positions of one {@link StationSnapshot.Layer}, used by {@link GridRenderer} to draw only the
+ * points inside the viewport and by {@link MapView} to find the points near a touch.
+ * <p>
+ *     The bounding box of the points is divided into about one cell per {@value #POINTS_PER_CELL} points, at most
+ *     {@value #MAX_CELLS_PER_AXIS} cells per axis. The indices of the points are sorted by cell with a counting sort into a single
+ *     array, and the points of cell <code>c</code> are at the positions from <code>cellStarts[c]</code> (inclusive) to
+ *     <code>cellStarts[c + 1]</code> (exclusive). A query only visits the cells overlapping the query rectangle, so its cost grows with
+ *     the number of points near the rectangle and not with the size of the layer.
+ * </p>
+ * <p>
+ *     An index is built once per layer by {@link StationSnapshot.Layer#index()} and shared by every thread which reads the layer.
+ * </p>
+ */
+final class SpatialIndex {
+
+    /**
+     * Average number of points per cell
+     */
+    private static final int POINTS_PER_CELL = 4;
+    /**
+     * Maximum number of cells along each axis
+     */
+    private static final int MAX_CELLS_PER_AXIS = 64;
+
+    /**
+     * x position of each point on the grid in meters, shared with the layer
+     */
+    private final float[] xs;
+    /**
+     * y position of each point on the grid in meters, shared with the layer
+     */
+    private final float[] ys;
+    /**
+     * Smallest x position of the points
+     */
+    private final float minX;
+    /**
+     * Smallest y position of the points
+     */
+    private final float minY;
+    /**
+     * Width of a cell in meters
+     */
+    private final float cellWidth;
+    /**
+     * Height of a cell in meters
+     */
+    private final float cellHeight;
+    /**
+     * Number of cells along the x axis
+     */
+    private final int columns;
+    /**
+     * Number of cells along the y axis
+     */
+    private final int rows;
+    /**
+     * Position in {@link #cellPoints} of the first point of each cell, followed by the number of points
+     */
+    private final int[] cellStarts;
+    /**
+     * Indices of the points in the layer, sorted by cell
+     */
+    private final int[] cellPoints;
+
+    /**
+     * Builds the index of the given points
+     * @param xs x position of each point on the grid in meters
+     * @param ys y position of each point on the grid in meters
+     * @param size number of points
+     */
+    SpatialIndex(float[] xs, float[] ys, int size){
+        this.xs = xs;
+        this.ys = ys;
+        float minX = Float.POSITIVE_INFINITY;
+        float minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY;
+        float maxY = Float.NEGATIVE_INFINITY;
+        // A position which is not finite never matches a query, and would otherwise put every point into the same cell
+        for (int i = 0; i < size; i++) {
+            if (isFinite(xs[i]) && isFinite(ys[i])) {
+                minX = Math.min(minX, xs[i]);
+                minY = Math.min(minY, ys[i]);
+                maxX = Math.max(maxX, xs[i]);
+                maxY = Math.max(maxY, ys[i]);
+            }
+        }
+        if (minX > maxX) {
+            minX = minY = maxX = maxY = 0;
+        }
+        int cellsPerAxis = Math.max(1, Math.min(MAX_CELLS_PER_AXIS, (int) Math.ceil(Math.sqrt((double) size / POINTS_PER_CELL))));
+        this.minX = minX;
+        this.minY = minY;
+        this.columns = cellsPerAxis;
+        this.rows = cellsPerAxis;
+        // Slightly larger cells, so the largest position still falls into the last cell
+        this.cellWidth = Math.max(Float.MIN_NORMAL, (maxX - minX) / cellsPerAxis * 1.0001f);
+        this.cellHeight = Math.max(Float.MIN_NORMAL, (maxY - minY) / cellsPerAxis * 1.0001f);
+
+        int cellCount = columns * rows;
+        cellStarts = new int[cellCount + 1];
+        cellPoints = new int[size];
+        int[] cellOf = new int[size];
+        for (int i = 0; i < size; i++) {
+            cellOf[i] = cell(column(xs[i]), row(ys[i]));
+            cellStarts[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < cellCount; c++) {
+            cellStarts[c + 1] += cellStarts[c];
+        }
+        int[] next = new int[cellCount];
+        System.arraycopy(cellStarts, 0, next, 0, cellCount);
+        for (int i = 0; i < size; i++) {
+            cellPoints[next[cellOf[i]]++] = i;
+        }
+    }
+
+    /**
+     * Finds every point inside the given rectangle on the grid
+     * @param left smallest x position in meters
+     * @param top smallest y position in meters
+     * @param right largest x position in meters
+     * @param bottom largest y position in meters
+     * @param out receives the indices of the points in the layer; must be at least as long as the layer
+     * @return the number of indices written to <code>out</code>
+     */
+    int query(float left, float top, float right, float bottom, int[] out){
+        if (cellPoints.length == 0) {
+            return 0;
+        }
+        int firstColumn = column(left);
+        int lastColumn = column(right);
+        int firstRow = row(top);
+        int lastRow = row(bottom);
+        int count = 0;
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                int cell = cell(c, r);
+                for (int p = cellStarts[cell]; p < cellStarts[cell + 1]; p++) {
+                    int i = cellPoints[p];
+                    if (xs[i] >= left && xs[i] <= right && ys[i] >= top && ys[i] <= bottom) {
+                        out[count++] = i;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private int column(float x){
+        return clamp((int) Math.floor((x - minX) / cellWidth), columns);
+    }
+
+    private int row(float y){
+        return clamp((int) Math.floor((y - minY) / cellHeight), rows);
+    }
+
+    private int cell(int column, int row){
+        return row * columns + column;
+    }
+
+    private static boolean isFinite(float value){
+        return !Float.isNaN(value) && !Float.isInfinite(value);
+    }
+
+    private static int clamp(int value, int count){
+        return value < 0 ? 0 : (value >= count ? count - 1 : value);
+    }
+}
@@ -0,0 +1,150 @@
+package de.awi.floenavigation.grid;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import de.awi.floenavigation.helperclasses.DatabaseHelper;
+
+/**
+ * Level of detail for the mobile stations drawn by {@link MapView}.
+ * <p>
+ *     When the grid is zoomed out, the mobile stations are aggregated into square cells of the grid whose size on the screen is
+ *     about {@value #CELL_SIZE_PIXELS} pixels. Every cell containing more than one station is drawn as a single cluster with the
+ *     number of its stations. Stations which are alone in their cell, stations without a finite position and the mothership are
+ *     always drawn individually.
+ * </p>
+ * <p>
+ *     The size of the cells in meters only changes with the zoom bucket, the power of two of the meters per pixel of the grid.
+ *     The clusters are therefore only recalculated when the zoom bucket or the {@link StationSnapshot#version} changes, and not
+ *     when the grid is panned or zoomed within a bucket. The clusters are only used on the UI thread.
+ * </p>
+ */
+final class StationClusters {
+
+    /**
+     * Value of {@link #clusterOf} for a station which is drawn individually
+     */
+    static final int NOT_CLUSTERED = -1;
+    /**
+     * Approximate size of a cell on the screen in pixels
+     */
+    private static final int CELL_SIZE_PIXELS = 48;
+    /**
+     * Smallest zoom bucket at which stations are clustered. Below it, i.e. at less than 4 meters per pixel, every station is
+     * drawn individually.
+     */
+    private static final int MIN_CLUSTER_ZOOM_BUCKET = 3;
+
+    /**
+     * Cluster of each mobile station of the snapshot, or {@link #NOT_CLUSTERED}
+     */
+    int[] clusterOf = new int[0];
+    /**
+     * Number of clusters in {@link #xs}, {@link #ys} and {@link #sizes}, including cells with a single station
+     */
+    int clusterCount;
+    /**
+     * x position of the centre of each cluster on the grid in meters
+     */
+    float[] xs = new float[0];
+    /**
+     * y position of the centre of each cluster on the grid in meters
+     */
+    float[] ys = new float[0];
+    /**
+     * Number of stations in each cluster
+     */
+    int[] sizes = new int[0];
+
+    /**
+     * Version of the snapshot the clusters were calculated for
+     */
+    private int snapshotVersion = -1;
+    /**
+     * Zoom bucket the clusters were calculated for
+     */
+    private int zoomBucket = Integer.MIN_VALUE;
+    /**
+     * Maps the cell of the grid to the index of its cluster, reused for every calculation
+     */
+    private final HashMap<Long, Integer> cells = new HashMap<>();
+
+    /**
+     * Recalculates the clusters if the snapshot or the zoom bucket has changed since the last call
+     * @param snapshot stations drawn on the grid
+     * @param metersPerPixel current scale of the grid
+     */
+    void update(StationSnapshot snapshot, float metersPerPixel){
+        int bucket = zoomBucket(metersPerPixel);
+        if (snapshot.version == snapshotVersion && bucket == zoomBucket){
+            return;
+        }
+        snapshotVersion = snapshot.version;
+        zoomBucket = bucket;
+
+        StationSnapshot.Layer stations = snapshot.mobileStations;
+        ensureCapacity(stations.size);
+        clusterCount = 0;
+        cells.clear();
+        if (bucket < MIN_CLUSTER_ZOOM_BUCKET){
+            Arrays.fill(clusterOf, 0, stations.size, NOT_CLUSTERED);
+            return;
+        }
+
+        double cellSize = CELL_SIZE_PIXELS * Math.pow(2, bucket);
+        for (int i = 0; i < stations.size; i++){
+            if (stations.mmsis[i] == DatabaseHelper.MOTHER_SHIP_MMSI || !isFinite(stations.xs[i]) || !isFinite(stations.ys[i])){
+                clusterOf[i] = NOT_CLUSTERED;
+                continue;
+            }
+            long cellX = (long) Math.floor(stations.xs[i] / cellSize);
+            long cellY = (long) Math.floor(stations.ys[i] / cellSize);
+            Long cell = (cellX << 32) | (cellY & 0xffffffffL);
+            Integer cluster = cells.get(cell);
+            if (cluster == null){
+                cluster = clusterCount++;
+                cells.put(cell, cluster);
+                xs[cluster] = 0;
+                ys[cluster] = 0;
+                sizes[cluster] = 0;
+            }
+            clusterOf[i] = cluster;
+            xs[cluster] += stations.xs[i];
+            ys[cluster] += stations.ys[i];
+            sizes[cluster]++;
+        }
+        for (int c = 0; c < clusterCount; c++){
+            xs[c] /= sizes[c];
+            ys[c] /= sizes[c];
+        }
+        for (int i = 0; i < stations.size; i++){
+            if (clusterOf[i] != NOT_CLUSTERED && sizes[clusterOf[i]] == 1){
+                clusterOf[i] = NOT_CLUSTERED;
+            }
+        }
+    }
+
+    /**
+     * @param metersPerPixel scale of the grid
+     * @return the smallest power of two which is not less than the meters per pixel
+     */
+    static int zoomBucket(float metersPerPixel){
+        if (!(metersPerPixel > 0) || Float.isInfinite(metersPerPixel)){
+            return Integer.MIN_VALUE + 1;
+        }
+        return (int) Math.ceil(Math.log(metersPerPixel) / Math.log(2));
+    }
+
+    private static boolean isFinite(float value){
+        return !Float.isNaN(value) && !Float.isInfinite(value);
+    }
+
+    private void ensureCapacity(int size){
+        if (clusterOf.length < size){
+            clusterOf = new int[size];
+            xs = new float[size];
+            ys = new float[size];
+            sizes = new int[size];
+        }
+    }
+}
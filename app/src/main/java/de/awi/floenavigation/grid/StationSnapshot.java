@@ -0,0 +1,181 @@
+package de.awi.floenavigation.grid;
+
+import java.util.Arrays;
+
+/**
+ * Immutable snapshot of everything {@link MapView} draws apart from the tablet: the fixed stations, the mobile stations,
+ * the static stations, the waypoints and the trails of the fixed and mobile stations.
+ * <p>
+ *     Each category is a {@link Layer} of parallel primitive arrays which is filled by the {@link GridDataLoader}
+ *     on a background thread. A finished layer is published by replacing the whole snapshot in a single volatile field of
+ *     {@link MapView}, so the draw and hit test loops always see complete and consistent arrays without any locking or unboxing.
+ *     Every snapshot carries a {@link #version} which is incremented whenever one of its layers is replaced.
+ * </p>
+ */
+final class StationSnapshot {
+
+    /**
+     * Snapshot without any stations or waypoints, used until the first layer has been read from the database
+     */
+    static final StationSnapshot EMPTY = new StationSnapshot(0, Layer.EMPTY, Layer.EMPTY, Layer.EMPTY, Layer.EMPTY,
+            StationTrails.EMPTY, StationTrails.EMPTY);
+
+    /**
+     * Number of times a layer has been replaced since {@link #EMPTY}
+     */
+    final int version;
+    /**
+     * Fixed stations, with their mmsi and station name
+     */
+    final Layer fixedStations;
+    /**
+     * Mobile stations including the mothership, with their mmsi and station name
+     */
+    final Layer mobileStations;
+    /**
+     * Static stations, with their station name
+     */
+    final Layer staticStations;
+    /**
+     * Waypoints, with their label
+     */
+    final Layer waypoints;
+    /**
+     * Recent tracks of the fixed stations
+     */
+    final StationTrails fixedTrails;
+    /**
+     * Recent tracks of the mobile stations including the mothership
+     */
+    final StationTrails mobileTrails;
+
+    private StationSnapshot(int version, Layer fixedStations, Layer mobileStations, Layer staticStations, Layer waypoints,
+                            StationTrails fixedTrails, StationTrails mobileTrails){
+        this.version = version;
+        this.fixedStations = fixedStations;
+        this.mobileStations = mobileStations;
+        this.staticStations = staticStations;
+        this.waypoints = waypoints;
+        this.fixedTrails = fixedTrails;
+        this.mobileTrails = mobileTrails;
+    }
+
+    /**
+     * @return a copy of this snapshot with the fixed stations replaced
+     */
+    StationSnapshot withFixedStations(Layer layer){
+        return new StationSnapshot(version + 1, layer, mobileStations, staticStations, waypoints, fixedTrails, mobileTrails);
+    }
+
+    /**
+     * @return a copy of this snapshot with the mobile stations replaced
+     */
+    StationSnapshot withMobileStations(Layer layer){
+        return new StationSnapshot(version + 1, fixedStations, layer, staticStations, waypoints, fixedTrails, mobileTrails);
+    }
+
+    /**
+     * @return a copy of this snapshot with the static stations replaced
+     */
+    StationSnapshot withStaticStations(Layer layer){
+        return new StationSnapshot(version + 1, fixedStations, mobileStations, layer, waypoints, fixedTrails, mobileTrails);
+    }
+
+    /**
+     * @return a copy of this snapshot with the waypoints replaced
+     */
+    StationSnapshot withWaypoints(Layer layer){
+        return new StationSnapshot(version + 1, fixedStations, mobileStations, staticStations, layer, fixedTrails, mobileTrails);
+    }
+
+    /**
+     * @return a copy of this snapshot with the trails of the fixed stations replaced
+     */
+    StationSnapshot withFixedTrails(StationTrails trails){
+        return new StationSnapshot(version + 1, fixedStations, mobileStations, staticStations, waypoints, trails, mobileTrails);
+    }
+
+    /**
+     * @return a copy of this snapshot with the trails of the mobile stations replaced
+     */
+    StationSnapshot withMobileTrails(StationTrails trails){
+        return new StationSnapshot(version + 1, fixedStations, mobileStations, staticStations, waypoints, fixedTrails, trails);
+    }
+
+    /**
+     * One category of points on the grid. The entry at the same index of every array belongs to the same point.
+     * A layer must not be modified after it has been passed to {@link MapView} or after its {@link #index()} has been built.
+     */
+    static final class Layer {
+
+        /**
+         * Layer without any points
+         */
+        static final Layer EMPTY = new Layer(0, false);
+
+        /**
+         * Number of points in the layer
+         */
+        final int size;
+        /**
+         * x position of each point on the grid in meters
+         */
+        final float[] xs;
+        /**
+         * y position of each point on the grid in meters
+         */
+        final float[] ys;
+        /**
+         * mmsi of each point, or <code>null</code> for static stations and waypoints which do not have an mmsi
+         */
+        final int[] mmsis;
+        /**
+         * Station name or waypoint label of each point
+         */
+        final String[] names;
+        /**
+         * Spatial index of the points, built on the first call to {@link #index()}
+         */
+        private volatile SpatialIndex index;
+
+        /**
+         * Creates a layer whose arrays are filled by the caller before the layer is published
+         * @param size number of points in the layer
+         * @param hasMMSIs <code>true</code> if the points have an mmsi
+         */
+        Layer(int size, boolean hasMMSIs){
+            this.size = size;
+            this.xs = new float[size];
+            this.ys = new float[size];
+            this.mmsis = hasMMSIs ? new int[size] : null;
+            this.names = new String[size];
+        }
+
+        /**
+         * Returns the spatial index of the points, building it on the first call. {@link GridDataLoader} calls this method before the
+         * layer is published, so the index is built on its background thread and not while drawing. Two threads calling it at the
+         * same time may both build an index, which is harmless as the indexes are equal.
+         * @return the spatial index of the points
+         */
+        SpatialIndex index(){
+            SpatialIndex spatialIndex = index;
+            if (spatialIndex == null) {
+                spatialIndex = new SpatialIndex(xs, ys, size);
+                index = spatialIndex;
+            }
+            return spatialIndex;
+        }
+
+        /**
+         * @param other layer to compare with
+         * @return <code>true</code> if both layers contain the same points in the same order
+         */
+        boolean contentEquals(Layer other){
+            return size == other.size
+                    && Arrays.equals(xs, other.xs)
+                    && Arrays.equals(ys, other.ys)
+                    && Arrays.equals(mmsis, other.mmsis)
+                    && Arrays.equals(names, other.names);
+        }
+    }
+}
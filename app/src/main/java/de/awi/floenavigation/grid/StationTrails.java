@@ -0,0 +1,52 @@
+package de.awi.floenavigation.grid;
+
+/**
+ * Immutable copy of the recent tracks of one category of stations, as recorded by {@link TrailRecorder}.
+ * <p>
+ *     The points of all trails are packed into two primitive arrays in chronological order. The points of trail <code>t</code>
+ *     are at the indices from <code>starts[t]</code> (inclusive) to <code>starts[t + 1]</code> (exclusive), so the draw loops never
+ *     unbox or follow a reference per point. A new instance is only created when a trail has changed, so {@link MapView} and
+ *     {@link TrailLines} detect changes by identity.
+ * </p>
+ */
+final class StationTrails {
+
+    /**
+     * Trails of a category without any stations
+     */
+    static final StationTrails EMPTY = new StationTrails(0, 0);
+
+    /**
+     * Number of trails
+     */
+    final int count;
+    /**
+     * mmsi of the station of each trail
+     */
+    final int[] mmsis;
+    /**
+     * Index of the first point of each trail in {@link #xs} and {@link #ys}, followed by the total number of points
+     */
+    final int[] starts;
+    /**
+     * x position of each point on the grid in meters
+     */
+    final float[] xs;
+    /**
+     * y position of each point on the grid in meters
+     */
+    final float[] ys;
+
+    /**
+     * Creates trails whose arrays are filled by {@link TrailRecorder} before they are published
+     * @param count number of trails
+     * @param points total number of points of all trails
+     */
+    StationTrails(int count, int points){
+        this.count = count;
+        this.mmsis = new int[count];
+        this.starts = new int[count + 1];
+        this.xs = new float[points];
+        this.ys = new float[points];
+    }
+}
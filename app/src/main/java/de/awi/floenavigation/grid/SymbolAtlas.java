@@ -0,0 +1,236 @@
+package de.awi.floenavigation.grid;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * Bitmap atlas holding the symbols drawn by {@link MapView} for the tablet, the mothership, the fixed, mobile and static stations,
+ * the waypoints and the clusters of mobile stations.
+ * <p>
+ *     Every symbol is rendered once into its own cell of a single bitmap when the atlas is created. Drawing a symbol is then a
+ *     single {@link Canvas#drawBitmap(Bitmap, Rect, RectF, Paint)} of its cell, which neither allocates nor changes a paint,
+ *     so {@link MapView#onDraw(Canvas)} does not create garbage irrespective of the number of stations on the grid.
+ * </p>
+ * <p>
+ *     The symbols have a fixed size in pixels which does not depend on the zoom level of the grid, so one atlas is used for
+ *     all zoom levels. Each cell has an anchor, which is the pixel placed at the screen position of the station, so the
+ *     symbols appear exactly where {@link MapView} used to draw its paths.
+ * </p>
+ */
+class SymbolAtlas {
+
+    /**
+     * Red triangle representing the tablet
+     */
+    static final int TABLET = 0;
+    /**
+     * Red star representing the mothership
+     */
+    static final int MOTHER_SHIP = 1;
+    /**
+     * Green circle representing a fixed station
+     */
+    static final int FIXED_STATION = 2;
+    /**
+     * Blue circle representing a mobile station
+     */
+    static final int MOBILE_STATION = 3;
+    /**
+     * Yellow circle representing a static station
+     */
+    static final int STATIC_STATION = 4;
+    /**
+     * Black inverted triangle representing a waypoint
+     */
+    static final int WAYPOINT = 5;
+    /**
+     * Blue circle with a white border representing a cluster of mobile stations
+     */
+    static final int MOBILE_CLUSTER = 6;
+    /**
+     * Number of symbols in the atlas
+     */
+    private static final int SYMBOL_COUNT = 7;
+    /**
+     * Transparent border in pixels around each cell, so that the anti aliased edges of a symbol are not cut off
+     */
+    private static final int CELL_PADDING = 2;
+
+    /**
+     * Bitmap holding all the symbols side by side
+     */
+    private Bitmap atlas;
+    /**
+     * Cell of each symbol in {@link #atlas}
+     */
+    private final Rect[] cells = new Rect[SYMBOL_COUNT];
+    /**
+     * Horizontal offset of the anchor of each symbol from the left of its cell
+     */
+    private final float[] anchorX = new float[SYMBOL_COUNT];
+    /**
+     * Vertical offset of the anchor of each symbol from the top of its cell
+     */
+    private final float[] anchorY = new float[SYMBOL_COUNT];
+    /**
+     * Screen rectangle a cell is drawn to, reused for every symbol
+     */
+    private final RectF destination = new RectF();
+    /**
+     * Paint used to draw the cells of the atlas
+     */
+    private final Paint bitmapPaint = new Paint();
+
+    /**
+     * Renders all the symbols into the atlas
+     * @param circleRadius radius of the station circles
+     * @param tabletWidth width of the tablet triangle
+     * @param tabletHeight height of the tablet triangle
+     * @param waypointWidth width of the waypoint triangle
+     * @param waypointHeight height of the waypoint triangle
+     * @param starSize width and height of the mothership star
+     * @param clusterRadius radius of the circles of the mobile station clusters
+     */
+    SymbolAtlas(int circleRadius, int tabletWidth, int tabletHeight, int waypointWidth, int waypointHeight, int starSize, int clusterRadius){
+        int circleSize = 2 * circleRadius;
+        int clusterSize = 2 * clusterRadius;
+        int[] widths = {tabletWidth, starSize, circleSize, circleSize, circleSize, waypointWidth, clusterSize};
+        int[] heights = {tabletHeight, starSize, circleSize, circleSize, circleSize, waypointHeight, clusterSize};
+
+        int atlasWidth = 0;
+        int atlasHeight = 0;
+        for (int i = 0; i < SYMBOL_COUNT; i++){
+            cells[i] = new Rect(atlasWidth, 0, atlasWidth + widths[i] + 2 * CELL_PADDING, heights[i] + 2 * CELL_PADDING);
+            atlasWidth = cells[i].right;
+            atlasHeight = Math.max(atlasHeight, cells[i].bottom);
+        }
+        atlas = Bitmap.createBitmap(atlasWidth, atlasHeight, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(atlas);
+        Paint paint = new Paint();
+        paint.setAntiAlias(true);
+        paint.setStyle(Paint.Style.FILL);
+
+        //Tablet triangle, anchored at the left corner of its base
+        paint.setColor(Color.RED);
+        setAnchor(TABLET, CELL_PADDING, CELL_PADDING + tabletHeight);
+        canvas.drawPath(trianglePath(cellX(TABLET), cellY(TABLET), tabletWidth, tabletHeight, false), paint);
+
+        //Mothership star, anchored at the top left of its bounding square
+        setAnchor(MOTHER_SHIP, CELL_PADDING, CELL_PADDING);
+        canvas.drawPath(starPath(cellX(MOTHER_SHIP), cellY(MOTHER_SHIP), starSize), paint);
+
+        //Station circles, anchored at their centre
+        int[] circleSymbols = {FIXED_STATION, MOBILE_STATION, STATIC_STATION};
+        int[] circleColors = {Color.GREEN, Color.BLUE, Color.YELLOW};
+        for (int i = 0; i < circleSymbols.length; i++){
+            paint.setColor(circleColors[i]);
+            setAnchor(circleSymbols[i], CELL_PADDING + circleRadius, CELL_PADDING + circleRadius);
+            canvas.drawCircle(cellX(circleSymbols[i]), cellY(circleSymbols[i]), circleRadius, paint);
+        }
+
+        //Waypoint triangle, anchored at the left corner of its base
+        paint.setColor(Color.BLACK);
+        setAnchor(WAYPOINT, CELL_PADDING, CELL_PADDING);
+        canvas.drawPath(trianglePath(cellX(WAYPOINT), cellY(WAYPOINT), waypointWidth, waypointHeight, true), paint);
+
+        //Mobile station cluster, anchored at its centre
+        setAnchor(MOBILE_CLUSTER, CELL_PADDING + clusterRadius, CELL_PADDING + clusterRadius);
+        paint.setColor(Color.WHITE);
+        canvas.drawCircle(cellX(MOBILE_CLUSTER), cellY(MOBILE_CLUSTER), clusterRadius, paint);
+        paint.setColor(Color.BLUE);
+        canvas.drawCircle(cellX(MOBILE_CLUSTER), cellY(MOBILE_CLUSTER), clusterRadius - 2, paint);
+    }
+
+    /**
+     * Draws a symbol with its anchor at the given screen position
+     * @param canvas canvas to draw on
+     * @param symbol one of {@link #TABLET}, {@link #MOTHER_SHIP}, {@link #FIXED_STATION}, {@link #MOBILE_STATION},
+     *               {@link #STATIC_STATION}, {@link #WAYPOINT} or {@link #MOBILE_CLUSTER}
+     * @param x x position on the screen
+     * @param y y position on the screen
+     */
+    void draw(Canvas canvas, int symbol, float x, float y){
+        Rect cell = cells[symbol];
+        float left = x - anchorX[symbol];
+        float top = y - anchorY[symbol];
+        destination.set(left, top, left + cell.width(), top + cell.height());
+        canvas.drawBitmap(atlas, cell, destination, bitmapPaint);
+    }
+
+    /**
+     * Releases the bitmap of the atlas. The atlas must not be drawn afterwards.
+     */
+    void recycle(){
+        if (atlas != null){
+            atlas.recycle();
+            atlas = null;
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the bitmap of the atlas has been released
+     */
+    boolean isRecycled(){
+        return atlas == null;
+    }
+
+    private void setAnchor(int symbol, float x, float y){
+        anchorX[symbol] = x;
+        anchorY[symbol] = y;
+    }
+
+    /**
+     * @return x position of the anchor of the symbol in the atlas
+     */
+    private float cellX(int symbol){
+        return cells[symbol].left + anchorX[symbol];
+    }
+
+    /**
+     * @return y position of the anchor of the symbol in the atlas
+     */
+    private float cellY(int symbol){
+        return cells[symbol].top + anchorY[symbol];
+    }
+
+    /**
+     * Path of a triangle whose base starts at (x, y)
+     * @param inverted <code>true</code> if the tip points down; <code>false</code> if it points up
+     */
+    private static Path trianglePath(float x, float y, int width, int height, boolean inverted){
+        Path path = new Path();
+        path.setFillType(Path.FillType.EVEN_ODD);
+        path.moveTo(x, y);
+        path.lineTo(x + width / 2f, inverted ? y + height : y - height);
+        path.lineTo(x + width, y);
+        path.close();
+        return path;
+    }
+
+    /**
+     * Path of a five pointed star in the square of the given size whose top left is at (xPos, yPos)
+     */
+    private static Path starPath(float xPos, float yPos, int size){
+        float half = size / 2f;
+        Path path = new Path();
+        // top left
+        path.moveTo(xPos + half * 0.5f, yPos + half * 0.84f);
+        // top right
+        path.lineTo(xPos + half * 1.5f, yPos + half * 0.84f);
+        // bottom left
+        path.lineTo(xPos + half * 0.68f, yPos + half * 1.45f);
+        // top tip
+        path.lineTo(xPos + half * 1.0f, yPos + half * 0.5f);
+        // bottom right
+        path.lineTo(xPos + half * 1.32f, yPos + half * 1.45f);
+        // top left
+        path.lineTo(xPos + half * 0.5f, yPos + half * 0.84f);
+        path.close();
+        return path;
+    }
+}
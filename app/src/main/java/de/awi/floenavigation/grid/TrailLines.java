@@ -0,0 +1,134 @@
+package de.awi.floenavigation.grid;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * Simplified line segments of one category of {@link StationTrails}, drawn by {@link GridRenderer} with a single
+ * {@link Canvas#drawLines(float[], int, int, Paint)} call.
+ * <p>
+ *     The trails are simplified with a screen space distance filter: a point is only kept if it is at least {@value #MIN_SEGMENT_PIXELS}
+ *     pixels away from the last kept point of its trail, and the newest point of a trail is always kept. The filter works in meters
+ *     on the grid with the scale of the zoom bucket of {@link StationClusters#zoomBucket(float)}, so the simplified segments only have to
+ *     be recalculated when the trails or the zoom bucket change, and not when the grid is panned.
+ *     Their screen positions are only recalculated when the viewport or the trails change.
+ * </p>
+ * <p>
+ *     An instance is confined to the thread of its renderer.
+ * </p>
+ */
+final class TrailLines {
+
+    /**
+     * Minimum length in pixels of a drawn segment
+     */
+    private static final int MIN_SEGMENT_PIXELS = 3;
+
+    /**
+     * Trails the segments were calculated for
+     */
+    private StationTrails trails = StationTrails.EMPTY;
+    /**
+     * Zoom bucket the segments were calculated for
+     */
+    private int zoomBucket = Integer.MIN_VALUE;
+    /**
+     * Start and end of each simplified segment on the grid in meters, four values per segment
+     */
+    private float[] segments = new float[0];
+    /**
+     * Number of values used in {@link #segments}
+     */
+    private int segmentValues = 0;
+    /**
+     * Screen positions of {@link #segments}
+     */
+    private float[] lines = new float[0];
+    /**
+     * <code>true</code> if {@link #lines} matches {@link #segments}, {@link #viewport} and {@link #contentRect}
+     */
+    private boolean linesValid = false;
+    /**
+     * Viewport the screen positions were calculated for
+     */
+    private final RectF viewport = new RectF();
+    /**
+     * Content area the screen positions were calculated for
+     */
+    private final Rect contentRect = new Rect();
+
+    /**
+     * Draws the trails, recalculating the simplified segments and their screen positions only if required
+     * @param canvas canvas to draw on
+     * @param paint paint of the trails
+     * @param trails trails to draw
+     * @param frame frame being drawn
+     */
+    void draw(Canvas canvas, Paint paint, StationTrails trails, GridFrame frame){
+        int bucket = StationClusters.zoomBucket(frame.getMetersPerPixel());
+        if (trails != this.trails || bucket != zoomBucket) {
+            this.trails = trails;
+            zoomBucket = bucket;
+            simplify(trails, MIN_SEGMENT_PIXELS * (float) Math.pow(2, bucket));
+            linesValid = false;
+        }
+        if (!linesValid || !viewport.equals(frame.viewport) || !contentRect.equals(frame.contentRect)) {
+            viewport.set(frame.viewport);
+            contentRect.set(frame.contentRect);
+            project(frame);
+            linesValid = true;
+        }
+        if (segmentValues > 0) {
+            canvas.drawLines(lines, 0, segmentValues, paint);
+        }
+    }
+
+    /**
+     * Calculates the simplified segments of all trails
+     * @param minDistance minimum length of a segment on the grid in meters
+     */
+    private void simplify(StationTrails trails, float minDistance){
+        if (segments.length < 4 * trails.xs.length) {
+            segments = new float[4 * trails.xs.length];
+        }
+        float minDistanceSquared = minDistance * minDistance;
+        segmentValues = 0;
+        for (int t = 0; t < trails.count; t++) {
+            int start = trails.starts[t];
+            int end = trails.starts[t + 1];
+            if (end - start < 2) {
+                continue;
+            }
+            float lastX = trails.xs[start];
+            float lastY = trails.ys[start];
+            for (int i = start + 1; i < end; i++) {
+                float dx = trails.xs[i] - lastX;
+                float dy = trails.ys[i] - lastY;
+                if (dx * dx + dy * dy < minDistanceSquared && i != end - 1) {
+                    continue;
+                }
+                segments[segmentValues++] = lastX;
+                segments[segmentValues++] = lastY;
+                segments[segmentValues++] = trails.xs[i];
+                segments[segmentValues++] = trails.ys[i];
+                lastX = trails.xs[i];
+                lastY = trails.ys[i];
+            }
+        }
+    }
+
+    /**
+     * Calculates the screen positions of the simplified segments
+     */
+    private void project(GridFrame frame){
+        if (lines.length < segmentValues) {
+            lines = new float[segments.length];
+        }
+        for (int i = 0; i < segmentValues; i += 2) {
+            lines[i] = (float) frame.getDrawX(segments[i]);
+            lines[i + 1] = (float) frame.getDrawY(segments[i + 1]);
+        }
+    }
+}
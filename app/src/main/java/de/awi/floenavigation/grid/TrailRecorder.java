@@ -0,0 +1,140 @@
+package de.awi.floenavigation.grid;
+
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * Records the recent grid positions of one category of stations in a ring buffer per mmsi.
+ * <p>
+ *     {@link GridDataLoader} passes every changed {@link StationSnapshot.Layer} it reads from the database to {@link #record(StationSnapshot.Layer)}.
+ *     A position is only appended when the station has moved since its last fix, so a station which does not move does not fill its
+ *     buffer. Once a buffer is full, its oldest position is overwritten. The buffer of a station which is no longer in the layer is dropped.
+ * </p>
+ * <p>
+ *     A recorder is only used by its {@link GridDataLoader}, and hands its trails over
+ *     to {@link MapView} as immutable {@link StationTrails}.
+ * </p>
+ */
+final class TrailRecorder {
+
+    /**
+     * Maximum number of positions kept per station. With the refresh period of {@link GridActivity} this covers several hours.
+     */
+    static final int TRAIL_CAPACITY = 2000;
+
+    /**
+     * Ring buffer of each station
+     */
+    private final HashMap<Integer, Ring> rings = new HashMap<>();
+    /**
+     * Incremented on every call to {@link #record(StationSnapshot.Layer)} to find the stations which are no longer in the layer
+     */
+    private int generation = 0;
+    /**
+     * Trails returned by the last call to {@link #record(StationSnapshot.Layer)}
+     */
+    private StationTrails trails = StationTrails.EMPTY;
+
+    /**
+     * Appends the current position of every station of the layer to its trail
+     * @param layer stations with an mmsi which have just been read from the database
+     * @return the trails of all stations of the layer; the same instance as on the previous call if no trail has changed
+     */
+    StationTrails record(StationSnapshot.Layer layer){
+        generation++;
+        boolean changed = false;
+        for (int i = 0; i < layer.size; i++) {
+            Ring ring = rings.get(layer.mmsis[i]);
+            if (ring == null) {
+                ring = new Ring();
+                rings.put(layer.mmsis[i], ring);
+            }
+            ring.generation = generation;
+            if (ring.append(layer.xs[i], layer.ys[i])) {
+                changed = true;
+            }
+        }
+        Iterator<Ring> iterator = rings.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().generation != generation) {
+                iterator.remove();
+                changed = true;
+            }
+        }
+        if (changed) {
+            trails = copyTrails();
+        }
+        return trails;
+    }
+
+    /**
+     * @return a packed copy of all ring buffers in chronological order
+     */
+    private StationTrails copyTrails(){
+        int points = 0;
+        for (Ring ring : rings.values()) {
+            points += ring.count;
+        }
+        StationTrails copy = new StationTrails(rings.size(), points);
+        int t = 0;
+        int offset = 0;
+        for (HashMap.Entry<Integer, Ring> entry : rings.entrySet()) {
+            Ring ring = entry.getValue();
+            copy.mmsis[t] = entry.getKey();
+            copy.starts[t] = offset;
+            int oldest = (ring.head - ring.count + TRAIL_CAPACITY) % TRAIL_CAPACITY;
+            int firstPart = Math.min(ring.count, TRAIL_CAPACITY - oldest);
+            System.arraycopy(ring.xs, oldest, copy.xs, offset, firstPart);
+            System.arraycopy(ring.ys, oldest, copy.ys, offset, firstPart);
+            System.arraycopy(ring.xs, 0, copy.xs, offset + firstPart, ring.count - firstPart);
+            System.arraycopy(ring.ys, 0, copy.ys, offset + firstPart, ring.count - firstPart);
+            offset += ring.count;
+            t++;
+        }
+        copy.starts[t] = offset;
+        return copy;
+    }
+
+    /**
+     * Fixed size ring buffer of the recent positions of one station
+     */
+    private static final class Ring {
+        /**
+         * x positions on the grid in meters
+         */
+        private final float[] xs = new float[TRAIL_CAPACITY];
+        /**
+         * y positions on the grid in meters
+         */
+        private final float[] ys = new float[TRAIL_CAPACITY];
+        /**
+         * Index at which the next position is written
+         */
+        private int head = 0;
+        /**
+         * Number of positions in the buffer
+         */
+        private int count = 0;
+        /**
+         * Generation of the recorder in which the station was last seen
+         */
+        private int generation;
+
+        /**
+         * @return <code>true</code> if the position has been appended; <code>false</code> if it equals the last position
+         */
+        private boolean append(float x, float y){
+            int last = (head - 1 + TRAIL_CAPACITY) % TRAIL_CAPACITY;
+            if (count > 0 && xs[last] == x && ys[last] == y) {
+                return false;
+            }
+            xs[head] = x;
+            ys[head] = y;
+            head = (head + 1) % TRAIL_CAPACITY;
+            if (count < TRAIL_CAPACITY) {
+                count++;
+            }
+            return true;
+        }
+    }
+}
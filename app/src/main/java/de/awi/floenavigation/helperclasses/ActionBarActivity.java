@@ -79,15 +79,7 @@ public class ActionBarActivity extends Activity {
      */
     public static final String colorRed = "#d32f2f";
 
-    /**
-     * The current UTC time in milliseconds as read from the GPS fix available via {@link GPS_Service}
-     */
-    private long gpsTime;
 
-    /**
-     * The difference in milliseconds between the current time of the tablet and {@link #gpsTime}
-     */
-    public long timeDiff;
 
     /**
      * Default {@link Activity#onCreate(Bundle)}. It registers a {@link Runnable} with the {@link Handler} {@link #statusHandler} which
@@ -196,7 +188,7 @@ public class ActionBarActivity extends Activity {
     /**
      * Registers and implements the {@link BroadcastReceiver}s for the AIS Connectivity and GPS location broadcasts; which are sent from
      * {@link de.awi.floenavigation.network.NetworkMonitor} and {@link GPS_Service} respectively.
-     * The GPS Broadcast receiver sets the value of {@link #locationStatus} and {@link #gpsTime} to the values from the {@link GPS_Service}.
+     * The GPS Broadcast receiver sets the value of {@link #locationStatus} to the value from the {@link GPS_Service}.
      * The AIS Connectivity broadcast receiver sets the boolean {@link #packetStatus}.
      *
      * @see Runnable
@@ -213,8 +205,6 @@ public class ActionBarActivity extends Activity {
                 public void onReceive(Context context, Intent intent) {
                     locationStatus = intent.getExtras().getBoolean(GPS_Service.locationStatus);
                     Log.d(TAG, "Location Status: " + String.valueOf(locationStatus));
-                    gpsTime = Long.parseLong(intent.getExtras().get(GPS_Service.GPSTime).toString());
-                    timeDiff = System.currentTimeMillis() - gpsTime;
                 }
             };
 
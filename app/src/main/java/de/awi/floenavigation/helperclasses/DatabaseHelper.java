@@ -33,7 +33,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * Schema. This is used by the {@link #onUpgrade(SQLiteDatabase, int, int)} function to check if the Database needs to updated
      * when the App is installed.
      */
-    private static final int DB_VERSION = 2;
+    private static final int DB_VERSION = 11;
     private static final String TAG = "DatabaseHelper";
 
     /**
@@ -41,6 +41,11 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     private static DatabaseHelper dbInstance;
 
+    /**
+     * Name of the savepoint which holds the read transaction of a snapshot, see {@link #openSnapshot(Context)}
+     */
+    private static final String SNAPSHOT_SAVEPOINT = "snapshot";
+
     /**
      * Index value for the Origin of Floe's Coordinate System. This index value is used in different classes and activities whenever an
      * array of Station parameters (such as MMSIs or Latitude/Longitudes) is created this will be the index in the array at which the
@@ -170,6 +175,42 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
     public static final String packet_threshold_time = "PACKET_THRESHOLD_TIME";
 
+    /**
+     * Name of the Configuration Parameter which defines the distance in meters by which the origin or the x-Axis of the coordinate
+     * system has to move before the grid coordinates of all the Mobile Stations are calculated again by
+     * {@link de.awi.floenavigation.services.AlphaCalculationService}. Below this distance only the Mobile Stations whose position
+     * has been received are calculated again.
+     */
+    public static final String grid_recalculation_threshold = "GRID_RECALCULATION_THRESHOLD";
+
+    /**
+     * Name of the Configuration Parameter which gives the number of rows pushed to the Sync Server in one request by
+     * {@link de.awi.floenavigation.synchronization.SyncActivity}. If it is 0 every row is pushed with its own request, which is
+     * the only mode supported by Sync Servers without the batch endpoints.
+     */
+    public static final String sync_batch_size = "SYNC_BATCH_SIZE";
+
+    /**
+     * Name of the Configuration Parameter which switches on the binary encoding of
+     * {@link de.awi.floenavigation.synchronization.SyncBinaryCodec} for the batched push and the pulls, if it is 1. It may only be
+     * switched on if the Sync Server supports the encoding.
+     */
+    public static final String sync_binary_encoding = "SYNC_BINARY_ENCODING";
+
+    /**
+     * Name of the Configuration Parameter which gives the UDP port on which the tablets exchange the live station state on the local
+     * network with {@link de.awi.floenavigation.network.PeerGossip}. The exchange is switched off if it is 0. It is read when the App
+     * starts.
+     */
+    public static final String gossip_port = "GOSSIP_PORT";
+
+    /**
+     * Name of the Configuration Parameter which gives the addresses of the other tablets, separated by commas, to which
+     * {@link de.awi.floenavigation.network.PeerGossip} sends by unicast as well as to its multicast group, for networks which do not
+     * forward multicast. It is read when the App starts.
+     */
+    public static final String gossip_peers = "GOSSIP_PEERS";
+
     //Database Tables Names
     /**
      * Table which stores the details of every Fixed Station deployed on the Floe. It stores the location parameters of each Fixed Station
@@ -318,106 +359,101 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public static final String staticStationListTable = "STATION_LIST";
 
     /**
-     * Table name for the Database table which stores a list of deleted Fixed Stations. This table contains the MMSIs and deletion time
-     * of each Fixed Station which was deleted from this particular instance of the App whether by Recovery Activity or Validation Service.
-     * Whenever a Fixed Station is recovered it specific row is deleted from the {@link #stationListTable} and its MMSI is added to
-     * this table. When the Synchronization process is run this table is synchronized with the Sync Server which then deletes the
-     * same station from all the other tablets.
-     * <p>
-     *     When a Fixed Station is deleted either by Recovery or by Validation Service its entry has to be deleted from two or three
-     *     different database tables: {@link #stationListTable}, {@link #fixedStationTable} and if it is the origin or x-Axis marker
-     *     then from {@link #baseStationTable}. This means that when a fixed station is deleted its MMSI should be added to two or three
-     *     different tables: {@link #stationListDeletedTable}, {@link #fixedStationDeletedTable} and in case it is the orign or x-Axis
-     *     marker {@link #baseStationDeletedTable}. These deleted tables are then Synchronized with the Sync Server which removes
-     *     the entries in these tables from its tables and pushes those tables to other instance of the App so that when a fixed station
-     *     is removed from one tablet it is removed from all tablet.
-     * </p>
-     * <p>
-     *     This table is synchronized with Synchronization Server during {@link de.awi.floenavigation.synchronization.SyncActivity}. This
-     *     table's data pushed to the Sync Server, and its local copy is cleared. No data is pulled from the Sync Server for this table.
-     * </p>
+     * Table name of the former Database table which stored the MMSI and deletion time of each Fixed Station deleted from this particular
+     * instance of the App, to be synchronized with the Sync Server. It has been replaced by the {@link #changeJournalTable}, which
+     * records the deleted rows of the {@link #stationListTable} without the help of the Activities and Services deleting them. Its entries are
+     * moved to the {@link #changeJournalTable} and the table is dropped in version 6 of the database, the name is only kept for the
+     * upgrade.
      */
     public static final String stationListDeletedTable = "STATION_LIST_DELETED";
 
     /**
-     * Table name for the Database table which stores a list of deleted Fixed Stations. This table contains the MMSIs and deletion time
-     * of each Fixed Station which was deleted from this particular instance of the App whether by Recovery Activity or Validation Service.
-     * Whenever a Fixed Station is recovered it specific row is deleted from the {@link #fixedStationTable} and its MMSI is added to this table.
-     * When the Synchronization process is run this table is synchronized with the Sync Server which then deletes the same station from
-     * all the other tablets.
-     * <p>
-     *     When a Fixed Station is deleted either by Recovery or by Validation Service its entry has to be deleted from two or three
-     *     different database tables: {@link #stationListTable}, {@link #fixedStationTable} and if it is the origin or x-Axis marker
-     *     then from {@link #baseStationTable}. This means that when a fixed station is deleted its MMSI should be added to two or three
-     *     different tables: {@link #stationListDeletedTable}, {@link #fixedStationDeletedTable} and in case it is the orign or x-Axis
-     *     marker {@link #baseStationDeletedTable}. These deleted tables are then Synchronized with the Sync Server which removes
-     *     the entries in these tables from its tables and pushes those tables to other instance of the App so that when a fixed station
-     *     is removed from one tablet it is removed from all tablet.
-     * </p>
-     * <p>
-     *     This table is synchronized with Synchronization Server during {@link de.awi.floenavigation.synchronization.SyncActivity}. This
-     *     table's data pushed to the Sync Server, and its local copy is cleared. No data is pulled from the Sync Server for this table.
-     * </p>
+     * Table name of the former Database table which stored the MMSI and deletion time of each Fixed Station deleted from this particular
+     * instance of the App, to be synchronized with the Sync Server. It has been replaced by the {@link #changeJournalTable}, which
+     * records the deleted rows of the {@link #fixedStationTable} without the help of the Activities and Services deleting them. Its entries are
+     * moved to the {@link #changeJournalTable} and the table is dropped in version 6 of the database, the name is only kept for the
+     * upgrade.
      */
     public static final String fixedStationDeletedTable = "FIXED_STATION_DELETED";
 
     /**
-     * Table name for the Database table which stores a list of deleted Static Stations. This table contains the names and deletion time
-     * of each Static Station which was deleted from this particular instance of the App. Whenever a Static Station is recovered it specific
-     * row is deleted from the {@link #staticStationListTable} and its name is added to this table. When the Synchronization process is run
-     * this table is synchronized with the Sync Server which then deletes the same station from all the other tablets.
-     * <p>
-     *     This table is synchronized with Synchronization Server during {@link de.awi.floenavigation.synchronization.SyncActivity}. This
-     *     table's data pushed to the Sync Server, and its local copy is cleared. No data is pulled from the Sync Server for this table.
-     * </p>
+     * Table name of the former Database table which stored the name and deletion time of each Static Station deleted from this particular
+     * instance of the App, to be synchronized with the Sync Server. It has been replaced by the {@link #changeJournalTable}, which
+     * records the deleted rows of the {@link #staticStationListTable} without the help of the Activities and Services deleting them. Its entries are
+     * moved to the {@link #changeJournalTable} and the table is dropped in version 6 of the database, the name is only kept for the
+     * upgrade.
      */
     public static final String staticStationDeletedTable = "STATIC_STATION_DELETED";
 
     /**
-     * Table name for the Database table which stores a list of deleted Base Stations (Base Stations are origin and the x-Axis marker).
-     * This table contains the MMSIs and deletion time of each Base Station which was deleted from this particular instance of the App
-     * whether by Recovery Activity or Validation Service. Whenever a Base Station is recovered it specific row is deleted from the
-     * {@link #baseStationTable} and its MMSI is added to this table. When the Synchronization process is run this table is
-     * synchronized with the Sync Server which then deletes the same station from all the other tablets.
-     * <p>
-     *     When a Fixed Station is deleted either by Recovery or by Validation Service its entry has to be deleted from two or three
-     *     different database tables: {@link #stationListTable}, {@link #fixedStationTable} and if it is the origin or x-Axis marker
-     *     then from {@link #baseStationTable}. This means that when a fixed station is deleted its MMSI should be added to two or three
-     *     different tables: {@link #stationListDeletedTable}, {@link #fixedStationDeletedTable} and in case it is the orign or x-Axis
-     *     marker {@link #baseStationDeletedTable}. These deleted tables are then Synchronized with the Sync Server which removes
-     *     the entries in these tables from its tables and pushes those tables to other instance of the App so that when a fixed station
-     *     is removed from one tablet it is removed from all tablet.
-     * </p>
+     * Table name of the former Database table which stored the MMSI and deletion time of each Base Station deleted from this particular
+     * instance of the App, to be synchronized with the Sync Server. It has been replaced by the {@link #changeJournalTable}, which
+     * records the deleted rows of the {@link #baseStationTable} without the help of the Activities and Services deleting them. Its entries are
+     * moved to the {@link #changeJournalTable} and the table is dropped in version 6 of the database, the name is only kept for the
+     * upgrade.
+     */
+    public static final String baseStationDeletedTable = "BASE_STATION_DELETED";
+
+    /**
+     * Table name of the former Database table which stored the label and deletion time of each Waypoint deleted from this particular
+     * instance of the App, to be synchronized with the Sync Server. It has been replaced by the {@link #changeJournalTable}, which
+     * records the deleted rows of the {@link #waypointsTable} without the help of the Activities and Services deleting them. Its entries are
+     * moved to the {@link #changeJournalTable} and the table is dropped in version 6 of the database, the name is only kept for the
+     * upgrade.
+     */
+    public static final String waypointDeletedTable = "WAYPOINT_DELETED";
+
+    /**
+     * Table name of the former Database table which stored the name and deletion time of each Admin User deleted from this particular
+     * instance of the App, to be synchronized with the Sync Server. It has been replaced by the {@link #changeJournalTable}, which
+     * records the deleted rows of the {@link #usersTable} without the help of the Activities and Services deleting them. Its entries are
+     * moved to the {@link #changeJournalTable} and the table is dropped in version 6 of the database, the name is only kept for the
+     * upgrade.
+     */
+    public static final String userDeletedTable = "USERS_DELETED";
+
+    /**
+     * Table name for the Database table which records the latest change of each row of the tables shown on the Grid. It is filled by
+     * SQLite triggers created in {@link #createJournalTriggers(SQLiteDatabase, String, String, String[])}, so none of the Activities and
+     * Background Services writing these tables need to know about it. For each row the table keeps a single entry with the name of the
+     * table, the key of the row and whether the row was inserted/updated ({@link #JOURNAL_UPSERT}) or deleted ({@link #JOURNAL_DELETE}),
+     * and the {@link #journalSource} of the change.
+     * Whenever the row changes again its entry is replaced by one with a higher <code>_id</code>, so the <code>_id</code> is a
+     * monotonically increasing change counter. A reader which remembers the highest <code>_id</code> it has seen of a table only needs
+     * to read the entries above it to find every row which changed since, including the deleted ones. Once a push has been acknowledged
+     * the entries it has sent and the entries written by a pull are deleted, except the latest entry of the table, so the highest
+     * <code>_id</code> of a table never decreases; a reader whose version is below the {@link #prunedVersion} reads the table again.
      * <p>
-     *     This table is synchronized with Synchronization Server during {@link de.awi.floenavigation.synchronization.SyncActivity}. This
-     *     table's data pushed to the Sync Server, and its local copy is cleared. No data is pulled from the Sync Server for this table.
+     *     It is read by {@link de.awi.floenavigation.grid.GridActivity} to load only the changed stations and waypoints, and by the
+     *     Sync Classes of {@link de.awi.floenavigation.synchronization} to push only the rows changed or deleted since the last
+     *     acknowledged push, which is stored in the {@link #syncStateTable}. This table is not synchronized with the Synchronization Server.
      * </p>
      */
-    public static final String baseStationDeletedTable = "BASE_STATION_DELETED";
+    public static final String changeJournalTable = "CHANGE_JOURNAL";
 
     /**
-     * Table name for the Database table which stores a list of deleted Waypoints. This table contains the names and deletion time
-     * of each Waypoint which was deleted from this particular instance of the App. Whenever a Waypoint is deleted its specific
-     * row is deleted from the {@link #waypointsTable} and its name is added to this table. When the Synchronization process is run
-     * this table is synchronized with the Sync Server which then deletes the same waypoint from all the other tablets.
+     * Table name for the Database table which stores the versions up to which each synchronized table has been exchanged with the
+     * Sync Server. For each table it stores the highest <code>_id</code> of the {@link #changeJournalTable} whose changes have been
+     * acknowledged by the Sync Server ({@link #pushedVersion}) and the version of the Sync Server up to which the changes of the
+     * server have been pulled ({@link #pulledVersion}), as well as the entity tag of the last pull response ({@link #pullEtag}) and
+     * the highest <code>_id</code> whose entry has been deleted from the journal ({@link #prunedVersion}).
      * <p>
-     *     This table is synchronized with Synchronization Server during {@link de.awi.floenavigation.synchronization.SyncActivity}. This
-     *     table's data pushed to the Sync Server, and its local copy is cleared. No data is pulled from the Sync Server for this table.
+     *     This table is not synchronized with the Synchronization Server.
      * </p>
      */
-    public static final String waypointDeletedTable = "WAYPOINT_DELETED";
+    public static final String syncStateTable = "SYNC_STATE";
 
     /**
-     * Table name for the Database table which stores a list of deleted Admin Users. This table contains the names and deletion time
-     * of each Admin User which was deleted from this particular instance of the App. Whenever an Admin User is deleted its specific
-     * row is deleted from the {@link #usersTable} and its name is added to this table. When the Synchronization process is run
-     * this table is synchronized with the Sync Server which then deletes the same User from all the other tablets.
+     * Table name for the Database table which keeps the batches of the batched push until the Sync Server has acknowledged them.
+     * Each row holds the request body of one batch with the URL it is sent to, a unique {@link #idempotencyKey} sent with every
+     * attempt and the number of {@link #attempts} and the time of the {@link #nextAttempt} of its retries. The rows are sent and
+     * removed by {@link de.awi.floenavigation.synchronization.SyncOutbox}, so a batch which could not be sent survives a lost
+     * connection and a restart of the App.
      * <p>
-     *     This table is synchronized with Synchronization Server during {@link de.awi.floenavigation.synchronization.SyncActivity}. This
-     *     table's data pushed to the Sync Server, and its local copy is cleared. No data is pulled from the Sync Server for this table.
+     *     This table is not synchronized with the Synchronization Server.
      * </p>
      */
-    public static final String userDeletedTable = "USERS_DELETED";
+    public static final String syncOutboxTable = "SYNC_OUTBOX";
 
 
 
@@ -833,6 +869,154 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     public static final String comment = "COMMENT";
 
+    /**
+     * Column name for storing the name of the table in which a row was changed. This is a TEXT field.
+     * <p>
+     *     A column of this name is present in the database table {@link #changeJournalTable}.
+     * </p>
+     */
+    public static final String journalTableName = "TABLE_NAME";
+
+    /**
+     * Column name for storing the key of a changed row, such as the {@link #mmsi} of a Fixed Station or the {@link #labelID} of a
+     * Waypoint. This is a TEXT field, which SQLite compares as a number with INTEGER keys.
+     * <p>
+     *     A column of this name is present in the database table {@link #changeJournalTable}.
+     * </p>
+     */
+    public static final String rowKey = "ROW_KEY";
+
+    /**
+     * Column name for storing where a change of a row came from. This is a TEXT field, null for the changes made on this tablet and
+     * {@link #JOURNAL_SOURCE_PULL} for the rows written by a pull from the Sync Server, which are not pushed back.
+     * <p>
+     *     A column of this name is present in the database table {@link #changeJournalTable}.
+     * </p>
+     */
+    public static final String journalSource = "SOURCE";
+
+    /**
+     * Column name for storing the highest <code>_id</code> of the {@link #changeJournalTable} of a table whose changes have been
+     * pushed to the Sync Server and acknowledged. This is an INTEGER field.
+     * <p>
+     *     A column of this name is present in the database table {@link #syncStateTable}.
+     * </p>
+     */
+    public static final String pushedVersion = "PUSHED_VERSION";
+
+    /**
+     * Column name for storing the version of the Sync Server up to which the changes of a table have been pulled. The version is
+     * sent by the Sync Server with the rows of a pull. This is an INTEGER field.
+     * <p>
+     *     A column of this name is present in the database table {@link #syncStateTable}.
+     * </p>
+     */
+    public static final String pulledVersion = "PULLED_VERSION";
+
+    /**
+     * Column name for storing the entity tag the Sync Server sent with the last pull of a table. It is sent back with the next pull
+     * so that the Sync Server can answer that the table has not changed. This is a TEXT field.
+     * <p>
+     *     A column of this name is present in the database table {@link #syncStateTable}.
+     * </p>
+     */
+    public static final String pullEtag = "PULL_ETAG";
+
+    /**
+     * Column name for storing the highest <code>_id</code> of the {@link #changeJournalTable} of a table whose entry has been deleted
+     * after an acknowledged push. A reader which has not seen the entries up to this version has to read the whole table again.
+     * This is an INTEGER field.
+     * <p>
+     *     A column of this name is present in the database table {@link #syncStateTable}.
+     * </p>
+     */
+    public static final String prunedVersion = "PRUNED_VERSION";
+
+    /**
+     * Column name for storing the URL a batch of the batched push is sent to. This is a TEXT field.
+     * <p>
+     *     A column of this name is present in the database table {@link #syncOutboxTable}.
+     * </p>
+     */
+    public static final String outboxUrl = "URL";
+
+    /**
+     * Column name for storing the key which identifies a batch of the batched push, so that the Sync Server stores a batch sent again
+     * after a lost acknowledgement only once. This is a TEXT field.
+     * <p>
+     *     A column of this name is present in the database table {@link #syncOutboxTable}.
+     * </p>
+     */
+    public static final String idempotencyKey = "IDEMPOTENCY_KEY";
+
+    /**
+     * Column name for storing the request body of a batch of the batched push. This is a BLOB field.
+     * <p>
+     *     A column of this name is present in the database table {@link #syncOutboxTable}.
+     * </p>
+     */
+    public static final String outboxBody = "BODY";
+
+    /**
+     * Column name for storing whether the {@link #outboxBody} is compressed with gzip. This is an INTEGER field, 1 if it is compressed.
+     * <p>
+     *     A column of this name is present in the database table {@link #syncOutboxTable}.
+     * </p>
+     */
+    public static final String outboxCompressed = "COMPRESSED";
+
+    /**
+     * Column name for storing the number of rows of a batch of the batched push. This is an INTEGER field.
+     * <p>
+     *     A column of this name is present in the database table {@link #syncOutboxTable}.
+     * </p>
+     */
+    public static final String outboxRows = "ROW_COUNT";
+
+    /**
+     * Column name for storing the version of the {@link #changeJournalTable} up to which the changes of a batch were read, or -1 if the
+     * table is always pushed completely. This is an INTEGER field.
+     * <p>
+     *     A column of this name is present in the database table {@link #syncOutboxTable}.
+     * </p>
+     */
+    public static final String pushVersion = "PUSH_VERSION";
+
+    /**
+     * Column name for storing the number of times a batch of the batched push has failed. This is an INTEGER field.
+     * <p>
+     *     A column of this name is present in the database table {@link #syncOutboxTable}.
+     * </p>
+     */
+    public static final String attempts = "ATTEMPTS";
+
+    /**
+     * Column name for storing the time in milliseconds since the epoch before which a failed batch of the batched push is not sent
+     * again. This is an INTEGER field.
+     * <p>
+     *     A column of this name is present in the database table {@link #syncOutboxTable}.
+     * </p>
+     */
+    public static final String nextAttempt = "NEXT_ATTEMPT";
+
+    /**
+     * Column name for storing the content type of the {@link #outboxBody}, JSON or the binary encoding of
+     * {@link de.awi.floenavigation.synchronization.SyncBinaryCodec}. This is a TEXT field, JSON if it is null.
+     * <p>
+     *     A column of this name is present in the database table {@link #syncOutboxTable}.
+     * </p>
+     */
+    public static final String outboxContentType = "CONTENT_TYPE";
+
+    /**
+     * Id of the tablet from which a sample measurement was received by {@link de.awi.floenavigation.network.PeerGossip}. This is a
+     * TEXT field, null for the samples taken on this tablet, which are the only ones pushed to the Sync Server.
+     * <p>
+     *     A column of this name is present in the database table {@link #sampleMeasurementTable}.
+     * </p>
+     */
+    public static final String gossipOrigin = "GOSSIP_ORIGIN";
+
 
     /**
      * A string specifying the value to insert in the {@link #stationName} field of the {@link #fixedStationTable} in case the Origin
@@ -904,6 +1088,22 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     public static final int MOBILE_STATION_IS_CALCULATED = 1;
 
+    /**
+     * The value of the field {@link #operation} in the Database table {@link #changeJournalTable} if the row has been inserted or updated.
+     */
+    public static final String JOURNAL_UPSERT = "U";
+
+    /**
+     * The value of the field {@link #operation} in the Database table {@link #changeJournalTable} if the row has been deleted.
+     */
+    public static final String JOURNAL_DELETE = "D";
+
+    /**
+     * The value of the field {@link #journalSource} in the Database table {@link #changeJournalTable} if the row has been written by a
+     * pull from the Sync Server.
+     */
+    public static final String JOURNAL_SOURCE_PULL = "P";
+
     /**
      * The value to insert in the {@link #mmsi} field of the {@link #fixedStationTable} in case the Origin
      * station is recovered or is broken.
@@ -988,7 +1188,12 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             "SYNC_SERVER_HOSTNAME",
             "SYNC_SERVER_PORT",
             "TABLET_ID",
-            "PACKET_THRESHOLD_TIME"
+            "PACKET_THRESHOLD_TIME",
+            "GRID_RECALCULATION_THRESHOLD",
+            "SYNC_BATCH_SIZE",
+            "SYNC_BINARY_ENCODING",
+            "GOSSIP_PORT",
+            "GOSSIP_PEERS"
     };
 
     /**
@@ -1002,10 +1207,12 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
 
     /**
-     * Default Constructor
+     * Default Constructor. The database is opened in write-ahead logging mode, so the reads of the Sync Classes and the Grid get a
+     * consistent snapshot without blocking the background Services writing the received stations, and the other way round.
      */
     public DatabaseHelper(Context context){
         super(context, DB_NAME, null, DB_VERSION);
+        setWriteAheadLoggingEnabled(true);
     }
 
     /**
@@ -1221,7 +1428,193 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 //return false;
             }
         }
+        if(oldVersion < 3){
+            try{
+                insertDefaultConfigParams(db, grid_recalculation_threshold, "1");
+            } catch (SQLException e){
+                Log.d(TAG, "Database Unavailable");
+            }
+        }
+        if(oldVersion < 4){
+            try{
+                db.execSQL("CREATE TABLE " + changeJournalTable + " ( _id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        journalTableName + " TEXT NOT NULL, " +
+                        rowKey + " TEXT NOT NULL, " +
+                        operation + " TEXT NOT NULL); ");
+                db.execSQL("CREATE INDEX " + changeJournalTable + "_KEY ON " + changeJournalTable + " (" + journalTableName + ", " + rowKey + ");");
+                db.execSQL("CREATE INDEX " + changeJournalTable + "_VERSION ON " + changeJournalTable + " (" + journalTableName + ", _id);");
+                db.execSQL("CREATE INDEX " + mobileStationTable + "_" + mmsi + " ON " + mobileStationTable + " (" + mmsi + ");");
+
+                createJournalTriggers(db, fixedStationTable, mmsi, new String[]{stationName, xPosition, yPosition, latitude, longitude,
+                        recvdLatitude, recvdLongitude, updateTime, predictionTime, isLocationReceived});
+                createJournalTriggers(db, mobileStationTable, mmsi, new String[]{stationName, xPosition, yPosition, isCalculated});
+                createJournalTriggers(db, staticStationListTable, staticStationName, new String[]{xPosition, yPosition});
+                createJournalTriggers(db, waypointsTable, labelID, new String[]{xPosition, yPosition});
+                createJournalTriggers(db, baseStationTable, mmsi, null);
+                createJournalTriggers(db, betaTable, "_id", null);
+            } catch (SQLException e){
+                Log.d(TAG, "Database Unavailable");
+            }
+        }
+        if(oldVersion < 5){
+            try{
+                insertDefaultConfigParams(db, sync_batch_size, "0");
+            } catch (SQLException e){
+                Log.d(TAG, "Database Unavailable");
+            }
+        }
+        if(oldVersion < 6){
+            try{
+                db.execSQL("CREATE TABLE " + syncStateTable + " ( " + journalTableName + " TEXT PRIMARY KEY, " +
+                        pushedVersion + " INTEGER NOT NULL DEFAULT 0, " +
+                        pulledVersion + " INTEGER NOT NULL DEFAULT 0); ");
+                db.execSQL("ALTER TABLE " + changeJournalTable + " ADD COLUMN " + journalSource + " TEXT;");
+
+                //Every pushed column has to be recorded, not only those shown on the Grid
+                dropJournalTriggers(db, fixedStationTable);
+                dropJournalTriggers(db, staticStationListTable);
+                dropJournalTriggers(db, waypointsTable);
+                createJournalTriggers(db, fixedStationTable, mmsi, null);
+                createJournalTriggers(db, staticStationListTable, staticStationName, null);
+                createJournalTriggers(db, waypointsTable, labelID, null);
+                createJournalTriggers(db, stationListTable, mmsi, null);
+                createJournalTriggers(db, usersTable, userName, null);
+                createJournalTriggers(db, configParametersTable, parameterName, null);
+
+                journalExistingRows(db, fixedStationTable, mmsi, fixedStationDeletedTable);
+                journalExistingRows(db, baseStationTable, mmsi, baseStationDeletedTable);
+                journalExistingRows(db, stationListTable, mmsi, stationListDeletedTable);
+                journalExistingRows(db, staticStationListTable, staticStationName, staticStationDeletedTable);
+                journalExistingRows(db, waypointsTable, labelID, waypointDeletedTable);
+                journalExistingRows(db, usersTable, userName, userDeletedTable);
+                journalExistingRows(db, configParametersTable, parameterName, null);
+                journalExistingRows(db, betaTable, "_id", null);
+
+                db.execSQL("DROP TABLE IF EXISTS " + fixedStationDeletedTable);
+                db.execSQL("DROP TABLE IF EXISTS " + baseStationDeletedTable);
+                db.execSQL("DROP TABLE IF EXISTS " + stationListDeletedTable);
+                db.execSQL("DROP TABLE IF EXISTS " + staticStationDeletedTable);
+                db.execSQL("DROP TABLE IF EXISTS " + waypointDeletedTable);
+                db.execSQL("DROP TABLE IF EXISTS " + userDeletedTable);
+            } catch (SQLException e){
+                Log.d(TAG, "Database Unavailable");
+            }
+        }
+        if(oldVersion < 7){
+            try{
+                db.execSQL("ALTER TABLE " + syncStateTable + " ADD COLUMN " + pullEtag + " TEXT;");
+            } catch (SQLException e){
+                Log.d(TAG, "Database Unavailable");
+            }
+        }
+        if(oldVersion < 8){
+            try{
+                db.execSQL("CREATE TABLE " + syncOutboxTable + " ( _id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        journalTableName + " TEXT NOT NULL, " +
+                        outboxUrl + " TEXT NOT NULL, " +
+                        idempotencyKey + " TEXT NOT NULL UNIQUE, " +
+                        outboxBody + " BLOB NOT NULL, " +
+                        outboxCompressed + " INTEGER NOT NULL DEFAULT 0, " +
+                        outboxRows + " INTEGER NOT NULL DEFAULT 0, " +
+                        pushVersion + " INTEGER NOT NULL DEFAULT -1, " +
+                        attempts + " INTEGER NOT NULL DEFAULT 0, " +
+                        nextAttempt + " INTEGER NOT NULL DEFAULT 0); ");
+            } catch (SQLException e){
+                Log.d(TAG, "Database Unavailable");
+            }
+        }
+        if(oldVersion < 9){
+            try{
+                db.execSQL("ALTER TABLE " + syncOutboxTable + " ADD COLUMN " + outboxContentType + " TEXT;");
+                insertDefaultConfigParams(db, sync_binary_encoding, "0");
+            } catch (SQLException e){
+                Log.d(TAG, "Database Unavailable");
+            }
+        }
+        if(oldVersion < 10){
+            try{
+                db.execSQL("ALTER TABLE " + sampleMeasurementTable + " ADD COLUMN " + gossipOrigin + " TEXT;");
+                insertDefaultConfigParams(db, gossip_port, "0");
+                insertDefaultConfigParams(db, gossip_peers, "");
+            } catch (SQLException e){
+                Log.d(TAG, "Database Unavailable");
+            }
+        }
+        if(oldVersion < 11){
+            try{
+                db.execSQL("ALTER TABLE " + syncStateTable + " ADD COLUMN " + prunedVersion + " INTEGER NOT NULL DEFAULT 0;");
+            } catch (SQLException e){
+                Log.d(TAG, "Database Unavailable");
+            }
+        }
+
+    }
+
+    /**
+     * Drops the triggers created by {@link #createJournalTriggers(SQLiteDatabase, String, String, String[])} for the given table
+     * @param table table whose changes are recorded
+     */
+    private static void dropJournalTriggers(SQLiteDatabase db, String table){
+        db.execSQL("DROP TRIGGER IF EXISTS " + table + "_JOURNAL_INSERT");
+        db.execSQL("DROP TRIGGER IF EXISTS " + table + "_JOURNAL_UPDATE");
+        db.execSQL("DROP TRIGGER IF EXISTS " + table + "_JOURNAL_DELETE");
+    }
+
+    /**
+     * Records the rows of a table which were written before its triggers existed in the {@link #changeJournalTable}, so that the
+     * first push after the upgrade sends them. The keys stored in the given table of the deleted rows are recorded as deleted,
+     * unless a row with the same key exists again.
+     * @param table table whose changes are recorded
+     * @param keyColumn column which identifies a row of the table
+     * @param deletedTable table of the deleted rows with a column of the same name as <code>keyColumn</code>, or <code>null</code>
+     */
+    private static void journalExistingRows(SQLiteDatabase db, String table, String keyColumn, String deletedTable){
+        String insertEntry = "INSERT INTO " + changeJournalTable + " (" + journalTableName + ", " + rowKey + ", " + operation + ") ";
+        String notJournaled = " NOT IN (SELECT " + rowKey + " FROM " + changeJournalTable + " WHERE " + journalTableName + " = '" + table + "')";
+        db.execSQL(insertEntry + "SELECT '" + table + "', " + keyColumn + ", '" + JOURNAL_UPSERT + "' FROM " + table +
+                " WHERE " + keyColumn + notJournaled);
+        if (deletedTable != null) {
+            db.execSQL(insertEntry + "SELECT DISTINCT '" + table + "', " + keyColumn + ", '" + JOURNAL_DELETE + "' FROM " + deletedTable +
+                    " WHERE " + keyColumn + notJournaled + " AND " + keyColumn + " NOT IN (SELECT " + keyColumn + " FROM " + table + ")");
+        }
+    }
 
+    /**
+     * Creates the triggers which record every insert, update and delete of a row of the given table in the {@link #changeJournalTable}.
+     * The previous entry of the row is deleted first, so the journal keeps one entry per row. If the key of a row is updated, the
+     * old key is recorded as deleted. The keys are compared as text, the type of {@link #rowKey}: a key column of numbers, as the
+     * {@link #mmsi}, would otherwise keep SQLite from using the index of the journal and make every write scan the entries of the table.
+     * @param table table whose changes are recorded
+     * @param keyColumn column which identifies a row of the table
+     * @param watchedColumns columns whose update is recorded, or <code>null</code> to record the update of any column. Updates
+     *                       which change none of these columns and not the key are not recorded.
+     */
+    private static void createJournalTriggers(SQLiteDatabase db, String table, String keyColumn, String[] watchedColumns){
+        String deleteEntry = "DELETE FROM " + changeJournalTable + " WHERE " + journalTableName + " = '" + table + "' AND " + rowKey;
+        String insertEntry = "INSERT INTO " + changeJournalTable + " (" + journalTableName + ", " + rowKey + ", " + operation + ") ";
+        String newKey = "CAST(NEW." + keyColumn + " AS TEXT)";
+        String oldKey = "CAST(OLD." + keyColumn + " AS TEXT)";
+
+        db.execSQL("CREATE TRIGGER " + table + "_JOURNAL_INSERT AFTER INSERT ON " + table + " BEGIN " +
+                deleteEntry + " = " + newKey + "; " +
+                insertEntry + "VALUES ('" + table + "', NEW." + keyColumn + ", '" + JOURNAL_UPSERT + "'); END;");
+
+        StringBuilder when = new StringBuilder("OLD." + keyColumn + " IS NOT NEW." + keyColumn);
+        if (watchedColumns != null) {
+            for (String column : watchedColumns) {
+                when.append(" OR OLD.").append(column).append(" IS NOT NEW.").append(column);
+            }
+        }
+        db.execSQL("CREATE TRIGGER " + table + "_JOURNAL_UPDATE AFTER UPDATE ON " + table +
+                (watchedColumns != null ? " WHEN " + when : "") + " BEGIN " +
+                deleteEntry + " IN (" + oldKey + ", " + newKey + "); " +
+                insertEntry + "SELECT '" + table + "', OLD." + keyColumn + ", '" + JOURNAL_DELETE + "' WHERE OLD." + keyColumn +
+                " IS NOT NEW." + keyColumn + "; " +
+                insertEntry + "VALUES ('" + table + "', NEW." + keyColumn + ", '" + JOURNAL_UPSERT + "'); END;");
+
+        db.execSQL("CREATE TRIGGER " + table + "_JOURNAL_DELETE AFTER DELETE ON " + table + " BEGIN " +
+                deleteEntry + " = " + oldKey + "; " +
+                insertEntry + "VALUES ('" + table + "', OLD." + keyColumn + ", '" + JOURNAL_DELETE + "'); END;");
     }
 
     /**
@@ -1358,6 +1751,45 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return dbInstance;
     }
 
+    /**
+     * Opens a snapshot of the Database for reading on a worker thread. The snapshot is a separate read-only connection with a deferred
+     * read transaction, so all its queries see the Database as it was at the first of them, and in write-ahead logging mode it neither
+     * waits for the background Services writing through {@link #getDbInstance(Context)} nor holds them back. The transaction is
+     * started with a savepoint, as {@link SQLiteDatabase#beginTransaction()} always takes the write lock.
+     * The snapshot must be used on one thread only and closed with {@link #closeSnapshot(SQLiteDatabase)}.
+     * @param context The {@link Context} in which the App is running.
+     * @return the connection of the snapshot
+     * @throws SQLException if the Database could not be opened
+     */
+    public static SQLiteDatabase openSnapshot(Context context){
+        //Creates or upgrades the Database and switches it to write-ahead logging before the read-only connection is opened
+        getDbInstance(context).getReadableDatabase();
+        SQLiteDatabase snapshot = SQLiteDatabase.openDatabase(context.getDatabasePath(DB_NAME).getPath(), null,
+                SQLiteDatabase.OPEN_READONLY);
+        try {
+            snapshot.execSQL("SAVEPOINT " + SNAPSHOT_SAVEPOINT);
+        } catch (SQLException e){
+            snapshot.close();
+            throw e;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Ends the read transaction of a snapshot opened by {@link #openSnapshot(Context)} and closes its connection
+     * @param snapshot the connection of the snapshot
+     */
+    public static void closeSnapshot(SQLiteDatabase snapshot){
+        try {
+            snapshot.execSQL("RELEASE " + SNAPSHOT_SAVEPOINT);
+        } catch (SQLException e){
+            Log.d(TAG, "Error Ending Snapshot");
+            e.printStackTrace();
+        } finally {
+            snapshot.close();
+        }
+    }
+
     /**
      * Loads the Device data from the Database table {@link #deviceListTable} and populates each column in their respective {@link List}.
      * This method is called by the {@link de.awi.floenavigation.sample_measurement.SampleMeasurementActivity} to load the Device data
@@ -3,12 +3,9 @@ package de.awi.floenavigation.helperclasses;
 import android.app.Activity;
 import android.app.AlertDialog;
 import android.app.Dialog;
-import android.content.BroadcastReceiver;
 import android.content.ContentValues;
-import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
@@ -32,7 +29,6 @@ import de.awi.floenavigation.R;
 import de.awi.floenavigation.dashboard.MainActivity;
 import de.awi.floenavigation.admin.AdminPageActivity;
 import de.awi.floenavigation.initialsetup.SetupActivity;
-import de.awi.floenavigation.services.GPS_Service;
 
 /**
  * This {@link Activity} creates and displays different type of {@link Dialog}s according to the parameters passed to it in its calling
@@ -164,23 +160,11 @@ public class DialogActivity extends Activity {
      */
     private double receivedBeta = 0.0;
 
-    /**
-     * {@link BroadcastReceiver} for receiving the GPS location broadcast from {@link GPS_Service}
-     */
-    private BroadcastReceiver broadcastReceiver;
 
-    /**
-     * The current UTC time in milliseconds as read from the GPS fix available via {@link GPS_Service}
-     */
-    private long gpsTime;
 
-    /**
-     * The difference in milliseconds between the current time of the tablet and {@link #gpsTime}
-     */
-    private long timeDiff;
 
     /**
-     * Default {@link Activity#onCreate(Bundle)}. Registers the {@link #broadcastReceiver} and retrieves the values for type of dialog
+     * Default {@link Activity#onCreate(Bundle)}. Retrieves the values for type of dialog
      * box to display from the {@link Intent} with which this activity was started. Then depending on the type of Dialog Box to display
      * it will create and display the Dialog Box.
      * @param savedInstanceState
@@ -188,19 +172,6 @@ public class DialogActivity extends Activity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        if(broadcastReceiver == null){
-            broadcastReceiver = new BroadcastReceiver(){
-                @Override
-                public void onReceive(Context context, Intent intent){
-                    gpsTime = Long.parseLong(intent.getExtras().get(GPS_Service.GPSTime).toString());
-                    timeDiff = System.currentTimeMillis() - gpsTime;
-
-                }
-            };
-        }
-        registerReceiver(broadcastReceiver, new IntentFilter(GPS_Service.GPSBroadcast));
-
-
         Intent callingIntent = getIntent();
         if(callingIntent.getExtras().containsKey(DIALOG_ABOUTUS)){
             aboutUsDialog = callingIntent.getExtras().getBoolean(DIALOG_ABOUTUS);
@@ -455,7 +426,7 @@ public class DialogActivity extends Activity {
         try {
             ContentValues beta = new ContentValues();
             beta.put(DatabaseHelper.beta, recdBeta);
-            beta.put(DatabaseHelper.updateTime, String.valueOf(System.currentTimeMillis() - timeDiff));
+            beta.put(DatabaseHelper.updateTime, String.valueOf(GPSClock.nowGpsMillis()));
             db.insert(DatabaseHelper.betaTable, null, beta);
             return true;
             /*long test = DatabaseUtils.queryNumEntries(db, DatabaseHelper.betaTable);
@@ -478,16 +449,4 @@ public class DialogActivity extends Activity {
         int uiOptions = View.SYSTEM_UI_FLAG_VISIBLE;
         decorView.setSystemUiVisibility(uiOptions);
     }
-
-    /**
-     * Called when the Dialog box is about to be destroyed. It unregisters the GPS {@link BroadcastReceiver}.
-     */
-    @Override
-    public void onDestroy(){
-        super.onDestroy();
-        if(broadcastReceiver != null){
-            unregisterReceiver(broadcastReceiver);
-            broadcastReceiver = null;
-        }
-    }
 }
@@ -0,0 +1,127 @@
+package de.awi.floenavigation.helperclasses;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Process wide clock which provides the current GPS time to every component of the App.
+ * <p>
+ *     The clock is disciplined by the GPS fixes which {@link de.awi.floenavigation.services.GPS_Service} receives from its location
+ *     listener. Every fix pairs the GPS time with the monotonic {@link SystemClock#elapsedRealtime()} at which it was taken. The
+ *     clock keeps an offset between the two time bases and the drift of the tablet oscillator, both of which are smoothed over
+ *     successive fixes so that a single late fix does not make the time stamps jump. If the error to a fix is larger than
+ *     {@value #STEP_THRESHOLD_MILLIS} msecs, for example after the first fix, the clock is set to the GPS time directly.
+ * </p>
+ * <p>
+ *     The state of the clock is published as an immutable object through a volatile field, so {@link #nowGpsMillis()} can be called
+ *     from any thread without locking. Until the first fix is received {@link #nowGpsMillis()} returns {@link System#currentTimeMillis()}.
+ * </p>
+ */
+public final class GPSClock {
+
+    private static final String TAG = "GPSClock";
+    /**
+     * Fraction of the error between a GPS fix and the clock by which the offset is corrected on every fix
+     */
+    private static final double OFFSET_GAIN = 0.25;
+    /**
+     * Fraction of the error between a GPS fix and the clock, divided by the time since the last fix, by which the drift is
+     * corrected on every fix
+     */
+    private static final double DRIFT_GAIN = 0.05;
+    /**
+     * Largest drift accepted between the tablet oscillator and the GPS time, as a fraction (500 ppm)
+     */
+    private static final double MAX_DRIFT = 500e-6;
+    /**
+     * Error in msecs above which the clock is set to the GPS time instead of being corrected gradually
+     */
+    private static final long STEP_THRESHOLD_MILLIS = 2000;
+
+    /**
+     * Current state of the clock, <code>null</code> until the first GPS fix is received
+     */
+    private static volatile State state = null;
+
+    /**
+     * Immutable state of the clock. The GPS time at an elapsed realtime <code>t</code> is
+     * <code>gpsTime + (t - elapsedRealtime) * (1 + drift)</code>
+     */
+    private static final class State {
+        /**
+         * Elapsed realtime in msecs at which the state was calculated
+         */
+        final long elapsedRealtime;
+        /**
+         * GPS time in msecs at {@link #elapsedRealtime}
+         */
+        final double gpsTime;
+        /**
+         * Rate at which the GPS time runs faster than the elapsed realtime
+         */
+        final double drift;
+
+        State(long elapsedRealtime, double gpsTime, double drift){
+            this.elapsedRealtime = elapsedRealtime;
+            this.gpsTime = gpsTime;
+            this.drift = drift;
+        }
+
+        double gpsTimeAt(long elapsed){
+            return gpsTime + (elapsed - elapsedRealtime) * (1 + drift);
+        }
+    }
+
+    /**
+     * Default constructor, not used as the clock is static
+     */
+    private GPSClock(){
+    }
+
+    /**
+     * Returns the current GPS time. Used to time stamp every row written to the internal local database.
+     * @return the current GPS time in msecs since the epoch, or {@link System#currentTimeMillis()} if no GPS fix has been received
+     */
+    public static long nowGpsMillis(){
+        State current = state;
+        if (current == null){
+            return System.currentTimeMillis();
+        }
+        return Math.round(current.gpsTimeAt(SystemClock.elapsedRealtime()));
+    }
+
+    /**
+     * @return <code>true</code> if the clock has been set by at least one GPS fix
+     */
+    public static boolean isSynchronized(){
+        return state != null;
+    }
+
+    /**
+     * Called from the location listener of {@link de.awi.floenavigation.services.GPS_Service} for every GPS fix.
+     * @param gpsTimeMillis GPS time of the fix in msecs since the epoch
+     * @param elapsedRealtimeMillis {@link SystemClock#elapsedRealtime()} at which the fix was taken
+     */
+    public static synchronized void onGpsFix(long gpsTimeMillis, long elapsedRealtimeMillis){
+        State current = state;
+        if (current == null){
+            state = new State(elapsedRealtimeMillis, gpsTimeMillis, 0);
+            Log.d(TAG, "Clock set to GPS Time " + String.valueOf(gpsTimeMillis));
+            return;
+        }
+        long interval = elapsedRealtimeMillis - current.elapsedRealtime;
+        if (interval <= 0){
+            return;
+        }
+        double predicted = current.gpsTimeAt(elapsedRealtimeMillis);
+        double error = gpsTimeMillis - predicted;
+        if (Math.abs(error) > STEP_THRESHOLD_MILLIS){
+            state = new State(elapsedRealtimeMillis, gpsTimeMillis, 0);
+            Log.d(TAG, "Clock stepped by " + String.valueOf(Math.round(error)) + " msecs");
+            return;
+        }
+        double drift = current.drift + DRIFT_GAIN * error / interval;
+        drift = Math.max(-MAX_DRIFT, Math.min(MAX_DRIFT, drift));
+        state = new State(elapsedRealtimeMillis, predicted + OFFSET_GAIN * error, drift);
+    }
+}
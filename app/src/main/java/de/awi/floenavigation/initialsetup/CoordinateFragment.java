@@ -293,7 +293,6 @@ public class CoordinateFragment extends Fragment implements View.OnClickListener
                     String[] coordinates = coordinateString.split(",");*/
                     tabletLat = intent.getExtras().get(GPS_Service.latitude).toString();
                     tabletLon = intent.getExtras().get(GPS_Service.longitude).toString();
-                    //tabletTime = Long.parseLong(intent.getExtras().get(GPS_Service.GPSTime).toString());
 
                     //Log.d(TAG, "Tablet Loc: " + tabletLat);
                     //Toast.makeText(getActivity(),"Received Broadcast", Toast.LENGTH_LONG).show();
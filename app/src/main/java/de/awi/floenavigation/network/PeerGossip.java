@@ -0,0 +1,405 @@
+package de.awi.floenavigation.network;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.wifi.WifiManager;
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.awi.floenavigation.aismessages.AISDecodingService;
+import de.awi.floenavigation.helperclasses.DatabaseHelper;
+import de.awi.floenavigation.helperclasses.GPSClock;
+
+/**
+ * Exchanges the live station state with the other tablets on the local network through a {@link GossipPeer}, so that a tablet which
+ * has lost its AIS link stays current from the others between the synchronizations with the Sync Server.
+ * <p>
+ *     The tablet sends the position reports decoded by {@link AISDecodingService}, the beta calculated by
+ *     {@link de.awi.floenavigation.services.AngleCalculationService}, its base stations and the waypoints and samples created on it.
+ *     Of the entries received from the other tablets
+ *     <ul>
+ *         <li>a position report is stored by {@link AISDecodingService}, in the order of the AIS packets decoded, if it is newer than
+ *         the position of the station in the database;</li>
+ *         <li>a beta is stored if it is newer than the beta in the {@link DatabaseHelper#betaTable};</li>
+ *         <li>the base stations are compared with the own ones, a tablet with other base stations is logged since its grid differs;</li>
+ *         <li>a waypoint or a sample is inserted if its label is not in the database yet. A sample is marked with the
+ *         {@link DatabaseHelper#gossipOrigin} so that it is only pushed to the Sync Server by the tablet which took it.</li>
+ *     </ul>
+ * </p>
+ * <p>
+ *     The exchange is switched on by the Configuration Parameter {@link DatabaseHelper#gossip_port}. The datagrams are sent to the
+ *     multicast group {@value #MULTICAST_GROUP} and to the tablets of {@link DatabaseHelper#gossip_peers}. The peer gets a new id on
+ *     every start of the App, so the other tablets do not take the versions of the new run for ones they know already.
+ * </p>
+ */
+public final class PeerGossip {
+
+    /**
+     * String for logging purpose
+     */
+    private static final String TAG = "PeerGossip";
+    /**
+     * Administratively scoped multicast group of the tablets
+     */
+    public static final String MULTICAST_GROUP = "239.255.70.78";
+    /**
+     * Columns of a waypoint which are sent and stored
+     */
+    private static final String[] WAYPOINT_COLUMNS = {DatabaseHelper.latitude, DatabaseHelper.longitude, DatabaseHelper.xPosition,
+            DatabaseHelper.yPosition, DatabaseHelper.updateTime, DatabaseHelper.labelID, DatabaseHelper.label};
+    /**
+     * Columns of a sample which are sent and stored
+     */
+    private static final String[] SAMPLE_COLUMNS = {DatabaseHelper.deviceID, DatabaseHelper.deviceName,
+            DatabaseHelper.deviceShortName, DatabaseHelper.deviceType, DatabaseHelper.comment, DatabaseHelper.latitude,
+            DatabaseHelper.longitude, DatabaseHelper.xPosition, DatabaseHelper.yPosition, DatabaseHelper.updateTime,
+            DatabaseHelper.labelID, DatabaseHelper.label};
+    /**
+     * Value of the base stations of an {@link GossipEntry#KIND_ORIGIN} entry with the mmsi of the origin
+     */
+    private static final String ORIGIN_MMSI = "ORIGIN_MMSI";
+    /**
+     * Value of the base stations of an {@link GossipEntry#KIND_ORIGIN} entry with the mmsi of the station on the x-axis
+     */
+    private static final String X_AXIS_MMSI = "X_AXIS_MMSI";
+
+    /**
+     * Peer of the tablet, <code>null</code> if the exchange is switched off
+     */
+    private static volatile GossipPeer peer;
+    /**
+     * Application context used to open the database and start {@link AISDecodingService}
+     */
+    private static Context context;
+    /**
+     * Keeps the WLAN from dropping the multicast datagrams while the peer runs
+     */
+    private static WifiManager.MulticastLock multicastLock;
+
+    private PeerGossip(){
+    }
+
+    /**
+     * Starts the exchange if it is switched on by the Configuration Parameter {@link DatabaseHelper#gossip_port}. Called from
+     * {@link de.awi.floenavigation.dashboard.MainActivity}, the exchange runs as long as the App.
+     */
+    public static synchronized void start(Context mContext){
+        if (peer != null) {
+            return;
+        }
+        context = mContext.getApplicationContext();
+        int port = 0;
+        String peerAddresses = "";
+        Cursor paramsCursor = null;
+        try {
+            SQLiteDatabase db = DatabaseHelper.getDbInstance(context).getReadableDatabase();
+            paramsCursor = db.query(DatabaseHelper.configParametersTable,
+                    new String[]{DatabaseHelper.parameterName, DatabaseHelper.parameterValue},
+                    DatabaseHelper.parameterName + " IN (?, ?)",
+                    new String[]{DatabaseHelper.gossip_port, DatabaseHelper.gossip_peers},
+                    null, null, null);
+            while (paramsCursor.moveToNext()) {
+                String value = paramsCursor.getString(paramsCursor.getColumnIndexOrThrow(DatabaseHelper.parameterValue));
+                if (value == null) {
+                    continue;
+                }
+                if (DatabaseHelper.gossip_port.equals(paramsCursor.getString(paramsCursor.getColumnIndexOrThrow(DatabaseHelper.parameterName)))) {
+                    port = Integer.parseInt(value.trim());
+                } else {
+                    peerAddresses = value;
+                }
+            }
+        } catch (SQLException | NumberFormatException e) {
+            Log.d(TAG, "Error reading the Configuration Parameters");
+            e.printStackTrace();
+        } finally {
+            if (paramsCursor != null) {
+                paramsCursor.close();
+            }
+        }
+        if (port <= 0 || port > 65535) {
+            Log.d(TAG, "Peer gossip switched off");
+            return;
+        }
+
+        final GossipPeer newPeer;
+        try {
+            newPeer = new GossipPeer(new SecureRandom().nextLong(), InetAddress.getByName(MULTICAST_GROUP), port,
+                    new GossipPeer.Listener() {
+                        @Override
+                        public void onEntry(GossipEntry entry) {
+                            applyEntry(entry);
+                        }
+                    });
+        } catch (IOException e) {
+            //Not thrown for a literal address
+            Log.d(TAG, "Invalid multicast group");
+            return;
+        }
+        WifiManager wifiManager = (WifiManager) context.getSystemService(Context.WIFI_SERVICE);
+        if (wifiManager != null) {
+            multicastLock = wifiManager.createMulticastLock(TAG);
+            multicastLock.setReferenceCounted(false);
+            multicastLock.acquire();
+        }
+        peer = newPeer;
+
+        //Resolving the peers and joining the group use the network, which is not allowed on the UI thread
+        final int peerPort = port;
+        final String[] hosts = peerAddresses.trim().split("[,\\s]+");
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (String host : hosts) {
+                    if (!host.isEmpty()) {
+                        InetSocketAddress address = new InetSocketAddress(host, peerPort);
+                        if (address.isUnresolved()) {
+                            Log.d(TAG, "Unknown peer " + host);
+                        } else {
+                            newPeer.addPeer(address);
+                        }
+                    }
+                }
+                try {
+                    newPeer.start();
+                    Log.d(TAG, "Peer " + Long.toHexString(newPeer.getState().getId()) + " started on port " + peerPort);
+                } catch (IOException e) {
+                    Log.d(TAG, "Peer gossip could not be started");
+                    e.printStackTrace();
+                }
+            }
+        }, TAG).start();
+    }
+
+    /**
+     * @return the peer of the tablet, <code>null</code> if the exchange is switched off
+     */
+    public static GossipPeer getPeer(){
+        return peer;
+    }
+
+    /**
+     * Sends a position report decoded by {@link AISDecodingService} to the other tablets
+     * @param mmsi mmsi of the station
+     * @param latitude received latitude
+     * @param longitude received longitude
+     * @param sog speed over ground
+     * @param cog course over ground
+     * @param packetType message type of the report
+     * @param time GPS time in msecs at which the report was received
+     */
+    public static void publishFix(long mmsi, double latitude, double longitude, double sog, double cog, int packetType, long time){
+        GossipPeer current = peer;
+        if (current == null) {
+            return;
+        }
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put(DatabaseHelper.latitude, String.valueOf(latitude));
+        values.put(DatabaseHelper.longitude, String.valueOf(longitude));
+        values.put(DatabaseHelper.sog, String.valueOf(sog));
+        values.put(DatabaseHelper.cog, String.valueOf(cog));
+        values.put(DatabaseHelper.packetType, String.valueOf(packetType));
+        current.publish(GossipEntry.KIND_FIX, String.valueOf(mmsi), time, values);
+    }
+
+    /**
+     * Sends the beta calculated by {@link de.awi.floenavigation.services.AngleCalculationService} to the other tablets
+     * @param beta the averaged beta
+     * @param time GPS time in msecs at which it was calculated
+     */
+    public static void publishBeta(double beta, long time){
+        GossipPeer current = peer;
+        if (current == null) {
+            return;
+        }
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put(DatabaseHelper.beta, String.valueOf(beta));
+        current.publish(GossipEntry.KIND_BETA, "", time, values);
+    }
+
+    /**
+     * Sends the base stations of the coordinate system of the tablet to the other tablets
+     * @param originMMSI mmsi of the origin
+     * @param xAxisMMSI mmsi of the station on the x-axis
+     */
+    public static void publishOrigin(int originMMSI, int xAxisMMSI){
+        GossipPeer current = peer;
+        if (current == null) {
+            return;
+        }
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put(ORIGIN_MMSI, String.valueOf(originMMSI));
+        values.put(X_AXIS_MMSI, String.valueOf(xAxisMMSI));
+        current.publish(GossipEntry.KIND_ORIGIN, "", GPSClock.nowGpsMillis(), values);
+    }
+
+    /**
+     * Sends a waypoint created on the tablet to the other tablets
+     * @param waypoint the values inserted into the {@link DatabaseHelper#waypointsTable}
+     */
+    public static void publishWaypoint(ContentValues waypoint){
+        publishRow(GossipEntry.KIND_WAYPOINT, waypoint.getAsString(DatabaseHelper.labelID), WAYPOINT_COLUMNS, waypoint);
+    }
+
+    /**
+     * Sends a sample taken on the tablet to the other tablets
+     * @param sample the values inserted into the {@link DatabaseHelper#sampleMeasurementTable}
+     */
+    public static void publishSample(ContentValues sample){
+        publishRow(GossipEntry.KIND_SAMPLE, sample.getAsString(DatabaseHelper.label), SAMPLE_COLUMNS, sample);
+    }
+
+    private static void publishRow(int kind, String key, String[] columns, ContentValues row){
+        GossipPeer current = peer;
+        if (current == null || key == null) {
+            return;
+        }
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String column : columns) {
+            String value = row.getAsString(column);
+            if (value != null) {
+                values.put(column, value);
+            }
+        }
+        current.publish(kind, key, GPSClock.nowGpsMillis(), values);
+    }
+
+    /**
+     * Stores an entry received from another tablet, called on the receiving thread of the peer
+     */
+    private static void applyEntry(GossipEntry entry){
+        try {
+            switch (entry.kind) {
+                case GossipEntry.KIND_FIX:
+                    Intent fixIntent = new Intent(context, AISDecodingService.class);
+                    fixIntent.putExtra(AISDecodingService.PEER_FIX_MMSI, Long.parseLong(entry.key));
+                    fixIntent.putExtra(AISDecodingService.PEER_FIX_LATITUDE, doubleValue(entry, DatabaseHelper.latitude));
+                    fixIntent.putExtra(AISDecodingService.PEER_FIX_LONGITUDE, doubleValue(entry, DatabaseHelper.longitude));
+                    fixIntent.putExtra(AISDecodingService.PEER_FIX_SPEED, doubleValue(entry, DatabaseHelper.sog));
+                    fixIntent.putExtra(AISDecodingService.PEER_FIX_COURSE, doubleValue(entry, DatabaseHelper.cog));
+                    fixIntent.putExtra(AISDecodingService.PEER_FIX_TIME, entry.time);
+                    fixIntent.putExtra(AISDecodingService.PEER_FIX_PACKET_TYPE, (int) doubleValue(entry, DatabaseHelper.packetType));
+                    context.startService(fixIntent);
+                    break;
+
+                case GossipEntry.KIND_BETA:
+                    applyBeta(doubleValue(entry, DatabaseHelper.beta), entry.time);
+                    break;
+
+                case GossipEntry.KIND_ORIGIN:
+                    checkOrigin(entry);
+                    break;
+
+                case GossipEntry.KIND_WAYPOINT:
+                    insertRow(DatabaseHelper.waypointsTable, DatabaseHelper.labelID, WAYPOINT_COLUMNS, entry, false);
+                    break;
+
+                case GossipEntry.KIND_SAMPLE:
+                    insertRow(DatabaseHelper.sampleMeasurementTable, DatabaseHelper.label, SAMPLE_COLUMNS, entry, true);
+                    break;
+
+                default:
+                    Log.d(TAG, "Unknown entry " + entry);
+            }
+        } catch (NumberFormatException e) {
+            Log.d(TAG, "Invalid entry " + entry);
+        } catch (SQLException e) {
+            Log.d(TAG, "Database Error");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @param column name of a value of the entry
+     * @return the value as a number
+     * @throws NumberFormatException if the value is missing or not a number
+     */
+    private static double doubleValue(GossipEntry entry, String column){
+        String value = entry.values.get(column);
+        if (value == null) {
+            throw new NumberFormatException("Missing " + column);
+        }
+        return Double.parseDouble(value);
+    }
+
+    /**
+     * Stores the beta of another tablet if it is newer than the beta in the {@link DatabaseHelper#betaTable}
+     */
+    private static void applyBeta(double beta, long time){
+        SQLiteDatabase db = DatabaseHelper.getDbInstance(context).getWritableDatabase();
+        ContentValues betaValue = new ContentValues();
+        betaValue.put(DatabaseHelper.beta, beta);
+        betaValue.put(DatabaseHelper.updateTime, String.valueOf(time));
+        int result = db.update(DatabaseHelper.betaTable, betaValue,
+                DatabaseHelper.updateTime + " IS NULL OR CAST(" + DatabaseHelper.updateTime + " AS INTEGER) < ?",
+                new String[]{String.valueOf(time)});
+        if (result > 0) {
+            Log.d(TAG, "Beta " + beta + " received from another tablet");
+        }
+    }
+
+    /**
+     * Logs a tablet whose base stations differ from the base stations in the {@link DatabaseHelper#baseStationTable}
+     */
+    private static void checkOrigin(GossipEntry entry){
+        SQLiteDatabase db = DatabaseHelper.getDbInstance(context).getReadableDatabase();
+        List<String> baseStations = new ArrayList<>();
+        Cursor baseStationCursor = null;
+        try {
+            baseStationCursor = db.query(DatabaseHelper.baseStationTable, new String[]{DatabaseHelper.mmsi},
+                    null, null, null, null, DatabaseHelper.isOrigin + " DESC");
+            while (baseStationCursor.moveToNext()) {
+                baseStations.add(String.valueOf(baseStationCursor.getInt(0)));
+            }
+        } finally {
+            if (baseStationCursor != null) {
+                baseStationCursor.close();
+            }
+        }
+        if (baseStations.size() == DatabaseHelper.NUM_OF_BASE_STATIONS
+                && (!baseStations.get(DatabaseHelper.firstStationIndex).equals(entry.values.get(ORIGIN_MMSI))
+                || !baseStations.get(DatabaseHelper.secondStationIndex).equals(entry.values.get(X_AXIS_MMSI)))) {
+            Log.d(TAG, "Tablet " + Long.toHexString(entry.origin) + " uses the base stations " + entry.values.get(ORIGIN_MMSI) + " and "
+                    + entry.values.get(X_AXIS_MMSI) + ", this tablet " + baseStations + ". Run a Synchronization on both tablets.");
+        }
+    }
+
+    /**
+     * Inserts a waypoint or a sample of another tablet if its key is not in the table yet
+     * @param keyColumn column which identifies the row
+     * @param columns columns which are stored, other values of the entry are ignored
+     * @param markOrigin <code>true</code> if the row is marked with the {@link DatabaseHelper#gossipOrigin}
+     */
+    private static void insertRow(String table, String keyColumn, String[] columns, GossipEntry entry, boolean markOrigin){
+        SQLiteDatabase db = DatabaseHelper.getDbInstance(context).getWritableDatabase();
+        if (DatabaseUtils.queryNumEntries(db, table, keyColumn + " = ?", new String[]{entry.key}) > 0) {
+            return;
+        }
+        ContentValues row = new ContentValues();
+        for (String column : columns) {
+            if (entry.values.containsKey(column)) {
+                row.put(column, entry.values.get(column));
+            }
+        }
+        row.put(keyColumn, entry.key);
+        if (markOrigin) {
+            row.put(DatabaseHelper.gossipOrigin, Long.toHexString(entry.origin));
+        }
+        if (db.insert(table, null, row) != -1) {
+            Log.d(TAG, "Inserted " + entry.key + " from another tablet into " + table);
+        }
+    }
+}
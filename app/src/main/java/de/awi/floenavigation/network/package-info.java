@@ -13,6 +13,10 @@
  *      After every transition from a unsuccessful ping request to successful ping request, a new thread to execute {@link de.awi.floenavigation.aismessages.AISMessageReceiver}
  *      is created. This helps the app to have continuous connection to the AIS transponder.
  * </p>
+ * <p>
+ *      {@link de.awi.floenavigation.network.PeerGossip} exchanges the live station state with the other tablets on the local network, so a
+ *      tablet which has lost its connection to the AIS transponder stays current from the others.
+ * </p>
  */
 
 
@@ -42,9 +42,11 @@ import java.util.TimeZone;
 import de.awi.floenavigation.admin.ListViewActivity;
 import de.awi.floenavigation.helperclasses.ActionBarActivity;
 import de.awi.floenavigation.helperclasses.DatabaseHelper;
+import de.awi.floenavigation.helperclasses.GPSClock;
 import de.awi.floenavigation.services.GPS_Service;
 import de.awi.floenavigation.dashboard.MainActivity;
 import de.awi.floenavigation.helperclasses.NavigationFunctions;
+import de.awi.floenavigation.network.PeerGossip;
 import de.awi.floenavigation.R;
 
 /**
@@ -149,14 +151,6 @@ public class SampleMeasurementActivity extends Activity {
      * time
      */
     private String time;
-    /**
-     * gps time
-     */
-    private long gpsTime;
-    /**
-     * time difference between the gps time and the system clock
-     */
-    private long timeDiff;
     /**
      * label id
      */
@@ -362,8 +356,6 @@ public class SampleMeasurementActivity extends Activity {
                     tabletLat = intent.getExtras().getDouble(GPS_Service.latitude);
                     tabletLon = intent.getExtras().getDouble(GPS_Service.longitude);
                     locationStatus = intent.getExtras().getBoolean(GPS_Service.locationStatus);
-                    gpsTime = Long.parseLong(intent.getExtras().get(GPS_Service.GPSTime).toString());
-                    timeDiff = System.currentTimeMillis() - gpsTime;
                     populateTabLocation();
                 }
             };
@@ -559,6 +551,7 @@ public class SampleMeasurementActivity extends Activity {
     /**
      * Called from the listener of the confirm button
      * If valid gps location is available all the sample/measurement fields are stored into the database table {@link DatabaseHelper#sampleMeasurementTable}
+     * and sent to the other tablets
      * @return
      */
     private boolean populateDatabaseTable(){
@@ -601,7 +594,9 @@ public class SampleMeasurementActivity extends Activity {
                 mContentValues.put(DatabaseHelper.comment, comment);
                 mContentValues.put(DatabaseHelper.label, label);
                 mContentValues.put(DatabaseHelper.updateTime, time);
-                db.insert(DatabaseHelper.sampleMeasurementTable, null, mContentValues);
+                if (db.insert(DatabaseHelper.sampleMeasurementTable, null, mContentValues) != -1) {
+                    PeerGossip.publishSample(mContentValues);
+                }
                 return true;
             } else {
                 Log.d(TAG, "Error Inserting new data");
@@ -617,7 +612,7 @@ public class SampleMeasurementActivity extends Activity {
      * {@link #label} is formed as per a specified format with all the necessary information
      */
     private void createLabel(){
-        Date date = new Date(System.currentTimeMillis() - timeDiff);
+        Date date = new Date(GPSClock.nowGpsMillis());
         SimpleDateFormat displayFormat = new SimpleDateFormat("yyyyMMdd'D'HHmmss");
         displayFormat.setTimeZone(TimeZone.getTimeZone("gmt"));
         time = displayFormat.format(date);
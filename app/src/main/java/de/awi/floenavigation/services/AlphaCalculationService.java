@@ -1,16 +1,14 @@
 package de.awi.floenavigation.services;
 
 import android.app.IntentService;
-import android.content.BroadcastReceiver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
-import android.os.AsyncTask;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 
 import java.util.Timer;
@@ -18,16 +16,22 @@ import java.util.TimerTask;
 
 import de.awi.floenavigation.helperclasses.DatabaseHelper;
 import de.awi.floenavigation.helperclasses.NavigationFunctions;
-import de.awi.floenavigation.synchronization.SyncActivity;
 
 
 /**
  * An {@link IntentService} subclass for handling asynchronous task requests in
  * a service on a separate handler thread.
  * <p>
- * {@link AlphaCalculationService} class is used to calculate {@link DatabaseHelper#alpha} at regular intervals for all the
+ * {@link AlphaCalculationService} class is used to calculate {@link DatabaseHelper#alpha} for the
  * mobile stations and subsequently calculate the corresponding coordinates in the grid
  * </p>
+ * <p>
+ * A mobile station is calculated by {@link de.awi.floenavigation.aismessages.AISDecodingService} as soon as its position is received,
+ * using {@link #putGridCoordinates(ContentValues, double, double)}. This service checks the origin and {@link DatabaseHelper#beta}
+ * every {@value #TIMER_PERIOD} msecs and calculates all the mobile stations again in a single transaction only when the coordinate
+ * system has moved by more than {@link DatabaseHelper#grid_recalculation_threshold}. Mobile stations which do not report are
+ * therefore not calculated again as long as the floe does not move.
+ * </p>
  *
  * TODO: Customize class - update intent actions and extra parameters.
  */
@@ -35,62 +39,53 @@ public class AlphaCalculationService extends IntentService {
 
     private static final String TAG = "AlphaCalculationService";
     /**
-     * Variable used to store the value of {@value DatabaseHelper#beta}
-     * It is the angle between the x-axis and the geographic longitudinal axis
+     * Index of the origin latitude in {@link #gridReference}
      */
-    private double beta;
+    private static final int REFERENCE_LATITUDE = 0;
     /**
-     * Variable used to store the mmsi of the origin fixed station
+     * Index of the origin longitude in {@link #gridReference}
      */
-    private int originMMSI;
+    private static final int REFERENCE_LONGITUDE = 1;
     /**
-     * Variable used to store the mmsi's of the mobile stations
+     * Index of {@link DatabaseHelper#beta} in {@link #gridReference}
      */
-    private int stationMMSI;
+    private static final int REFERENCE_BETA = 2;
     /**
-     * Variable used to store the latitude coordinate of the origin fixed station
-     * Read from the internal local database table {@link DatabaseHelper#fixedStationTable}
+     * Origin latitude, origin longitude and {@link DatabaseHelper#beta} with which the mobile stations are currently calculated.
+     * It is shared with {@link de.awi.floenavigation.aismessages.AISDecodingService} through {@link #putGridCoordinates(ContentValues, double, double)}
+     * and is <code>null</code> until the first calculation of all the mobile stations.
+     * The array is never modified once published, a new reference is published as a new array.
      */
-    private double originLatitude;
+    private static volatile double[] gridReference = null;
     /**
-     * Variable used to store the longitude coordinate of the origin fixed station
-     * Read from the internal local database table {@link DatabaseHelper#fixedStationTable}
+     * Largest distance in meters between the origin and a mobile station.
+     * It is used to estimate how far a change of {@link DatabaseHelper#beta} moves the mobile stations on the grid
      */
-    private double originLongitude;
-    /**
-     * Variable used to store the latitude of the mobile station
-     * Read from the internal local database table {@link DatabaseHelper#mobileStationTable}
-     */
-    private double stationLatitude;
+    private static volatile double maxStationDistance = 0;
     /**
-     * Variable used to store the longitude of the mobile station
-     * Read from the internal local database table {@link DatabaseHelper#mobileStationTable}
+     * Value of {@link DatabaseHelper#grid_recalculation_threshold} in meters.
+     * Read from the internal local database table {@link DatabaseHelper#configParametersTable}
      */
-    private double stationLongitude;
+    public static int GRID_RECALCULATION_THRESHOLD_VALUE = 1;
     /**
-     * distance calculated between the origin fixed station and the mobile station in meters
-     */
-    private double distance;
-    /**
-     * X axis value in meters of the mobile station
-     */
-    private double stationX;
-    /**
-     * Y axis value in meters of the mobile station
+     * Variable used to store the value of {@value DatabaseHelper#beta}
+     * It is the angle between the x-axis and the geographic longitudinal axis
      */
-    private double stationY;
+    private double beta;
     /**
-     * Angle calculated between the origin fixed station and the mobile station
+     * Variable used to store the mmsi of the origin fixed station
      */
-    private double theta;
+    private int originMMSI;
     /**
-     * Angle calculated between the x-axis and the mobile station
+     * Variable used to store the latitude coordinate of the origin fixed station
+     * Read from the internal local database table {@link DatabaseHelper#fixedStationTable}
      */
-    private double alpha;
+    private double originLatitude;
     /**
-     * Mobile station cursor to iterate over the rows of the database table {@link DatabaseHelper#mobileStationTable}
+     * Variable used to store the longitude coordinate of the origin fixed station
+     * Read from the internal local database table {@link DatabaseHelper#fixedStationTable}
      */
-    private Cursor mobileStationCursor = null;
+    private double originLongitude;
     /**
      * Timer to execute the task of calculating angle periodically
      */
@@ -104,20 +99,6 @@ public class AlphaCalculationService extends IntentService {
      */
     private static final int TIMER_DELAY = 0;
 
-    /**
-     * Broadcast receiver to receive the {@link GPS_Service#GPSTime}
-     */
-    private BroadcastReceiver broadcastReceiver;
-    /**
-     * variable to store the gps time received from {@link #broadcastReceiver}
-     */
-    private long gpsTime;
-    /**
-     * It is used to synchronize the update time with the gps time
-     * Stores the timing difference between {@link System#currentTimeMillis()} and {@link GPS_Service#GPSTime}
-     */
-    private long timeDiff;
-
     /**
      * <code>true</code> to stop the timer
      * <code>false</code> otherwise
@@ -147,46 +128,30 @@ public class AlphaCalculationService extends IntentService {
     }
 
     /**
-     * onDestroy method of the activity life cycle used to unregister the {@link #broadcastReceiver}
+     * onDestroy method of the activity life cycle
      */
     @Override
     public void onDestroy() {
         super.onDestroy();
         instance = null;
-        if(broadcastReceiver != null){
-            unregisterReceiver(broadcastReceiver);
-            broadcastReceiver = null;
-        }
-
     }
 
     /**
-     * onCreate method of the activity lifecycle used to register the {@link #broadcastReceiver}
-     * and to receive the {@link #gpsTime}
+     * onCreate method of the activity lifecycle
      */
     @Override
     public void onCreate(){
         super.onCreate();
         instance = this;
-        if(broadcastReceiver == null){
-            broadcastReceiver = new BroadcastReceiver(){
-                @Override
-                public void onReceive(Context context, Intent intent){
-                    gpsTime = Long.parseLong(intent.getExtras().get(GPS_Service.GPSTime).toString());
-                    timeDiff = System.currentTimeMillis() - gpsTime;
-
-                }
-            };
-        }
-        registerReceiver(broadcastReceiver, new IntentFilter(GPS_Service.GPSBroadcast));
     }
 
     /**
      * This method is invoked on the worker thread
      * {@link #timer} is initialized with a Timer task to run every {@value #TIMER_PERIOD} msecs
-     * In the task for each mobile station read from the internal local database {@link DatabaseHelper#mobileStationTable}
-     * {@link #distance}, {@link #alpha}, {@link #stationX} and {@link #stationY} are calculated and stored
-     * in the {@link DatabaseHelper#mobileStationTable} table
+     * In the task the origin and {@link DatabaseHelper#beta} are read from the internal local database and compared with
+     * {@link #gridReference}. If the coordinate system has moved by more than {@link #GRID_RECALCULATION_THRESHOLD_VALUE} meters
+     * the new reference is published and {@link DatabaseHelper#distance}, {@link DatabaseHelper#alpha}, {@link DatabaseHelper#xPosition}
+     * and {@link DatabaseHelper#yPosition} are calculated again for every mobile station in {@link DatabaseHelper#mobileStationTable}
      *
      * @param intent Intent
      */
@@ -201,49 +166,28 @@ public class AlphaCalculationService extends IntentService {
                         if (!stopTimer) {
                             DatabaseHelper dbHelper = DatabaseHelper.getDbInstance(getApplicationContext());
                             SQLiteDatabase db = dbHelper.getReadableDatabase();
+                            retrieveConfigurationParametersDatafromDB(db);
                             if (readFromDatabase(db)) {
-                                if (mobileStationCursor != null && mobileStationCursor.moveToFirst()) {
-                                    do {
-                                        stationLatitude = mobileStationCursor.getDouble(mobileStationCursor.getColumnIndex(DatabaseHelper.latitude));
-                                        stationLongitude = mobileStationCursor.getDouble(mobileStationCursor.getColumnIndex(DatabaseHelper.longitude));
-                                        Log.d(TAG, "MMSI: " + String.valueOf(stationMMSI) + " Mobile Coord: " + String.valueOf(stationLatitude) + "," + String.valueOf(stationLongitude));
-                                        stationMMSI = mobileStationCursor.getInt(mobileStationCursor.getColumnIndex(DatabaseHelper.mmsi));
-                                        theta = NavigationFunctions.calculateAngleBeta(originLatitude, originLongitude, stationLatitude, stationLongitude);
-                                        //alpha = Math.abs(theta - beta);
-                                        alpha = theta - beta;
-                                        distance = NavigationFunctions.calculateDifference(originLatitude, originLongitude, stationLatitude, stationLongitude);
-                                        stationX = distance * Math.cos(Math.toRadians(alpha));
-                                        stationY = distance * Math.sin(Math.toRadians(alpha));
-                                        ContentValues alphaUpdate = new ContentValues();
-                                        alphaUpdate.put(DatabaseHelper.alpha, alpha);
-                                        alphaUpdate.put(DatabaseHelper.distance, distance);
-                                        alphaUpdate.put(DatabaseHelper.xPosition, stationX);
-                                        alphaUpdate.put(DatabaseHelper.yPosition, stationY);
-                                        alphaUpdate.put(DatabaseHelper.updateTime, String.valueOf(System.currentTimeMillis() - timeDiff));
-                                        alphaUpdate.put(DatabaseHelper.isCalculated, DatabaseHelper.MOBILE_STATION_IS_CALCULATED);
-                                        Log.d(TAG, "MMSI:  " + String.valueOf(stationMMSI) +  "Alpha " + String.valueOf(alpha)  +  "Distance " + String.valueOf(distance)
-                                        + "Theta " + String.valueOf(theta));
-                                        db.update(DatabaseHelper.mobileStationTable, alphaUpdate, DatabaseHelper.mmsi + " = ?", new String[]{String.valueOf(stationMMSI)});
-
-                                    } while (mobileStationCursor.moveToNext());
-                                    mobileStationCursor.close();
-                                } else {
-                                    Log.d(TAG, "Error with Mobile Station Cursor");
+                                double[] reference = gridReference;
+                                if (reference == null || referenceShift(reference) > GRID_RECALCULATION_THRESHOLD_VALUE) {
+                                    reference = new double[]{originLatitude, originLongitude, beta};
+                                    //Published before the batch so that positions received meanwhile use the new reference
+                                    gridReference = reference;
+                                    if (!recalculateMobileStations(db, reference)) {
+                                        gridReference = null;
+                                    }
                                 }
-
                             } else {
                                 Log.d(TAG, "Error Reading from Database");
                             }
                         } else {
+                            gridReference = null;
                             timer.cancel();
                         }
                     }catch (SQLException e){
                         Log.d(TAG, "Database Error");
+                        gridReference = null;
                         e.printStackTrace();
-                    }finally {
-                        if (mobileStationCursor != null){
-                            mobileStationCursor.close();
-                        }
                     }
                 }
             }, TIMER_DELAY, TIMER_PERIOD);
@@ -255,7 +199,6 @@ public class AlphaCalculationService extends IntentService {
 
     /**
      * function called from {@link de.awi.floenavigation.initialsetup.SetupActivity#runServices(Context)}
-     * and {@link SyncActivity#stopServices()}
      * @param stop flag to set {@link #stopTimer}
      */
     public static void stopTimer(boolean stop){
@@ -270,6 +213,134 @@ public class AlphaCalculationService extends IntentService {
         return stopTimer;
     }
 
+    /**
+     * Called from {@link de.awi.floenavigation.aismessages.AISDecodingService} when the position of a mobile station is received.
+     * Calculates the grid coordinates of the mobile station with the current {@link #gridReference} and adds them to the values which
+     * are written to {@link DatabaseHelper#mobileStationTable}, so that the station is calculated with the same update as its position.
+     * @param values values of the mobile station to be written to {@link DatabaseHelper#mobileStationTable}
+     * @param stationLatitude received latitude of the mobile station
+     * @param stationLongitude received longitude of the mobile station
+     * @return <code>true</code> if the grid coordinates were added, <code>false</code> if the coordinate system is not available yet
+     */
+    public static boolean putGridCoordinates(ContentValues values, double stationLatitude, double stationLongitude){
+        double[] reference = gridReference;
+        if (reference == null){
+            return false;
+        }
+        double[] grid = new double[NavigationFunctions.GRID_SIZE];
+        NavigationFunctions.calculateGridCoordinates(reference[REFERENCE_LATITUDE], reference[REFERENCE_LONGITUDE], reference[REFERENCE_BETA], stationLatitude, stationLongitude, grid);
+        values.put(DatabaseHelper.alpha, grid[NavigationFunctions.GRID_ALPHA]);
+        values.put(DatabaseHelper.distance, grid[NavigationFunctions.GRID_DISTANCE]);
+        values.put(DatabaseHelper.xPosition, grid[NavigationFunctions.GRID_X]);
+        values.put(DatabaseHelper.yPosition, grid[NavigationFunctions.GRID_Y]);
+        values.put(DatabaseHelper.isCalculated, DatabaseHelper.MOBILE_STATION_IS_CALCULATED);
+        if (grid[NavigationFunctions.GRID_DISTANCE] > maxStationDistance){
+            maxStationDistance = grid[NavigationFunctions.GRID_DISTANCE];
+        }
+        return true;
+    }
+
+    /**
+     * Estimates how far the mobile stations have moved on the grid since they were calculated with the given reference.
+     * It is the distance the origin has moved plus the arc which the farthest mobile station describes due to the change of
+     * {@link DatabaseHelper#beta}
+     * @param reference reference with which the mobile stations were last calculated
+     * @return the estimated movement in meters
+     */
+    private double referenceShift(double[] reference){
+        double originShift = NavigationFunctions.calculateDifference(reference[REFERENCE_LATITUDE], reference[REFERENCE_LONGITUDE], originLatitude, originLongitude);
+        double betaChange = Math.toRadians(Math.abs(BetaEstimator.angularDifference(beta, reference[REFERENCE_BETA])));
+        return originShift + maxStationDistance * betaChange;
+    }
+
+    /**
+     * Calculates the grid coordinates of all the mobile stations whose position is known in a single transaction.
+     * A row is only updated if its position has not been changed by {@link de.awi.floenavigation.aismessages.AISDecodingService}
+     * since it was read, as the newer position has already been calculated with the same reference.
+     * @param db SQLiteDatabase object
+     * @param reference origin latitude, origin longitude and {@link DatabaseHelper#beta} of the coordinate system
+     * @return <code>true</code> if the mobile stations were calculated successfully
+     */
+    private boolean recalculateMobileStations(SQLiteDatabase db, double[] reference){
+        Cursor mobileStationCursor = null;
+        SQLiteStatement updateStatement = null;
+        db.beginTransaction();
+        try {
+            mobileStationCursor = db.query(DatabaseHelper.mobileStationTable,
+                    new String[]{DatabaseHelper.mmsi, DatabaseHelper.latitude, DatabaseHelper.longitude},
+                    DatabaseHelper.latitude + " IS NOT NULL AND " + DatabaseHelper.longitude + " IS NOT NULL", null,
+                    null, null, null);
+            updateStatement = db.compileStatement("UPDATE " + DatabaseHelper.mobileStationTable + " SET "
+                    + DatabaseHelper.alpha + " = ?, " + DatabaseHelper.distance + " = ?, "
+                    + DatabaseHelper.xPosition + " = ?, " + DatabaseHelper.yPosition + " = ?, " + DatabaseHelper.isCalculated + " = ?"
+                    + " WHERE " + DatabaseHelper.mmsi + " = ? AND " + DatabaseHelper.latitude + " = ? AND " + DatabaseHelper.longitude + " = ?");
+            int mmsiIndex = mobileStationCursor.getColumnIndex(DatabaseHelper.mmsi);
+            int latitudeIndex = mobileStationCursor.getColumnIndex(DatabaseHelper.latitude);
+            int longitudeIndex = mobileStationCursor.getColumnIndex(DatabaseHelper.longitude);
+            double[] grid = new double[NavigationFunctions.GRID_SIZE];
+            double maxDistance = 0;
+            while (mobileStationCursor.moveToNext()) {
+                double stationLatitude = mobileStationCursor.getDouble(latitudeIndex);
+                double stationLongitude = mobileStationCursor.getDouble(longitudeIndex);
+                NavigationFunctions.calculateGridCoordinates(reference[REFERENCE_LATITUDE], reference[REFERENCE_LONGITUDE], reference[REFERENCE_BETA], stationLatitude, stationLongitude, grid);
+                updateStatement.bindDouble(1, grid[NavigationFunctions.GRID_ALPHA]);
+                updateStatement.bindDouble(2, grid[NavigationFunctions.GRID_DISTANCE]);
+                updateStatement.bindDouble(3, grid[NavigationFunctions.GRID_X]);
+                updateStatement.bindDouble(4, grid[NavigationFunctions.GRID_Y]);
+                updateStatement.bindLong(5, DatabaseHelper.MOBILE_STATION_IS_CALCULATED);
+                updateStatement.bindLong(6, mobileStationCursor.getInt(mmsiIndex));
+                updateStatement.bindDouble(7, stationLatitude);
+                updateStatement.bindDouble(8, stationLongitude);
+                updateStatement.executeUpdateDelete();
+                maxDistance = Math.max(maxDistance, grid[NavigationFunctions.GRID_DISTANCE]);
+            }
+            db.setTransactionSuccessful();
+            maxStationDistance = maxDistance;
+            Log.d(TAG, "Calculated " + String.valueOf(mobileStationCursor.getCount()) + " Mobile Stations with Beta " + String.valueOf(reference[REFERENCE_BETA]));
+            return true;
+        } catch (SQLException e){
+            Log.d(TAG, "Error calculating Mobile Stations");
+            e.printStackTrace();
+            return false;
+        } finally {
+            db.endTransaction();
+            if (updateStatement != null){
+                updateStatement.close();
+            }
+            if (mobileStationCursor != null){
+                mobileStationCursor.close();
+            }
+        }
+    }
+
+    /**
+     * Function used to retrieve the value of {@link #GRID_RECALCULATION_THRESHOLD_VALUE}
+     * from the database table {@link DatabaseHelper#configParametersTable}
+     * @param db SQLiteDatabase object
+     */
+    private void retrieveConfigurationParametersDatafromDB(SQLiteDatabase db){
+        Cursor configParamCursor = null;
+        try{
+            configParamCursor = db.query(DatabaseHelper.configParametersTable,
+                    new String[]{DatabaseHelper.parameterValue},
+                    DatabaseHelper.parameterName + " = ?",
+                    new String[]{DatabaseHelper.grid_recalculation_threshold},
+                    null, null, null);
+            if (configParamCursor.moveToFirst()){
+                GRID_RECALCULATION_THRESHOLD_VALUE = configParamCursor.getInt(configParamCursor.getColumnIndex(DatabaseHelper.parameterValue));
+            } else {
+                Log.d(TAG, "Config Parameter table cursor error");
+            }
+        }catch (SQLException e){
+            Log.d(TAG, "SQLiteException");
+            e.printStackTrace();
+        }finally {
+            if (configParamCursor != null){
+                configParamCursor.close();
+            }
+        }
+    }
+
     /**
      * Reads required parameters of {@link DatabaseHelper#baseStationTable}, {@link DatabaseHelper#fixedStationTable}
      * and {@link DatabaseHelper#betaTable} tables
@@ -320,10 +391,6 @@ public class AlphaCalculationService extends IntentService {
                     new String[]{DatabaseHelper.beta, DatabaseHelper.updateTime},
                     null, null,
                     null, null, null);
-            mobileStationCursor = db.query(DatabaseHelper.mobileStationTable,
-                    new String[]{DatabaseHelper.mmsi, DatabaseHelper.latitude, DatabaseHelper.longitude},
-                    null, null,
-                    null, null, null);
             if (betaCursor.getCount() == 1) {
                 if (betaCursor.moveToFirst()) {
                     beta = betaCursor.getDouble(betaCursor.getColumnIndex(DatabaseHelper.beta));
@@ -1,12 +1,10 @@
 package de.awi.floenavigation.services;
 
 import android.app.IntentService;
-import android.content.BroadcastReceiver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 
-import android.content.IntentFilter;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
 import android.database.SQLException;
@@ -15,9 +13,13 @@ import android.database.sqlite.SQLiteOpenHelper;
 import android.os.Handler;
 import android.util.Log;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import de.awi.floenavigation.helperclasses.DatabaseHelper;
+import de.awi.floenavigation.helperclasses.GPSClock;
 import de.awi.floenavigation.helperclasses.NavigationFunctions;
-import de.awi.floenavigation.synchronization.SyncActivity;
+import de.awi.floenavigation.network.PeerGossip;
 
 
 /**
@@ -37,22 +39,51 @@ public class AngleCalculationService extends IntentService {
      */
     private static final int INITIALIZATION_SIZE = 2;
     /**
-     * array to store the station latitudinal position
+     * Angle calculated between the x-axis and the fixed station
      */
-    private double[] stationLatitude;
+    private double alpha;
     /**
-     * array to store the station longitudinal positions
+     * Incremental circular mean of the beta values contributed by the fixed stations
      */
-    private double[] stationLongitude;
+    private final BetaEstimator betaEstimator = new BetaEstimator();
     /**
-     * Angle calculated between the x-axis and the mobile station
+     * Last known position of each fixed station, indexed by its mmsi.
+     * Each entry holds the latitude, longitude and alpha of the station at {@link #FIX_LATITUDE}, {@link #FIX_LONGITUDE} and {@link #FIX_ALPHA}
      */
-    private double alpha;
+    private final HashMap<Integer, double[]> stationFixes = new HashMap<>();
+    /**
+     * Index of the latitude in an entry of {@link #stationFixes}
+     */
+    private static final int FIX_LATITUDE = 0;
+    /**
+     * Index of the longitude in an entry of {@link #stationFixes}
+     */
+    private static final int FIX_LONGITUDE = 1;
+    /**
+     * Index of the alpha in an entry of {@link #stationFixes}
+     */
+    private static final int FIX_ALPHA = 2;
+    /**
+     * Size of an entry of {@link #stationFixes}
+     */
+    private static final int FIX_SIZE = 3;
+    /**
+     * mmsi's of the fixed stations whose position changed during the current calculation, reused between calculations
+     */
+    private int[] changedStations = new int[INITIALIZATION_SIZE];
+    /**
+     * Latest {@link DatabaseHelper#updateTime} or {@link DatabaseHelper#predictionTime} read from the fixed station table.
+     * Only the rows which changed since this time are read in the next calculation
+     */
+    private long lastChangeTime = 0;
+    /**
+     * Beta value last stored in the database table {@link DatabaseHelper#betaTable}
+     */
+    private double lastStoredBeta = Double.NaN;
     /**
-     * Variable used to store the value of {@value DatabaseHelper#beta}
-     * It is the angle between the x-axis and the geographic longitudinal axis
+     * Minimum change in degrees of the averaged beta before it is stored in the database table {@link DatabaseHelper#betaTable}
      */
-    private double[] beta;
+    private static final double BETA_CHANGE_THRESHOLD = 0.001;
     /**
      * Handler to execute the runnable
      */
@@ -73,19 +104,6 @@ public class AngleCalculationService extends IntentService {
      * Cursor object to iterate over database tables
      */
     private Cursor mBaseStnCursor = null, mFixedStnCursor = null, mBetaCursor = null;
-    /**
-     * Broadcast receiver to receive the {@link GPS_Service#GPSTime}
-     */
-    private BroadcastReceiver broadcastReceiver;
-    /**
-     * variable to store the gps time received from {@link #broadcastReceiver}
-     */
-    private long gpsTime;
-    /**
-     * It is used to synchronize the update time with the gps time
-     * Stores the timing difference between {@link System#currentTimeMillis()} and {@link GPS_Service#GPSTime}
-     */
-    private long timeDiff;
     /**
      * Not used
      */
@@ -114,37 +132,15 @@ public class AngleCalculationService extends IntentService {
 
         this.mHandler = new Handler();
         mmsi = new int[INITIALIZATION_SIZE];
-        if(broadcastReceiver == null){
-            broadcastReceiver = new BroadcastReceiver(){
-                @Override
-                public void onReceive(Context context, Intent intent){
-                    gpsTime = Long.parseLong(intent.getExtras().get(GPS_Service.GPSTime).toString());
-                    timeDiff = System.currentTimeMillis() - gpsTime;
-
-                }
-            };
-        }
     }
 
     /**
-     * onCreate method of the activity lifecycle used to register the {@link #broadcastReceiver}
-     * and to receive the {@link #gpsTime}
+     * onCreate method of the activity lifecycle
      */
     @Override
     public void onCreate(){
         super.onCreate();
 
-        if(broadcastReceiver == null){
-            broadcastReceiver = new BroadcastReceiver(){
-                @Override
-                public void onReceive(Context context, Intent intent){
-                    gpsTime = Long.parseLong(intent.getExtras().get(GPS_Service.GPSTime).toString());
-                    timeDiff = System.currentTimeMillis() - gpsTime;
-
-                }
-            };
-        }
-        registerReceiver(broadcastReceiver, new IntentFilter(GPS_Service.GPSBroadcast));
     }
 
     /**
@@ -177,12 +173,21 @@ public class AngleCalculationService extends IntentService {
                                 } else {
                                     if (mBaseStnCursor.moveToFirst()) {
                                         int index = 0;
+                                        boolean baseStationsChanged = false;
                                         do {
-                                            mmsi[index] = mBaseStnCursor.getInt(mBaseStnCursor.getColumnIndex(DatabaseHelper.mmsi));
+                                            int baseStationMMSI = mBaseStnCursor.getInt(mBaseStnCursor.getColumnIndex(DatabaseHelper.mmsi));
+                                            if (mmsi[index] != baseStationMMSI) {
+                                                baseStationsChanged = true;
+                                                mmsi[index] = baseStationMMSI;
+                                            }
                                             Log.d(TAG, "MMSI: " + mmsi[index]);
                                             index++;
                                         } while (mBaseStnCursor.moveToNext());
                                         mBaseStnCursor.close();
+                                        if (baseStationsChanged) {
+                                            resetBetaEstimation();
+                                            PeerGossip.publishOrigin(mmsi[DatabaseHelper.firstStationIndex], mmsi[DatabaseHelper.secondStationIndex]);
+                                        }
 
                                         betaAngleCalculation(db);
                                         //alphaAngleCalculation(db);
@@ -196,6 +201,7 @@ public class AngleCalculationService extends IntentService {
                                 Log.d(TAG, text);
                             }
                         } else {
+                            resetBetaEstimation();
                             mHandler.removeCallbacks(this);
                         }
                     }catch (SQLException e){
@@ -216,7 +222,6 @@ public class AngleCalculationService extends IntentService {
 
     /**
      * function called from {@link de.awi.floenavigation.initialsetup.SetupActivity#runServices(Context)}
-     * {@link SyncActivity#stopServices()}
      * @param runnable flag to set {@link #stopRunnable}
      */
     public static void setStopRunnable(boolean runnable){
@@ -233,83 +238,112 @@ public class AngleCalculationService extends IntentService {
 
     /**
      * This function is called from {@link #onHandleIntent(Intent)}
-     * {@link #beta} angle is calculated from all the fixed stations {@link DatabaseHelper#fixedStationTable} w.r.t the
+     * {@link DatabaseHelper#beta} angle is calculated from all the fixed stations {@link DatabaseHelper#fixedStationTable} w.r.t the
      * origin fixed station {@link #mmsi} by subtracting {@link #alpha} from angle theta, which is the angle between the axis connecting origin and
      * the fixed station and the longitudinal axis
-     * For origin fixed station {@link #beta} is not calculated
-     * Each {@link #beta} calculated is stored in each index of {@link #beta}
-     * Further the beta angles are averaged and stored in the database {@link DatabaseHelper#betaTable}
+     * For origin fixed station {@link DatabaseHelper#beta} is not calculated
+     * <p>
+     *     Only the rows whose {@link DatabaseHelper#updateTime} or {@link DatabaseHelper#predictionTime} is newer than {@link #lastChangeTime}
+     *     are read from the database. The position of each station is cached in {@link #stationFixes} and its contribution in the
+     *     {@link #betaEstimator} is recalculated only when its position has changed. If the origin has moved, the contributions of all the
+     *     stations are recalculated from {@link #stationFixes} without reading the database again.
+     * </p>
+     * The circular mean of the contributions is stored in the database {@link DatabaseHelper#betaTable} only when it differs from the
+     * last stored value by more than {@value #BETA_CHANGE_THRESHOLD} degrees
      * @param db SQLiteDatabase object
      */
     private void betaAngleCalculation(SQLiteDatabase db){
         //Beta Angle Calculation
         try {
+            long numOfStations = DatabaseUtils.queryNumEntries(db, DatabaseHelper.fixedStationTable, DatabaseHelper.isLocationReceived + " = ?",
+                    new String[]{String.valueOf(DatabaseHelper.LOCATIONRECEIVED)});
+            if (numOfStations < stationFixes.size()){
+                //Stations have been removed by the Validation Service or the Recovery Activity
+                Log.d(TAG, "Fixed Stations removed, recalculating Beta from all stations");
+                resetBetaEstimation();
+            }
 
             mFixedStnCursor = db.query(DatabaseHelper.fixedStationTable,
                     new String[]{DatabaseHelper.mmsi, DatabaseHelper.latitude, DatabaseHelper.longitude, DatabaseHelper.alpha, DatabaseHelper.recvdLatitude, DatabaseHelper.recvdLongitude,
-                            DatabaseHelper.predictionTime, DatabaseHelper.updateTime, DatabaseHelper.isLocationReceived}, DatabaseHelper.isLocationReceived + " = ?",
-                    new String[]{String.valueOf(DatabaseHelper.LOCATIONRECEIVED)}, null, null, null);
-            long numOfStations = mFixedStnCursor.getCount();
-            stationLatitude = new double[(int) numOfStations];
-            stationLongitude = new double[(int) numOfStations];
-            beta = new double[(int) numOfStations - 1];
-            //Log.d(TAG, "Here MMSI First Index:" + mmsi[DatabaseHelper.firstStationIndex]);
-            //Log.d(TAG, "Here MMSI Second Index:" + mmsi[DatabaseHelper.secondStationIndex]);
+                            DatabaseHelper.predictionTime, DatabaseHelper.updateTime, DatabaseHelper.isLocationReceived},
+                    DatabaseHelper.isLocationReceived + " = ? AND (CAST(" + DatabaseHelper.updateTime + " AS INTEGER) >= ? OR CAST("
+                            + DatabaseHelper.predictionTime + " AS INTEGER) >= ?)",
+                    new String[]{String.valueOf(DatabaseHelper.LOCATIONRECEIVED), String.valueOf(lastChangeTime), String.valueOf(lastChangeTime)},
+                    null, null, null);
+            boolean originChanged = false;
+            int numOfChangedStations = 0;
             if (mFixedStnCursor.moveToFirst()) {
-                int index = 0, betaIndex = 0;
+                int mmsiIndex = mFixedStnCursor.getColumnIndex(DatabaseHelper.mmsi);
+                int updateTimeIndex = mFixedStnCursor.getColumnIndexOrThrow(DatabaseHelper.updateTime);
+                int predictionTimeIndex = mFixedStnCursor.getColumnIndexOrThrow(DatabaseHelper.predictionTime);
+                int latitudeIndex = mFixedStnCursor.getColumnIndex(DatabaseHelper.latitude);
+                int longitudeIndex = mFixedStnCursor.getColumnIndex(DatabaseHelper.longitude);
+                int recvdLatitudeIndex = mFixedStnCursor.getColumnIndex(DatabaseHelper.recvdLatitude);
+                int recvdLongitudeIndex = mFixedStnCursor.getColumnIndex(DatabaseHelper.recvdLongitude);
+                int alphaIndex = mFixedStnCursor.getColumnIndex(DatabaseHelper.alpha);
                 do {
-                    mmsiInDBTable = mFixedStnCursor.getInt(mFixedStnCursor.getColumnIndex(DatabaseHelper.mmsi));
-                    updateTime = mFixedStnCursor.getDouble(mFixedStnCursor.getColumnIndexOrThrow(DatabaseHelper.updateTime));
-                    predictionTime = mFixedStnCursor.getDouble(mFixedStnCursor.getColumnIndexOrThrow(DatabaseHelper.predictionTime));
+                    mmsiInDBTable = mFixedStnCursor.getInt(mmsiIndex);
+                    updateTime = mFixedStnCursor.getDouble(updateTimeIndex);
+                    predictionTime = mFixedStnCursor.getDouble(predictionTimeIndex);
+                    lastChangeTime = Math.max(lastChangeTime, (long) Math.max(updateTime, predictionTime));
+                    double latitude, longitude;
+                    if (updateTime >= predictionTime) {
+                        latitude = mFixedStnCursor.getDouble(recvdLatitudeIndex);
+                        longitude = mFixedStnCursor.getDouble(recvdLongitudeIndex);
+                    } else {
+                        latitude = mFixedStnCursor.getDouble(latitudeIndex);
+                        longitude = mFixedStnCursor.getDouble(longitudeIndex);
+                    }
+                    alpha = mFixedStnCursor.getDouble(alphaIndex);
+
+                    double[] fix = stationFixes.get(mmsiInDBTable);
+                    if (fix == null) {
+                        fix = new double[FIX_SIZE];
+                        stationFixes.put(mmsiInDBTable, fix);
+                    } else if (fix[FIX_LATITUDE] == latitude && fix[FIX_LONGITUDE] == longitude && fix[FIX_ALPHA] == alpha) {
+                        continue;
+                    }
+                    fix[FIX_LATITUDE] = latitude;
+                    fix[FIX_LONGITUDE] = longitude;
+                    fix[FIX_ALPHA] = alpha;
+
                     if (mmsiInDBTable == mmsi[DatabaseHelper.firstStationIndex]) {
-                        if (updateTime >= predictionTime) {
-                            stationLatitude[DatabaseHelper.firstStationIndex] = mFixedStnCursor.getDouble(mFixedStnCursor.getColumnIndex(DatabaseHelper.recvdLatitude));
-                            stationLongitude[DatabaseHelper.firstStationIndex] = mFixedStnCursor.getDouble(mFixedStnCursor.getColumnIndex(DatabaseHelper.recvdLongitude));
-                        }else {
-                            stationLatitude[DatabaseHelper.firstStationIndex] = mFixedStnCursor.getDouble(mFixedStnCursor.getColumnIndex(DatabaseHelper.latitude));
-                            stationLongitude[DatabaseHelper.firstStationIndex] = mFixedStnCursor.getDouble(mFixedStnCursor.getColumnIndex(DatabaseHelper.longitude));
-                        }
-                        Log.d(TAG, "Origin Coord: " + stationLatitude[0] + "," + stationLongitude[0]);
-                    } else if (mmsiInDBTable == mmsi[DatabaseHelper.secondStationIndex]) {
-                        if (updateTime >= predictionTime) {
-                            stationLatitude[DatabaseHelper.secondStationIndex] = mFixedStnCursor.getDouble(mFixedStnCursor.getColumnIndex(DatabaseHelper.recvdLatitude));
-                            stationLongitude[DatabaseHelper.secondStationIndex] = mFixedStnCursor.getDouble(mFixedStnCursor.getColumnIndex(DatabaseHelper.recvdLongitude));
-                        }else {
-                            stationLatitude[DatabaseHelper.secondStationIndex] = mFixedStnCursor.getDouble(mFixedStnCursor.getColumnIndex(DatabaseHelper.latitude));
-                            stationLongitude[DatabaseHelper.secondStationIndex] = mFixedStnCursor.getDouble(mFixedStnCursor.getColumnIndex(DatabaseHelper.longitude));
-                        }
-                        beta[betaIndex] = NavigationFunctions.calculateAngleBeta(stationLatitude[DatabaseHelper.firstStationIndex], stationLongitude[DatabaseHelper.firstStationIndex],
-                                stationLatitude[DatabaseHelper.secondStationIndex], stationLongitude[DatabaseHelper.secondStationIndex]);
-                        Log.d(TAG, "X Origin Coord: " + stationLatitude[0] + "," + stationLongitude[0]);
-                        Log.d(TAG, "X marker Coord: " + stationLatitude[1] + "," + stationLongitude[1]);
-                        Log.d(TAG, "X Axis Beta[" + String.valueOf(betaIndex) + "]" + String.valueOf(beta[betaIndex]));
-                        betaIndex++;
+                        originChanged = true;
+                        Log.d(TAG, "Origin Coord: " + latitude + "," + longitude);
                     } else {
-                        if (updateTime >= predictionTime) {
-                            stationLatitude[index] = mFixedStnCursor.getDouble(mFixedStnCursor.getColumnIndex(DatabaseHelper.recvdLatitude));
-                            stationLongitude[index] = mFixedStnCursor.getDouble(mFixedStnCursor.getColumnIndex(DatabaseHelper.recvdLongitude));
-                        }else {
-                            stationLatitude[index] = mFixedStnCursor.getDouble(mFixedStnCursor.getColumnIndex(DatabaseHelper.latitude));
-                            stationLongitude[index] = mFixedStnCursor.getDouble(mFixedStnCursor.getColumnIndex(DatabaseHelper.longitude));
+                        if (numOfChangedStations == changedStations.length) {
+                            int[] newChangedStations = new int[changedStations.length * 2];
+                            System.arraycopy(changedStations, 0, newChangedStations, 0, numOfChangedStations);
+                            changedStations = newChangedStations;
                         }
-                        alpha = mFixedStnCursor.getDouble(mFixedStnCursor.getColumnIndex(DatabaseHelper.alpha));
-                        double theta = NavigationFunctions.calculateAngleBeta(stationLatitude[0], stationLongitude[0], stationLatitude[index], stationLongitude[index]);
-                        //beta[betaIndex] = Math.abs(theta - alpha);
-                        Log.d(TAG, "Base Station Theta " + betaIndex + ": " + theta);
-                        beta[betaIndex] = theta - alpha;
-                        //Log.d(TAG, "Lat1: " + stationLatitude[0] + " Lon1: " + stationLongitude[0] + " alpha: " + alpha);
-                        Log.d(TAG, "B Origin Coord: " + stationLatitude[0] + "," + stationLongitude[0]);
-                        Log.d(TAG, "B Base Statn Coord: " + stationLatitude[index] + "," + stationLongitude[index] + " alpha: " + alpha + " Beta[" + String.valueOf(betaIndex) + "]" + String.valueOf(beta[betaIndex]));
-                        //Log.d(TAG, "Beta[" + String.valueOf(betaIndex) + "]" + String.valueOf(beta[betaIndex]));
-                        betaIndex++;
+                        changedStations[numOfChangedStations++] = mmsiInDBTable;
                     }
-                    index++;
                 } while (mFixedStnCursor.moveToNext());
+            }
+            mFixedStnCursor.close();
 
-                double avgBetaValue = averageBetaCalculation(beta);
-                updateDataintoDatabase(db, avgBetaValue);
+            if (originChanged) {
+                //theta of every station is measured from the origin, so all the contributions have to be recalculated
+                for (Map.Entry<Integer, double[]> station : stationFixes.entrySet()) {
+                    updateBetaContribution(station.getKey(), station.getValue());
+                }
+            } else {
+                for (int i = 0; i < numOfChangedStations; i++) {
+                    updateBetaContribution(changedStations[i], stationFixes.get(changedStations[i]));
+                }
+            }
+            if (stationFixes.size() > numOfStations) {
+                //A station was removed and another one added within the same interval
+                resetBetaEstimation();
+                return;
+            }
 
-                mFixedStnCursor.close();
+            double avgBetaValue = betaEstimator.getMean();
+            Log.d(TAG, "AvgBeta" + String.valueOf(avgBetaValue) + " Stations: " + betaEstimator.size() + " Changed: " + numOfChangedStations + " Origin Changed: " + originChanged);
+            if (!Double.isNaN(avgBetaValue) && (Double.isNaN(lastStoredBeta)
+                    || Math.abs(BetaEstimator.angularDifference(avgBetaValue, lastStoredBeta)) > BETA_CHANGE_THRESHOLD)) {
+                updateDataintoDatabase(db, avgBetaValue);
+                lastStoredBeta = avgBetaValue;
             }
         }catch (SQLException e){
             Log.d(TAG, "Database Error");
@@ -322,47 +356,57 @@ public class AngleCalculationService extends IntentService {
     }
 
     /**
-     * To calculate average of the values present in {@link #beta}
-     * @param beta beta received
-     * @return returns the averaged value
+     * Calculates the beta contributed by a fixed station from its cached position and updates it in the {@link #betaEstimator}.
+     * For the x-axis fixed station beta is the angle theta between the axis connecting it with the origin and the longitudinal axis,
+     * for every other fixed station its {@link #alpha} is subtracted from theta.
+     * Nothing is calculated for the origin itself or as long as the position of the origin is not known.
+     * @param stationMMSI mmsi of the fixed station
+     * @param fix cached position of the fixed station from {@link #stationFixes}
      */
-    private double averageBetaCalculation(double[] beta){
-
-        double avg_beta;
-        double sum = 0;
-
-        for (double aBeta : beta) {
-            sum += aBeta;
+    private void updateBetaContribution(int stationMMSI, double[] fix){
+        double[] originFix = stationFixes.get(mmsi[DatabaseHelper.firstStationIndex]);
+        if (originFix == null || stationMMSI == mmsi[DatabaseHelper.firstStationIndex]) {
+            return;
+        }
+        double theta = NavigationFunctions.calculateAngleBeta(originFix[FIX_LATITUDE], originFix[FIX_LONGITUDE], fix[FIX_LATITUDE], fix[FIX_LONGITUDE]);
+        if (stationMMSI == mmsi[DatabaseHelper.secondStationIndex]) {
+            betaEstimator.update(stationMMSI, theta);
+        } else {
+            betaEstimator.update(stationMMSI, theta - fix[FIX_ALPHA]);
         }
-        avg_beta = sum / beta.length;
+    }
 
-        Log.d(TAG, "AvgBeta" + String.valueOf(avg_beta));
-        return avg_beta;
+    /**
+     * Clears the cached positions and the {@link #betaEstimator}, so that the next calculation reads all the fixed stations from the database.
+     * Called when the base stations change, when fixed stations are removed and when the service is stopped for synchronization
+     */
+    private void resetBetaEstimation(){
+        stationFixes.clear();
+        betaEstimator.clear();
+        lastChangeTime = 0;
     }
 
     /**
-     * Updates the database table {@link DatabaseHelper#betaTable} with the averaged beta value
+     * Updates the database table {@link DatabaseHelper#betaTable} with the averaged beta value and sends it to the other tablets
      * @param db SQLiteDatabase object
      * @param beta averaged beta
      */
     private void updateDataintoDatabase(SQLiteDatabase db, double beta){
+        long time = GPSClock.nowGpsMillis();
         ContentValues mContentValues = new ContentValues();
         mContentValues.put(DatabaseHelper.beta, beta);
-        mContentValues.put(DatabaseHelper.updateTime, String.valueOf(System.currentTimeMillis() - timeDiff));
+        mContentValues.put(DatabaseHelper.updateTime, String.valueOf(time));
         db.update(DatabaseHelper.betaTable, mContentValues, null, null);
+        PeerGossip.publishBeta(beta, time);
     }
 
     /**
-     * onDestroy method of the activity life cycle used to unregister the {@link #broadcastReceiver}
+     * onDestroy method of the activity life cycle
      */
     @Override
     public void onDestroy(){
         super.onDestroy();
         instance = null;
-        if(broadcastReceiver != null){
-            unregisterReceiver(broadcastReceiver);
-            broadcastReceiver = null;
-        }
     }
 
 
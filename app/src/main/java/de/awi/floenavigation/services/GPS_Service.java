@@ -16,11 +16,14 @@ import android.os.SystemClock;
 import android.provider.Settings;
 import android.util.Log;
 
+import de.awi.floenavigation.helperclasses.GPSClock;
+
 /**
  * A Service is an application component that can perform long-running operations in the background,
  * and it doesn't provide a user interface.
  * <p>
  *     {@link GPS_Service} is used to get GPS location for the tablet using the internal GPS
+ *     and to discipline the {@link GPSClock} with the time of every GPS fix
  *
  *
  * </p>
@@ -58,10 +61,6 @@ public class GPS_Service extends Service {
      * The name of the extra data for sending longitude value
      */
     public static final String longitude = "LONGITUDE";
-    /**
-     * The name of the extra data for sending gps time
-     */
-    public static final String GPSTime = "TIME";
     /**
      * The name of the extra data for sending location status
      */
@@ -184,7 +183,7 @@ public class GPS_Service extends Service {
 
     /**
      * Location Listener activated by Location manager whenever there location is updated
-     * Locatoin listener sets and updates values of latitude and longitude
+     * Locatoin listener sets and updates values of latitude and longitude and passes the time of the fix to {@link GPSClock}
      */
     private class Listener implements LocationListener{
 
@@ -202,7 +201,7 @@ public class GPS_Service extends Service {
             mLastLocationTimeMillis = SystemClock.elapsedRealtime();
             locationUpdates.setLatitude(location.getLatitude());
             locationUpdates.setLongitude(location.getLongitude());
-            locationUpdates.setTime(location.getTime());
+            GPSClock.onGpsFix(location.getTime(), location.getElapsedRealtimeNanos() / 1000000);
             lastLocation = location;
         }
 
@@ -258,7 +257,6 @@ public class GPS_Service extends Service {
     private class LocationUpdates implements Runnable {
         private double lat = 0.0;
         private double lon = 0.0;
-        private long time = 0;
         private boolean locStatus = false;
 
 
@@ -271,10 +269,6 @@ public class GPS_Service extends Service {
             this.lon = lon;
         }
 
-        public void setTime(long gpsTime){
-            this.time = gpsTime;
-        }
-
         public void setLocationStatus(boolean status){
             this.locStatus = status;
         }
@@ -292,12 +286,10 @@ public class GPS_Service extends Service {
                 Intent broadcastIntent = new Intent(GPSBroadcast);
                 broadcastIntent.putExtra(latitude, lat);
                 broadcastIntent.putExtra(longitude, lon);
-                broadcastIntent.putExtra(GPSTime, time);
-
                 broadcastIntent.putExtra(locationStatus, locStatus);
                 //Log.d(TAG, "BroadCast sent");
                 Log.d(TAG, "Tablet Location: " + String.valueOf(lat) + " " +  String.valueOf(lon));
-                Log.d(TAG, "Tablet Time: " + String.valueOf(time));
+                Log.d(TAG, "Tablet Time: " + String.valueOf(GPSClock.nowGpsMillis()));
                 Log.d(TAG, "LocStatus: " + String.valueOf(locStatus));
                 //Toast.makeText(getApplicationContext(),"Broadcast Sent", Toast.LENGTH_LONG).show();
                 sendBroadcast(broadcastIntent);
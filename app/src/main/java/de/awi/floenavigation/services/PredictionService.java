@@ -1,11 +1,8 @@
 package de.awi.floenavigation.services;
 
 import android.app.IntentService;
-import android.content.BroadcastReceiver;
 import android.content.ContentValues;
-import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
@@ -14,6 +11,7 @@ import android.os.Handler;
 import android.util.Log;
 
 import de.awi.floenavigation.helperclasses.DatabaseHelper;
+import de.awi.floenavigation.helperclasses.GPSClock;
 import de.awi.floenavigation.helperclasses.NavigationFunctions;
 
 /**
@@ -74,9 +72,9 @@ public class PredictionService extends IntentService {
      */
     private double alpha;
     /**
-     * Angle calculated between the axis connecting origin fixed station and the longitudinal axis and the waypoint
+     * Array filled with the alpha, distance, x and y of the fixed station by {@link NavigationFunctions#calculateGridCoordinates}
      */
-    private double theta;
+    private final double[] gridCoordinates = new double[NavigationFunctions.GRID_SIZE];
     /**
      * Origin fixed station latitude value
      */
@@ -119,18 +117,6 @@ public class PredictionService extends IntentService {
      * <code>false</code> otherwise
      */
     private static boolean stopRunnable = false;
-    /**
-     * Broadcast receiver to get gps time
-     */
-    private BroadcastReceiver broadcastReceiver;
-    /**
-     * Variable to store the gps time
-     */
-    private long gpsTime;
-    /**
-     * Variable to store the time difference between the system clock and the gps time
-     */
-    private long timeDiff;
 
     /**
      * Default constructor
@@ -145,17 +131,6 @@ public class PredictionService extends IntentService {
     public void onCreate(){
         super.onCreate();
         instance = this;
-        if (broadcastReceiver == null) {
-            broadcastReceiver = new BroadcastReceiver() {
-                @Override
-                public void onReceive(Context context, Intent intent) {
-                    gpsTime = Long.parseLong(intent.getExtras().get(GPS_Service.GPSTime).toString());
-                    timeDiff = System.currentTimeMillis() - gpsTime;
-
-                }
-            };
-        }
-        registerReceiver(broadcastReceiver, new IntentFilter(GPS_Service.GPSBroadcast));
     }
 
     /**
@@ -167,7 +142,7 @@ public class PredictionService extends IntentService {
      * After the new positions are predicted the updated values are stored back to the corresponding columns of the fixed station table {@link DatabaseHelper#fixedStationTable}
      * in the local database.
      * if {@link #stopRunnable} is true, the runnable is stopped until {@link #setStopRunnable(boolean)} with false value is not received
-     * from {@link de.awi.floenavigation.synchronization.SyncActivity#stopServices} and {@link de.awi.floenavigation.initialsetup.SetupActivity#runServices}
+     * from {@link de.awi.floenavigation.initialsetup.SetupActivity#runServices}. The synchronization with the Sync Server does not stop the runnable.
      * @param intent Intent
      */
     @Override
@@ -226,10 +201,11 @@ public class PredictionService extends IntentService {
                                             //mContentValues.put(DatabaseHelper.xPosition, xPosition);
                                             //mContentValues.put(DatabaseHelper.yPosition, yPosition);
                                             //mContentValues.put(DatabaseHelper.distance, distance);
-                                            mContentValues.put(DatabaseHelper.predictionTime, System.currentTimeMillis() - timeDiff);
+                                            mContentValues.put(DatabaseHelper.predictionTime, GPSClock.nowGpsMillis());
                                             //mContentValues.put(DatabaseHelper.alpha, alpha);
                                             mContentValues.put(DatabaseHelper.isPredicted, 1);
                                             db.update(DatabaseHelper.fixedStationTable, mContentValues, DatabaseHelper.mmsi + " = ?", new String[]{String.valueOf(mmsi)});
+                                            ValidationService.onFixedStationPrediction(mmsi, predictedCoordinate[DatabaseHelper.LATITUDE_INDEX], predictedCoordinate[DatabaseHelper.LONGITUDE_INDEX]);
                                             Log.d(TAG, "MMSI: " + mmsi + " Coord: " + stationLatitude + "," + stationLongitude);
                                             Log.d(TAG, "MMSI: " + mmsi + " PredCoord: " + predictedCoordinate[0] + "," + predictedCoordinate[1]);
                                         } while (mFixedStnCursor.moveToNext());
@@ -339,12 +315,11 @@ public class PredictionService extends IntentService {
             alpha = 0.0;
             distance = xPosition;
         } else {
-            distance = NavigationFunctions.calculateDifference(originLatitude, originLongitude, latitude, longitude);
-            theta = NavigationFunctions.calculateAngleBeta(originLatitude, originLongitude, latitude, longitude);
-            //alpha = Math.abs(theta - beta);
-            alpha = theta - beta;
-            xPosition = distance * Math.cos(Math.toRadians(alpha));
-            yPosition = distance * Math.sin(Math.toRadians(alpha));
+            NavigationFunctions.calculateGridCoordinates(originLatitude, originLongitude, beta, latitude, longitude, gridCoordinates);
+            distance = gridCoordinates[NavigationFunctions.GRID_DISTANCE];
+            alpha = gridCoordinates[NavigationFunctions.GRID_ALPHA];
+            xPosition = gridCoordinates[NavigationFunctions.GRID_X];
+            yPosition = gridCoordinates[NavigationFunctions.GRID_Y];
         }
     }
 
@@ -448,9 +423,5 @@ public class PredictionService extends IntentService {
     public void onDestroy(){
         super.onDestroy();
         instance = null;
-        if (broadcastReceiver != null) {
-            unregisterReceiver(broadcastReceiver);
-            broadcastReceiver = null;
-        }
     }
 }
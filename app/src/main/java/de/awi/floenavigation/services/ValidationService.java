@@ -2,12 +2,10 @@ package de.awi.floenavigation.services;
 
 import android.app.Dialog;
 import android.app.IntentService;
-import android.content.BroadcastReceiver;
 import android.content.ContentValues;
-import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
@@ -18,8 +16,8 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import de.awi.floenavigation.helperclasses.DatabaseHelper;
+import de.awi.floenavigation.helperclasses.GPSClock;
 import de.awi.floenavigation.helperclasses.DialogActivity;
-import de.awi.floenavigation.helperclasses.NavigationFunctions;
 import de.awi.floenavigation.R;
 
 
@@ -33,6 +31,8 @@ import de.awi.floenavigation.R;
  * If the distance is greater than {@link PredictionService#ERROR_THRESHOLD_VALUE} for {@link PredictionService#PREDICTION_ACCURACY_THRESHOLD_VALUE},
  * then the algorithm states that the fixed station has been broken off and its mmsi is removed from the database table. For this to happen at least {@value #MAX_NUM_OF_VALID_PACKETS}
  * valid ais packets should be available.
+ * The received positions are validated as soon as they are decoded using the {@link FixedStationValidator}, which also detects
+ * fixed stations from which no packet has been received for {@link #PACKET_THRESHOLD_VALUE} msecs.
  * However there is a caveat to it, if the broken fixed station is origin or the x-axis fixed station although it is removed from the {@link DatabaseHelper#stationListTable}
  * the {@link PredictionService} service predicts its values, by providing it a new mmsi value, this is done so that the grid remains intact
  *
@@ -51,7 +51,7 @@ public class ValidationService extends IntentService {
     private final Handler mValidationHandler;
     private static final String TAG = "Validation Service: ";
     /**
-     * Validation service periodic time interval
+     * Validation interval, the unit of {@link DatabaseHelper#predictionAccuracy}
      */
     private static final int VALIDATION_TIME = 3 * 60 * 1000;
     /**
@@ -73,28 +73,27 @@ public class ValidationService extends IntentService {
      */
     private Handler uiHandler;
 
+
     /**
-     * Broadcast receiver to get gps time
-     */
-    private BroadcastReceiver broadcastReceiver;
-    /**
-     * Variable to store the gps time
-     */
-    private long gpsTime;
-    /**
-     * Variable to store the time difference between the system clock and the gps time
+     * Running instance of the service, used by {@link #onFixedStationReport(int, double, double, long)} to post the database updates
+     * to {@link #mValidationHandler}
      */
-    private long timeDiff;
-
+    private static volatile ValidationService instance = null;
     /**
-     * Not used
+     * Validation state of the fixed stations, shared with {@link de.awi.floenavigation.aismessages.AISDecodingService} and
+     * {@link PredictionService}
      */
-    private static ValidationService instance = null;
+    private static final FixedStationValidator validator = new FixedStationValidator(VALIDATION_TIME, MAX_NUM_OF_VALID_PACKETS);
     /**
      * <code>true</code> to stop the runnable
      * <code>false</code> otherwise
      */
-    private static boolean stopRunnable = false;
+    private static volatile boolean stopRunnable = false;
+    /**
+     * <code>true</code> to load the fixed stations into the {@link #validator} again on the next tick, even if their number has not
+     * changed
+     */
+    private static volatile boolean reloadStations = false;
 
     /**
      * Initializing the handlers
@@ -109,41 +108,26 @@ public class ValidationService extends IntentService {
 
 
     /**
-     * OnCreate method to register the broadcast receiver {@link #broadcastReceiver}
+     * OnCreate method
      */
     @Override
     public void onCreate() {
         super.onCreate();
         //alertDialog = new Dialog(this);
         instance = this;
-        if (broadcastReceiver == null) {
-            broadcastReceiver = new BroadcastReceiver() {
-                @Override
-                public void onReceive(Context context, Intent intent) {
-                    gpsTime = Long.parseLong(intent.getExtras().get(GPS_Service.GPSTime).toString());
-                    timeDiff = System.currentTimeMillis() - gpsTime;
-
-                }
-            };
-        }
-        registerReceiver(broadcastReceiver, new IntentFilter(GPS_Service.GPSBroadcast));
     }
 
     /**
      * This method is invoked on the worker thread
-     * Runnable is set to periodically run at {@link #VALIDATION_TIME} msecs.
-     * The algorithm works in the following manner, necessary parameter values for each fixed station is retrieved from the database table {@link DatabaseHelper#fixedStationTable},
-     * then the difference between the received and the predicted values are compared, if the error crosses beyond {@link #ERROR_THRESHOLD_VALUE},
-     * <p>
-     *     - {@link DatabaseHelper#incorrectMessageCount} is incremented based on the {@link DatabaseHelper#updateTime} and the {@link DatabaseHelper#validationCheckTime}
-     *     - Also {@link DatabaseHelper#predictionAccuracy} is incremented
-     *     - if the {@link DatabaseHelper#predictionAccuracy} crosses {@link #PREDICTION_ACCURACY_THRESHOLD_VALUE} / {@link #VALIDATION_TIME}
-     *       and the {@link DatabaseHelper#incorrectMessageCount} is more than or equal to {@link #MAX_NUM_OF_VALID_PACKETS} then a dialog box is displayed and the
-     *       fixed station enry is removed from the database
-     * </p>
+     * Runnable is set to periodically run at {@value FixedStationValidator#WHEEL_TICK} msecs.
+     * The received positions of the fixed stations are validated by {@link #onFixedStationReport(int, double, double, long)} as soon
+     * as they are decoded. The runnable only reads the configuration parameters, loads the fixed stations into the {@link #validator}
+     * whenever the number of fixed stations in {@link DatabaseHelper#fixedStationTable} has changed, and advances the timer wheel of the
+     * {@link #validator}. A fixed station from which no packet has been received for {@link #PACKET_THRESHOLD_VALUE} msecs is
+     * removed from the database and a dialog box is displayed.
      * if {@link #stopRunnable} is true, the runnable is stopped until {@link #setStopRunnable(boolean)} with false value is not received
-     * from {@link de.awi.floenavigation.synchronization.SyncActivity#stopServices} and {@link de.awi.floenavigation.initialsetup.SetupActivity#runServices}
-     * @param intent Intent
+     * from {@link de.awi.floenavigation.initialsetup.SetupActivity#runServices}. The synchronization with the Sync Server does not stop the runnable,
+     * it only asks for the fixed stations to be loaded again with {@link #reloadFixedStations()}.
      *
      * @param intent Intent
      */
@@ -155,137 +139,183 @@ public class ValidationService extends IntentService {
                 @Override
                 public void run() {
                     if (!stopRunnable) {
-                        Cursor mFixedStnCursor = null;
                         try {
                             SQLiteOpenHelper databaseHelper = DatabaseHelper.getDbInstance(getApplicationContext());
                             SQLiteDatabase db = databaseHelper.getReadableDatabase();
-                            baseStationsRetrievalfromDB(db);
                             retrieveConfigurationParametersDatafromDB(db);
+                            validator.setThresholds(ERROR_THRESHOLD_VALUE, PREDICTION_ACCURACY_THRESHOLD_VALUE, PACKET_THRESHOLD_VALUE);
+                            long numOfStations = DatabaseUtils.queryNumEntries(db, DatabaseHelper.fixedStationTable,
+                                    DatabaseHelper.mmsi + " NOT IN (?, ?)",
+                                    new String[]{String.valueOf(DatabaseHelper.BASESTN1), String.valueOf(DatabaseHelper.BASESTN2)});
+                            if (reloadStations || numOfStations != validator.size()) {
+                                reloadStations = false;
+                                loadFixedStationsIntoValidator(db);
+                            }
 
-                            double fixedStnrecvdLatitude;
-                            double fixedStnrecvdLongitude;
-                            double fixedStnLatitude;
-                            double fixedStnLongitude;
-                            double evaluationDifference;
-                            double updateTime;
-                            double validationCheckTime;
-                            int predictionAccuracy;
-                            int mmsi;
-                            int stationMessageCount;
-                            String stationName;
-
-                            mFixedStnCursor = db.query(DatabaseHelper.fixedStationTable, new String[]{DatabaseHelper.mmsi, DatabaseHelper.stationName, DatabaseHelper.recvdLatitude, DatabaseHelper.recvdLongitude,
-                                            DatabaseHelper.latitude, DatabaseHelper.longitude, DatabaseHelper.predictionAccuracy, DatabaseHelper.incorrectMessageCount, DatabaseHelper.validationCheckTime, DatabaseHelper.updateTime},
-                                    null,
-                                    null,
-                                    null, null, null);
-                            if (mFixedStnCursor.moveToFirst()) {
-                                do {
-                                    mmsi = mFixedStnCursor.getInt(mFixedStnCursor.getColumnIndex(DatabaseHelper.mmsi));
-                                    fixedStnrecvdLatitude = mFixedStnCursor.getDouble(mFixedStnCursor.getColumnIndex(DatabaseHelper.recvdLatitude));
-                                    fixedStnrecvdLongitude = mFixedStnCursor.getDouble(mFixedStnCursor.getColumnIndex(DatabaseHelper.recvdLongitude));
-                                    fixedStnLatitude = mFixedStnCursor.getDouble(mFixedStnCursor.getColumnIndex(DatabaseHelper.latitude));
-                                    fixedStnLongitude = mFixedStnCursor.getDouble(mFixedStnCursor.getColumnIndex(DatabaseHelper.longitude));
-                                    predictionAccuracy = mFixedStnCursor.getInt(mFixedStnCursor.getColumnIndex(DatabaseHelper.predictionAccuracy));
-                                    stationMessageCount = mFixedStnCursor.getInt(mFixedStnCursor.getColumnIndexOrThrow(DatabaseHelper.incorrectMessageCount));
-                                    //stationName = mFixedStnCursor.getString(mFixedStnCursor.getColumnIndex(DatabaseHelper.stationName));
-                                    updateTime = mFixedStnCursor.getDouble(mFixedStnCursor.getColumnIndex(DatabaseHelper.updateTime));
-                                    validationCheckTime = mFixedStnCursor.getDouble(mFixedStnCursor.getColumnIndexOrThrow(DatabaseHelper.validationCheckTime));
-                                    Log.d(TAG, "Time:  " + String.valueOf(System.currentTimeMillis() - timeDiff - updateTime)
-                                    + " Threshold time: " + PACKET_THRESHOLD_VALUE);
-                                    if (System.currentTimeMillis() - timeDiff - updateTime >= PACKET_THRESHOLD_VALUE
-                                    && mmsi != DatabaseHelper.BASESTN1 && mmsi != DatabaseHelper.BASESTN2) {
-
-                                        final int timeSinceLastPacket = (int)((System.currentTimeMillis() - timeDiff - updateTime) / (60 * 1000));
-                                        final String MMSI = String.valueOf(mmsi);
-                                        runOnUiThread(new Runnable() {
-                                            @Override
-                                            public void run() {
-                                                dialogBoxDisplay(timeSinceLastPacket, MMSI, R.string.packetReceptionFailedMsg);
-                                            }
-                                        });
-
-                                        if (mmsi == baseStnMMSI[DatabaseHelper.firstStationIndex] || mmsi == baseStnMMSI[DatabaseHelper.secondStationIndex]) {
-                                            deleteEntryfromStationListTableinDB(mmsi, db);
-                                            updataMMSIInDBTables(mmsi, db, (mmsi == baseStnMMSI[DatabaseHelper.firstStationIndex]));
-                                        } else {
-                                            deleteEntryfromStationListTableinDB(mmsi, db);
-                                            deleteEntryfromFixedStationTableinDB(mmsi, db);
-                                        }
-
-                                    } else if (predictionAccuracy > PREDICTION_ACCURACY_THRESHOLD_VALUE / VALIDATION_TIME
-                                            && mmsi != DatabaseHelper.BASESTN1 && mmsi != DatabaseHelper.BASESTN2) {
-                                        Log.d(TAG, "Packets = " + stationMessageCount);
-
-                                        if (stationMessageCount >= MAX_NUM_OF_VALID_PACKETS) {
-                                            stationMessageCount = 0;
-                                            final int faildPredictionTime = PREDICTION_ACCURACY_THRESHOLD_VALUE / (60 * 1000);
-                                            final String MMSI = String.valueOf(mmsi);
-                                            runOnUiThread(new Runnable() {
-                                                @Override
-                                                public void run() {
-                                                    dialogBoxDisplay(faildPredictionTime, MMSI, R.string.validationFailedMsg);
-                                                }
-                                            });
-
-                                            if (mmsi == baseStnMMSI[DatabaseHelper.firstStationIndex] || mmsi == baseStnMMSI[DatabaseHelper.secondStationIndex]) {
-                                                deleteEntryfromStationListTableinDB(mmsi, db);
-                                                updataMMSIInDBTables(mmsi, db, (mmsi == baseStnMMSI[DatabaseHelper.firstStationIndex]));
-                                            } else {
-                                                deleteEntryfromStationListTableinDB(mmsi, db);
-                                                deleteEntryfromFixedStationTableinDB(mmsi, db);
-                                            }
-                                        }
-
-                                    } else {
-                                        evaluationDifference = NavigationFunctions.calculateDifference(fixedStnLatitude, fixedStnLongitude, fixedStnrecvdLatitude, fixedStnrecvdLongitude);
-                                        Log.d(TAG, "Coordinates: " + fixedStnLatitude + ", " + fixedStnLongitude);
-                                        Log.d(TAG, "Received Coordinate: " + fixedStnrecvdLatitude + ", " + fixedStnrecvdLongitude);
-                                        Log.d(TAG, "EvalDiff: " + String.valueOf(evaluationDifference) + " predictionAccInDb: " + predictionAccuracy);
-                                        if (evaluationDifference > ERROR_THRESHOLD_VALUE) {
-                                            //getMessageCount(db, updateTime);
-                                            if (updateTime > validationCheckTime) {
-                                                stationMessageCount++;
-                                                validationCheckTime = System.currentTimeMillis() - timeDiff;
-                                            }
-                                            ContentValues mContentValues = new ContentValues();
-                                            mContentValues.put(DatabaseHelper.predictionAccuracy, ++predictionAccuracy);
-                                            mContentValues.put(DatabaseHelper.incorrectMessageCount, stationMessageCount);
-                                            mContentValues.put(DatabaseHelper.validationCheckTime, validationCheckTime);
-                                            Log.d(TAG, "EvaluationDifference > Threshold: predictionAccuracy: " + String.valueOf(predictionAccuracy));
-                                            db.update(DatabaseHelper.fixedStationTable, mContentValues, DatabaseHelper.mmsi + " = ?", new String[]{String.valueOf(mmsi)});
-                                        } else {
-                                            stationMessageCount = 0;
-                                            validationCheckTime = System.currentTimeMillis() - timeDiff;
-                                            ContentValues mContentValues = new ContentValues();
-                                            mContentValues.put(DatabaseHelper.incorrectMessageCount, stationMessageCount);
-                                            mContentValues.put(DatabaseHelper.predictionAccuracy, 0);
-                                            mContentValues.put(DatabaseHelper.validationCheckTime, validationCheckTime);
-                                            //Log.d(TAG, "EvaluationDifference > Threshold: predictionAccuracy: " + String.valueOf(predictionAccuracy));
-                                            db.update(DatabaseHelper.fixedStationTable, mContentValues, DatabaseHelper.mmsi + " = ?", new String[]{String.valueOf(mmsi)});
-                                        }
+                            int[] timedOutStations = validator.advance(GPSClock.nowGpsMillis());
+                            for (int mmsi : timedOutStations) {
+                                Log.d(TAG, "No packet received from " + String.valueOf(mmsi) + " Threshold time: " + PACKET_THRESHOLD_VALUE);
+                                final int timeSinceLastPacket = PACKET_THRESHOLD_VALUE / (60 * 1000);
+                                final String MMSI = String.valueOf(mmsi);
+                                runOnUiThread(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        dialogBoxDisplay(timeSinceLastPacket, MMSI, R.string.packetReceptionFailedMsg);
                                     }
-                                } while (mFixedStnCursor.moveToNext());
-                                mFixedStnCursor.close();
-                            } else {
-                                Log.d(TAG, "FixedStationTable Cursor Error");
+                                });
+                                removeFixedStation(mmsi, db);
                             }
-                            mValidationHandler.postDelayed(this, VALIDATION_TIME);
+                            mValidationHandler.postDelayed(this, FixedStationValidator.WHEEL_TICK);
                         } catch (SQLException e) {
                             Log.d(TAG, String.valueOf(e));
-                        } finally {
-                            if (mFixedStnCursor != null) {
-                                mFixedStnCursor.close();
-                            }
                         }
                     } else {
+                        validator.clear();
                         mValidationHandler.removeCallbacks(this);
                     }
 
                 }
             };
 
-            mValidationHandler.postDelayed(validationRunnable, VALIDATION_TIME);
+            mValidationHandler.postDelayed(validationRunnable, FixedStationValidator.WHEEL_TICK);
+        }
+    }
+
+    /**
+     * Called from {@link de.awi.floenavigation.aismessages.AISDecodingService} whenever the position of a fixed station is received.
+     * The received position is compared with the latest prediction of the station, if the difference is more than
+     * {@link #ERROR_THRESHOLD_VALUE}
+     * <p>
+     *     - {@link DatabaseHelper#incorrectMessageCount} is incremented for every received position
+     *     - {@link DatabaseHelper#predictionAccuracy} is the number of intervals of {@link #VALIDATION_TIME} for which the station has been incorrect
+     *     - if the station has been incorrect for more than {@link #PREDICTION_ACCURACY_THRESHOLD_VALUE} msecs
+     *       and the {@link DatabaseHelper#incorrectMessageCount} is more than or equal to {@link #MAX_NUM_OF_VALID_PACKETS} then a dialog box is displayed and the
+     *       fixed station enry is removed from the database
+     * </p>
+     * A correct position resets both the values. The database is only updated when one of the values has changed.
+     * @param mmsi mmsi of the fixed station
+     * @param latitude received latitude
+     * @param longitude received longitude
+     * @param reportTime time at which the position was received
+     */
+    public static void onFixedStationReport(final int mmsi, double latitude, double longitude, long reportTime){
+        final ValidationService service = instance;
+        if (service == null || stopRunnable || mmsi == DatabaseHelper.BASESTN1 || mmsi == DatabaseHelper.BASESTN2) {
+            return;
+        }
+        final int result = validator.onReport(mmsi, latitude, longitude, reportTime);
+        if (result == FixedStationValidator.RESULT_UNCHANGED) {
+            return;
+        }
+        final int predictionAccuracy = validator.getPredictionAccuracy(mmsi);
+        final int stationMessageCount = validator.getIncorrectMessageCount(mmsi);
+        service.mValidationHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                service.applyValidationResult(mmsi, result, predictionAccuracy, stationMessageCount);
+            }
+        });
+    }
+
+    /**
+     * Called from {@link PredictionService} whenever a new position of a fixed station is predicted
+     * @param mmsi mmsi of the fixed station
+     * @param latitude predicted latitude
+     * @param longitude predicted longitude
+     */
+    public static void onFixedStationPrediction(int mmsi, double latitude, double longitude){
+        if (instance == null || stopRunnable || mmsi == DatabaseHelper.BASESTN1 || mmsi == DatabaseHelper.BASESTN2) {
+            return;
+        }
+        validator.setPrediction(mmsi, latitude, longitude);
+    }
+
+    /**
+     * Writes the result of the validation of a received position to the database, or removes the fixed station if it has broken off
+     * @param mmsi mmsi of the fixed station
+     * @param result result of {@link FixedStationValidator#onReport(int, double, double, long)}
+     * @param predictionAccuracy new value of {@link DatabaseHelper#predictionAccuracy}
+     * @param stationMessageCount new value of {@link DatabaseHelper#incorrectMessageCount}
+     */
+    private void applyValidationResult(int mmsi, int result, int predictionAccuracy, int stationMessageCount) {
+        try {
+            SQLiteOpenHelper databaseHelper = DatabaseHelper.getDbInstance(getApplicationContext());
+            SQLiteDatabase db = databaseHelper.getReadableDatabase();
+            if (result == FixedStationValidator.RESULT_BROKEN) {
+                Log.d(TAG, "Packets = " + stationMessageCount);
+                final int faildPredictionTime = PREDICTION_ACCURACY_THRESHOLD_VALUE / (60 * 1000);
+                final String MMSI = String.valueOf(mmsi);
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        dialogBoxDisplay(faildPredictionTime, MMSI, R.string.validationFailedMsg);
+                    }
+                });
+                removeFixedStation(mmsi, db);
+            } else {
+                ContentValues mContentValues = new ContentValues();
+                mContentValues.put(DatabaseHelper.predictionAccuracy, predictionAccuracy);
+                mContentValues.put(DatabaseHelper.incorrectMessageCount, stationMessageCount);
+                mContentValues.put(DatabaseHelper.validationCheckTime, GPSClock.nowGpsMillis());
+                Log.d(TAG, "MMSI: " + String.valueOf(mmsi) + " predictionAccuracy: " + String.valueOf(predictionAccuracy));
+                db.update(DatabaseHelper.fixedStationTable, mContentValues, DatabaseHelper.mmsi + " = ?", new String[]{String.valueOf(mmsi)});
+            }
+        } catch (SQLException e) {
+            Log.d(TAG, String.valueOf(e));
+        }
+    }
+
+    /**
+     * Removes a fixed station which has broken off or timed out from the database and from the {@link #validator}.
+     * If the station is one of the base stations its entry is kept with the mmsi {@value DatabaseHelper#BASESTN1} or
+     * {@value DatabaseHelper#BASESTN2} by {@link #updataMMSIInDBTables(int, SQLiteDatabase, boolean)}
+     * @param mmsi mmsi of the fixed station
+     * @param db SQLiteDatabase object
+     */
+    private void removeFixedStation(int mmsi, SQLiteDatabase db) {
+        validator.remove(mmsi);
+        baseStationsRetrievalfromDB(db);
+        if (mmsi == baseStnMMSI[DatabaseHelper.firstStationIndex] || mmsi == baseStnMMSI[DatabaseHelper.secondStationIndex]) {
+            deleteEntryfromStationListTableinDB(mmsi, db);
+            updataMMSIInDBTables(mmsi, db, (mmsi == baseStnMMSI[DatabaseHelper.firstStationIndex]));
+        } else {
+            deleteEntryfromStationListTableinDB(mmsi, db);
+            deleteEntryfromFixedStationTableinDB(mmsi, db);
+        }
+    }
+
+    /**
+     * Loads the predicted position, the time of the last packet and the validation state of every fixed station from
+     * {@link DatabaseHelper#fixedStationTable} into the {@link #validator}
+     * @param db SQLiteDatabase object
+     */
+    private void loadFixedStationsIntoValidator(SQLiteDatabase db) {
+        Cursor mFixedStnCursor = null;
+        try {
+            mFixedStnCursor = db.query(DatabaseHelper.fixedStationTable, new String[]{DatabaseHelper.mmsi, DatabaseHelper.latitude, DatabaseHelper.longitude,
+                            DatabaseHelper.predictionAccuracy, DatabaseHelper.incorrectMessageCount, DatabaseHelper.updateTime},
+                    DatabaseHelper.mmsi + " NOT IN (?, ?)",
+                    new String[]{String.valueOf(DatabaseHelper.BASESTN1), String.valueOf(DatabaseHelper.BASESTN2)},
+                    null, null, null);
+            long now = GPSClock.nowGpsMillis();
+            validator.clear();
+            while (mFixedStnCursor.moveToNext()) {
+                validator.addStation(mFixedStnCursor.getInt(mFixedStnCursor.getColumnIndex(DatabaseHelper.mmsi)),
+                        mFixedStnCursor.getDouble(mFixedStnCursor.getColumnIndex(DatabaseHelper.latitude)),
+                        mFixedStnCursor.getDouble(mFixedStnCursor.getColumnIndex(DatabaseHelper.longitude)),
+                        mFixedStnCursor.getLong(mFixedStnCursor.getColumnIndex(DatabaseHelper.updateTime)),
+                        mFixedStnCursor.getInt(mFixedStnCursor.getColumnIndex(DatabaseHelper.predictionAccuracy)),
+                        mFixedStnCursor.getInt(mFixedStnCursor.getColumnIndexOrThrow(DatabaseHelper.incorrectMessageCount)),
+                        now);
+            }
+            Log.d(TAG, "Fixed Stations loaded: " + String.valueOf(validator.size()));
+        } catch (SQLException e) {
+            Log.d(TAG, "SQLiteException");
+            e.printStackTrace();
+        } finally {
+            if (mFixedStnCursor != null) {
+                mFixedStnCursor.close();
+            }
         }
     }
 
@@ -305,6 +335,15 @@ public class ValidationService extends IntentService {
         return stopRunnable;
     }
 
+    /**
+     * Loads the fixed stations into the {@link #validator} again on the next tick. Called by
+     * {@link de.awi.floenavigation.synchronization.SyncActivity} when the fixed stations have been pulled from the Sync Server while
+     * the service was running, as the pulled stations may differ even if their number is the same.
+     */
+    public static void reloadFixedStations() {
+        reloadStations = true;
+    }
+
     /**
      * If the recovered fixed stations are part of the original base stations which were used to setup the initial grid
      * then the mmsi's for those stations are assigned {@value DatabaseHelper#BASESTN1} or {@value DatabaseHelper#BASESTN2} values such that the predictions for these
@@ -361,7 +400,6 @@ public class ValidationService extends IntentService {
      */
     private void deleteEntryfromStationListTableinDB(int mmsiToBeRemoved, SQLiteDatabase db) {
         db.delete(DatabaseHelper.stationListTable, DatabaseHelper.mmsi + " = ?", new String[]{String.valueOf(mmsiToBeRemoved)});
-        insertIntoStationListDeletedTable(db, String.valueOf(mmsiToBeRemoved));
 
     }
 
@@ -372,7 +410,6 @@ public class ValidationService extends IntentService {
      */
     private void deleteEntryfromFixedStationTableinDB(int mmsiToBeRemoved, SQLiteDatabase db) {
         db.delete(DatabaseHelper.fixedStationTable, DatabaseHelper.mmsi + " = ?", new String[]{String.valueOf(mmsiToBeRemoved)});
-        insertIntoFixedStationDeletedTable(db, String.valueOf(mmsiToBeRemoved));
     }
 
     /**
@@ -461,42 +498,12 @@ public class ValidationService extends IntentService {
     }
 
     /**
-     * Insert the mmsi to be deleted into the {@link DatabaseHelper#fixedStationDeletedTable}, to be used
-     * for synchronization purpose
-     * @param db SQLiteDatabase object
-     * @param mmsiToBeAdded mmsi
-     */
-    private void insertIntoFixedStationDeletedTable(SQLiteDatabase db, String mmsiToBeAdded) {
-        ContentValues deletedStation = new ContentValues();
-        deletedStation.put(DatabaseHelper.mmsi, Integer.valueOf(mmsiToBeAdded));
-        deletedStation.put(DatabaseHelper.deleteTime, String.valueOf(System.currentTimeMillis() - timeDiff));
-        db.insert(DatabaseHelper.fixedStationDeletedTable, null, deletedStation);
-    }
-
-    /**
-     * Insert the mmsi to be deleted into the {@link DatabaseHelper#stationListDeletedTable}, to be used
-     * for synchronization purpose
-     * @param db SQLiteDatabase object
-     * @param mmsiToBeAdded mmsi
-     */
-    private void insertIntoStationListDeletedTable(SQLiteDatabase db, String mmsiToBeAdded) {
-        ContentValues deletedStation = new ContentValues();
-        deletedStation.put(DatabaseHelper.mmsi, Integer.valueOf(mmsiToBeAdded));
-        deletedStation.put(DatabaseHelper.deleteTime, String.valueOf(System.currentTimeMillis() - timeDiff));
-        db.insert(DatabaseHelper.stationListDeletedTable, null, deletedStation);
-    }
-
-    /**
-     * onDestroy to unregister the {@link #broadcastReceiver} receiver
+     * onDestroy method
      */
     @Override
     public void onDestroy() {
         super.onDestroy();
         instance = null;
-        if (broadcastReceiver != null) {
-            unregisterReceiver(broadcastReceiver);
-            broadcastReceiver = null;
-        }
     }
 
 }
@@ -19,12 +19,10 @@ import com.android.volley.toolbox.StringRequest;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.xmlpull.v1.XmlPullParser;
-import org.xmlpull.v1.XmlPullParserException;
 
-import java.io.IOException;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import de.awi.floenavigation.helperclasses.DatabaseHelper;
@@ -36,10 +34,42 @@ import de.awi.floenavigation.helperclasses.DatabaseHelper;
  */
 public class BaseStationSync {
     private static final String TAG = "BaseStationSync";
+
+    /**
+     * Columns of the {@value DatabaseHelper#baseStationTable} Table which are pulled from the Sync Server
+     */
+    private static final String[] PULLED_COLUMNS = {DatabaseHelper.stationName, DatabaseHelper.mmsi, DatabaseHelper.isOrigin};
     private Context mContext;
 
     private String pushURL = "";
     private String pullURL = "";
+
+    /**
+     * URL for the batched push of the rows to the Sync Server
+     * @see #setBaseUrl(String, String)
+     */
+    private String batchURL = "";
+
+    /**
+     * Number of rows pushed to the Sync Server in one request. If it is 0 every row is pushed with its own request.
+     * @see #setRowsPerRequest(int)
+     */
+    private int rowsPerRequest = 0;
+
+    /**
+     * Version of the {@link DatabaseHelper#changeJournalTable} up to which the rows were pushed before this push
+     */
+    private long pushedVersion = 0;
+
+    /**
+     * Version of the {@link DatabaseHelper#changeJournalTable} of the rows read for this push
+     */
+    private long journalVersion = 0;
+
+    /**
+     * Advances the pushed version once every request of this push has been acknowledged
+     */
+    private PushTracker pushTracker;
     private String deleteURL = "";
 
     private SQLiteDatabase db;
@@ -59,12 +89,10 @@ public class BaseStationSync {
      * based on the selection in the Cursor query
      */
     private Cursor baseStationCursor = null;
-    private BaseStation baseStationList;
-    private ArrayList<BaseStation> baseStationArrayList = new ArrayList<>();
     /**
-     * Hashtable for storing base station deleted mmsi's
+     * Keys of the rows deleted since the last acknowledged push, read from the {@link DatabaseHelper#changeJournalTable}
      */
-    private HashMap<Integer, Integer> deletedBaseStationData = new HashMap<>();
+    private List<String> deletedBaseStationData = new ArrayList<>();
     private RequestQueue requestQueue;
     private XmlPullParser parser;
     private boolean dataPullCompleted;
@@ -79,21 +107,23 @@ public class BaseStationSync {
     /**
      * Function is used to read base station table from internal db
      * It is called from SyncActivity.java file
+     * Only the rows changed since the last push acknowledged by the Sync Server are read, see {@link ChangeJournal}.
+     * @param db connection of the snapshot the rows are read from, see {@link DatabaseHelper#openSnapshot(Context)}
      * @throws SQLiteException In case of error in reading database
      * @see #baseStationCursor
      * @see #baseStationName
      * @see #mmsiData
      * @see #isOriginData
      */
-    public void onClickBaseStationReadButton(){
+    public void onClickBaseStationReadButton(SQLiteDatabase db){
         try{
             int i = 0;
-            dbHelper = DatabaseHelper.getDbInstance(mContext);
-            db = dbHelper.getReadableDatabase();
+            pushedVersion = ChangeJournal.getPushedVersion(db, DatabaseHelper.baseStationTable);
+            journalVersion = ChangeJournal.currentVersion(db, DatabaseHelper.baseStationTable);
             baseStationCursor = db.query(DatabaseHelper.baseStationTable,
                     null,
-                    null,
-                    null,
+                    ChangeJournal.changedRowsSelection(DatabaseHelper.mmsi),
+                    ChangeJournal.changedRowsArgs(DatabaseHelper.baseStationTable, pushedVersion),
                     null, null, null);
             if(baseStationCursor.moveToFirst()){
                 do{
@@ -106,7 +136,6 @@ public class BaseStationSync {
                 }while (baseStationCursor.moveToNext());
             }
             baseStationCursor.close();
-            Toast.makeText(mContext, "Read Completed from DB", Toast.LENGTH_SHORT).show();
         } catch (SQLiteException e){
             Log.d(TAG, "Database Error");
             e.printStackTrace();
@@ -122,148 +151,111 @@ public class BaseStationSync {
      * A Stringrequest {@link #request} for pushing the data is registered and added to the {@link #requestQueue}.
      * callback function {@link Response.Listener#onResponse(Object)} notifies whether the request was successful or not
      * If it is unsuccessful or the connection is not established {@link Response.Listener#error(VolleyError)} gets called
+     * If {@link #rowsPerRequest} is set, the rows are instead pushed in batches of that size by {@link BatchPush}.
+     * @param callback called once every request of the push has been answered
      */
-    public void onClickBaseStationSyncButton() {
-        for (int i = 0; i < mmsiData.size(); i++) {
-            final int index = i;
-            request = new StringRequest(Request.Method.POST, pushURL, new Response.Listener<String>() {
-
-                @Override
-                public void onResponse(String response) {
-                    try {
-                        JSONObject jsonObject = new JSONObject(response);
-                        //Log.d(TAG, "on receive");
-                        if (jsonObject.names().get(0).equals("success")) {
-                            //Toast.makeText(mContext, "SUCCESS " + jsonObject.getString("success"), Toast.LENGTH_SHORT).show();
-                            Log.d(TAG, "SUCCESS: " + jsonObject.getString("success"));
-                        } else {
-                            Toast.makeText(mContext, "Error" + jsonObject.getString("error"), Toast.LENGTH_SHORT).show();
-                            Log.d(TAG, "Error: " + jsonObject.getString("error"));
+    public void onClickBaseStationSyncButton(SyncCallback callback) {
+        pushTracker = new PushTracker(mContext, DatabaseHelper.baseStationTable, journalVersion, callback);
+        if (rowsPerRequest > 0) {
+            List<Map<String, String>> rows = new ArrayList<>();
+            for (int i = 0; i < mmsiData.size(); i++) {
+                rows.add(getRowParams(i));
+            }
+            BatchPush.push(mContext, batchURL, DatabaseHelper.baseStationTable, rows, rowsPerRequest, pushTracker);
+        } else {
+            for (int i = 0; i < mmsiData.size(); i++) {
+                final int index = i;
+                request = new StringRequest(Request.Method.POST, pushURL, new Response.Listener<String>() {
+
+                    @Override
+                    public void onResponse(String response) {
+                        try {
+                            JSONObject jsonObject = new JSONObject(response);
+                            //Log.d(TAG, "on receive");
+                            if (jsonObject.names().get(0).equals("success")) {
+                                //Toast.makeText(mContext, "SUCCESS " + jsonObject.getString("success"), Toast.LENGTH_SHORT).show();
+                                Log.d(TAG, "SUCCESS: " + jsonObject.getString("success"));
+                                pushTracker.requestDone(true);
+                            } else {
+                                Toast.makeText(mContext, "Error" + jsonObject.getString("error"), Toast.LENGTH_SHORT).show();
+                                Log.d(TAG, "Error: " + jsonObject.getString("error"));
+                                pushTracker.requestDone(false);
+                            }
+
+
+                        } catch (JSONException e) {
+                            pushTracker.requestDone(false);
+                            e.printStackTrace();
                         }
 
 
-                    } catch (JSONException e) {
-                        e.printStackTrace();
                     }
+                }, new Response.ErrorListener() {
+                    @Override
+                    public void onErrorResponse(VolleyError error) {
+                        pushTracker.requestDone(false);
 
+                    }
+                }) {
+                    /**
+                     *
+                     * @return The Hashmap with {@link BaseStationSync#baseStationName}, {@link BaseStationSync#mmsiData} and {@link BaseStationSync#isOriginData}
+                     * is posted to the server on the {@link BaseStationSync#pushURL}
+                     *
+                     */
+                    @Override
+                    protected Map<String, String> getParams() throws AuthFailureError {
+                        return getRowParams(index);
+                    }
+                };
+                pushTracker.requestAdded();
+                requestQueue.add(request);
 
-                }
-            }, new Response.ErrorListener() {
-                @Override
-                public void onErrorResponse(VolleyError error) {
-
-                }
-            }) {
-                /**
-                 *
-                 * @return The Hashmap with {@link BaseStationSync#baseStationName}, {@link BaseStationSync#mmsiData} and {@link BaseStationSync#isOriginData}
-                 * is posted to the server on the {@link BaseStationSync#pushURL}
-                 *
-                 */
-                @Override
-                protected Map<String, String> getParams() throws AuthFailureError {
-
-                    HashMap<String, String> hashMap = new HashMap<String, String>();
-                    hashMap.put(DatabaseHelper.stationName, (baseStationName.get(index) == null) ? "" : baseStationName.get(index));
-                    hashMap.put(DatabaseHelper.mmsi, (mmsiData.get(index) == null) ? "" : mmsiData.get(index).toString());
-                    hashMap.put(DatabaseHelper.isOrigin, (isOriginData.get(index) == null) ? "" : isOriginData.get(index).toString());
-
-                    return hashMap;
-                }
-            };
-            requestQueue.add(request);
-
+            }
         }
 
         sendBSDeleteRequest();
+        pushTracker.allRequestsAdded();
     }
 
     /**
-     * Function is used to pull data from internal database to the server
-     * A Stringrequest {@link #request} for pulling the data is registered and added to the {@link #requestQueue}.
-     * callback function {@link Response.Listener#onResponse(Object)} notifies whether the request was successful or not
-     * If it is unsuccessful or the connection is not established {@link Response.Listener#error(VolleyError)} gets called
-     * On pulling the data from the server internal database tables {@link DatabaseHelper#baseStationTable} and {@link DatabaseHelper#baseStationDeletedTable}
-     * are cleared.
-     * <p>
-     * The server sends the data in .xml format, therefore it has to extract the data based on the tags
-     * Inside {@link Response.Listener#onResponse(Object)} it loops through the entire xml file till it reaches end of document.
-     * Based on the {@link XmlPullParser#START_TAG}, {@link XmlPullParser#TEXT}, {@link XmlPullParser#END_TAG} it adds the values received to
-     * the corresponding {@link BaseStation#setStationName(String)}, {@link BaseStation#setMmsi(int)}, {@link BaseStation#setOrigin(int)}
-     * Each {@link #baseStationList} is added to the {@link #baseStationArrayList} which is individually taken and added to the internal database.
-     * </p>
+     * Creates the parameters of one row of the {@value DatabaseHelper#baseStationTable} Table which are pushed to the Sync Server
+     * @param index index of the row in the {@link HashMap}s
+     * @return the value of each column, empty if the value is missing
      */
+    private Map<String, String> getRowParams(int index){
+        HashMap<String, String> hashMap = new HashMap<String, String>();
+        hashMap.put(DatabaseHelper.stationName, (baseStationName.get(index) == null) ? "" : baseStationName.get(index));
+        hashMap.put(DatabaseHelper.mmsi, (mmsiData.get(index) == null) ? "" : mmsiData.get(index).toString());
+        hashMap.put(DatabaseHelper.isOrigin, (isOriginData.get(index) == null) ? "" : isOriginData.get(index).toString());
 
-    public void onClickBaseStationPullButton(){
-        dbHelper = DatabaseHelper.getDbInstance(mContext);
-        db = dbHelper.getReadableDatabase();
-        db.execSQL("Delete from " + DatabaseHelper.baseStationTable);
-        db.execSQL("DELETE from " + DatabaseHelper.baseStationDeletedTable);
-        StringRequest pullRequest = new StringRequest(pullURL, new Response.Listener<String>() {
-            @Override
-            public void onResponse(String response) {
-                try {
-                    parser.setInput(new StringReader(response));
-                    int event = parser.getEventType();
-                    String tag = "";
-                    String value = "";
-                    while (event != XmlPullParser.END_DOCUMENT) {
-                        tag = parser.getName();
-                        switch (event) {
-                            case XmlPullParser.START_TAG:
-                                if (tag.equals(DatabaseHelper.baseStationTable)) {
-                                    baseStationList = new BaseStation(mContext);
-                                    baseStationArrayList.add(baseStationList);
-                                }
-                                break;
-
-                            case XmlPullParser.TEXT:
-                                value = parser.getText();
-                                break;
-
-                            case XmlPullParser.END_TAG:
-
-                                switch (tag) {
-
-                                    case DatabaseHelper.stationName:
-                                        baseStationList.setStationName(value);
-                                        break;
-
-                                    case DatabaseHelper.mmsi:
-                                        baseStationList.setMmsi(Integer.parseInt(value));
-                                        break;
-
-                                    case DatabaseHelper.isOrigin:
-                                        baseStationList.setOrigin(Integer.parseInt(value));
-
-
-                                }
-                                break;
-                        }
-                        event = parser.next();
+        return hashMap;
+    }
+
+    /**
+     * Pulls the {@value DatabaseHelper#baseStationTable} Table from the Sync Server with a {@link ShadowTablePull}.
+     * The rows are inserted in to a shadow table while the XML response is parsed and replace the rows of the
+     * {@link DatabaseHelper#baseStationTable} Table in one transaction once the whole response has been read. If the Sync Server answers with the changes since the version last pulled, only the changed rows are replaced and the deleted rows removed.
+     * If the pull fails the local tables are left unchanged. {@link #dataPullCompleted} is set to <code>true</code> when the rows have been replaced.
+     * @param callback called once the pull has finished or failed
+     */
+    public void onClickBaseStationPullButton(final SyncCallback callback){
+        ShadowTablePull pullRequest = new ShadowTablePull(mContext, pullURL, DatabaseHelper.baseStationTable, PULLED_COLUMNS, DatabaseHelper.mmsi,
+                new Response.Listener<Integer>() {
+                    @Override
+                    public void onResponse(Integer rows) {
+                        dataPullCompleted = true;
+                        callback.onSyncFinished(true);
+                        Toast.makeText(mContext, "Data Pulled from Server", Toast.LENGTH_SHORT).show();
                     }
-                    for(BaseStation currentStn : baseStationArrayList){
-                        currentStn.insertBaseStationInDB();
+                }, new Response.ErrorListener() {
+                    @Override
+                    public void onErrorResponse(VolleyError error) {
+                        Log.d(TAG, "Error Pulling Data: " + error.getCause());
+                        callback.onSyncFinished(false);
                     }
-                    dataPullCompleted = true;
-                    Toast.makeText(mContext, "Data Pulled from Server", Toast.LENGTH_SHORT).show();
-                } catch (XmlPullParserException e) {
-                    Log.d(TAG, "Error Parsing XML");
-                    e.printStackTrace();
-                } catch (IOException e) {
-                    Log.d(TAG, "IOException from Parser");
-                    e.printStackTrace();
-                }
-            }
-        }, new Response.ErrorListener() {
-            @Override
-            public void onErrorResponse(VolleyError error) {
-
-            }
-        });
-
+                });
         requestQueue.add(pullRequest);
-
     }
 
     /**
@@ -274,11 +266,21 @@ public class BaseStationSync {
      */
     public void setBaseUrl(String baseUrl, String port){
         pushURL = "http://" + baseUrl + ":" + port + "/BaseStation/pullStations.php";
+        batchURL = "http://" + baseUrl + ":" + port + "/BaseStation/pullStationsBatch.php";
         pullURL = "http://" + baseUrl + ":" + port + "/BaseStation/pushStations.php";
         deleteURL = "http://" + baseUrl + ":" + port + "/BaseStation/deleteStations.php";
 
     }
 
+    /**
+     * Sets the number of rows pushed to the Sync Server in one request
+     * @param rowsPerRequest rows per request of the batched push, or 0 to push every row with its own request
+     * @see de.awi.floenavigation.helperclasses.DatabaseHelper#sync_batch_size
+     */
+    public void setRowsPerRequest(int rowsPerRequest){
+        this.rowsPerRequest = rowsPerRequest;
+    }
+
     /**
      *
      * @return It returns the flag to check whether the data pull from server is completed or not
@@ -289,42 +291,21 @@ public class BaseStationSync {
     }
 
     /**
-     * After the post request is send to the server, this function is called to send {@link DatabaseHelper#baseStationDeletedTable}
-     * to the server.
-     * Initially the data is extracted from the internal database and then post request is send to the server.
-     * A Stringrequest {@link #request} for pushing the data is registered and added to the {@link #requestQueue}.
-     * callback function {@link Response.Listener#onResponse(Object)} notifies whether the request was successful or not
-     * If it is unsuccessful or the connection is not established {@link Response.Listener#error(VolleyError)} gets called
+     * Reads the keys of the rows of the {@value DatabaseHelper#baseStationTable} Table which have been deleted since the last
+     * acknowledged push from the {@link DatabaseHelper#changeJournalTable} and creates a request for each of them, so that the
+     * Sync Server deletes the same rows and removes them from the other tablets.
      */
-
     private void sendBSDeleteRequest(){
-        Cursor deletedStationListCursor = null;
         try{
             dbHelper = DatabaseHelper.getDbInstance(mContext);
             db = dbHelper.getReadableDatabase();
-            deletedStationListCursor = db.query(DatabaseHelper.baseStationDeletedTable,
-                    null,
-                    null,
-                    null,
-                    null, null, null);
-            int i = 0;
-            if(deletedStationListCursor.moveToFirst()){
-                do{
-                    deletedBaseStationData.put(i, deletedStationListCursor.getInt(deletedStationListCursor.getColumnIndexOrThrow(DatabaseHelper.mmsi)));
-                    Log.d(TAG, "MMSI to be Deleted: " + deletedStationListCursor.getInt(deletedStationListCursor.getColumnIndexOrThrow(DatabaseHelper.mmsi)));
-                    i++;
-
-                }while (deletedStationListCursor.moveToNext());
+            deletedBaseStationData = ChangeJournal.deletedKeys(db, DatabaseHelper.baseStationTable, pushedVersion);
+            for (String deletedKey : deletedBaseStationData) {
+                Log.d(TAG, "MMSI to be Deleted: " + deletedKey);
             }
-            deletedStationListCursor.close();
-
         } catch (SQLException e){
             Log.d(TAG, "Database Error");
             e.printStackTrace();
-        }finally {
-            if (deletedStationListCursor != null){
-                deletedStationListCursor.close();
-            }
         }
 
         for(int j = 0; j < deletedBaseStationData.size(); j++){
@@ -338,12 +319,15 @@ public class BaseStationSync {
                         if (jsonObject.names().get(0).equals("success")) {
                             //Toast.makeText(mContext, "SUCCESS " + jsonObject.getString("success"), Toast.LENGTH_SHORT).show();
                             Log.d(TAG, "SUCCESS: " + jsonObject.getString("success"));
+                            pushTracker.requestDone(true);
                         } else {
                             Toast.makeText(mContext, "Error" + jsonObject.getString("error"), Toast.LENGTH_SHORT).show();
                             Log.d(TAG, "Error: " + jsonObject.getString("error"));
+                            pushTracker.requestDone(false);
                         }
 
                     } catch (JSONException e) {
+                        pushTracker.requestDone(false);
                         e.printStackTrace();
                     }
 
@@ -351,6 +335,7 @@ public class BaseStationSync {
             }, new Response.ErrorListener() {
                 @Override
                 public void onErrorResponse(VolleyError error) {
+                    pushTracker.requestDone(false);
 
                 }
             }){
@@ -363,6 +348,7 @@ public class BaseStationSync {
                     return hashMap;
                 }
             };
+            pushTracker.requestAdded();
             requestQueue.add(request);
 
         }
@@ -0,0 +1,90 @@
+package de.awi.floenavigation.synchronization;
+
+import android.content.Context;
+
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Batched push of the rows of a database table to the Sync Server, used by the Sync Classes when the Configuration Parameter
+ * {@link de.awi.floenavigation.helperclasses.DatabaseHelper#sync_batch_size} is set.
+ * <p>
+ *     The rows are split into {@link SyncBatch}es which are each sent as one JSON request to the batch endpoint of the table, instead
+ *     of one form encoded request per row. The batches are stored in the {@link SyncOutbox}, which sends them and retries them until
+ *     the server has acknowledged every row of a batch. The failed rows are logged and shown in a {@link android.widget.Toast} just
+ *     as the failed requests of the single row push, and are kept in the {@link SyncOutbox} to be sent again.
+ * </p>
+ * <p>
+ *     If {@link #setBinaryEncoding(boolean)} is set, the batches are sent in the binary encoding of the {@link SyncBinaryCodec}
+ *     instead of JSON, which the Sync Server reads into the same rows. The acknowledgements stay JSON.
+ * </p>
+ * <p>
+ *     Bodies larger than {@link SyncTransport#MIN_COMPRESSED_SIZE} are compressed with gzip. The acknowledgements are decompressed by
+ *     the HTTP stack of Android, which asks for gzip responses by itself.
+ * </p>
+ */
+final class BatchPush {
+
+    /**
+     * <code>true</code> if the batches are sent in the binary encoding
+     */
+    private static volatile boolean binaryEncoding = false;
+
+    private BatchPush(){
+    }
+
+    /**
+     * @param binaryEncoding <code>true</code> to send the batches in the binary encoding of the {@link SyncBinaryCodec}, which the
+     *                       Sync Server has to support
+     * @see de.awi.floenavigation.helperclasses.DatabaseHelper#sync_binary_encoding
+     */
+    static void setBinaryEncoding(boolean binaryEncoding){
+        BatchPush.binaryEncoding = binaryEncoding;
+    }
+
+    /**
+     * Stores one request per batch of rows in the {@link SyncOutbox}, replacing the batches of an earlier push of the table which
+     * are still waiting if the rows were read from the {@link de.awi.floenavigation.helperclasses.DatabaseHelper#changeJournalTable}
+     * @param context context used to open the outbox
+     * @param url URL of the batch endpoint of the table
+     * @param table name of the database table the rows belong to
+     * @param rows value of each column of each row
+     * @param rowsPerRequest maximum number of rows per request
+     * @param tracker counts the requests of the push of the table and is told whether every row of a request was acknowledged, or
+     *                <code>null</code> if the push is not tracked
+     */
+    static void push(Context context, String url, String table, List<Map<String, String>> rows, int rowsPerRequest,
+                     PushTracker tracker){
+        SyncOutbox outbox = SyncOutbox.getInstance(context);
+        long version = tracker != null && tracker.getTable() != null ? tracker.getVersion() : -1;
+        if (version >= 0) {
+            outbox.supersede(table);
+        }
+        boolean binary = binaryEncoding;
+        String contentType = binary ? SyncBinaryCodec.MEDIA_TYPE : null;
+        for (SyncBatch batch : SyncBatch.split(table, rows, rowsPerRequest)) {
+            byte[] body = encode(batch, binary);
+            boolean compressed = body.length > SyncTransport.MIN_COMPRESSED_SIZE;
+            outbox.enqueue(table, url, version, compressed ? SyncTransport.gzip(body) : body, contentType, compressed,
+                    batch.rows.size(), tracker);
+        }
+    }
+
+    /**
+     * @param batch rows of the request
+     * @param binary <code>true</code> for the binary encoding of the {@link SyncBinaryCodec}, <code>false</code> for JSON
+     * @return the uncompressed body of the request
+     */
+    static byte[] encode(SyncBatch batch, boolean binary){
+        if (binary) {
+            return SyncBinaryCodec.encodeBatch(batch);
+        }
+        String body = batch.toJson();
+        try {
+            return body.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            return body.getBytes();
+        }
+    }
+}
@@ -19,13 +19,11 @@ import com.android.volley.toolbox.StringRequest;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.xmlpull.v1.XmlPullParser;
-import org.xmlpull.v1.XmlPullParserException;
 
-import java.io.IOException;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import de.awi.floenavigation.helperclasses.DatabaseHelper;
@@ -36,7 +34,7 @@ import de.awi.floenavigation.helperclasses.DatabaseHelper;
  * Creates {@link StringRequest}s and inserts it in to a {@link RequestQueue} to push and pull Data from the Server.
  * Clears the Beta table before inserting Data that was pulled from the Server.
  * <p>
- * Uses {@link Beta} to create a new Beta Object and insert it in Database, for Beta parameters that is pulled from the Server.
+ * The pulled rows are inserted with a {@link ShadowTablePull}, which replaces the rows of the table only when the whole response has been read.
  *</p>
  * @see DatabaseHelper#betaTable
  * @see SyncActivity
@@ -46,6 +44,11 @@ import de.awi.floenavigation.helperclasses.DatabaseHelper;
 
 public class BetaSync {
     private static final String TAG = "BetaSync";
+
+    /**
+     * Columns of the {@value DatabaseHelper#betaTable} Table which are pulled from the Sync Server
+     */
+    private static final String[] PULLED_COLUMNS = {DatabaseHelper.beta, DatabaseHelper.updateTime};
     private Context mContext;
 
     /**
@@ -59,6 +62,33 @@ public class BetaSync {
      */
     private String pullURL = "";
 
+    /**
+     * URL for the batched push of the rows to the Sync Server
+     * @see #setBaseUrl(String, String)
+     */
+    private String batchURL = "";
+
+    /**
+     * Number of rows pushed to the Sync Server in one request. If it is 0 every row is pushed with its own request.
+     * @see #setRowsPerRequest(int)
+     */
+    private int rowsPerRequest = 0;
+
+    /**
+     * Version of the {@link DatabaseHelper#changeJournalTable} up to which the rows were pushed before this push
+     */
+    private long pushedVersion = 0;
+
+    /**
+     * Version of the {@link DatabaseHelper#changeJournalTable} of the rows read for this push
+     */
+    private long journalVersion = 0;
+
+    /**
+     * Advances the pushed version once every request of this push has been acknowledged
+     */
+    private PushTracker pushTracker;
+
     private SQLiteDatabase db;
     private DatabaseHelper dbHelper;
     private StringRequest request;
@@ -76,8 +106,6 @@ public class BetaSync {
      * Cursor used to loop through the database entries
      */
     private Cursor betaCursor = null;
-    private Beta beta;
-    private ArrayList<Beta> betaList = new ArrayList<>();
     private RequestQueue requestQueue;
     private XmlPullParser parser;
 
@@ -101,19 +129,21 @@ public class BetaSync {
     /**
      * Reads the {@value DatabaseHelper#betaTable} Table and inserts the data from all the Columns of the
      * {@value DatabaseHelper#betaTable} Table in to their respective {@link HashMap}.
+     * Only the rows changed since the last push acknowledged by the Sync Server are read, see {@link ChangeJournal}.
+     * @param db connection of the snapshot the rows are read from, see {@link DatabaseHelper#openSnapshot(Context)}
      * @see #betaData
      * @see #updateTimeData
      * @see #betaCursor
      */
-    public void onClickBetaReadButton(){
+    public void onClickBetaReadButton(SQLiteDatabase db){
         try{
             int i = 0;
-            dbHelper = DatabaseHelper.getDbInstance(mContext);
-            db = dbHelper.getReadableDatabase();
+            pushedVersion = ChangeJournal.getPushedVersion(db, DatabaseHelper.betaTable);
+            journalVersion = ChangeJournal.currentVersion(db, DatabaseHelper.betaTable);
             betaCursor = db.query(DatabaseHelper.betaTable,
                     null,
-                    null,
-                    null,
+                    ChangeJournal.changedRowsSelection("_id"),
+                    ChangeJournal.changedRowsArgs(DatabaseHelper.betaTable, pushedVersion),
                     null, null, null);
             if(betaCursor.moveToFirst()){
                 do{
@@ -124,7 +154,6 @@ public class BetaSync {
                 }while (betaCursor.moveToNext());
             }
             betaCursor.close();
-            Toast.makeText(mContext, "Read Completed from DB", Toast.LENGTH_SHORT).show();
         } catch (SQLiteException e){
             Log.d(TAG, "Database Error");
             e.printStackTrace();
@@ -139,132 +168,103 @@ public class BetaSync {
      * Creates {@link StringRequest}s as per the rows of beta data extracted from the local database (in our case its only '1') and inserts all the requests in the {@link RequestQueue}
      * {@link DatabaseHelper#betaTable} Table in to their respective {@link HashMap}.
      *
+     * If {@link #rowsPerRequest} is set, the rows are instead pushed in batches of that size by {@link BatchPush}.
+     * @param callback called once every request of the push has been answered
      */
-    public void onClickBetaSyncButton() {
-        for (int i = 0; i < betaData.size(); i++) {
-            final int index = i;
-            request = new StringRequest(Request.Method.POST, pushURL, new Response.Listener<String>() {
-
-                @Override
-                public void onResponse(String response) {
-                    try {
-                        JSONObject jsonObject = new JSONObject(response);
-                        //Log.d(TAG, "on receive");
-                        if (jsonObject.names().get(0).equals("success")) {
-                            //Toast.makeText(mContext, "SUCCESS " + jsonObject.getString("success"), Toast.LENGTH_SHORT).show();
-                            Log.d(TAG, "SUCCESS: " + jsonObject.getString("success"));
-                        } else {
-                            Toast.makeText(mContext, "Error" + jsonObject.getString("error"), Toast.LENGTH_SHORT).show();
-                            Log.d(TAG, "Error: " + jsonObject.getString("error"));
+    public void onClickBetaSyncButton(SyncCallback callback) {
+        pushTracker = new PushTracker(mContext, DatabaseHelper.betaTable, journalVersion, callback);
+        if (rowsPerRequest > 0) {
+            List<Map<String, String>> rows = new ArrayList<>();
+            for (int i = 0; i < betaData.size(); i++) {
+                rows.add(getRowParams(i));
+            }
+            BatchPush.push(mContext, batchURL, DatabaseHelper.betaTable, rows, rowsPerRequest, pushTracker);
+        } else {
+            for (int i = 0; i < betaData.size(); i++) {
+                final int index = i;
+                request = new StringRequest(Request.Method.POST, pushURL, new Response.Listener<String>() {
+
+                    @Override
+                    public void onResponse(String response) {
+                        try {
+                            JSONObject jsonObject = new JSONObject(response);
+                            //Log.d(TAG, "on receive");
+                            if (jsonObject.names().get(0).equals("success")) {
+                                //Toast.makeText(mContext, "SUCCESS " + jsonObject.getString("success"), Toast.LENGTH_SHORT).show();
+                                Log.d(TAG, "SUCCESS: " + jsonObject.getString("success"));
+                                pushTracker.requestDone(true);
+                            } else {
+                                Toast.makeText(mContext, "Error" + jsonObject.getString("error"), Toast.LENGTH_SHORT).show();
+                                Log.d(TAG, "Error: " + jsonObject.getString("error"));
+                                pushTracker.requestDone(false);
+                            }
+
+
+                        } catch (JSONException e) {
+                            pushTracker.requestDone(false);
+                            e.printStackTrace();
                         }
 
 
-                    } catch (JSONException e) {
-                        e.printStackTrace();
                     }
+                }, new Response.ErrorListener() {
+                    @Override
+                    public void onErrorResponse(VolleyError error) {
+                        pushTracker.requestDone(false);
 
+                    }
+                }) {
+                    @Override
+                    protected Map<String, String> getParams() throws AuthFailureError {
+                        return getRowParams(index);
+                    }
+                };
+                pushTracker.requestAdded();
+                requestQueue.add(request);
 
-                }
-            }, new Response.ErrorListener() {
-                @Override
-                public void onErrorResponse(VolleyError error) {
-
-                }
-            }) {
-                @Override
-                protected Map<String, String> getParams() throws AuthFailureError {
-
-                    HashMap<String, String> hashMap = new HashMap<String, String>();
-                    hashMap.put(DatabaseHelper.beta, (betaData.get(index) == null) ? "" : betaData.get(index).toString());
-                    hashMap.put(DatabaseHelper.updateTime, (updateTimeData.get(index) == null) ? "" : updateTimeData.get(index));
+            }
+        }
+        pushTracker.allRequestsAdded();
+    }
 
-                    return hashMap;
-                }
-            };
-            requestQueue.add(request);
+    /**
+     * Creates the parameters of one row of the {@value DatabaseHelper#betaTable} Table which are pushed to the Sync Server
+     * @param index index of the row in the {@link HashMap}s
+     * @return the value of each column, empty if the value is missing
+     */
+    private Map<String, String> getRowParams(int index){
+        HashMap<String, String> hashMap = new HashMap<String, String>();
+        hashMap.put(DatabaseHelper.beta, (betaData.get(index) == null) ? "" : betaData.get(index).toString());
+        hashMap.put(DatabaseHelper.updateTime, (updateTimeData.get(index) == null) ? "" : updateTimeData.get(index));
 
-        }
+        return hashMap;
     }
 
     /**
-     * Function is used to pull data from internal database to the server
-     * A Stringrequest {@link #request} for pulling the data is registered and added to the {@link #requestQueue}.
-     * callback function {@link Response.Listener#onResponse(Object)} notifies whether the request was successful or not
-     * If it is unsuccessful or the connection is not established {@link Response.Listener#error(VolleyError)} gets called
-     * On pulling the data from the server internal database tables {@link DatabaseHelper#betaTable} are cleared.
-     *
-     * <p>
-     * The server sends the data in .xml format, therefore it has to extract the data based on the tags
-     * Inside {@link Response.Listener#onResponse(Object)} it loops through the entire xml file till it reaches the end of document.
-     * Based on the {@link XmlPullParser#START_TAG}, {@link XmlPullParser#TEXT}, {@link XmlPullParser#END_TAG} it adds the values received to
-     * the corresponding {@link Beta#setBeta(double)}, {@link Beta#setUpdateTime(String)}
-     * Each {@link #beta} is added to the {@link #betaList} which is individually taken and added to the internal database.
-     * </p>
+     * Pulls the {@value DatabaseHelper#betaTable} Table from the Sync Server with a {@link ShadowTablePull}.
+     * The rows are inserted in to a shadow table while the XML response is parsed and replace the rows of the
+     * {@link DatabaseHelper#betaTable} Table in one transaction once the whole response has been read.
+     * If the pull fails the local tables are left unchanged. {@link #dataPullCompleted} is set to <code>true</code> when the rows have been replaced.
+     * @param callback called once the pull has finished or failed
      */
-    public void onClickBetaPullButton(){
-        dbHelper = DatabaseHelper.getDbInstance(mContext);
-        db = dbHelper.getReadableDatabase();
-        db.execSQL("Delete from " + DatabaseHelper.betaTable);
-        StringRequest pullRequest = new StringRequest(pullURL, new Response.Listener<String>() {
-            @Override
-            public void onResponse(String response) {
-                try {
-                    parser.setInput(new StringReader(response));
-                    int event = parser.getEventType();
-                    String tag = "";
-                    String value = "";
-                    while (event != XmlPullParser.END_DOCUMENT) {
-                        tag = parser.getName();
-                        switch (event) {
-                            case XmlPullParser.START_TAG:
-                                if (tag.equals(DatabaseHelper.betaTable)) {
-                                    beta = new Beta(mContext);
-                                    betaList.add(beta);
-                                }
-                                break;
-
-                            case XmlPullParser.TEXT:
-                                value = parser.getText();
-                                break;
-
-                            case XmlPullParser.END_TAG:
-
-                                switch (tag) {
-
-                                    case DatabaseHelper.beta:
-                                        beta.setBeta(Double.valueOf(value));
-                                        break;
-
-                                    case DatabaseHelper.updateTime:
-                                        beta.setUpdateTime(value);
-                                        break;
-                                }
-                                break;
-                        }
-                        event = parser.next();
+    public void onClickBetaPullButton(final SyncCallback callback){
+        ShadowTablePull pullRequest = new ShadowTablePull(mContext, pullURL, DatabaseHelper.betaTable, PULLED_COLUMNS, null,
+                new Response.Listener<Integer>() {
+                    @Override
+                    public void onResponse(Integer rows) {
+                        dataPullCompleted = true;
+                        callback.onSyncFinished(true);
+                        Toast.makeText(mContext, "Data Pulled from Server", Toast.LENGTH_SHORT).show();
                     }
-                    for(Beta newBeta : betaList){
-                        newBeta.insertBetaInDB();
+                }, new Response.ErrorListener() {
+                    @Override
+                    public void onErrorResponse(VolleyError error) {
+                        Log.d(TAG, "Error Pulling Data: " + error.getCause());
+                        callback.onSyncFinished(false);
                     }
-                    dataPullCompleted = true;
-                    Toast.makeText(mContext, "Data Pulled from Server", Toast.LENGTH_SHORT).show();
-                } catch (XmlPullParserException e) {
-                    Log.d(TAG, "Error Parsing XML");
-                    e.printStackTrace();
-                } catch (IOException e) {
-                    Log.d(TAG, "IOException from Parser");
-                    e.printStackTrace();
-                }
-            }
-        }, new Response.ErrorListener() {
-            @Override
-            public void onErrorResponse(VolleyError error) {
-
-            }
-        });
-
+                });
+        pullRequest.setSingleRow(true);
         requestQueue.add(pullRequest);
-
     }
 
     private String formatUpdateTime(double updateTime) {
@@ -274,10 +274,20 @@ public class BetaSync {
 
     public void setBaseUrl(String baseUrl, String port){
         pushURL = "http://" + baseUrl + ":" + port + "/Beta/pullBeta.php";
+        batchURL = "http://" + baseUrl + ":" + port + "/Beta/pullBetaBatch.php";
         pullURL = "http://" + baseUrl + ":" + port + "/Beta/pushBeta.php";
 
     }
 
+    /**
+     * Sets the number of rows pushed to the Sync Server in one request
+     * @param rowsPerRequest rows per request of the batched push, or 0 to push every row with its own request
+     * @see de.awi.floenavigation.helperclasses.DatabaseHelper#sync_batch_size
+     */
+    public void setRowsPerRequest(int rowsPerRequest){
+        this.rowsPerRequest = rowsPerRequest;
+    }
+
     public boolean getDataCompleted(){
         return dataPullCompleted;
     }
@@ -0,0 +1,211 @@
+package de.awi.floenavigation.synchronization;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.awi.floenavigation.helperclasses.DatabaseHelper;
+
+/**
+ * Reads the {@link DatabaseHelper#changeJournalTable} for the delta synchronization of the Sync Classes and keeps the versions and
+ * the entity tag of the last pull of each table in the {@link DatabaseHelper#syncStateTable}.
+ * <p>
+ *     The version of a table is the highest <code>_id</code> of its entries in the journal. Since the journal keeps only the latest
+ *     entry of each row, the rows changed since a version are the keys of the {@link DatabaseHelper#JOURNAL_UPSERT} entries above it
+ *     and the rows deleted since are the keys of the {@link DatabaseHelper#JOURNAL_DELETE} entries above it. The pushed version of a
+ *     table is only advanced by a {@link PushTracker} once every request of a push has been acknowledged, so a failed push is sent
+ *     again with the next one.
+ * </p>
+ * <p>
+ *     The entries of the rows written by a pull are marked with {@link #markPulled(SQLiteDatabase, String, long)} and are not
+ *     pushed, so the rows of the other tablets are not sent back to the Sync Server.
+ * </p>
+ * <p>
+ *     Once a push has been acknowledged, {@link #prune(SQLiteDatabase, String, long)} deletes the entries it has sent and the entries
+ *     of the pulled rows, so the journal does not grow with every row ever deleted. The latest entry of the table is kept, so its
+ *     version does not decrease, and the highest deleted <code>_id</code> is stored as the {@link DatabaseHelper#prunedVersion}: the
+ *     Grid reads a table again if it has not seen the entries up to it.
+ * </p>
+ * The methods throw {@link android.database.SQLException} if the database fails, which is handled by the calling Sync Class.
+ */
+final class ChangeJournal {
+
+    private ChangeJournal(){
+    }
+
+    /**
+     * @param table name of the synchronized table
+     * @return the highest version of the table in the journal, 0 if it has no entries
+     */
+    static long currentVersion(SQLiteDatabase db, String table){
+        return DatabaseUtils.longForQuery(db, "SELECT IFNULL(MAX(_id), 0) FROM " + DatabaseHelper.changeJournalTable +
+                " WHERE " + DatabaseHelper.journalTableName + " = ?", new String[]{table});
+    }
+
+    /**
+     * @param table name of the synchronized table
+     * @return the version up to which the changes of the table have been acknowledged by the Sync Server, 0 if it was never pushed
+     */
+    static long getPushedVersion(SQLiteDatabase db, String table){
+        return getVersion(db, table, DatabaseHelper.pushedVersion);
+    }
+
+    /**
+     * @param table name of the synchronized table
+     * @param version version up to which the changes of the table have been acknowledged by the Sync Server
+     */
+    static void setPushedVersion(SQLiteDatabase db, String table, long version){
+        setVersion(db, table, DatabaseHelper.pushedVersion, version);
+    }
+
+    /**
+     * @param table name of the synchronized table
+     * @return the version of the Sync Server up to which the table has been pulled, 0 if it was never pulled
+     */
+    static long getPulledVersion(SQLiteDatabase db, String table){
+        return getVersion(db, table, DatabaseHelper.pulledVersion);
+    }
+
+    /**
+     * @param table name of the synchronized table
+     * @param version version of the Sync Server up to which the table has been pulled
+     */
+    static void setPulledVersion(SQLiteDatabase db, String table, long version){
+        setVersion(db, table, DatabaseHelper.pulledVersion, version);
+    }
+
+    /**
+     * @param table name of the synchronized table
+     * @return the entity tag the Sync Server sent with the last pull of the table, <code>null</code> if it sent none
+     */
+    static String getPullEtag(SQLiteDatabase db, String table){
+        Cursor cursor = null;
+        try {
+            cursor = db.query(DatabaseHelper.syncStateTable, new String[]{DatabaseHelper.pullEtag},
+                    DatabaseHelper.journalTableName + " = ?", new String[]{table}, null, null, null);
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * @param table name of the synchronized table
+     * @param etag entity tag the Sync Server sent with the pull of the table, <code>null</code> if it sent none
+     */
+    static void setPullEtag(SQLiteDatabase db, String table, String etag){
+        ContentValues value = new ContentValues();
+        value.put(DatabaseHelper.pullEtag, etag);
+        setState(db, table, value);
+    }
+
+    /**
+     * Marks the entries of a table written since a version as changes pulled from the Sync Server, to be called in the transaction
+     * of the pull
+     * @param table name of the synchronized table
+     * @param since version of the table before the rows of the pull were written
+     */
+    static void markPulled(SQLiteDatabase db, String table, long since){
+        ContentValues source = new ContentValues();
+        source.put(DatabaseHelper.journalSource, DatabaseHelper.JOURNAL_SOURCE_PULL);
+        db.update(DatabaseHelper.changeJournalTable, source, DatabaseHelper.journalTableName + " = ? AND _id > ?",
+                new String[]{table, String.valueOf(since)});
+    }
+
+    /**
+     * Deletes the entries of a table which the Sync Server has acknowledged and the entries of the rows written by a pull, except
+     * the latest entry of the table, and raises the {@link DatabaseHelper#prunedVersion} of the table to the highest deleted entry
+     * @param table name of the synchronized table
+     * @param pushedVersion version up to which the changes of the table have been acknowledged by the Sync Server
+     * @return the number of entries deleted
+     */
+    static int prune(SQLiteDatabase db, String table, long pushedVersion){
+        String selection = DatabaseHelper.journalTableName + " = ? AND _id < ? AND (_id <= ? OR " + DatabaseHelper.journalSource +
+                " = '" + DatabaseHelper.JOURNAL_SOURCE_PULL + "')";
+        db.beginTransaction();
+        try {
+            String[] args = {table, String.valueOf(currentVersion(db, table)), String.valueOf(pushedVersion)};
+            long highest = DatabaseUtils.longForQuery(db, "SELECT IFNULL(MAX(_id), 0) FROM " + DatabaseHelper.changeJournalTable +
+                    " WHERE " + selection, args);
+            int deleted = 0;
+            if (highest > 0) {
+                deleted = db.delete(DatabaseHelper.changeJournalTable, selection, args);
+                if (getVersion(db, table, DatabaseHelper.prunedVersion) < highest) {
+                    setVersion(db, table, DatabaseHelper.prunedVersion, highest);
+                }
+            }
+            db.setTransactionSuccessful();
+            return deleted;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Selection of the rows changed on this tablet since a version, used with the arguments of {@link #changedRowsArgs(String, long)}
+     * @param keyColumn column which identifies a row of the table
+     * @return the <code>WHERE</code> clause of the query
+     */
+    static String changedRowsSelection(String keyColumn){
+        return keyColumn + " IN (SELECT " + DatabaseHelper.rowKey + " FROM " + DatabaseHelper.changeJournalTable +
+                " WHERE " + DatabaseHelper.journalTableName + " = ? AND " + DatabaseHelper.operation + " = '" +
+                DatabaseHelper.JOURNAL_UPSERT + "' AND " + DatabaseHelper.journalSource + " IS NULL AND _id > ?)";
+    }
+
+    /**
+     * @param table name of the synchronized table
+     * @param since version after which the rows have changed
+     * @return the arguments of {@link #changedRowsSelection(String)}
+     */
+    static String[] changedRowsArgs(String table, long since){
+        return new String[]{table, String.valueOf(since)};
+    }
+
+    /**
+     * @param table name of the synchronized table
+     * @param since version after which the rows have been deleted
+     * @return the keys of the rows deleted on this tablet since the version, in the order of deletion
+     */
+    static List<String> deletedKeys(SQLiteDatabase db, String table, long since){
+        List<String> keys = new ArrayList<>();
+        Cursor cursor = null;
+        try {
+            cursor = db.query(DatabaseHelper.changeJournalTable, new String[]{DatabaseHelper.rowKey},
+                    DatabaseHelper.journalTableName + " = ? AND " + DatabaseHelper.operation + " = ? AND " +
+                            DatabaseHelper.journalSource + " IS NULL AND _id > ?",
+                    new String[]{table, DatabaseHelper.JOURNAL_DELETE, String.valueOf(since)}, null, null, "_id");
+            while (cursor.moveToNext()) {
+                keys.add(cursor.getString(0));
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return keys;
+    }
+
+    private static long getVersion(SQLiteDatabase db, String table, String column){
+        return DatabaseUtils.longForQuery(db, "SELECT IFNULL(MAX(" + column + "), 0) FROM " + DatabaseHelper.syncStateTable +
+                " WHERE " + DatabaseHelper.journalTableName + " = ?", new String[]{table});
+    }
+
+    private static void setVersion(SQLiteDatabase db, String table, String column, long version){
+        ContentValues value = new ContentValues();
+        value.put(column, version);
+        setState(db, table, value);
+    }
+
+    private static void setState(SQLiteDatabase db, String table, ContentValues value){
+        ContentValues state = new ContentValues();
+        state.put(DatabaseHelper.journalTableName, table);
+        db.insertWithOnConflict(DatabaseHelper.syncStateTable, null, state, SQLiteDatabase.CONFLICT_IGNORE);
+        db.update(DatabaseHelper.syncStateTable, value, DatabaseHelper.journalTableName + " = ?", new String[]{table});
+    }
+}
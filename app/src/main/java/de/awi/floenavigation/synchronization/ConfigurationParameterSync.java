@@ -19,12 +19,10 @@ import com.android.volley.toolbox.StringRequest;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.xmlpull.v1.XmlPullParser;
-import org.xmlpull.v1.XmlPullParserException;
 
-import java.io.IOException;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import de.awi.floenavigation.helperclasses.DatabaseHelper;
@@ -34,7 +32,7 @@ import de.awi.floenavigation.helperclasses.DatabaseHelper;
  * Creates {@link StringRequest}s and inserts it into a {@link RequestQueue} to push and pull Data from the Server.
  * Clears the {@link DatabaseHelper#configParametersTable} table before inserting Data that was pulled from the Server.
  * <p>
- * Uses {@link ConfigurationParameter} to create a new Object and insert it into local Database, for configurations parameters that is pulled from the Server.
+ * The pulled rows are inserted with a {@link ShadowTablePull}, which replaces the rows of the table only when the whole response has been read.
  *</p>
  * @see DatabaseHelper#configParametersTable
  * @see SyncActivity
@@ -43,6 +41,11 @@ import de.awi.floenavigation.helperclasses.DatabaseHelper;
  */
 public class ConfigurationParameterSync {
     private static final String TAG = "ConfigurationParamSync";
+
+    /**
+     * Columns of the {@value DatabaseHelper#configParametersTable} Table which are pulled from the Sync Server
+     */
+    private static final String[] PULLED_COLUMNS = {DatabaseHelper.parameterName, DatabaseHelper.parameterValue};
     private Context mContext;
 
     /**
@@ -56,6 +59,33 @@ public class ConfigurationParameterSync {
      */
     private String pullURL = "";
 
+    /**
+     * URL for the batched push of the rows to the Sync Server
+     * @see #setBaseUrl(String, String)
+     */
+    private String batchURL = "";
+
+    /**
+     * Number of rows pushed to the Sync Server in one request. If it is 0 every row is pushed with its own request.
+     * @see #setRowsPerRequest(int)
+     */
+    private int rowsPerRequest = 0;
+
+    /**
+     * Version of the {@link DatabaseHelper#changeJournalTable} up to which the rows were pushed before this push
+     */
+    private long pushedVersion = 0;
+
+    /**
+     * Version of the {@link DatabaseHelper#changeJournalTable} of the rows read for this push
+     */
+    private long journalVersion = 0;
+
+    /**
+     * Advances the pushed version once every request of this push has been acknowledged
+     */
+    private PushTracker pushTracker;
+
     private SQLiteDatabase db;
     private DatabaseHelper dbHelper;
     private StringRequest request;
@@ -72,8 +102,6 @@ public class ConfigurationParameterSync {
      * Cursor used to loop through the database entries
      */
     private Cursor configParameterCursor = null;
-    private ConfigurationParameter configurationParameter;
-    private ArrayList<ConfigurationParameter> configParamArrayList = new ArrayList<>();
     private RequestQueue requestQueue;
     private XmlPullParser parser;
     /**
@@ -94,17 +122,20 @@ public class ConfigurationParameterSync {
     /**
      * Reads the {@value DatabaseHelper#configParametersTable} Table and inserts the data from all the Columns of the
      * {@value DatabaseHelper#configParametersTable} Table in to their respective {@link HashMap}.
+     * Only the rows changed since the last push acknowledged by the Sync Server are read, see {@link ChangeJournal}.
+     * @param db connection of the snapshot the rows are read from, see {@link DatabaseHelper#openSnapshot(Context)}
      * @throws SQLiteException In case of error in reading database
      */
-    public void onClickParameterReadButton(){
+    public void onClickParameterReadButton(SQLiteDatabase db){
         try{
             int i = 0;
-            dbHelper = DatabaseHelper.getDbInstance(mContext);
-            db = dbHelper.getReadableDatabase();
+            pushedVersion = ChangeJournal.getPushedVersion(db, DatabaseHelper.configParametersTable);
+            journalVersion = ChangeJournal.currentVersion(db, DatabaseHelper.configParametersTable);
+            String[] changedRowsArgs = ChangeJournal.changedRowsArgs(DatabaseHelper.configParametersTable, pushedVersion);
             configParameterCursor = db.query(DatabaseHelper.configParametersTable,
                     null,
-                    DatabaseHelper.parameterName + " != ?",
-                    new String[]{"TABLET_ID"},
+                    DatabaseHelper.parameterName + " != ? AND " + ChangeJournal.changedRowsSelection(DatabaseHelper.parameterName),
+                    new String[]{"TABLET_ID", changedRowsArgs[0], changedRowsArgs[1]},
                     null, null, null);
             if(configParameterCursor.moveToFirst()){
                 do{
@@ -115,7 +146,6 @@ public class ConfigurationParameterSync {
                 }while (configParameterCursor.moveToNext());
             }
             configParameterCursor.close();
-            Toast.makeText(mContext, "Read Completed from DB", Toast.LENGTH_SHORT).show();
         } catch (SQLiteException e){
             Log.d(TAG, "Database Error");
             e.printStackTrace();
@@ -131,134 +161,111 @@ public class ConfigurationParameterSync {
      * A Stringrequest {@link #request} for pushing the data is registered and added to the {@link #requestQueue}.
      * callback function {@link Response.Listener#onResponse(Object)} notifies whether the request was successful or not
      * If it is unsuccessful or the connection is not established {@link Response.Listener#error(VolleyError)} gets called
+     * If {@link #rowsPerRequest} is set, the rows are instead pushed in batches of that size by {@link BatchPush}.
+     * @param callback called once every request of the push has been answered
      */
-    public void onClickParameterSyncButton() {
-        for (int i = 0; i < configParameterName.size(); i++) {
-            final int index = i;
-            request = new StringRequest(Request.Method.POST, pushURL, new Response.Listener<String>() {
-
-                @Override
-                public void onResponse(String response) {
-                    try {
-                        JSONObject jsonObject = new JSONObject(response);
-                        //Log.d(TAG, "on receive");
-                        if (jsonObject.names().get(0).equals("success")) {
-                            //Toast.makeText(mContext, "SUCCESS " + jsonObject.getString("success"), Toast.LENGTH_SHORT).show();
-                            Log.d(TAG, "SUCCESS: " + jsonObject.getString("success"));
-                        } else {
-                            Toast.makeText(mContext, "Error" + jsonObject.getString("error"), Toast.LENGTH_SHORT).show();
-                            Log.d(TAG, "Error: " + jsonObject.getString("error"));
+    public void onClickParameterSyncButton(SyncCallback callback) {
+        pushTracker = new PushTracker(mContext, DatabaseHelper.configParametersTable, journalVersion, callback);
+        if (rowsPerRequest > 0) {
+            List<Map<String, String>> rows = new ArrayList<>();
+            for (int i = 0; i < configParameterName.size(); i++) {
+                rows.add(getRowParams(i));
+            }
+            BatchPush.push(mContext, batchURL, DatabaseHelper.configParametersTable, rows, rowsPerRequest, pushTracker);
+        } else {
+            for (int i = 0; i < configParameterName.size(); i++) {
+                final int index = i;
+                request = new StringRequest(Request.Method.POST, pushURL, new Response.Listener<String>() {
+
+                    @Override
+                    public void onResponse(String response) {
+                        try {
+                            JSONObject jsonObject = new JSONObject(response);
+                            //Log.d(TAG, "on receive");
+                            if (jsonObject.names().get(0).equals("success")) {
+                                //Toast.makeText(mContext, "SUCCESS " + jsonObject.getString("success"), Toast.LENGTH_SHORT).show();
+                                Log.d(TAG, "SUCCESS: " + jsonObject.getString("success"));
+                                pushTracker.requestDone(true);
+                            } else {
+                                Toast.makeText(mContext, "Error" + jsonObject.getString("error"), Toast.LENGTH_SHORT).show();
+                                Log.d(TAG, "Error: " + jsonObject.getString("error"));
+                                pushTracker.requestDone(false);
+                            }
+
+
+                        } catch (JSONException e) {
+                            pushTracker.requestDone(false);
+                            e.printStackTrace();
                         }
 
 
-                    } catch (JSONException e) {
-                        e.printStackTrace();
                     }
+                }, new Response.ErrorListener() {
+                    @Override
+                    public void onErrorResponse(VolleyError error) {
+                        pushTracker.requestDone(false);
 
+                    }
+                }) {
+                    @Override
+                    protected Map<String, String> getParams() throws AuthFailureError {
+                        return getRowParams(index);
+                    }
+                };
+                pushTracker.requestAdded();
+                requestQueue.add(request);
 
-                }
-            }, new Response.ErrorListener() {
-                @Override
-                public void onErrorResponse(VolleyError error) {
-
-                }
-            }) {
-                @Override
-                protected Map<String, String> getParams() throws AuthFailureError {
-
-                    HashMap<String, String> hashMap = new HashMap<String, String>();
-                    hashMap.put(DatabaseHelper.parameterName, (configParameterName.get(index) == null) ? "" : configParameterName.get(index));
-                    hashMap.put(DatabaseHelper.parameterValue, (configParameterValue.get(index) == null) ? "" : configParameterValue.get(index).toString());
+            }
+        }
+        pushTracker.allRequestsAdded();
+    }
 
-                    return hashMap;
-                }
-            };
-            requestQueue.add(request);
+    /**
+     * Creates the parameters of one row of the {@value DatabaseHelper#configParametersTable} Table which are pushed to the Sync Server
+     * @param index index of the row in the {@link HashMap}s
+     * @return the value of each column, empty if the value is missing
+     */
+    private Map<String, String> getRowParams(int index){
+        HashMap<String, String> hashMap = new HashMap<String, String>();
+        hashMap.put(DatabaseHelper.parameterName, (configParameterName.get(index) == null) ? "" : configParameterName.get(index));
+        hashMap.put(DatabaseHelper.parameterValue, (configParameterValue.get(index) == null) ? "" : configParameterValue.get(index).toString());
 
-        }
+        return hashMap;
     }
 
     /**
-     * Function is used to pull data from internal database to the server
-     * A Stringrequest {@link #request} for pulling the data is registered and added to the {@link #requestQueue}.
-     * callback function {@link Response.Listener#onResponse(Object)} notifies whether the request was successful or not
-     * If it is unsuccessful or the connection is not established {@link Response.Listener#error(VolleyError)} gets called
-     * On pulling the data from the server internal database tables {@link DatabaseHelper#configParametersTable} are cleared.
-     *
-     * <p>
-     * The server sends the data in .xml format, therefore it has to extract the data based on the tags
-     * Inside {@link Response.Listener#onResponse(Object)} it loops through the entire xml file till it reaches the end of document.
-     * Based on the {@link XmlPullParser#START_TAG}, {@link XmlPullParser#TEXT}, {@link XmlPullParser#END_TAG} it adds the values received to
-     * the corresponding {@link ConfigurationParameter#setParameterName(String)}, {@link ConfigurationParameter#setParameterValue(String)}
-     * Each {@link #configurationParameter} is added to the {@link #configParamArrayList} which is individually taken and added to the internal database.
-     * </p>
+     * Pulls the {@value DatabaseHelper#configParametersTable} Table from the Sync Server with a {@link ShadowTablePull}.
+     * The rows are inserted in to a shadow table while the XML response is parsed and replace the rows of the
+     * {@link DatabaseHelper#configParametersTable} Table in one transaction once the whole response has been read.
+     * If the pull fails the local tables are left unchanged. {@link #dataPullCompleted} is set to <code>true</code> when the rows have been replaced.
+     * If both Base Stations are set up, the Configuration Parameters of the tablet ({@link DatabaseHelper#tabletId},
+     * {@link DatabaseHelper#sync_server_hostname} and {@link DatabaseHelper#sync_server_port}) are kept unless they are pulled,
+     * otherwise the pulled parameters are only added to the local parameters.
+     * @param baseStations number of Base Stations in the {@link DatabaseHelper#baseStationTable}
+     * @param callback called once the pull has finished or failed
      */
-    public void onClickParameterPullButton(long baseStations){
-        dbHelper = DatabaseHelper.getDbInstance(mContext);
-        db = dbHelper.getReadableDatabase();
-        if(baseStations == 2) {
-            db.execSQL("Delete from " + DatabaseHelper.configParametersTable + " Where " + DatabaseHelper.parameterName + " NOT IN ('TABLET_ID', 'SYNC_SERVER_HOSTNAME', 'SYNC_SERVER_PORT')");
-        }
-        StringRequest pullRequest = new StringRequest(pullURL, new Response.Listener<String>() {
-            @Override
-            public void onResponse(String response) {
-                try {
-                    parser.setInput(new StringReader(response));
-                    int event = parser.getEventType();
-                    String tag = "";
-                    String value = "";
-                    while (event != XmlPullParser.END_DOCUMENT) {
-                        tag = parser.getName();
-                        switch (event) {
-                            case XmlPullParser.START_TAG:
-                                if (tag.equals(DatabaseHelper.configParametersTable)) {
-                                    configurationParameter = new ConfigurationParameter(mContext);
-                                    configParamArrayList.add(configurationParameter);
-                                }
-                                break;
-
-                            case XmlPullParser.TEXT:
-                                value = parser.getText();
-                                break;
-
-                            case XmlPullParser.END_TAG:
-
-                                switch (tag) {
-
-                                    case DatabaseHelper.parameterName:
-                                        configurationParameter.setParameterName(value);
-                                        break;
-
-                                    case DatabaseHelper.parameterValue:
-                                        configurationParameter.setParameterValue(value);
-                                        break;
-                                }
-                                break;
-                        }
-                        event = parser.next();
+    public void onClickParameterPullButton(long baseStations, final SyncCallback callback){
+        ShadowTablePull pullRequest = new ShadowTablePull(mContext, pullURL, DatabaseHelper.configParametersTable, PULLED_COLUMNS, DatabaseHelper.parameterName,
+                new Response.Listener<Integer>() {
+                    @Override
+                    public void onResponse(Integer rows) {
+                        dataPullCompleted = true;
+                        callback.onSyncFinished(true);
+                        Toast.makeText(mContext, "Data Pulled from Server", Toast.LENGTH_SHORT).show();
                     }
-                    for(ConfigurationParameter param : configParamArrayList){
-                        param.insertParameterInDB();
+                }, new Response.ErrorListener() {
+                    @Override
+                    public void onErrorResponse(VolleyError error) {
+                        Log.d(TAG, "Error Pulling Data: " + error.getCause());
+                        callback.onSyncFinished(false);
                     }
-                    dataPullCompleted = true;
-                    Toast.makeText(mContext, "Data Pulled from Server", Toast.LENGTH_SHORT).show();
-                } catch (XmlPullParserException e) {
-                    Log.d(TAG, "Error Parsing XML");
-                    e.printStackTrace();
-                } catch (IOException e) {
-                    Log.d(TAG, "IOException from Parser");
-                    e.printStackTrace();
-                }
-            }
-        }, new Response.ErrorListener() {
-            @Override
-            public void onErrorResponse(VolleyError error) {
-
-            }
-        });
-
+                });
+        if(baseStations == 2) {
+            pullRequest.setClearWhere(DatabaseHelper.parameterName + " NOT IN ('TABLET_ID', 'SYNC_SERVER_HOSTNAME', 'SYNC_SERVER_PORT')");
+        } else {
+            pullRequest.setClearWhere("0");
+        }
         requestQueue.add(pullRequest);
-
     }
 
     /**
@@ -268,10 +275,20 @@ public class ConfigurationParameterSync {
      */
     public void setBaseUrl(String baseUrl, String port){
         pushURL = "http://" + baseUrl + ":" + port + "/ConfigurationParameter/pullParameter.php";
+        batchURL = "http://" + baseUrl + ":" + port + "/ConfigurationParameter/pullParameterBatch.php";
         pullURL = "http://" + baseUrl + ":" + port + "/ConfigurationParameter/pushParameter.php";
 
     }
 
+    /**
+     * Sets the number of rows pushed to the Sync Server in one request
+     * @param rowsPerRequest rows per request of the batched push, or 0 to push every row with its own request
+     * @see de.awi.floenavigation.helperclasses.DatabaseHelper#sync_batch_size
+     */
+    public void setRowsPerRequest(int rowsPerRequest){
+        this.rowsPerRequest = rowsPerRequest;
+    }
+
     public boolean getDataCompleted(){
         return dataPullCompleted;
     }
@@ -13,7 +13,7 @@ import de.awi.floenavigation.helperclasses.DatabaseHelper;
  * Used by {@link SampleMeasurementSync} to create a new device list Object to be inserted into the Database.
  *
  * @see SyncActivity
- * @see SampleMeasurementSync#onClickDeviceListPullButton()
+ * @see SampleMeasurementSync#onClickDeviceListPullButton(SyncCallback)
  * @see de.awi.floenavigation.synchronization
  */
 public class DeviceList {
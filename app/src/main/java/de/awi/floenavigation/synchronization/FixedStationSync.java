@@ -18,13 +18,11 @@ import com.android.volley.toolbox.StringRequest;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.xmlpull.v1.XmlPullParser;
-import org.xmlpull.v1.XmlPullParserException;
 
-import java.io.IOException;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import de.awi.floenavigation.helperclasses.DatabaseHelper;
@@ -35,7 +33,7 @@ import de.awi.floenavigation.helperclasses.DatabaseHelper;
  * Creates {@link StringRequest}s and inserts it in to a {@link RequestQueue} to push and pull Data from the Server.
  * Clears the fixed station table before inserting Data that was pulled from the Server.
  * <p>
- * Uses {@link FixedStation} to create a new fixed station Object and insert into local Database, the parameters that is pulled from the Server.
+ * The pulled rows are inserted with a {@link ShadowTablePull}, which replaces the rows of the table only when the whole response has been read.
  *</p>
  * @see DatabaseHelper#fixedStationTable
  * @see SyncActivity
@@ -45,6 +43,17 @@ import de.awi.floenavigation.helperclasses.DatabaseHelper;
 public class FixedStationSync {
 
     private static final String TAG = "FixedStnSyncActivity";
+
+    /**
+     * Columns of the {@value DatabaseHelper#fixedStationTable} Table which are pulled from the Sync Server
+     */
+    private static final String[] PULLED_COLUMNS = {
+            DatabaseHelper.stationName, DatabaseHelper.latitude, DatabaseHelper.longitude, DatabaseHelper.recvdLatitude,
+            DatabaseHelper.recvdLongitude, DatabaseHelper.alpha, DatabaseHelper.distance, DatabaseHelper.xPosition,
+            DatabaseHelper.yPosition, DatabaseHelper.stationType, DatabaseHelper.updateTime, DatabaseHelper.sog, DatabaseHelper.cog,
+            DatabaseHelper.packetType, DatabaseHelper.isPredicted, DatabaseHelper.predictionAccuracy,
+            DatabaseHelper.isLocationReceived, DatabaseHelper.mmsi
+    };
     private Context mContext;
 
     //private static final String URL = "http://192.168.137.1:80/FixedStation/pullStations.php";
@@ -61,6 +70,33 @@ public class FixedStationSync {
      * @see #setBaseUrl(String, String)
      */
     private String pullURL;
+
+    /**
+     * URL for the batched push of the rows to the Sync Server
+     * @see #setBaseUrl(String, String)
+     */
+    private String batchURL = "";
+
+    /**
+     * Number of rows pushed to the Sync Server in one request. If it is 0 every row is pushed with its own request.
+     * @see #setRowsPerRequest(int)
+     */
+    private int rowsPerRequest = 0;
+
+    /**
+     * Version of the {@link DatabaseHelper#changeJournalTable} up to which the rows were pushed before this push
+     */
+    private long pushedVersion = 0;
+
+    /**
+     * Version of the {@link DatabaseHelper#changeJournalTable} of the rows read for this push
+     */
+    private long journalVersion = 0;
+
+    /**
+     * Advances the pushed version once every request of this push has been acknowledged
+     */
+    private PushTracker pushTracker;
     /**
      * URL to use for deleting mmsi's from the Server that are no longer used for grid calculation
      * @see #setBaseUrl(String, String)
@@ -94,17 +130,14 @@ public class FixedStationSync {
     private HashMap<Integer, Integer> mmsiData = new HashMap<>();
 
     /**
-     * Hashtables for storing different parameters of {@link DatabaseHelper#fixedStationDeletedTable}
+     * Keys of the rows deleted since the last acknowledged push, read from the {@link DatabaseHelper#changeJournalTable}
      */
-    private HashMap<Integer, Integer> deletedFixedStationData = new HashMap<>();
+    private List<String> deletedFixedStationData = new ArrayList<>();
     private Cursor fixedStationCursor = null;
-    private FixedStation fixedStation;
-    private ArrayList<FixedStation> fixedStationList = new ArrayList<>();
     private RequestQueue requestQueue;
     private XmlPullParser parser;
 
     //private int numOfDeleteRequests = 0;
-    private StringRequest pullRequest;
 
     /**
      * <code>true</code> if all fixed station parameters are pulled from the server and inserted into the local Database
@@ -121,18 +154,20 @@ public class FixedStationSync {
     /**
      * Reads the {@value DatabaseHelper#fixedStationTable} Table and inserts the data from all the Columns of the
      * {@value DatabaseHelper#fixedStationTable} Table in to their respective {@link HashMap}.
+     * Only the rows changed since the last push acknowledged by the Sync Server are read, see {@link ChangeJournal}.
+     * @param db connection of the snapshot the rows are read from, see {@link DatabaseHelper#openSnapshot(Context)}
      * @throws SQLiteException In case of error in reading database
      * @see #fixedStationCursor
      */
-    public void onClickFixedStationReadButton(){
+    public void onClickFixedStationReadButton(SQLiteDatabase db){
         try{
             int i = 0;
-            dbHelper = DatabaseHelper.getDbInstance(mContext);
-            db = dbHelper.getReadableDatabase();
+            pushedVersion = ChangeJournal.getPushedVersion(db, DatabaseHelper.fixedStationTable);
+            journalVersion = ChangeJournal.currentVersion(db, DatabaseHelper.fixedStationTable);
             fixedStationCursor = db.query(DatabaseHelper.fixedStationTable,
                     null,
-                    null,
-                    null,
+                    ChangeJournal.changedRowsSelection(DatabaseHelper.mmsi),
+                    ChangeJournal.changedRowsArgs(DatabaseHelper.fixedStationTable, pushedVersion),
                     null, null, null);
             if(fixedStationCursor.moveToFirst()){
                 do{
@@ -160,7 +195,6 @@ public class FixedStationSync {
                 }while (fixedStationCursor.moveToNext());
             }
             fixedStationCursor.close();
-            Toast.makeText(mContext, "Read Completed from DB", Toast.LENGTH_SHORT).show();
 
         } catch (SQLiteException e){
             Log.d(TAG, "Database Error");
@@ -183,222 +217,118 @@ public class FixedStationSync {
      * A Stringrequest {@link #request} for pushing the data is registered and added to the {@link #requestQueue}.
      * callback function {@link Response.Listener#onResponse(Object)} notifies whether the request was successful or not
      * If it is unsuccessful or the connection is not established {@link Response.Listener#error(VolleyError)} gets called
+     * If {@link #rowsPerRequest} is set, the rows are instead pushed in batches of that size by {@link BatchPush}.
+     * @param callback called once every request of the push has been answered
      */
-    public void onClickFixedStationSyncButton(){
-        for(int i = 0; i < mmsiData.size(); i++){
-            final int index = i;
-            request = new StringRequest(Request.Method.POST, URL, new Response.Listener<String>() {
+    public void onClickFixedStationSyncButton(SyncCallback callback){
+        pushTracker = new PushTracker(mContext, DatabaseHelper.fixedStationTable, journalVersion, callback);
+        if (rowsPerRequest > 0) {
+            List<Map<String, String>> rows = new ArrayList<>();
+            for (int i = 0; i < mmsiData.size(); i++) {
+                rows.add(getRowParams(i));
+            }
+            BatchPush.push(mContext, batchURL, DatabaseHelper.fixedStationTable, rows, rowsPerRequest, pushTracker);
+        } else {
+            for(int i = 0; i < mmsiData.size(); i++){
+                final int index = i;
+                request = new StringRequest(Request.Method.POST, URL, new Response.Listener<String>() {
+
+                    @Override
+                    public void onResponse(String response) {
+                        try {
+                            JSONObject jsonObject = new JSONObject(response);
+                            if (jsonObject.names().get(0).equals("success")) {
+                                //Toast.makeText(mContext, "SUCCESS " + jsonObject.getString("success"), Toast.LENGTH_SHORT).show();
+                                Log.d(TAG, "SUCCESS: " + jsonObject.getString("success"));
+                                pushTracker.requestDone(true);
+                            } else {
+                                Toast.makeText(mContext, "Error" + jsonObject.getString("error"), Toast.LENGTH_SHORT).show();
+                                Log.d(TAG, "Error: " + jsonObject.getString("error"));
+                                pushTracker.requestDone(false);
+                            }
 
-                @Override
-                public void onResponse(String response) {
-                    try {
-                        JSONObject jsonObject = new JSONObject(response);
-                        if (jsonObject.names().get(0).equals("success")) {
-                            //Toast.makeText(mContext, "SUCCESS " + jsonObject.getString("success"), Toast.LENGTH_SHORT).show();
-                            Log.d(TAG, "SUCCESS: " + jsonObject.getString("success"));
-                        } else {
-                            Toast.makeText(mContext, "Error" + jsonObject.getString("error"), Toast.LENGTH_SHORT).show();
-                            Log.d(TAG, "Error: " + jsonObject.getString("error"));
+
+                        } catch (JSONException e) {
+                            pushTracker.requestDone(false);
+                            e.printStackTrace();
                         }
 
 
-                    } catch (JSONException e) {
-                        e.printStackTrace();
                     }
+                }, new Response.ErrorListener() {
+                    @Override
+                    public void onErrorResponse(VolleyError error) {
+                        pushTracker.requestDone(false);
+                        Log.d(TAG, "Error : " + error.getCause());
+                    }
+                }){
+                    @Override
+                    protected Map<String, String> getParams() throws AuthFailureError {
+                        return getRowParams(index);
+                    }
+                };
+                pushTracker.requestAdded();
+                requestQueue.add(request);
 
-
-                }
-            }, new Response.ErrorListener() {
-                @Override
-                public void onErrorResponse(VolleyError error) {
-                    Log.d(TAG, "Error : " + error.getCause());
-                }
-            }){
-                @Override
-                protected Map<String, String> getParams() throws AuthFailureError {
-
-                    HashMap<String,String> hashMap = new HashMap<String, String>();
-                    hashMap.put(DatabaseHelper.stationName,(stationNameData.get(index) == null)? "" : stationNameData.get(index));
-                    hashMap.put(DatabaseHelper.latitude,(latitudeData.get(index) == null)? "" : latitudeData.get(index).toString());
-                    hashMap.put(DatabaseHelper.longitude,(longitudeData.get(index) == null)? "" : longitudeData.get(index).toString());
-                    hashMap.put(DatabaseHelper.recvdLatitude,(recvdLatitudeData.get(index) == null)? "" : recvdLatitudeData.get(index).toString());
-                    hashMap.put(DatabaseHelper.recvdLongitude,(recvdLongitudeData.get(index) == null)? "" : recvdLongitudeData.get(index).toString());
-                    hashMap.put(DatabaseHelper.alpha,(alphaData.get(index) == null)? "" : alphaData.get(index).toString());
-                    hashMap.put(DatabaseHelper.distance,(distanceData.get(index) == null)? "" : distanceData.get(index).toString());
-                    hashMap.put(DatabaseHelper.xPosition,(xPositionData.get(index) == null)? "" : xPositionData.get(index).toString());
-                    hashMap.put(DatabaseHelper.yPosition,(yPositionData.get(index) == null)? "" : yPositionData.get(index).toString());
-                    hashMap.put(DatabaseHelper.stationType,(stationTypeData.get(index) == null)? "" : stationTypeData.get(index));
-                    hashMap.put(DatabaseHelper.updateTime,(updateTimeData.get(index) == null)? "" : updateTimeData.get(index));
-                    hashMap.put(DatabaseHelper.sog,(sogData.get(index) == null)? "" : sogData.get(index).toString());
-                    hashMap.put(DatabaseHelper.cog,(cogData.get(index) == null)? "" : cogData.get(index).toString());
-                    hashMap.put(DatabaseHelper.packetType,(packetTypeData.get(index) == null)? "" : packetTypeData.get(index).toString());
-                    hashMap.put(DatabaseHelper.isPredicted,(isPredictedData.get(index) == null)? "" : isPredictedData.get(index).toString());
-                    hashMap.put(DatabaseHelper.predictionAccuracy,(predictionAccuracyData.get(index) == null)? "" : predictionAccuracyData.get(index).toString());
-                    hashMap.put(DatabaseHelper.isLocationReceived,(isLocationReceivedData.get(index) == null)? "" : isLocationReceivedData.get(index).toString());
-                    hashMap.put(DatabaseHelper.mmsi,(mmsiData.get(index) == null)? "" : mmsiData.get(index).toString());
-
-                    return hashMap;
-                }
-            };
-            requestQueue.add(request);
-
+            }
         }
         sendFSDeleteRequest();
+        pushTracker.allRequestsAdded();
+    }
 
+    /**
+     * Creates the parameters of one row of the {@value DatabaseHelper#fixedStationTable} Table which are pushed to the Sync Server
+     * @param index index of the row in the {@link HashMap}s
+     * @return the value of each column, empty if the value is missing
+     */
+    private Map<String, String> getRowParams(int index){
+        HashMap<String,String> hashMap = new HashMap<String, String>();
+        hashMap.put(DatabaseHelper.stationName,(stationNameData.get(index) == null)? "" : stationNameData.get(index));
+        hashMap.put(DatabaseHelper.latitude,(latitudeData.get(index) == null)? "" : latitudeData.get(index).toString());
+        hashMap.put(DatabaseHelper.longitude,(longitudeData.get(index) == null)? "" : longitudeData.get(index).toString());
+        hashMap.put(DatabaseHelper.recvdLatitude,(recvdLatitudeData.get(index) == null)? "" : recvdLatitudeData.get(index).toString());
+        hashMap.put(DatabaseHelper.recvdLongitude,(recvdLongitudeData.get(index) == null)? "" : recvdLongitudeData.get(index).toString());
+        hashMap.put(DatabaseHelper.alpha,(alphaData.get(index) == null)? "" : alphaData.get(index).toString());
+        hashMap.put(DatabaseHelper.distance,(distanceData.get(index) == null)? "" : distanceData.get(index).toString());
+        hashMap.put(DatabaseHelper.xPosition,(xPositionData.get(index) == null)? "" : xPositionData.get(index).toString());
+        hashMap.put(DatabaseHelper.yPosition,(yPositionData.get(index) == null)? "" : yPositionData.get(index).toString());
+        hashMap.put(DatabaseHelper.stationType,(stationTypeData.get(index) == null)? "" : stationTypeData.get(index));
+        hashMap.put(DatabaseHelper.updateTime,(updateTimeData.get(index) == null)? "" : updateTimeData.get(index));
+        hashMap.put(DatabaseHelper.sog,(sogData.get(index) == null)? "" : sogData.get(index).toString());
+        hashMap.put(DatabaseHelper.cog,(cogData.get(index) == null)? "" : cogData.get(index).toString());
+        hashMap.put(DatabaseHelper.packetType,(packetTypeData.get(index) == null)? "" : packetTypeData.get(index).toString());
+        hashMap.put(DatabaseHelper.isPredicted,(isPredictedData.get(index) == null)? "" : isPredictedData.get(index).toString());
+        hashMap.put(DatabaseHelper.predictionAccuracy,(predictionAccuracyData.get(index) == null)? "" : predictionAccuracyData.get(index).toString());
+        hashMap.put(DatabaseHelper.isLocationReceived,(isLocationReceivedData.get(index) == null)? "" : isLocationReceivedData.get(index).toString());
+        hashMap.put(DatabaseHelper.mmsi,(mmsiData.get(index) == null)? "" : mmsiData.get(index).toString());
+
+        return hashMap;
     }
 
     /**
-     * Function is used to pull data from internal database to the server
-     * A Stringrequest {@link #request} for pulling the data is registered and added to the {@link #requestQueue}.
-     * callback function {@link Response.Listener#onResponse(Object)} notifies whether the request was successful or not
-     * If it is unsuccessful or the connection is not established {@link Response.Listener#error(VolleyError)} gets called
-     * On pulling the data from the server internal database tables {@link DatabaseHelper#fixedStationTable} and
-     * {@link DatabaseHelper#fixedStationDeletedTable} are cleared.
-     *
-     * <p>
-     * The server sends the data in .xml format, therefore it has to extract the data based on the tags
-     * Inside {@link Response.Listener#onResponse(Object)} it loops through the entire xml file till it reaches the end of document.
-     * Based on the {@link XmlPullParser#START_TAG}, {@link XmlPullParser#TEXT}, {@link XmlPullParser#END_TAG} it adds the values received to
-     * the corresponding columns of the {@link DatabaseHelper#fixedStationTable}
-     * Each {@link #fixedStation} is added to the {@link #fixedStationList} which is individually taken and added to the internal database.
-     * </p>
+     * Pulls the {@value DatabaseHelper#fixedStationTable} Table from the Sync Server with a {@link ShadowTablePull}.
+     * The rows are inserted in to a shadow table while the XML response is parsed and replace the rows of the
+     * {@link DatabaseHelper#fixedStationTable} Table in one transaction once the whole response has been read. If the Sync Server answers with the changes since the version last pulled, only the changed rows are replaced and the deleted rows removed.
+     * If the pull fails the local tables are left unchanged. {@link #dataPullCompleted} is set to <code>true</code> when the rows have been replaced.
+     * @param callback called once the pull has finished or failed
      */
-    public void onClickFixedStationPullButton(){
-        try {
-            dbHelper = DatabaseHelper.getDbInstance(mContext);
-            db = dbHelper.getReadableDatabase();
-            db.execSQL("Delete from " + DatabaseHelper.fixedStationTable);
-            db.execSQL("Delete from " + DatabaseHelper.fixedStationDeletedTable);
-            pullRequest = new StringRequest(pullURL, new Response.Listener<String>() {
-                @Override
-                public void onResponse(String response) {
-                    try {
-                        parser.setInput(new StringReader(response));
-                        int event = parser.getEventType();
-                        String tag = "";
-                        String value = "";
-                        while (event != XmlPullParser.END_DOCUMENT) {
-                            tag = parser.getName();
-                            switch (event) {
-                                case XmlPullParser.START_TAG:
-                                    if (tag.equals(DatabaseHelper.fixedStationTable)) {
-                                        fixedStation = new FixedStation(mContext);
-                                        fixedStationList.add(fixedStation);
-                                    }
-                                    break;
-
-                                case XmlPullParser.TEXT:
-                                    value = parser.getText();
-                                    break;
-
-                                case XmlPullParser.END_TAG:
-
-                                    switch (tag) {
-
-                                        case DatabaseHelper.stationName:
-                                            fixedStation.setStationName(value);
-                                            break;
-
-                                        case DatabaseHelper.latitude:
-                                            fixedStation.setLatitude(Double.valueOf(value));
-                                            break;
-
-                                        case DatabaseHelper.longitude:
-                                            fixedStation.setLongitude(Double.valueOf(value));
-                                            break;
-
-                                        case DatabaseHelper.recvdLatitude:
-                                            fixedStation.setRecvdLatitude(Double.valueOf(value));
-                                            break;
-
-                                        case DatabaseHelper.recvdLongitude:
-                                            fixedStation.setRecvdLongitude(Double.valueOf(value));
-                                            break;
-
-                                        case DatabaseHelper.alpha:
-                                            fixedStation.setAlpha(Double.valueOf(value));
-                                            break;
-
-                                        case DatabaseHelper.distance:
-                                            fixedStation.setDistance(Double.valueOf(value));
-                                            break;
-
-                                        case DatabaseHelper.xPosition:
-                                            fixedStation.setxPosition(Double.valueOf(value));
-                                            break;
-
-                                        case DatabaseHelper.yPosition:
-                                            fixedStation.setyPosition(Double.valueOf(value));
-                                            break;
-
-                                        case DatabaseHelper.stationType:
-                                            fixedStation.setStationType(value);
-                                            break;
-
-                                        case DatabaseHelper.updateTime:
-                                            fixedStation.setUpdateTime(value);
-                                            break;
-
-                                        case DatabaseHelper.sog:
-                                            fixedStation.setSog(Double.valueOf(value));
-                                            break;
-
-                                        case DatabaseHelper.cog:
-                                            fixedStation.setCog(Double.valueOf(value));
-                                            break;
-
-                                        case DatabaseHelper.packetType:
-                                            fixedStation.setPacketType(Integer.parseInt(value));
-                                            break;
-
-                                        case DatabaseHelper.isPredicted:
-                                            fixedStation.setIsPredicted(Integer.parseInt(value));
-                                            break;
-
-                                        case DatabaseHelper.predictionAccuracy:
-                                            fixedStation.setPredictionAccuracy(Integer.parseInt(value));
-                                            break;
-
-                                        case DatabaseHelper.isLocationReceived:
-                                            fixedStation.setIsLocationReceived(Integer.parseInt(value));
-                                            break;
-
-                                        case DatabaseHelper.mmsi:
-                                            fixedStation.setMmsi(Integer.parseInt(value));
-                                            break;
-
-
-                                    }
-                                    break;
-                            }
-                            event = parser.next();
-                        }
-                        for (FixedStation currentStn : fixedStationList) {
-                            currentStn.insertFixedStationInDB();
-                        }
+    public void onClickFixedStationPullButton(final SyncCallback callback){
+        ShadowTablePull pullRequest = new ShadowTablePull(mContext, pullURL, DatabaseHelper.fixedStationTable, PULLED_COLUMNS, DatabaseHelper.mmsi,
+                new Response.Listener<Integer>() {
+                    @Override
+                    public void onResponse(Integer rows) {
                         dataPullCompleted = true;
+                        callback.onSyncFinished(true);
                         Toast.makeText(mContext, "Data Pulled from Server", Toast.LENGTH_SHORT).show();
-                    } catch (XmlPullParserException e) {
-                        Log.d(TAG, "Error Parsing XML");
-                        e.printStackTrace();
-                    } catch (IOException e) {
-                        Log.d(TAG, "IOException from Parser");
-                        e.printStackTrace();
                     }
-                }
-            }, new Response.ErrorListener() {
-                @Override
-                public void onErrorResponse(VolleyError error) {
-
-                }
-            });
-            requestQueue.add(pullRequest);
-
-        } catch (SQLException e){
-            Log.d(TAG, "Database Error");
-            e.printStackTrace();
-        }
-
+                }, new Response.ErrorListener() {
+                    @Override
+                    public void onErrorResponse(VolleyError error) {
+                        Log.d(TAG, "Error Pulling Data: " + error.getCause());
+                        callback.onSyncFinished(false);
+                    }
+                });
+        requestQueue.add(pullRequest);
     }
 
     public boolean getDataCompleted(){
@@ -412,51 +342,37 @@ public class FixedStationSync {
      */
     public void setBaseUrl(String baseUrl, String port){
         URL = "http://" + baseUrl + ":" + port + "/FixedStation/pullStations.php";
+        batchURL = "http://" + baseUrl + ":" + port + "/FixedStation/pullStationsBatch.php";
         pullURL = "http://" + baseUrl + ":" + port + "/FixedStation/pushStations.php";
         deleteURL = "http://" + baseUrl + ":" + port + "/FixedStation/deleteStations.php";
 
     }
 
     /**
-     * Reads the {@value DatabaseHelper#fixedStationDeletedTable} Table and inserts the data from all the Columns of the
-     * {@value DatabaseHelper#fixedStationDeletedTable} Table in to their respective {@link HashMap}.
-     * @throws SQLiteException In case of error in reading database
-     * After reading the data, it creates string requests to forward the data to the server
-     * This facilitates the server to know which mmsi's should be marked for deletion since these stations are no longer used in caluculation of the grid.
+     * Sets the number of rows pushed to the Sync Server in one request
+     * @param rowsPerRequest rows per request of the batched push, or 0 to push every row with its own request
+     * @see de.awi.floenavigation.helperclasses.DatabaseHelper#sync_batch_size
+     */
+    public void setRowsPerRequest(int rowsPerRequest){
+        this.rowsPerRequest = rowsPerRequest;
+    }
+
+    /**
+     * Reads the keys of the rows of the {@value DatabaseHelper#fixedStationTable} Table which have been deleted since the last
+     * acknowledged push from the {@link DatabaseHelper#changeJournalTable} and creates a request for each of them, so that the
+     * Sync Server deletes the same rows and removes them from the other tablets.
      */
     private void sendFSDeleteRequest(){
-        Cursor deletedFixedStationCursor = null;
         try{
             dbHelper = DatabaseHelper.getDbInstance(mContext);
             db = dbHelper.getReadableDatabase();
-            deletedFixedStationCursor = db.query(DatabaseHelper.fixedStationDeletedTable,
-                    null,
-                    null,
-                    null,
-                    null, null, null);
-            int i = 0;
-            if(deletedFixedStationCursor.moveToFirst()){
-                do{
-                    deletedFixedStationData.put(i, deletedFixedStationCursor.getInt(deletedFixedStationCursor.getColumnIndexOrThrow(DatabaseHelper.mmsi)));
-                    Log.d(TAG, "MMSI to be Deleted: " + deletedFixedStationCursor.getInt(deletedFixedStationCursor.getColumnIndexOrThrow(DatabaseHelper.mmsi)));
-                    i++;
-
-                }while (deletedFixedStationCursor.moveToNext());
+            deletedFixedStationData = ChangeJournal.deletedKeys(db, DatabaseHelper.fixedStationTable, pushedVersion);
+            for (String deletedKey : deletedFixedStationData) {
+                Log.d(TAG, "MMSI to be Deleted: " + deletedKey);
             }
-            deletedFixedStationCursor.close();
-            /*
-            if(deletedFixedStationData.size() == 0){
-                requestQueue.add(pullRequest);
-            } else{
-                numOfDeleteRequests = deletedFixedStationData.size();
-            }*/
         } catch (SQLException e){
             Log.d(TAG, "Database Error");
             e.printStackTrace();
-        }finally {
-            if (deletedFixedStationCursor != null){
-                deletedFixedStationCursor.close();
-            }
         }
 
         for(int j = 0; j < deletedFixedStationData.size(); j++) {
@@ -471,12 +387,15 @@ public class FixedStationSync {
                         if (jsonObject.names().get(0).equals("success")) {
                             //Toast.makeText(mContext, "SUCCESS " + jsonObject.getString("success"), Toast.LENGTH_SHORT).show();
                             Log.d(TAG, "SUCCESS: " + jsonObject.getString("success"));
+                            pushTracker.requestDone(true);
                         } else {
                             Toast.makeText(mContext, "Error" + jsonObject.getString("error"), Toast.LENGTH_SHORT).show();
                             Log.d(TAG, "Error: " + jsonObject.getString("error"));
+                            pushTracker.requestDone(false);
                         }
 
                     } catch (JSONException e) {
+                        pushTracker.requestDone(false);
                         e.printStackTrace();
                     }
                     /*
@@ -489,6 +408,7 @@ public class FixedStationSync {
             }, new Response.ErrorListener() {
                 @Override
                 public void onErrorResponse(VolleyError error) {
+                    pushTracker.requestDone(false);
 
                 }
             }) {
@@ -501,6 +421,7 @@ public class FixedStationSync {
                     return hashMap;
                 }
             };
+            pushTracker.requestAdded();
             requestQueue.add(request);
         }
     }
@@ -0,0 +1,145 @@
+package de.awi.floenavigation.synchronization;
+
+import android.content.Context;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import de.awi.floenavigation.helperclasses.DatabaseHelper;
+
+/**
+ * Counts the requests of the push of one table and advances the pushed version of the table in the
+ * {@link DatabaseHelper#syncStateTable} once every request has been acknowledged by the Sync Server, deleting the acknowledged
+ * entries from the {@link DatabaseHelper#changeJournalTable}.
+ * <p>
+ *     The Sync Classes call {@link #requestAdded()} for every request added to the {@link com.android.volley.RequestQueue},
+ *     {@link #requestDone(boolean)} from its listeners and {@link #allRequestsAdded()} when the push has been queued. Volley delivers
+ *     the responses on the UI thread on which the requests are added, and the {@link SyncOutbox} tells the tracker about the batches
+ *     on the UI thread too, so no locking is needed. If any request fails the version is
+ *     kept and the next push sends the same changes again, which the Sync Server applies as inserts or updates of the same rows.
+ * </p>
+ * <p>
+ *     Once every request has been answered the {@link SyncCallback} of the push is called, also for the tables which are not in the
+ *     journal and whose tracker is only used to learn the end of the push.
+ * </p>
+ */
+final class PushTracker {
+
+    /**
+     * String for logging purpose
+     */
+    private static final String TAG = "PushTracker";
+
+    /**
+     * Context used to open the database
+     */
+    private final Context context;
+    /**
+     * Name of the pushed table, <code>null</code> if the table has no version in the {@link DatabaseHelper#changeJournalTable}
+     */
+    private final String table;
+    /**
+     * Version of the {@link DatabaseHelper#changeJournalTable} up to which the changes are pushed
+     */
+    private final long version;
+    /**
+     * Called when every request of the push has been answered, may be <code>null</code>
+     */
+    private final SyncCallback callback;
+    /**
+     * Number of requests added which have not been answered yet
+     */
+    private int pendingRequests = 0;
+    /**
+     * <code>true</code> if any request has failed
+     */
+    private boolean failed = false;
+    /**
+     * <code>true</code> once every request of the push has been added
+     */
+    private boolean complete = false;
+
+    /**
+     * @param context context used to open the database
+     * @param table name of the pushed table, <code>null</code> if the table has no version in the {@link DatabaseHelper#changeJournalTable}
+     * @param version version of the {@link DatabaseHelper#changeJournalTable} up to which the changes are pushed
+     * @param callback called when every request of the push has been answered, may be <code>null</code>
+     */
+    PushTracker(Context context, String table, long version, SyncCallback callback){
+        this.context = context.getApplicationContext();
+        this.table = table;
+        this.version = version;
+        this.callback = callback;
+    }
+
+    /**
+     * @return the name of the pushed table, <code>null</code> if the table has no version in the {@link DatabaseHelper#changeJournalTable}
+     */
+    String getTable(){
+        return table;
+    }
+
+    /**
+     * @return the version of the {@link DatabaseHelper#changeJournalTable} up to which the changes are pushed
+     */
+    long getVersion(){
+        return version;
+    }
+
+    /**
+     * Called for every request of the push added to the queue
+     */
+    void requestAdded(){
+        pendingRequests++;
+    }
+
+    /**
+     * Called once for every request of the push when it is answered
+     * @param success <code>true</code> if the Sync Server has acknowledged every row of the request
+     */
+    void requestDone(boolean success){
+        pendingRequests--;
+        if (!success) {
+            failed = true;
+        }
+        storeIfDone();
+    }
+
+    /**
+     * Called when every request of the push has been added
+     */
+    void allRequestsAdded(){
+        complete = true;
+        storeIfDone();
+    }
+
+    private void storeIfDone(){
+        if (!complete || pendingRequests > 0) {
+            return;
+        }
+        if (table != null) {
+            storeVersion();
+        }
+        if (callback != null) {
+            callback.onSyncFinished(!failed);
+        }
+    }
+
+    private void storeVersion(){
+        if (failed) {
+            Log.d(TAG, table + ": push failed, changes after version " + version + " are pushed again");
+            return;
+        }
+        try {
+            SQLiteDatabase db = DatabaseHelper.getDbInstance(context).getWritableDatabase();
+            if (ChangeJournal.getPushedVersion(db, table) < version) {
+                ChangeJournal.setPushedVersion(db, table, version);
+            }
+            int pruned = ChangeJournal.prune(db, table, ChangeJournal.getPushedVersion(db, table));
+            Log.d(TAG, table + ": pushed up to version " + version + ", " + pruned + " journal entries deleted");
+        } catch (SQLException e) {
+            Log.d(TAG, "Database Error");
+            e.printStackTrace();
+        }
+    }
+}
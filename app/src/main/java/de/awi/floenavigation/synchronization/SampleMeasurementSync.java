@@ -17,13 +17,11 @@ import com.android.volley.toolbox.StringRequest;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.xmlpull.v1.XmlPullParser;
-import org.xmlpull.v1.XmlPullParserException;
 
-import java.io.IOException;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import de.awi.floenavigation.helperclasses.DatabaseHelper;
@@ -36,7 +34,7 @@ import de.awi.floenavigation.helperclasses.DatabaseHelper;
  * <p>
  * During the pull operation the implementation is such that it clears the sample and measurement table and pulls only the device list which is
  * required for taking sample and measurement readings.
- * Uses {@link DeviceList} to create a new Object and insert into local Database, the parameters that is pulled from the Server.
+ * The pulled rows are inserted with a {@link ShadowTablePull}, which replaces the rows of the table only when the whole response has been read.
  *</p>
  * @see DatabaseHelper#sampleMeasurementTable
  * @see SyncActivity
@@ -45,6 +43,13 @@ import de.awi.floenavigation.helperclasses.DatabaseHelper;
  */
 public class SampleMeasurementSync {
     private static final String TAG = "ConfigurationParamSync";
+
+    /**
+     * Columns of the {@value DatabaseHelper#deviceListTable} Table which are pulled from the Sync Server
+     */
+    private static final String[] PULLED_COLUMNS = {
+            DatabaseHelper.deviceID, DatabaseHelper.deviceName, DatabaseHelper.deviceShortName, DatabaseHelper.deviceType
+    };
     private Context mContext;
 
     /**
@@ -58,6 +63,18 @@ public class SampleMeasurementSync {
      */
     private String pullDeviceListURL = "";
 
+    /**
+     * URL for the batched push of the rows to the Sync Server
+     * @see #setBaseUrl(String, String)
+     */
+    private String batchURL = "";
+
+    /**
+     * Number of rows pushed to the Sync Server in one request. If it is 0 every row is pushed with its own request.
+     * @see #setRowsPerRequest(int)
+     */
+    private int rowsPerRequest = 0;
+
 
     private SQLiteDatabase db;
     private DatabaseHelper dbHelper;
@@ -82,9 +99,7 @@ public class SampleMeasurementSync {
 
     private Cursor sampleCursor = null;
     private SampleMeasurement sampleMeasurement;
-    private DeviceList deviceList;
     private ArrayList<SampleMeasurement> sampleArrayList = new ArrayList<>();
-    private ArrayList<DeviceList> devicesArrayList = new ArrayList<>();
     private RequestQueue requestQueue;
     private XmlPullParser parser;
 
@@ -104,17 +119,17 @@ public class SampleMeasurementSync {
     /**
      * Reads the {@value DatabaseHelper#sampleMeasurementTable} Table and inserts the data from all the Columns of the
      * {@value DatabaseHelper#sampleMeasurementTable} Table in to their respective {@link HashMap}.
+     * @param db connection of the snapshot the rows are read from, see {@link DatabaseHelper#openSnapshot(Context)}
      * @throws SQLiteException In case of error in reading database
      * @see #sampleCursor
      */
-    public void onClickSampleReadButton(){
+    public void onClickSampleReadButton(SQLiteDatabase db){
         try{
             int i = 0;
-            dbHelper = DatabaseHelper.getDbInstance(mContext);
-            db = dbHelper.getReadableDatabase();
+            //Samples received from other tablets are pushed by the tablet which took them
             sampleCursor = db.query(DatabaseHelper.sampleMeasurementTable,
                     null,
-                    null,
+                    DatabaseHelper.gossipOrigin + " IS NULL",
                     null,
                     null, null, null);
             if(sampleCursor.moveToFirst()){
@@ -138,7 +153,6 @@ public class SampleMeasurementSync {
                 }while (sampleCursor.moveToNext());
             }
             sampleCursor.close();
-            Toast.makeText(mContext, "Read Completed from DB", Toast.LENGTH_SHORT).show();
         } catch (SQLiteException e){
             Log.d(TAG, "Database Error");
             e.printStackTrace();
@@ -154,62 +168,86 @@ public class SampleMeasurementSync {
      * A Stringrequest {@link #request} for pushing the data is registered and added to the {@link #requestQueue}.
      * callback function {@link Response.Listener#onResponse(Object)} notifies whether the request was successful or not
      * If it is unsuccessful or the connection is not established {@link Response.Listener#error(VolleyError)} gets called
+     * If {@link #rowsPerRequest} is set, the rows are instead pushed in batches of that size by {@link BatchPush}.
+     * @param callback called once every request of the push has been answered
      */
-    public void onClickSampleSyncButton() {
-        for (int i = 0; i < labelIDData.size(); i++) {
-            final int index = i;
-            request = new StringRequest(Request.Method.POST, pushURL, new Response.Listener<String>() {
-
-                @Override
-                public void onResponse(String response) {
-                    try {
-                        JSONObject jsonObject = new JSONObject(response);
-                        //Log.d(TAG, "on receive");
-                        if (jsonObject.names().get(0).equals("success")) {
-                            //Toast.makeText(mContext, "SUCCESS " + jsonObject.getString("success"), Toast.LENGTH_SHORT).show();
-                            Log.d(TAG, "SUCCESS: " + jsonObject.getString("success"));
-                        } else {
-                            Toast.makeText(mContext, "Error" + jsonObject.getString("error"), Toast.LENGTH_SHORT).show();
-                            Log.d(TAG, "Error: " + jsonObject.getString("error"));
+    public void onClickSampleSyncButton(SyncCallback callback) {
+        final PushTracker pushTracker = new PushTracker(mContext, null, 0, callback);
+        if (rowsPerRequest > 0) {
+            List<Map<String, String>> rows = new ArrayList<>();
+            for (int i = 0; i < labelIDData.size(); i++) {
+                rows.add(getRowParams(i));
+            }
+            BatchPush.push(mContext, batchURL, DatabaseHelper.sampleMeasurementTable, rows, rowsPerRequest, pushTracker);
+        } else {
+            for (int i = 0; i < labelIDData.size(); i++) {
+                final int index = i;
+                request = new StringRequest(Request.Method.POST, pushURL, new Response.Listener<String>() {
+
+                    @Override
+                    public void onResponse(String response) {
+                        try {
+                            JSONObject jsonObject = new JSONObject(response);
+                            //Log.d(TAG, "on receive");
+                            if (jsonObject.names().get(0).equals("success")) {
+                                //Toast.makeText(mContext, "SUCCESS " + jsonObject.getString("success"), Toast.LENGTH_SHORT).show();
+                                Log.d(TAG, "SUCCESS: " + jsonObject.getString("success"));
+                                pushTracker.requestDone(true);
+                            } else {
+                                Toast.makeText(mContext, "Error" + jsonObject.getString("error"), Toast.LENGTH_SHORT).show();
+                                Log.d(TAG, "Error: " + jsonObject.getString("error"));
+                                pushTracker.requestDone(false);
+                            }
+
+
+                        } catch (JSONException e) {
+                            pushTracker.requestDone(false);
+                            e.printStackTrace();
                         }
 
 
-                    } catch (JSONException e) {
-                        e.printStackTrace();
                     }
+                }, new Response.ErrorListener() {
+                    @Override
+                    public void onErrorResponse(VolleyError error) {
+                        pushTracker.requestDone(false);
+                    }
+                }) {
+                    @Override
+                    protected Map<String, String> getParams() throws AuthFailureError {
+                        return getRowParams(index);
+                    }
+                };
+                pushTracker.requestAdded();
+                requestQueue.add(request);
 
-
-                }
-            }, new Response.ErrorListener() {
-                @Override
-                public void onErrorResponse(VolleyError error) {
-
-                }
-            }) {
-                @Override
-                protected Map<String, String> getParams() throws AuthFailureError {
-
-                    HashMap<String, String> hashMap = new HashMap<String, String>();
-                    hashMap.put(DatabaseHelper.deviceID, (deviceIDData.get(index) == null) ? "" : deviceIDData.get(index));
-                    hashMap.put(DatabaseHelper.deviceName, (deviceNameData.get(index) == null) ? "" : deviceNameData.get(index));
-                    hashMap.put(DatabaseHelper.deviceShortName, (deviceShortNameData.get(index) == null) ? "" : deviceShortNameData.get(index));
-                    //hashMap.put(DatabaseHelper.operation, (operationData.get(index) == null) ? "" : operationData.get(index));
-                    hashMap.put(DatabaseHelper.deviceType, (deviceTypeData.get(index) == null) ? "" : deviceTypeData.get(index));
-                    hashMap.put(DatabaseHelper.latitude, (latitudeData.get(index) == null) ? "" : latitudeData.get(index).toString());
-                    hashMap.put(DatabaseHelper.longitude, (longitudeData.get(index) == null) ? "" : longitudeData.get(index).toString());
-                    hashMap.put(DatabaseHelper.xPosition, (xPositionData.get(index) == null) ? "" : xPositionData.get(index).toString());
-                    hashMap.put(DatabaseHelper.yPosition, (yPositionData.get(index) == null) ? "" : yPositionData.get(index).toString());
-                    hashMap.put(DatabaseHelper.updateTime, (updateTimeData.get(index) == null) ? "" : updateTimeData.get(index));
-                    hashMap.put(DatabaseHelper.labelID, (labelIDData.get(index) == null) ? "" : labelIDData.get(index));
-                    hashMap.put(DatabaseHelper.comment, (commentData.get(index) == null) ? "" : commentData.get(index));
-                    hashMap.put(DatabaseHelper.label, (labelData.get(index) == null) ? "" : labelData.get(index));
-
-                    return hashMap;
-                }
-            };
-            requestQueue.add(request);
-
+            }
         }
+        pushTracker.allRequestsAdded();
+    }
+
+    /**
+     * Creates the parameters of one row of the {@value DatabaseHelper#sampleMeasurementTable} Table which are pushed to the Sync Server
+     * @param index index of the row in the {@link HashMap}s
+     * @return the value of each column, empty if the value is missing
+     */
+    private Map<String, String> getRowParams(int index){
+        HashMap<String, String> hashMap = new HashMap<String, String>();
+        hashMap.put(DatabaseHelper.deviceID, (deviceIDData.get(index) == null) ? "" : deviceIDData.get(index));
+        hashMap.put(DatabaseHelper.deviceName, (deviceNameData.get(index) == null) ? "" : deviceNameData.get(index));
+        hashMap.put(DatabaseHelper.deviceShortName, (deviceShortNameData.get(index) == null) ? "" : deviceShortNameData.get(index));
+        //hashMap.put(DatabaseHelper.operation, (operationData.get(index) == null) ? "" : operationData.get(index));
+        hashMap.put(DatabaseHelper.deviceType, (deviceTypeData.get(index) == null) ? "" : deviceTypeData.get(index));
+        hashMap.put(DatabaseHelper.latitude, (latitudeData.get(index) == null) ? "" : latitudeData.get(index).toString());
+        hashMap.put(DatabaseHelper.longitude, (longitudeData.get(index) == null) ? "" : longitudeData.get(index).toString());
+        hashMap.put(DatabaseHelper.xPosition, (xPositionData.get(index) == null) ? "" : xPositionData.get(index).toString());
+        hashMap.put(DatabaseHelper.yPosition, (yPositionData.get(index) == null) ? "" : yPositionData.get(index).toString());
+        hashMap.put(DatabaseHelper.updateTime, (updateTimeData.get(index) == null) ? "" : updateTimeData.get(index));
+        hashMap.put(DatabaseHelper.labelID, (labelIDData.get(index) == null) ? "" : labelIDData.get(index));
+        hashMap.put(DatabaseHelper.comment, (commentData.get(index) == null) ? "" : commentData.get(index));
+        hashMap.put(DatabaseHelper.label, (labelData.get(index) == null) ? "" : labelData.get(index));
+
+        return hashMap;
     }
 
     private String formatUpdateTime(double updateTime) {
@@ -218,96 +256,33 @@ public class SampleMeasurementSync {
     }
 
     /**
-     * Function is used to pull data from internal database to the server
-     * A Stringrequest {@link #request} for pulling the data is registered and added to the {@link #requestQueue}.
-     * callback function {@link Response.Listener#onResponse(Object)} notifies whether the request was successful or not
-     * If it is unsuccessful or the connection is not established {@link Response.Listener#error(VolleyError)} gets called
-     * On pulling the data from the server internal database tables {@link DatabaseHelper#deviceListTable} are cleared.
-     *
-     * <p>
-     * The server sends the data in .xml format, therefore it has to extract the data based on the tags
-     * Inside {@link Response.Listener#onResponse(Object)} it loops through the entire xml file till it reaches the end of document.
-     * Based on the {@link XmlPullParser#START_TAG}, {@link XmlPullParser#TEXT}, {@link XmlPullParser#END_TAG} it adds the values received to
-     * the corresponding columns of the {@link DatabaseHelper#deviceListTable}
-     * Each {@link #deviceList} is added to the {@link #devicesArrayList} which is individually taken and added to the internal database.
-     * </p>
+     * Pulls the {@value DatabaseHelper#deviceListTable} Table from the Sync Server with a {@link ShadowTablePull}.
+     * The rows are inserted in to a shadow table while the XML response is parsed and replace the rows of the
+     * {@link DatabaseHelper#deviceListTable} Table in one transaction once the whole response has been read. The {@link DatabaseHelper#sampleMeasurementTable} Table is cleared in the same transaction.
+     * If the pull fails the local tables are left unchanged. As the Samples are cleared, the Device List must only be pulled once they
+     * have been pushed. {@link #dataPullCompleted} is set to <code>true</code> when the rows have been replaced.
+     * @param callback called once the pull has finished or failed
      */
-    public void onClickDeviceListPullButton(){
-        dbHelper = DatabaseHelper.getDbInstance(mContext);
-        db = dbHelper.getReadableDatabase();
-        db.execSQL("Delete from " + DatabaseHelper.deviceListTable);
-        db.execSQL("Delete from " + DatabaseHelper.sampleMeasurementTable);
-        //Counter reinitialized
-        DatabaseHelper.SAMPLE_ID_COUNTER = 1;
-        StringRequest pullRequest = new StringRequest(pullDeviceListURL, new Response.Listener<String>() {
-            @Override
-            public void onResponse(String response) {
-                try {
-                    parser.setInput(new StringReader(response));
-                    int event = parser.getEventType();
-                    String tag = "";
-                    String value = "";
-                    while (event != XmlPullParser.END_DOCUMENT) {
-                        tag = parser.getName();
-                        switch (event) {
-                            case XmlPullParser.START_TAG:
-                                if (tag.equals(DatabaseHelper.deviceListTable)) {
-                                    deviceList = new DeviceList(mContext);
-                                    devicesArrayList.add(deviceList);
-                                }
-                                break;
-
-                            case XmlPullParser.TEXT:
-                                value = parser.getText();
-                                break;
-
-                            case XmlPullParser.END_TAG:
-
-                                switch (tag) {
-
-                                    case DatabaseHelper.deviceID:
-                                        deviceList.setDeviceID(value);
-                                        break;
-
-                                    case DatabaseHelper.deviceName:
-                                        deviceList.setDeviceName(value);
-                                        break;
-
-                                    case DatabaseHelper.deviceShortName:
-                                        deviceList.setDeviceShortName(value);
-                                        break;
-
-                                    case DatabaseHelper.deviceType:
-                                        deviceList.setDeviceType(value);
-                                        break;
-
-                                }
-                                break;
-                        }
-                        event = parser.next();
+    public void onClickDeviceListPullButton(final SyncCallback callback){
+        ShadowTablePull pullRequest = new ShadowTablePull(mContext, pullDeviceListURL, DatabaseHelper.deviceListTable, PULLED_COLUMNS, null,
+                new Response.Listener<Integer>() {
+                    @Override
+                    public void onResponse(Integer rows) {
+                        dataPullCompleted = true;
+                        callback.onSyncFinished(true);
+                        //Counter reinitialized
+                        DatabaseHelper.SAMPLE_ID_COUNTER = 1;
+                        Toast.makeText(mContext, "Data Pulled from Server", Toast.LENGTH_SHORT).show();
                     }
-                    for(DeviceList deviceList : devicesArrayList){
-                        deviceList.insertDeviceListInDB();
+                }, new Response.ErrorListener() {
+                    @Override
+                    public void onErrorResponse(VolleyError error) {
+                        Log.d(TAG, "Error Pulling Data: " + error.getCause());
+                        callback.onSyncFinished(false);
                     }
-                    dataPullCompleted = true;
-                    Toast.makeText(mContext, "Data Pulled from Server", Toast.LENGTH_SHORT).show();
-                } catch (XmlPullParserException e) {
-                    Log.d(TAG, "Error Parsing XML");
-                    e.printStackTrace();
-                } catch (IOException e) {
-                    Log.d(TAG, "IOException from Parser");
-                    e.printStackTrace();
-                }
-            }
-        }, new Response.ErrorListener() {
-            @Override
-            public void onErrorResponse(VolleyError error) {
-
-            }
-        });
-
+                });
+        pullRequest.setClearedTables(DatabaseHelper.sampleMeasurementTable);
         requestQueue.add(pullRequest);
-
     }
 
     public boolean getDataCompleted(){
@@ -321,9 +296,19 @@ public class SampleMeasurementSync {
      */
     public void setBaseUrl(String baseUrl, String port){
         pushURL = "http://" + baseUrl + ":" + port + "/SampleMeasurement/pullSamples.php";
+        batchURL = "http://" + baseUrl + ":" + port + "/SampleMeasurement/pullSamplesBatch.php";
         pullDeviceListURL = "http://" + baseUrl + ":" + port + "/SampleMeasurement/pushDevices.php";
 
     }
+
+    /**
+     * Sets the number of rows pushed to the Sync Server in one request
+     * @param rowsPerRequest rows per request of the batched push, or 0 to push every row with its own request
+     * @see de.awi.floenavigation.helperclasses.DatabaseHelper#sync_batch_size
+     */
+    public void setRowsPerRequest(int rowsPerRequest){
+        this.rowsPerRequest = rowsPerRequest;
+    }
 }
 
 
@@ -0,0 +1,487 @@
+package de.awi.floenavigation.synchronization;
+
+import android.content.Context;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+import android.util.Xml;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.toolbox.HttpHeaderParser;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.awi.floenavigation.helperclasses.DatabaseHelper;
+
+/**
+ * Pull of one database table from the Sync Server, which replaces the rows of the table only once the whole response has been read.
+ * <p>
+ *     The XML response is parsed on the network thread of the {@link com.android.volley.RequestQueue}, straight from the bytes
+ *     received, into the values of the pulled columns. Only then a transaction is started, in which every row is inserted with a
+ *     compiled statement into a temporary shadow table with the columns of the pulled table, the rows of the table are deleted and
+ *     the rows of the shadow table are copied in. The background Services keep running during the Synchronization and only wait for
+ *     this short transaction, not for the download or the parsing. If the response cannot be parsed or the database fails, the
+ *     transaction is rolled back and the table keeps its previous rows. The swap copies the rows instead of renaming the shadow table because the indexes and the
+ *     triggers of the {@link DatabaseHelper#changeJournalTable} belong to the table.
+ * </p>
+ * <p>
+ *     Just like the update-then-insert of the model classes, the last row received for a key replaces the previous ones. Without a
+ *     key every row is kept, unless {@link #setSingleRow(boolean)} keeps only the last row as for the {@link DatabaseHelper#betaTable}.
+ * </p>
+ * <p>
+ *     Tables with a key are pulled as a delta: the version of the Sync Server up to which the table has been pulled is sent as the
+ *     parameter {@value #SINCE_PARAMETER} of the URL. A Sync Server which supports it answers with an element
+ *     <code>&lt;SERVER_VERSION delta="true"&gt;</code> holding its current version, the rows changed since and a
+ *     <code>&lt;DELETED&gt;</code> element with the key of each row deleted since. Only these rows are then replaced or deleted and
+ *     the version is stored in the {@link DatabaseHelper#syncStateTable} for the next pull. A Sync Server which ignores the parameter
+ *     answers with the whole table, which replaces the rows as before.
+ * </p>
+ * <p>
+ *     The rows written by the pull are recorded by the triggers of the {@link DatabaseHelper#changeJournalTable} like any other
+ *     change, so the Grid loads them, and their entries are marked as pulled in the same transaction so that they are not pushed back
+ *     to the Sync Server, see {@link ChangeJournal#markPulled(SQLiteDatabase, String, long)}.
+ * </p>
+ * <p>
+ *     The response is asked for compressed with gzip and the entity tag of the last response of the table is sent with the request,
+ *     see {@link SyncTransport}. If the Sync Server answers that the table has not changed, nothing is written. A pull which clears
+ *     {@link #clearedTables} never sends the entity tag, as these tables must be cleared whenever the pull succeeds.
+ * </p>
+ * <p>
+ *     If {@link #setAcceptBinary(boolean)} is set, the response is also accepted in the binary encoding of the {@link SyncBinaryCodec}.
+ *     A binary response holds the same rows, version and deleted keys as the XML, but the numbers are bound to the insert as numbers
+ *     instead of text and repeated texts such as the device names are decoded only once.
+ * </p>
+ * The {@link Response.Listener} receives the number of rows pulled on the UI thread.
+ */
+final class ShadowTablePull extends Request<Integer> {
+
+    /**
+     * String for logging purpose
+     */
+    private static final String TAG = "ShadowTablePull";
+    /**
+     * Prefix of the name of the shadow table
+     */
+    private static final String SHADOW_PREFIX = "SHADOW_";
+    /**
+     * Parameter of the URL with the version of the Sync Server up to which the table has been pulled
+     */
+    static final String SINCE_PARAMETER = "since";
+    /**
+     * XML element with the current version of the Sync Server
+     */
+    private static final String VERSION_ELEMENT = "SERVER_VERSION";
+    /**
+     * Attribute of the {@link #VERSION_ELEMENT} which is <code>true</code> if only the changes since the version sent are pulled
+     */
+    private static final String DELTA_ATTRIBUTE = "delta";
+    /**
+     * XML element with the key of a row deleted on the Sync Server
+     */
+    private static final String DELETED_ELEMENT = "DELETED";
+    /**
+     * Content types accepted if the binary encoding is switched on, the binary encoding preferred to XML
+     */
+    private static final String ACCEPT_BINARY = SyncBinaryCodec.MEDIA_TYPE + ", text/xml;q=0.9";
+
+    /**
+     * <code>true</code> if the response is accepted in the binary encoding
+     */
+    private static volatile boolean acceptBinary = false;
+
+    /**
+     * Context used to open the database
+     */
+    private final Context context;
+    /**
+     * Table which is replaced, also the name of the XML element of each row
+     */
+    private final String table;
+    /**
+     * Columns which are pulled, also the names of the XML elements of the values
+     */
+    private final String[] columns;
+    /**
+     * Column identifying a row, or <code>null</code> if the rows have no key
+     */
+    private final String keyColumn;
+    /**
+     * Receives the number of rows pulled
+     */
+    private final Response.Listener<Integer> listener;
+    /**
+     * Entity tag of the last pull response of the table, or <code>null</code> to pull the table unconditionally
+     */
+    private final String ifNoneMatch;
+    /**
+     * Condition of the rows of {@link #table} which are deleted before the swap, or <code>null</code> to delete all rows
+     */
+    private String clearWhere = null;
+    /**
+     * Further tables which are cleared when the pull succeeds
+     */
+    private String[] clearedTables = new String[0];
+    /**
+     * <code>true</code> if only the last row received is kept
+     */
+    private boolean singleRow = false;
+    /**
+     * Version of the Sync Server read from the response, -1 if the response has no version
+     */
+    private long serverVersion = -1;
+    /**
+     * <code>true</code> if the response holds only the changes since the version sent
+     */
+    private boolean delta = false;
+    /**
+     * Keys of the rows deleted on the Sync Server read from the response
+     */
+    private final List<String> deletedKeys = new ArrayList<>();
+
+    /**
+     * @param context context used to open the database
+     * @param url URL of the pull on the Sync Server, to which the version last pulled is added if the table has a key
+     * @param table table which is replaced, also the name of the XML element of each row
+     * @param columns columns which are pulled, also the names of the XML elements of the values
+     * @param keyColumn column identifying a row, or <code>null</code> if the rows have no key
+     * @param listener receives the number of rows pulled
+     * @param errorListener receives the error if the pull fails; the table is then unchanged
+     */
+    ShadowTablePull(Context context, String url, String table, String[] columns, String keyColumn,
+                    Response.Listener<Integer> listener, Response.ErrorListener errorListener){
+        super(Method.GET, keyColumn == null ? url : deltaUrl(context, url, table), errorListener);
+        this.context = context.getApplicationContext();
+        this.table = table;
+        this.columns = columns;
+        this.keyColumn = keyColumn;
+        this.listener = listener;
+        this.ifNoneMatch = pullEtag(context, table);
+        setShouldCache(false);
+    }
+
+    /**
+     * @return the URL with the version of the Sync Server up to which the table has been pulled, or the URL unchanged if the
+     * database is unavailable
+     */
+    private static String deltaUrl(Context context, String url, String table){
+        try {
+            long since = ChangeJournal.getPulledVersion(DatabaseHelper.getDbInstance(context).getReadableDatabase(), table);
+            return url + (url.contains("?") ? "&" : "?") + SINCE_PARAMETER + "=" + since;
+        } catch (SQLException e){
+            Log.d(TAG, "Database Unavailable");
+            return url;
+        }
+    }
+
+    /**
+     * @return the entity tag of the last pull response of the table, <code>null</code> if there is none or the database is unavailable
+     */
+    private static String pullEtag(Context context, String table){
+        try {
+            return ChangeJournal.getPullEtag(DatabaseHelper.getDbInstance(context).getReadableDatabase(), table);
+        } catch (SQLException e){
+            Log.d(TAG, "Database Unavailable");
+            return null;
+        }
+    }
+
+    /**
+     * @param acceptBinary <code>true</code> to accept the responses of the pulls in the binary encoding of the {@link SyncBinaryCodec},
+     *                     a Sync Server which does not support it answers with XML
+     * @see DatabaseHelper#sync_binary_encoding
+     */
+    static void setAcceptBinary(boolean acceptBinary){
+        ShadowTablePull.acceptBinary = acceptBinary;
+    }
+
+    /**
+     * Keeps the rows of the table which do not match the given condition and whose key is not pulled
+     * @param clearWhere SQL condition of the rows which are deleted before the swap
+     */
+    void setClearWhere(String clearWhere){
+        this.clearWhere = clearWhere;
+    }
+
+    /**
+     * Keeps only the last row received, for tables which hold a single row
+     * @param singleRow <code>true</code> to keep only the last row
+     */
+    void setSingleRow(boolean singleRow){
+        this.singleRow = singleRow;
+    }
+
+    /**
+     * Clears further tables in the same transaction when the pull succeeds, such as the table of the deleted rows. The table is then
+     * pulled unconditionally.
+     * @param tables names of the tables
+     */
+    void setClearedTables(String... tables){
+        this.clearedTables = tables;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() throws AuthFailureError {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(SyncTransport.ACCEPT_ENCODING, SyncTransport.GZIP);
+        if (acceptBinary){
+            headers.put(SyncTransport.ACCEPT, ACCEPT_BINARY);
+        }
+        if (ifNoneMatch != null && clearedTables.length == 0){
+            headers.put(SyncTransport.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return headers;
+    }
+
+    @Override
+    protected Response<Integer> parseNetworkResponse(NetworkResponse response) {
+        if (response.statusCode == SyncTransport.NOT_MODIFIED){
+            Log.d(TAG, table + ": not modified since the last pull");
+            return Response.success(0, null);
+        }
+        long startTime = System.nanoTime();
+        SQLiteDatabase db;
+        try {
+            db = DatabaseHelper.getDbInstance(context).getWritableDatabase();
+        } catch (SQLException e){
+            Log.d(TAG, "Database Unavailable");
+            return Response.error(new ParseError(e));
+        }
+        List<Object[]> rows;
+        try {
+            byte[] data = SyncTransport.isGzip(response.headers) ? SyncTransport.gunzip(response.data) : response.data;
+            if (SyncBinaryCodec.isBinary(SyncTransport.header(response.headers, SyncTransport.CONTENT_TYPE))){
+                rows = pulledRows(SyncBinaryCodec.decodeTable(data));
+            } else {
+                rows = parseRows(data, HttpHeaderParser.parseCharset(response.headers));
+            }
+        } catch (XmlPullParserException | IOException | IllegalArgumentException e){
+            Log.d(TAG, "Error Parsing Response of " + table);
+            e.printStackTrace();
+            return Response.error(new ParseError(e));
+        }
+        long parsedTime = System.nanoTime();
+        String shadowTable = "temp." + SHADOW_PREFIX + table;
+        SQLiteStatement insert = null;
+        db.beginTransactionNonExclusive();
+        try {
+            db.execSQL("DROP TABLE IF EXISTS " + shadowTable);
+            db.execSQL("CREATE TABLE " + shadowTable + " AS SELECT " + columnList() + " FROM " + table + " WHERE 0");
+            insert = db.compileStatement("INSERT INTO " + shadowTable + " (" + columnList() + ") VALUES (" + placeholders() + ")");
+            insertRows(rows, insert);
+            long journalVersion = ChangeJournal.currentVersion(db, table);
+            swap(db, shadowTable);
+            db.execSQL("DROP TABLE " + shadowTable);
+            ChangeJournal.markPulled(db, table, journalVersion);
+            if (serverVersion >= 0){
+                ChangeJournal.setPulledVersion(db, table, serverVersion);
+            }
+            ChangeJournal.setPullEtag(db, table, SyncTransport.header(response.headers, SyncTransport.ETAG));
+            db.setTransactionSuccessful();
+            long endTime = System.nanoTime();
+            Log.d(TAG, table + ": " + rows.size() + " rows" + (delta ? " and " + deletedKeys.size() + " deletions since the last pull" : "")
+                    + " pulled in " + (endTime - startTime) / 1000000 + " ms from " + response.data.length + " bytes, swapped in "
+                    + (endTime - parsedTime) / 1000000 + " ms");
+            return Response.success(rows.size(), null);
+        } catch (SQLException e){
+            Log.d(TAG, "Error Pulling " + table);
+            e.printStackTrace();
+            return Response.error(new ParseError(e));
+        } finally {
+            if (insert != null){
+                insert.close();
+            }
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    protected void deliverResponse(Integer rows) {
+        listener.onResponse(rows);
+    }
+
+    /**
+     * Reads the rows of the XML response, and the version and the deleted keys of a delta
+     * @param data uncompressed body of the response
+     * @param charset charset of the response
+     * @return the value of each pulled column of each row, <code>null</code> if the row has no value for the column
+     */
+    private List<Object[]> parseRows(byte[] data, String charset) throws XmlPullParserException, IOException {
+        HashMap<String, Integer> columnIndex = columnIndex();
+        XmlPullParser parser = Xml.newPullParser();
+        parser.setInput(new ByteArrayInputStream(data), charset);
+        List<Object[]> rows = new ArrayList<>();
+        Object[] row = null;
+        serverVersion = -1;
+        delta = false;
+        deletedKeys.clear();
+        StringBuilder value = new StringBuilder();
+        int event = parser.getEventType();
+        while (event != XmlPullParser.END_DOCUMENT){
+            switch (event){
+                case XmlPullParser.START_TAG:
+                    if (parser.getName().equals(table)){
+                        row = new Object[columns.length];
+                    } else if (row == null && parser.getName().equals(VERSION_ELEMENT)){
+                        delta = keyColumn != null && Boolean.parseBoolean(parser.getAttributeValue(null, DELTA_ATTRIBUTE));
+                    }
+                    value.setLength(0);
+                    break;
+
+                case XmlPullParser.TEXT:
+                    value.append(parser.getText());
+                    break;
+
+                case XmlPullParser.END_TAG:
+                    if (row == null){
+                        if (parser.getName().equals(VERSION_ELEMENT)){
+                            serverVersion = Long.parseLong(value.toString().trim());
+                        } else if (parser.getName().equals(DELETED_ELEMENT)){
+                            deletedKeys.add(value.toString());
+                        }
+                        break;
+                    }
+                    if (parser.getName().equals(table)){
+                        rows.add(row);
+                        row = null;
+                    } else {
+                        Integer index = columnIndex.get(parser.getName());
+                        if (index != null){
+                            row[index] = value.toString();
+                        }
+                    }
+                    break;
+            }
+            event = parser.next();
+        }
+        return rows;
+    }
+
+    /**
+     * Takes the rows of a binary response, and the version and the deleted keys of a delta
+     * @param pulled rows decoded from the response
+     * @return the value of each pulled column of each row, <code>null</code> if the row has no value for the column
+     */
+    private List<Object[]> pulledRows(SyncTable pulled){
+        HashMap<String, Integer> columnIndex = columnIndex();
+        int[] pulledIndex = new int[pulled.columns.length];
+        for (int i = 0; i < pulled.columns.length; i++){
+            Integer index = columnIndex.get(pulled.columns[i]);
+            pulledIndex[i] = index == null ? -1 : index;
+        }
+        serverVersion = pulled.serverVersion;
+        delta = keyColumn != null && pulled.delta;
+        deletedKeys.clear();
+        deletedKeys.addAll(pulled.deletedKeys);
+        List<Object[]> rows = new ArrayList<>(pulled.rows.size());
+        for (Object[] pulledRow : pulled.rows){
+            Object[] row = new Object[columns.length];
+            for (int i = 0; i < pulledRow.length; i++){
+                if (pulledIndex[i] >= 0){
+                    row[pulledIndex[i]] = pulledRow[i];
+                }
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Inserts the rows into the shadow table, the numbers of a binary response as numbers and all other values as text
+     * @param rows the value of each pulled column of each row
+     * @param insert compiled insert into the shadow table
+     */
+    private void insertRows(List<Object[]> rows, SQLiteStatement insert){
+        for (Object[] row : rows){
+            insert.clearBindings();
+            for (int i = 0; i < row.length; i++){
+                Object value = row[i];
+                if (value instanceof Long){
+                    insert.bindLong(i + 1, (Long) value);
+                } else if (value instanceof Double){
+                    insert.bindDouble(i + 1, (Double) value);
+                } else if (value != null){
+                    insert.bindString(i + 1, (String) value);
+                }
+            }
+            insert.executeInsert();
+        }
+    }
+
+    /**
+     * @return the index of each pulled column in {@link #columns}
+     */
+    private HashMap<String, Integer> columnIndex(){
+        HashMap<String, Integer> columnIndex = new HashMap<>();
+        for (int i = 0; i < columns.length; i++){
+            columnIndex.put(columns[i], i);
+        }
+        return columnIndex;
+    }
+
+    /**
+     * Replaces the rows of the table with the rows of the shadow table and clears the {@link #clearedTables}. A delta only replaces
+     * the rows with the keys of the shadow table and deletes the rows with the {@link #deletedKeys}.
+     */
+    private void swap(SQLiteDatabase db, String shadowTable){
+        String latestRows;
+        if (singleRow){
+            latestRows = "SELECT MAX(rowid) FROM " + shadowTable;
+        } else if (keyColumn != null){
+            latestRows = "SELECT MAX(rowid) FROM " + shadowTable + " GROUP BY " + keyColumn;
+        } else {
+            latestRows = "SELECT rowid FROM " + shadowTable;
+        }
+        if (delta){
+            db.execSQL("DELETE FROM " + table + " WHERE " + keyColumn + " IN (SELECT " + keyColumn + " FROM " + shadowTable + ")");
+            for (String key : deletedKeys){
+                db.delete(table, keyColumn + " = ?", new String[]{key});
+            }
+        } else if (clearWhere == null){
+            db.execSQL("DELETE FROM " + table);
+        } else {
+            db.execSQL("DELETE FROM " + table + " WHERE " + clearWhere);
+            if (keyColumn != null){
+                db.execSQL("DELETE FROM " + table + " WHERE " + keyColumn + " IN (SELECT " + keyColumn + " FROM " + shadowTable + ")");
+            } else if (singleRow){
+                db.execSQL("DELETE FROM " + table + " WHERE EXISTS (SELECT 1 FROM " + shadowTable + ")");
+            }
+        }
+        db.execSQL("INSERT INTO " + table + " (" + columnList() + ") SELECT " + columnList() + " FROM " + shadowTable
+                + " WHERE rowid IN (" + latestRows + ")");
+        for (String clearedTable : clearedTables){
+            db.execSQL("DELETE FROM " + clearedTable);
+        }
+    }
+
+    private String columnList(){
+        StringBuilder list = new StringBuilder();
+        for (String column : columns){
+            if (list.length() > 0){
+                list.append(", ");
+            }
+            list.append(column);
+        }
+        return list.toString();
+    }
+
+    private String placeholders(){
+        StringBuilder list = new StringBuilder("?");
+        for (int i = 1; i < columns.length; i++){
+            list.append(", ?");
+        }
+        return list.toString();
+    }
+}
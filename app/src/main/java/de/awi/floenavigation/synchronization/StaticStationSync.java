@@ -18,12 +18,10 @@ import com.android.volley.toolbox.StringRequest;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.xmlpull.v1.XmlPullParser;
-import org.xmlpull.v1.XmlPullParserException;
 
-import java.io.IOException;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import de.awi.floenavigation.helperclasses.DatabaseHelper;
@@ -35,7 +33,7 @@ import de.awi.floenavigation.helperclasses.DatabaseHelper;
  * Clears the Static Station Table before inserting Data that was pulled from the Server.
  *
  * <p>
- * Uses {@link StaticStation} to create a new fixed station Object and insert into local Database, the parameters that is pulled from the Server.
+ * The pulled rows are inserted with a {@link ShadowTablePull}, which replaces the rows of the table only when the whole response has been read.
  *</p>
  * @see DatabaseHelper#sampleMeasurementTable
  * @see SyncActivity
@@ -46,6 +44,14 @@ import de.awi.floenavigation.helperclasses.DatabaseHelper;
 public class StaticStationSync {
 
     private static final String TAG = "StaticStnSyncActivity";
+
+    /**
+     * Columns of the {@value DatabaseHelper#staticStationListTable} Table which are pulled from the Sync Server
+     */
+    private static final String[] PULLED_COLUMNS = {
+            DatabaseHelper.staticStationName, DatabaseHelper.alpha, DatabaseHelper.distance, DatabaseHelper.xPosition,
+            DatabaseHelper.yPosition, DatabaseHelper.stationType
+    };
     private Context mContext;
 
     /**
@@ -60,6 +66,33 @@ public class StaticStationSync {
      */
     private String pullURL = "";
 
+    /**
+     * URL for the batched push of the rows to the Sync Server
+     * @see #setBaseUrl(String, String)
+     */
+    private String batchURL = "";
+
+    /**
+     * Number of rows pushed to the Sync Server in one request. If it is 0 every row is pushed with its own request.
+     * @see #setRowsPerRequest(int)
+     */
+    private int rowsPerRequest = 0;
+
+    /**
+     * Version of the {@link DatabaseHelper#changeJournalTable} up to which the rows were pushed before this push
+     */
+    private long pushedVersion = 0;
+
+    /**
+     * Version of the {@link DatabaseHelper#changeJournalTable} of the rows read for this push
+     */
+    private long journalVersion = 0;
+
+    /**
+     * Advances the pushed version once every request of this push has been acknowledged
+     */
+    private PushTracker pushTracker;
+
     /**
      * URL to use for sending Delete Request to the Server
      * @see #setBaseUrl(String, String)
@@ -101,20 +134,16 @@ public class StaticStationSync {
     private HashMap<Integer, String> stationTypeData = new HashMap<>();
 
     /**
-     * Stores {@link StaticStation#stationName} of all the Static Station that are to be deleted.
-     * Reads {@link StaticStation#stationName} from {@value DatabaseHelper#staticStationDeletedTable}
+     * Keys of the rows deleted since the last acknowledged push, read from the {@link DatabaseHelper#changeJournalTable}
      */
-    private HashMap<Integer, String> deletedStaticStationData = new HashMap<Integer, String>();
+    private List<String> deletedStaticStationData = new ArrayList<>();
     private Cursor staticStationCursor = null;
-    private StaticStation staticStation;
-    private ArrayList<StaticStation> staticStationList = new ArrayList<>();
 
 
     private RequestQueue requestQueue;
     private XmlPullParser parser;
 
     //private int numOfDeleteRequests = 0;
-    private StringRequest pullRequest;
 
     /**
      * <code>true</code> if all Static Stations are pulled from the server and inserted in to the local Database
@@ -136,18 +165,20 @@ public class StaticStationSync {
     /**
      * Reads the {@value DatabaseHelper#staticStationListTable} Table and inserts the data from all the Columns of the
      * {@value DatabaseHelper#staticStationListTable} Table in to their respective {@link HashMap}.
+     * Only the rows changed since the last push acknowledged by the Sync Server are read, see {@link ChangeJournal}.
+     * @param db connection of the snapshot the rows are read from, see {@link DatabaseHelper#openSnapshot(Context)}
      * @throws SQLiteException In case of error in reading database
      * @see #staticStationCursor
      */
-    public void onClickStaticStationReadButton(){
+    public void onClickStaticStationReadButton(SQLiteDatabase db){
         try{
             int i = 0;
-            dbHelper = DatabaseHelper.getDbInstance(mContext);
-            db = dbHelper.getReadableDatabase();
+            pushedVersion = ChangeJournal.getPushedVersion(db, DatabaseHelper.staticStationListTable);
+            journalVersion = ChangeJournal.currentVersion(db, DatabaseHelper.staticStationListTable);
             staticStationCursor = db.query(DatabaseHelper.staticStationListTable,
                     null,
-                    null,
-                    null,
+                    ChangeJournal.changedRowsSelection(DatabaseHelper.staticStationName),
+                    ChangeJournal.changedRowsArgs(DatabaseHelper.staticStationListTable, pushedVersion),
                     null, null, null);
             if(staticStationCursor.moveToFirst()){
                 do{
@@ -162,7 +193,6 @@ public class StaticStationSync {
                 }while (staticStationCursor.moveToNext());
             }
             staticStationCursor.close();
-            Toast.makeText(mContext, "Read Completed from DB", Toast.LENGTH_SHORT).show();
 
         } catch (SQLiteException e){
             Log.d(TAG, "Database Error");
@@ -180,161 +210,104 @@ public class StaticStationSync {
      * A Stringrequest {@link #request} for pushing the data is registered and added to the {@link #requestQueue}.
      * callback function {@link Response.Listener#onResponse(Object)} notifies whether the request was successful or not
      * If it is unsuccessful or the connection is not established {@link Response.Listener#error(VolleyError)} gets called
+     * If {@link #rowsPerRequest} is set, the rows are instead pushed in batches of that size by {@link BatchPush}.
+     * @param callback called once every request of the push has been answered
      */
-    public void onClickStaticStationSyncButton(){
-        for(int i = 0; i < stationNameData.size(); i++){
-            final int index = i;
-            request = new StringRequest(Request.Method.POST, URL, new Response.Listener<String>() {
+    public void onClickStaticStationSyncButton(SyncCallback callback){
+        pushTracker = new PushTracker(mContext, DatabaseHelper.staticStationListTable, journalVersion, callback);
+        if (rowsPerRequest > 0) {
+            List<Map<String, String>> rows = new ArrayList<>();
+            for (int i = 0; i < stationNameData.size(); i++) {
+                rows.add(getRowParams(i));
+            }
+            BatchPush.push(mContext, batchURL, DatabaseHelper.staticStationListTable, rows, rowsPerRequest, pushTracker);
+        } else {
+            for(int i = 0; i < stationNameData.size(); i++){
+                final int index = i;
+                request = new StringRequest(Request.Method.POST, URL, new Response.Listener<String>() {
+
+                    @Override
+                    public void onResponse(String response) {
+                        try {
+                            JSONObject jsonObject = new JSONObject(response);
+                            if (jsonObject.names().get(0).equals("success")) {
+                                //Toast.makeText(mContext, "SUCCESS " + jsonObject.getString("success"), Toast.LENGTH_SHORT).show();
+                                Log.d(TAG, "SUCCESS: " + jsonObject.getString("success"));
+                                pushTracker.requestDone(true);
+                            } else {
+                                Toast.makeText(mContext, "Error" + jsonObject.getString("error"), Toast.LENGTH_SHORT).show();
+                                Log.d(TAG, "Error: " + jsonObject.getString("error"));
+                                pushTracker.requestDone(false);
+                            }
 
-                @Override
-                public void onResponse(String response) {
-                    try {
-                        JSONObject jsonObject = new JSONObject(response);
-                        if (jsonObject.names().get(0).equals("success")) {
-                            //Toast.makeText(mContext, "SUCCESS " + jsonObject.getString("success"), Toast.LENGTH_SHORT).show();
-                            Log.d(TAG, "SUCCESS: " + jsonObject.getString("success"));
-                        } else {
-                            Toast.makeText(mContext, "Error" + jsonObject.getString("error"), Toast.LENGTH_SHORT).show();
-                            Log.d(TAG, "Error: " + jsonObject.getString("error"));
+                        } catch (JSONException e) {
+                            pushTracker.requestDone(false);
+                            e.printStackTrace();
                         }
 
-                    } catch (JSONException e) {
-                        e.printStackTrace();
-                    }
-
 
-                }
-            }, new Response.ErrorListener() {
-                @Override
-                public void onErrorResponse(VolleyError error) {
-
-                }
-            }){
-                @Override
-                protected Map<String, String> getParams() throws AuthFailureError {
+                    }
+                }, new Response.ErrorListener() {
+                    @Override
+                    public void onErrorResponse(VolleyError error) {
+                        pushTracker.requestDone(false);
 
-                    HashMap<String,String> hashMap = new HashMap<String, String>();
-                    hashMap.put(DatabaseHelper.staticStationName,(stationNameData.get(index) == null)? "" : stationNameData.get(index));
-                    hashMap.put(DatabaseHelper.alpha,(alphaData.get(index) == null)? "" : alphaData.get(index).toString());
-                    hashMap.put(DatabaseHelper.distance,(distanceData.get(index) == null)? "" : distanceData.get(index).toString());
-                    hashMap.put(DatabaseHelper.xPosition,(xPositionData.get(index) == null)? "" : xPositionData.get(index).toString());
-                    hashMap.put(DatabaseHelper.yPosition,(yPositionData.get(index) == null)? "" : yPositionData.get(index).toString());
-                    hashMap.put(DatabaseHelper.stationType,(stationTypeData.get(index) == null)? "" : stationTypeData.get(index));
-                    return hashMap;
-                }
-            };
-            requestQueue.add(request);
+                    }
+                }){
+                    @Override
+                    protected Map<String, String> getParams() throws AuthFailureError {
+                        return getRowParams(index);
+                    }
+                };
+                pushTracker.requestAdded();
+                requestQueue.add(request);
 
+            }
         }
         sendSSDeleteRequest();
+        pushTracker.allRequestsAdded();
     }
 
     /**
-     * Function is used to pull data from internal database to the server
-     * A Stringrequest {@link #request} for pulling the data is registered and added to the {@link #requestQueue}.
-     * callback function {@link Response.Listener#onResponse(Object)} notifies whether the request was successful or not
-     * If it is unsuccessful or the connection is not established {@link Response.Listener#error(VolleyError)} gets called
-     * On pulling the data from the server internal database tables {@link DatabaseHelper#staticStationListTable} and
-     * {@link DatabaseHelper#staticStationDeletedTable} are cleared.
-     *
-     * <p>
-     * The server sends the data in .xml format, therefore it has to extract the data based on the tags
-     * Inside {@link Response.Listener#onResponse(Object)} it loops through the entire xml file till it reaches the end of document.
-     * Based on the {@link XmlPullParser#START_TAG}, {@link XmlPullParser#TEXT}, {@link XmlPullParser#END_TAG} it adds the values received to
-     * the corresponding columns of the {@link DatabaseHelper#staticStationListTable}
-     * Each {@link #staticStation} is added to the {@link #staticStationList} which is individually taken and added to the internal database.
-     * </p>
+     * Creates the parameters of one row of the {@value DatabaseHelper#staticStationListTable} Table which are pushed to the Sync Server
+     * @param index index of the row in the {@link HashMap}s
+     * @return the value of each column, empty if the value is missing
      */
+    private Map<String, String> getRowParams(int index){
+        HashMap<String,String> hashMap = new HashMap<String, String>();
+        hashMap.put(DatabaseHelper.staticStationName,(stationNameData.get(index) == null)? "" : stationNameData.get(index));
+        hashMap.put(DatabaseHelper.alpha,(alphaData.get(index) == null)? "" : alphaData.get(index).toString());
+        hashMap.put(DatabaseHelper.distance,(distanceData.get(index) == null)? "" : distanceData.get(index).toString());
+        hashMap.put(DatabaseHelper.xPosition,(xPositionData.get(index) == null)? "" : xPositionData.get(index).toString());
+        hashMap.put(DatabaseHelper.yPosition,(yPositionData.get(index) == null)? "" : yPositionData.get(index).toString());
+        hashMap.put(DatabaseHelper.stationType,(stationTypeData.get(index) == null)? "" : stationTypeData.get(index));
+        return hashMap;
+    }
 
-    public void onClickStaticStationPullButton(){
-        try {
-            dbHelper = DatabaseHelper.getDbInstance(mContext);
-            db = dbHelper.getReadableDatabase();
-            db.execSQL("Delete from " + DatabaseHelper.staticStationListTable);
-            db.execSQL("Delete from " + DatabaseHelper.staticStationDeletedTable);
-            pullRequest = new StringRequest(pullURL, new Response.Listener<String>() {
-                @Override
-                public void onResponse(String response) {
-                    try {
-                        parser.setInput(new StringReader(response));
-                        int event = parser.getEventType();
-                        String tag = "";
-                        String value = "";
-                        while (event != XmlPullParser.END_DOCUMENT) {
-                            tag = parser.getName();
-                            switch (event) {
-                                case XmlPullParser.START_TAG:
-                                    if (tag.equals(DatabaseHelper.staticStationListTable)) {
-                                        staticStation = new StaticStation(mContext);
-                                        staticStationList.add(staticStation);
-                                    }
-                                    break;
-
-                                case XmlPullParser.TEXT:
-                                    value = parser.getText();
-                                    break;
-
-                                case XmlPullParser.END_TAG:
-
-                                    switch (tag) {
-
-                                        case DatabaseHelper.staticStationName:
-                                            staticStation.setStationName(value);
-                                            Log.d(TAG, "Value: " + value);
-                                            break;
-
-                                        case DatabaseHelper.alpha:
-                                            staticStation.setAlpha(Double.valueOf(value));
-                                            break;
-
-                                        case DatabaseHelper.distance:
-                                            staticStation.setDistance(Double.valueOf(value));
-                                            break;
-
-                                        case DatabaseHelper.xPosition:
-                                            staticStation.setxPosition(Double.valueOf(value));
-                                            break;
-
-                                        case DatabaseHelper.yPosition:
-                                            staticStation.setyPosition(Double.valueOf(value));
-                                            break;
-
-                                        case DatabaseHelper.stationType:
-                                            staticStation.setStationType(value);
-                                            break;
-
-                                    }
-                                    break;
-                            }
-                            event = parser.next();
-                        }
-                        for (StaticStation currentStn : staticStationList) {
-                            currentStn.insertStaticStationInDB();
-                        }
+    /**
+     * Pulls the {@value DatabaseHelper#staticStationListTable} Table from the Sync Server with a {@link ShadowTablePull}.
+     * The rows are inserted in to a shadow table while the XML response is parsed and replace the rows of the
+     * {@link DatabaseHelper#staticStationListTable} Table in one transaction once the whole response has been read. If the Sync Server answers with the changes since the version last pulled, only the changed rows are replaced and the deleted rows removed.
+     * If the pull fails the local tables are left unchanged. {@link #dataPullCompleted} is set to <code>true</code> when the rows have been replaced.
+     * @param callback called once the pull has finished or failed
+     */
+    public void onClickStaticStationPullButton(final SyncCallback callback){
+        ShadowTablePull pullRequest = new ShadowTablePull(mContext, pullURL, DatabaseHelper.staticStationListTable, PULLED_COLUMNS, DatabaseHelper.staticStationName,
+                new Response.Listener<Integer>() {
+                    @Override
+                    public void onResponse(Integer rows) {
                         dataPullCompleted = true;
+                        callback.onSyncFinished(true);
                         Toast.makeText(mContext, "Data Pulled from Server", Toast.LENGTH_SHORT).show();
-                    } catch (XmlPullParserException e) {
-                        Log.d(TAG, "Error Parsing XML");
-                        e.printStackTrace();
-                    } catch (IOException e) {
-                        Log.d(TAG, "IOException from Parser");
-                        e.printStackTrace();
                     }
-                }
-            }, new Response.ErrorListener() {
-                @Override
-                public void onErrorResponse(VolleyError error) {
-
-                }
-            });
-
-            requestQueue.add(pullRequest);
-
-        } catch (SQLException e){
-            Log.d(TAG, "Database Error");
-            e.printStackTrace();
-        }
-
+                }, new Response.ErrorListener() {
+                    @Override
+                    public void onErrorResponse(VolleyError error) {
+                        Log.d(TAG, "Error Pulling Data: " + error.getCause());
+                        callback.onSyncFinished(false);
+                    }
+                });
+        requestQueue.add(pullRequest);
     }
 
     /**
@@ -344,55 +317,41 @@ public class StaticStationSync {
      */
     public void setBaseUrl(String baseUrl, String port){
         URL = "http://" + baseUrl + ":" + port + "/StaticStation/pullStations.php";
+        batchURL = "http://" + baseUrl + ":" + port + "/StaticStation/pullStationsBatch.php";
         pullURL = "http://" + baseUrl + ":" + port + "/StaticStation/pushStations.php";
         deleteURL = "http://" + baseUrl + ":" + port + "/StaticStation/deleteStations.php";
 
     }
 
+    /**
+     * Sets the number of rows pushed to the Sync Server in one request
+     * @param rowsPerRequest rows per request of the batched push, or 0 to push every row with its own request
+     * @see de.awi.floenavigation.helperclasses.DatabaseHelper#sync_batch_size
+     */
+    public void setRowsPerRequest(int rowsPerRequest){
+        this.rowsPerRequest = rowsPerRequest;
+    }
+
     public boolean getDataCompleted(){
         return dataPullCompleted;
     }
 
     /**
-     * Reads the {@value DatabaseHelper#staticStationDeletedTable} Table and inserts the data from all the Columns of the
-     * {@value DatabaseHelper#staticStationDeletedTable} Table in to their respective {@link HashMap}.
-     * @throws SQLiteException In case of error in reading database
-     * After reading the data, it creates string requests to forward the data to the server
-     * This facilitates the server to know which stations should be marked for deletion since these stations are no longer used.
+     * Reads the keys of the rows of the {@value DatabaseHelper#staticStationListTable} Table which have been deleted since the last
+     * acknowledged push from the {@link DatabaseHelper#changeJournalTable} and creates a request for each of them, so that the
+     * Sync Server deletes the same rows and removes them from the other tablets.
      */
     private void sendSSDeleteRequest(){
-        Cursor deletedStaticStationCursor = null;
-        try {
+        try{
             dbHelper = DatabaseHelper.getDbInstance(mContext);
             db = dbHelper.getReadableDatabase();
-            deletedStaticStationCursor = db.query(DatabaseHelper.staticStationDeletedTable,
-                    null,
-                    null,
-                    null,
-                    null, null, null);
-            int i = 0;
-            if (deletedStaticStationCursor.moveToFirst()) {
-                do {
-                    deletedStaticStationData.put(i, deletedStaticStationCursor.getString(deletedStaticStationCursor.getColumnIndexOrThrow(DatabaseHelper.staticStationName)));
-                    Log.d(TAG, "Static Station to be Deleted: " + deletedStaticStationCursor.getString(deletedStaticStationCursor.getColumnIndexOrThrow(DatabaseHelper.staticStationName)));
-                    i++;
-
-                } while (deletedStaticStationCursor.moveToNext());
+            deletedStaticStationData = ChangeJournal.deletedKeys(db, DatabaseHelper.staticStationListTable, pushedVersion);
+            for (String deletedKey : deletedStaticStationData) {
+                Log.d(TAG, "Static Station to be Deleted: " + deletedKey);
             }
-            deletedStaticStationCursor.close();
-            /*
-            if(deletedStaticStationData.size() == 0){
-                requestQueue.add(pullRequest);
-            } else{
-                numOfDeleteRequests = deletedStaticStationData.size();
-            }*/
         } catch (SQLException e){
             Log.d(TAG, "Database Error");
             e.printStackTrace();
-        }finally {
-            if (deletedStaticStationCursor != null){
-                deletedStaticStationCursor.close();
-            }
         }
 
         for(int j = 0; j < deletedStaticStationData.size(); j++){
@@ -406,12 +365,15 @@ public class StaticStationSync {
                         if (jsonObject.names().get(0).equals("success")) {
                             //Toast.makeText(mContext, "SUCCESS " + jsonObject.getString("success"), Toast.LENGTH_SHORT).show();
                             Log.d(TAG, "SUCCESS: " + jsonObject.getString("success"));
+                            pushTracker.requestDone(true);
                         } else {
                             Toast.makeText(mContext, "Error" + jsonObject.getString("error"), Toast.LENGTH_SHORT).show();
                             Log.d(TAG, "Error: " + jsonObject.getString("error"));
+                            pushTracker.requestDone(false);
                         }
 
                     } catch (JSONException e) {
+                        pushTracker.requestDone(false);
                         e.printStackTrace();
                     }
                     /*
@@ -424,6 +386,7 @@ public class StaticStationSync {
             }, new Response.ErrorListener() {
                 @Override
                 public void onErrorResponse(VolleyError error) {
+                    pushTracker.requestDone(false);
 
                 }
             }){
@@ -436,6 +399,7 @@ public class StaticStationSync {
                     return hashMap;
                 }
             };
+            pushTracker.requestAdded();
             requestQueue.add(request);
 
         }
@@ -18,12 +18,10 @@ import com.android.volley.toolbox.StringRequest;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.xmlpull.v1.XmlPullParser;
-import org.xmlpull.v1.XmlPullParserException;
 
-import java.io.IOException;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import de.awi.floenavigation.helperclasses.DatabaseHelper;
@@ -35,7 +33,7 @@ import de.awi.floenavigation.helperclasses.DatabaseHelper;
  * Clears the AIS Station List Table before inserting Data that was pulled from the Server.
  *
  * <p>
- * Uses {@link StationList} to create a new AIS Station and insert into local Database, the parameters that is pulled from the Server.
+ * The pulled rows are inserted with a {@link ShadowTablePull}, which replaces the rows of the table only when the whole response has been read.
  *</p>
  * @see DatabaseHelper#stationListTable
  * @see SyncActivity
@@ -46,6 +44,11 @@ import de.awi.floenavigation.helperclasses.DatabaseHelper;
 public class StationListSync {
 
     private static final String TAG = "StnListSyncActivity";
+
+    /**
+     * Columns of the {@value DatabaseHelper#stationListTable} Table which are pulled from the Sync Server
+     */
+    private static final String[] PULLED_COLUMNS = {DatabaseHelper.stationName, DatabaseHelper.mmsi};
     private Context mContext;
 
     /**
@@ -60,6 +63,33 @@ public class StationListSync {
      */
     private String pullURL = "";
 
+    /**
+     * URL for the batched push of the rows to the Sync Server
+     * @see #setBaseUrl(String, String)
+     */
+    private String batchURL = "";
+
+    /**
+     * Number of rows pushed to the Sync Server in one request. If it is 0 every row is pushed with its own request.
+     * @see #setRowsPerRequest(int)
+     */
+    private int rowsPerRequest = 0;
+
+    /**
+     * Version of the {@link DatabaseHelper#changeJournalTable} up to which the rows were pushed before this push
+     */
+    private long pushedVersion = 0;
+
+    /**
+     * Version of the {@link DatabaseHelper#changeJournalTable} of the rows read for this push
+     */
+    private long journalVersion = 0;
+
+    /**
+     * Advances the pushed version once every request of this push has been acknowledged
+     */
+    private PushTracker pushTracker;
+
     /**
      * URL to use for sending Delete Request to the Server
      * @see #setBaseUrl(String, String)
@@ -81,13 +111,10 @@ public class StationListSync {
     private HashMap<Integer, Integer> mmsiData = new HashMap<>();
 
     /**
-     * Stores {@link StationList#stationName} of all the AIS Stations that are to be deleted.
-     * Reads {@link StationList#mmsi} from {@value DatabaseHelper#stationListDeletedTable}
+     * Keys of the rows deleted since the last acknowledged push, read from the {@link DatabaseHelper#changeJournalTable}
      */
-    private HashMap<Integer, Integer> deletedStationListData = new HashMap<>();
+    private List<String> deletedStationListData = new ArrayList<>();
     private Cursor stationListCursor = null;
-    private StationList stationList;
-    private ArrayList<StationList> stationArrayList = new ArrayList<>();
     private RequestQueue requestQueue;
     private XmlPullParser parser;
 
@@ -97,7 +124,6 @@ public class StationListSync {
     private boolean dataPullCompleted;
 
     //private int numOfDeleteRequests = 0;
-    private StringRequest pullRequest;
 
     /**
      * Default Constructor.
@@ -113,18 +139,20 @@ public class StationListSync {
     /**
      * Reads the {@value DatabaseHelper#stationListTable} Table and inserts the data from all the Columns of the
      * {@value DatabaseHelper#stationListTable} Table in to their respective {@link HashMap}.
+     * Only the rows changed since the last push acknowledged by the Sync Server are read, see {@link ChangeJournal}.
+     * @param db connection of the snapshot the rows are read from, see {@link DatabaseHelper#openSnapshot(Context)}
      * @throws SQLiteException In case of error in reading database
      * @see #stationListCursor
      */
-    public void onClickStationListReadButton(){
+    public void onClickStationListReadButton(SQLiteDatabase db){
         try{
             int i = 0;
-            dbHelper = DatabaseHelper.getDbInstance(mContext);
-            db = dbHelper.getReadableDatabase();
+            pushedVersion = ChangeJournal.getPushedVersion(db, DatabaseHelper.stationListTable);
+            journalVersion = ChangeJournal.currentVersion(db, DatabaseHelper.stationListTable);
             stationListCursor = db.query(DatabaseHelper.stationListTable,
                     null,
-                    null,
-                    null,
+                    ChangeJournal.changedRowsSelection(DatabaseHelper.mmsi),
+                    ChangeJournal.changedRowsArgs(DatabaseHelper.stationListTable, pushedVersion),
                     null, null, null);
             if(stationListCursor.moveToFirst()){
                 do{
@@ -136,7 +164,6 @@ public class StationListSync {
                 }while (stationListCursor.moveToNext());
             }
             stationListCursor.close();
-            Toast.makeText(mContext, "Read Completed from DB", Toast.LENGTH_SHORT).show();
         } catch (SQLiteException e){
             Log.d(TAG, "Database Error");
             e.printStackTrace();
@@ -153,141 +180,101 @@ public class StationListSync {
      * A Stringrequest {@link #request} for pushing the data is registered and added to the {@link #requestQueue}.
      * callback function {@link Response.Listener#onResponse(Object)} notifies whether the request was successful or not
      * If it is unsuccessful or the connection is not established {@link Response.Listener#error(VolleyError)} gets called
+     * If {@link #rowsPerRequest} is set, the rows are instead pushed in batches of that size by {@link BatchPush}.
+     * @param callback called once every request of the push has been answered
      */
-    public void onClickStationListSyncButton(){
-        for(int i = 0; i < mmsiData.size(); i++){
-            final int index = i;
-            request = new StringRequest(Request.Method.POST, URL, new Response.Listener<String>() {
+    public void onClickStationListSyncButton(SyncCallback callback){
+        pushTracker = new PushTracker(mContext, DatabaseHelper.stationListTable, journalVersion, callback);
+        if (rowsPerRequest > 0) {
+            List<Map<String, String>> rows = new ArrayList<>();
+            for (int i = 0; i < mmsiData.size(); i++) {
+                rows.add(getRowParams(i));
+            }
+            BatchPush.push(mContext, batchURL, DatabaseHelper.stationListTable, rows, rowsPerRequest, pushTracker);
+        } else {
+            for(int i = 0; i < mmsiData.size(); i++){
+                final int index = i;
+                request = new StringRequest(Request.Method.POST, URL, new Response.Listener<String>() {
+
+                    @Override
+                    public void onResponse(String response) {
+                        try {
+                            JSONObject jsonObject = new JSONObject(response);
+                            if (jsonObject.names().get(0).equals("success")) {
+                                //Toast.makeText(mContext, "SUCCESS " + jsonObject.getString("success"), Toast.LENGTH_SHORT).show();
+                                Log.d(TAG, "SUCCESS: " + jsonObject.getString("success"));
+                                pushTracker.requestDone(true);
+                            } else {
+                                Toast.makeText(mContext, "Error" + jsonObject.getString("error"), Toast.LENGTH_SHORT).show();
+                                Log.d(TAG, "Error: " + jsonObject.getString("error"));
+                                pushTracker.requestDone(false);
+                            }
 
-                @Override
-                public void onResponse(String response) {
-                    try {
-                        JSONObject jsonObject = new JSONObject(response);
-                        if (jsonObject.names().get(0).equals("success")) {
-                            //Toast.makeText(mContext, "SUCCESS " + jsonObject.getString("success"), Toast.LENGTH_SHORT).show();
-                            Log.d(TAG, "SUCCESS: " + jsonObject.getString("success"));
-                        } else {
-                            Toast.makeText(mContext, "Error" + jsonObject.getString("error"), Toast.LENGTH_SHORT).show();
-                            Log.d(TAG, "Error: " + jsonObject.getString("error"));
+                        } catch (JSONException e) {
+                            pushTracker.requestDone(false);
+                            e.printStackTrace();
                         }
 
-                    } catch (JSONException e) {
-                        e.printStackTrace();
-                    }
-
 
-                }
-            }, new Response.ErrorListener() {
-                @Override
-                public void onErrorResponse(VolleyError error) {
-
-                }
-            }){
-                @Override
-                protected Map<String, String> getParams() throws AuthFailureError {
-
-                    HashMap<String,String> hashMap = new HashMap<String, String>();
-                    hashMap.put(DatabaseHelper.stationName,(stationNameData.get(index) == null)? "" : stationNameData.get(index));
-                    hashMap.put(DatabaseHelper.mmsi,(mmsiData.get(index) == null)? "" : mmsiData.get(index).toString());
+                    }
+                }, new Response.ErrorListener() {
+                    @Override
+                    public void onErrorResponse(VolleyError error) {
+                        pushTracker.requestDone(false);
 
-                    return hashMap;
-                }
-            };
-            requestQueue.add(request);
+                    }
+                }){
+                    @Override
+                    protected Map<String, String> getParams() throws AuthFailureError {
+                        return getRowParams(index);
+                    }
+                };
+                pushTracker.requestAdded();
+                requestQueue.add(request);
 
+            }
         }
         sendSLDeleteRequest();
+        pushTracker.allRequestsAdded();
     }
 
     /**
-     * Function is used to pull data from internal database to the server
-     * A Stringrequest {@link #request} for pulling the data is registered and added to the {@link #requestQueue}.
-     * callback function {@link Response.Listener#onResponse(Object)} notifies whether the request was successful or not
-     * If it is unsuccessful or the connection is not established {@link Response.Listener#error(VolleyError)} gets called
-     * On pulling the data from the server internal database tables {@link DatabaseHelper#stationListTable} and
-     * {@link DatabaseHelper#stationListDeletedTable} are cleared.
-     *
-     * <p>
-     * The server sends the data in .xml format, therefore it has to extract the data based on the tags
-     * Inside {@link Response.Listener#onResponse(Object)} it loops through the entire xml file till it reaches the end of document.
-     * Based on the {@link XmlPullParser#START_TAG}, {@link XmlPullParser#TEXT}, {@link XmlPullParser#END_TAG} it adds the values received to
-     * the corresponding columns of the {@link DatabaseHelper#stationListTable}
-     * Each {@link #stationList} is added to the {@link #stationArrayList} which is individually taken and added to the internal database.
-     * </p>
+     * Creates the parameters of one row of the {@value DatabaseHelper#stationListTable} Table which are pushed to the Sync Server
+     * @param index index of the row in the {@link HashMap}s
+     * @return the value of each column, empty if the value is missing
      */
-    public void onClickStationListPullButton(){
-        try {
-            dbHelper = DatabaseHelper.getDbInstance(mContext);
-            db = dbHelper.getReadableDatabase();
-            db.execSQL("Delete from " + DatabaseHelper.stationListTable);
-            db.execSQL("Delete from " + DatabaseHelper.stationListDeletedTable);
-            pullRequest = new StringRequest(pullURL, new Response.Listener<String>() {
-                @Override
-                public void onResponse(String response) {
-                    try {
-                        parser.setInput(new StringReader(response));
-                        int event = parser.getEventType();
-                        String tag = "";
-                        String value = "";
-                        while (event != XmlPullParser.END_DOCUMENT) {
-                            tag = parser.getName();
-                            switch (event) {
-                                case XmlPullParser.START_TAG:
-                                    if (tag.equals(DatabaseHelper.stationListTable)) {
-                                        stationList = new StationList(mContext);
-                                        stationArrayList.add(stationList);
-                                    }
-                                    break;
-
-                                case XmlPullParser.TEXT:
-                                    value = parser.getText();
-                                    break;
-
-                                case XmlPullParser.END_TAG:
-
-                                    switch (tag) {
-
-                                        case DatabaseHelper.stationName:
-                                            stationList.setStationName(value);
-                                            break;
-
-                                        case DatabaseHelper.mmsi:
-                                            stationList.setMmsi(Integer.parseInt(value));
-                                            break;
-
-
-                                    }
-                                    break;
-                            }
-                            event = parser.next();
-                        }
-                        for (StationList currentStn : stationArrayList) {
-                            currentStn.insertStationInDB();
-                        }
+    private Map<String, String> getRowParams(int index){
+        HashMap<String,String> hashMap = new HashMap<String, String>();
+        hashMap.put(DatabaseHelper.stationName,(stationNameData.get(index) == null)? "" : stationNameData.get(index));
+        hashMap.put(DatabaseHelper.mmsi,(mmsiData.get(index) == null)? "" : mmsiData.get(index).toString());
+
+        return hashMap;
+    }
+
+    /**
+     * Pulls the {@value DatabaseHelper#stationListTable} Table from the Sync Server with a {@link ShadowTablePull}.
+     * The rows are inserted in to a shadow table while the XML response is parsed and replace the rows of the
+     * {@link DatabaseHelper#stationListTable} Table in one transaction once the whole response has been read. If the Sync Server answers with the changes since the version last pulled, only the changed rows are replaced and the deleted rows removed.
+     * If the pull fails the local tables are left unchanged. {@link #dataPullCompleted} is set to <code>true</code> when the rows have been replaced.
+     * @param callback called once the pull has finished or failed
+     */
+    public void onClickStationListPullButton(final SyncCallback callback){
+        ShadowTablePull pullRequest = new ShadowTablePull(mContext, pullURL, DatabaseHelper.stationListTable, PULLED_COLUMNS, DatabaseHelper.mmsi,
+                new Response.Listener<Integer>() {
+                    @Override
+                    public void onResponse(Integer rows) {
                         dataPullCompleted = true;
+                        callback.onSyncFinished(true);
                         Toast.makeText(mContext, "Data Pulled from Server", Toast.LENGTH_SHORT).show();
-                    } catch (XmlPullParserException e) {
-                        Log.d(TAG, "Error Parsing XML");
-                        e.printStackTrace();
-                    } catch (IOException e) {
-                        Log.d(TAG, "IOException from Parser");
-                        e.printStackTrace();
                     }
-                }
-            }, new Response.ErrorListener() {
-                @Override
-                public void onErrorResponse(VolleyError error) {
-
-                }
-            });
-
-            requestQueue.add(pullRequest);
-
-        } catch (SQLException e){
-            Log.d(TAG, "Database Error");
-            e.printStackTrace();
-        }
-
+                }, new Response.ErrorListener() {
+                    @Override
+                    public void onErrorResponse(VolleyError error) {
+                        Log.d(TAG, "Error Pulling Data: " + error.getCause());
+                        callback.onSyncFinished(false);
+                    }
+                });
+        requestQueue.add(pullRequest);
     }
 
     public boolean getDataCompleted(){
@@ -301,51 +288,37 @@ public class StationListSync {
      */
     public void setBaseUrl(String baseUrl, String port){
         URL = "http://" + baseUrl + ":" + port + "/StationList/pullStations.php";
+        batchURL = "http://" + baseUrl + ":" + port + "/StationList/pullStationsBatch.php";
         pullURL = "http://" + baseUrl + ":" + port + "/StationList/pushStations.php";
         deleteURL = "http://" + baseUrl + ":" + port + "/StationList/deleteStations.php";
 
     }
 
     /**
-     * Reads the {@value DatabaseHelper#stationListDeletedTable} Table and inserts the data from all the Columns of the
-     * {@value DatabaseHelper#stationListDeletedTable} Table in to their respective {@link HashMap}.
-     * @throws SQLiteException In case of error in reading database
-     * After reading the data, it creates string requests to forward the data to the server
-     * This facilitates the server to know which MMSI's should be marked for deletion since these stations are no longer used.
+     * Sets the number of rows pushed to the Sync Server in one request
+     * @param rowsPerRequest rows per request of the batched push, or 0 to push every row with its own request
+     * @see de.awi.floenavigation.helperclasses.DatabaseHelper#sync_batch_size
+     */
+    public void setRowsPerRequest(int rowsPerRequest){
+        this.rowsPerRequest = rowsPerRequest;
+    }
+
+    /**
+     * Reads the keys of the rows of the {@value DatabaseHelper#stationListTable} Table which have been deleted since the last
+     * acknowledged push from the {@link DatabaseHelper#changeJournalTable} and creates a request for each of them, so that the
+     * Sync Server deletes the same rows and removes them from the other tablets.
      */
     private void sendSLDeleteRequest(){
-        Cursor deletedStationListCursor = null;
         try{
             dbHelper = DatabaseHelper.getDbInstance(mContext);
             db = dbHelper.getReadableDatabase();
-            deletedStationListCursor = db.query(DatabaseHelper.stationListDeletedTable,
-                    null,
-                    null,
-                    null,
-                    null, null, null);
-            int i = 0;
-            if(deletedStationListCursor.moveToFirst()){
-                do{
-                    deletedStationListData.put(i, deletedStationListCursor.getInt(deletedStationListCursor.getColumnIndexOrThrow(DatabaseHelper.mmsi)));
-                    Log.d(TAG, "MMSI to be Deleted: " + deletedStationListCursor.getInt(deletedStationListCursor.getColumnIndexOrThrow(DatabaseHelper.mmsi)));
-                    i++;
-
-                }while (deletedStationListCursor.moveToNext());
+            deletedStationListData = ChangeJournal.deletedKeys(db, DatabaseHelper.stationListTable, pushedVersion);
+            for (String deletedKey : deletedStationListData) {
+                Log.d(TAG, "MMSI to be Deleted: " + deletedKey);
             }
-            deletedStationListCursor.close();
-            /*
-            if(deletedStationListData.size() == 0){
-                requestQueue.add(pullRequest);
-            } else{
-                numOfDeleteRequests = deletedStationListData.size();
-            }*/
         } catch (SQLException e){
             Log.d(TAG, "Database Error");
             e.printStackTrace();
-        }finally {
-            if (deletedStationListCursor != null){
-                deletedStationListCursor.close();
-            }
         }
 
         for(int j = 0; j < deletedStationListData.size(); j++){
@@ -359,12 +332,15 @@ public class StationListSync {
                         if (jsonObject.names().get(0).equals("success")) {
                             //Toast.makeText(mContext, "SUCCESS " + jsonObject.getString("success"), Toast.LENGTH_SHORT).show();
                             Log.d(TAG, "SUCCESS: " + jsonObject.getString("success"));
+                            pushTracker.requestDone(true);
                         } else {
                             Toast.makeText(mContext, "Error" + jsonObject.getString("error"), Toast.LENGTH_SHORT).show();
                             Log.d(TAG, "Error: " + jsonObject.getString("error"));
+                            pushTracker.requestDone(false);
                         }
 
                     } catch (JSONException e) {
+                        pushTracker.requestDone(false);
                         e.printStackTrace();
                     }
                     /*
@@ -376,6 +352,7 @@ public class StationListSync {
             }, new Response.ErrorListener() {
                 @Override
                 public void onErrorResponse(VolleyError error) {
+                    pushTracker.requestDone(false);
 
                 }
             }){
@@ -388,6 +365,7 @@ public class StationListSync {
                     return hashMap;
                 }
             };
+            pushTracker.requestAdded();
             requestQueue.add(request);
 
         }
@@ -7,7 +7,6 @@ import android.database.Cursor;
 import android.database.DatabaseUtils;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
-import android.database.sqlite.SQLiteException;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.util.Log;
@@ -16,33 +15,22 @@ import android.widget.Button;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import com.android.volley.AuthFailureError;
 import com.android.volley.Request;
 import com.android.volley.RequestQueue;
-import com.android.volley.Response;
-import com.android.volley.VolleyError;
 import com.android.volley.toolbox.StringRequest;
 import com.android.volley.toolbox.Volley;
 
-import org.json.JSONException;
-import org.json.JSONObject;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlPullParserFactory;
 
 import java.io.IOException;
 import java.net.InetAddress;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.List;
 
 import de.awi.floenavigation.admin.AdminPageActivity;
-import de.awi.floenavigation.services.AlphaCalculationService;
-import de.awi.floenavigation.services.AngleCalculationService;
 import de.awi.floenavigation.helperclasses.DatabaseHelper;
 import de.awi.floenavigation.dashboard.MainActivity;
-import de.awi.floenavigation.services.PredictionService;
 import de.awi.floenavigation.R;
 import de.awi.floenavigation.services.ValidationService;
 import de.awi.floenavigation.aismessages.AISMessageReceiver;
@@ -52,7 +40,9 @@ import de.awi.floenavigation.initialsetup.SetupActivity;
  * This Activity runs the Synchronization Process between the App and the Sync Server. The Activity uses a separate Sync Class for each
  * object which is to be synchronized. A Java {@link RequestQueue} is created and {@link StringRequest}s are added to the Request Queue
  * to push and Pull the Data from the Server. The Synchronization process is Asynchronous which means that each Sync Class's Push and Pull method run
- * asynchronously and the Synchronization is not done in a specific order.
+ * asynchronously. The Sync Classes and the steps in which they push and pull the tables are held by a {@link SyncSession}, whose
+ * {@link SyncOrchestrator} starts a table once the tables it depends on are done, for example the Fixed Stations after the Base Stations,
+ * and runs at most {@link SyncSession#MAX_PARALLEL_TABLES} tables at the same time. The Activity shows the progress of each table.
  * The Activity is configured to read the data from the Database tables and push the data to the Sync Server on pressing the Start button on
  * the UI and then clearing the local Database tables and pulling fresh data from the Sync Server on Pressing the Pull Button on the UI.
  * <p>
@@ -87,58 +77,10 @@ public class SyncActivity extends Activity {
     private XmlPullParser parser;
 
     /**
-     * Sync Class used for Synchronizing {@link Users}s.
-     * @see UsersSync
+     * Sync Objects of all synchronized tables and the steps in which they are pushed and pulled
+     * @see SyncSession
      */
-    private UsersSync usersSync;
-
-    /**
-     * Sync Class used for Synchronizing {@link FixedStation}s.
-     * @see FixedStationSync
-     */
-    private FixedStationSync fixedStationSync;
-
-    /**
-     * Sync Class used for Synchronizing {@link StationList}s.
-     * @see StationListSync
-     */
-    private StationListSync stationListSync;
-
-    /**
-     * Sync Class used for Synchronizing {@link Waypoints}s.
-     * @see WaypointsSync
-     */
-    private WaypointsSync waypointsSync;
-
-    /**
-     * Sync Class used for Synchronizing {@link BaseStation}s.
-     * @see BaseStationSync
-     */
-    private BaseStationSync baseStationSync;
-
-    /**
-     * Sync Class used for Synchronizing {@link ConfigurationParameter}s.
-     * @see ConfigurationParameterSync
-     */
-    private ConfigurationParameterSync parameterSync;
-
-    /**
-     * Sync Class used for Synchronizing {@link Beta}.
-     * @see BetaSync
-     */
-    private BetaSync betaSync;
-
-    /**
-     * Sync Class used for Synchronizing {@link SampleMeasurement}s.
-     * @see SampleMeasurementSync
-     */
-    private SampleMeasurementSync sampleSync;
-
-    /**
-     * Sync Class used for Synchronizing {@link StaticStation}s.
-     * @see StaticStationSync
-     */
-    private StaticStationSync staticStationSync;
+    private SyncSession session;
 
 
     private DatabaseHelper dbHelper;
@@ -166,6 +108,18 @@ public class SyncActivity extends Activity {
      */
     private String port;
 
+    /**
+     * Number of rows pushed to the Sync Server in one request. It is set to the value of {@link DatabaseHelper#sync_batch_size}.
+     * If it is 0 every row is pushed with its own request.
+     */
+    private int rowsPerRequest = 0;
+
+    /**
+     * <code>true</code> if the batched push and the pulls use the binary encoding of the {@link SyncBinaryCodec}. It is set to the
+     * value of {@link DatabaseHelper#sync_binary_encoding}.
+     */
+    private boolean binaryEncoding = false;
+
     /**
      * <code>true</code> when the Push to the Sync Server is completed.
      */
@@ -180,19 +134,12 @@ public class SyncActivity extends Activity {
      */
     boolean isPullCompleted = false;
 
-    public long numOfBaseStations;
-
     /**
-     * Stores {@link DatabaseHelper#stationName} of all {@link DatabaseHelper#mobileStationTable}.
-     * Use only when Mobile Stations are also synchronized.
+     * <code>true</code> if the Services were not running and the coordinate system could not be pulled, so they have not been started.
      */
-    private HashMap<Integer, String> stationNameData = new HashMap<>();
+    private boolean coordinateSystemMissing = false;
 
-    /**
-     * Stores {@link DatabaseHelper#mmsi} of all {@link DatabaseHelper#mobileStationTable}.
-     * Use only when Mobile Stations are also synchronized.
-     */
-    private HashMap<Integer, Integer> mmsiData = new HashMap<>();
+    public long numOfBaseStations;
 
     /**
      * Current Application Context
@@ -202,7 +149,7 @@ public class SyncActivity extends Activity {
     /**
      * Default onCreate method of the Activity. Creates the {@link RequestQueue} and {@link XmlPullParser}.
      * Reads the {@link DatabaseHelper#sync_server_hostname} and {@link DatabaseHelper#sync_server_port} from the local Database.
-     * Initializes the Sync Objects by passing them the created {@link RequestQueue}  and {@link XmlPullParser} and then waits for User
+     * Creates the {@link SyncSession} with the created {@link RequestQueue}  and {@link XmlPullParser} and then waits for User
      * to push the Start Synchronization button.
      * @param savedInstanceState
      * @throws XmlPullParserException
@@ -222,31 +169,23 @@ public class SyncActivity extends Activity {
         setContentView(R.layout.activity_sync);
         waitingMsg = findViewById(R.id.syncWaitingMsg);
         readParamsfromDatabase();
-        usersSync = new UsersSync(this, requestQueue, parser);
-        fixedStationSync = new FixedStationSync(this, requestQueue, parser);
-        stationListSync = new StationListSync(this, requestQueue, parser);
-        waypointsSync = new WaypointsSync(this, requestQueue, parser);
-        baseStationSync = new BaseStationSync(this, requestQueue, parser);
-        parameterSync = new ConfigurationParameterSync(this, requestQueue, parser);
-        betaSync = new BetaSync(this, requestQueue, parser);
-        sampleSync = new SampleMeasurementSync(this, requestQueue, parser);
-        staticStationSync = new StaticStationSync(this, requestQueue, parser);
+        session = new SyncSession(this, requestQueue, parser);
     }
 
     /**
      * Callback function for Start Sync Button.
      * Reads the Sync Server parameters from the database and tries to ping the Sync Server. If ping fails it displays an error message and
-     * and the Synchronization process is not run. If Sync Server is available it changes the Screen layout, stops the background {@link de.awi.floenavigation.services}s,
-     * and checks if the coordinate system is initialized.
+     * and the Synchronization process is not run. If Sync Server is available it changes the Screen layout and checks if the coordinate
+     * system is initialized. The background {@link de.awi.floenavigation.services}s and the AIS decoding keep running during the
+     * Synchronization, so the stations are tracked all the time.
      *
      * The NavigationBar at the bottom of the screen and the hard back button are disabled during this process.
      * <p>
-     *     If the Coordinate System is already setup the {@link DatabaseHelper#mobileStationTable} is cleared and the data for the other tables
-     *     is read from the local database and pushed in to the {@link RequestQueue} using the individual Sync Objects for each table.
-     *     The Screen Layout is changed to show a waiting view with a Pull Button and {@link #isPushCompleted} is set to <code>true</code> and {@link #isPullCompleted} is set to <code>false</code>.
+     *     If the Coordinate System is already setup the tables are pushed by {@link #pushDatatoServer()}, which shows the Pull Button once every
+     *     table has been pushed.
      *
-     *     If the Coordinate System is not setup, the Push process is skipped and the App tries to pull the data from the Sync Server. The Screen Layout is changed
-     *     to show a Finish button and {@link #isPushCompleted} is set to <code>false</code> and {@link #isPullCompleted} is set to <code>true</code>.
+     *     If the Coordinate System is not setup, the Push process is skipped and the App pulls the data from the Sync Server with
+     *     {@link #pullDatafromServer()}, which shows the Finish button once every table has been pulled.
      * </p>
      *
      * @param view
@@ -263,83 +202,13 @@ public class SyncActivity extends Activity {
                 findViewById(R.id.syncWaitingView).setVisibility(View.VISIBLE);
                 msg = "Contacting Server....";
                 waitingMsg.setText(msg);
-                msg = "Stopping Services and Clearing Metadata";
-                waitingMsg.setText(msg);
                 //clearMobileStationTable();
-                setBaseUrl(hostname, port);
-                stopServices();
+                session.setServer(hostname, port, rowsPerRequest, binaryEncoding);
                 if (numOfBaseStations == 2) {
-                    readMobileStations();
-                    sendMobileStations();
-                    clearMobileStationTable();
-                    msg = "Reading Fixed Stations from Database and Pushing it to the Server";
-                    waitingMsg.setText(msg);
-                    fixedStationSync.onClickFixedStationReadButton();
-                    fixedStationSync.onClickFixedStationSyncButton();
-
-                    msg = "Reading Base Stations from Database and Pushing it to the Server";
-                    waitingMsg.setText(msg);
-                    baseStationSync.onClickBaseStationReadButton();
-                    baseStationSync.onClickBaseStationSyncButton();
-
-                    msg = "Reading AIS Station List from Database and Pushing it to the Server";
-                    waitingMsg.setText(msg);
-                    stationListSync.onClickStationListReadButton();
-                    stationListSync.onClickStationListSyncButton();
-
-                    msg = "Reading Beta Table from Database and Pushing it to the Server";
-                    waitingMsg.setText(msg);
-                    betaSync.onClickBetaReadButton();
-                    betaSync.onClickBetaSyncButton();
-
-                    msg = "Reading Users from Database and Pushing it to the Server";
-                    waitingMsg.setText(msg);
-                    usersSync.setBaseUrl(hostname, port);
-                    usersSync.onClickUserReadButton();
-                    usersSync.onClickUserSyncButton();
-
-                    msg = "Reading Samples from Database and Pushing it to the Server";
-                    waitingMsg.setText(msg);
-                    sampleSync.onClickSampleReadButton();
-                    sampleSync.onClickSampleSyncButton();
-
-                    msg = "Reading Static Stations from Database and Pushing it to the Server";
-                    waitingMsg.setText(msg);
-                    staticStationSync.onClickStaticStationReadButton();
-                    staticStationSync.onClickStaticStationSyncButton();
-
-                    msg = "Reading Waypoints from Database and Pushing it to the Server";
-                    waitingMsg.setText(msg);
-                    waypointsSync.onClickWaypointsReadButton();
-                    waypointsSync.onClickWaypointsSyncButton();
-
-                    msg = "Reading Configuration Parameters from Database and Pushing it to the Server";
-                    waitingMsg.setText(msg);
-                    parameterSync.onClickParameterReadButton();
-                    parameterSync.onClickParameterSyncButton();
-
-                    //findViewById(R.id.syncProgressBar).setVisibility(View.GONE);
-                    msg = "Push to Server Completed. Press Pull from Server only after Pushing Data from all tablets to the Server";
-                    waitingMsg.setText(msg);
-                    Button confirmBtn = findViewById(R.id.syncFinishBtn);
-                    confirmBtn.setVisibility(View.VISIBLE);
-                    confirmBtn.setClickable(true);
-                    confirmBtn.setEnabled(true);
-                    isPushCompleted = true;
-                    isPullCompleted = false;
+                    pushDatatoServer();
                 } else {
                     //Pull Request only
                     pullDatafromServer();
-                    isPullCompleted = true;
-                    isPushCompleted = false;
-                    Button confirmBtn = findViewById(R.id.syncFinishBtn);
-                    confirmBtn.setVisibility(View.VISIBLE);
-                    confirmBtn.setClickable(true);
-                    confirmBtn.setEnabled(true);
-                    confirmBtn.setText(R.string.syncFinish);
-                    msg = "Sync Completed";
-                    waitingMsg.setText(msg);
-                    findViewById(R.id.syncProgressBar).setVisibility(View.GONE);
                 }
 
             } else {
@@ -358,50 +227,6 @@ public class SyncActivity extends Activity {
 
     }
 
-    /**
-     * Function to stop the background services and sets {@link MainActivity#areServicesRunning} to false.
-     */
-    private void stopServices(){
-        AlphaCalculationService.stopTimer(true);
-        AISMessageReceiver.setStopDecoding(true);
-        AngleCalculationService.setStopRunnable(true);
-        PredictionService.setStopRunnable(true);
-        ValidationService.setStopRunnable(true);
-        MainActivity.areServicesRunning = false;
-    }
-
-    /**
-     * Clears the {@link DatabaseHelper#mobileStationTable} Table.
-     */
-    private void clearMobileStationTable(){
-        try {
-            dbHelper = DatabaseHelper.getDbInstance(this);
-            db = dbHelper.getReadableDatabase();
-            db.execSQL("Delete from " + DatabaseHelper.mobileStationTable);
-        } catch (SQLException e){
-            Log.d(TAG, "Error Clearing Mobile Station Database");
-            Toast.makeText(this, "Error Clearing Mobile Station Database", Toast.LENGTH_SHORT).show();
-            e.printStackTrace();
-        }
-    }
-
-    /**
-     * Sets the Base URLs for pushing, pulling and deleting data on the Sync Server.
-     * @param host the hostname/IP of the Sync Serer
-     * @param port the port used by the Sync Server
-     */
-    private void setBaseUrl(String host, String port){
-        fixedStationSync.setBaseUrl(host, port);
-        baseStationSync.setBaseUrl(host, port);
-        stationListSync.setBaseUrl(host, port);
-        betaSync.setBaseUrl(host, port);
-        usersSync.setBaseUrl(host, port);
-        waypointsSync.setBaseUrl(host, port);
-        staticStationSync.setBaseUrl(host, port);
-        sampleSync.setBaseUrl(host, port);
-        parameterSync.setBaseUrl(host, port);
-    }
-
     /**
      * Checks if the Sync Server is reachable on the network.
      * @param host the hostname/IP of the Sync Server
@@ -448,7 +273,8 @@ public class SyncActivity extends Activity {
     }
 
     /**
-     *  Reads the {@link DatabaseHelper#sync_server_hostname} and {@link DatabaseHelper#sync_server_port} from the local Database.
+     *  Reads the {@link DatabaseHelper#sync_server_hostname}, {@link DatabaseHelper#sync_server_port}, {@link DatabaseHelper#sync_batch_size}
+     *  and {@link DatabaseHelper#sync_binary_encoding} from the local Database.
      */
     private boolean readParamsfromDatabase(){
         Cursor parameterCursor = null;
@@ -458,8 +284,9 @@ public class SyncActivity extends Activity {
             String parameterName;
             parameterCursor = db.query(DatabaseHelper.configParametersTable,
                     new String[] {DatabaseHelper.parameterName, DatabaseHelper.parameterValue},
-                    DatabaseHelper.parameterName + " = ? OR " + DatabaseHelper.parameterName + " = ?" ,
-                    new String[] {DatabaseHelper.sync_server_hostname, DatabaseHelper.sync_server_port},
+                    DatabaseHelper.parameterName + " IN (?, ?, ?, ?)",
+                    new String[] {DatabaseHelper.sync_server_hostname, DatabaseHelper.sync_server_port, DatabaseHelper.sync_batch_size,
+                            DatabaseHelper.sync_binary_encoding},
                     null, null, null);
 
                 if(parameterCursor.moveToFirst()){
@@ -473,6 +300,14 @@ public class SyncActivity extends Activity {
                             case DatabaseHelper.sync_server_port:
                                 port = parameterCursor.getString(parameterCursor.getColumnIndexOrThrow(DatabaseHelper.parameterValue));
                                 break;
+
+                            case DatabaseHelper.sync_batch_size:
+                                rowsPerRequest = parameterCursor.getInt(parameterCursor.getColumnIndexOrThrow(DatabaseHelper.parameterValue));
+                                break;
+
+                            case DatabaseHelper.sync_binary_encoding:
+                                binaryEncoding = parameterCursor.getInt(parameterCursor.getColumnIndexOrThrow(DatabaseHelper.parameterValue)) == 1;
+                                break;
                         }
                     } while (parameterCursor.moveToNext());
                 }
@@ -492,214 +327,185 @@ public class SyncActivity extends Activity {
 
     /**
      * Callback function for Start Pull from Server Button.
-     * If data has already been push to the RequestQueue, it starts adding the Pull requests to the RequestQueue and changes the layout to display the finish
-     * button.
-     * If Pull Requests have already been added to the the RequestQueue, that means the synchronization process is complete and it restarts the
-     * background Services and returns to the {@link AdminPageActivity}.
+     * If every table has been pushed, it hides the button and starts pulling the tables from the Sync Server with {@link #pullDatafromServer()}.
+     * If every table has been pulled, the synchronization process is complete and it returns to the {@link AdminPageActivity}. The background
+     * Services have already been restarted once the tables they need were pulled.
      * @param view
      */
     public void onClickProgressBarButton(View view) {
 
         if(isPushCompleted){
-            pullDatafromServer();
-            Button finishBtn = findViewById(R.id.syncFinishBtn);
-            finishBtn.setText(R.string.syncFinish);
-            msg = "Sync Completed";
-            waitingMsg.setText(msg);
-            findViewById(R.id.syncProgressBar).setVisibility(View.GONE);
-            isPullCompleted = true;
             isPushCompleted = false;
-        }
-
-        if(isPullCompleted){
+            Button pullBtn = findViewById(R.id.syncFinishBtn);
+            pullBtn.setVisibility(View.GONE);
+            pullBtn.setEnabled(false);
+            pullDatafromServer();
+        } else if(isPullCompleted){
 
             isPullCompleted = false;
-            new RestartServices().execute();
             Intent configActivity = new Intent(this, AdminPageActivity.class);
             startActivity(configActivity);
         }
     }
 
     /**
-     * Clears the local database and starts adding the Pull requests to the {@link #requestQueue} for each database table which is to be synced.
+     * Reads the tables from the local database with {@link ReadSnapshot} and then pushes them with {@link #pushTables()}.
      */
-    private void pullDatafromServer(){
-
-        msg = "Clearing Database and Pulling Fixed Stations from the Server";
-        waitingMsg.setText(msg);
-        fixedStationSync.onClickFixedStationPullButton();
-
-
-        msg = "Clearing Database and Pulling Base Stations from the Server";
-        waitingMsg.setText(msg);
-        baseStationSync.onClickBaseStationPullButton();
-
-
-        msg = "Clearing Database and Pulling AIS Station List from the Server";
+    private void pushDatatoServer(){
+        msg = "Reading the Tables....";
         waitingMsg.setText(msg);
-        stationListSync.onClickStationListPullButton();
-
-
-        msg = "Clearing Database and Pulling Beta from the Server";
-        waitingMsg.setText(msg);
-        betaSync.onClickBetaPullButton();
-
-
-
-        msg = "Clearing Database and Pulling Users from the Server";
-        waitingMsg.setText(msg);
-        usersSync.onClickUserPullButton();
-
-
-
-        msg = "Clearing Database and Pulling Device List from the Server";
-        waitingMsg.setText(msg);
-        sampleSync.onClickDeviceListPullButton();
-
-
-        msg = "Clearing Database and Pulling Static Stations from the Server";
-        waitingMsg.setText(msg);
-        staticStationSync.onClickStaticStationPullButton();
-
-
-        msg = "Clearing Database and Pulling Waypoints from the Server";
-        waitingMsg.setText(msg);
-        waypointsSync.onClickWaypointsPullButton();
-
-
-        msg = "Clearing Database and Pulling Configuration Parameters from the Server";
-        waitingMsg.setText(msg);
-        parameterSync.onClickParameterPullButton(numOfBaseStations);
+        new ReadSnapshot().execute();
     }
 
     /**
-     * Reads the {@value DatabaseHelper#mobileStationTable} Table and inserts the data from all the Columns of the
-     * {@value DatabaseHelper#mobileStationTable} Table in to their respective {@link HashMap}.
-     * @throws SQLiteException In case of error in reading database.
+     * Pushes the tables read by {@link SyncSession#readSnapshot()} to the Sync Server with
+     * {@link SyncSession#createPush(SyncOrchestrator.Listener)}. Once every table has been pushed the Pull Button is shown and {@link #isPushCompleted} is set to <code>true</code>.
      */
-    public void readMobileStations(){
-        Cursor mobileStationCursor = null;
-        try{
-            int i = 0;
-            dbHelper = DatabaseHelper.getDbInstance(mContext);
-            db = dbHelper.getReadableDatabase();
-            mobileStationCursor = db.query(DatabaseHelper.mobileStationTable,
-                    null,
-                    null,
-                    null,
-                    null, null, null);
-            if(mobileStationCursor.moveToFirst()){
-                do{
-                    stationNameData.put(i, mobileStationCursor.getString(mobileStationCursor.getColumnIndexOrThrow(DatabaseHelper.stationName)));
-                    mmsiData.put(i, mobileStationCursor.getInt(mobileStationCursor.getColumnIndexOrThrow(DatabaseHelper.mmsi)));
+    private void pushTables(){
+        SyncOrchestrator orchestrator = session.createPush(new ProgressListener("Pushing") {
+            @Override
+            public void onAllStepsFinished(long elapsedMillis, int failed) {
+                super.onAllStepsFinished(elapsedMillis, failed);
+                msg = "Push to Server Completed. Press Pull from Server only after Pushing Data from all tablets to the Server";
+                if (failed > 0) {
+                    msg += "\n" + failed + " tables could not be pushed, their local data is kept and pushed again with the next Sync";
+                }
+                SyncOutbox.Statistics outbox = SyncOutbox.getInstance(mContext).getStatistics();
+                Log.d(TAG, "Outbox: " + outbox);
+                if (outbox.queueLength > 0) {
+                    msg += "\n" + outbox.queueLength + " batches are waiting for the Server and are sent again in the background";
+                }
+                waitingMsg.setText(msg);
+                Button confirmBtn = findViewById(R.id.syncFinishBtn);
+                confirmBtn.setVisibility(View.VISIBLE);
+                confirmBtn.setClickable(true);
+                confirmBtn.setEnabled(true);
+                isPushCompleted = true;
+                isPullCompleted = false;
+            }
+        });
+        orchestrator.start();
+    }
 
-                    i++;
+    /**
+     * Reads the snapshot of the tables with {@link SyncSession#readSnapshot()} on a worker thread, as reading large tables takes too
+     * long for the UI thread, and pushes them with {@link #pushTables()} once they have been read.
+     */
+    private class ReadSnapshot extends AsyncTask<Void, Void, Void>{
 
-                }while (mobileStationCursor.moveToNext());
-            }
-            mobileStationCursor.close();
-            Toast.makeText(mContext, "Read Completed from DB", Toast.LENGTH_SHORT).show();
-        } catch (SQLiteException e){
-            Log.d(TAG, "Database Error");
-            e.printStackTrace();
-        }finally {
-            if (mobileStationCursor != null){
-                mobileStationCursor.close();
-            }
+        @Override
+        protected Void doInBackground(Void... voids) {
+            session.readSnapshot();
+            return null;
         }
 
+        @Override
+        protected void onPostExecute(Void result){
+            pushTables();
+        }
     }
 
     /**
-     * Creates {@link StringRequest}s as per the size of {@link #mmsiData} data extracted from the local database and inserts all the requests in the {@link RequestQueue}
-     * A Stringrequest for pushing the data is registered and added to the {@link #requestQueue}.
-     * callback function {@link Response.Listener#onResponse(Object)} notifies whether the request was successful or not
-     * If it is unsuccessful or the connection is not established {@link Response.Listener#error(VolleyError)} gets called
+     * Pulls the tables from the Sync Server, each with its Sync Object, in the same order as {@link #pushDatatoServer()}.
+     * Every table is parsed before it is swapped in with a short transaction by {@link ShadowTablePull}, so the background Services keep
+     * running. As soon as the Base Stations, the Fixed Stations, the AIS Station List and the Beta Table have been pulled, the
+     * {@link ValidationService} loads the pulled Fixed Stations, or the Services are started if they were not running, for example on
+     * a tablet set up by this pull. The Services are only started if all four tables were pulled and there are at least
+     * {@value DatabaseHelper#INITIALIZATION_SIZE} Base Stations, otherwise the user is told that the coordinate system could not be
+     * pulled. The Device List is only pulled if the Samples have been pushed, see {@link SyncSession}. Once every table has been
+     * pulled the Finish button is shown and {@link #isPullCompleted} is set to <code>true</code>.
      */
-    public void sendMobileStations(){
-        for(int i = 0; i < mmsiData.size(); i++){
-            final int index = i;
-            StringRequest request;
-            String URL = "http://192.168.137.1:80/pullMobileStation.php";
-            request = new StringRequest(Request.Method.POST, URL, new Response.Listener<String>() {
-
-                @Override
-                public void onResponse(String response) {
-                    try {
-                        JSONObject jsonObject = new JSONObject(response);
-                        if (jsonObject.names().get(0).equals("success")) {
-                            //Toast.makeText(mContext, "SUCCESS " + jsonObject.getString("success"), Toast.LENGTH_SHORT).show();
-                            Log.d(TAG, "SUCCESS: " + jsonObject.getString("success"));
-                        } else {
-                            Toast.makeText(mContext, "Error" + jsonObject.getString("error"), Toast.LENGTH_SHORT).show();
-                            Log.d(TAG, "Error: " + jsonObject.getString("error"));
-                        }
-
-                    } catch (JSONException e) {
-                        e.printStackTrace();
+    private void pullDatafromServer(){
+        coordinateSystemMissing = false;
+        SyncOrchestrator orchestrator = session.createPull(numOfBaseStations, new ProgressListener("Pulling") {
+            @Override
+            public void onRequiredStepsFinished(boolean success) {
+                if (MainActivity.areServicesRunning) {
+                    if (success) {
+                        Log.d(TAG, "Pull Requests Completed. Reloading Fixed Stations");
+                        ValidationService.reloadFixedStations();
+                    } else {
+                        Log.d(TAG, "Pull Requests Failed. Keeping the loaded Fixed Stations");
                     }
-
-
+                } else if (success && session.countRows(DatabaseHelper.baseStationTable) >= DatabaseHelper.INITIALIZATION_SIZE) {
+                    Log.d(TAG, "Pull Requests Completed. Starting Services");
+                    AISMessageReceiver.setStopDecoding(false);
+                    SetupActivity.runServices(mContext);
+                } else {
+                    Log.d(TAG, "Coordinate System could not be pulled. Services not started");
+                    coordinateSystemMissing = true;
+                    Toast.makeText(mContext, "The Coordinate System could not be pulled from the Server", Toast.LENGTH_LONG).show();
                 }
-            }, new Response.ErrorListener() {
-                @Override
-                public void onErrorResponse(VolleyError error) {
+            }
 
+            @Override
+            public void onAllStepsFinished(long elapsedMillis, int failed) {
+                super.onAllStepsFinished(elapsedMillis, failed);
+                msg = "Sync Completed";
+                if (failed > 0) {
+                    msg += "\n" + failed + " tables could not be pulled, their local data is kept";
                 }
-            }){
-                @Override
-                protected Map<String, String> getParams() throws AuthFailureError {
-
-                    HashMap<String,String> hashMap = new HashMap<String, String>();
-                    hashMap.put(DatabaseHelper.stationName,(stationNameData.get(index) == null)? "" : stationNameData.get(index));
-                    hashMap.put(DatabaseHelper.mmsi,(mmsiData.get(index) == null)? "" : mmsiData.get(index).toString());
-
-                    return hashMap;
+                if (coordinateSystemMissing) {
+                    msg += "\nThe Coordinate System could not be pulled, please Synchronize again";
                 }
-            };
-            requestQueue.add(request);
-
-        }
-        //sendSLDeleteRequest();
+                if (session.areSamplesKept()) {
+                    msg += "\nThe Samples could not be pushed and are kept, please Synchronize again";
+                }
+                waitingMsg.setText(msg);
+                findViewById(R.id.syncProgressBar).setVisibility(View.GONE);
+                Button finishBtn = findViewById(R.id.syncFinishBtn);
+                finishBtn.setText(R.string.syncFinish);
+                finishBtn.setVisibility(View.VISIBLE);
+                finishBtn.setClickable(true);
+                finishBtn.setEnabled(true);
+                isPullCompleted = true;
+                isPushCompleted = false;
+            }
+        });
+        orchestrator.start();
     }
 
     /**
-     * Async Task for restarting the Background services. It checks if the Pull requests have been added to the {@link #requestQueue} before starting the Services.
+     * Shows the progress of a {@link SyncOrchestrator} in {@link #waitingMsg} and logs the time taken by each table.
      */
-    private class RestartServices extends AsyncTask<Void,Void,Void> {
+    private class ProgressListener implements SyncOrchestrator.Listener {
 
-        Timer timer = new Timer();
-        private final int TIMER_PERIOD = 10 * 1000;
-        private final int TIMER_DELAY = 0;
+        /**
+         * Shown before the name of the table, for example "Pushing"
+         */
+        private final String action;
 
+        ProgressListener(String action){
+            this.action = action;
+        }
 
         @Override
-        protected void onPreExecute(){
-
+        public void onStepStarted(String name, int finished, int total) {
+            msg = action + " " + name + " (" + finished + " of " + total + " tables done)";
+            waitingMsg.setText(msg);
         }
 
         @Override
-        protected Void doInBackground(Void... voids) {
-
-            timer.schedule(new TimerTask() {
-                @Override
-                public void run() {
-                    if(baseStationSync.getDataCompleted() && fixedStationSync.getDataCompleted() && betaSync.getDataCompleted() && stationListSync.getDataCompleted() ){
-                        Log.d(TAG, "Pull Requests Completed. Starting Services");
-                        AISMessageReceiver.setStopDecoding(false);
-                        SetupActivity.runServices(mContext);
-
-                        timer.cancel();
-
-                    } else{
-                        Log.d(TAG, "Pull not Completed yet.");
-                    }
-                }
-            }, TIMER_DELAY, TIMER_PERIOD);
+        public void onStepFinished(String name, boolean success, long elapsedMillis, int finished, int total) {
+            Log.d(TAG, action + " " + name + (success ? " completed in " : " failed after ") + elapsedMillis + " ms");
+            msg = action + ": " + finished + " of " + total + " tables done";
+            waitingMsg.setText(msg);
+        }
 
-            return null;
+        @Override
+        public void onStepSkipped(String name, String failedDependency, int finished, int total) {
+            Log.d(TAG, action + " " + name + " skipped as " + failedDependency + " failed");
+            msg = action + ": " + finished + " of " + total + " tables done";
+            waitingMsg.setText(msg);
+        }
 
+        @Override
+        public void onRequiredStepsFinished(boolean success) {
         }
 
+        @Override
+        public void onAllStepsFinished(long elapsedMillis, int failed) {
+            Log.d(TAG, action + " all tables took " + elapsedMillis + " ms, " + failed + " failed");
+        }
     }
 }
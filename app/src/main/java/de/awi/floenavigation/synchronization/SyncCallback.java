@@ -0,0 +1,14 @@
+package de.awi.floenavigation.synchronization;
+
+/**
+ * Receives the end of the push or the pull of one table by a Sync Class, on the UI thread.
+ * @see SyncOrchestrator
+ */
+public interface SyncCallback {
+
+    /**
+     * Called once when every request of the push or the pull has been answered or has failed
+     * @param success <code>true</code> if the Sync Server has acknowledged every request
+     */
+    void onSyncFinished(boolean success);
+}
@@ -0,0 +1,363 @@
+package de.awi.floenavigation.synchronization;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs the push or the pull of the synchronized tables as a graph of steps, one step per table.
+ * <p>
+ *     A step is started once the steps it depends on have finished, for example the Fixed Stations after the Base Stations, and at
+ *     most {@link #maxParallel} steps run at the same time. A step finishes when its Sync Class calls the {@link SyncCallback} it was
+ *     started with, so nothing has to be polled. A step depending on a failed step is not started but skipped and counts as failed,
+ *     for example the Fixed Stations are not pushed without the Base Stations they were calculated from. Skipping a step also skips
+ *     the steps depending on it. The steps which do not depend on the failed step run as before.
+ * </p>
+ * <p>
+ *     The steps are started and their callbacks are expected on the UI thread, on which Volley delivers the responses, so the class
+ *     needs no locking. A step may also call its callback before its start method returns, for example if there is nothing to push.
+ * </p>
+ */
+final class SyncOrchestrator {
+
+    /**
+     * Push or pull of one table
+     */
+    interface Step {
+
+        /**
+         * Starts the push or the pull of the table
+         * @param done to be called once when the push or pull has finished
+         */
+        void start(SyncCallback done);
+    }
+
+    /**
+     * Receives the progress of the steps on the UI thread
+     */
+    interface Listener {
+
+        /**
+         * @param name name of the step which has been started
+         * @param finished number of steps finished so far
+         * @param total number of steps
+         */
+        void onStepStarted(String name, int finished, int total);
+
+        /**
+         * @param name name of the step which has finished
+         * @param success <code>true</code> if the step succeeded
+         * @param elapsedMillis time from the start of the step to its end
+         * @param finished number of steps finished so far, including this one
+         * @param total number of steps
+         */
+        void onStepFinished(String name, boolean success, long elapsedMillis, int finished, int total);
+
+        /**
+         * @param name name of the step which has not been started because a step it depends on failed or was skipped
+         * @param failedDependency name of that step
+         * @param finished number of steps finished so far, including this one
+         * @param total number of steps
+         */
+        void onStepSkipped(String name, String failedDependency, int finished, int total);
+
+        /**
+         * Called once when all the steps given to {@link #require(String...)} have finished, before the other steps may have
+         * @param success <code>true</code> if all of them succeeded
+         */
+        void onRequiredStepsFinished(boolean success);
+
+        /**
+         * @param elapsedMillis time from the start of the first step to the end of the last one
+         * @param failed number of steps which failed, including the skipped ones
+         */
+        void onAllStepsFinished(long elapsedMillis, int failed);
+    }
+
+    /**
+     * State of a step
+     */
+    private static final class Node {
+
+        /**
+         * Name of the step, also shown in the progress
+         */
+        final String name;
+        /**
+         * Push or pull of the table
+         */
+        final Step step;
+        /**
+         * Names of the steps which have to finish first
+         */
+        final List<String> dependencies;
+        /**
+         * {@link System#nanoTime()} when the step was started or skipped, -1 if it has been neither
+         */
+        long startTime = -1;
+        /**
+         * <code>true</code> once the step has finished
+         */
+        boolean finished = false;
+        /**
+         * <code>true</code> if the step has finished and succeeded
+         */
+        boolean succeeded = false;
+
+        Node(String name, Step step, List<String> dependencies){
+            this.name = name;
+            this.step = step;
+            this.dependencies = dependencies;
+        }
+    }
+
+    /**
+     * Maximum number of steps running at the same time
+     */
+    private final int maxParallel;
+    /**
+     * Receives the progress of the steps
+     */
+    private final Listener listener;
+    /**
+     * Steps in the order they were added, which is also the order in which ready steps are started
+     */
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+    /**
+     * Names of the steps after which {@link Listener#onRequiredStepsFinished(boolean)} is called
+     */
+    private final Set<String> required = new HashSet<>();
+    /**
+     * Number of steps started and not finished
+     */
+    private int running = 0;
+    /**
+     * Number of steps finished
+     */
+    private int finishedSteps = 0;
+    /**
+     * Number of steps which failed or were skipped
+     */
+    private int failedSteps = 0;
+    /**
+     * {@link System#nanoTime()} when the first step was started
+     */
+    private long startTime;
+    /**
+     * <code>true</code> once {@link Listener#onRequiredStepsFinished(boolean)} has been called
+     */
+    private boolean requiredReported = false;
+    /**
+     * <code>true</code> while {@link #startReadySteps()} runs, a callback during it only asks for another pass
+     */
+    private boolean scheduling = false;
+    /**
+     * <code>true</code> if a step has finished during {@link #startReadySteps()}
+     */
+    private boolean rescheduleNeeded = false;
+
+    /**
+     * @param maxParallel maximum number of steps running at the same time
+     * @param listener receives the progress of the steps
+     */
+    SyncOrchestrator(int maxParallel, Listener listener){
+        if (maxParallel < 1) {
+            throw new IllegalArgumentException("maxParallel must be at least 1");
+        }
+        this.maxParallel = maxParallel;
+        this.listener = listener;
+    }
+
+    /**
+     * Adds a step
+     * @param name name of the step, also shown in the progress
+     * @param step push or pull of the table
+     * @param dependencies names of the steps which have to finish first
+     */
+    void add(String name, Step step, String... dependencies){
+        if (nodes.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate step " + name);
+        }
+        nodes.put(name, new Node(name, step, Arrays.asList(dependencies)));
+    }
+
+    /**
+     * @param names steps after which {@link Listener#onRequiredStepsFinished(boolean)} is called
+     */
+    void require(String... names){
+        required.addAll(Arrays.asList(names));
+    }
+
+    /**
+     * Checks the graph and starts the steps which do not depend on other steps
+     * @throws IllegalStateException if a dependency or a required step is unknown or the dependencies form a cycle
+     */
+    void start(){
+        checkGraph();
+        startTime = System.nanoTime();
+        if (nodes.isEmpty()) {
+            reportRequired();
+            listener.onAllStepsFinished(0, 0);
+            return;
+        }
+        startReadySteps();
+    }
+
+    private void startReadySteps(){
+        if (scheduling) {
+            rescheduleNeeded = true;
+            return;
+        }
+        scheduling = true;
+        try {
+            do {
+                rescheduleNeeded = false;
+                for (Node node : nodes.values()) {
+                    if (node.startTime >= 0 || !dependenciesFinished(node)) {
+                        continue;
+                    }
+                    String failedDependency = failedDependency(node);
+                    if (failedDependency != null) {
+                        skipStep(node, failedDependency);
+                    } else if (running < maxParallel) {
+                        startStep(node);
+                    }
+                }
+            } while (rescheduleNeeded);
+        } finally {
+            scheduling = false;
+        }
+    }
+
+    private void startStep(final Node node){
+        node.startTime = System.nanoTime();
+        running++;
+        listener.onStepStarted(node.name, finishedSteps, nodes.size());
+        node.step.start(new SyncCallback() {
+            @Override
+            public void onSyncFinished(boolean success) {
+                stepFinished(node, success);
+            }
+        });
+    }
+
+    private void stepFinished(Node node, boolean success){
+        if (node.finished) {
+            return;
+        }
+        running--;
+        markFinished(node, success);
+        listener.onStepFinished(node.name, success, (System.nanoTime() - node.startTime) / 1000000, finishedSteps, nodes.size());
+        stepsChanged();
+    }
+
+    /**
+     * Finishes a step without starting it. Only called from {@link #startReadySteps()}, which then also skips the steps depending on it.
+     */
+    private void skipStep(Node node, String failedDependency){
+        node.startTime = System.nanoTime();
+        markFinished(node, false);
+        listener.onStepSkipped(node.name, failedDependency, finishedSteps, nodes.size());
+        stepsChanged();
+    }
+
+    private void markFinished(Node node, boolean success){
+        node.finished = true;
+        node.succeeded = success;
+        finishedSteps++;
+        if (!success) {
+            failedSteps++;
+        }
+    }
+
+    private void stepsChanged(){
+        if (!requiredReported && requiredFinished()) {
+            reportRequired();
+        }
+        if (finishedSteps == nodes.size()) {
+            listener.onAllStepsFinished((System.nanoTime() - startTime) / 1000000, failedSteps);
+        } else {
+            startReadySteps();
+        }
+    }
+
+    private void reportRequired(){
+        requiredReported = true;
+        boolean success = true;
+        for (String name : required) {
+            success &= nodes.get(name).succeeded;
+        }
+        listener.onRequiredStepsFinished(success);
+    }
+
+    private boolean dependenciesFinished(Node node){
+        for (String dependency : node.dependencies) {
+            if (!nodes.get(dependency).finished) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return name of a finished dependency of the step which did not succeed, <code>null</code> if there is none
+     */
+    private String failedDependency(Node node){
+        for (String dependency : node.dependencies) {
+            Node dependencyNode = nodes.get(dependency);
+            if (dependencyNode.finished && !dependencyNode.succeeded) {
+                return dependency;
+            }
+        }
+        return null;
+    }
+
+    private boolean requiredFinished(){
+        for (String name : required) {
+            if (!nodes.get(name).finished) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks that every dependency exists and that the steps can be ordered, by removing the steps without unfinished dependencies
+     * until none are left
+     */
+    private void checkGraph(){
+        for (String name : required) {
+            if (!nodes.containsKey(name)) {
+                throw new IllegalStateException("Unknown required step " + name);
+            }
+        }
+        Set<String> ordered = new HashSet<>();
+        List<Node> remaining = new ArrayList<>(nodes.values());
+        boolean progress = true;
+        while (!remaining.isEmpty() && progress) {
+            progress = false;
+            for (int i = remaining.size() - 1; i >= 0; i--) {
+                Node node = remaining.get(i);
+                boolean ready = true;
+                for (String dependency : node.dependencies) {
+                    if (!nodes.containsKey(dependency)) {
+                        throw new IllegalStateException("Unknown dependency " + dependency + " of step " + node.name);
+                    }
+                    ready &= ordered.contains(dependency);
+                }
+                if (ready) {
+                    ordered.add(node.name);
+                    remaining.remove(i);
+                    progress = true;
+                }
+            }
+        }
+        if (!remaining.isEmpty()) {
+            throw new IllegalStateException("Cyclic dependencies between the steps " + remaining.get(0).name + " and others");
+        }
+    }
+}
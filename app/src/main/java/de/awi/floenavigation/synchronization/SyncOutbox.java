@@ -0,0 +1,725 @@
+package de.awi.floenavigation.synchronization;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.widget.Toast;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.ExecutorDelivery;
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.BasicNetwork;
+import com.android.volley.toolbox.HurlStack;
+import com.android.volley.toolbox.NoCache;
+import com.android.volley.toolbox.StringRequest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import de.awi.floenavigation.helperclasses.DatabaseHelper;
+
+/**
+ * Durable queue of the batches of the batched push, kept in the {@link DatabaseHelper#syncOutboxTable}.
+ * <p>
+ *     {@link BatchPush} stores every batch in the outbox before it is sent, and a batch is only removed once the Sync Server has
+ *     acknowledged it. A batch whose request fails, or whose response cannot be read, is sent again after a delay which doubles with
+ *     every failed attempt, from {@link #INITIAL_BACKOFF_MILLIS} up to {@link #MAX_BACKOFF_MILLIS}, with a random part so that the
+ *     tablets do not retry at the same moment. Every attempt of a batch carries the same {@link SyncTransport#IDEMPOTENCY_KEY}, so the
+ *     Sync Server stores the rows of a batch once even if only its acknowledgement was lost.
+ * </p>
+ * <p>
+ *     The rows of a batch which the Sync Server rejects are kept in the outbox: the batch is replaced by a batch of only the rejected
+ *     rows, with a new {@link SyncTransport#IDEMPOTENCY_KEY}, which is retried after the delay like a failed batch. The push of the
+ *     running Sync is reported as failed at once.
+ * </p>
+ * <p>
+ *     The {@link PushTracker} of the running Sync is told about the acknowledgement of each batch. If a batch has failed
+ *     {@link #REPORTED_ATTEMPTS} times, the push is reported as failed so that the Sync does not wait for the connection, while the
+ *     batch stays in the outbox and is retried in the background. Batches left over from an earlier run of the App are sent once
+ *     {@link #drain()} is called. A new push of a table read from the {@link DatabaseHelper#changeJournalTable} replaces its batches
+ *     still waiting, since it contains every row they contain. The batches of a table are sent one after the other in the order they
+ *     were stored, so a retry of an older batch cannot overwrite the rows of a newer one on the Sync Server.
+ * </p>
+ * <p>
+ *     The outbox runs on its own thread, on which it reads and writes the outbox, waits for the next attempts and receives the
+ *     responses of its {@link RequestQueue}, so neither the retries in the background nor the Sync wait for the UI thread. The
+ *     methods called by the Sync Classes hand their work over to that thread in the order they are called. The {@link PushTracker}s
+ *     are told about their batches on the UI thread, on which the Sync Classes expect them. {@link #getStatistics()} reports the
+ *     length of the queue, the attempts and the throughput.
+ * </p>
+ */
+public final class SyncOutbox {
+
+    /**
+     * String for logging purpose
+     */
+    private static final String TAG = "SyncOutbox";
+    /**
+     * Content type of the requests of the batches stored without a content type
+     */
+    private static final String CONTENT_TYPE = "application/json; charset=utf-8";
+    /**
+     * Maximum number of batches sent at the same time, each of a different table
+     */
+    private static final int MAX_IN_FLIGHT = 2;
+    /**
+     * Delay before the first retry of a failed batch
+     */
+    private static final long INITIAL_BACKOFF_MILLIS = 2 * 1000;
+    /**
+     * Maximum delay between two attempts of a batch
+     */
+    private static final long MAX_BACKOFF_MILLIS = 5 * 60 * 1000;
+    /**
+     * Number of failed attempts of a batch after which the push of the running Sync is reported as failed
+     */
+    private static final int REPORTED_ATTEMPTS = 4;
+    /**
+     * Time after which an attempt fails if the Sync Server has not answered
+     */
+    private static final int TIMEOUT_MILLIS = 15 * 1000;
+    /**
+     * Number of network threads of the {@link #requestQueue}, one per batch in flight
+     */
+    private static final int NETWORK_THREADS = MAX_IN_FLIGHT;
+    /**
+     * Name of the thread of the outbox
+     */
+    private static final String THREAD_NAME = "SyncOutbox";
+
+    /**
+     * The single outbox of the App
+     */
+    private static SyncOutbox instance;
+
+    /**
+     * Application context used to open the database
+     */
+    private final Context context;
+    /**
+     * Queue of the requests of the outbox, separate from the queue of the {@link SyncActivity} so that the retries outlive it. Its
+     * responses are delivered on the thread of the outbox.
+     */
+    private final RequestQueue requestQueue;
+    /**
+     * Thread of the outbox, which runs every access to the outbox and waits for the next attempt
+     */
+    private final ScheduledExecutorService executor;
+    /**
+     * Handler of the UI thread, on which the {@link PushTracker}s are told about their batches and the rejected rows are shown
+     */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    /**
+     * Random part of the delay between two attempts
+     */
+    private final Random random = new Random();
+    /**
+     * Tracker of the running push of each batch, by the <code>_id</code> of the batch, until it has been told about the batch. Only
+     * used on the thread of the outbox, like {@link #inFlight}.
+     */
+    private final Map<Long, PushTracker> trackers = new HashMap<>();
+    /**
+     * <code>_id</code> of the batches being sent
+     */
+    private final Set<Long> inFlight = new HashSet<>();
+    /**
+     * Sends the batches which are due, see {@link #drain()}
+     */
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            sendDueBatches();
+        }
+    };
+    /**
+     * {@link #drainTask} waiting for the next attempt, or <code>null</code>
+     */
+    private ScheduledFuture<?> nextAttempt;
+
+    /**
+     * Number of attempts sent. The counters are written on the thread of the outbox and read by {@link #getStatistics()} while
+     * holding the lock of the outbox.
+     */
+    private long sentRequests = 0;
+    /**
+     * Number of batches acknowledged by the Sync Server
+     */
+    private long acknowledgedRequests = 0;
+    /**
+     * Number of attempts which failed and are retried
+     */
+    private long retries = 0;
+    /**
+     * Number of rows acknowledged by the Sync Server
+     */
+    private long acknowledgedRows = 0;
+    /**
+     * Number of bytes of the bodies sent
+     */
+    private long sentBytes = 0;
+    /**
+     * Time during which batches were being sent, in milliseconds
+     */
+    private long busyMillis = 0;
+    /**
+     * {@link SystemClock#elapsedRealtime()} when the batches being sent were started, -1 if none is being sent
+     */
+    private long busySince = -1;
+
+    private SyncOutbox(Context context){
+        this.context = context.getApplicationContext();
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, THREAD_NAME);
+            }
+        });
+        //Without a cache, as the batches are never cached, and with the responses delivered on the thread of the outbox
+        requestQueue = new RequestQueue(new NoCache(), new BasicNetwork(new HurlStack()), NETWORK_THREADS, new ExecutorDelivery(executor));
+        requestQueue.start();
+    }
+
+    /**
+     * @param context any context of the App
+     * @return the single outbox of the App
+     */
+    public static synchronized SyncOutbox getInstance(Context context){
+        if (instance == null) {
+            instance = new SyncOutbox(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Removes the batches of a table which are waiting to be sent, before a new push of all the changes of the table since the last
+     * acknowledged push. Only batches read from the {@link DatabaseHelper#changeJournalTable} are removed, the batches being sent are
+     * kept.
+     * @param table name of the pushed table
+     */
+    void supersede(final String table){
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                removeWaitingBatches(table);
+            }
+        });
+    }
+
+    private void removeWaitingBatches(String table){
+        Cursor cursor = null;
+        try {
+            SQLiteDatabase db = DatabaseHelper.getDbInstance(context).getWritableDatabase();
+            cursor = db.query(DatabaseHelper.syncOutboxTable, new String[]{"_id"},
+                    DatabaseHelper.journalTableName + " = ? AND " + DatabaseHelper.pushVersion + " >= 0", new String[]{table},
+                    null, null, null);
+            while (cursor.moveToNext()) {
+                long id = cursor.getLong(0);
+                if (inFlight.contains(id)) {
+                    continue;
+                }
+                db.delete(DatabaseHelper.syncOutboxTable, "_id = ?", new String[]{String.valueOf(id)});
+                Log.d(TAG, table + ": batch " + id + " replaced by the new push");
+                reportDone(trackers.remove(id), false);
+            }
+        } catch (SQLException e) {
+            Log.d(TAG, "Database Error");
+            e.printStackTrace();
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Stores a batch in the outbox and starts sending it
+     * @param table name of the table the rows belong to
+     * @param url URL of the batch endpoint of the table
+     * @param version version of the {@link DatabaseHelper#changeJournalTable} up to which the rows were read, -1 if the table is
+     *                always pushed completely
+     * @param body request body of the batch
+     * @param contentType content type of the body, <code>null</code> for JSON
+     * @param compressed <code>true</code> if the body is compressed with gzip
+     * @param rows number of rows of the batch
+     * @param tracker tracker of the push told when the batch has been acknowledged, may be <code>null</code>
+     */
+    void enqueue(String table, String url, long version, byte[] body, String contentType, boolean compressed, int rows,
+                 final PushTracker tracker){
+        //Counted at once, so the tracker cannot finish before the batch has been stored
+        if (tracker != null) {
+            tracker.requestAdded();
+        }
+        final ContentValues batch = new ContentValues();
+        batch.put(DatabaseHelper.journalTableName, table);
+        batch.put(DatabaseHelper.outboxUrl, url);
+        batch.put(DatabaseHelper.idempotencyKey, UUID.randomUUID().toString());
+        batch.put(DatabaseHelper.outboxBody, body);
+        batch.put(DatabaseHelper.outboxContentType, contentType);
+        batch.put(DatabaseHelper.outboxCompressed, compressed ? 1 : 0);
+        batch.put(DatabaseHelper.outboxRows, rows);
+        batch.put(DatabaseHelper.pushVersion, version);
+        batch.put(DatabaseHelper.nextAttempt, 0);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                store(batch, tracker);
+            }
+        });
+    }
+
+    private void store(ContentValues batch, PushTracker tracker){
+        long id = -1;
+        try {
+            SQLiteDatabase db = DatabaseHelper.getDbInstance(context).getWritableDatabase();
+            id = db.insertOrThrow(DatabaseHelper.syncOutboxTable, null, batch);
+        } catch (SQLException e) {
+            Log.d(TAG, "Database Error");
+            e.printStackTrace();
+        }
+        if (id < 0) {
+            reportDone(tracker, false);
+            return;
+        }
+        if (tracker != null) {
+            trackers.put(id, tracker);
+        }
+        sendDueBatches();
+    }
+
+    /**
+     * Sends the batches whose next attempt is due, at most {@link #MAX_IN_FLIGHT} at the same time, and waits for the next attempt
+     * of the others. The batches of a table are sent in the order they were stored, one at a time: a batch waits while an older batch
+     * of its table is being sent or waiting for its retry, so the rows of an older push never reach the Sync Server after those of a
+     * newer one. Called when a batch is stored or answered, and when the App starts to send the batches left from an earlier run.
+     * Returns at once, the batches are sent on the thread of the outbox.
+     */
+    public void drain(){
+        executor.execute(drainTask);
+    }
+
+    private void sendDueBatches(){
+        if (nextAttempt != null) {
+            nextAttempt.cancel(false);
+            nextAttempt = null;
+        }
+        Cursor cursor = null;
+        try {
+            SQLiteDatabase db = DatabaseHelper.getDbInstance(context).getReadableDatabase();
+            long now = System.currentTimeMillis();
+            if (inFlight.size() < MAX_IN_FLIGHT) {
+                Set<String> blockedTables = new HashSet<>();
+                cursor = db.query(DatabaseHelper.syncOutboxTable,
+                        new String[]{"_id", DatabaseHelper.journalTableName, DatabaseHelper.nextAttempt},
+                        null, null, null, null, "_id");
+                while (cursor.moveToNext() && inFlight.size() < MAX_IN_FLIGHT) {
+                    long id = cursor.getLong(0);
+                    String table = cursor.getString(1);
+                    if (!blockedTables.add(table) || inFlight.contains(id) || cursor.getLong(2) > now) {
+                        continue;
+                    }
+                    send(db, id);
+                }
+                cursor.close();
+            }
+            if (inFlight.isEmpty()) {
+                long next = DatabaseUtils.longForQuery(db, "SELECT IFNULL(MIN(" + DatabaseHelper.nextAttempt + "), -1) FROM " +
+                        DatabaseHelper.syncOutboxTable, null);
+                if (next >= 0) {
+                    nextAttempt = executor.schedule(drainTask, Math.max(0, next - now), TimeUnit.MILLISECONDS);
+                }
+            }
+        } catch (SQLException e) {
+            Log.d(TAG, "Database Error");
+            e.printStackTrace();
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Reads a batch from the outbox and sends it
+     */
+    private void send(SQLiteDatabase db, long id){
+        Cursor cursor = null;
+        try {
+            cursor = db.query(DatabaseHelper.syncOutboxTable,
+                    new String[]{DatabaseHelper.journalTableName, DatabaseHelper.outboxUrl, DatabaseHelper.idempotencyKey,
+                            DatabaseHelper.outboxBody, DatabaseHelper.outboxCompressed, DatabaseHelper.outboxRows,
+                            DatabaseHelper.outboxContentType},
+                    "_id = ?", new String[]{String.valueOf(id)}, null, null, null);
+            if (cursor.moveToFirst()) {
+                send(id, cursor.getString(0), cursor.getString(1), cursor.getString(2), cursor.getBlob(3),
+                        cursor.isNull(6) ? CONTENT_TYPE : cursor.getString(6), cursor.getInt(4) == 1, cursor.getInt(5));
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    private void send(final long id, final String table, String url, final String key, final byte[] body, final String contentType,
+                      final boolean compressed, final int rows){
+        StringRequest request = new StringRequest(Request.Method.POST, url, new Response.Listener<String>() {
+
+            @Override
+            public void onResponse(String response) {
+                List<SyncBatch.Ack> acks;
+                try {
+                    acks = SyncBatch.acksFromJson(response);
+                } catch (IllegalArgumentException e) {
+                    failed(id, table, "Invalid response: " + e.getMessage());
+                    return;
+                }
+                List<SyncBatch.Ack> rejected = new ArrayList<>();
+                for (SyncBatch.Ack ack : acks) {
+                    if (!ack.success) {
+                        rejected.add(ack);
+                        Log.d(TAG, "Error: " + table + " row " + ack.row + ": " + ack.message);
+                    }
+                }
+                if (rejected.isEmpty()) {
+                    acknowledged(id, table, rows);
+                } else {
+                    showError("Error " + rejected.size() + " rows of " + table + ": " + rejected.get(rejected.size() - 1).message);
+                    rejected(id, table, rows - rejected.size(), body, contentType, compressed, rejected);
+                }
+            }
+        }, new Response.ErrorListener() {
+            @Override
+            public void onErrorResponse(VolleyError error) {
+                String reason = error.networkResponse != null ? "HTTP " + error.networkResponse.statusCode : String.valueOf(error.getCause());
+                failed(id, table, reason);
+            }
+        }){
+            @Override
+            public String getBodyContentType() {
+                return contentType;
+            }
+
+            @Override
+            public Map<String, String> getHeaders() throws AuthFailureError {
+                Map<String, String> headers = new HashMap<>();
+                headers.put(SyncTransport.IDEMPOTENCY_KEY, key);
+                if (compressed) {
+                    headers.put(SyncTransport.CONTENT_ENCODING, SyncTransport.GZIP);
+                }
+                return headers;
+            }
+
+            @Override
+            public byte[] getBody() {
+                return body;
+            }
+        };
+        //The outbox retries with its own backoff, Volley only makes a single attempt
+        request.setRetryPolicy(new DefaultRetryPolicy(TIMEOUT_MILLIS, 0, 1f));
+        request.setShouldCache(false);
+        synchronized (this) {
+            if (inFlight.isEmpty()) {
+                busySince = SystemClock.elapsedRealtime();
+            }
+            inFlight.add(id);
+            sentRequests++;
+            sentBytes += body.length;
+        }
+        requestQueue.add(request);
+    }
+
+    /**
+     * Removes a batch whose every row has been stored by the Sync Server
+     * @param acceptedRows number of rows of the batch
+     */
+    private void acknowledged(long id, String table, int acceptedRows){
+        answered(id);
+        synchronized (this) {
+            acknowledgedRequests++;
+            acknowledgedRows += acceptedRows;
+        }
+        try {
+            SQLiteDatabase db = DatabaseHelper.getDbInstance(context).getWritableDatabase();
+            db.delete(DatabaseHelper.syncOutboxTable, "_id = ?", new String[]{String.valueOf(id)});
+        } catch (SQLException e) {
+            Log.d(TAG, "Database Error");
+            e.printStackTrace();
+        }
+        Log.d(TAG, "SUCCESS: " + table + " batch " + id + ", " + getStatistics());
+        reportDone(trackers.remove(id), true);
+        sendDueBatches();
+    }
+
+    /**
+     * Replaces a batch of which the Sync Server has rejected some rows by a batch of only these rows, which is sent again after the
+     * delay of a failed attempt. The push of the running Sync is reported as failed.
+     * @param acceptedRows number of rows of the batch stored by the Sync Server
+     * @param body body of the batch as sent
+     * @param rejected acknowledgements of the rejected rows
+     */
+    private void rejected(long id, String table, int acceptedRows, byte[] body, String contentType, boolean compressed,
+                          List<SyncBatch.Ack> rejected){
+        answered(id);
+        synchronized (this) {
+            acknowledgedRequests++;
+            acknowledgedRows += acceptedRows;
+            retries++;
+        }
+        Cursor cursor = null;
+        try {
+            SQLiteDatabase db = DatabaseHelper.getDbInstance(context).getWritableDatabase();
+            cursor = db.query(DatabaseHelper.syncOutboxTable, new String[]{DatabaseHelper.attempts}, "_id = ?",
+                    new String[]{String.valueOf(id)}, null, null, null);
+            //The batch may have been replaced by a new push while it was sent
+            if (cursor.moveToFirst()) {
+                int attempts = cursor.getInt(0) + 1;
+                long delay = backoff(attempts);
+                boolean binary = SyncBinaryCodec.isBinary(contentType);
+                SyncBatch batch = rejectedRows(decode(body, binary, compressed), rejected);
+                byte[] retryBody = BatchPush.encode(batch, binary);
+                boolean retryCompressed = retryBody.length > SyncTransport.MIN_COMPRESSED_SIZE;
+                ContentValues retry = new ContentValues();
+                retry.put(DatabaseHelper.idempotencyKey, UUID.randomUUID().toString());
+                retry.put(DatabaseHelper.outboxBody, retryCompressed ? SyncTransport.gzip(retryBody) : retryBody);
+                retry.put(DatabaseHelper.outboxCompressed, retryCompressed ? 1 : 0);
+                retry.put(DatabaseHelper.outboxRows, batch.rows.size());
+                retry.put(DatabaseHelper.attempts, attempts);
+                retry.put(DatabaseHelper.nextAttempt, System.currentTimeMillis() + delay);
+                db.update(DatabaseHelper.syncOutboxTable, retry, "_id = ?", new String[]{String.valueOf(id)});
+                Log.d(TAG, "Error : " + table + " batch " + id + ": " + batch.rows.size() + " rows rejected, kept for attempt " +
+                        (attempts + 1) + " in " + delay + " ms");
+            }
+        } catch (SQLException e) {
+            Log.d(TAG, "Database Error");
+            e.printStackTrace();
+        } catch (IOException | IllegalArgumentException e) {
+            //Cannot happen for the bodies encoded by BatchPush, the batch is then sent again as it is
+            Log.d(TAG, "Error : " + table + " batch " + id + " could not be read: " + e.getMessage());
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        reportDone(trackers.remove(id), false);
+        sendDueBatches();
+    }
+
+    /**
+     * @param body body of a batch as stored in the outbox
+     * @return the rows of the batch
+     * @throws IOException if the body is not valid gzip
+     * @throws IllegalArgumentException if the body cannot be read as a batch
+     */
+    private static SyncBatch decode(byte[] body, boolean binary, boolean compressed) throws IOException {
+        byte[] data = compressed ? SyncTransport.gunzip(body) : body;
+        return binary ? SyncBinaryCodec.decodeBatch(data) : SyncBatch.fromJson(new String(data, "UTF-8"));
+    }
+
+    /**
+     * @param batch batch which has been sent
+     * @param rejected acknowledgements of the rows of the batch rejected by the Sync Server
+     * @return a batch of the rejected rows, numbered from the first row of the batch
+     */
+    private static SyncBatch rejectedRows(SyncBatch batch, List<SyncBatch.Ack> rejected){
+        List<Map<String, String>> rows = new ArrayList<>(rejected.size());
+        for (SyncBatch.Ack ack : rejected) {
+            int index = ack.row - batch.firstRow;
+            if (index >= 0 && index < batch.rows.size()) {
+                rows.add(batch.rows.get(index));
+            }
+        }
+        return new SyncBatch(batch.table, batch.firstRow, rows);
+    }
+
+    /**
+     * Counts a failed attempt of a batch and sets the time of its next attempt
+     * @param reason cause of the failure, for the log
+     */
+    private void failed(long id, String table, String reason){
+        answered(id);
+        synchronized (this) {
+            retries++;
+        }
+        Cursor cursor = null;
+        try {
+            SQLiteDatabase db = DatabaseHelper.getDbInstance(context).getWritableDatabase();
+            cursor = db.query(DatabaseHelper.syncOutboxTable, new String[]{DatabaseHelper.attempts}, "_id = ?",
+                    new String[]{String.valueOf(id)}, null, null, null);
+            //The batch may have been replaced by a new push while it was sent
+            if (cursor.moveToFirst()) {
+                int attempts = cursor.getInt(0) + 1;
+                long delay = backoff(attempts);
+                ContentValues retry = new ContentValues();
+                retry.put(DatabaseHelper.attempts, attempts);
+                retry.put(DatabaseHelper.nextAttempt, System.currentTimeMillis() + delay);
+                db.update(DatabaseHelper.syncOutboxTable, retry, "_id = ?", new String[]{String.valueOf(id)});
+                Log.d(TAG, "Error : " + table + " batch " + id + ": " + reason + ", attempt " + attempts + ", next in " + delay + " ms");
+                if (attempts >= REPORTED_ATTEMPTS) {
+                    reportDone(trackers.remove(id), false);
+                }
+            }
+        } catch (SQLException e) {
+            Log.d(TAG, "Database Error");
+            e.printStackTrace();
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        sendDueBatches();
+    }
+
+    private synchronized void answered(long id){
+        inFlight.remove(id);
+        if (inFlight.isEmpty() && busySince >= 0) {
+            busyMillis += SystemClock.elapsedRealtime() - busySince;
+            busySince = -1;
+        }
+    }
+
+    /**
+     * Tells a tracker on the UI thread that a batch of its push has been answered
+     * @param tracker tracker of the push, may be <code>null</code>
+     * @param success <code>true</code> if the Sync Server has stored every row of the batch
+     */
+    private void reportDone(final PushTracker tracker, final boolean success){
+        if (tracker == null) {
+            return;
+        }
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                tracker.requestDone(success);
+            }
+        });
+    }
+
+    /**
+     * Shows the error in a {@link Toast} on the UI thread
+     */
+    private void showError(final String message){
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                Toast.makeText(context, message, Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    /**
+     * @param attempts number of failed attempts of the batch, at least 1
+     * @return the delay before the next attempt, between half and all of the doubled delay
+     */
+    private long backoff(int attempts){
+        long delay = INITIAL_BACKOFF_MILLIS << Math.min(attempts - 1, 20);
+        delay = Math.min(delay, MAX_BACKOFF_MILLIS);
+        return delay / 2 + (long) (random.nextDouble() * (delay / 2));
+    }
+
+    /**
+     * @return the counters of the outbox since the App was started and the number of batches waiting
+     */
+    public Statistics getStatistics(){
+        long queued = 0;
+        try {
+            SQLiteDatabase db = DatabaseHelper.getDbInstance(context).getReadableDatabase();
+            queued = DatabaseUtils.queryNumEntries(db, DatabaseHelper.syncOutboxTable);
+        } catch (SQLException e) {
+            Log.d(TAG, "Database Error");
+            e.printStackTrace();
+        }
+        synchronized (this) {
+            long busy = busyMillis + (busySince >= 0 ? SystemClock.elapsedRealtime() - busySince : 0);
+            return new Statistics(queued, inFlight.size(), sentRequests, acknowledgedRequests, retries, acknowledgedRows, sentBytes,
+                    busy > 0 ? acknowledgedRows * 1000.0 / busy : 0);
+        }
+    }
+
+    /**
+     * Counters of the {@link SyncOutbox}
+     */
+    public static final class Statistics {
+
+        /**
+         * Number of batches in the outbox, including the ones being sent
+         */
+        public final long queueLength;
+        /**
+         * Number of batches being sent
+         */
+        public final int inFlight;
+        /**
+         * Number of attempts sent
+         */
+        public final long sentRequests;
+        /**
+         * Number of batches acknowledged by the Sync Server
+         */
+        public final long acknowledgedRequests;
+        /**
+         * Number of attempts which failed and are retried
+         */
+        public final long retries;
+        /**
+         * Number of rows acknowledged by the Sync Server
+         */
+        public final long acknowledgedRows;
+        /**
+         * Number of bytes of the bodies sent
+         */
+        public final long sentBytes;
+        /**
+         * Rows acknowledged per second while batches were being sent
+         */
+        public final double rowsPerSecond;
+
+        Statistics(long queueLength, int inFlight, long sentRequests, long acknowledgedRequests, long retries, long acknowledgedRows,
+                   long sentBytes, double rowsPerSecond){
+            this.queueLength = queueLength;
+            this.inFlight = inFlight;
+            this.sentRequests = sentRequests;
+            this.acknowledgedRequests = acknowledgedRequests;
+            this.retries = retries;
+            this.acknowledgedRows = acknowledgedRows;
+            this.sentBytes = sentBytes;
+            this.rowsPerSecond = rowsPerSecond;
+        }
+
+        @Override
+        public String toString() {
+            return "queued " + queueLength + " (" + inFlight + " sending), sent " + sentRequests + ", acknowledged " +
+                    acknowledgedRequests + " with " + acknowledgedRows + " rows, retries " + retries + ", " + sentBytes + " bytes, " +
+                    String.format("%.1f", rowsPerSecond) + " rows/s";
+        }
+    }
+}
@@ -0,0 +1,587 @@
+package de.awi.floenavigation.synchronization;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.util.Log;
+import android.widget.Toast;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.StringRequest;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.xmlpull.v1.XmlPullParser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.awi.floenavigation.helperclasses.DatabaseHelper;
+
+/**
+ * The Sync Objects of all synchronized tables and the graphs of steps in which they are pushed and pulled, used by the
+ * {@link SyncActivity} and by the benchmark of the Synchronization, so that both run the same steps.
+ * <p>
+ *     The tables are read from one snapshot of the database by {@link #readSnapshot()} on a worker thread and then pushed by the
+ *     {@link SyncOrchestrator} of {@link #createPush(SyncOrchestrator.Listener)}. The Fixed Stations and the Beta Table are pushed
+ *     after the Base Stations, from which they are calculated, and the Fixed Stations after the AIS Station List, so they are skipped
+ *     if those fail. The Mobile Stations read are cleared once the Sync Server has acknowledged them.
+ * </p>
+ * <p>
+ *     The pull of {@link #createPull(long, SyncOrchestrator.Listener)} has the same dependencies. The Device List, whose pull clears
+ *     the Samples, is only pulled if the Samples have been pushed or there are none, otherwise the Samples are kept for the next Sync.
+ * </p>
+ * The push and the pull run on the UI thread, like the {@link SyncOrchestrator}.
+ */
+final class SyncSession {
+
+    private static final String TAG = "SyncSession";
+
+    /**
+     * Maximum number of tables pushed or pulled at the same time by the {@link SyncOrchestrator}
+     */
+    static final int MAX_PARALLEL_TABLES = 3;
+
+    /**
+     * Names of the steps of the {@link SyncOrchestrator}, which are also shown in the progress
+     */
+    static final String MOBILE_STATIONS = "Mobile Stations";
+    static final String BASE_STATIONS = "Base Stations";
+    static final String STATION_LIST = "AIS Station List";
+    static final String FIXED_STATIONS = "Fixed Stations";
+    static final String BETA = "Beta Table";
+    static final String CONFIGURATION_PARAMETERS = "Configuration Parameters";
+    static final String USERS = "Users";
+    static final String SAMPLES = "Samples";
+    static final String DEVICE_LIST = "Device List";
+    static final String STATIC_STATIONS = "Static Stations";
+    static final String WAYPOINTS = "Waypoints";
+
+    /**
+     * Current Application Context
+     */
+    private final Context mContext;
+
+    /**
+     * The Common RequestQueue which is shared by the Sync Classes to run the Synchronization Process.
+     */
+    private final RequestQueue requestQueue;
+
+    /**
+     * Sync Class used for Synchronizing {@link Users}s.
+     * @see UsersSync
+     */
+    private final UsersSync usersSync;
+
+    /**
+     * Sync Class used for Synchronizing {@link FixedStation}s.
+     * @see FixedStationSync
+     */
+    private final FixedStationSync fixedStationSync;
+
+    /**
+     * Sync Class used for Synchronizing {@link StationList}s.
+     * @see StationListSync
+     */
+    private final StationListSync stationListSync;
+
+    /**
+     * Sync Class used for Synchronizing {@link Waypoints}s.
+     * @see WaypointsSync
+     */
+    private final WaypointsSync waypointsSync;
+
+    /**
+     * Sync Class used for Synchronizing {@link BaseStation}s.
+     * @see BaseStationSync
+     */
+    private final BaseStationSync baseStationSync;
+
+    /**
+     * Sync Class used for Synchronizing {@link ConfigurationParameter}s.
+     * @see ConfigurationParameterSync
+     */
+    private final ConfigurationParameterSync parameterSync;
+
+    /**
+     * Sync Class used for Synchronizing {@link Beta}.
+     * @see BetaSync
+     */
+    private final BetaSync betaSync;
+
+    /**
+     * Sync Class used for Synchronizing {@link SampleMeasurement}s.
+     * @see SampleMeasurementSync
+     */
+    private final SampleMeasurementSync sampleSync;
+
+    /**
+     * Sync Class used for Synchronizing {@link StaticStation}s.
+     * @see StaticStationSync
+     */
+    private final StaticStationSync staticStationSync;
+
+    /**
+     * The hostname/IP address of the Sync Server
+     */
+    private String hostname;
+
+    /**
+     * The port used on the Sync Server
+     */
+    private String port;
+
+    /**
+     * Number of rows pushed to the Sync Server in one request. If it is 0 every row is pushed with its own request.
+     */
+    private int rowsPerRequest = 0;
+
+    /**
+     * <code>true</code> once the Samples have been pushed. The pull of the Device List clears the Samples, so it is skipped unless they
+     * have been pushed or there are none.
+     */
+    private boolean samplesPushed = false;
+
+    /**
+     * <code>true</code> if the Device List has not been pulled because the Samples have not been pushed
+     */
+    private boolean samplesKept = false;
+
+    /**
+     * Stores {@link DatabaseHelper#stationName} of all {@link DatabaseHelper#mobileStationTable}.
+     */
+    private final HashMap<Integer, String> stationNameData = new HashMap<>();
+
+    /**
+     * Stores {@link DatabaseHelper#mmsi} of all {@link DatabaseHelper#mobileStationTable}.
+     */
+    private final HashMap<Integer, Integer> mmsiData = new HashMap<>();
+
+    /**
+     * Stores {@link DatabaseHelper#updateTime} of all {@link DatabaseHelper#mobileStationTable}, so that only the Mobile Stations which
+     * have not been received again since they were read are cleared.
+     */
+    private final HashMap<Integer, String> mobileUpdateTimeData = new HashMap<>();
+
+    /**
+     * Creates the Sync Objects of all synchronized tables
+     * @param context the Context in which the App is running
+     * @param requestQueue queue to which the Sync Objects add their requests
+     * @param parser XML parser shared by the Sync Objects
+     */
+    SyncSession(Context context, RequestQueue requestQueue, XmlPullParser parser){
+        this.mContext = context;
+        this.requestQueue = requestQueue;
+        usersSync = new UsersSync(context, requestQueue, parser);
+        fixedStationSync = new FixedStationSync(context, requestQueue, parser);
+        stationListSync = new StationListSync(context, requestQueue, parser);
+        waypointsSync = new WaypointsSync(context, requestQueue, parser);
+        baseStationSync = new BaseStationSync(context, requestQueue, parser);
+        parameterSync = new ConfigurationParameterSync(context, requestQueue, parser);
+        betaSync = new BetaSync(context, requestQueue, parser);
+        sampleSync = new SampleMeasurementSync(context, requestQueue, parser);
+        staticStationSync = new StaticStationSync(context, requestQueue, parser);
+    }
+
+    /**
+     * Sets the Base URLs for pushing, pulling and deleting data on the Sync Server, the number of rows pushed in one request and the
+     * encoding of the batches and the pulls.
+     * @param host the hostname/IP of the Sync Serer
+     * @param port the port used by the Sync Server
+     * @param rowsPerRequest number of rows pushed in one request, 0 to push every row with its own request
+     * @param binaryEncoding <code>true</code> if the batched push and the pulls use the binary encoding of the {@link SyncBinaryCodec}
+     */
+    void setServer(String host, String port, int rowsPerRequest, boolean binaryEncoding){
+        this.hostname = host;
+        this.port = port;
+        this.rowsPerRequest = rowsPerRequest;
+        fixedStationSync.setBaseUrl(host, port);
+        baseStationSync.setBaseUrl(host, port);
+        stationListSync.setBaseUrl(host, port);
+        betaSync.setBaseUrl(host, port);
+        usersSync.setBaseUrl(host, port);
+        waypointsSync.setBaseUrl(host, port);
+        staticStationSync.setBaseUrl(host, port);
+        sampleSync.setBaseUrl(host, port);
+        parameterSync.setBaseUrl(host, port);
+        fixedStationSync.setRowsPerRequest(rowsPerRequest);
+        baseStationSync.setRowsPerRequest(rowsPerRequest);
+        stationListSync.setRowsPerRequest(rowsPerRequest);
+        betaSync.setRowsPerRequest(rowsPerRequest);
+        usersSync.setRowsPerRequest(rowsPerRequest);
+        waypointsSync.setRowsPerRequest(rowsPerRequest);
+        staticStationSync.setRowsPerRequest(rowsPerRequest);
+        sampleSync.setRowsPerRequest(rowsPerRequest);
+        parameterSync.setRowsPerRequest(rowsPerRequest);
+        BatchPush.setBinaryEncoding(binaryEncoding);
+        ShadowTablePull.setAcceptBinary(binaryEncoding);
+    }
+
+    /**
+     * @return <code>true</code> if the last pull has not pulled the Device List because the Samples have not been pushed
+     */
+    boolean areSamplesKept(){
+        return samplesKept;
+    }
+
+    /**
+     * Reads the rows of every pushed table from one snapshot of the database, see {@link DatabaseHelper#openSnapshot(Context)}, so the
+     * push sends a consistent state of the tables while the background Services keep writing the received stations without waiting
+     * for the reads. The versions of the {@link DatabaseHelper#changeJournalTable} read with the rows make the next push send whatever
+     * the Services write in the meantime. Must be called on a worker thread before {@link #createPush(SyncOrchestrator.Listener)}.
+     */
+    void readSnapshot(){
+        long startTime = System.nanoTime();
+        SQLiteDatabase snapshot;
+        try {
+            snapshot = DatabaseHelper.openSnapshot(mContext);
+        } catch (SQLException e){
+            Log.d(TAG, "Error Reading Snapshot from Database");
+            e.printStackTrace();
+            return;
+        }
+        try {
+            readMobileStations(snapshot);
+            baseStationSync.onClickBaseStationReadButton(snapshot);
+            stationListSync.onClickStationListReadButton(snapshot);
+            fixedStationSync.onClickFixedStationReadButton(snapshot);
+            betaSync.onClickBetaReadButton(snapshot);
+            parameterSync.onClickParameterReadButton(snapshot);
+            usersSync.onClickUserReadButton(snapshot);
+            sampleSync.onClickSampleReadButton(snapshot);
+            staticStationSync.onClickStaticStationReadButton(snapshot);
+            waypointsSync.onClickWaypointsReadButton(snapshot);
+        } finally {
+            DatabaseHelper.closeSnapshot(snapshot);
+        }
+        Log.d(TAG, "Snapshot of the tables read in " + (System.nanoTime() - startTime) / 1000000 + " ms");
+    }
+
+    /**
+     * Creates the push of the tables read by {@link #readSnapshot()}, each with its Sync Object
+     * @param listener receives the progress of the push
+     * @return the push, which is run with {@link SyncOrchestrator#start()}
+     */
+    SyncOrchestrator createPush(SyncOrchestrator.Listener listener){
+        samplesPushed = false;
+        SyncOrchestrator orchestrator = new SyncOrchestrator(MAX_PARALLEL_TABLES, listener);
+        orchestrator.add(MOBILE_STATIONS, new SyncOrchestrator.Step() {
+            @Override
+            public void start(final SyncCallback done) {
+                sendMobileStations(new SyncCallback() {
+                    @Override
+                    public void onSyncFinished(boolean success) {
+                        if (success) {
+                            clearMobileStationTable();
+                        }
+                        done.onSyncFinished(success);
+                    }
+                });
+            }
+        });
+        orchestrator.add(BASE_STATIONS, new SyncOrchestrator.Step() {
+            @Override
+            public void start(SyncCallback done) {
+                baseStationSync.onClickBaseStationSyncButton(done);
+            }
+        });
+        orchestrator.add(STATION_LIST, new SyncOrchestrator.Step() {
+            @Override
+            public void start(SyncCallback done) {
+                stationListSync.onClickStationListSyncButton(done);
+            }
+        });
+        orchestrator.add(FIXED_STATIONS, new SyncOrchestrator.Step() {
+            @Override
+            public void start(SyncCallback done) {
+                fixedStationSync.onClickFixedStationSyncButton(done);
+            }
+        }, BASE_STATIONS, STATION_LIST);
+        orchestrator.add(BETA, new SyncOrchestrator.Step() {
+            @Override
+            public void start(SyncCallback done) {
+                betaSync.onClickBetaSyncButton(done);
+            }
+        }, BASE_STATIONS);
+        orchestrator.add(CONFIGURATION_PARAMETERS, new SyncOrchestrator.Step() {
+            @Override
+            public void start(SyncCallback done) {
+                parameterSync.onClickParameterSyncButton(done);
+            }
+        });
+        orchestrator.add(USERS, new SyncOrchestrator.Step() {
+            @Override
+            public void start(SyncCallback done) {
+                usersSync.onClickUserSyncButton(done);
+            }
+        });
+        orchestrator.add(SAMPLES, new SyncOrchestrator.Step() {
+            @Override
+            public void start(final SyncCallback done) {
+                sampleSync.onClickSampleSyncButton(new SyncCallback() {
+                    @Override
+                    public void onSyncFinished(boolean success) {
+                        samplesPushed = success;
+                        done.onSyncFinished(success);
+                    }
+                });
+            }
+        });
+        orchestrator.add(STATIC_STATIONS, new SyncOrchestrator.Step() {
+            @Override
+            public void start(SyncCallback done) {
+                staticStationSync.onClickStaticStationSyncButton(done);
+            }
+        });
+        orchestrator.add(WAYPOINTS, new SyncOrchestrator.Step() {
+            @Override
+            public void start(SyncCallback done) {
+                waypointsSync.onClickWaypointsSyncButton(done);
+            }
+        });
+        return orchestrator;
+    }
+
+    /**
+     * Creates the pull of the tables from the Sync Server, each with its Sync Object. The Base Stations, the Fixed Stations, the AIS
+     * Station List and the Beta Table are required, so the listener learns as soon as they have been pulled.
+     * @param numOfBaseStations number of Base Stations before the pull, which decides the Configuration Parameters kept
+     * @param listener receives the progress of the pull
+     * @return the pull, which is run with {@link SyncOrchestrator#start()}
+     */
+    SyncOrchestrator createPull(final long numOfBaseStations, SyncOrchestrator.Listener listener){
+        samplesKept = false;
+        SyncOrchestrator orchestrator = new SyncOrchestrator(MAX_PARALLEL_TABLES, listener);
+        orchestrator.add(BASE_STATIONS, new SyncOrchestrator.Step() {
+            @Override
+            public void start(SyncCallback done) {
+                baseStationSync.onClickBaseStationPullButton(done);
+            }
+        });
+        orchestrator.add(STATION_LIST, new SyncOrchestrator.Step() {
+            @Override
+            public void start(SyncCallback done) {
+                stationListSync.onClickStationListPullButton(done);
+            }
+        });
+        orchestrator.add(FIXED_STATIONS, new SyncOrchestrator.Step() {
+            @Override
+            public void start(SyncCallback done) {
+                fixedStationSync.onClickFixedStationPullButton(done);
+            }
+        }, BASE_STATIONS, STATION_LIST);
+        orchestrator.add(BETA, new SyncOrchestrator.Step() {
+            @Override
+            public void start(SyncCallback done) {
+                betaSync.onClickBetaPullButton(done);
+            }
+        }, BASE_STATIONS);
+        orchestrator.add(CONFIGURATION_PARAMETERS, new SyncOrchestrator.Step() {
+            @Override
+            public void start(SyncCallback done) {
+                parameterSync.onClickParameterPullButton(numOfBaseStations, done);
+            }
+        });
+        orchestrator.add(USERS, new SyncOrchestrator.Step() {
+            @Override
+            public void start(SyncCallback done) {
+                usersSync.onClickUserPullButton(done);
+            }
+        });
+        orchestrator.add(DEVICE_LIST, new SyncOrchestrator.Step() {
+            @Override
+            public void start(SyncCallback done) {
+                if (samplesPushed || countRows(DatabaseHelper.sampleMeasurementTable) == 0) {
+                    sampleSync.onClickDeviceListPullButton(done);
+                } else {
+                    Log.d(TAG, "Samples not pushed. Device List not pulled to keep them");
+                    samplesKept = true;
+                    done.onSyncFinished(false);
+                }
+            }
+        });
+        orchestrator.add(STATIC_STATIONS, new SyncOrchestrator.Step() {
+            @Override
+            public void start(SyncCallback done) {
+                staticStationSync.onClickStaticStationPullButton(done);
+            }
+        });
+        orchestrator.add(WAYPOINTS, new SyncOrchestrator.Step() {
+            @Override
+            public void start(SyncCallback done) {
+                waypointsSync.onClickWaypointsPullButton(done);
+            }
+        });
+        orchestrator.require(BASE_STATIONS, FIXED_STATIONS, STATION_LIST, BETA);
+        return orchestrator;
+    }
+
+    /**
+     * Counts the rows of a table in the local Database, for example the Base Stations after they have been pulled.
+     * @param table name of the table
+     * @return the number of rows of the table, 0 if it could not be read
+     */
+    long countRows(String table){
+        try {
+            SQLiteDatabase db = DatabaseHelper.getDbInstance(mContext).getReadableDatabase();
+            return DatabaseUtils.queryNumEntries(db, table);
+        } catch (SQLiteException e){
+            Log.d(TAG, "Error Reading " + table + " from Database");
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    /**
+     * Reads the {@value DatabaseHelper#mobileStationTable} Table and inserts the data from all the Columns of the
+     * {@value DatabaseHelper#mobileStationTable} Table in to their respective {@link HashMap}.
+     * @param db connection of the snapshot the rows are read from
+     * @throws SQLiteException In case of error in reading database.
+     */
+    private void readMobileStations(SQLiteDatabase db){
+        Cursor mobileStationCursor = null;
+        try{
+            int i = 0;
+            stationNameData.clear();
+            mmsiData.clear();
+            mobileUpdateTimeData.clear();
+            mobileStationCursor = db.query(DatabaseHelper.mobileStationTable,
+                    null,
+                    null,
+                    null,
+                    null, null, null);
+            if(mobileStationCursor.moveToFirst()){
+                do{
+                    stationNameData.put(i, mobileStationCursor.getString(mobileStationCursor.getColumnIndexOrThrow(DatabaseHelper.stationName)));
+                    mmsiData.put(i, mobileStationCursor.getInt(mobileStationCursor.getColumnIndexOrThrow(DatabaseHelper.mmsi)));
+                    mobileUpdateTimeData.put(i, mobileStationCursor.getString(mobileStationCursor.getColumnIndexOrThrow(DatabaseHelper.updateTime)));
+
+                    i++;
+
+                }while (mobileStationCursor.moveToNext());
+            }
+            mobileStationCursor.close();
+        } catch (SQLiteException e){
+            Log.d(TAG, "Database Error");
+            e.printStackTrace();
+        }finally {
+            if (mobileStationCursor != null){
+                mobileStationCursor.close();
+            }
+        }
+
+    }
+
+    /**
+     * Creates {@link StringRequest}s as per the size of {@link #mmsiData} data extracted from the local database and inserts all the requests in the {@link RequestQueue}
+     * A Stringrequest for pushing the data is registered and added to the {@link #requestQueue}.
+     * callback function {@link Response.Listener#onResponse(Object)} notifies whether the request was successful or not
+     * If it is unsuccessful or the connection is not established {@link Response.Listener#error(VolleyError)} gets called
+     * If {@link #rowsPerRequest} is set, the rows are instead pushed in batches of that size by {@link BatchPush} to the configured Sync Server.
+     * @param callback called once every request of the push has been answered
+     */
+    private void sendMobileStations(SyncCallback callback){
+        final PushTracker pushTracker = new PushTracker(mContext, null, 0, callback);
+        if (rowsPerRequest > 0) {
+            List<Map<String, String>> rows = new ArrayList<>();
+            for (int i = 0; i < mmsiData.size(); i++) {
+                rows.add(getRowParams(i));
+            }
+            String batchURL = "http://" + hostname + ":" + port + "/pullMobileStationBatch.php";
+            BatchPush.push(mContext, batchURL, DatabaseHelper.mobileStationTable, rows, rowsPerRequest, pushTracker);
+            pushTracker.allRequestsAdded();
+            return;
+        }
+        String URL = "http://" + hostname + ":" + port + "/pullMobileStation.php";
+        for(int i = 0; i < mmsiData.size(); i++){
+            final int index = i;
+            StringRequest request;
+            request = new StringRequest(Request.Method.POST, URL, new Response.Listener<String>() {
+
+                @Override
+                public void onResponse(String response) {
+                    try {
+                        JSONObject jsonObject = new JSONObject(response);
+                        if (jsonObject.names().get(0).equals("success")) {
+                            //Toast.makeText(mContext, "SUCCESS " + jsonObject.getString("success"), Toast.LENGTH_SHORT).show();
+                            Log.d(TAG, "SUCCESS: " + jsonObject.getString("success"));
+                            pushTracker.requestDone(true);
+                        } else {
+                            Toast.makeText(mContext, "Error" + jsonObject.getString("error"), Toast.LENGTH_SHORT).show();
+                            Log.d(TAG, "Error: " + jsonObject.getString("error"));
+                            pushTracker.requestDone(false);
+                        }
+
+                    } catch (JSONException e) {
+                        pushTracker.requestDone(false);
+                        e.printStackTrace();
+                    }
+
+
+                }
+            }, new Response.ErrorListener() {
+                @Override
+                public void onErrorResponse(VolleyError error) {
+                    pushTracker.requestDone(false);
+                }
+            }){
+                @Override
+                protected Map<String, String> getParams() throws AuthFailureError {
+                    return getRowParams(index);
+                }
+            };
+            pushTracker.requestAdded();
+            requestQueue.add(request);
+
+        }
+        pushTracker.allRequestsAdded();
+    }
+
+    /**
+     * Creates the parameters of one row of the {@value DatabaseHelper#mobileStationTable} Table which are pushed to the Sync Server
+     * @param index index of the row in the {@link HashMap}s
+     * @return the value of each column, empty if the value is missing
+     */
+    private Map<String, String> getRowParams(int index){
+        HashMap<String,String> hashMap = new HashMap<String, String>();
+        hashMap.put(DatabaseHelper.stationName,(stationNameData.get(index) == null)? "" : stationNameData.get(index));
+        hashMap.put(DatabaseHelper.mmsi,(mmsiData.get(index) == null)? "" : mmsiData.get(index).toString());
+
+        return hashMap;
+    }
+
+    /**
+     * Clears the Mobile Stations read by {@link #readMobileStations(SQLiteDatabase)} from the {@link DatabaseHelper#mobileStationTable}
+     * Table, unless they have been received again since, as the AIS decoding keeps running during the Synchronization.
+     */
+    private void clearMobileStationTable(){
+        try {
+            SQLiteDatabase db = DatabaseHelper.getDbInstance(mContext).getWritableDatabase();
+            db.beginTransaction();
+            try {
+                for (int i = 0; i < mmsiData.size(); i++) {
+                    String updateTime = mobileUpdateTimeData.get(i);
+                    db.delete(DatabaseHelper.mobileStationTable,
+                            DatabaseHelper.mmsi + " = ? AND IFNULL(" + DatabaseHelper.updateTime + ", '') = ?",
+                            new String[]{String.valueOf(mmsiData.get(i)), updateTime == null ? "" : updateTime});
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (SQLException e){
+            Log.d(TAG, "Error Clearing Mobile Station Database");
+            Toast.makeText(mContext, "Error Clearing Mobile Station Database", Toast.LENGTH_SHORT).show();
+            e.printStackTrace();
+        }
+    }
+}
@@ -18,12 +18,10 @@ import com.android.volley.toolbox.StringRequest;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.xmlpull.v1.XmlPullParser;
-import org.xmlpull.v1.XmlPullParserException;
 
-import java.io.IOException;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import de.awi.floenavigation.helperclasses.DatabaseHelper;
@@ -35,7 +33,7 @@ import de.awi.floenavigation.helperclasses.DatabaseHelper;
  * Clears the User Table before inserting Data that was pulled from the Server.
  *
  * <p>
- * Uses {@link Users} to create a new User and insert into local Database, the parameters that is pulled from the Server.
+ * The pulled rows are inserted with a {@link ShadowTablePull}, which replaces the rows of the table only when the whole response has been read.
  *</p>
  * @see DatabaseHelper#usersTable
  * @see SyncActivity
@@ -45,6 +43,11 @@ import de.awi.floenavigation.helperclasses.DatabaseHelper;
 public class UsersSync {
 
     private static final String TAG = "UsersSyncActivity";
+
+    /**
+     * Columns of the {@value DatabaseHelper#usersTable} Table which are pulled from the Sync Server
+     */
+    private static final String[] PULLED_COLUMNS = {DatabaseHelper.userName, DatabaseHelper.password};
     private Context mContext;
 
     /**
@@ -59,6 +62,33 @@ public class UsersSync {
      */
     private String pullURL = "";
 
+    /**
+     * URL for the batched push of the rows to the Sync Server
+     * @see #setBaseUrl(String, String)
+     */
+    private String batchURL = "";
+
+    /**
+     * Number of rows pushed to the Sync Server in one request. If it is 0 every row is pushed with its own request.
+     * @see #setRowsPerRequest(int)
+     */
+    private int rowsPerRequest = 0;
+
+    /**
+     * Version of the {@link DatabaseHelper#changeJournalTable} up to which the rows were pushed before this push
+     */
+    private long pushedVersion = 0;
+
+    /**
+     * Version of the {@link DatabaseHelper#changeJournalTable} of the rows read for this push
+     */
+    private long journalVersion = 0;
+
+    /**
+     * Advances the pushed version once every request of this push has been acknowledged
+     */
+    private PushTracker pushTracker;
+
     /**
      * URL to use for sending Delete Request to the Server
      * @see #setBaseUrl(String, String)
@@ -80,19 +110,15 @@ public class UsersSync {
     private HashMap<Integer, String> userPasswordData = new HashMap<>();
 
     /**
-     * Stores {@link Users#userName} of all the Users that are to be deleted.
-     * Reads {@link Users#userName} from {@value DatabaseHelper#userDeletedTable}
+     * Keys of the rows deleted since the last acknowledged push, read from the {@link DatabaseHelper#changeJournalTable}
      */
-    private HashMap<Integer, String> deletedUserData = new HashMap<>();
+    private List<String> deletedUserData = new ArrayList<>();
     private Cursor userCursor = null;
-    private Users user;
-    private ArrayList<Users> usersList = new ArrayList<>();
     private RequestQueue requestQueue;
     private XmlPullParser parser;
 
     //private int numOfDeleteRequests = 0;
 
-    private StringRequest pullRequest;
 
     /**
      * <code>true</code> if all Static Stations are pulled from the server and inserted in to the local Database
@@ -113,18 +139,20 @@ public class UsersSync {
     /**
      * Reads the {@value DatabaseHelper#usersTable} Table and inserts the data from all the Columns of the
      * {@value DatabaseHelper#usersTable} Table in to their respective {@link HashMap}.
+     * Only the rows changed since the last push acknowledged by the Sync Server are read, see {@link ChangeJournal}.
+     * @param db connection of the snapshot the rows are read from, see {@link DatabaseHelper#openSnapshot(Context)}
      * @throws SQLiteException In case of error in reading database
      * @see #userCursor
      */
-    public void onClickUserReadButton(){
+    public void onClickUserReadButton(SQLiteDatabase db){
         try{
             int i = 0;
-            dbHelper = DatabaseHelper.getDbInstance(mContext);
-            db = dbHelper.getReadableDatabase();
+            pushedVersion = ChangeJournal.getPushedVersion(db, DatabaseHelper.usersTable);
+            journalVersion = ChangeJournal.currentVersion(db, DatabaseHelper.usersTable);
             userCursor = db.query(DatabaseHelper.usersTable,
                     null,
-                    null,
-                    null,
+                    ChangeJournal.changedRowsSelection(DatabaseHelper.userName),
+                    ChangeJournal.changedRowsArgs(DatabaseHelper.usersTable, pushedVersion),
                     null, null, null);
             if(userCursor.moveToFirst()){
                 do{
@@ -135,7 +163,6 @@ public class UsersSync {
                 }while (userCursor.moveToNext());
             }
             userCursor.close();
-            Toast.makeText(mContext, "Read Completed from DB", Toast.LENGTH_SHORT).show();
         } catch (SQLiteException e){
             Log.d(TAG, "Database Error");
             e.printStackTrace();
@@ -152,141 +179,100 @@ public class UsersSync {
      * A Stringrequest {@link #request} for pushing the data is registered and added to the {@link #requestQueue}.
      * callback function {@link Response.Listener#onResponse(Object)} notifies whether the request was successful or not
      * If it is unsuccessful or the connection is not established {@link Response.Listener#error(VolleyError)} gets called
+     * If {@link #rowsPerRequest} is set, the rows are instead pushed in batches of that size by {@link BatchPush}.
+     * @param callback called once every request of the push has been answered
      */
-    public void onClickUserSyncButton(){
-        for(int i = 0; i < userNameData.size(); i++){
-            final int index = i;
-            request = new StringRequest(Request.Method.POST, URL, new Response.Listener<String>() {
+    public void onClickUserSyncButton(SyncCallback callback){
+        pushTracker = new PushTracker(mContext, DatabaseHelper.usersTable, journalVersion, callback);
+        if (rowsPerRequest > 0) {
+            List<Map<String, String>> rows = new ArrayList<>();
+            for (int i = 0; i < userNameData.size(); i++) {
+                rows.add(getRowParams(i));
+            }
+            BatchPush.push(mContext, batchURL, DatabaseHelper.usersTable, rows, rowsPerRequest, pushTracker);
+        } else {
+            for(int i = 0; i < userNameData.size(); i++){
+                final int index = i;
+                request = new StringRequest(Request.Method.POST, URL, new Response.Listener<String>() {
+
+                    @Override
+                    public void onResponse(String response) {
+                        try {
+                            JSONObject jsonObject = new JSONObject(response);
+                            if (jsonObject.names().get(0).equals("success")) {
+                                //Toast.makeText(mContext, "SUCCESS " + jsonObject.getString("success"), Toast.LENGTH_SHORT).show();
+                                Log.d(TAG, "SUCCESS: " + jsonObject.getString("success"));
+                                pushTracker.requestDone(true);
+                            } else {
+                                Toast.makeText(mContext, "Error" + jsonObject.getString("error"), Toast.LENGTH_SHORT).show();
+                                Log.d(TAG, "Error: " + jsonObject.getString("error"));
+                                pushTracker.requestDone(false);
+                            }
 
-                @Override
-                public void onResponse(String response) {
-                    try {
-                        JSONObject jsonObject = new JSONObject(response);
-                        if (jsonObject.names().get(0).equals("success")) {
-                            //Toast.makeText(mContext, "SUCCESS " + jsonObject.getString("success"), Toast.LENGTH_SHORT).show();
-                            Log.d(TAG, "SUCCESS: " + jsonObject.getString("success"));
-                        } else {
-                            Toast.makeText(mContext, "Error" + jsonObject.getString("error"), Toast.LENGTH_SHORT).show();
-                            Log.d(TAG, "Error: " + jsonObject.getString("error"));
+                        } catch (JSONException e) {
+                            pushTracker.requestDone(false);
+                            e.printStackTrace();
                         }
 
-                    } catch (JSONException e) {
-                        e.printStackTrace();
-                    }
-
 
-                }
-            }, new Response.ErrorListener() {
-                @Override
-                public void onErrorResponse(VolleyError error) {
-
-                }
-            }){
-                @Override
-                protected Map<String, String> getParams() throws AuthFailureError {
+                    }
+                }, new Response.ErrorListener() {
+                    @Override
+                    public void onErrorResponse(VolleyError error) {
+                        pushTracker.requestDone(false);
 
-                    HashMap<String,String> hashMap = new HashMap<String, String>();
-                    hashMap.put(DatabaseHelper.userName,(userNameData.get(index) == null)? "" : userNameData.get(index));
-                    hashMap.put(DatabaseHelper.password,(userPasswordData.get(index) == null)? "" : userPasswordData.get(index));
-                    return hashMap;
-                }
-            };
-            requestQueue.add(request);
+                    }
+                }){
+                    @Override
+                    protected Map<String, String> getParams() throws AuthFailureError {
+                        return getRowParams(index);
+                    }
+                };
+                pushTracker.requestAdded();
+                requestQueue.add(request);
 
+            }
         }
         sendUsersDeleteRequest();
+        pushTracker.allRequestsAdded();
+    }
 
-
+    /**
+     * Creates the parameters of one row of the {@value DatabaseHelper#usersTable} Table which are pushed to the Sync Server
+     * @param index index of the row in the {@link HashMap}s
+     * @return the value of each column, empty if the value is missing
+     */
+    private Map<String, String> getRowParams(int index){
+        HashMap<String,String> hashMap = new HashMap<String, String>();
+        hashMap.put(DatabaseHelper.userName,(userNameData.get(index) == null)? "" : userNameData.get(index));
+        hashMap.put(DatabaseHelper.password,(userPasswordData.get(index) == null)? "" : userPasswordData.get(index));
+        return hashMap;
     }
 
     /**
-     * Function is used to pull data from internal database to the server
-     * A Stringrequest {@link #request} for pulling the data is registered and added to the {@link #requestQueue}.
-     * callback function {@link Response.Listener#onResponse(Object)} notifies whether the request was successful or not
-     * If it is unsuccessful or the connection is not established {@link Response.Listener#error(VolleyError)} gets called
-     * On pulling the data from the server internal database tables {@link DatabaseHelper#usersTable} and
-     * {@link DatabaseHelper#userDeletedTable} are cleared.
-     *
-     * <p>
-     * The server sends the data in .xml format, therefore it has to extract the data based on the tags
-     * Inside {@link Response.Listener#onResponse(Object)} it loops through the entire xml file till it reaches the end of document.
-     * Based on the {@link XmlPullParser#START_TAG}, {@link XmlPullParser#TEXT}, {@link XmlPullParser#END_TAG} it adds the values received to
-     * the corresponding columns of the {@link DatabaseHelper#usersTable}
-     * Each {@link #user} is added to the {@link #usersList} which is individually taken and added to the internal database.
-     * </p>
+     * Pulls the {@value DatabaseHelper#usersTable} Table from the Sync Server with a {@link ShadowTablePull}.
+     * The rows are inserted in to a shadow table while the XML response is parsed and replace the rows of the
+     * {@link DatabaseHelper#usersTable} Table in one transaction once the whole response has been read. If the Sync Server answers with the changes since the version last pulled, only the changed rows are replaced and the deleted rows removed.
+     * If the pull fails the local tables are left unchanged. {@link #dataPullCompleted} is set to <code>true</code> when the rows have been replaced.
+     * @param callback called once the pull has finished or failed
      */
-    public void onClickUserPullButton(){
-        try {
-            dbHelper = DatabaseHelper.getDbInstance(mContext);
-            db = dbHelper.getReadableDatabase();
-            db.execSQL("Delete from " + DatabaseHelper.usersTable);
-            db.execSQL("Delete from " + DatabaseHelper.userDeletedTable);
-            pullRequest = new StringRequest(pullURL, new Response.Listener<String>() {
-                @Override
-                public void onResponse(String response) {
-                    try {
-                        parser.setInput(new StringReader(response));
-                        int event = parser.getEventType();
-                        String tag = "";
-                        String value = "";
-                        while (event != XmlPullParser.END_DOCUMENT) {
-                            tag = parser.getName();
-                            switch (event) {
-                                case XmlPullParser.START_TAG:
-                                    if (tag.equals(DatabaseHelper.usersTable)) {
-                                        user = new Users(mContext);
-                                        usersList.add(user);
-                                    }
-                                    break;
-
-                                case XmlPullParser.TEXT:
-                                    value = parser.getText();
-                                    break;
-
-                                case XmlPullParser.END_TAG:
-
-                                    switch (tag) {
-
-                                        case DatabaseHelper.userName:
-                                            user.setUserName(value);
-                                            break;
-
-                                        case DatabaseHelper.password:
-                                            user.setPassword(value);
-                                            break;
-                                    }
-                                    break;
-                            }
-                            event = parser.next();
-                        }
-                        for (Users currentUser : usersList) {
-                            currentUser.insertUserInDB();
-                        }
+    public void onClickUserPullButton(final SyncCallback callback){
+        ShadowTablePull pullRequest = new ShadowTablePull(mContext, pullURL, DatabaseHelper.usersTable, PULLED_COLUMNS, DatabaseHelper.userName,
+                new Response.Listener<Integer>() {
+                    @Override
+                    public void onResponse(Integer rows) {
                         dataPullCompleted = true;
+                        callback.onSyncFinished(true);
                         Toast.makeText(mContext, "Data Pulled from Server", Toast.LENGTH_SHORT).show();
-                    } catch (XmlPullParserException e) {
-                        Log.d(TAG, "Error Parsing XML");
-                        e.printStackTrace();
-                    } catch (IOException e) {
-                        Log.d(TAG, "IOException from Parser");
-                        e.printStackTrace();
                     }
-                }
-            }, new Response.ErrorListener() {
-                @Override
-                public void onErrorResponse(VolleyError error) {
-
-                }
-            });
-
-            requestQueue.add(pullRequest);
-
-        } catch (SQLException e){
-            Log.d(TAG, "Database Error");
-            e.printStackTrace();
-            Toast.makeText(mContext, "Database Error User Pull", Toast.LENGTH_SHORT).show();
-        }
-
+                }, new Response.ErrorListener() {
+                    @Override
+                    public void onErrorResponse(VolleyError error) {
+                        Log.d(TAG, "Error Pulling Data: " + error.getCause());
+                        callback.onSyncFinished(false);
+                    }
+                });
+        requestQueue.add(pullRequest);
     }
 
     /**
@@ -296,56 +282,41 @@ public class UsersSync {
      */
     public void setBaseUrl(String baseUrl, String port){
         URL = "http://" + baseUrl + ":" + port + "/Users/pullUsers.php";
+        batchURL = "http://" + baseUrl + ":" + port + "/Users/pullUsersBatch.php";
         pullURL = "http://" + baseUrl + ":" + port + "/Users/pushUsers.php";
         deleteUserURL = "http://" + baseUrl + ":" + port + "/Users/deleteUsers.php";
 
     }
 
+    /**
+     * Sets the number of rows pushed to the Sync Server in one request
+     * @param rowsPerRequest rows per request of the batched push, or 0 to push every row with its own request
+     * @see de.awi.floenavigation.helperclasses.DatabaseHelper#sync_batch_size
+     */
+    public void setRowsPerRequest(int rowsPerRequest){
+        this.rowsPerRequest = rowsPerRequest;
+    }
+
     public boolean getDataCompleted(){
         return dataPullCompleted;
     }
 
     /**
-     * Reads the {@value DatabaseHelper#userDeletedTable} Table and inserts the data from all the Columns of the
-     * {@value DatabaseHelper#userDeletedTable} Table in to their respective {@link HashMap}.
-     * @throws SQLiteException In case of error in reading database
-     * After reading the data, it creates string requests to forward the data to the server
-     * This facilitates the server to know which Users should be marked for deletion.
+     * Reads the keys of the rows of the {@value DatabaseHelper#usersTable} Table which have been deleted since the last
+     * acknowledged push from the {@link DatabaseHelper#changeJournalTable} and creates a request for each of them, so that the
+     * Sync Server deletes the same rows and removes them from the other tablets.
      */
     private void sendUsersDeleteRequest(){
-        Cursor deletedUserCursor = null;
         try{
             dbHelper = DatabaseHelper.getDbInstance(mContext);
             db = dbHelper.getReadableDatabase();
-            deletedUserCursor = db.query(DatabaseHelper.userDeletedTable,
-                    null,
-                    null,
-                    null,
-                    null, null, null);
-            int i = 0;
-            if(deletedUserCursor.moveToFirst()){
-                do{
-                    deletedUserData.put(i, deletedUserCursor.getString(deletedUserCursor.getColumnIndexOrThrow(DatabaseHelper.userName)));
-                    Log.d(TAG, "User to be Deleted: " + deletedUserCursor.getString(deletedUserCursor.getColumnIndexOrThrow(DatabaseHelper.userName)));
-                    i++;
-
-                }while (deletedUserCursor.moveToNext());
+            deletedUserData = ChangeJournal.deletedKeys(db, DatabaseHelper.usersTable, pushedVersion);
+            for (String deletedKey : deletedUserData) {
+                Log.d(TAG, "User to be Deleted: " + deletedKey);
             }
-            deletedUserCursor.close();
-            /*
-            if(deletedUserData.size() == 0){
-                requestQueue.add(pullRequest);
-            } else{
-                numOfDeleteRequests = deletedUserData.size();
-            }*/
-
         } catch (SQLException e){
             Log.d(TAG, "Database Error");
             e.printStackTrace();
-        }finally {
-            if (deletedUserCursor != null){
-                deletedUserCursor.close();
-            }
         }
 
         for(int j = 0; j < deletedUserData.size(); j++){
@@ -359,12 +330,15 @@ public class UsersSync {
                         if (jsonObject.names().get(0).equals("success")) {
                             //Toast.makeText(mContext, "SUCCESS " + jsonObject.getString("success"), Toast.LENGTH_SHORT).show();
                             Log.d(TAG, "SUCCESS: " + jsonObject.getString("success"));
+                            pushTracker.requestDone(true);
                         } else {
                             Toast.makeText(mContext, "Error" + jsonObject.getString("error"), Toast.LENGTH_SHORT).show();
                             Log.d(TAG, "Error: " + jsonObject.getString("error"));
+                            pushTracker.requestDone(false);
                         }
 
                     } catch (JSONException e) {
+                        pushTracker.requestDone(false);
                         e.printStackTrace();
                     }
                     /*
@@ -377,6 +351,7 @@ public class UsersSync {
             }, new Response.ErrorListener() {
                 @Override
                 public void onErrorResponse(VolleyError error) {
+                    pushTracker.requestDone(false);
 
                 }
             }){
@@ -389,6 +364,7 @@ public class UsersSync {
                     return hashMap;
                 }
             };
+            pushTracker.requestAdded();
             requestQueue.add(request);
 
         }
@@ -18,13 +18,11 @@ import com.android.volley.toolbox.StringRequest;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.xmlpull.v1.XmlPullParser;
-import org.xmlpull.v1.XmlPullParserException;
 
-import java.io.IOException;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import de.awi.floenavigation.helperclasses.DatabaseHelper;
@@ -36,7 +34,7 @@ import de.awi.floenavigation.helperclasses.DatabaseHelper;
  * Clears the Waypoint Table before inserting Data that was pulled from the Server.
  *
  * <p>
- * Uses {@link Waypoints} to create a new Waypoint and insert into local Database, the parameters that is pulled from the Server.
+ * The pulled rows are inserted with a {@link ShadowTablePull}, which replaces the rows of the table only when the whole response has been read.
  *</p>
  * @see DatabaseHelper#waypointsTable
  * @see SyncActivity
@@ -47,6 +45,14 @@ import de.awi.floenavigation.helperclasses.DatabaseHelper;
 public class WaypointsSync {
 
     private static final String TAG = "WaypointsSyncActivity";
+
+    /**
+     * Columns of the {@value DatabaseHelper#waypointsTable} Table which are pulled from the Sync Server
+     */
+    private static final String[] PULLED_COLUMNS = {
+            DatabaseHelper.latitude, DatabaseHelper.longitude, DatabaseHelper.xPosition, DatabaseHelper.yPosition,
+            DatabaseHelper.updateTime, DatabaseHelper.labelID, DatabaseHelper.label
+    };
     private Context mContext;
 
     /**
@@ -61,6 +67,33 @@ public class WaypointsSync {
      */
     private String pullURL = "";
 
+    /**
+     * URL for the batched push of the rows to the Sync Server
+     * @see #setBaseUrl(String, String)
+     */
+    private String batchURL = "";
+
+    /**
+     * Number of rows pushed to the Sync Server in one request. If it is 0 every row is pushed with its own request.
+     * @see #setRowsPerRequest(int)
+     */
+    private int rowsPerRequest = 0;
+
+    /**
+     * Version of the {@link DatabaseHelper#changeJournalTable} up to which the rows were pushed before this push
+     */
+    private long pushedVersion = 0;
+
+    /**
+     * Version of the {@link DatabaseHelper#changeJournalTable} of the rows read for this push
+     */
+    private long journalVersion = 0;
+
+    /**
+     * Advances the pushed version once every request of this push has been acknowledged
+     */
+    private PushTracker pushTracker;
+
     /**
      * URL to use for sending Delete Request to the Server
      * @see #setBaseUrl(String, String)
@@ -107,13 +140,10 @@ public class WaypointsSync {
     private HashMap<Integer, String> labelData = new HashMap<>();
 
     /**
-     * Stores {@link Waypoints#label} of all the Waypoints that are to be deleted.
-     * Reads {@link Waypoints#label} from {@value DatabaseHelper#waypointDeletedTable}
+     * Keys of the rows deleted since the last acknowledged push, read from the {@link DatabaseHelper#changeJournalTable}
      */
-    private HashMap<Integer, String> deletedWaypointsData = new HashMap<Integer, String>();
+    private List<String> deletedWaypointsData = new ArrayList<>();
     private Cursor waypointsCursor = null;
-    private Waypoints waypoints;
-    private ArrayList<Waypoints> waypointsList = new ArrayList<>();
     private RequestQueue requestQueue;
     private XmlPullParser parser;
 
@@ -123,7 +153,6 @@ public class WaypointsSync {
     private boolean dataPullCompleted;
 
     //private int numOfDeleteRequests = 0;
-    private StringRequest pullRequest;
 
     /**
      * Default Constructor.
@@ -138,19 +167,21 @@ public class WaypointsSync {
 
     /**
      * Reads the {@value DatabaseHelper#waypointsTable} Table and inserts the data from all the Columns of the
-     * {@value DatabaseHelper#waypointDeletedTable} Table in to their respective {@link HashMap}.
+     * {@value DatabaseHelper#waypointsTable} Table in to their respective {@link HashMap}.
+     * Only the rows changed since the last push acknowledged by the Sync Server are read, see {@link ChangeJournal}.
+     * @param db connection of the snapshot the rows are read from, see {@link DatabaseHelper#openSnapshot(Context)}
      * @throws SQLiteException In case of error in reading database
      * @see #waypointsCursor
      */
-    public void onClickWaypointsReadButton(){
+    public void onClickWaypointsReadButton(SQLiteDatabase db){
         try{
             int i = 0;
-            dbHelper = DatabaseHelper.getDbInstance(mContext);
-            db = dbHelper.getReadableDatabase();
+            pushedVersion = ChangeJournal.getPushedVersion(db, DatabaseHelper.waypointsTable);
+            journalVersion = ChangeJournal.currentVersion(db, DatabaseHelper.waypointsTable);
             waypointsCursor = db.query(DatabaseHelper.waypointsTable,
                     null,
-                    null,
-                    null,
+                    ChangeJournal.changedRowsSelection(DatabaseHelper.labelID),
+                    ChangeJournal.changedRowsArgs(DatabaseHelper.waypointsTable, pushedVersion),
                     null, null, null);
             if(waypointsCursor.moveToFirst()){
                 do{
@@ -167,7 +198,6 @@ public class WaypointsSync {
                 }while (waypointsCursor.moveToNext());
             }
             waypointsCursor.close();
-            Toast.makeText(mContext, "Read Completed from DB", Toast.LENGTH_SHORT).show();
         } catch (SQLiteException e){
             Log.d(TAG, "Database Error");
             e.printStackTrace();
@@ -189,168 +219,106 @@ public class WaypointsSync {
      * A Stringrequest {@link #request} for pushing the data is registered and added to the {@link #requestQueue}.
      * callback function {@link Response.Listener#onResponse(Object)} notifies whether the request was successful or not
      * If it is unsuccessful or the connection is not established {@link Response.Listener#error(VolleyError)} gets called
+     * If {@link #rowsPerRequest} is set, the rows are instead pushed in batches of that size by {@link BatchPush}.
+     * @param callback called once every request of the push has been answered
      */
-    public void onClickWaypointsSyncButton(){
-        for(int i = 0; i < labelIDData.size(); i++){
-            final int index = i;
-            request = new StringRequest(Request.Method.POST, URL, new Response.Listener<String>() {
+    public void onClickWaypointsSyncButton(SyncCallback callback){
+        pushTracker = new PushTracker(mContext, DatabaseHelper.waypointsTable, journalVersion, callback);
+        if (rowsPerRequest > 0) {
+            List<Map<String, String>> rows = new ArrayList<>();
+            for (int i = 0; i < labelIDData.size(); i++) {
+                rows.add(getRowParams(i));
+            }
+            BatchPush.push(mContext, batchURL, DatabaseHelper.waypointsTable, rows, rowsPerRequest, pushTracker);
+        } else {
+            for(int i = 0; i < labelIDData.size(); i++){
+                final int index = i;
+                request = new StringRequest(Request.Method.POST, URL, new Response.Listener<String>() {
+
+                    @Override
+                    public void onResponse(String response) {
+                        try {
+                            JSONObject jsonObject = new JSONObject(response);
+                            if (jsonObject.names().get(0).equals("success")) {
+                                //Toast.makeText(mContext, "SUCCESS " + jsonObject.getString("success"), Toast.LENGTH_SHORT).show();
+                                Log.d(TAG, "SUCCESS: " + jsonObject.getString("success"));
+                                pushTracker.requestDone(true);
+                            } else {
+                                Toast.makeText(mContext, "Error" + jsonObject.getString("error"), Toast.LENGTH_SHORT).show();
+                                Log.d(TAG, "Error: " + jsonObject.getString("error"));
+                                pushTracker.requestDone(false);
+                            }
 
-                @Override
-                public void onResponse(String response) {
-                    try {
-                        JSONObject jsonObject = new JSONObject(response);
-                        if (jsonObject.names().get(0).equals("success")) {
-                            //Toast.makeText(mContext, "SUCCESS " + jsonObject.getString("success"), Toast.LENGTH_SHORT).show();
-                            Log.d(TAG, "SUCCESS: " + jsonObject.getString("success"));
-                        } else {
-                            Toast.makeText(mContext, "Error" + jsonObject.getString("error"), Toast.LENGTH_SHORT).show();
-                            Log.d(TAG, "Error: " + jsonObject.getString("error"));
+                        } catch (JSONException e) {
+                            pushTracker.requestDone(false);
+                            e.printStackTrace();
                         }
 
-                    } catch (JSONException e) {
-                        e.printStackTrace();
-                    }
-
 
-                }
-            }, new Response.ErrorListener() {
-                @Override
-                public void onErrorResponse(VolleyError error) {
-
-                }
-            }){
-                @Override
-                protected Map<String, String> getParams() throws AuthFailureError {
+                    }
+                }, new Response.ErrorListener() {
+                    @Override
+                    public void onErrorResponse(VolleyError error) {
+                        pushTracker.requestDone(false);
 
-                    HashMap<String,String> hashMap = new HashMap<String, String>();
-                    hashMap.put(DatabaseHelper.latitude,(latitudeData.get(index) == null)? "" : latitudeData.get(index).toString());
-                    hashMap.put(DatabaseHelper.longitude,(longitudeData.get(index) == null)? "" : longitudeData.get(index).toString());
-                    hashMap.put(DatabaseHelper.xPosition,(xPositionData.get(index) == null)? "" : xPositionData.get(index).toString());
-                    hashMap.put(DatabaseHelper.yPosition,(yPositionData.get(index) == null)? "" : yPositionData.get(index).toString());
-                    hashMap.put(DatabaseHelper.updateTime,(updateTimeData.get(index) == null)? "" : updateTimeData.get(index));
-                    hashMap.put(DatabaseHelper.labelID,(labelIDData.get(index) == null)? "" : labelIDData.get(index));
-                    hashMap.put(DatabaseHelper.label,(labelData.get(index) == null)? "" : labelData.get(index));
-                    return hashMap;
-                }
-            };
-            requestQueue.add(request);
+                    }
+                }){
+                    @Override
+                    protected Map<String, String> getParams() throws AuthFailureError {
+                        return getRowParams(index);
+                    }
+                };
+                pushTracker.requestAdded();
+                requestQueue.add(request);
 
+            }
         }
 
         sendWaypointDeleteRequest();
+        pushTracker.allRequestsAdded();
+    }
 
-
+    /**
+     * Creates the parameters of one row of the {@value DatabaseHelper#waypointsTable} Table which are pushed to the Sync Server
+     * @param index index of the row in the {@link HashMap}s
+     * @return the value of each column, empty if the value is missing
+     */
+    private Map<String, String> getRowParams(int index){
+        HashMap<String,String> hashMap = new HashMap<String, String>();
+        hashMap.put(DatabaseHelper.latitude,(latitudeData.get(index) == null)? "" : latitudeData.get(index).toString());
+        hashMap.put(DatabaseHelper.longitude,(longitudeData.get(index) == null)? "" : longitudeData.get(index).toString());
+        hashMap.put(DatabaseHelper.xPosition,(xPositionData.get(index) == null)? "" : xPositionData.get(index).toString());
+        hashMap.put(DatabaseHelper.yPosition,(yPositionData.get(index) == null)? "" : yPositionData.get(index).toString());
+        hashMap.put(DatabaseHelper.updateTime,(updateTimeData.get(index) == null)? "" : updateTimeData.get(index));
+        hashMap.put(DatabaseHelper.labelID,(labelIDData.get(index) == null)? "" : labelIDData.get(index));
+        hashMap.put(DatabaseHelper.label,(labelData.get(index) == null)? "" : labelData.get(index));
+        return hashMap;
     }
 
     /**
-     * Function is used to pull data from internal database to the server
-     * A Stringrequest {@link #request} for pulling the data is registered and added to the {@link #requestQueue}.
-     * callback function {@link Response.Listener#onResponse(Object)} notifies whether the request was successful or not
-     * If it is unsuccessful or the connection is not established {@link Response.Listener#error(VolleyError)} gets called
-     * On pulling the data from the server internal database tables {@link DatabaseHelper#waypointsTable} and
-     * {@link DatabaseHelper#waypointDeletedTable} are cleared.
-     *
-     * <p>
-     * The server sends the data in .xml format, therefore it has to extract the data based on the tags
-     * Inside {@link Response.Listener#onResponse(Object)} it loops through the entire xml file till it reaches the end of document.
-     * Based on the {@link XmlPullParser#START_TAG}, {@link XmlPullParser#TEXT}, {@link XmlPullParser#END_TAG} it adds the values received to
-     * the corresponding columns of the {@link DatabaseHelper#waypointsTable}
-     * Each {@link #waypoints} is added to the {@link #waypointsList} which is individually taken and added to the internal database.
-     * </p>
+     * Pulls the {@value DatabaseHelper#waypointsTable} Table from the Sync Server with a {@link ShadowTablePull}.
+     * The rows are inserted in to a shadow table while the XML response is parsed and replace the rows of the
+     * {@link DatabaseHelper#waypointsTable} Table in one transaction once the whole response has been read. If the Sync Server answers with the changes since the version last pulled, only the changed rows are replaced and the deleted rows removed.
+     * If the pull fails the local tables are left unchanged. {@link #dataPullCompleted} is set to <code>true</code> when the rows have been replaced.
+     * @param callback called once the pull has finished or failed
      */
-    public void onClickWaypointsPullButton(){
-        try {
-            dbHelper = DatabaseHelper.getDbInstance(mContext);
-            db = dbHelper.getReadableDatabase();
-            db.execSQL("Delete from " + DatabaseHelper.waypointsTable);
-            db.execSQL("Delete from " + DatabaseHelper.waypointDeletedTable);
-            pullRequest = new StringRequest(pullURL, new Response.Listener<String>() {
-                @Override
-                public void onResponse(String response) {
-                    try {
-                        parser.setInput(new StringReader(response));
-                        int event = parser.getEventType();
-                        String tag = "";
-                        String value = "";
-                        while (event != XmlPullParser.END_DOCUMENT) {
-                            tag = parser.getName();
-                            switch (event) {
-                                case XmlPullParser.START_TAG:
-                                    if (tag.equals(DatabaseHelper.waypointsTable)) {
-                                        waypoints = new Waypoints(mContext);
-                                        waypointsList.add(waypoints);
-                                    }
-                                    break;
-
-                                case XmlPullParser.TEXT:
-                                    value = parser.getText();
-                                    break;
-
-                                case XmlPullParser.END_TAG:
-
-                                    switch (tag) {
-
-                                        case DatabaseHelper.latitude:
-                                            waypoints.setLatitude(Double.valueOf(value));
-                                            break;
-
-                                        case DatabaseHelper.longitude:
-                                            waypoints.setLongitude(Double.valueOf(value));
-                                            break;
-
-                                        case DatabaseHelper.xPosition:
-                                            waypoints.setxPosition(Double.valueOf(value));
-                                            break;
-
-                                        case DatabaseHelper.yPosition:
-                                            waypoints.setyPosition(Double.valueOf(value));
-                                            break;
-
-                                        case DatabaseHelper.updateTime:
-                                            waypoints.setUpdateTime(value);
-                                            break;
-
-                                        case DatabaseHelper.labelID:
-                                            waypoints.setLabelID(value);
-                                            break;
-
-                                        case DatabaseHelper.label:
-                                            waypoints.setLabel(value);
-                                            break;
-
-
-                                    }
-                                    break;
-                            }
-                            event = parser.next();
-                        }
-                        for (Waypoints currentWaypoint : waypointsList) {
-                            currentWaypoint.insertWaypointsInDB();
-                        }
+    public void onClickWaypointsPullButton(final SyncCallback callback){
+        ShadowTablePull pullRequest = new ShadowTablePull(mContext, pullURL, DatabaseHelper.waypointsTable, PULLED_COLUMNS, DatabaseHelper.labelID,
+                new Response.Listener<Integer>() {
+                    @Override
+                    public void onResponse(Integer rows) {
                         dataPullCompleted = true;
+                        callback.onSyncFinished(true);
                         Toast.makeText(mContext, "Data Pulled from Server", Toast.LENGTH_SHORT).show();
-                    } catch (XmlPullParserException e) {
-                        Log.d(TAG, "Error Parsing XML");
-                        e.printStackTrace();
-                    } catch (IOException e) {
-                        Log.d(TAG, "IOException from Parser");
-                        e.printStackTrace();
                     }
-                }
-            }, new Response.ErrorListener() {
-                @Override
-                public void onErrorResponse(VolleyError error) {
-
-                }
-            });
-            requestQueue.add(pullRequest);
-
-
-        } catch (SQLException e){
-            Log.d(TAG, "Database Error");
-            e.printStackTrace();
-        }
-
+                }, new Response.ErrorListener() {
+                    @Override
+                    public void onErrorResponse(VolleyError error) {
+                        Log.d(TAG, "Error Pulling Data: " + error.getCause());
+                        callback.onSyncFinished(false);
+                    }
+                });
+        requestQueue.add(pullRequest);
     }
 
     public boolean getDataCompleted(){
@@ -364,51 +332,37 @@ public class WaypointsSync {
      */
     public void setBaseUrl(String baseUrl, String port){
         URL = "http://" + baseUrl + ":" + port + "/Waypoint/pullWaypoints.php";
+        batchURL = "http://" + baseUrl + ":" + port + "/Waypoint/pullWaypointsBatch.php";
         pullURL = "http://" + baseUrl + ":" + port + "/Waypoint/pushWaypoints.php";
         deleteURL = "http://" + baseUrl + ":" + port + "/Waypoint/deleteWaypoints.php";
 
     }
 
     /**
-     * Reads the {@value DatabaseHelper#waypointDeletedTable} Table and inserts the data from all the Columns of the
-     * {@value DatabaseHelper#waypointDeletedTable} Table in to their respective {@link HashMap}.
-     * @throws SQLiteException In case of error in reading database
-     * After reading the data, it creates string requests to forward the data to the server
-     * This facilitates the server to know which LabelIDs should be marked for deletion since these Waypoint are no longer used.
+     * Sets the number of rows pushed to the Sync Server in one request
+     * @param rowsPerRequest rows per request of the batched push, or 0 to push every row with its own request
+     * @see de.awi.floenavigation.helperclasses.DatabaseHelper#sync_batch_size
+     */
+    public void setRowsPerRequest(int rowsPerRequest){
+        this.rowsPerRequest = rowsPerRequest;
+    }
+
+    /**
+     * Reads the keys of the rows of the {@value DatabaseHelper#waypointsTable} Table which have been deleted since the last
+     * acknowledged push from the {@link DatabaseHelper#changeJournalTable} and creates a request for each of them, so that the
+     * Sync Server deletes the same rows and removes them from the other tablets.
      */
     private void sendWaypointDeleteRequest(){
-        Cursor deletedWaypointsCursor = null;
         try{
             dbHelper = DatabaseHelper.getDbInstance(mContext);
             db = dbHelper.getReadableDatabase();
-            deletedWaypointsCursor = db.query(DatabaseHelper.waypointDeletedTable,
-                    null,
-                    null,
-                    null,
-                    null, null, null);
-            int i = 0;
-            if(deletedWaypointsCursor.moveToFirst()){
-                do{
-                    deletedWaypointsData.put(i, deletedWaypointsCursor.getString(deletedWaypointsCursor.getColumnIndexOrThrow(DatabaseHelper.labelID)));
-                    Log.d(TAG, "Waypoint to be Deleted: " + deletedWaypointsCursor.getString(deletedWaypointsCursor.getColumnIndexOrThrow(DatabaseHelper.labelID)));
-                    i++;
-
-                }while (deletedWaypointsCursor.moveToNext());
+            deletedWaypointsData = ChangeJournal.deletedKeys(db, DatabaseHelper.waypointsTable, pushedVersion);
+            for (String deletedKey : deletedWaypointsData) {
+                Log.d(TAG, "Waypoint to be Deleted: " + deletedKey);
             }
-            deletedWaypointsCursor.close();
-            /*
-            if(deletedWaypointsData.size() == 0){
-                requestQueue.add(pullRequest);
-            } else{
-                numOfDeleteRequests = deletedWaypointsData.size();
-            }*/
         } catch (SQLException e){
             Log.d(TAG, "Database Error");
             e.printStackTrace();
-        }finally {
-            if (deletedWaypointsCursor != null){
-                deletedWaypointsCursor.close();
-            }
         }
 
         for(int j = 0; j < deletedWaypointsData.size(); j++){
@@ -422,9 +376,11 @@ public class WaypointsSync {
                         if (jsonObject.names().get(0).equals("success")) {
                             //Toast.makeText(mContext, "SUCCESS " + jsonObject.getString("success"), Toast.LENGTH_SHORT).show();
                             Log.d(TAG, "SUCCESS: " + jsonObject.getString("success"));
+                            pushTracker.requestDone(true);
                         } else {
                             Toast.makeText(mContext, "Error" + jsonObject.getString("error"), Toast.LENGTH_SHORT).show();
                             Log.d(TAG, "Error: " + jsonObject.getString("error"));
+                            pushTracker.requestDone(false);
                         }
                         /*
                         numOfDeleteRequests--;
@@ -433,6 +389,7 @@ public class WaypointsSync {
                         }*/
 
                     } catch (JSONException e) {
+                        pushTracker.requestDone(false);
                         e.printStackTrace();
                     }
 
@@ -441,6 +398,7 @@ public class WaypointsSync {
             }, new Response.ErrorListener() {
                 @Override
                 public void onErrorResponse(VolleyError error) {
+                    pushTracker.requestDone(false);
 
                 }
             }){
@@ -453,6 +411,7 @@ public class WaypointsSync {
                     return hashMap;
                 }
             };
+            pushTracker.requestAdded();
             requestQueue.add(request);
 
         }
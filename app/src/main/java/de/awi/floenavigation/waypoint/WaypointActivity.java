@@ -38,6 +38,8 @@ import java.util.TimeZone;
 import de.awi.floenavigation.grid.GridActivity;
 import de.awi.floenavigation.helperclasses.ActionBarActivity;
 import de.awi.floenavigation.helperclasses.DatabaseHelper;
+import de.awi.floenavigation.helperclasses.GPSClock;
+import de.awi.floenavigation.network.PeerGossip;
 import de.awi.floenavigation.services.GPS_Service;
 import de.awi.floenavigation.admin.ListViewActivity;
 import de.awi.floenavigation.dashboard.MainActivity;
@@ -122,14 +124,6 @@ public class WaypointActivity extends Activity implements View.OnClickListener{
      * display the number of digits after the decimal point to be displayed
      */
     private int numOfSignificantFigures;
-    /**
-     * Variable used to store the gps time received from the {@link #broadcastReceiver}
-     */
-    private long gpsTime;
-    /**
-     * It stores the time difference between the gps time and the system clock
-     */
-    private long timeDiff;
     /**
      * Edit text view of the label id
      */
@@ -240,8 +234,6 @@ public class WaypointActivity extends Activity implements View.OnClickListener{
                     tabletLat = intent.getExtras().getDouble(GPS_Service.latitude);
                     tabletLon = intent.getExtras().getDouble(GPS_Service.longitude);
                     locationStatus = intent.getExtras().getBoolean(GPS_Service.locationStatus);
-                    gpsTime = Long.parseLong(intent.getExtras().get(GPS_Service.GPSTime).toString());
-                    timeDiff = System.currentTimeMillis() - gpsTime;
                     populateTabLocation();
                 }
             };
@@ -451,6 +443,7 @@ public class WaypointActivity extends Activity implements View.OnClickListener{
 
     /**
      * Inserts the waypoint with all the required and necessary parameters into the database table {@link DatabaseHelper#waypointsTable}
+     * and sends it to the other tablets
      * @param db SQLiteDatabase object
      * @return <code>true</code> if the data is successfully inserted into the database table
      *         <code>false</code> otherwise
@@ -467,6 +460,7 @@ public class WaypointActivity extends Activity implements View.OnClickListener{
         long result = db.insert(DatabaseHelper.waypointsTable, null, waypoint);
         if(result != -1){
             Log.d(TAG, "Waypoint Inserted Successfully");
+            PeerGossip.publishWaypoint(waypoint);
             return true;
         } else{
             Log.d(TAG, "Error Inserting Waypoint");
@@ -501,7 +495,7 @@ public class WaypointActivity extends Activity implements View.OnClickListener{
      * Create label in a particular format
      */
     private void createLabel(){
-        Date date = new Date(System.currentTimeMillis() - timeDiff);
+        Date date = new Date(GPSClock.nowGpsMillis());
         SimpleDateFormat displayFormat = new SimpleDateFormat("yyyyMMdd'D'HHmmss");
         displayFormat.setTimeZone(TimeZone.getTimeZone("gmt"));
         time = displayFormat.format(date);
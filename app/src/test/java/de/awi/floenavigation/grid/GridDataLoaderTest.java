@@ -0,0 +1,130 @@
+package de.awi.floenavigation.grid;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import de.awi.floenavigation.helperclasses.DatabaseHelper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests of the {@link GridDataLoader}: the changed waypoints are patched into the copy, and the table is read again when journal
+ * entries the copy has not seen have been deleted by the pruning after a push.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class GridDataLoaderTest {
+
+    private static final String TABLE = DatabaseHelper.waypointsTable;
+
+    private SQLiteDatabase db;
+    private GridDataLoader loader;
+
+    @Before
+    public void setUp() throws Exception {
+        resetDatabase();
+        db = DatabaseHelper.getDbInstance(RuntimeEnvironment.application).getWritableDatabase();
+        loader = new GridDataLoader();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        resetDatabase();
+    }
+
+    @Test
+    public void changedWaypointsArePatched(){
+        insertWaypoints(0, 3);
+        assertEquals(names("WP_0", "WP_1", "WP_2"), names(loader.load(db).waypoints));
+        db.delete(TABLE, DatabaseHelper.labelID + " = ?", new String[]{"WP_1"});
+        insertWaypoints(3, 1);
+        assertEquals(names("WP_0", "WP_2", "WP_3"), names(loader.load(db).waypoints));
+    }
+
+    @Test
+    public void unchangedWaypointsAreKept(){
+        insertWaypoints(0, 3);
+        StationSnapshot.Layer waypoints = loader.load(db).waypoints;
+        assertSame(waypoints, loader.load(db).waypoints);
+    }
+
+    @Test
+    public void prunedDeletionIsNotMissed(){
+        insertWaypoints(0, 3);
+        loader.load(db);
+        db.delete(TABLE, DatabaseHelper.labelID + " = ?", new String[]{"WP_0"});
+        insertWaypoints(3, 1);
+        //The push of both changes has been acknowledged and the entry of the deletion pruned before the next load
+        long latest = latestEntry();
+        db.delete(DatabaseHelper.changeJournalTable, DatabaseHelper.journalTableName + " = ? AND _id < ?",
+                new String[]{TABLE, String.valueOf(latest)});
+        ContentValues state = new ContentValues();
+        state.put(DatabaseHelper.journalTableName, TABLE);
+        state.put(DatabaseHelper.prunedVersion, latest - 1);
+        db.insertOrThrow(DatabaseHelper.syncStateTable, null, state);
+
+        assertEquals(names("WP_1", "WP_2", "WP_3"), names(loader.load(db).waypoints));
+        //The pruned version is not read again once the copy has caught up
+        StationSnapshot.Layer waypoints = loader.load(db).waypoints;
+        assertSame(waypoints, loader.load(db).waypoints);
+    }
+
+    private void insertWaypoints(int first, int count){
+        for (int i = first; i < first + count; i++) {
+            ContentValues values = new ContentValues();
+            values.put(DatabaseHelper.latitude, 82.5);
+            values.put(DatabaseHelper.longitude, 15.0);
+            values.put(DatabaseHelper.xPosition, i * 10.0);
+            values.put(DatabaseHelper.yPosition, i * 5.0);
+            values.put(DatabaseHelper.updateTime, "1530000000000");
+            values.put(DatabaseHelper.labelID, "WP_" + i);
+            values.put(DatabaseHelper.label, "WP_" + i);
+            db.insertOrThrow(TABLE, null, values);
+        }
+    }
+
+    private long latestEntry(){
+        return DatabaseUtils.longForQuery(db, "SELECT MAX(_id) FROM " + DatabaseHelper.changeJournalTable +
+                " WHERE " + DatabaseHelper.journalTableName + " = ?", new String[]{TABLE});
+    }
+
+    private static Set<String> names(String... names){
+        return new HashSet<>(Arrays.asList(names));
+    }
+
+    private static Set<String> names(StationSnapshot.Layer layer){
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < layer.size; i++) {
+            names.add(layer.names[i]);
+        }
+        return names;
+    }
+
+    /**
+     * Drops the database of the previous test, as Robolectric gives every test a new database
+     */
+    private static void resetDatabase() throws Exception {
+        Field dbInstance = DatabaseHelper.class.getDeclaredField("dbInstance");
+        dbInstance.setAccessible(true);
+        DatabaseHelper helper = (DatabaseHelper) dbInstance.get(null);
+        if (helper != null) {
+            helper.close();
+        }
+        dbInstance.set(null, null);
+    }
+}
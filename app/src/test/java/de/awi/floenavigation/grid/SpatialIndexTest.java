@@ -0,0 +1,195 @@
+package de.awi.floenavigation.grid;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import de.awi.floenavigation.helperclasses.NavigationFunctions;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of the {@link SpatialIndex} against a scan of every point, for floes on the antimeridian and near the pole, positions which
+ * are not finite, and layers without an extent or without any points.
+ */
+public class SpatialIndexTest {
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void emptyLayerFindsNothing(){
+        SpatialIndex index = new SpatialIndex(new float[0], new float[0], 0);
+        assertEquals(0, index.query(-1e6f, -1e6f, 1e6f, 1e6f, new int[0]));
+        assertEquals(0, index.query(Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY,
+                Float.POSITIVE_INFINITY, new int[0]));
+    }
+
+    @Test
+    public void floeOnTheAntimeridian(){
+        //Origin at 179.99 E, the stations on both sides of the antimeridian within about 3 km of it
+        float[][] layer = grid(82.5, 179.99, 30, 500, 82.48, 82.52, 179.95, 180.05);
+        assertMatchesScan(layer[0], layer[1], 500);
+        //The stations east of the antimeridian are found as well as the ones west of it
+        assertEquals(Arrays.asList(all(500)), query(layer, -1e5f, -1e5f, 1e5f, 1e5f));
+    }
+
+    @Test
+    public void floeNearThePole(){
+        //Stations at every longitude, all within about 2 km of the origin
+        float[][] layer = grid(89.99, 0, 45, 500, 89.98, 90, -180, 180);
+        assertMatchesScan(layer[0], layer[1], 500);
+        assertEquals(Arrays.asList(all(500)), query(layer, -1e5f, -1e5f, 1e5f, 1e5f));
+    }
+
+    @Test
+    public void positionsWhichAreNotFiniteAreNeverFound(){
+        float[] xs = new float[400];
+        float[] ys = new float[400];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = random.nextFloat() * 2000 - 1000;
+            ys[i] = random.nextFloat() * 2000 - 1000;
+        }
+        xs[0] = Float.NaN;
+        ys[1] = Float.NaN;
+        xs[2] = Float.POSITIVE_INFINITY;
+        ys[3] = Float.NEGATIVE_INFINITY;
+        assertMatchesScan(xs, ys, xs.length);
+
+        SpatialIndex index = new SpatialIndex(xs, ys, xs.length);
+        int[] out = new int[xs.length];
+        int count = index.query(Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+                out);
+        assertEquals(xs.length - 2, count);
+        assertEquals(0, index.query(Float.NaN, Float.NaN, Float.NaN, Float.NaN, out));
+    }
+
+    @Test
+    public void layerOfOnlyPositionsWhichAreNotFinite(){
+        float[] xs = {Float.NaN, 0, Float.POSITIVE_INFINITY};
+        float[] ys = {0, Float.NaN, 5};
+        assertEquals(0, new SpatialIndex(xs, ys, 3).query(-1e6f, -1e6f, 1e6f, 1e6f, new int[3]));
+    }
+
+    @Test
+    public void layerWithoutExtent(){
+        //Every station at the same position, and every station on the same line
+        float[] xs = new float[100];
+        float[] ys = new float[100];
+        Arrays.fill(xs, 12.5f);
+        Arrays.fill(ys, -3f);
+        assertMatchesScan(xs, ys, 100);
+        for (int i = 0; i < ys.length; i++) {
+            ys[i] = i * 10;
+        }
+        assertMatchesScan(xs, ys, 100);
+    }
+
+    @Test
+    public void farOutlierAndInvertedRectangle(){
+        float[] xs = new float[300];
+        float[] ys = new float[300];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = random.nextFloat() * 100;
+            ys[i] = random.nextFloat() * 100;
+        }
+        xs[299] = 5e6f;
+        ys[299] = -5e6f;
+        assertMatchesScan(xs, ys, xs.length);
+        assertEquals(0, new SpatialIndex(xs, ys, xs.length).query(100, 100, 0, 0, new int[xs.length]));
+    }
+
+    @Test
+    public void onlyTheGivenNumberOfPointsIsIndexed(){
+        float[] xs = {1, 2, 3, 4};
+        float[] ys = {1, 2, 3, 4};
+        int[] out = new int[4];
+        assertEquals(2, new SpatialIndex(xs, ys, 2).query(0, 0, 10, 10, out));
+    }
+
+    /**
+     * Positions on the grid of random stations, as calculated by the App
+     * @return the x and y positions of the stations
+     */
+    private float[][] grid(double originLat, double originLon, double beta, int size, double minLat, double maxLat, double minLon,
+                           double maxLon){
+        float[] xs = new float[size];
+        float[] ys = new float[size];
+        double[] grid = new double[NavigationFunctions.GRID_SIZE];
+        for (int i = 0; i < size; i++) {
+            double lat = minLat + random.nextDouble() * (maxLat - minLat);
+            double lon = minLon + random.nextDouble() * (maxLon - minLon);
+            if (lon > 180) {
+                lon -= 360;
+            }
+            NavigationFunctions.calculateGridCoordinates(originLat, originLon, beta, lat, lon, grid);
+            xs[i] = (float) grid[NavigationFunctions.GRID_X];
+            ys[i] = (float) grid[NavigationFunctions.GRID_Y];
+        }
+        return new float[][]{xs, ys};
+    }
+
+    private static List<Integer> query(float[][] layer, float left, float top, float right, float bottom){
+        int[] out = new int[layer[0].length];
+        int count = new SpatialIndex(layer[0], layer[1], layer[0].length).query(left, top, right, bottom, out);
+        return sorted(out, count);
+    }
+
+    /**
+     * Compares random queries of the index with a scan of every point
+     */
+    private void assertMatchesScan(float[] xs, float[] ys, int size){
+        SpatialIndex index = new SpatialIndex(xs, ys, size);
+        float minX = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY;
+        float minY = Float.POSITIVE_INFINITY;
+        float maxY = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            if (!Float.isNaN(xs[i]) && !Float.isInfinite(xs[i])) {
+                minX = Math.min(minX, xs[i]);
+                maxX = Math.max(maxX, xs[i]);
+            }
+            if (!Float.isNaN(ys[i]) && !Float.isInfinite(ys[i])) {
+                minY = Math.min(minY, ys[i]);
+                maxY = Math.max(maxY, ys[i]);
+            }
+        }
+        float width = Math.max(1, maxX - minX);
+        float height = Math.max(1, maxY - minY);
+        int[] out = new int[size];
+        for (int q = 0; q < 200; q++) {
+            //Rectangles partly or entirely outside the points as well
+            float left = minX - width / 4 + random.nextFloat() * width * 1.5f;
+            float top = minY - height / 4 + random.nextFloat() * height * 1.5f;
+            float right = left + random.nextFloat() * width / 2;
+            float bottom = top + random.nextFloat() * height / 2;
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                if (xs[i] >= left && xs[i] <= right && ys[i] >= top && ys[i] <= bottom) {
+                    expected.add(i);
+                }
+            }
+            assertEquals(expected, sorted(out, index.query(left, top, right, bottom, out)));
+        }
+    }
+
+    private static List<Integer> sorted(int[] out, int count){
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            indices.add(out[i]);
+        }
+        Collections.sort(indices);
+        return indices;
+    }
+
+    private static Integer[] all(int size){
+        Integer[] indices = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            indices[i] = i;
+        }
+        return indices;
+    }
+}
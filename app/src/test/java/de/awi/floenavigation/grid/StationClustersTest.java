@@ -0,0 +1,157 @@
+package de.awi.floenavigation.grid;
+
+import org.junit.Test;
+
+import de.awi.floenavigation.helperclasses.DatabaseHelper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link StationClusters}: which mobile stations share a cluster at a zoom bucket, the centre of a cluster, and when
+ * the clusters are calculated again.
+ */
+public class StationClustersTest {
+
+    /**
+     * Meters per pixel of zoom bucket 5, at which a cell is 48 * 32 = 1536 meters wide
+     */
+    private static final float METERS_PER_PIXEL = 20;
+    private static final float CELL_SIZE = 1536;
+
+    private static StationSnapshot snapshot(float... positions){
+        return StationSnapshot.EMPTY.withMobileStations(layer(positions));
+    }
+
+    private static StationSnapshot.Layer layer(float... positions){
+        StationSnapshot.Layer layer = new StationSnapshot.Layer(positions.length / 2, true);
+        for (int i = 0; i < layer.size; i++) {
+            layer.xs[i] = positions[2 * i];
+            layer.ys[i] = positions[2 * i + 1];
+            layer.mmsis[i] = 211000000 + i;
+            layer.names[i] = "Station " + i;
+        }
+        return layer;
+    }
+
+    @Test
+    public void zoomBucketIsThePowerOfTwo(){
+        assertEquals(0, StationClusters.zoomBucket(1));
+        assertEquals(1, StationClusters.zoomBucket(2));
+        assertEquals(2, StationClusters.zoomBucket(3));
+        assertEquals(2, StationClusters.zoomBucket(4));
+        assertEquals(5, StationClusters.zoomBucket(METERS_PER_PIXEL));
+        assertEquals(-3, StationClusters.zoomBucket(0.125f));
+        //Scales which are not valid share one bucket below every valid one, so no station is clustered
+        int invalid = StationClusters.zoomBucket(0);
+        assertEquals(invalid, StationClusters.zoomBucket(-1));
+        assertEquals(invalid, StationClusters.zoomBucket(Float.NaN));
+        assertEquals(invalid, StationClusters.zoomBucket(Float.POSITIVE_INFINITY));
+        assertTrue(invalid < StationClusters.zoomBucket(Float.MIN_VALUE));
+    }
+
+    @Test
+    public void stationsInTheSameCellShareACluster(){
+        StationClusters clusters = new StationClusters();
+        clusters.update(snapshot(100, 100, 300, 500, 1000, 200, 5000, 5000), METERS_PER_PIXEL);
+        assertEquals(2, clusters.clusterCount);
+        int cluster = clusters.clusterOf[0];
+        assertNotEquals(StationClusters.NOT_CLUSTERED, cluster);
+        assertEquals(cluster, clusters.clusterOf[1]);
+        assertEquals(cluster, clusters.clusterOf[2]);
+        assertEquals(3, clusters.sizes[cluster]);
+        //Centre of the stations of the cluster
+        assertEquals(1400 / 3f, clusters.xs[cluster], 1e-3);
+        assertEquals(800 / 3f, clusters.ys[cluster], 1e-3);
+        //A station alone in its cell is drawn individually
+        assertEquals(StationClusters.NOT_CLUSTERED, clusters.clusterOf[3]);
+    }
+
+    @Test
+    public void cellsOnBothSidesOfTheOrigin(){
+        //Four stations close to the origin of the grid, each in another quadrant and therefore in another cell
+        StationClusters clusters = new StationClusters();
+        clusters.update(snapshot(1, 1, 2, 2, -1, 1, -2, 2, 1, -1, 2, -2, -1, -1, -2, -2), METERS_PER_PIXEL);
+        assertEquals(4, clusters.clusterCount);
+        for (int i = 0; i < 8; i += 2) {
+            assertEquals(clusters.clusterOf[i], clusters.clusterOf[i + 1]);
+            assertEquals(2, clusters.sizes[clusters.clusterOf[i]]);
+        }
+        //Cells which only differ in the sign of one coordinate, or far apart, are different clusters
+        clusters = new StationClusters();
+        clusters.update(snapshot(0, -CELL_SIZE / 2, 0, -CELL_SIZE / 3, -CELL_SIZE / 2, 0, -CELL_SIZE / 3, 0, 0, -1e12f, 1, -1e12f),
+                METERS_PER_PIXEL);
+        assertEquals(3, clusters.clusterCount);
+        assertNotEquals(clusters.clusterOf[0], clusters.clusterOf[2]);
+        assertNotEquals(clusters.clusterOf[0], clusters.clusterOf[4]);
+    }
+
+    @Test
+    public void mothershipIsNeverClustered(){
+        StationSnapshot snapshot = snapshot(100, 100, 110, 110, 120, 120);
+        snapshot.mobileStations.mmsis[1] = DatabaseHelper.MOTHER_SHIP_MMSI;
+        StationClusters clusters = new StationClusters();
+        clusters.update(snapshot, METERS_PER_PIXEL);
+        assertEquals(StationClusters.NOT_CLUSTERED, clusters.clusterOf[1]);
+        assertEquals(2, clusters.sizes[clusters.clusterOf[0]]);
+        assertEquals(110, clusters.xs[clusters.clusterOf[0]], 1e-3);
+    }
+
+    @Test
+    public void noStationIsClusteredWhenZoomedIn(){
+        StationClusters clusters = new StationClusters();
+        clusters.update(snapshot(100, 100, 100, 100), 4);
+        assertEquals(0, clusters.clusterCount);
+        assertEquals(StationClusters.NOT_CLUSTERED, clusters.clusterOf[0]);
+        assertEquals(StationClusters.NOT_CLUSTERED, clusters.clusterOf[1]);
+        clusters.update(snapshot(100, 100, 100, 100), 5);
+        assertEquals(1, clusters.clusterCount);
+    }
+
+    @Test
+    public void positionsWhichAreNotFiniteAreDrawnIndividually(){
+        StationClusters clusters = new StationClusters();
+        clusters.update(snapshot(100, 100, Float.NaN, 100, 100, Float.POSITIVE_INFINITY, 200, 200), METERS_PER_PIXEL);
+        assertEquals(StationClusters.NOT_CLUSTERED, clusters.clusterOf[1]);
+        assertEquals(StationClusters.NOT_CLUSTERED, clusters.clusterOf[2]);
+        int cluster = clusters.clusterOf[0];
+        assertEquals(2, clusters.sizes[cluster]);
+        assertEquals(150, clusters.xs[cluster], 1e-3);
+        assertEquals(150, clusters.ys[cluster], 1e-3);
+    }
+
+    @Test
+    public void emptyLayer(){
+        StationClusters clusters = new StationClusters();
+        clusters.update(StationSnapshot.EMPTY, METERS_PER_PIXEL);
+        assertEquals(0, clusters.clusterCount);
+    }
+
+    @Test
+    public void clustersAreOnlyCalculatedAgainForANewVersionOrBucket(){
+        StationSnapshot snapshot = snapshot(100, 100, 200, 200);
+        StationClusters clusters = new StationClusters();
+        clusters.update(snapshot, METERS_PER_PIXEL);
+        int[] clusterOf = clusters.clusterOf;
+        assertEquals(1, clusters.clusterCount);
+
+        //A layer must not change once published, so a change without a new version is not seen
+        snapshot.mobileStations.xs[1] = 1e6f;
+        clusters.update(snapshot, METERS_PER_PIXEL * 1.5f);
+        assertEquals(1, clusters.clusterCount);
+        assertEquals(150, clusters.xs[0], 1e-3);
+
+        clusters.update(snapshot, METERS_PER_PIXEL * 2);
+        assertEquals(2, clusters.clusterCount);
+        assertEquals(StationClusters.NOT_CLUSTERED, clusters.clusterOf[0]);
+        assertEquals(StationClusters.NOT_CLUSTERED, clusters.clusterOf[1]);
+        assertSame(clusterOf, clusters.clusterOf);
+
+        //A new version with more stations than before, at the same bucket
+        clusters.update(snapshot.withMobileStations(layer(0, 0, 1, 1, 2, 2, 3, 3, 4, 4)), METERS_PER_PIXEL * 2);
+        assertEquals(1, clusters.clusterCount);
+        assertEquals(5, clusters.sizes[0]);
+    }
+}
@@ -0,0 +1,202 @@
+package de.awi.floenavigation.synchronization;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import de.awi.floenavigation.helperclasses.DatabaseHelper;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of the deletion of the acknowledged and pulled entries from the {@link DatabaseHelper#changeJournalTable} by
+ * {@link ChangeJournal#prune(SQLiteDatabase, String, long)} and by the {@link PushTracker} of an acknowledged push.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ChangeJournalTest {
+
+    private static final String TABLE = DatabaseHelper.waypointsTable;
+
+    private Context context;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() throws Exception {
+        resetDatabase();
+        context = RuntimeEnvironment.application;
+        db = DatabaseHelper.getDbInstance(context).getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        resetDatabase();
+    }
+
+    @Test
+    public void acknowledgedEntriesAreDeleted(){
+        insertWaypoints(0, 5);
+        long pushed = entryOf("WP_2");
+        assertEquals(3, ChangeJournal.prune(db, TABLE, pushed));
+        assertEquals(Arrays.asList("WP_3", "WP_4"), journalKeys());
+        assertEquals(pushed, prunedVersion());
+        //Nothing left to delete
+        assertEquals(0, ChangeJournal.prune(db, TABLE, pushed));
+        assertEquals(pushed, prunedVersion());
+    }
+
+    @Test
+    public void pulledEntriesAreDeletedAndLocalChangesKept(){
+        insertWaypoints(0, 2);
+        long pushed = ChangeJournal.currentVersion(db, TABLE);
+        long beforePull = pushed;
+        insertWaypoints(2, 2);
+        ChangeJournal.markPulled(db, TABLE, beforePull);
+        //A local change and a local deletion after the pull, not pushed yet
+        insertWaypoints(4, 1);
+        db.delete(TABLE, DatabaseHelper.labelID + " = ?", new String[]{"WP_0"});
+        long pulled = entryOf("WP_3");
+
+        assertEquals(3, ChangeJournal.prune(db, TABLE, pushed));
+        assertEquals(Arrays.asList("WP_4", "WP_0"), journalKeys());
+        assertEquals(pulled, prunedVersion());
+        //The changes after the pushed version are still pushed
+        assertEquals(Collections.singletonList("WP_0"), ChangeJournal.deletedKeys(db, TABLE, pushed));
+        Cursor cursor = db.query(TABLE, new String[]{DatabaseHelper.labelID}, ChangeJournal.changedRowsSelection(DatabaseHelper.labelID),
+                ChangeJournal.changedRowsArgs(TABLE, pushed), null, null, null);
+        try {
+            assertEquals(1, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void latestEntryIsKept(){
+        insertWaypoints(0, 3);
+        long version = ChangeJournal.currentVersion(db, TABLE);
+        assertEquals(2, ChangeJournal.prune(db, TABLE, version));
+        assertEquals(Collections.singletonList("WP_2"), journalKeys());
+        //The version of the table does not decrease
+        assertEquals(version, ChangeJournal.currentVersion(db, TABLE));
+        assertEquals(version - 1, prunedVersion());
+    }
+
+    @Test
+    public void otherTablesAreNotPruned(){
+        insertWaypoints(0, 3);
+        ContentValues values = new ContentValues();
+        values.put(DatabaseHelper.staticStationName, "Hut");
+        values.put(DatabaseHelper.stationType, "Tent");
+        db.insertOrThrow(DatabaseHelper.staticStationListTable, null, values);
+        ChangeJournal.prune(db, TABLE, Long.MAX_VALUE);
+        assertEquals(1, entries(DatabaseHelper.staticStationListTable));
+        assertEquals(0, prunedVersion(DatabaseHelper.staticStationListTable));
+    }
+
+    @Test
+    public void acknowledgedPushPrunesTheJournal(){
+        insertWaypoints(0, 4);
+        long version = ChangeJournal.currentVersion(db, TABLE);
+        PushTracker tracker = new PushTracker(context, TABLE, version, null);
+        tracker.requestAdded();
+        tracker.requestDone(true);
+        tracker.allRequestsAdded();
+        assertEquals(version, ChangeJournal.getPushedVersion(db, TABLE));
+        assertEquals(Collections.singletonList("WP_3"), journalKeys());
+    }
+
+    @Test
+    public void failedPushKeepsTheJournal(){
+        insertWaypoints(0, 4);
+        PushTracker tracker = new PushTracker(context, TABLE, ChangeJournal.currentVersion(db, TABLE), null);
+        tracker.requestAdded();
+        tracker.requestDone(false);
+        tracker.allRequestsAdded();
+        assertEquals(4, entries(TABLE));
+        assertEquals(0, prunedVersion());
+    }
+
+    private void insertWaypoints(int first, int count){
+        for (int i = first; i < first + count; i++) {
+            ContentValues values = new ContentValues();
+            values.put(DatabaseHelper.latitude, 82.5);
+            values.put(DatabaseHelper.longitude, 15.0);
+            values.put(DatabaseHelper.updateTime, "1530000000000");
+            values.put(DatabaseHelper.labelID, "WP_" + i);
+            values.put(DatabaseHelper.label, "Waypoint " + i);
+            db.insertOrThrow(TABLE, null, values);
+        }
+    }
+
+    private long entryOf(String key){
+        Cursor cursor = db.query(DatabaseHelper.changeJournalTable, new String[]{"_id"},
+                DatabaseHelper.journalTableName + " = ? AND " + DatabaseHelper.rowKey + " = ?", new String[]{TABLE, key},
+                null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * @return the keys of the entries of the table in the order of their versions
+     */
+    private List<String> journalKeys(){
+        List<String> keys = new ArrayList<>();
+        Cursor cursor = db.query(DatabaseHelper.changeJournalTable, new String[]{DatabaseHelper.rowKey},
+                DatabaseHelper.journalTableName + " = ?", new String[]{TABLE}, null, null, "_id");
+        try {
+            while (cursor.moveToNext()) {
+                keys.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return keys;
+    }
+
+    private long entries(String table){
+        return DatabaseUtils.queryNumEntries(db, DatabaseHelper.changeJournalTable,
+                DatabaseHelper.journalTableName + " = ?", new String[]{table});
+    }
+
+    private long prunedVersion(){
+        return prunedVersion(TABLE);
+    }
+
+    private long prunedVersion(String table){
+        return DatabaseUtils.longForQuery(db, "SELECT IFNULL(MAX(" + DatabaseHelper.prunedVersion + "), 0) FROM " +
+                DatabaseHelper.syncStateTable + " WHERE " + DatabaseHelper.journalTableName + " = ?", new String[]{table});
+    }
+
+    /**
+     * Drops the database of the previous test, as Robolectric gives every test a new database
+     */
+    private static void resetDatabase() throws Exception {
+        Field dbInstance = DatabaseHelper.class.getDeclaredField("dbInstance");
+        dbInstance.setAccessible(true);
+        DatabaseHelper helper = (DatabaseHelper) dbInstance.get(null);
+        if (helper != null) {
+            helper.close();
+        }
+        dbInstance.set(null, null);
+    }
+}
@@ -0,0 +1,283 @@
+package de.awi.floenavigation.synchronization;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.android.volley.RequestQueue;
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.Volley;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+
+import de.awi.floenavigation.helperclasses.DatabaseHelper;
+import de.awi.floenavigation.synchronization.server.SyncStandInServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the compression and the entity tags of the {@link ShadowTablePull} against the {@link SyncStandInServer}: a pull is
+ * answered compressed, a pull of an unchanged table is answered with 304 and leaves the table as it is, and a pull which clears
+ * other tables never sends the entity tag, so it always clears them.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ShadowTablePullTest {
+
+    private static final String WAYPOINTS_PATH = "/Waypoint/pushWaypoints.php";
+    private static final String DEVICES_PATH = "/SampleMeasurement/pushDevices.php";
+    private static final String[] WAYPOINT_COLUMNS = {
+            DatabaseHelper.latitude, DatabaseHelper.longitude, DatabaseHelper.xPosition, DatabaseHelper.yPosition,
+            DatabaseHelper.updateTime, DatabaseHelper.labelID, DatabaseHelper.label
+    };
+    private static final String[] DEVICE_COLUMNS = {
+            DatabaseHelper.deviceID, DatabaseHelper.deviceName, DatabaseHelper.deviceShortName, DatabaseHelper.deviceType
+    };
+    /**
+     * Time in msecs after which a pull is given up
+     */
+    private static final long TIMEOUT_MILLIS = 30 * 1000;
+
+    /**
+     * Pull and the number of rows it has pulled
+     */
+    private static final class Result implements Response.Listener<Integer>, Response.ErrorListener {
+
+        ShadowTablePull pull;
+        /**
+         * Number of rows pulled, <code>null</code> if the pull failed
+         */
+        Integer rows;
+        boolean done = false;
+
+        @Override
+        public void onResponse(Integer rows) {
+            this.rows = rows;
+            done = true;
+        }
+
+        @Override
+        public void onErrorResponse(VolleyError error) {
+            done = true;
+        }
+    }
+
+    @Rule
+    public final TemporaryFolder pullDir = new TemporaryFolder();
+
+    private Context context;
+    private SQLiteDatabase db;
+    private SyncStandInServer standIn;
+    private HttpServer server;
+    private RequestQueue requestQueue;
+
+    @Before
+    public void setUp() throws IOException {
+        context = RuntimeEnvironment.application;
+        db = DatabaseHelper.getDbInstance(context).getWritableDatabase();
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        standIn = new SyncStandInServer(0, pullDir.getRoot());
+        standIn.setVerbose(false);
+        server = standIn.start(0);
+        requestQueue = Volley.newRequestQueue(context);
+        ShadowTablePull.setAcceptBinary(false);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        requestQueue.stop();
+        server.stop(0);
+        //Robolectric gives every test a new database, so the instance of the previous test must not be used
+        DatabaseHelper.getDbInstance(context).close();
+        Field dbInstance = DatabaseHelper.class.getDeclaredField("dbInstance");
+        dbInstance.setAccessible(true);
+        dbInstance.set(null, null);
+    }
+
+    @Test
+    public void pullIsCompressed() throws Exception {
+        File file = writeWaypoints(200);
+        SyncStandInServer.Traffic before = standIn.getTraffic(WAYPOINTS_PATH);
+        assertEquals(Integer.valueOf(200), run(pullWaypoints()));
+        SyncStandInServer.Traffic traffic = standIn.getTraffic(WAYPOINTS_PATH).since(before);
+        assertEquals(1, traffic.requests);
+        assertTrue("Response not compressed", traffic.sentBytes < file.length() / 2);
+        assertEquals(200, DatabaseUtils.queryNumEntries(db, DatabaseHelper.waypointsTable));
+    }
+
+    @Test
+    public void unchangedTableIsNotModified() throws Exception {
+        writeWaypoints(50);
+        assertEquals(Integer.valueOf(50), run(pullWaypoints()));
+        assertNotNull(ChangeJournal.getPullEtag(db, DatabaseHelper.waypointsTable));
+        insertWaypoint("PS118_WP_LOCAL");
+
+        SyncStandInServer.Traffic before = standIn.getTraffic(WAYPOINTS_PATH);
+        assertEquals(Integer.valueOf(0), run(pullWaypoints()));
+        SyncStandInServer.Traffic traffic = standIn.getTraffic(WAYPOINTS_PATH).since(before);
+        assertEquals(1, traffic.requests);
+        assertEquals(0, traffic.sentBytes);
+        //Nothing is written on a 304, so the row added since the last pull is not cleared
+        assertEquals(51, DatabaseUtils.queryNumEntries(db, DatabaseHelper.waypointsTable));
+    }
+
+    @Test
+    public void changedTableIsPulledAgain() throws Exception {
+        writeWaypoints(50);
+        assertEquals(Integer.valueOf(50), run(pullWaypoints()));
+        String etag = ChangeJournal.getPullEtag(db, DatabaseHelper.waypointsTable);
+
+        writeWaypoints(30);
+        assertEquals(Integer.valueOf(30), run(pullWaypoints()));
+        assertEquals(30, DatabaseUtils.queryNumEntries(db, DatabaseHelper.waypointsTable));
+        assertNotEquals(etag, ChangeJournal.getPullEtag(db, DatabaseHelper.waypointsTable));
+    }
+
+    @Test
+    public void pullClearingOtherTablesIgnoresTheEntityTag() throws Exception {
+        writeDevices(5);
+        assertEquals(Integer.valueOf(5), run(pullDevices()));
+        insertSample();
+        assertEquals(1, DatabaseUtils.queryNumEntries(db, DatabaseHelper.sampleMeasurementTable));
+
+        SyncStandInServer.Traffic before = standIn.getTraffic(DEVICES_PATH);
+        assertEquals(Integer.valueOf(5), run(pullDevices()));
+        assertTrue("Pull answered with 304", standIn.getTraffic(DEVICES_PATH).since(before).sentBytes > 0);
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, DatabaseHelper.sampleMeasurementTable));
+        assertEquals(5, DatabaseUtils.queryNumEntries(db, DatabaseHelper.deviceListTable));
+    }
+
+    @Test
+    public void failedPullLeavesTheTables() throws Exception {
+        insertSample();
+        //No file is served, so the pull is answered with 404
+        assertNull(run(pullDevices()));
+        assertEquals(1, DatabaseUtils.queryNumEntries(db, DatabaseHelper.sampleMeasurementTable));
+    }
+
+    private Result pullWaypoints(){
+        Result result = new Result();
+        result.pull = new ShadowTablePull(context, url(WAYPOINTS_PATH), DatabaseHelper.waypointsTable, WAYPOINT_COLUMNS,
+                DatabaseHelper.labelID, result, result);
+        return result;
+    }
+
+    private Result pullDevices(){
+        Result result = new Result();
+        result.pull = new ShadowTablePull(context, url(DEVICES_PATH), DatabaseHelper.deviceListTable, DEVICE_COLUMNS, null,
+                result, result);
+        result.pull.setClearedTables(DatabaseHelper.sampleMeasurementTable);
+        return result;
+    }
+
+    private String url(String path){
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    /**
+     * Runs the pull and delivers its response on the UI thread
+     * @return the number of rows pulled, <code>null</code> if the pull failed
+     */
+    private Integer run(Result result) throws InterruptedException {
+        requestQueue.add(result.pull);
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!result.done) {
+            assertTrue("Pull not finished within " + TIMEOUT_MILLIS + " ms", System.currentTimeMillis() < deadline);
+            ShadowLooper.idleMainLooper();
+            Thread.sleep(1);
+        }
+        return result.rows;
+    }
+
+    private void insertWaypoint(String labelID){
+        ContentValues values = new ContentValues();
+        values.put(DatabaseHelper.latitude, 82.5);
+        values.put(DatabaseHelper.longitude, 15.0);
+        values.put(DatabaseHelper.updateTime, "1530000000000");
+        values.put(DatabaseHelper.labelID, labelID);
+        values.put(DatabaseHelper.label, "Local");
+        db.insertOrThrow(DatabaseHelper.waypointsTable, null, values);
+    }
+
+    private void insertSample(){
+        ContentValues values = new ContentValues();
+        values.put(DatabaseHelper.deviceID, "PS118_1");
+        values.put(DatabaseHelper.deviceName, "Device 1");
+        values.put(DatabaseHelper.updateTime, "1530000000000");
+        values.put(DatabaseHelper.labelID, "PS118_1_1");
+        db.insertOrThrow(DatabaseHelper.sampleMeasurementTable, null, values);
+    }
+
+    private File writeWaypoints(int rows) throws IOException {
+        StringBuilder xml = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            xml.append("<").append(DatabaseHelper.waypointsTable).append(">")
+                    .append(element(DatabaseHelper.latitude, String.valueOf(82.5 + i * 1e-6)))
+                    .append(element(DatabaseHelper.longitude, String.valueOf(15.0 + i * 1e-6)))
+                    .append(element(DatabaseHelper.xPosition, String.valueOf(i * 0.5)))
+                    .append(element(DatabaseHelper.yPosition, String.valueOf(i * 0.25)))
+                    .append(element(DatabaseHelper.updateTime, String.valueOf(1530000000000L + i * 1000L)))
+                    .append(element(DatabaseHelper.labelID, "PS118_WP_" + i))
+                    .append(element(DatabaseHelper.label, "Waypoint " + i))
+                    .append("</").append(DatabaseHelper.waypointsTable).append(">");
+        }
+        return writePull(WAYPOINTS_PATH, xml);
+    }
+
+    private File writeDevices(int rows) throws IOException {
+        StringBuilder xml = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            xml.append("<").append(DatabaseHelper.deviceListTable).append(">")
+                    .append(element(DatabaseHelper.deviceID, "PS118_" + i))
+                    .append(element(DatabaseHelper.deviceName, "Device " + i))
+                    .append(element(DatabaseHelper.deviceShortName, "D" + i))
+                    .append(element(DatabaseHelper.deviceType, "Sample"))
+                    .append("</").append(DatabaseHelper.deviceListTable).append(">");
+        }
+        return writePull(DEVICES_PATH, xml);
+    }
+
+    private static String element(String name, String value){
+        return "<" + name + ">" + value + "</" + name + ">";
+    }
+
+    /**
+     * Writes the XML of a pull below the pull directory of the stand-in server
+     */
+    private File writePull(String path, CharSequence rows) throws IOException {
+        File file = new File(pullDir.getRoot(), path);
+        file.getParentFile().mkdirs();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?><DATA>");
+            writer.append(rows);
+            writer.write("</DATA>");
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,507 @@
+package de.awi.floenavigation.synchronization;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.android.volley.RequestQueue;
+import com.android.volley.toolbox.Volley;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import de.awi.floenavigation.helperclasses.DatabaseHelper;
+import de.awi.floenavigation.synchronization.server.SyncStandInServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmark of the Synchronization of the App: seeds the {@link DatabaseHelper} with synthetic rows of every synchronized table,
+ * pushes them and pulls them back with the {@link SyncSession}, which runs the same steps as the {@link SyncActivity}, against the
+ * {@link SyncStandInServer} running in process with a simulated link. The push and the pull run through the {@link BatchPush},
+ * the {@link SyncOutbox}, the {@link ShadowTablePull}, the triggers of the {@link DatabaseHelper#changeJournalTable} and SQLite,
+ * on Robolectric.
+ * <p>
+ *     The Samples, Waypoints, Fixed Stations, AIS Station List, Mobile Stations and Static Stations get the number of rows of the
+ *     data set, the other tables the few rows they have on the ice. The wall time, the requests and the bytes of the bodies sent and
+ *     received are reported per table, the latter from the paths of the table, as up to {@link SyncSession#MAX_PARALLEL_TABLES}
+ *     tables run at the same time. The wall time, the traffic and the peak heap are also reported per push and pull. The peak heap
+ *     is the sum of the peaks of the heap memory pools, reset after a garbage collection before the push and the pull, and includes
+ *     Robolectric and the stand-in server. The pulls serve the rows the stand-in server received, as the Sync Server does after the
+ *     push of every tablet.
+ * </p>
+ * <p>
+ *     The benchmark is only run if the Gradle property <code>syncBenchmarkRows</code> is set, see <code>app/build.gradle</code>. The
+ *     system properties <code>syncBenchmarkRows</code>, <code>syncBenchmarkBatchSize</code>, <code>syncBenchmarkLatencyMs</code>,
+ *     <code>syncBenchmarkBytesPerSecond</code>, <code>syncBenchmarkBinary</code> and <code>syncBenchmarkOut</code> are passed on
+ *     from the Gradle properties of the same name. The results are written as CSV to <code>syncBenchmarkOut</code>.
+ * </p>
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class SyncBenchmarkTest {
+
+    /**
+     * Number of different devices of the Samples, also the number of Users
+     */
+    private static final int DEVICES = 20;
+    /**
+     * Time in msecs after which a push or a pull is given up
+     */
+    private static final long TIMEOUT_MILLIS = 30 * 60 * 1000;
+    /**
+     * Start of the paths of the requests of each step, by which the traffic of the steps running at the same time is told apart
+     */
+    private static final Map<String, String> STEP_PATHS = new LinkedHashMap<>();
+
+    static {
+        STEP_PATHS.put(SyncSession.MOBILE_STATIONS, "/pullMobileStation");
+        STEP_PATHS.put(SyncSession.BASE_STATIONS, "/BaseStation/");
+        STEP_PATHS.put(SyncSession.STATION_LIST, "/StationList/");
+        STEP_PATHS.put(SyncSession.FIXED_STATIONS, "/FixedStation/");
+        STEP_PATHS.put(SyncSession.BETA, "/Beta/");
+        STEP_PATHS.put(SyncSession.CONFIGURATION_PARAMETERS, "/ConfigurationParameter/");
+        STEP_PATHS.put(SyncSession.USERS, "/Users/");
+        STEP_PATHS.put(SyncSession.SAMPLES, "/SampleMeasurement/pullSamples");
+        STEP_PATHS.put(SyncSession.DEVICE_LIST, "/SampleMeasurement/pushDevices");
+        STEP_PATHS.put(SyncSession.STATIC_STATIONS, "/StaticStation/");
+        STEP_PATHS.put(SyncSession.WAYPOINTS, "/Waypoint/");
+    }
+
+    @Rule
+    public final TemporaryFolder pullDir = new TemporaryFolder();
+
+    private final int[] rowCounts = parseRows(System.getProperty("syncBenchmarkRows", "100"));
+    private final int batchSize = Integer.parseInt(System.getProperty("syncBenchmarkBatchSize", "500"));
+    private final long latencyMillis = Long.parseLong(System.getProperty("syncBenchmarkLatencyMs", "0"));
+    private final long bytesPerSecond = Long.parseLong(System.getProperty("syncBenchmarkBytesPerSecond", "0"));
+    private final boolean binary = Boolean.parseBoolean(System.getProperty("syncBenchmarkBinary", "false"));
+    private final String out = System.getProperty("syncBenchmarkOut", "build/reports/sync-benchmark.csv");
+
+    private Context context;
+    private SQLiteDatabase db;
+    private SyncStandInServer standIn;
+    private HttpServer server;
+    private final List<String> results = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        context = RuntimeEnvironment.application;
+        db = DatabaseHelper.getDbInstance(context).getWritableDatabase();
+        //Without it every request waits for the delayed ACK of the loopback interface
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        standIn = new SyncStandInServer(0, pullDir.getRoot());
+        standIn.setVerbose(false);
+        standIn.setLink(latencyMillis, bytesPerSecond);
+        server = standIn.start(0);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.stop(0);
+        File file = new File(out);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            writer.println("rows,batchSize,latencyMs,bytesPerSecond,binary,phase,step,wallMs,requests,requestBytes,responseBytes,peakHeapMB");
+            for (String result : results) {
+                writer.println(result);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void pushAndPullScale() throws Exception {
+        for (int rows : rowCounts) {
+            clearTables();
+            standIn.clearRows();
+            seed(rows);
+
+            RequestQueue requestQueue = Volley.newRequestQueue(context);
+            try {
+                XmlPullParser parser = XmlPullParserFactory.newInstance().newPullParser();
+                SyncSession session = new SyncSession(context, requestQueue, parser);
+                session.setServer("127.0.0.1", String.valueOf(server.getAddress().getPort()), batchSize, binary);
+
+                startPhase();
+                SyncStandInServer.Traffic before = standIn.getTraffic();
+                long startTime = System.nanoTime();
+                session.readSnapshot();
+                report(rows, "push", "Snapshot", (System.nanoTime() - startTime) / 1000000, standIn.getTraffic().since(before), true);
+
+                BenchmarkListener pushListener = new BenchmarkListener(rows, "push");
+                assertEquals("Tables not pushed", 0, run(session.createPush(pushListener), pushListener));
+                assertEquals(rows, received(DatabaseHelper.sampleMeasurementTable, "/SampleMeasurement/pullSamples.php").size());
+                assertEquals(rows, received(DatabaseHelper.mobileStationTable, "/pullMobileStation.php").size());
+                assertEquals(0, DatabaseUtils.queryNumEntries(db, DatabaseHelper.mobileStationTable));
+
+                writePull("/BaseStation/pushStations.php", DatabaseHelper.baseStationTable,
+                        received(DatabaseHelper.baseStationTable, "/BaseStation/pullStations.php"));
+                writePull("/StationList/pushStations.php", DatabaseHelper.stationListTable,
+                        received(DatabaseHelper.stationListTable, "/StationList/pullStations.php"));
+                writePull("/FixedStation/pushStations.php", DatabaseHelper.fixedStationTable,
+                        received(DatabaseHelper.fixedStationTable, "/FixedStation/pullStations.php"));
+                writePull("/Beta/pushBeta.php", DatabaseHelper.betaTable,
+                        received(DatabaseHelper.betaTable, "/Beta/pullBeta.php"));
+                writePull("/ConfigurationParameter/pushParameter.php", DatabaseHelper.configParametersTable,
+                        received(DatabaseHelper.configParametersTable, "/ConfigurationParameter/pullParameter.php"));
+                writePull("/Users/pushUsers.php", DatabaseHelper.usersTable,
+                        received(DatabaseHelper.usersTable, "/Users/pullUsers.php"));
+                writePull("/SampleMeasurement/pushDevices.php", DatabaseHelper.deviceListTable,
+                        devices(received(DatabaseHelper.sampleMeasurementTable, "/SampleMeasurement/pullSamples.php")));
+                writePull("/StaticStation/pushStations.php", DatabaseHelper.staticStationListTable,
+                        received(DatabaseHelper.staticStationListTable, "/StaticStation/pullStations.php"));
+                writePull("/Waypoint/pushWaypoints.php", DatabaseHelper.waypointsTable,
+                        received(DatabaseHelper.waypointsTable, "/Waypoint/pullWaypoints.php"));
+
+                BenchmarkListener pullListener = new BenchmarkListener(rows, "pull");
+                long numOfBaseStations = session.countRows(DatabaseHelper.baseStationTable);
+                assertEquals("Tables not pulled", 0, run(session.createPull(numOfBaseStations, pullListener), pullListener));
+                assertFalse(session.areSamplesKept());
+            } finally {
+                requestQueue.stop();
+            }
+
+            assertEquals(2, DatabaseUtils.queryNumEntries(db, DatabaseHelper.baseStationTable));
+            assertEquals(rows, DatabaseUtils.queryNumEntries(db, DatabaseHelper.stationListTable));
+            assertEquals(rows, DatabaseUtils.queryNumEntries(db, DatabaseHelper.fixedStationTable));
+            assertEquals(rows, DatabaseUtils.queryNumEntries(db, DatabaseHelper.staticStationListTable));
+            assertEquals(rows, DatabaseUtils.queryNumEntries(db, DatabaseHelper.waypointsTable));
+            assertEquals(1, DatabaseUtils.queryNumEntries(db, DatabaseHelper.betaTable));
+            assertEquals(Math.min(rows, DEVICES), DatabaseUtils.queryNumEntries(db, DatabaseHelper.deviceListTable));
+            assertEquals(0, DatabaseUtils.queryNumEntries(db, DatabaseHelper.sampleMeasurementTable));
+            //The pulled rows are not pushed back with the next Sync
+            assertEquals(0, DatabaseUtils.queryNumEntries(db, DatabaseHelper.waypointsTable,
+                    ChangeJournal.changedRowsSelection(DatabaseHelper.labelID),
+                    ChangeJournal.changedRowsArgs(DatabaseHelper.waypointsTable,
+                            ChangeJournal.getPushedVersion(db, DatabaseHelper.waypointsTable))));
+        }
+    }
+
+    /**
+     * Runs the steps and delivers the responses of Volley on the UI thread until every step has finished
+     * @return the number of steps which failed
+     */
+    private static int run(SyncOrchestrator orchestrator, BenchmarkListener listener) throws InterruptedException {
+        orchestrator.start();
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (listener.failed < 0) {
+            assertTrue("Sync not finished within " + TIMEOUT_MILLIS + " ms", System.currentTimeMillis() < deadline);
+            ShadowLooper.idleMainLooper();
+            Thread.sleep(1);
+        }
+        return listener.failed;
+    }
+
+    /**
+     * Inserts the rows of every synchronized table in one transaction, as taken on the ice. The Configuration Parameters are the
+     * ones of a new installation.
+     */
+    private void seed(int rows){
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (int i = 0; i < 2; i++) {
+                values.clear();
+                values.put(DatabaseHelper.mmsi, 211000000 + i);
+                values.put(DatabaseHelper.stationName, "Station " + i);
+                values.put(DatabaseHelper.isOrigin, i == 0 ? 1 : 0);
+                db.insertOrThrow(DatabaseHelper.baseStationTable, null, values);
+            }
+
+            values.clear();
+            values.put(DatabaseHelper.beta, 42.5);
+            values.put(DatabaseHelper.updateTime, "1530000000000");
+            db.insertOrThrow(DatabaseHelper.betaTable, null, values);
+
+            for (int i = 0; i < DEVICES; i++) {
+                values.clear();
+                values.put(DatabaseHelper.userName, "user" + i);
+                values.put(DatabaseHelper.password, "password" + i);
+                db.insertOrThrow(DatabaseHelper.usersTable, null, values);
+            }
+
+            for (int i = 0; i < rows; i++) {
+                String updateTime = String.valueOf(1530000000000L + i * 1000L);
+                double latitude = 82.5 + i * 1e-6;
+                double longitude = 15.0 + i * 1e-6;
+
+                values.clear();
+                values.put(DatabaseHelper.deviceID, "PS118_" + (i % DEVICES));
+                values.put(DatabaseHelper.deviceName, "Device " + (i % DEVICES));
+                values.put(DatabaseHelper.deviceShortName, "D" + (i % DEVICES));
+                values.put(DatabaseHelper.deviceType, i % 2 == 0 ? "Sample" : "Measurement");
+                values.put(DatabaseHelper.comment, "Sample " + i);
+                values.put(DatabaseHelper.latitude, latitude);
+                values.put(DatabaseHelper.longitude, longitude);
+                values.put(DatabaseHelper.xPosition, i * 0.5);
+                values.put(DatabaseHelper.yPosition, i * 0.25);
+                values.put(DatabaseHelper.updateTime, updateTime);
+                values.put(DatabaseHelper.labelID, "PS118_" + (i % DEVICES) + "_" + i);
+                values.put(DatabaseHelper.label, "Label " + i);
+                db.insertOrThrow(DatabaseHelper.sampleMeasurementTable, null, values);
+
+                values.clear();
+                values.put(DatabaseHelper.latitude, latitude);
+                values.put(DatabaseHelper.longitude, longitude);
+                values.put(DatabaseHelper.xPosition, i * 0.5);
+                values.put(DatabaseHelper.yPosition, i * 0.25);
+                values.put(DatabaseHelper.updateTime, updateTime);
+                values.put(DatabaseHelper.labelID, "PS118_WP_" + i);
+                values.put(DatabaseHelper.label, "Waypoint " + i);
+                db.insertOrThrow(DatabaseHelper.waypointsTable, null, values);
+
+                values.clear();
+                values.put(DatabaseHelper.stationName, "Station " + i);
+                values.put(DatabaseHelper.latitude, latitude);
+                values.put(DatabaseHelper.longitude, longitude);
+                values.put(DatabaseHelper.recvdLatitude, latitude);
+                values.put(DatabaseHelper.recvdLongitude, longitude);
+                values.put(DatabaseHelper.alpha, i % 360);
+                values.put(DatabaseHelper.distance, i * 0.5);
+                values.put(DatabaseHelper.xPosition, i * 0.5);
+                values.put(DatabaseHelper.yPosition, i * 0.25);
+                values.put(DatabaseHelper.stationType, "Fixed");
+                values.put(DatabaseHelper.updateTime, updateTime);
+                values.put(DatabaseHelper.sog, 0.1);
+                values.put(DatabaseHelper.cog, 90.0);
+                values.put(DatabaseHelper.packetType, 1);
+                values.put(DatabaseHelper.isPredicted, 0);
+                values.put(DatabaseHelper.predictionAccuracy, 0);
+                values.put(DatabaseHelper.isLocationReceived, 1);
+                values.put(DatabaseHelper.mmsi, 211000000 + i);
+                db.insertOrThrow(DatabaseHelper.fixedStationTable, null, values);
+
+                values.clear();
+                values.put(DatabaseHelper.mmsi, 211000000 + i);
+                values.put(DatabaseHelper.stationName, "Station " + i);
+                db.insertOrThrow(DatabaseHelper.stationListTable, null, values);
+
+                values.clear();
+                values.put(DatabaseHelper.stationName, "Vessel " + i);
+                values.put(DatabaseHelper.latitude, latitude);
+                values.put(DatabaseHelper.longitude, longitude);
+                values.put(DatabaseHelper.sog, 5.0);
+                values.put(DatabaseHelper.cog, 180.0);
+                values.put(DatabaseHelper.alpha, i % 360);
+                values.put(DatabaseHelper.distance, i * 2.0);
+                values.put(DatabaseHelper.xPosition, i * 2.0);
+                values.put(DatabaseHelper.yPosition, i * 1.5);
+                values.put(DatabaseHelper.updateTime, updateTime);
+                values.put(DatabaseHelper.isCalculated, 1);
+                values.put(DatabaseHelper.packetType, 1);
+                values.put(DatabaseHelper.mmsi, 219000000 + i);
+                db.insertOrThrow(DatabaseHelper.mobileStationTable, null, values);
+
+                values.clear();
+                values.put(DatabaseHelper.staticStationName, "Static " + i);
+                values.put(DatabaseHelper.stationType, "Tent");
+                values.put(DatabaseHelper.xPosition, i * 0.75);
+                values.put(DatabaseHelper.yPosition, i * 0.5);
+                values.put(DatabaseHelper.alpha, i % 360);
+                values.put(DatabaseHelper.distance, i * 0.9);
+                db.insertOrThrow(DatabaseHelper.staticStationListTable, null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Empties the synchronized tables except the Configuration Parameters and forgets what was pushed and pulled, before the next
+     * data set
+     */
+    private void clearTables(){
+        for (String table : new String[]{DatabaseHelper.baseStationTable, DatabaseHelper.betaTable, DatabaseHelper.usersTable,
+                DatabaseHelper.sampleMeasurementTable, DatabaseHelper.waypointsTable, DatabaseHelper.fixedStationTable,
+                DatabaseHelper.stationListTable, DatabaseHelper.mobileStationTable, DatabaseHelper.staticStationListTable,
+                DatabaseHelper.deviceListTable, DatabaseHelper.changeJournalTable, DatabaseHelper.syncStateTable,
+                DatabaseHelper.syncOutboxTable}) {
+            db.delete(table, null, null);
+        }
+    }
+
+    /**
+     * @param table table of the batched push
+     * @param path path of the push of single rows
+     * @return the rows received by the stand-in server, whether batched or not
+     */
+    private List<Map<String, String>> received(String table, String path){
+        List<Map<String, String>> rows = standIn.getRows(table);
+        rows.addAll(standIn.getRows(path));
+        return rows;
+    }
+
+    /**
+     * @return the devices of the Samples, each once, as the Sync Server lists them
+     */
+    private static List<Map<String, String>> devices(List<Map<String, String>> samples){
+        Map<String, Map<String, String>> devices = new LinkedHashMap<>();
+        for (Map<String, String> sample : samples) {
+            Map<String, String> device = new LinkedHashMap<>();
+            for (String column : new String[]{DatabaseHelper.deviceID, DatabaseHelper.deviceName, DatabaseHelper.deviceShortName,
+                    DatabaseHelper.deviceType}) {
+                device.put(column, sample.get(column));
+            }
+            devices.put(sample.get(DatabaseHelper.deviceID), device);
+        }
+        return new ArrayList<>(devices.values());
+    }
+
+    /**
+     * Writes the XML of a pull below the pull directory of the stand-in server, one element named after the table per row
+     */
+    private void writePull(String path, String table, List<Map<String, String>> rows) throws IOException {
+        File file = new File(pullDir.getRoot(), path);
+        file.getParentFile().mkdirs();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?><DATA>");
+            for (Map<String, String> row : rows) {
+                writer.write("<" + table + ">");
+                for (Map.Entry<String, String> value : row.entrySet()) {
+                    writer.write("<" + value.getKey() + ">" + escape(value.getValue()) + "</" + value.getKey() + ">");
+                }
+                writer.write("</" + table + ">");
+            }
+            writer.write("</DATA>");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String escape(String value){
+        return value == null ? "" : value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    /**
+     * Resets the peak of the heap memory pools after a garbage collection at the start of a push or pull
+     */
+    private static void startPhase(){
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * @return the sum of the peaks of the heap memory pools since the start of the push or pull
+     */
+    private static long peakHeap(){
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peakHeap;
+    }
+
+    /**
+     * Adds a line to the results
+     * @param withHeap <code>true</code> to report the peak heap, which is only measured per push and pull, as the steps overlap
+     */
+    private void report(int rows, String phase, String step, long wallMillis, SyncStandInServer.Traffic traffic, boolean withHeap){
+        String peakHeap = withHeap ? String.format(Locale.US, "%.1f", peakHeap() / 1048576.0) : "";
+        results.add(String.format(Locale.US, "%d,%d,%d,%d,%b,%s,%s,%d,%d,%d,%d,%s", rows, batchSize, latencyMillis, bytesPerSecond,
+                binary, phase, step, wallMillis, traffic.requests, traffic.receivedBytes, traffic.sentBytes, peakHeap));
+    }
+
+    private static int[] parseRows(String rows){
+        String[] values = rows.split(",");
+        int[] counts = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            counts[i] = Integer.parseInt(values[i].trim());
+        }
+        return counts;
+    }
+
+    /**
+     * Measures each step and the whole push or pull and keeps the number of failed steps once all have finished
+     */
+    private class BenchmarkListener implements SyncOrchestrator.Listener {
+
+        private final int rows;
+        private final String phase;
+        /**
+         * Traffic of the paths of each running step when it was started
+         */
+        private final Map<String, SyncStandInServer.Traffic> before = new HashMap<>();
+        /**
+         * Traffic of all paths when the listener was created
+         */
+        private final SyncStandInServer.Traffic phaseBefore;
+        /**
+         * Number of steps which failed, -1 until every step has finished
+         */
+        private int failed = -1;
+
+        BenchmarkListener(int rows, String phase){
+            this.rows = rows;
+            this.phase = phase;
+            startPhase();
+            phaseBefore = standIn.getTraffic();
+        }
+
+        @Override
+        public void onStepStarted(String name, int finished, int total) {
+            before.put(name, standIn.getTraffic(STEP_PATHS.get(name)));
+        }
+
+        @Override
+        public void onStepFinished(String name, boolean success, long elapsedMillis, int finished, int total) {
+            report(rows, phase, name, elapsedMillis, standIn.getTraffic(STEP_PATHS.get(name)).since(before.remove(name)), false);
+        }
+
+        @Override
+        public void onStepSkipped(String name, String failedDependency, int finished, int total) {
+        }
+
+        @Override
+        public void onRequiredStepsFinished(boolean success) {
+        }
+
+        @Override
+        public void onAllStepsFinished(long elapsedMillis, int failed) {
+            report(rows, phase, "All", elapsedMillis, standIn.getTraffic().since(phaseBefore), true);
+            this.failed = failed;
+        }
+    }
+}
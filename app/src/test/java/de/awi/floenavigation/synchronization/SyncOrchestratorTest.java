@@ -0,0 +1,264 @@
+package de.awi.floenavigation.synchronization;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the order in which the {@link SyncOrchestrator} starts the steps, of {@code maxParallel} and of the skipping of the steps
+ * depending on a failed step. The steps are finished by the tests, as Volley would on the UI thread.
+ */
+public class SyncOrchestratorTest {
+
+    /**
+     * Step which is finished by the test
+     */
+    private static final class ManualStep implements SyncOrchestrator.Step {
+
+        private final String name;
+        private final List<String> started;
+        private SyncCallback done;
+
+        ManualStep(String name, List<String> started){
+            this.name = name;
+            this.started = started;
+        }
+
+        @Override
+        public void start(SyncCallback done) {
+            this.done = done;
+            started.add(name);
+        }
+
+        void finish(boolean success){
+            done.onSyncFinished(success);
+        }
+    }
+
+    /**
+     * Records the calls of the {@link SyncOrchestrator}
+     */
+    private static final class RecordingListener implements SyncOrchestrator.Listener {
+
+        final List<String> finished = new ArrayList<>();
+        final Map<String, String> skipped = new HashMap<>();
+        int maxRunning = 0;
+        int running = 0;
+        Boolean requiredSuccess;
+        int requiredCalls = 0;
+        int failed = -1;
+        int allCalls = 0;
+
+        @Override
+        public void onStepStarted(String name, int finished, int total) {
+            running++;
+            maxRunning = Math.max(maxRunning, running);
+        }
+
+        @Override
+        public void onStepFinished(String name, boolean success, long elapsedMillis, int finished, int total) {
+            running--;
+            this.finished.add(name);
+        }
+
+        @Override
+        public void onStepSkipped(String name, String failedDependency, int finished, int total) {
+            skipped.put(name, failedDependency);
+        }
+
+        @Override
+        public void onRequiredStepsFinished(boolean success) {
+            requiredCalls++;
+            requiredSuccess = success;
+        }
+
+        @Override
+        public void onAllStepsFinished(long elapsedMillis, int failed) {
+            allCalls++;
+            this.failed = failed;
+        }
+    }
+
+    private final List<String> started = new ArrayList<>();
+    private final RecordingListener listener = new RecordingListener();
+
+    private ManualStep add(SyncOrchestrator orchestrator, String name, String... dependencies){
+        ManualStep step = new ManualStep(name, started);
+        orchestrator.add(name, step, dependencies);
+        return step;
+    }
+
+    @Test
+    public void stepStartsOnlyAfterItsDependencies(){
+        SyncOrchestrator orchestrator = new SyncOrchestrator(3, listener);
+        ManualStep fixed = add(orchestrator, "Fixed Stations", "Base Stations", "AIS Station List");
+        ManualStep base = add(orchestrator, "Base Stations");
+        ManualStep list = add(orchestrator, "AIS Station List");
+        orchestrator.start();
+        assertEquals(Arrays.asList("Base Stations", "AIS Station List"), started);
+
+        base.finish(true);
+        assertEquals(2, started.size());
+        list.finish(true);
+        assertEquals(Arrays.asList("Base Stations", "AIS Station List", "Fixed Stations"), started);
+
+        fixed.finish(true);
+        assertEquals(1, listener.allCalls);
+        assertEquals(0, listener.failed);
+    }
+
+    @Test
+    public void atMostMaxParallelStepsRun(){
+        SyncOrchestrator orchestrator = new SyncOrchestrator(2, listener);
+        List<ManualStep> steps = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            steps.add(add(orchestrator, "Table " + i));
+        }
+        orchestrator.start();
+        assertEquals(Arrays.asList("Table 0", "Table 1"), started);
+
+        steps.get(1).finish(true);
+        assertEquals(Arrays.asList("Table 0", "Table 1", "Table 2"), started);
+        steps.get(0).finish(true);
+        steps.get(2).finish(true);
+        steps.get(3).finish(true);
+        steps.get(4).finish(true);
+        assertEquals(5, started.size());
+        assertEquals(2, listener.maxRunning);
+        assertEquals(1, listener.allCalls);
+    }
+
+    @Test
+    public void stepFinishingWhileItIsStartedStartsTheNextSteps(){
+        SyncOrchestrator orchestrator = new SyncOrchestrator(1, listener);
+        for (int i = 0; i < 3; i++) {
+            final String name = "Table " + i;
+            orchestrator.add(name, new SyncOrchestrator.Step() {
+                @Override
+                public void start(SyncCallback done) {
+                    started.add(name);
+                    done.onSyncFinished(true);
+                }
+            });
+        }
+        orchestrator.start();
+        assertEquals(Arrays.asList("Table 0", "Table 1", "Table 2"), started);
+        assertEquals(1, listener.maxRunning);
+        assertEquals(1, listener.allCalls);
+        assertEquals(0, listener.failed);
+    }
+
+    @Test
+    public void dependentsOfAFailedStepAreSkipped(){
+        SyncOrchestrator orchestrator = new SyncOrchestrator(3, listener);
+        ManualStep base = add(orchestrator, "Base Stations");
+        ManualStep list = add(orchestrator, "AIS Station List");
+        add(orchestrator, "Fixed Stations", "Base Stations", "AIS Station List");
+        add(orchestrator, "Beta Table", "Base Stations");
+        add(orchestrator, "Grid", "Fixed Stations");
+        ManualStep users = add(orchestrator, "Users");
+        orchestrator.require("Base Stations", "Fixed Stations");
+        orchestrator.start();
+
+        base.finish(false);
+        assertEquals(Collections.singletonMap("Beta Table", "Base Stations"), listener.skipped);
+        assertEquals(0, listener.requiredCalls);
+
+        list.finish(true);
+        assertEquals("Base Stations", listener.skipped.get("Fixed Stations"));
+        assertEquals("Fixed Stations", listener.skipped.get("Grid"));
+        assertEquals(1, listener.requiredCalls);
+        assertFalse(listener.requiredSuccess);
+
+        users.finish(true);
+        assertEquals(Arrays.asList("Base Stations", "AIS Station List", "Users"), started);
+        assertEquals(1, listener.allCalls);
+        assertEquals(4, listener.failed);
+    }
+
+    @Test
+    public void stepsWithoutAFailedDependencyStillRun(){
+        SyncOrchestrator orchestrator = new SyncOrchestrator(1, listener);
+        ManualStep samples = add(orchestrator, "Samples");
+        add(orchestrator, "Device List", "Samples");
+        ManualStep waypoints = add(orchestrator, "Waypoints");
+        ManualStep staticStations = add(orchestrator, "Static Stations", "Waypoints");
+        orchestrator.start();
+
+        samples.finish(false);
+        assertEquals(Collections.singletonMap("Device List", "Samples"), listener.skipped);
+        waypoints.finish(true);
+        staticStations.finish(true);
+        assertEquals(Arrays.asList("Samples", "Waypoints", "Static Stations"), started);
+        assertEquals(2, listener.failed);
+    }
+
+    @Test
+    public void secondCallOfACallbackIsIgnored(){
+        SyncOrchestrator orchestrator = new SyncOrchestrator(1, listener);
+        ManualStep first = add(orchestrator, "First");
+        add(orchestrator, "Second", "First");
+        orchestrator.start();
+        first.finish(true);
+        first.finish(false);
+        assertEquals(Arrays.asList("First"), listener.finished);
+        assertEquals(Arrays.asList("First", "Second"), started);
+        assertEquals(-1, listener.failed);
+    }
+
+    @Test
+    public void requiredStepsAreReportedBeforeTheOthersFinish(){
+        SyncOrchestrator orchestrator = new SyncOrchestrator(2, listener);
+        ManualStep base = add(orchestrator, "Base Stations");
+        ManualStep waypoints = add(orchestrator, "Waypoints");
+        orchestrator.require("Base Stations");
+        orchestrator.start();
+        assertNull(listener.requiredSuccess);
+        base.finish(true);
+        assertTrue(listener.requiredSuccess);
+        assertEquals(0, listener.allCalls);
+        waypoints.finish(true);
+        assertEquals(1, listener.requiredCalls);
+        assertEquals(1, listener.allCalls);
+    }
+
+    @Test
+    public void emptyGraphFinishesAtOnce(){
+        SyncOrchestrator orchestrator = new SyncOrchestrator(1, listener);
+        orchestrator.start();
+        assertEquals(1, listener.requiredCalls);
+        assertEquals(1, listener.allCalls);
+        assertEquals(0, listener.failed);
+    }
+
+    @Test
+    public void cycleIsRejected(){
+        SyncOrchestrator orchestrator = new SyncOrchestrator(1, listener);
+        add(orchestrator, "A", "B");
+        add(orchestrator, "B", "A");
+        try {
+            orchestrator.start();
+            fail("Cycle not detected");
+        } catch (IllegalStateException e) {
+            assertTrue(started.isEmpty());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unknownDependencyIsRejected(){
+        SyncOrchestrator orchestrator = new SyncOrchestrator(1, listener);
+        add(orchestrator, "Fixed Stations", "Base Stations");
+        orchestrator.start();
+    }
+}
@@ -0,0 +1,162 @@
+package de.awi.floenavigation.synchronization;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.awi.floenavigation.helperclasses.DatabaseHelper;
+import de.awi.floenavigation.synchronization.server.SyncStandInServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link SyncOutbox} against the {@link SyncStandInServer}: the rows rejected by the Sync Server stay in the outbox
+ * while the push is reported as failed, and a batch whose every row is stored is removed.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class SyncOutboxTest {
+
+    private static final String TABLE = DatabaseHelper.waypointsTable;
+    private static final String BATCH_PATH = "/Waypoint/pullWaypointsBatch.php";
+    /**
+     * Time in msecs after which a push is given up
+     */
+    private static final long TIMEOUT_MILLIS = 30 * 1000;
+
+    /**
+     * Receives the result of the push
+     */
+    private static final class Result implements SyncCallback {
+
+        Boolean success;
+
+        @Override
+        public void onSyncFinished(boolean success) {
+            this.success = success;
+        }
+    }
+
+    private Context context;
+    private SQLiteDatabase db;
+    private SyncStandInServer standIn;
+    private HttpServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        resetInstances();
+        context = RuntimeEnvironment.application;
+        db = DatabaseHelper.getDbInstance(context).getWritableDatabase();
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        //Rejects every third row received
+        standIn = new SyncStandInServer(3);
+        standIn.setVerbose(false);
+        server = standIn.start(0);
+        BatchPush.setBinaryEncoding(false);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop(0);
+        resetInstances();
+    }
+
+    @Test
+    public void rejectedRowsStayQueued() throws Exception {
+        assertFalse(push(rows(10), 10));
+        assertEquals(7, standIn.getRows(TABLE).size());
+
+        assertEquals(1, DatabaseUtils.queryNumEntries(db, DatabaseHelper.syncOutboxTable));
+        Cursor cursor = db.query(DatabaseHelper.syncOutboxTable, new String[]{DatabaseHelper.outboxRows, DatabaseHelper.outboxBody,
+                DatabaseHelper.outboxCompressed, DatabaseHelper.attempts}, null, null, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(3, cursor.getInt(0));
+            assertEquals(0, cursor.getInt(2));
+            assertEquals(1, cursor.getInt(3));
+            SyncBatch batch = SyncBatch.fromJson(new String(cursor.getBlob(1), "UTF-8"));
+            List<String> labels = new ArrayList<>();
+            for (Map<String, String> row : batch.rows) {
+                labels.add(row.get(DatabaseHelper.labelID));
+            }
+            assertEquals("[WP_2, WP_5, WP_8]", labels.toString());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void acknowledgedBatchIsRemoved() throws Exception {
+        assertTrue(push(rows(2), 2));
+        assertEquals(2, standIn.getRows(TABLE).size());
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, DatabaseHelper.syncOutboxTable));
+        assertEquals(2, SyncOutbox.getInstance(context).getStatistics().acknowledgedRows);
+    }
+
+    /**
+     * Pushes the rows through the outbox and delivers the results on the UI thread until the push has finished
+     * @return <code>true</code> if the Sync Server has stored every row
+     */
+    private boolean push(List<Map<String, String>> rows, int rowsPerRequest) throws InterruptedException {
+        Result result = new Result();
+        PushTracker tracker = new PushTracker(context, null, -1, result);
+        BatchPush.push(context, "http://127.0.0.1:" + server.getAddress().getPort() + BATCH_PATH, TABLE, rows, rowsPerRequest,
+                tracker);
+        tracker.allRequestsAdded();
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (result.success == null) {
+            assertTrue("Push not finished within " + TIMEOUT_MILLIS + " ms", System.currentTimeMillis() < deadline);
+            ShadowLooper.idleMainLooper();
+            Thread.sleep(1);
+        }
+        return result.success;
+    }
+
+    private static List<Map<String, String>> rows(int count){
+        List<Map<String, String>> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Map<String, String> row = new LinkedHashMap<>();
+            row.put(DatabaseHelper.labelID, "WP_" + i);
+            row.put(DatabaseHelper.label, "Waypoint " + i);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Drops the database and the outbox of the previous test, as Robolectric gives every test a new database
+     */
+    private static void resetInstances() throws Exception {
+        Field dbInstance = DatabaseHelper.class.getDeclaredField("dbInstance");
+        dbInstance.setAccessible(true);
+        DatabaseHelper helper = (DatabaseHelper) dbInstance.get(null);
+        if (helper != null) {
+            helper.close();
+        }
+        dbInstance.set(null, null);
+        Field outbox = SyncOutbox.class.getDeclaredField("instance");
+        outbox.setAccessible(true);
+        outbox.set(null, null);
+    }
+}
@@ -0,0 +1,198 @@
+package de.awi.floenavigation.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import de.awi.floenavigation.helperclasses.NavigationFunctions;
+import de.awi.floenavigation.services.BetaEstimator;
+import de.awi.floenavigation.services.FixedStationValidator;
+
+/**
+ * Measures the cost of one tick of the background services for a given number of stations on the floe.
+ * <p>
+ *     Every benchmark performs the work one service does per timer tick: {@code PredictionService} predicts the position and
+ *     the grid coordinates of every fixed station, {@code AlphaCalculationService} recalculates the grid coordinates of every
+ *     mobile station, {@code AngleCalculationService} updates beta and {@code ValidationService} checks the received packets of
+ *     the fixed stations and advances its timer wheel. The database access of the services is not part of the measurement.
+ * </p>
+ * <p>
+ *     Run with <code>./gradlew :floenav-core:jmh</code>.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ServiceTickBenchmark {
+
+    /**
+     * Latitude of the origin fixed station
+     */
+    private static final double ORIGIN_LATITUDE = 82.5;
+    /**
+     * Longitude of the origin fixed station
+     */
+    private static final double ORIGIN_LONGITUDE = 15.0;
+    /**
+     * Half the extent of the floe in degrees around the origin fixed station
+     */
+    private static final double FLOE_EXTENT = 0.05;
+    /**
+     * Validation interval used by {@code ValidationService}
+     */
+    private static final long VALIDATION_TIME = 3 * 60 * 1000;
+    /**
+     * Minimum number of incorrect packets used by {@code ValidationService}
+     */
+    private static final int MAX_NUM_OF_VALID_PACKETS = 3;
+
+    /**
+     * Number of stations on the floe
+     */
+    @Param({"10", "1000", "100000"})
+    public int stations;
+
+    /**
+     * Mmsi of each station
+     */
+    private int[] mmsis;
+    /**
+     * Latitude of each station
+     */
+    private double[] latitudes;
+    /**
+     * Longitude of each station
+     */
+    private double[] longitudes;
+    /**
+     * Speed over ground of each station
+     */
+    private double[] speeds;
+    /**
+     * Course over ground of each station
+     */
+    private double[] courses;
+    /**
+     * Beta calculated from each station
+     */
+    private double[] betas;
+    /**
+     * Array filled with the grid coordinates of a station
+     */
+    private final double[] grid = new double[NavigationFunctions.GRID_SIZE];
+    /**
+     * Estimator holding the beta contribution of every station
+     */
+    private BetaEstimator betaEstimator;
+    /**
+     * Validator holding every station
+     */
+    private FixedStationValidator validator;
+    /**
+     * Time of the current validation tick in msecs
+     */
+    private long now;
+    /**
+     * Index of the station updated by {@link #angleSingleUpdate(Blackhole)}
+     */
+    private int nextStation;
+
+    /**
+     * Places the stations at random positions on the floe and registers them with the estimator and the validator
+     */
+    @Setup(Level.Trial)
+    public void setUp(){
+        Random random = new Random(42);
+        mmsis = new int[stations];
+        latitudes = new double[stations];
+        longitudes = new double[stations];
+        speeds = new double[stations];
+        courses = new double[stations];
+        betas = new double[stations];
+        betaEstimator = new BetaEstimator();
+        validator = new FixedStationValidator(VALIDATION_TIME, MAX_NUM_OF_VALID_PACKETS);
+        validator.setThresholds(10, VALIDATION_TIME, VALIDATION_TIME);
+        now = 0;
+        for (int i = 0; i < stations; i++){
+            mmsis[i] = 211000000 + i;
+            latitudes[i] = ORIGIN_LATITUDE + (random.nextDouble() * 2 - 1) * FLOE_EXTENT;
+            longitudes[i] = ORIGIN_LONGITUDE + (random.nextDouble() * 2 - 1) * FLOE_EXTENT;
+            speeds[i] = random.nextDouble() * 0.5;
+            courses[i] = random.nextDouble() * 360;
+            betas[i] = 30 + random.nextGaussian();
+            betaEstimator.update(mmsis[i], betas[i]);
+            validator.addStation(mmsis[i], latitudes[i], longitudes[i], now, 0, 0, now);
+        }
+    }
+
+    /**
+     * One tick of {@code PredictionService}: the predicted position and the grid coordinates of every fixed station.
+     */
+    @Benchmark
+    public void predictionTick(Blackhole blackhole){
+        double beta = betaEstimator.getMean();
+        for (int i = 0; i < stations; i++){
+            double[] predicted = NavigationFunctions.calculateNewPosition(latitudes[i], longitudes[i], speeds[i], courses[i]);
+            NavigationFunctions.calculateGridCoordinates(ORIGIN_LATITUDE, ORIGIN_LONGITUDE, beta, predicted[0], predicted[1], grid);
+            blackhole.consume(grid[NavigationFunctions.GRID_X]);
+            blackhole.consume(grid[NavigationFunctions.GRID_Y]);
+        }
+    }
+
+    /**
+     * One recalculation of {@code AlphaCalculationService}: the grid coordinates of every mobile station.
+     */
+    @Benchmark
+    public void alphaTick(Blackhole blackhole){
+        double beta = betaEstimator.getMean();
+        for (int i = 0; i < stations; i++){
+            NavigationFunctions.calculateGridCoordinates(ORIGIN_LATITUDE, ORIGIN_LONGITUDE, beta, latitudes[i], longitudes[i], grid);
+            blackhole.consume(grid[NavigationFunctions.GRID_X]);
+            blackhole.consume(grid[NavigationFunctions.GRID_Y]);
+        }
+    }
+
+    /**
+     * One tick of {@code AngleCalculationService} after every fixed station has moved: beta of every station is updated.
+     */
+    @Benchmark
+    public double angleTick(){
+        for (int i = 0; i < stations; i++){
+            betaEstimator.update(mmsis[i], betas[i]);
+        }
+        return betaEstimator.getMean();
+    }
+
+    /**
+     * A single fixed station has moved: only its beta is updated.
+     */
+    @Benchmark
+    public void angleSingleUpdate(Blackhole blackhole){
+        int i = nextStation;
+        nextStation = (i + 1) % stations;
+        betaEstimator.update(mmsis[i], betas[i]);
+        blackhole.consume(betaEstimator.getMean());
+    }
+
+    /**
+     * One tick of {@code ValidationService}: a packet is received from every fixed station and the timer wheel is advanced.
+     */
+    @Benchmark
+    public void validationTick(Blackhole blackhole){
+        now += FixedStationValidator.WHEEL_TICK;
+        for (int i = 0; i < stations; i++){
+            blackhole.consume(validator.onReport(mmsis[i], latitudes[i], longitudes[i], now));
+        }
+        blackhole.consume(validator.advance(now));
+    }
+}
@@ -0,0 +1,127 @@
+package de.awi.floenavigation.benchmark;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Synthetic rows of the synchronized tables for the benchmarks, with the columns the App exchanges with the Sync Server and values
+ * like those of a floe.
+ */
+final class SyncDataSets {
+
+    /**
+     * Latitude around which the stations and samples are placed
+     */
+    private static final double ORIGIN_LATITUDE = 82.5;
+    /**
+     * Longitude around which the stations and samples are placed
+     */
+    private static final double ORIGIN_LONGITUDE = 15.0;
+    /**
+     * Devices used for the samples, as name, short name and type
+     */
+    private static final String[][] DEVICES = {
+            {"Conductivity Temperature Depth", "CTD", "Sensor"},
+            {"Ice Mass Balance Buoy", "IMB", "Buoy"},
+            {"Snow Pit", "SP", "Manual"},
+            {"Ice Core", "IC", "Manual"},
+            {"Radiation Station", "RS", "Sensor"},
+            {"Drift Buoy", "DB", "Buoy"}
+    };
+    /**
+     * Station types of the Fixed Stations
+     */
+    private static final String[] STATION_TYPES = {"Fixpoint", "Tent", "Hut", "Ice Camp", "Polarstern"};
+
+    private SyncDataSets(){
+    }
+
+    /**
+     * Creates rows with the columns the App exchanges for the table and values like those of a floe
+     */
+    static List<Map<String, String>> createRows(String table, int count, Random random){
+        List<Map<String, String>> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Map<String, String> row = new LinkedHashMap<>();
+            double latitude = ORIGIN_LATITUDE + (random.nextDouble() - 0.5) * 0.1;
+            double longitude = ORIGIN_LONGITUDE + (random.nextDouble() - 0.5) * 0.1;
+            String[] device = DEVICES[random.nextInt(DEVICES.length)];
+            switch (table) {
+                case "SAMPLE_MEASUREMENT":
+                    row.put("DEVICE_ID", device[1] + "-" + random.nextInt(5));
+                    row.put("DEVICE_NAME", device[0]);
+                    row.put("DEVICE_SHORT_NAME", device[1]);
+                    row.put("DEVICE_TYPE", device[2]);
+                    row.put("LATITUDE", Double.toString(latitude));
+                    row.put("LONGITUDE", Double.toString(longitude));
+                    row.put("X_POSITION", Double.toString((random.nextDouble() - 0.5) * 5000));
+                    row.put("Y_POSITION", Double.toString((random.nextDouble() - 0.5) * 5000));
+                    row.put("UPDATE_TIME", String.valueOf(1546300800000L + i * 60000L));
+                    row.put("LABEL_ID", "PS118_" + (i / 10) + "-" + (i % 10));
+                    row.put("COMMENT", random.nextInt(4) == 0 ? "Sample taken at station " + i : "");
+                    row.put("LABEL", "PS118_" + (i / 10) + "-" + (i % 10) + "_" + device[1]);
+                    break;
+
+                case "WAYPOINTS":
+                    row.put("LATITUDE", Double.toString(latitude));
+                    row.put("LONGITUDE", Double.toString(longitude));
+                    row.put("X_POSITION", Double.toString((random.nextDouble() - 0.5) * 5000));
+                    row.put("Y_POSITION", Double.toString((random.nextDouble() - 0.5) * 5000));
+                    row.put("UPDATE_TIME", String.valueOf(1546300800000L + i * 60000L));
+                    row.put("LABEL_ID", "PS118_WP_" + i);
+                    row.put("LABEL", "Waypoint " + i);
+                    break;
+
+                case "DEVICE_LIST":
+                    row.put("DEVICE_ID", device[1] + "-" + i);
+                    row.put("DEVICE_NAME", device[0]);
+                    row.put("DEVICE_SHORT_NAME", device[1]);
+                    row.put("DEVICE_TYPE", device[2]);
+                    break;
+
+                default:
+                    row.put("AIS_STATION_NAME", "Station " + i);
+                    row.put("LATITUDE", Double.toString(latitude));
+                    row.put("LONGITUDE", Double.toString(longitude));
+                    row.put("RECEIVED_LATITUDE", Double.toString(latitude + random.nextGaussian() * 1e-5));
+                    row.put("RECEIVED_LONGITUDE", Double.toString(longitude + random.nextGaussian() * 1e-5));
+                    row.put("ALPHA", Double.toString(random.nextDouble() * 360));
+                    row.put("DISTANCE", Double.toString(random.nextDouble() * 5000));
+                    row.put("X_POSITION", Double.toString((random.nextDouble() - 0.5) * 5000));
+                    row.put("Y_POSITION", Double.toString((random.nextDouble() - 0.5) * 5000));
+                    row.put("STATION_TYPE", STATION_TYPES[random.nextInt(STATION_TYPES.length)]);
+                    row.put("UPDATE_TIME", String.valueOf(1546300800000L + i * 1000L));
+                    row.put("SPEED_OVER_GROUND", Double.toString(random.nextDouble() * 0.5));
+                    row.put("COURSE_OVER_GROUND", Double.toString(random.nextDouble() * 360));
+                    row.put("LAST_RECEIVED_PACKET_TYPE", String.valueOf(1 + random.nextInt(3)));
+                    row.put("IS_PREDICTED", String.valueOf(random.nextInt(2)));
+                    row.put("PREDICTION_ACCURACY", Double.toString(random.nextDouble() * 20));
+                    row.put("IS_LOCATION_RECEIVED", String.valueOf(random.nextInt(2)));
+                    row.put("MMSI", String.valueOf(211000000 + i));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Writes the rows as the XML of a pull, an element named after the table per row
+     */
+    static byte[] toXml(String table, List<Map<String, String>> rows) throws UnsupportedEncodingException {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<DATA>\n");
+        for (Map<String, String> row : rows) {
+            xml.append('<').append(table).append('>');
+            for (Map.Entry<String, String> column : row.entrySet()) {
+                xml.append('<').append(column.getKey()).append('>');
+                xml.append(column.getValue().replace("&", "&amp;").replace("<", "&lt;"));
+                xml.append("</").append(column.getKey()).append('>');
+            }
+            xml.append("</").append(table).append(">\n");
+        }
+        return xml.append("</DATA>\n").toString().getBytes("UTF-8");
+    }
+}
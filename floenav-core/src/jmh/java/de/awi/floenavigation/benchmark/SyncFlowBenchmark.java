@@ -0,0 +1,493 @@
+package de.awi.floenavigation.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.stream.XMLStreamException;
+
+import de.awi.floenavigation.synchronization.SyncBatch;
+import de.awi.floenavigation.synchronization.SyncBinaryCodec;
+import de.awi.floenavigation.synchronization.SyncTable;
+import de.awi.floenavigation.synchronization.SyncTransport;
+import de.awi.floenavigation.synchronization.server.PullXml;
+import de.awi.floenavigation.synchronization.server.SyncStandInServer;
+
+/**
+ * Micro-benchmark of the transport of the Sync: measures how long the requests of the push and the pull take and how they scale
+ * with the number of rows, against the {@link SyncStandInServer} on a simulated link. The Sync Classes of the App, with the database
+ * of the tablet, are benchmarked by <code>SyncBenchmarkTest</code> of the App on Robolectric.
+ * <p>
+ *     For every table and number of rows, synthetic rows of {@link SyncDataSets} are pushed and pulled with the requests the Sync
+ *     Classes of the App send:
+ *     <ul>
+ *         <li>the push as the batches of <code>BatchPush</code>, at most {@value #IN_FLIGHT} in flight as in the
+ *         <code>SyncOutbox</code>, in JSON or in the binary encoding, compressed with gzip above
+ *         {@link SyncTransport#MIN_COMPRESSED_SIZE} bytes and with an {@link SyncTransport#IDEMPOTENCY_KEY}; with a batch size of 0 as
+ *         one form request per row, as the App does if the Configuration Parameter <code>SYNC_BATCH_SIZE</code> is 0;</li>
+ *         <li>the pull as the <code>ShadowTablePull</code>, asking for gzip and, if enabled, for the binary encoding, reading every
+ *         value of the response, followed by the conditional pull of the next Sync which is answered with 304.</li>
+ *     </ul>
+ *     The Sample Measurements are only pushed, as the App does not pull them.
+ * </p>
+ * <p>
+ *     The report gives for every table, number of rows and phase the wall time, the requests sent, the bytes of the bodies sent and
+ *     received as they went over the link, and the peak heap of the JVM, which runs the client as well as the stand-in server. The
+ *     peak heap is the sum of the peaks of the heap memory pools, reset after a garbage collection before every phase. The Android
+ *     framework is not part of the measurement: the rows are kept in memory instead of the database of the tablet.
+ * </p>
+ * <p>
+ *     Run with <code>./gradlew :floenav-core:runSyncBenchmark -Prows=100,10000,100000 -PbatchSize=500 -PlatencyMs=20
+ *     -PbytesPerSecond=1000000 -Pbinary=false -Pout=build/reports/sync-benchmark.csv</code>. The report is printed and, if
+ *     <code>out</code> is given, written as CSV.
+ * </p>
+ */
+public class SyncFlowBenchmark {
+
+    /**
+     * Tables benchmarked, with the paths of their batch endpoint, their single row endpoint and their pull, <code>null</code> if the
+     * table is not pulled
+     */
+    private static final String[][] TABLES = {
+            {"SAMPLE_MEASUREMENT", "/SampleMeasurement/pullSamplesBatch.php", "/SampleMeasurement/pullSamples.php", null},
+            {"WAYPOINTS", "/Waypoint/pullWaypointsBatch.php", "/Waypoint/pullWaypoints.php", "/Waypoint/pushWaypoints.php"},
+            {"AIS_FIXED_STATION_POSITION", "/FixedStation/pullStationsBatch.php", "/FixedStation/pullStations.php",
+                    "/FixedStation/pushStations.php"}
+    };
+    /**
+     * Number of batches sent at the same time, as in the <code>SyncOutbox</code> of the App
+     */
+    private static final int IN_FLIGHT = 2;
+    /**
+     * Content type of the JSON batches
+     */
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+    /**
+     * Content types accepted by a pull in the binary encoding, as sent by the <code>ShadowTablePull</code>
+     */
+    private static final String ACCEPT_BINARY = SyncBinaryCodec.MEDIA_TYPE + ", text/xml;q=0.9";
+
+    /**
+     * Base URL of the stand-in server
+     */
+    private final String baseUrl;
+    /**
+     * Rows per batch, 0 for one request per row
+     */
+    private final int batchSize;
+    /**
+     * <code>true</code> if the binary encoding is used
+     */
+    private final boolean binary;
+    /**
+     * Directory of the pulls served by the stand-in server
+     */
+    private final File pullDir;
+    /**
+     * The stand-in server
+     */
+    private final SyncStandInServer standIn;
+
+    /**
+     * Requests sent in the current phase
+     */
+    private final AtomicLong requests = new AtomicLong();
+    /**
+     * Bytes of the bodies sent in the current phase
+     */
+    private final AtomicLong sentBytes = new AtomicLong();
+    /**
+     * Bytes of the bodies received in the current phase
+     */
+    private final AtomicLong receivedBytes = new AtomicLong();
+
+    /**
+     * Measurement of one phase
+     */
+    private static final class Result {
+        final String table;
+        final int rows;
+        final String phase;
+        final long wallMillis;
+        final long requests;
+        final long sentBytes;
+        final long receivedBytes;
+        final long peakHeapBytes;
+
+        Result(String table, int rows, String phase, long wallMillis, long requests, long sentBytes, long receivedBytes,
+               long peakHeapBytes){
+            this.table = table;
+            this.rows = rows;
+            this.phase = phase;
+            this.wallMillis = wallMillis;
+            this.requests = requests;
+            this.sentBytes = sentBytes;
+            this.receivedBytes = receivedBytes;
+            this.peakHeapBytes = peakHeapBytes;
+        }
+    }
+
+    private SyncFlowBenchmark(SyncStandInServer standIn, String baseUrl, int batchSize, boolean binary, File pullDir){
+        this.standIn = standIn;
+        this.baseUrl = baseUrl;
+        this.batchSize = batchSize;
+        this.binary = binary;
+        this.pullDir = pullDir;
+    }
+
+    /**
+     * Runs the benchmark
+     * @param args the numbers of rows separated by commas, the batch size, the latency in msecs, the bandwidth in bytes per second,
+     *             <code>true</code> for the binary encoding and the CSV file of the report, all optional
+     */
+    public static void main(String[] args) throws Exception {
+        int[] rowCounts = parseCounts(args.length > 0 ? args[0] : "100,10000,100000");
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        long latencyMillis = args.length > 2 ? Long.parseLong(args[2]) : 0;
+        long bytesPerSecond = args.length > 3 ? Long.parseLong(args[3]) : 0;
+        boolean binary = args.length > 4 && Boolean.parseBoolean(args[4]);
+        File out = args.length > 5 && !args[5].isEmpty() ? new File(args[5]) : null;
+
+        File pullDir = File.createTempFile("sync-benchmark", "");
+        if (!pullDir.delete() || !pullDir.mkdir()) {
+            throw new IOException("Cannot create " + pullDir);
+        }
+        //Without it the responses of the server wait for the delayed acknowledgement of the client, about 40 ms per request
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        SyncStandInServer standIn = new SyncStandInServer(0, pullDir);
+        standIn.setLink(latencyMillis, bytesPerSecond);
+        standIn.setVerbose(false);
+        HttpServer server = standIn.start(0);
+        List<Result> results = new ArrayList<>();
+        try {
+            SyncFlowBenchmark benchmark = new SyncFlowBenchmark(standIn, "http://127.0.0.1:" + server.getAddress().getPort(), batchSize,
+                    binary, pullDir);
+            System.out.println("Batch size " + batchSize + ", latency " + latencyMillis + " ms, bandwidth "
+                    + (bytesPerSecond > 0 ? bytesPerSecond + " bytes/s" : "unlimited") + (binary ? ", binary encoding" : ""));
+            //Warm up the JIT, the HTTP stack and the server on a small data set, the results are dropped
+            for (String[] table : TABLES) {
+                benchmark.run(table, 100);
+            }
+            for (int rows : rowCounts) {
+                for (String[] table : TABLES) {
+                    results.addAll(benchmark.run(table, rows));
+                }
+            }
+        } finally {
+            server.stop(0);
+            for (File file : listFiles(pullDir)) {
+                if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+        }
+        print(results);
+        if (out != null) {
+            writeCsv(results, out);
+            System.out.println("Report written to " + out);
+        }
+    }
+
+    /**
+     * Pushes and pulls the rows of a table
+     * @param table name and paths of the table
+     * @param count number of rows
+     * @return the results of the phases
+     */
+    private List<Result> run(String[] table, int count) throws Exception {
+        //The rows of the runs before are not part of the heap of this one
+        standIn.clearRows();
+        List<Map<String, String>> rows = SyncDataSets.createRows(table[0], count, new Random(42));
+        List<Result> results = new ArrayList<>();
+
+        startPhase();
+        long start = System.nanoTime();
+        push(table, rows);
+        results.add(endPhase(table[0], count, "push", start));
+
+        if (table[3] != null) {
+            //The server has the rows pushed, as the XML of its pull script
+            File pullFile = new File(pullDir, table[3]);
+            if (!pullFile.getParentFile().isDirectory() && !pullFile.getParentFile().mkdirs()) {
+                throw new IOException("Cannot create " + pullFile.getParentFile());
+            }
+            writeFile(pullFile, SyncDataSets.toXml(table[0], rows));
+            rows = null;
+
+            startPhase();
+            start = System.nanoTime();
+            String etag = pull(table, null);
+            results.add(endPhase(table[0], count, "pull", start));
+
+            startPhase();
+            start = System.nanoTime();
+            pull(table, etag);
+            results.add(endPhase(table[0], count, "pull 304", start));
+        }
+        return results;
+    }
+
+    private void push(String[] table, List<Map<String, String>> rows) throws Exception {
+        ExecutorService outbox = Executors.newFixedThreadPool(IN_FLIGHT);
+        try {
+            List<Future<Integer>> sent = new ArrayList<>();
+            if (batchSize > 0) {
+                for (final SyncBatch batch : SyncBatch.split(table[0], rows, batchSize)) {
+                    final String url = baseUrl + table[1];
+                    sent.add(outbox.submit(new Callable<Integer>() {
+                        @Override
+                        public Integer call() throws Exception {
+                            return pushBatch(url, batch);
+                        }
+                    }));
+                }
+            } else {
+                //One request after the other, as the single row requests of the App
+                for (Map<String, String> row : rows) {
+                    pushRow(baseUrl + table[2], row);
+                }
+            }
+            for (Future<Integer> batch : sent) {
+                batch.get();
+            }
+        } catch (ExecutionException e) {
+            throw (Exception) e.getCause();
+        } finally {
+            outbox.shutdown();
+        }
+    }
+
+    /**
+     * Sends a batch as <code>BatchPush</code> and the <code>SyncOutbox</code> do
+     * @return the number of rows acknowledged
+     */
+    private int pushBatch(String url, SyncBatch batch) throws IOException {
+        byte[] body = binary ? SyncBinaryCodec.encodeBatch(batch) : batch.toJson().getBytes("UTF-8");
+        boolean compressed = body.length > SyncTransport.MIN_COMPRESSED_SIZE;
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty(SyncTransport.CONTENT_TYPE, binary ? SyncBinaryCodec.MEDIA_TYPE : JSON_CONTENT_TYPE);
+        connection.setRequestProperty(SyncTransport.IDEMPOTENCY_KEY, UUID.randomUUID().toString());
+        if (compressed) {
+            connection.setRequestProperty(SyncTransport.CONTENT_ENCODING, SyncTransport.GZIP);
+        }
+        String acks = new String(send(connection, compressed ? SyncTransport.gzip(body) : body), "UTF-8");
+        int acknowledged = 0;
+        for (SyncBatch.Ack ack : SyncBatch.acksFromJson(acks)) {
+            if (!ack.success) {
+                throw new IOException("Row " + ack.row + " of " + batch.table + " rejected: " + ack.message);
+            }
+            acknowledged++;
+        }
+        if (acknowledged != batch.rows.size()) {
+            throw new IOException(acknowledged + " of " + batch.rows.size() + " rows of " + batch.table + " acknowledged");
+        }
+        return acknowledged;
+    }
+
+    /**
+     * Sends a row as the form parameters of a single row request
+     */
+    private void pushRow(String url, Map<String, String> row) throws IOException {
+        StringBuilder form = new StringBuilder();
+        for (Map.Entry<String, String> column : row.entrySet()) {
+            if (form.length() > 0) {
+                form.append('&');
+            }
+            form.append(URLEncoder.encode(column.getKey(), "UTF-8")).append('=').append(URLEncoder.encode(column.getValue(), "UTF-8"));
+        }
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty(SyncTransport.CONTENT_TYPE, "application/x-www-form-urlencoded; charset=UTF-8");
+        String response = new String(send(connection, form.toString().getBytes("UTF-8")), "UTF-8");
+        if (!response.contains(SyncBatch.SUCCESS)) {
+            throw new IOException("Row rejected: " + response);
+        }
+    }
+
+    /**
+     * Pulls a table as the <code>ShadowTablePull</code> does and reads every value of the response
+     * @param etag entity tag of the last pull, <code>null</code> for the first pull
+     * @return the entity tag of the response
+     */
+    private String pull(String[] table, String etag) throws IOException, XMLStreamException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + table[3] + "?since=0").openConnection();
+        connection.setRequestProperty(SyncTransport.ACCEPT_ENCODING, SyncTransport.GZIP);
+        if (binary) {
+            connection.setRequestProperty(SyncTransport.ACCEPT, ACCEPT_BINARY);
+        }
+        if (etag != null) {
+            connection.setRequestProperty(SyncTransport.IF_NONE_MATCH, etag);
+        }
+        byte[] body = send(connection, null);
+        if (connection.getResponseCode() == SyncTransport.NOT_MODIFIED) {
+            return etag;
+        }
+        if (SyncTransport.GZIP.equalsIgnoreCase(connection.getHeaderField(SyncTransport.CONTENT_ENCODING))) {
+            body = SyncTransport.gunzip(body);
+        }
+        SyncTable pulled = SyncBinaryCodec.isBinary(connection.getContentType()) ? SyncBinaryCodec.decodeTable(body) : PullXml.read(body);
+        long values = 0;
+        for (Object[] row : pulled.rows) {
+            for (Object value : row) {
+                if (value != null) {
+                    values++;
+                }
+            }
+        }
+        if (values == 0) {
+            throw new IOException("Empty pull of " + table[0]);
+        }
+        return connection.getHeaderField(SyncTransport.ETAG);
+    }
+
+    /**
+     * Sends a request and reads the body of the response, counting the request and the bytes of the bodies
+     * @param body body of the request, <code>null</code> for a GET
+     * @return the body of the response as received, empty if it has none
+     */
+    private byte[] send(HttpURLConnection connection, byte[] body) throws IOException {
+        requests.incrementAndGet();
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            OutputStream output = connection.getOutputStream();
+            try {
+                output.write(body);
+            } finally {
+                output.close();
+            }
+            sentBytes.addAndGet(body.length);
+        }
+        int status = connection.getResponseCode();
+        if (status == SyncTransport.NOT_MODIFIED) {
+            return new byte[0];
+        }
+        if (status != HttpURLConnection.HTTP_OK) {
+            throw new IOException("HTTP " + status + " from " + connection.getURL());
+        }
+        InputStream input = connection.getInputStream();
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                response.write(buffer, 0, read);
+            }
+        } finally {
+            input.close();
+        }
+        receivedBytes.addAndGet(response.size());
+        return response.toByteArray();
+    }
+
+    /**
+     * Resets the counters and the peak heap before a phase
+     */
+    private void startPhase(){
+        requests.set(0);
+        sentBytes.set(0);
+        receivedBytes.set(0);
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private Result endPhase(String table, int rows, String phase, long startNanos){
+        long wallMillis = (System.nanoTime() - startNanos) / 1000000;
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+        return new Result(table, rows, phase, wallMillis, requests.get(), sentBytes.get(), receivedBytes.get(), peakHeap);
+    }
+
+    private static void print(List<Result> results){
+        String format = "%-28s %8s %-9s %9s %9s %13s %13s %12s%n";
+        System.out.println();
+        System.out.printf(Locale.US, format, "table", "rows", "phase", "wall ms", "requests", "sent bytes", "recv bytes", "peak heap MB");
+        for (Result result : results) {
+            System.out.printf(Locale.US, format, result.table, result.rows, result.phase, result.wallMillis, result.requests,
+                    result.sentBytes, result.receivedBytes, String.format(Locale.US, "%.1f", result.peakHeapBytes / 1048576.0));
+        }
+    }
+
+    private static void writeCsv(List<Result> results, File out) throws IOException {
+        File directory = out.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        PrintWriter writer = new PrintWriter(out, "UTF-8");
+        try {
+            writer.println("table,rows,phase,wall_ms,requests,sent_bytes,received_bytes,peak_heap_bytes");
+            for (Result result : results) {
+                writer.println(result.table + "," + result.rows + "," + result.phase + "," + result.wallMillis + "," + result.requests
+                        + "," + result.sentBytes + "," + result.receivedBytes + "," + result.peakHeapBytes);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static int[] parseCounts(String counts){
+        String[] parts = counts.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+
+    private static void writeFile(File file, byte[] data) throws IOException {
+        OutputStream output = new FileOutputStream(file);
+        try {
+            output.write(data);
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * @return the files below the directory and the directories themselves, the deepest first
+     */
+    private static List<File> listFiles(File directory){
+        List<File> files = new ArrayList<>();
+        File[] children = directory.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                files.addAll(listFiles(child));
+            }
+        }
+        files.add(directory);
+        return files;
+    }
+}
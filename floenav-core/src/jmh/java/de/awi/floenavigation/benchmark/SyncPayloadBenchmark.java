@@ -0,0 +1,161 @@
+package de.awi.floenavigation.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import de.awi.floenavigation.synchronization.SyncBatch;
+import de.awi.floenavigation.synchronization.SyncBinaryCodec;
+import de.awi.floenavigation.synchronization.SyncTable;
+import de.awi.floenavigation.synchronization.SyncTransport;
+
+/**
+ * Compares the binary encoding of the {@link SyncBinaryCodec} with the XML of the pulls and the JSON of the batched push, for the
+ * rows of the Sample Measurements, the Device List and the Fixed Stations.
+ * <p>
+ *     The pull benchmarks read every value of the response as the <code>ShadowTablePull</code> of the App does before binding it to
+ *     the insert into the shadow table, the XML with the StAX parser of the JVM in place of the pull parser of Android. The push
+ *     benchmarks encode a batch as the App does and decode it as the Sync Server does. The sizes of the bodies, uncompressed and
+ *     compressed with gzip, are printed once per trial before the measurements.
+ * </p>
+ * <p>
+ *     Run with <code>./gradlew :floenav-core:jmh</code>.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SyncPayloadBenchmark {
+
+    /**
+     * Factory of the XML readers
+     */
+    private static final XMLInputFactory XML_FACTORY = XMLInputFactory.newInstance();
+
+    /**
+     * Table whose rows are exchanged
+     */
+    @Param({"SAMPLE_MEASUREMENT", "DEVICE_LIST", "AIS_FIXED_STATION_POSITION"})
+    public String table;
+
+    /**
+     * Number of rows exchanged
+     */
+    @Param({"100", "10000"})
+    public int rows;
+
+    /**
+     * XML of a pull of the rows
+     */
+    private byte[] pullXml;
+    /**
+     * Binary pull of the rows
+     */
+    private byte[] pullBinary;
+    /**
+     * Batch of the rows pushed
+     */
+    private SyncBatch batch;
+    /**
+     * JSON of the batch
+     */
+    private byte[] pushJson;
+    /**
+     * Binary batch
+     */
+    private byte[] pushBinary;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        List<Map<String, String>> textRows = SyncDataSets.createRows(table, rows, new Random(42));
+        pullXml = SyncDataSets.toXml(table, textRows);
+        pullBinary = SyncBinaryCodec.encodeTable(SyncTable.fromText(table, textRows, false));
+        batch = new SyncBatch(table, 0, textRows);
+        pushJson = batch.toJson().getBytes("UTF-8");
+        pushBinary = SyncBinaryCodec.encodeBatch(batch);
+
+        if (!SyncBinaryCodec.decodeTable(pullBinary).toText(false).equals(textRows)
+                || !SyncBinaryCodec.decodeBatch(pushBinary).rows.equals(textRows)) {
+            throw new IllegalStateException("The binary encoding changed the rows of " + table);
+        }
+        System.out.println();
+        System.out.println(table + ", " + rows + " rows: pull XML " + sizes(pullXml) + ", binary " + sizes(pullBinary)
+                + "; push JSON " + sizes(pushJson) + ", binary " + sizes(pushBinary));
+    }
+
+    @Benchmark
+    public void pullXml(Blackhole blackhole) throws XMLStreamException {
+        XMLStreamReader reader = XML_FACTORY.createXMLStreamReader(new ByteArrayInputStream(pullXml));
+        StringBuilder value = new StringBuilder();
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    value.setLength(0);
+                    break;
+
+                case XMLStreamConstants.CHARACTERS:
+                    value.append(reader.getText());
+                    break;
+
+                case XMLStreamConstants.END_ELEMENT:
+                    blackhole.consume(reader.getLocalName());
+                    blackhole.consume(value.toString());
+                    break;
+            }
+        }
+        reader.close();
+    }
+
+    @Benchmark
+    public void pullBinary(Blackhole blackhole) {
+        SyncTable pulled = SyncBinaryCodec.decodeTable(pullBinary);
+        for (Object[] row : pulled.rows) {
+            for (Object value : row) {
+                blackhole.consume(value);
+            }
+        }
+    }
+
+    @Benchmark
+    public byte[] pushEncodeJson() throws UnsupportedEncodingException {
+        return batch.toJson().getBytes("UTF-8");
+    }
+
+    @Benchmark
+    public byte[] pushEncodeBinary() {
+        return SyncBinaryCodec.encodeBatch(batch);
+    }
+
+    @Benchmark
+    public SyncBatch pushDecodeJson() throws UnsupportedEncodingException {
+        return SyncBatch.fromJson(new String(pushJson, "UTF-8"));
+    }
+
+    @Benchmark
+    public SyncBatch pushDecodeBinary() {
+        return SyncBinaryCodec.decodeBatch(pushBinary);
+    }
+
+    private static String sizes(byte[] body){
+        return body.length + " bytes (gzip " + SyncTransport.gzip(body).length + ")";
+    }
+}
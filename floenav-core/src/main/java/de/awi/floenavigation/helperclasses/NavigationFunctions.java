@@ -1,7 +1,5 @@
 package de.awi.floenavigation.helperclasses;
 
-import android.content.Context;
-
 import java.text.DecimalFormat;
 
 /**
@@ -12,6 +10,26 @@ import java.text.DecimalFormat;
  */
 public class NavigationFunctions {
     private static final String TAG = "Navigation Functions";
+    /**
+     * Index of the alpha in the array filled by {@link #calculateGridCoordinates(double, double, double, double, double, double[])}
+     */
+    public static final int GRID_ALPHA = 0;
+    /**
+     * Index of the distance in the array filled by {@link #calculateGridCoordinates(double, double, double, double, double, double[])}
+     */
+    public static final int GRID_DISTANCE = 1;
+    /**
+     * Index of the x position in the array filled by {@link #calculateGridCoordinates(double, double, double, double, double, double[])}
+     */
+    public static final int GRID_X = 2;
+    /**
+     * Index of the y position in the array filled by {@link #calculateGridCoordinates(double, double, double, double, double, double[])}
+     */
+    public static final int GRID_Y = 3;
+    /**
+     * Size of the array filled by {@link #calculateGridCoordinates(double, double, double, double, double, double[])}
+     */
+    public static final int GRID_SIZE = 4;
 
     /**
      * Given the current Latitude, Longitude, Speed and Course, this method will calculate and return the expected latitude and longitude
@@ -64,35 +82,6 @@ public class NavigationFunctions {
         return Math.sqrt(distance);
     }
 
-    /*
-    public static double[] calculateCoordinatePosition(double lat, double lon, Context context){
-        double[] referencePointsCoordinates = new DatabaseHelper(context).readBaseCoordinatePointsLatLon(context);
-        //referencePointsCoordinates[0] = originLatitutde;
-        //referencePointsCoordinates[1] = originLongitude;
-        //referencePointsCoordinates[2] = xAxisReferenceLatitude;
-        //referencePointsCoordinates[3] = xAxisReferenceLongitude;
-        double distance1 = calculateDifference(referencePointsCoordinates[0], referencePointsCoordinates[1], lat, lon);
-        double distance2 = calculateDifference(referencePointsCoordinates[2], referencePointsCoordinates[3], lat, lon);
-        double x = ((distance1 * distance1) - (distance2 * distance2) + (DatabaseHelper.station2InitialX * DatabaseHelper.station2InitialX))
-                / (2 * DatabaseHelper.station2InitialX);
-        double y = 0;
-        if(x > 0){
-            y = Math.sqrt((distance1 * distance1) - (x * x));
-        }
-        double xAxisBearing = calculateBearing(referencePointsCoordinates[0], referencePointsCoordinates[1], referencePointsCoordinates[2], referencePointsCoordinates[3]);
-        double pointBearing = calculateBearing(referencePointsCoordinates[0], referencePointsCoordinates[1], lat, lon);
-        if(pointBearing < xAxisBearing){
-            y = -1 * y;
-        } else if(xAxisBearing < 90 && pointBearing > 270){
-            if((pointBearing - 270) < xAxisBearing){
-                y = -1 * y;
-            }
-        }
-        return new double[] {x, y};
-
-    }
-    */
-
     /**
      * Given two sets of points this method will calculate the bearing from the first coordinates to the second coordinates.
      * @param lat1 Latitude of the first point
@@ -173,6 +162,27 @@ public class NavigationFunctions {
         return bearing;
     }
 
+    /**
+     * This method calculates the position of a station on the grid whose origin is the origin fixed station and whose x axis is rotated
+     * by beta from the longitudinal axis. The results are written to the given array so that the method can be called for every
+     * station without allocating.
+     * @param originLat Latitude of the origin fixed station
+     * @param originLon Longitude of the origin fixed station
+     * @param beta Angle of the x axis of the grid from the longitudinal axis in degrees
+     * @param lat Latitude of the station
+     * @param lon Longitude of the station
+     * @param grid array of size {@link #GRID_SIZE} which is filled with the alpha, distance, x and y of the station
+     */
+    public static void calculateGridCoordinates(double originLat, double originLon, double beta, double lat, double lon, double[] grid){
+        double theta = calculateAngleBeta(originLat, originLon, lat, lon);
+        double alpha = theta - beta;
+        double distance = calculateDifference(originLat, originLon, lat, lon);
+        grid[GRID_ALPHA] = alpha;
+        grid[GRID_DISTANCE] = distance;
+        grid[GRID_X] = distance * Math.cos(Math.toRadians(alpha));
+        grid[GRID_Y] = distance * Math.sin(Math.toRadians(alpha));
+    }
+
     /**
      * This method formats a given set of coordinates in decimal form (Degree.xxx) to Degree Minute Second along with Direction.
      * @param latitude Latitude in Decimal form
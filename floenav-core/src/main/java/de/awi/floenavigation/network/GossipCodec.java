@@ -0,0 +1,287 @@
+package de.awi.floenavigation.network;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encoding of the datagrams exchanged by the {@link GossipPeer}s.
+ * <p>
+ *     A datagram starts with four magic bytes, <code>FNG</code> and the format version, the type of the message and the id of the
+ *     sending peer, followed by
+ *     <ul>
+ *         <li>for a {@link #DIGEST}, the number of origins and the id and version of each origin of the version vector of the sender;</li>
+ *         <li>for a {@link #DELTA}, the origin of the entries, the range of versions they cover and the entries with their version,
+ *         kind, key, time and values.</li>
+ *     </ul>
+ *     Numbers are written in 8 bytes and text as the modified UTF-8 of {@link DataOutputStream#writeUTF(String)}. The messages are split
+ *     into datagrams of at most {@value #MAX_DATAGRAM_SIZE} bytes so they are not fragmented on the network, a delta into deltas of
+ *     consecutive ranges which can be applied one after the other. A single entry larger than that is sent in a datagram of its own.
+ * </p>
+ */
+public final class GossipCodec {
+
+    /**
+     * Type of a message with the version vector of the sender
+     */
+    public static final int DIGEST = 1;
+    /**
+     * Type of a message with the current entries of a range of versions of an origin
+     */
+    public static final int DELTA = 2;
+    /**
+     * Datagrams are split below this size, which fits into the frame of an Ethernet or WLAN
+     */
+    public static final int MAX_DATAGRAM_SIZE = 1400;
+    /**
+     * Version of the format, the fourth magic byte
+     */
+    private static final byte FORMAT_VERSION = 1;
+    /**
+     * Magic bytes of a datagram
+     */
+    private static final byte[] MAGIC = {'F', 'N', 'G', FORMAT_VERSION};
+    /**
+     * Size of the magic bytes, the type and the sender
+     */
+    private static final int HEADER_SIZE = MAGIC.length + 1 + 8;
+    /**
+     * Size of the origin, the range and the number of entries of a delta
+     */
+    private static final int DELTA_HEADER_SIZE = 8 + 8 + 8 + 2;
+    /**
+     * Size of an origin and its version in a digest
+     */
+    private static final int DIGEST_ORIGIN_SIZE = 8 + 8;
+    /**
+     * Largest number of values of an entry, counted in a byte
+     */
+    private static final int MAX_VALUES = 255;
+
+    /**
+     * A decoded datagram
+     */
+    public static final class Message {
+
+        /**
+         * {@link #DIGEST} or {@link #DELTA}
+         */
+        public final int type;
+        /**
+         * Id of the sending peer
+         */
+        public final long sender;
+        /**
+         * Version vector of a digest, empty for a delta
+         */
+        public final Map<Long, Long> versions;
+        /**
+         * Origin of the entries of a delta
+         */
+        public final long origin;
+        /**
+         * Version above which a delta holds the current entries of the origin
+         */
+        public final long from;
+        /**
+         * Version up to which a delta holds the current entries of the origin
+         */
+        public final long to;
+        /**
+         * Entries of a delta, empty for a digest
+         */
+        public final List<GossipEntry> entries;
+
+        private Message(int type, long sender, Map<Long, Long> versions, long origin, long from, long to, List<GossipEntry> entries){
+            this.type = type;
+            this.sender = sender;
+            this.versions = versions;
+            this.origin = origin;
+            this.from = from;
+            this.to = to;
+            this.entries = entries;
+        }
+    }
+
+    private GossipCodec(){
+    }
+
+    /**
+     * @param sender id of the sending peer
+     * @param versions its version vector
+     * @return the datagrams of the digest, at least one
+     */
+    public static List<byte[]> encodeDigest(long sender, Map<Long, Long> versions){
+        int perDatagram = (MAX_DATAGRAM_SIZE - HEADER_SIZE - 2) / DIGEST_ORIGIN_SIZE;
+        List<Map.Entry<Long, Long>> origins = new ArrayList<>(versions.entrySet());
+        List<byte[]> datagrams = new ArrayList<>();
+        int start = 0;
+        do {
+            int end = Math.min(origins.size(), start + perDatagram);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE + 2 + (end - start) * DIGEST_ORIGIN_SIZE);
+            DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                writeHeader(out, DIGEST, sender);
+                out.writeShort(end - start);
+                for (Map.Entry<Long, Long> origin : origins.subList(start, end)) {
+                    out.writeLong(origin.getKey());
+                    out.writeLong(origin.getValue());
+                }
+            } catch (IOException e) {
+                //Not thrown by a ByteArrayOutputStream
+                throw new IllegalStateException(e);
+            }
+            datagrams.add(bytes.toByteArray());
+            start = end;
+        } while (start < origins.size());
+        return datagrams;
+    }
+
+    /**
+     * @param sender id of the sending peer
+     * @param origin origin of the entries
+     * @param from version above which the entries are the current ones of the origin
+     * @param to version up to which the entries are the current ones of the origin
+     * @param entries the current entries of the origin in the range, in the order of their versions
+     * @return the datagrams of the delta, at least one, each covering the range from the end of the one before
+     * @throws IllegalArgumentException if an entry has more than {@value #MAX_VALUES} values or a text too long to be encoded
+     */
+    public static List<byte[]> encodeDelta(long sender, long origin, long from, long to, List<GossipEntry> entries){
+        List<byte[]> datagrams = new ArrayList<>();
+        List<byte[]> pending = new ArrayList<>();
+        int pendingSize = HEADER_SIZE + DELTA_HEADER_SIZE;
+        long rangeStart = from;
+        long lastVersion = from;
+        for (GossipEntry entry : entries) {
+            byte[] encoded = encodeEntry(entry);
+            if (!pending.isEmpty() && pendingSize + encoded.length > MAX_DATAGRAM_SIZE) {
+                datagrams.add(deltaDatagram(sender, origin, rangeStart, lastVersion, pending));
+                pending.clear();
+                pendingSize = HEADER_SIZE + DELTA_HEADER_SIZE;
+                rangeStart = lastVersion;
+            }
+            pending.add(encoded);
+            pendingSize += encoded.length;
+            lastVersion = entry.version;
+        }
+        datagrams.add(deltaDatagram(sender, origin, rangeStart, to, pending));
+        return datagrams;
+    }
+
+    /**
+     * @param data received bytes
+     * @param offset offset of the datagram in the bytes
+     * @param length length of the datagram
+     * @return the message of the datagram
+     * @throws IllegalArgumentException if the datagram is not a valid message
+     */
+    public static Message decode(byte[] data, int offset, int length){
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, offset, length));
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IllegalArgumentException("Not a gossip datagram of version " + FORMAT_VERSION);
+            }
+            int type = in.readUnsignedByte();
+            long sender = in.readLong();
+            if (type == DIGEST) {
+                int count = in.readUnsignedShort();
+                Map<Long, Long> versions = new LinkedHashMap<>();
+                for (int i = 0; i < count; i++) {
+                    versions.put(in.readLong(), in.readLong());
+                }
+                return new Message(type, sender, versions, 0, 0, 0, Collections.<GossipEntry>emptyList());
+            } else if (type == DELTA) {
+                long origin = in.readLong();
+                long from = in.readLong();
+                long to = in.readLong();
+                if (from < 0 || to < from) {
+                    throw new IllegalArgumentException("Invalid range " + from + " to " + to);
+                }
+                int count = in.readUnsignedShort();
+                List<GossipEntry> entries = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    long version = in.readLong();
+                    if (version <= from || version > to) {
+                        throw new IllegalArgumentException("Version " + version + " outside of the range " + from + " to " + to);
+                    }
+                    int kind = in.readUnsignedByte();
+                    String key = in.readUTF();
+                    long time = in.readLong();
+                    int valueCount = in.readUnsignedByte();
+                    Map<String, String> values = new LinkedHashMap<>();
+                    for (int j = 0; j < valueCount; j++) {
+                        values.put(in.readUTF(), in.readUTF());
+                    }
+                    entries.add(new GossipEntry(origin, version, kind, key, time, values));
+                }
+                return new Message(type, sender, Collections.<Long, Long>emptyMap(), origin, from, to, entries);
+            } else {
+                throw new IllegalArgumentException("Unknown message type " + type);
+            }
+        } catch (EOFException e) {
+            throw new IllegalArgumentException("Unexpected end of the datagram");
+        } catch (IOException e) {
+            //Thrown for invalid modified UTF-8, a ByteArrayInputStream does not fail otherwise
+            throw new IllegalArgumentException("Invalid text in the datagram");
+        }
+    }
+
+    private static void writeHeader(DataOutputStream out, int type, long sender) throws IOException {
+        out.write(MAGIC);
+        out.writeByte(type);
+        out.writeLong(sender);
+    }
+
+    private static byte[] encodeEntry(GossipEntry entry){
+        if (entry.values.size() > MAX_VALUES) {
+            throw new IllegalArgumentException("More than " + MAX_VALUES + " values in " + entry);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeLong(entry.version);
+            out.writeByte(entry.kind);
+            out.writeUTF(entry.key);
+            out.writeLong(entry.time);
+            out.writeByte(entry.values.size());
+            for (Map.Entry<String, String> value : entry.values.entrySet()) {
+                out.writeUTF(value.getKey());
+                out.writeUTF(value.getValue() == null ? "" : value.getValue());
+            }
+        } catch (IOException e) {
+            //Only thrown for a text longer than 65535 bytes
+            throw new IllegalArgumentException("Text too long in " + entry, e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] deltaDatagram(long sender, long origin, long from, long to, List<byte[]> entries){
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(MAX_DATAGRAM_SIZE);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            writeHeader(out, DELTA, sender);
+            out.writeLong(origin);
+            out.writeLong(from);
+            out.writeLong(to);
+            out.writeShort(entries.size());
+            for (byte[] entry : entries) {
+                out.write(entry);
+            }
+        } catch (IOException e) {
+            //Not thrown by a ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
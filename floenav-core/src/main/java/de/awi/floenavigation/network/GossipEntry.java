@@ -0,0 +1,87 @@
+package de.awi.floenavigation.network;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One piece of station state exchanged between the tablets by the {@link GossipPeer}s, such as the latest fix of a station or a
+ * newly created waypoint.
+ * <p>
+ *     An entry is created by the tablet it originates from, which numbers its entries with increasing versions. An entry replaces the
+ *     entry of the same origin, kind and key with a lower version, so of the fixes of a station only the latest is kept and sent.
+ *     The values are the columns of the row the entry stands for, as text.
+ * </p>
+ */
+public final class GossipEntry {
+
+    /**
+     * Kind of the latest position report of an AIS station, the key is its mmsi
+     */
+    public static final int KIND_FIX = 1;
+    /**
+     * Kind of the angle beta between the x-axis of the floe and the geographic longitude axis, the key is empty
+     */
+    public static final int KIND_BETA = 2;
+    /**
+     * Kind of the base stations of the coordinate system of the floe, the key is empty
+     */
+    public static final int KIND_ORIGIN = 3;
+    /**
+     * Kind of a waypoint, the key is its label id
+     */
+    public static final int KIND_WAYPOINT = 4;
+    /**
+     * Kind of a sample measurement, the key is its label
+     */
+    public static final int KIND_SAMPLE = 5;
+
+    /**
+     * Id of the {@link GossipPeer} which created the entry
+     */
+    public final long origin;
+    /**
+     * Version of the entry among the entries of its origin, starting at 1
+     */
+    public final long version;
+    /**
+     * One of the <code>KIND_</code> constants
+     */
+    public final int kind;
+    /**
+     * Key of the entry among the entries of its origin and kind
+     */
+    public final String key;
+    /**
+     * Time of the state in msecs
+     */
+    public final long time;
+    /**
+     * Values of the entry by column name, in the order they were put
+     */
+    public final Map<String, String> values;
+
+    public GossipEntry(long origin, long version, int kind, String key, long time, Map<String, String> values){
+        if (key == null) {
+            throw new IllegalArgumentException("Missing key");
+        }
+        this.origin = origin;
+        this.version = version;
+        this.kind = kind;
+        this.key = key;
+        this.time = time;
+        this.values = Collections.unmodifiableMap(new LinkedHashMap<>(values));
+    }
+
+    /**
+     * @return the key of the entries which replace each other
+     */
+    String slot(){
+        return origin + ":" + kind + ":" + key;
+    }
+
+    @Override
+    public String toString(){
+        return "GossipEntry(" + Long.toHexString(origin) + " v" + version + " kind " + kind + " " + key + " " + values + ")";
+    }
+}
@@ -0,0 +1,354 @@
+package de.awi.floenavigation.network;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Exchanges the live station state of the tablets on the local network over UDP, so a tablet which has lost its AIS link stays
+ * current from the others between the synchronizations with the Sync Server.
+ * <p>
+ *     Every tablet runs one peer, which sends its datagrams to a multicast group and to a list of unicast addresses for networks which
+ *     do not forward multicast. An entry published by the tablet is sent at once as a {@link GossipCodec#DELTA} of its own version.
+ *     Every {@value #DIGEST_INTERVAL} msecs the peer sends a {@link GossipCodec#DIGEST} with its version vector, and a peer receiving
+ *     a digest answers the sender with the deltas of the origins it knows more of. Lost datagrams, tablets which joined late and
+ *     tablets which only reach some of the others are so brought up to date within a few digests, while the version vectors keep
+ *     the entries already received from being sent or applied again.
+ * </p>
+ * <p>
+ *     The {@link Listener} is called on the receiving thread of the peer with every entry it has not seen before. A peer ignores its
+ *     own datagrams, which the multicast group sends back to it.
+ * </p>
+ */
+public class GossipPeer {
+
+    /**
+     * Receives the entries of the other peers
+     */
+    public interface Listener {
+
+        /**
+         * Called once for every entry of another peer which is newer than the entries of the same origin, kind and key applied before
+         * @param entry the entry received
+         */
+        void onEntry(GossipEntry entry);
+    }
+
+    /**
+     * Interval between two digests in msecs
+     */
+    public static final long DIGEST_INTERVAL = 2 * 1000;
+    /**
+     * Size of the receive buffer, the largest UDP datagram
+     */
+    private static final int RECEIVE_BUFFER_SIZE = 65535;
+
+    /**
+     * Entries and version vector of the peer
+     */
+    private final GossipState state;
+    /**
+     * Multicast group the datagrams are sent to, <code>null</code> if only unicast is used
+     */
+    private final InetAddress group;
+    /**
+     * UDP port the peer listens on and sends to in the multicast group, 0 for any free port
+     */
+    private final int port;
+    /**
+     * Called with the entries received
+     */
+    private final Listener listener;
+    /**
+     * Unicast addresses of the other peers the datagrams are sent to
+     */
+    private final List<InetSocketAddress> peers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Socket of the peer, <code>null</code> if it is not running
+     */
+    private volatile DatagramSocket socket;
+    /**
+     * Thread receiving the datagrams
+     */
+    private Thread receiver;
+    /**
+     * Sends the digests
+     */
+    private ScheduledExecutorService digestTimer;
+
+    /**
+     * Number of datagrams sent
+     */
+    private final AtomicLong sentDatagrams = new AtomicLong();
+    /**
+     * Number of datagrams received from the other peers
+     */
+    private final AtomicLong receivedDatagrams = new AtomicLong();
+    /**
+     * Number of datagrams which were not valid messages
+     */
+    private final AtomicLong invalidDatagrams = new AtomicLong();
+    /**
+     * Number of entries received which had been applied or replaced already
+     */
+    private final AtomicLong duplicateEntries = new AtomicLong();
+
+    /**
+     * @param id id of the peer, different for every tablet and every start of the App, so the versions of an origin never restart
+     * @param group multicast group the datagrams are sent to, <code>null</code> if only the peers added with
+     *              {@link #addPeer(InetSocketAddress)} are sent to
+     * @param port UDP port the peer listens on, 0 for any free port
+     * @param listener called with the entries received
+     */
+    public GossipPeer(long id, InetAddress group, int port, Listener listener){
+        if (group != null && !group.isMulticastAddress()) {
+            throw new IllegalArgumentException(group + " is not a multicast group");
+        }
+        this.state = new GossipState(id);
+        this.group = group;
+        this.port = port;
+        this.listener = listener;
+    }
+
+    /**
+     * Adds a peer the datagrams are sent to by unicast
+     * @param address address and port of the other peer
+     */
+    public void addPeer(InetSocketAddress address){
+        if (!peers.contains(address)) {
+            peers.add(address);
+        }
+    }
+
+    /**
+     * Opens the socket and starts receiving datagrams and sending digests
+     * @throws IOException if the socket cannot be opened or the multicast group cannot be joined
+     */
+    public synchronized void start() throws IOException {
+        if (socket != null) {
+            return;
+        }
+        DatagramSocket newSocket;
+        if (group != null) {
+            MulticastSocket multicastSocket = new MulticastSocket(port);
+            multicastSocket.joinGroup(group);
+            newSocket = multicastSocket;
+        } else {
+            newSocket = new DatagramSocket(port);
+        }
+        socket = newSocket;
+        receiver = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                receive();
+            }
+        }, "GossipReceiver");
+        receiver.setDaemon(true);
+        receiver.start();
+        digestTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "GossipDigest");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        digestTimer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                sendDigest();
+            }
+        }, 0, DIGEST_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the peer and closes its socket. The entries received are kept if the peer is started again.
+     */
+    public synchronized void stop(){
+        DatagramSocket oldSocket = socket;
+        if (oldSocket == null) {
+            return;
+        }
+        socket = null;
+        digestTimer.shutdownNow();
+        if (group != null) {
+            try {
+                ((MulticastSocket) oldSocket).leaveGroup(group);
+            } catch (IOException e) {
+                //The socket is closed anyway
+            }
+        }
+        oldSocket.close();
+        try {
+            receiver.join(DIGEST_INTERVAL);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the peer has been started and not stopped
+     */
+    public boolean isRunning(){
+        return socket != null;
+    }
+
+    /**
+     * Creates an entry of this peer and sends it to the other peers at once
+     * @param kind one of the <code>KIND_</code> constants of {@link GossipEntry}
+     * @param key key of the entry
+     * @param time time of the state in msecs
+     * @param values values of the entry
+     * @return the new entry
+     */
+    public GossipEntry publish(int kind, String key, long time, Map<String, String> values){
+        GossipEntry entry = state.putLocal(kind, key, time, values);
+        for (byte[] datagram : GossipCodec.encodeDelta(state.getId(), state.getId(), entry.version - 1, entry.version,
+                Collections.singletonList(entry))) {
+            sendToAll(datagram);
+        }
+        return entry;
+    }
+
+    /**
+     * @return the entries and the version vector of the peer
+     */
+    public GossipState getState(){
+        return state;
+    }
+
+    /**
+     * @return the local port of the socket, -1 if the peer is not running
+     */
+    public int getLocalPort(){
+        DatagramSocket current = socket;
+        return current == null ? -1 : current.getLocalPort();
+    }
+
+    public long getSentDatagrams(){
+        return sentDatagrams.get();
+    }
+
+    public long getReceivedDatagrams(){
+        return receivedDatagrams.get();
+    }
+
+    public long getInvalidDatagrams(){
+        return invalidDatagrams.get();
+    }
+
+    public long getDuplicateEntries(){
+        return duplicateEntries.get();
+    }
+
+    /**
+     * Sends the version vector of the peer to the other peers
+     */
+    void sendDigest(){
+        for (byte[] datagram : GossipCodec.encodeDigest(state.getId(), state.digest())) {
+            sendToAll(datagram);
+        }
+    }
+
+    /**
+     * Receives the datagrams until the socket is closed
+     */
+    private void receive(){
+        DatagramSocket current = socket;
+        byte[] buffer = new byte[RECEIVE_BUFFER_SIZE];
+        while (current != null && !current.isClosed()) {
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                current.receive(packet);
+            } catch (IOException e) {
+                //Thrown when the socket is closed by stop()
+                break;
+            }
+            GossipCodec.Message message;
+            try {
+                message = GossipCodec.decode(packet.getData(), packet.getOffset(), packet.getLength());
+            } catch (IllegalArgumentException e) {
+                invalidDatagrams.incrementAndGet();
+                continue;
+            }
+            if (message.sender == state.getId()) {
+                continue;
+            }
+            receivedDatagrams.incrementAndGet();
+            if (message.type == GossipCodec.DIGEST) {
+                answerDigest(message.versions, packet.getSocketAddress());
+            } else {
+                applyDelta(message);
+            }
+        }
+    }
+
+    /**
+     * Sends the sender of a digest the entries of the origins it knows less of
+     */
+    private void answerDigest(Map<Long, Long> theirVersions, SocketAddress sender){
+        for (Map.Entry<Long, Long> origin : state.digest().entrySet()) {
+            Long theirVersion = theirVersions.get(origin.getKey());
+            long from = theirVersion == null ? 0 : theirVersion;
+            long to = origin.getValue();
+            if (from < to) {
+                List<GossipEntry> entries = state.entries(origin.getKey(), from, to);
+                for (byte[] datagram : GossipCodec.encodeDelta(state.getId(), origin.getKey(), from, to, entries)) {
+                    send(datagram, sender);
+                }
+            }
+        }
+    }
+
+    private void applyDelta(GossipCodec.Message delta){
+        List<GossipEntry> applied = new ArrayList<>(delta.entries.size());
+        for (GossipEntry entry : delta.entries) {
+            if (state.apply(entry)) {
+                applied.add(entry);
+            } else {
+                duplicateEntries.incrementAndGet();
+            }
+        }
+        state.advance(delta.origin, delta.from, delta.to);
+        for (GossipEntry entry : applied) {
+            listener.onEntry(entry);
+        }
+    }
+
+    private void sendToAll(byte[] datagram){
+        if (group != null) {
+            send(datagram, new InetSocketAddress(group, socket == null ? port : socket.getLocalPort()));
+        }
+        for (InetSocketAddress peer : peers) {
+            send(datagram, peer);
+        }
+    }
+
+    private void send(byte[] datagram, SocketAddress address){
+        DatagramSocket current = socket;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.send(new DatagramPacket(datagram, datagram.length, address));
+            sentDatagrams.incrementAndGet();
+        } catch (IOException e) {
+            //The network is down or the peer unreachable, the entries are sent again with the answers to the next digests
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package de.awi.floenavigation.network;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The entries a {@link GossipPeer} knows of, with the version vector which tells the other peers what it has already received.
+ * <p>
+ *     For every origin the version vector holds the version up to which all the entries of the origin are known. It is advanced by
+ *     {@link #advance(long, long, long)} when a delta covering the versions above it has been applied. Entries received out of order,
+ *     for example after a lost packet, are applied at once but the version of their origin is only advanced once the versions
+ *     below them have been received, so the missing entries are asked for again with the next digest.
+ * </p>
+ * <p>
+ *     Only the latest entry of each origin, kind and key is kept, the entries it replaced are dropped from the versions of their
+ *     origin. A delta of a range of versions therefore only holds the entries which are still current.
+ * </p>
+ * All the methods are synchronized as the state is used by the receiving thread of the peer and by the threads publishing entries.
+ */
+public class GossipState {
+
+    /**
+     * Id of the peer, the origin of its own entries
+     */
+    private final long id;
+    /**
+     * Version up to which all the entries of each origin are known
+     */
+    private final Map<Long, Long> versions = new LinkedHashMap<>();
+    /**
+     * Current entries of each origin by their version
+     */
+    private final Map<Long, TreeMap<Long, GossipEntry>> entries = new HashMap<>();
+    /**
+     * Current entry of each origin, kind and key
+     */
+    private final Map<String, GossipEntry> latest = new HashMap<>();
+
+    /**
+     * @param id id of the peer, the origin of the entries created with {@link #putLocal(int, String, long, Map)}
+     */
+    public GossipState(long id){
+        this.id = id;
+    }
+
+    /**
+     * @return the id of the peer
+     */
+    public long getId(){
+        return id;
+    }
+
+    /**
+     * Creates an entry of the peer with the next version
+     * @param kind one of the <code>KIND_</code> constants of {@link GossipEntry}
+     * @param key key of the entry
+     * @param time time of the state in msecs
+     * @param values values of the entry
+     * @return the new entry
+     */
+    public synchronized GossipEntry putLocal(int kind, String key, long time, Map<String, String> values){
+        long version = getVersion(id) + 1;
+        GossipEntry entry = new GossipEntry(id, version, kind, key, time, values);
+        store(entry);
+        versions.put(id, version);
+        return entry;
+    }
+
+    /**
+     * Applies an entry received from another peer
+     * @param entry entry received
+     * @return <code>true</code> if the entry was new, <code>false</code> if it was known or has been replaced already
+     */
+    public synchronized boolean apply(GossipEntry entry){
+        if (entry.origin == id || entry.version <= getVersion(entry.origin)) {
+            return false;
+        }
+        GossipEntry current = latest.get(entry.slot());
+        if (current != null && current.version >= entry.version) {
+            return false;
+        }
+        store(entry);
+        return true;
+    }
+
+    /**
+     * Advances the version of an origin after the entries of a delta have been applied
+     * @param origin origin of the delta
+     * @param from version above which the delta holds the current entries of the origin
+     * @param to version up to which the delta holds the current entries of the origin
+     * @return <code>true</code> if the version was advanced, <code>false</code> if it was already at least <code>to</code> or if the
+     * versions between it and <code>from</code> are still missing
+     */
+    public synchronized boolean advance(long origin, long from, long to){
+        long version = getVersion(origin);
+        if (origin == id || version < from || version >= to) {
+            return false;
+        }
+        versions.put(origin, to);
+        return true;
+    }
+
+    /**
+     * @param origin id of a peer
+     * @return the version up to which all the entries of the origin are known, 0 if none are
+     */
+    public synchronized long getVersion(long origin){
+        Long version = versions.get(origin);
+        return version == null ? 0 : version;
+    }
+
+    /**
+     * @return a copy of the version vector
+     */
+    public synchronized Map<Long, Long> digest(){
+        return new LinkedHashMap<>(versions);
+    }
+
+    /**
+     * @param origin id of a peer
+     * @param from version above which the entries are returned
+     * @param to version up to which the entries are returned
+     * @return the current entries of the origin with a version in the range, in the order of their versions
+     */
+    public synchronized List<GossipEntry> entries(long origin, long from, long to){
+        TreeMap<Long, GossipEntry> ofOrigin = entries.get(origin);
+        if (ofOrigin == null || from >= to) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(ofOrigin.subMap(from, false, to, true).values());
+    }
+
+    /**
+     * @return the number of current entries of all origins
+     */
+    public synchronized int size(){
+        return latest.size();
+    }
+
+    /**
+     * Makes the entry the current one of its origin, kind and key
+     */
+    private void store(GossipEntry entry){
+        GossipEntry replaced = latest.put(entry.slot(), entry);
+        TreeMap<Long, GossipEntry> ofOrigin = entries.get(entry.origin);
+        if (ofOrigin == null) {
+            ofOrigin = new TreeMap<>();
+            entries.put(entry.origin, ofOrigin);
+        }
+        if (replaced != null) {
+            ofOrigin.remove(replaced.version);
+        }
+        ofOrigin.put(entry.version, entry);
+    }
+}
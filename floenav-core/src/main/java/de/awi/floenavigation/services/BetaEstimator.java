@@ -0,0 +1,203 @@
+package de.awi.floenavigation.services;
+
+import java.util.HashMap;
+
+/**
+ * Maintains the angle {@code DatabaseHelper.beta} as the circular mean of the beta values contributed by the individual fixed stations.
+ * <p>
+ *     Every contribution is stored as a unit vector (sine and cosine of the angle) and the running sums of these vectors are updated
+ *     whenever a single contribution is added, changed or removed. Updating one station therefore costs the same irrespective of the
+ *     number of fixed stations on the floe. As the mean is taken over the unit vectors it is also correct across the 0/360 degree wrap,
+ *     where an arithmetic mean of the angles would be off by up to 180 degrees.
+ * </p>
+ * <p>
+ *     The running sums are recalculated from the stored contributions every {@value #RESUM_INTERVAL} updates, so that the rounding
+ *     errors of repeated additions and subtractions do not accumulate over a long expedition.
+ * </p>
+ * This class is not thread safe, it is only accessed from the worker thread of {@code AngleCalculationService}.
+ */
+public class BetaEstimator {
+
+    /**
+     * Initial capacity of the contribution arrays
+     */
+    private static final int INITIAL_CAPACITY = 16;
+    /**
+     * Number of updates after which the running sums are recalculated from the stored contributions
+     */
+    private static final int RESUM_INTERVAL = 1024;
+    /**
+     * Length of the mean unit vector below which the contributions are considered to cancel out, as the rounding errors of the sines
+     * and cosines leave a residue of about 1e-16 instead of zero
+     */
+    private static final double MIN_RESULTANT = 1e-9;
+    /**
+     * Maps the mmsi of a station to its index in {@link #mmsis}, {@link #sinValues} and {@link #cosValues}
+     */
+    private final HashMap<Integer, Integer> slots = new HashMap<>();
+    /**
+     * mmsi of the station at each index
+     */
+    private int[] mmsis = new int[INITIAL_CAPACITY];
+    /**
+     * Sine of the beta contributed by the station at each index
+     */
+    private double[] sinValues = new double[INITIAL_CAPACITY];
+    /**
+     * Cosine of the beta contributed by the station at each index
+     */
+    private double[] cosValues = new double[INITIAL_CAPACITY];
+    /**
+     * Number of stations currently contributing to the mean
+     */
+    private int size;
+    /**
+     * Running sum of {@link #sinValues}
+     */
+    private double sumSin;
+    /**
+     * Running sum of {@link #cosValues}
+     */
+    private double sumCos;
+    /**
+     * Number of updates since the running sums were last recalculated
+     */
+    private int updatesSinceResum;
+
+    /**
+     * Adds the beta contribution of a station or replaces its previous contribution. A beta which is not finite is ignored, as it
+     * would make the running sums NaN for as long as the station contributes.
+     * @param mmsi mmsi of the station
+     * @param betaDegrees beta calculated from the position of the station in degrees
+     */
+    public void update(int mmsi, double betaDegrees){
+        if (Double.isNaN(betaDegrees) || Double.isInfinite(betaDegrees)){
+            return;
+        }
+        double radians = Math.toRadians(betaDegrees);
+        double sin = Math.sin(radians);
+        double cos = Math.cos(radians);
+        Integer slot = slots.get(mmsi);
+        int index;
+        if (slot == null){
+            if (size == mmsis.length){
+                grow();
+            }
+            index = size++;
+            mmsis[index] = mmsi;
+            slots.put(mmsi, index);
+        } else {
+            index = slot;
+            sumSin -= sinValues[index];
+            sumCos -= cosValues[index];
+        }
+        sinValues[index] = sin;
+        cosValues[index] = cos;
+        sumSin += sin;
+        sumCos += cos;
+        countUpdate();
+    }
+
+    /**
+     * Removes the beta contribution of a station.
+     * @param mmsi mmsi of the station
+     * @return <code>true</code> if the station was contributing to the mean
+     */
+    public boolean remove(int mmsi){
+        Integer slot = slots.remove(mmsi);
+        if (slot == null){
+            return false;
+        }
+        int index = slot;
+        sumSin -= sinValues[index];
+        sumCos -= cosValues[index];
+        int last = --size;
+        if (index != last){
+            mmsis[index] = mmsis[last];
+            sinValues[index] = sinValues[last];
+            cosValues[index] = cosValues[last];
+            slots.put(mmsis[index], index);
+        }
+        countUpdate();
+        return true;
+    }
+
+    /**
+     * Removes all the contributions.
+     */
+    public void clear(){
+        slots.clear();
+        size = 0;
+        sumSin = 0;
+        sumCos = 0;
+        updatesSinceResum = 0;
+    }
+
+    /**
+     * @return number of stations contributing to the mean
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Circular mean of all the contributions.
+     * @return the mean beta in degrees in the range [0, 360), or {@link Double#NaN} if there are no contributions or they cancel out
+     */
+    public double getMean(){
+        if (size == 0 || Math.hypot(sumSin, sumCos) < MIN_RESULTANT * size){
+            return Double.NaN;
+        }
+        double mean = Math.toDegrees(Math.atan2(sumSin, sumCos));
+        return (mean + 360) % 360;
+    }
+
+    /**
+     * Signed difference between two angles, taking the 0/360 degree wrap into account.
+     * @param first first angle in degrees
+     * @param second second angle in degrees
+     * @return the difference <code>first - second</code> in degrees in the range [-180, 180)
+     */
+    public static double angularDifference(double first, double second){
+        double diff = (first - second) % 360;
+        if (diff < -180){
+            diff += 360;
+        } else if (diff >= 180){
+            diff -= 360;
+        }
+        return diff;
+    }
+
+    /**
+     * Counts an update and recalculates the running sums every {@value #RESUM_INTERVAL} updates
+     */
+    private void countUpdate(){
+        if (++updatesSinceResum < RESUM_INTERVAL){
+            return;
+        }
+        double sin = 0, cos = 0;
+        for (int i = 0; i < size; i++){
+            sin += sinValues[i];
+            cos += cosValues[i];
+        }
+        sumSin = sin;
+        sumCos = cos;
+        updatesSinceResum = 0;
+    }
+
+    /**
+     * Doubles the capacity of the contribution arrays
+     */
+    private void grow(){
+        int capacity = mmsis.length * 2;
+        int[] newMmsis = new int[capacity];
+        double[] newSin = new double[capacity];
+        double[] newCos = new double[capacity];
+        System.arraycopy(mmsis, 0, newMmsis, 0, size);
+        System.arraycopy(sinValues, 0, newSin, 0, size);
+        System.arraycopy(cosValues, 0, newCos, 0, size);
+        mmsis = newMmsis;
+        sinValues = newSin;
+        cosValues = newCos;
+    }
+}
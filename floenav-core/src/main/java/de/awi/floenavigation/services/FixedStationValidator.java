@@ -0,0 +1,476 @@
+package de.awi.floenavigation.services;
+
+import java.util.HashMap;
+
+import de.awi.floenavigation.helperclasses.NavigationFunctions;
+
+/**
+ * Keeps the validation state of every fixed station in memory so that {@code ValidationService} can check a fixed station as soon as
+ * its AIS packet is decoded instead of scanning {@code DatabaseHelper.fixedStationTable} periodically.
+ * <p>
+ *     The state of the stations is stored in primitive arrays indexed by a slot, the slot of a station is looked up by its mmsi.
+ *     For every station the last predicted position is kept, which is compared with every received position. The result of
+ *     {@link #onReport(int, double, double, long)} tells the caller whether {@code DatabaseHelper.predictionAccuracy} or
+ *     {@code DatabaseHelper.incorrectMessageCount} has changed and needs to be written to the database, or if the station has broken off.
+ * </p>
+ * <p>
+ *     Packet timeouts are detected with a timer wheel of {@value #WHEEL_SIZE} buckets of {@value #WHEEL_TICK} msecs. Every station is
+ *     kept in the bucket of the time by which its next packet is expected, so {@link #advance(long)} only looks at the stations of
+ *     the buckets which have passed since the last call.
+ * </p>
+ * All the methods are synchronized as the validator is used by the threads of {@code AISDecodingService},
+ * {@code PredictionService} and {@code ValidationService}.
+ */
+public class FixedStationValidator {
+
+    /**
+     * Result of {@link #onReport(int, double, double, long)} if nothing has to be written to the database
+     */
+    public static final int RESULT_UNCHANGED = 0;
+    /**
+     * Result of {@link #onReport(int, double, double, long)} if {@link #getPredictionAccuracy(int)} or
+     * {@link #getIncorrectMessageCount(int)} has changed
+     */
+    public static final int RESULT_CHANGED = 1;
+    /**
+     * Result of {@link #onReport(int, double, double, long)} if the station has broken off from the floe
+     */
+    public static final int RESULT_BROKEN = 2;
+    /**
+     * Duration of one bucket of the timer wheel in msecs
+     */
+    public static final long WHEEL_TICK = 10 * 1000;
+    /**
+     * Number of buckets of the timer wheel
+     */
+    private static final int WHEEL_SIZE = 64;
+    /**
+     * Initial capacity of the state arrays
+     */
+    private static final int INITIAL_CAPACITY = 16;
+    /**
+     * Marks the end of a bucket list and a station which is not scheduled
+     */
+    private static final int NONE = -1;
+    /**
+     * Returned by {@link #advance(long)} if no station has timed out
+     */
+    private static final int[] NO_STATIONS = new int[0];
+
+    /**
+     * Maps the mmsi of a station to its slot in the state arrays
+     */
+    private final HashMap<Integer, Integer> slots = new HashMap<>();
+    /**
+     * mmsi of the station in each slot
+     */
+    private int[] mmsis = new int[INITIAL_CAPACITY];
+    /**
+     * Last predicted latitude of the station in each slot
+     */
+    private double[] predictedLatitudes = new double[INITIAL_CAPACITY];
+    /**
+     * Last predicted longitude of the station in each slot
+     */
+    private double[] predictedLongitudes = new double[INITIAL_CAPACITY];
+    /**
+     * <code>true</code> if a predicted position is available for the station in each slot
+     */
+    private boolean[] hasPrediction = new boolean[INITIAL_CAPACITY];
+    /**
+     * Time of the first received position which was farther than the error threshold from the prediction, or 0 if the last
+     * received position of the station was correct
+     */
+    private long[] errorSinceTimes = new long[INITIAL_CAPACITY];
+    /**
+     * Number of incorrect positions received since {@link #errorSinceTimes}, stored as {@code DatabaseHelper.incorrectMessageCount}
+     */
+    private int[] incorrectMessageCounts = new int[INITIAL_CAPACITY];
+    /**
+     * Number of validation intervals for which the station has been incorrect, stored as {@code DatabaseHelper.predictionAccuracy}
+     */
+    private int[] predictionAccuracies = new int[INITIAL_CAPACITY];
+    /**
+     * Wheel tick by which the next packet of the station in each slot is expected, or {@link #NONE} if it is not scheduled
+     */
+    private long[] deadlineTicks = new long[INITIAL_CAPACITY];
+    /**
+     * Next slot in the same bucket of the timer wheel
+     */
+    private int[] nextInBucket = new int[INITIAL_CAPACITY];
+    /**
+     * Previous slot in the same bucket of the timer wheel
+     */
+    private int[] previousInBucket = new int[INITIAL_CAPACITY];
+    /**
+     * First slot in each bucket of the timer wheel
+     */
+    private final int[] buckets = new int[WHEEL_SIZE];
+    /**
+     * Number of stations
+     */
+    private int size;
+    /**
+     * Last wheel tick processed by {@link #advance(long)}, or {@link #NONE} before the first call
+     */
+    private long currentTick = NONE;
+    /**
+     * Maximum distance in meters between the received and predicted position
+     */
+    private double errorThreshold;
+    /**
+     * Time in msecs for which a station has to be incorrect before it is considered broken off
+     */
+    private long predictionAccuracyThreshold;
+    /**
+     * Time in msecs after the last packet after which a station is considered to have timed out
+     */
+    private long packetThreshold;
+    /**
+     * Length in msecs of one validation interval, the unit of {@code DatabaseHelper.predictionAccuracy}
+     */
+    private final long validationInterval;
+    /**
+     * Minimum number of incorrect positions before a station is considered broken off
+     */
+    private final int minIncorrectMessages;
+
+    /**
+     * Constructor
+     * @param validationInterval length in msecs of one validation interval, the unit of {@code DatabaseHelper.predictionAccuracy}
+     * @param minIncorrectMessages minimum number of incorrect positions before a station is considered broken off
+     */
+    public FixedStationValidator(long validationInterval, int minIncorrectMessages){
+        this.validationInterval = validationInterval;
+        this.minIncorrectMessages = minIncorrectMessages;
+        for (int i = 0; i < WHEEL_SIZE; i++){
+            buckets[i] = NONE;
+        }
+    }
+
+    /**
+     * Sets the configuration parameters used for the validation
+     * @param errorThreshold value of {@code DatabaseHelper.error_threshold} in meters
+     * @param predictionAccuracyThreshold value of {@code DatabaseHelper.prediction_accuracy_threshold} in msecs
+     * @param packetThreshold value of {@code DatabaseHelper.packet_threshold_time} in msecs
+     */
+    public synchronized void setThresholds(double errorThreshold, long predictionAccuracyThreshold, long packetThreshold){
+        this.errorThreshold = errorThreshold;
+        this.predictionAccuracyThreshold = predictionAccuracyThreshold;
+        this.packetThreshold = packetThreshold;
+    }
+
+    /**
+     * Adds a station with the state read from {@code DatabaseHelper.fixedStationTable}. Does nothing if the station is already known.
+     * @param mmsi mmsi of the station
+     * @param predictedLatitude predicted latitude of the station
+     * @param predictedLongitude predicted longitude of the station
+     * @param lastReportTime time at which the last packet of the station was received
+     * @param predictionAccuracy stored {@code DatabaseHelper.predictionAccuracy} of the station
+     * @param incorrectMessageCount stored {@code DatabaseHelper.incorrectMessageCount} of the station
+     * @param now current time
+     */
+    public synchronized void addStation(int mmsi, double predictedLatitude, double predictedLongitude, long lastReportTime,
+                                        int predictionAccuracy, int incorrectMessageCount, long now){
+        if (slots.containsKey(mmsi)){
+            return;
+        }
+        int slot = slotOf(mmsi);
+        predictedLatitudes[slot] = predictedLatitude;
+        predictedLongitudes[slot] = predictedLongitude;
+        hasPrediction[slot] = true;
+        predictionAccuracies[slot] = predictionAccuracy;
+        incorrectMessageCounts[slot] = incorrectMessageCount;
+        errorSinceTimes[slot] = (predictionAccuracy > 0 || incorrectMessageCount > 0) ? now - predictionAccuracy * validationInterval : 0;
+        schedule(slot, lastReportTime);
+    }
+
+    /**
+     * Stores the latest predicted position of a station
+     * @param mmsi mmsi of the station
+     * @param latitude predicted latitude
+     * @param longitude predicted longitude
+     */
+    public synchronized void setPrediction(int mmsi, double latitude, double longitude){
+        int slot = slotOf(mmsi);
+        predictedLatitudes[slot] = latitude;
+        predictedLongitudes[slot] = longitude;
+        hasPrediction[slot] = true;
+    }
+
+    /**
+     * Validates a received position of a station against its latest prediction and schedules the time by which its next packet
+     * is expected. A position which is not finite is not validated.
+     * @param mmsi mmsi of the station
+     * @param latitude received latitude
+     * @param longitude received longitude
+     * @param reportTime time at which the packet was received
+     * @return {@link #RESULT_UNCHANGED}, {@link #RESULT_CHANGED} or {@link #RESULT_BROKEN}
+     */
+    public synchronized int onReport(int mmsi, double latitude, double longitude, long reportTime){
+        int slot = slotOf(mmsi);
+        schedule(slot, reportTime);
+        if (!hasPrediction[slot]){
+            return RESULT_UNCHANGED;
+        }
+        double difference = NavigationFunctions.calculateDifference(predictedLatitudes[slot], predictedLongitudes[slot], latitude, longitude);
+        if (Double.isNaN(difference)){
+            return RESULT_UNCHANGED;
+        }
+        if (difference <= errorThreshold){
+            if (errorSinceTimes[slot] == 0 && incorrectMessageCounts[slot] == 0 && predictionAccuracies[slot] == 0){
+                return RESULT_UNCHANGED;
+            }
+            errorSinceTimes[slot] = 0;
+            incorrectMessageCounts[slot] = 0;
+            predictionAccuracies[slot] = 0;
+            return RESULT_CHANGED;
+        }
+        if (errorSinceTimes[slot] == 0){
+            errorSinceTimes[slot] = reportTime;
+        }
+        incorrectMessageCounts[slot]++;
+        long incorrectTime = reportTime - errorSinceTimes[slot];
+        if (incorrectTime > predictionAccuracyThreshold && incorrectMessageCounts[slot] >= minIncorrectMessages){
+            return RESULT_BROKEN;
+        }
+        predictionAccuracies[slot] = (int) (incorrectTime / validationInterval) + 1;
+        return RESULT_CHANGED;
+    }
+
+    /**
+     * @param mmsi mmsi of the station
+     * @return the current {@code DatabaseHelper.predictionAccuracy} of the station
+     */
+    public synchronized int getPredictionAccuracy(int mmsi){
+        Integer slot = slots.get(mmsi);
+        return (slot == null) ? 0 : predictionAccuracies[slot];
+    }
+
+    /**
+     * @param mmsi mmsi of the station
+     * @return the current {@code DatabaseHelper.incorrectMessageCount} of the station
+     */
+    public synchronized int getIncorrectMessageCount(int mmsi){
+        Integer slot = slots.get(mmsi);
+        return (slot == null) ? 0 : incorrectMessageCounts[slot];
+    }
+
+    /**
+     * Advances the timer wheel to the given time and removes the stations whose next packet was expected before it.
+     * @param now current time
+     * @return the mmsi's of the stations which have timed out
+     */
+    public synchronized int[] advance(long now){
+        long nowTick = now / WHEEL_TICK;
+        if (currentTick == NONE){
+            //The first call looks at every bucket, as stations may have been added whose packets are already overdue
+            currentTick = nowTick - WHEEL_SIZE;
+        }
+        if (nowTick <= currentTick){
+            return NO_STATIONS;
+        }
+        long firstTick = Math.max(currentTick + 1, nowTick - WHEEL_SIZE + 1);
+        int[] expired = NO_STATIONS;
+        int numExpired = 0;
+        for (long tick = firstTick; tick <= nowTick; tick++){
+            int slot = buckets[(int) (tick % WHEEL_SIZE)];
+            while (slot != NONE){
+                int next = nextInBucket[slot];
+                if (deadlineTicks[slot] <= nowTick){
+                    if (numExpired == expired.length){
+                        int[] grown = new int[Math.max(4, numExpired * 2)];
+                        System.arraycopy(expired, 0, grown, 0, numExpired);
+                        expired = grown;
+                    }
+                    expired[numExpired++] = mmsis[slot];
+                }
+                slot = next;
+            }
+        }
+        currentTick = nowTick;
+        for (int i = 0; i < numExpired; i++){
+            remove(expired[i]);
+        }
+        if (numExpired == expired.length){
+            return expired;
+        }
+        int[] result = new int[numExpired];
+        System.arraycopy(expired, 0, result, 0, numExpired);
+        return result;
+    }
+
+    /**
+     * @param mmsi mmsi of the station
+     * @return <code>true</code> if the station is known to the validator
+     */
+    public synchronized boolean contains(int mmsi){
+        return slots.containsKey(mmsi);
+    }
+
+    /**
+     * Removes a station
+     * @param mmsi mmsi of the station
+     */
+    public synchronized void remove(int mmsi){
+        Integer removed = slots.remove(mmsi);
+        if (removed == null){
+            return;
+        }
+        int slot = removed;
+        unschedule(slot);
+        int last = --size;
+        if (slot != last){
+            long lastDeadline = deadlineTicks[last];
+            unschedule(last);
+            mmsis[slot] = mmsis[last];
+            predictedLatitudes[slot] = predictedLatitudes[last];
+            predictedLongitudes[slot] = predictedLongitudes[last];
+            hasPrediction[slot] = hasPrediction[last];
+            errorSinceTimes[slot] = errorSinceTimes[last];
+            incorrectMessageCounts[slot] = incorrectMessageCounts[last];
+            predictionAccuracies[slot] = predictionAccuracies[last];
+            deadlineTicks[slot] = lastDeadline;
+            slots.put(mmsis[slot], slot);
+            if (lastDeadline != NONE){
+                link(slot);
+            }
+        }
+    }
+
+    /**
+     * Removes all the stations
+     */
+    public synchronized void clear(){
+        slots.clear();
+        size = 0;
+        currentTick = NONE;
+        for (int i = 0; i < WHEEL_SIZE; i++){
+            buckets[i] = NONE;
+        }
+    }
+
+    /**
+     * @return number of stations known to the validator
+     */
+    public synchronized int size(){
+        return size;
+    }
+
+    /**
+     * Returns the slot of a station, a new slot is created if the station is not known
+     * @param mmsi mmsi of the station
+     * @return slot of the station
+     */
+    private int slotOf(int mmsi){
+        Integer slot = slots.get(mmsi);
+        if (slot != null){
+            return slot;
+        }
+        if (size == mmsis.length){
+            grow();
+        }
+        int index = size++;
+        mmsis[index] = mmsi;
+        hasPrediction[index] = false;
+        errorSinceTimes[index] = 0;
+        incorrectMessageCounts[index] = 0;
+        predictionAccuracies[index] = 0;
+        deadlineTicks[index] = NONE;
+        slots.put(mmsi, index);
+        return index;
+    }
+
+    /**
+     * Moves a station to the bucket of the time by which its next packet is expected
+     * @param slot slot of the station
+     * @param reportTime time at which the last packet of the station was received
+     */
+    private void schedule(int slot, long reportTime){
+        long deadline = (reportTime + packetThreshold + WHEEL_TICK - 1) / WHEEL_TICK;
+        if (currentTick != NONE && deadline <= currentTick){
+            deadline = currentTick + 1;
+        }
+        if (deadlineTicks[slot] == deadline){
+            return;
+        }
+        if (deadlineTicks[slot] != NONE){
+            unschedule(slot);
+        }
+        deadlineTicks[slot] = deadline;
+        link(slot);
+    }
+
+    /**
+     * Inserts a station at the head of the bucket of its {@link #deadlineTicks}
+     * @param slot slot of the station
+     */
+    private void link(int slot){
+        int bucket = (int) (deadlineTicks[slot] % WHEEL_SIZE);
+        int head = buckets[bucket];
+        nextInBucket[slot] = head;
+        previousInBucket[slot] = NONE;
+        if (head != NONE){
+            previousInBucket[head] = slot;
+        }
+        buckets[bucket] = slot;
+    }
+
+    /**
+     * Removes a station from its bucket of the timer wheel
+     * @param slot slot of the station
+     */
+    private void unschedule(int slot){
+        if (deadlineTicks[slot] == NONE){
+            return;
+        }
+        int next = nextInBucket[slot];
+        int previous = previousInBucket[slot];
+        if (previous != NONE){
+            nextInBucket[previous] = next;
+        } else {
+            buckets[(int) (deadlineTicks[slot] % WHEEL_SIZE)] = next;
+        }
+        if (next != NONE){
+            previousInBucket[next] = previous;
+        }
+        deadlineTicks[slot] = NONE;
+    }
+
+    /**
+     * Doubles the capacity of the state arrays
+     */
+    private void grow(){
+        int capacity = mmsis.length * 2;
+        mmsis = copyOf(mmsis, capacity);
+        predictedLatitudes = copyOf(predictedLatitudes, capacity);
+        predictedLongitudes = copyOf(predictedLongitudes, capacity);
+        boolean[] newHasPrediction = new boolean[capacity];
+        System.arraycopy(hasPrediction, 0, newHasPrediction, 0, size);
+        hasPrediction = newHasPrediction;
+        errorSinceTimes = copyOf(errorSinceTimes, capacity);
+        incorrectMessageCounts = copyOf(incorrectMessageCounts, capacity);
+        predictionAccuracies = copyOf(predictionAccuracies, capacity);
+        deadlineTicks = copyOf(deadlineTicks, capacity);
+        nextInBucket = copyOf(nextInBucket, capacity);
+        previousInBucket = copyOf(previousInBucket, capacity);
+    }
+
+    private int[] copyOf(int[] array, int capacity){
+        int[] copy = new int[capacity];
+        System.arraycopy(array, 0, copy, 0, size);
+        return copy;
+    }
+
+    private long[] copyOf(long[] array, int capacity){
+        long[] copy = new long[capacity];
+        System.arraycopy(array, 0, copy, 0, size);
+        return copy;
+    }
+
+    private double[] copyOf(double[] array, int capacity){
+        double[] copy = new double[capacity];
+        System.arraycopy(array, 0, copy, 0, size);
+        return copy;
+    }
+}
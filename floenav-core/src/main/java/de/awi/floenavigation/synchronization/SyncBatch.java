@@ -0,0 +1,497 @@
+package de.awi.floenavigation.synchronization;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One request of the batched push to the Sync Server: a chunk of rows of one database table, and the codec of the request and of
+ * its acknowledgements, shared by the Sync Classes of the App and by the stand-in server used for testing.
+ * <p>
+ *     A request is a JSON object with the name of the table, the index of its first row and the rows as an array of objects, every
+ *     column value being a string just as in the form parameters of the single row push:
+ *     <pre>{"table":"AIS_FIXED_STATION_POSITION","firstRow":200,"rows":[{"MMSI":"211202460","AIS_STATION_NAME":"Hut 1"},...]}</pre>
+ *     The response acknowledges every row of the request with the same <code>success</code> or <code>error</code> message the
+ *     server gives for a single row:
+ *     <pre>{"acks":[{"row":200,"success":"Station inserted"},{"row":201,"error":"Duplicate entry"},...]}</pre>
+ * </p>
+ * <p>
+ *     The JSON is written and read by a small parser of its own, so the class has no dependencies and can be used in the App, on the
+ *     server and in the benchmarks.
+ * </p>
+ */
+public final class SyncBatch {
+
+    /**
+     * Name of the table field of a request
+     */
+    public static final String TABLE = "table";
+    /**
+     * Name of the first row field of a request
+     */
+    public static final String FIRST_ROW = "firstRow";
+    /**
+     * Name of the rows field of a request
+     */
+    public static final String ROWS = "rows";
+    /**
+     * Name of the acknowledgements field of a response
+     */
+    public static final String ACKS = "acks";
+    /**
+     * Name of the row field of an acknowledgement
+     */
+    public static final String ROW = "row";
+    /**
+     * Name of the message field of a successful row
+     */
+    public static final String SUCCESS = "success";
+    /**
+     * Name of the message field of a failed row
+     */
+    public static final String ERROR = "error";
+
+    /**
+     * Name of the database table the rows belong to
+     */
+    public final String table;
+    /**
+     * Index of the first row of the batch among all the rows pushed for {@link #table}
+     */
+    public final int firstRow;
+    /**
+     * Value of each column of each row
+     */
+    public final List<Map<String, String>> rows;
+
+    /**
+     * @param table name of the database table the rows belong to
+     * @param firstRow index of the first row among all the rows pushed for the table
+     * @param rows value of each column of each row
+     */
+    public SyncBatch(String table, int firstRow, List<Map<String, String>> rows){
+        this.table = table;
+        this.firstRow = firstRow;
+        this.rows = rows;
+    }
+
+    /**
+     * Splits the rows of a table into batches
+     * @param table name of the database table the rows belong to
+     * @param rows value of each column of each row
+     * @param rowsPerBatch maximum number of rows of a batch, at least 1
+     * @return the batches in the order of the rows
+     */
+    public static List<SyncBatch> split(String table, List<Map<String, String>> rows, int rowsPerBatch){
+        if (rowsPerBatch < 1) {
+            throw new IllegalArgumentException("rowsPerBatch must be at least 1");
+        }
+        List<SyncBatch> batches = new ArrayList<>();
+        for (int start = 0; start < rows.size(); start += rowsPerBatch) {
+            int end = Math.min(rows.size(), start + rowsPerBatch);
+            batches.add(new SyncBatch(table, start, rows.subList(start, end)));
+        }
+        return batches;
+    }
+
+    /**
+     * @return the request of the batch as JSON
+     */
+    public String toJson(){
+        StringBuilder json = new StringBuilder(64 + rows.size() * 256);
+        json.append('{');
+        appendString(json, TABLE);
+        json.append(':');
+        appendString(json, table);
+        json.append(',');
+        appendString(json, FIRST_ROW);
+        json.append(':').append(firstRow).append(',');
+        appendString(json, ROWS);
+        json.append(":[");
+        for (int i = 0; i < rows.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append('{');
+            boolean first = true;
+            for (Map.Entry<String, String> column : rows.get(i).entrySet()) {
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                appendString(json, column.getKey());
+                json.append(':');
+                appendString(json, column.getValue() == null ? "" : column.getValue());
+            }
+            json.append('}');
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    /**
+     * Reads a request
+     * @param json the request as JSON
+     * @return the batch of the request
+     * @throws IllegalArgumentException if the request is not valid
+     */
+    public static SyncBatch fromJson(String json){
+        Map<String, Object> request = asObject(new Parser(json).parseDocument());
+        Object table = request.get(TABLE);
+        if (!(table instanceof String)) {
+            throw new IllegalArgumentException("Missing " + TABLE);
+        }
+        int firstRow = request.containsKey(FIRST_ROW) ? asInt(request.get(FIRST_ROW)) : 0;
+        Object rowValues = request.get(ROWS);
+        if (!(rowValues instanceof List)) {
+            throw new IllegalArgumentException("Missing " + ROWS);
+        }
+        List<Map<String, String>> rows = new ArrayList<>();
+        for (Object rowValue : (List<?>) rowValues) {
+            Map<String, String> row = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> column : asObject(rowValue).entrySet()) {
+                Object value = column.getValue();
+                row.put(column.getKey(), value == null ? "" : value.toString());
+            }
+            rows.add(row);
+        }
+        return new SyncBatch((String) table, firstRow, rows);
+    }
+
+    /**
+     * Acknowledgement of one row of a batch
+     */
+    public static final class Ack {
+
+        /**
+         * Index of the row among all the rows pushed for the table
+         */
+        public final int row;
+        /**
+         * <code>true</code> if the server has stored the row
+         */
+        public final boolean success;
+        /**
+         * Message of the server
+         */
+        public final String message;
+
+        /**
+         * @param row index of the row among all the rows pushed for the table
+         * @param success <code>true</code> if the server has stored the row
+         * @param message message of the server
+         */
+        public Ack(int row, boolean success, String message){
+            this.row = row;
+            this.success = success;
+            this.message = message;
+        }
+    }
+
+    /**
+     * Writes a response
+     * @param acks acknowledgement of every row of the request
+     * @return the response as JSON
+     */
+    public static String acksToJson(List<Ack> acks){
+        StringBuilder json = new StringBuilder(16 + acks.size() * 48);
+        json.append('{');
+        appendString(json, ACKS);
+        json.append(":[");
+        for (int i = 0; i < acks.size(); i++) {
+            Ack ack = acks.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append('{');
+            appendString(json, ROW);
+            json.append(':').append(ack.row).append(',');
+            appendString(json, ack.success ? SUCCESS : ERROR);
+            json.append(':');
+            appendString(json, ack.message == null ? "" : ack.message);
+            json.append('}');
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    /**
+     * Reads a response
+     * @param json the response as JSON
+     * @return the acknowledgements of the response
+     * @throws IllegalArgumentException if the response is not valid
+     */
+    public static List<Ack> acksFromJson(String json){
+        Map<String, Object> response = asObject(new Parser(json).parseDocument());
+        Object ackValues = response.get(ACKS);
+        if (!(ackValues instanceof List)) {
+            if (response.get(ERROR) != null) {
+                throw new IllegalArgumentException(response.get(ERROR).toString());
+            }
+            throw new IllegalArgumentException("Missing " + ACKS);
+        }
+        List<Ack> acks = new ArrayList<>();
+        for (Object ackValue : (List<?>) ackValues) {
+            Map<String, Object> ack = asObject(ackValue);
+            int row = asInt(ack.get(ROW));
+            if (ack.containsKey(SUCCESS)) {
+                acks.add(new Ack(row, true, String.valueOf(ack.get(SUCCESS))));
+            } else {
+                acks.add(new Ack(row, false, String.valueOf(ack.get(ERROR))));
+            }
+        }
+        return Collections.unmodifiableList(acks);
+    }
+
+    /**
+     * Appends a JSON string
+     * @param json JSON being written
+     * @param value string to append, quoted and escaped
+     */
+    public static void appendString(StringBuilder json, String value){
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asObject(Object value){
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException("Expected a JSON object");
+        }
+        return (Map<String, Object>) value;
+    }
+
+    private static int asInt(Object value){
+        if (value == null) {
+            throw new IllegalArgumentException("Missing row index");
+        }
+        try {
+            return Integer.parseInt(value.toString());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid row index " + value);
+        }
+    }
+
+    /**
+     * Recursive descent parser of a JSON document. Objects are returned as {@link LinkedHashMap}s, arrays as {@link ArrayList}s and
+     * numbers as their text, so the column values keep their exact digits.
+     */
+    private static final class Parser {
+
+        /**
+         * Text being parsed
+         */
+        private final String text;
+        /**
+         * Position of the next character
+         */
+        private int position = 0;
+
+        Parser(String text){
+            this.text = text == null ? "" : text;
+        }
+
+        Object parseDocument(){
+            Object value = parseValue();
+            skipWhitespace();
+            if (position != text.length()) {
+                throw error("Unexpected content");
+            }
+            return value;
+        }
+
+        private Object parseValue(){
+            skipWhitespace();
+            if (position >= text.length()) {
+                throw error("Unexpected end");
+            }
+            char c = text.charAt(position);
+            switch (c) {
+                case '{':
+                    return parseObject();
+                case '[':
+                    return parseArray();
+                case '"':
+                    return parseString();
+                case 't':
+                    expect("true");
+                    return Boolean.TRUE;
+                case 'f':
+                    expect("false");
+                    return Boolean.FALSE;
+                case 'n':
+                    expect("null");
+                    return null;
+                default:
+                    return parseNumber();
+            }
+        }
+
+        private Map<String, Object> parseObject(){
+            Map<String, Object> object = new LinkedHashMap<>();
+            position++;
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                return object;
+            }
+            while (true) {
+                skipWhitespace();
+                if (peek() != '"') {
+                    throw error("Expected a name");
+                }
+                String name = parseString();
+                skipWhitespace();
+                if (peek() != ':') {
+                    throw error("Expected ':'");
+                }
+                position++;
+                object.put(name, parseValue());
+                skipWhitespace();
+                char c = peek();
+                position++;
+                if (c == '}') {
+                    return object;
+                } else if (c != ',') {
+                    throw error("Expected ',' or '}'");
+                }
+            }
+        }
+
+        private List<Object> parseArray(){
+            List<Object> array = new ArrayList<>();
+            position++;
+            skipWhitespace();
+            if (peek() == ']') {
+                position++;
+                return array;
+            }
+            while (true) {
+                array.add(parseValue());
+                skipWhitespace();
+                char c = peek();
+                position++;
+                if (c == ']') {
+                    return array;
+                } else if (c != ',') {
+                    throw error("Expected ',' or ']'");
+                }
+            }
+        }
+
+        private String parseString(){
+            position++;
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                if (position >= text.length()) {
+                    throw error("Unterminated string");
+                }
+                char c = text.charAt(position++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (position >= text.length()) {
+                    throw error("Unterminated string");
+                }
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'u':
+                        if (position + 4 > text.length()) {
+                            throw error("Invalid escape");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Invalid escape");
+                        }
+                        position += 4;
+                        break;
+                    default:
+                        value.append(escaped);
+                }
+            }
+        }
+
+        private String parseNumber(){
+            int start = position;
+            while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+                position++;
+            }
+            if (start == position) {
+                throw error("Unexpected character");
+            }
+            return text.substring(start, position);
+        }
+
+        private void expect(String literal){
+            if (!text.startsWith(literal, position)) {
+                throw error("Expected " + literal);
+            }
+            position += literal.length();
+        }
+
+        private char peek(){
+            if (position >= text.length()) {
+                throw error("Unexpected end");
+            }
+            return text.charAt(position);
+        }
+
+        private void skipWhitespace(){
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        private IllegalArgumentException error(String message){
+            return new IllegalArgumentException(message + " at position " + position);
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package de.awi.floenavigation.synchronization;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of the batches of the batched push and of the pulls, used instead of JSON and XML if both the App and the
+ * Sync Server support it, shared by the Sync Classes of the App and by the stand-in server used for testing.
+ * <p>
+ *     The body is sent with the content type {@link #MEDIA_TYPE}. It starts with four magic bytes, <code>FNB</code> and the format
+ *     version for a {@link SyncBatch}, <code>FNT</code> and the format version for a {@link SyncTable}, followed by the name of the
+ *     table, the index of the first row of a batch, or the delta flag, the server version and the deleted keys of a pull, and the
+ *     rows:
+ *     <ul>
+ *         <li>the number of columns and the name and {@link SyncTable} type of each column;</li>
+ *         <li>the number of rows and for each row a bitmap of the columns with a value, followed by the values;</li>
+ *         <li>integers as variable length numbers of 7 bits per byte, zigzag encoded so that small negative numbers stay short;</li>
+ *         <li>floating point numbers as the 8 bytes of their IEEE 754 bits, so they are neither written nor parsed as text;</li>
+ *         <li>text as a reference to the same text earlier in the body, such as the device name or the station type repeated in every
+ *         row, or as the number of bytes followed by the UTF-8 bytes the first time a text appears.</li>
+ *     </ul>
+ *     A batch keeps the text of every value, an empty value becoming a column without a value, so the Sync Server reads the same rows
+ *     as from the JSON of the batch.
+ * </p>
+ */
+public final class SyncBinaryCodec {
+
+    /**
+     * Content type of a binary body
+     */
+    public static final String MEDIA_TYPE = "application/x-floenav-binary";
+    /**
+     * Version of the format, the fourth magic byte
+     */
+    private static final byte FORMAT_VERSION = 1;
+    /**
+     * Magic bytes of a batch
+     */
+    private static final byte[] BATCH_MAGIC = {'F', 'N', 'B', FORMAT_VERSION};
+    /**
+     * Magic bytes of a table
+     */
+    private static final byte[] TABLE_MAGIC = {'F', 'N', 'T', FORMAT_VERSION};
+    /**
+     * Flag of a table holding only the changes since the version asked for
+     */
+    private static final int FLAG_DELTA = 1;
+    /**
+     * Texts of at most this many UTF-8 bytes can be referenced later in the body, longer ones such as comments are rarely repeated
+     */
+    private static final int MAX_DICTIONARY_LENGTH = 64;
+    /**
+     * Charset of the text
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private SyncBinaryCodec(){
+    }
+
+    /**
+     * @param contentType content type of a body, may be <code>null</code>
+     * @return <code>true</code> if the body is binary
+     */
+    public static boolean isBinary(String contentType){
+        return contentType != null && contentType.trim().toLowerCase(Locale.US).startsWith(MEDIA_TYPE);
+    }
+
+    /**
+     * @param batch batch of the push
+     * @return the batch as binary
+     */
+    public static byte[] encodeBatch(SyncBatch batch){
+        Writer out = new Writer(64 + batch.rows.size() * 64);
+        out.bytes(BATCH_MAGIC);
+        out.literal(batch.table);
+        out.varint(batch.firstRow);
+        writeRows(out, SyncTable.fromText(batch.table, batch.rows, true));
+        return out.toByteArray();
+    }
+
+    /**
+     * @param data the batch as binary
+     * @return the batch, every column of every row with its text or empty
+     * @throws IllegalArgumentException if the data is not a valid batch
+     */
+    public static SyncBatch decodeBatch(byte[] data){
+        Reader in = new Reader(data);
+        in.magic(BATCH_MAGIC);
+        String table = in.literal();
+        long firstRow = in.varint();
+        if (firstRow > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid first row " + firstRow);
+        }
+        SyncTable rows = readRows(in, table, false, -1, new ArrayList<String>());
+        in.end();
+        return new SyncBatch(table, (int) firstRow, rows.toText(true));
+    }
+
+    /**
+     * @param table rows of a pull
+     * @return the rows as binary
+     */
+    public static byte[] encodeTable(SyncTable table){
+        Writer out = new Writer(64 + table.rows.size() * 64);
+        out.bytes(TABLE_MAGIC);
+        out.literal(table.table);
+        out.write(table.delta ? FLAG_DELTA : 0);
+        out.zigzag(table.serverVersion);
+        writeRows(out, table);
+        out.varint(table.deletedKeys.size());
+        for (String key : table.deletedKeys) {
+            out.string(key);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @param data the rows of a pull as binary
+     * @return the rows
+     * @throws IllegalArgumentException if the data is not a valid table
+     */
+    public static SyncTable decodeTable(byte[] data){
+        Reader in = new Reader(data);
+        in.magic(TABLE_MAGIC);
+        String table = in.literal();
+        boolean delta = (in.read() & FLAG_DELTA) != 0;
+        long serverVersion = in.zigzag();
+        List<String> deletedKeys = new ArrayList<>();
+        SyncTable rows = readRows(in, table, delta, serverVersion, deletedKeys);
+        long deleted = in.count();
+        for (long i = 0; i < deleted; i++) {
+            deletedKeys.add(in.string());
+        }
+        in.end();
+        return rows;
+    }
+
+    private static void writeRows(Writer out, SyncTable table){
+        int columns = table.columns.length;
+        out.varint(columns);
+        for (int i = 0; i < columns; i++) {
+            out.literal(table.columns[i]);
+            out.write(table.types[i]);
+        }
+        out.varint(table.rows.size());
+        byte[] present = new byte[(columns + 7) / 8];
+        for (Object[] row : table.rows) {
+            Arrays.fill(present, (byte) 0);
+            for (int i = 0; i < columns; i++) {
+                if (row[i] != null) {
+                    present[i >> 3] |= 1 << (i & 7);
+                }
+            }
+            out.bytes(present);
+            for (int i = 0; i < columns; i++) {
+                Object value = row[i];
+                if (value == null) {
+                    continue;
+                }
+                switch (table.types[i]) {
+                    case SyncTable.TYPE_LONG:
+                        out.zigzag((Long) value);
+                        break;
+                    case SyncTable.TYPE_DOUBLE:
+                        out.doubleBits((Double) value);
+                        break;
+                    default:
+                        out.string((String) value);
+                }
+            }
+        }
+    }
+
+    private static SyncTable readRows(Reader in, String table, boolean delta, long serverVersion, List<String> deletedKeys){
+        int columns = (int) in.count();
+        String[] names = new String[columns];
+        byte[] types = new byte[columns];
+        for (int i = 0; i < columns; i++) {
+            names[i] = in.literal();
+            types[i] = (byte) in.read();
+            if (types[i] != SyncTable.TYPE_STRING && types[i] != SyncTable.TYPE_LONG && types[i] != SyncTable.TYPE_DOUBLE) {
+                throw new IllegalArgumentException("Unknown type " + types[i] + " of column " + names[i]);
+            }
+        }
+        int rowCount = (int) in.count();
+        List<Object[]> rows = new ArrayList<>(rowCount);
+        byte[] present = new byte[(columns + 7) / 8];
+        for (int r = 0; r < rowCount; r++) {
+            in.bytes(present);
+            Object[] row = new Object[columns];
+            for (int i = 0; i < columns; i++) {
+                if ((present[i >> 3] & (1 << (i & 7))) == 0) {
+                    continue;
+                }
+                switch (types[i]) {
+                    case SyncTable.TYPE_LONG:
+                        row[i] = in.zigzag();
+                        break;
+                    case SyncTable.TYPE_DOUBLE:
+                        row[i] = in.doubleBits();
+                        break;
+                    default:
+                        row[i] = in.string();
+                }
+            }
+            rows.add(row);
+        }
+        return new SyncTable(table, names, types, rows, delta, serverVersion, deletedKeys);
+    }
+
+    /**
+     * Growing buffer the body is written to, with the texts written so far
+     */
+    private static final class Writer {
+
+        /**
+         * Bytes written, followed by free space
+         */
+        private byte[] buffer;
+        /**
+         * Number of bytes written
+         */
+        private int size = 0;
+        /**
+         * Index of each text which can be referenced
+         */
+        private final Map<String, Integer> dictionary = new HashMap<>();
+
+        Writer(int capacity){
+            buffer = new byte[capacity];
+        }
+
+        void write(int b){
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            buffer[size++] = (byte) b;
+        }
+
+        void bytes(byte[] bytes){
+            if (size + bytes.length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + bytes.length));
+            }
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void varint(long value){
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void zigzag(long value){
+            varint((value << 1) ^ (value >> 63));
+        }
+
+        void doubleBits(double value){
+            long bits = Double.doubleToRawLongBits(value);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                write((int) (bits >>> shift));
+            }
+        }
+
+        /**
+         * Writes a text which is never referenced, such as a name
+         */
+        void literal(String value){
+            byte[] utf8 = value.getBytes(UTF_8);
+            varint(utf8.length);
+            bytes(utf8);
+        }
+
+        /**
+         * Writes a reference to the same text written before, or 0 followed by the text
+         */
+        void string(String value){
+            Integer index = dictionary.get(value);
+            if (index != null) {
+                varint(index + 1);
+                return;
+            }
+            byte[] utf8 = value.getBytes(UTF_8);
+            varint(0);
+            varint(utf8.length);
+            bytes(utf8);
+            if (utf8.length <= MAX_DICTIONARY_LENGTH) {
+                dictionary.put(value, dictionary.size());
+            }
+        }
+
+        byte[] toByteArray(){
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+
+    /**
+     * Reads the body, with the texts read so far
+     */
+    private static final class Reader {
+
+        /**
+         * The body
+         */
+        private final byte[] data;
+        /**
+         * Position of the next byte
+         */
+        private int position = 0;
+        /**
+         * Texts which can be referenced, in the order they were read
+         */
+        private final List<String> dictionary = new ArrayList<>();
+
+        Reader(byte[] data){
+            this.data = data;
+        }
+
+        int read(){
+            if (position >= data.length) {
+                throw new IllegalArgumentException("Unexpected end of the data");
+            }
+            return data[position++] & 0xFF;
+        }
+
+        void bytes(byte[] bytes){
+            if (position + bytes.length > data.length) {
+                throw new IllegalArgumentException("Unexpected end of the data");
+            }
+            System.arraycopy(data, position, bytes, 0, bytes.length);
+            position += bytes.length;
+        }
+
+        void magic(byte[] magic){
+            for (byte b : magic) {
+                if (read() != (b & 0xFF)) {
+                    throw new IllegalArgumentException("Not a binary " + (magic == BATCH_MAGIC ? "batch" : "table") + " of version "
+                            + FORMAT_VERSION);
+                }
+            }
+        }
+
+        long varint(){
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = read();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Invalid number at position " + position);
+        }
+
+        /**
+         * Reads a count, which cannot be larger than the bytes left since every element takes at least one byte
+         */
+        long count(){
+            long count = varint();
+            if (count < 0 || count > data.length - position) {
+                throw new IllegalArgumentException("Invalid count " + count + " at position " + position);
+            }
+            return count;
+        }
+
+        long zigzag(){
+            long value = varint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        double doubleBits(){
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits = (bits << 8) | read();
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        String literal(){
+            int length = (int) count();
+            String value = new String(data, position, length, UTF_8);
+            position += length;
+            return value;
+        }
+
+        String string(){
+            long reference = varint();
+            if (reference > 0) {
+                if (reference > dictionary.size()) {
+                    throw new IllegalArgumentException("Invalid text reference " + reference + " at position " + position);
+                }
+                return dictionary.get((int) reference - 1);
+            }
+            int length = (int) count();
+            String value = new String(data, position, length, UTF_8);
+            position += length;
+            if (length <= MAX_DICTIONARY_LENGTH) {
+                dictionary.add(value);
+            }
+            return value;
+        }
+
+        void end(){
+            if (position != data.length) {
+                throw new IllegalArgumentException("Unexpected data at position " + position);
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package de.awi.floenavigation.synchronization;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rows of one database table with a type for each column, as exchanged by the {@link SyncBinaryCodec}.
+ * <p>
+ *     The value of a row is a {@link Long} in a column of {@link #TYPE_LONG}, a {@link Double} in a column of {@link #TYPE_DOUBLE}
+ *     and a {@link String} in a column of {@link #TYPE_STRING}, or <code>null</code> if the row has no value for the column. A table
+ *     built from the text of the rows, as read from the XML of a pull or from the parameters of a push, only gets a number type for
+ *     a column if every value of the column is written exactly as Java writes the number, so the text of every value is kept.
+ * </p>
+ * <p>
+ *     A pull of the changes since a version carries the current version of the server, the {@link #delta} flag and the keys of the
+ *     rows deleted since, like the XML of the pull.
+ * </p>
+ */
+public final class SyncTable {
+
+    /**
+     * Type of a column of text values
+     */
+    public static final byte TYPE_STRING = 0;
+    /**
+     * Type of a column of integer values
+     */
+    public static final byte TYPE_LONG = 1;
+    /**
+     * Type of a column of floating point values
+     */
+    public static final byte TYPE_DOUBLE = 2;
+
+    /**
+     * Name of the database table
+     */
+    public final String table;
+    /**
+     * Name of each column
+     */
+    public final String[] columns;
+    /**
+     * Type of each column
+     */
+    public final byte[] types;
+    /**
+     * Value of each column of each row, <code>null</code> if the row has no value for the column
+     */
+    public final List<Object[]> rows;
+    /**
+     * <code>true</code> if the rows are only the changes since the version asked for
+     */
+    public final boolean delta;
+    /**
+     * Version of the server, -1 if it is unknown
+     */
+    public final long serverVersion;
+    /**
+     * Keys of the rows deleted since the version asked for
+     */
+    public final List<String> deletedKeys;
+
+    /**
+     * @param table name of the database table
+     * @param columns name of each column
+     * @param types type of each column
+     * @param rows value of each column of each row, matching the type of the column or <code>null</code>
+     * @param delta <code>true</code> if the rows are only the changes since the version asked for
+     * @param serverVersion version of the server, -1 if it is unknown
+     * @param deletedKeys keys of the rows deleted since the version asked for
+     */
+    public SyncTable(String table, String[] columns, byte[] types, List<Object[]> rows, boolean delta, long serverVersion,
+                     List<String> deletedKeys){
+        if (columns.length != types.length) {
+            throw new IllegalArgumentException("Each column needs a type");
+        }
+        this.table = table;
+        this.columns = columns;
+        this.types = types;
+        this.rows = rows;
+        this.delta = delta;
+        this.serverVersion = serverVersion;
+        this.deletedKeys = deletedKeys;
+    }
+
+    /**
+     * Builds a table from the text of the rows, with the columns in the order they first appear
+     * @param table name of the database table
+     * @param textRows value of each column of each row as text, a missing column has no value
+     * @param emptyIsNull <code>true</code> if an empty value means that the row has no value, as in the parameters of a push
+     * @return the table with the type of each column, without a version
+     */
+    public static SyncTable fromText(String table, List<Map<String, String>> textRows, boolean emptyIsNull){
+        return fromText(table, textRows, emptyIsNull, false, -1, Collections.<String>emptyList());
+    }
+
+    /**
+     * Builds a table from the text of the rows, with the columns in the order they first appear
+     * @param table name of the database table
+     * @param textRows value of each column of each row as text, a missing column has no value
+     * @param emptyIsNull <code>true</code> if an empty value means that the row has no value, as in the parameters of a push
+     * @param delta <code>true</code> if the rows are only the changes since the version asked for
+     * @param serverVersion version of the server, -1 if it is unknown
+     * @param deletedKeys keys of the rows deleted since the version asked for
+     * @return the table with the type of each column
+     */
+    public static SyncTable fromText(String table, List<Map<String, String>> textRows, boolean emptyIsNull, boolean delta,
+                                     long serverVersion, List<String> deletedKeys){
+        Map<String, Integer> columnIndex = new LinkedHashMap<>();
+        for (Map<String, String> row : textRows) {
+            for (String column : row.keySet()) {
+                if (!columnIndex.containsKey(column)) {
+                    columnIndex.put(column, columnIndex.size());
+                }
+            }
+        }
+        String[] columns = columnIndex.keySet().toArray(new String[columnIndex.size()]);
+        boolean[] allLong = new boolean[columns.length];
+        boolean[] allDouble = new boolean[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            allLong[i] = true;
+            allDouble[i] = true;
+        }
+        List<String[]> values = new ArrayList<>(textRows.size());
+        for (Map<String, String> row : textRows) {
+            String[] rowValues = new String[columns.length];
+            for (Map.Entry<String, String> column : row.entrySet()) {
+                String value = column.getValue();
+                if (value == null || (emptyIsNull && value.isEmpty())) {
+                    continue;
+                }
+                int index = columnIndex.get(column.getKey());
+                rowValues[index] = value;
+                allLong[index] &= isCanonicalLong(value);
+                allDouble[index] &= isCanonicalDouble(value);
+            }
+            values.add(rowValues);
+        }
+        byte[] types = new byte[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            types[i] = allLong[i] ? TYPE_LONG : allDouble[i] ? TYPE_DOUBLE : TYPE_STRING;
+        }
+        List<Object[]> rows = new ArrayList<>(values.size());
+        for (String[] rowValues : values) {
+            Object[] row = new Object[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                String value = rowValues[i];
+                if (value == null) {
+                    continue;
+                }
+                switch (types[i]) {
+                    case TYPE_LONG:
+                        row[i] = Long.parseLong(value);
+                        break;
+                    case TYPE_DOUBLE:
+                        row[i] = Double.parseDouble(value);
+                        break;
+                    default:
+                        row[i] = value;
+                }
+            }
+            rows.add(row);
+        }
+        return new SyncTable(table, columns, types, rows, delta, serverVersion, deletedKeys);
+    }
+
+    /**
+     * @param emptyIsNull <code>true</code> to give the columns without a value an empty value, as in the parameters of a push,
+     *                    <code>false</code> to leave them out
+     * @return the value of each column of each row as text, written as Java writes the numbers
+     */
+    public List<Map<String, String>> toText(boolean emptyIsNull){
+        List<Map<String, String>> textRows = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            Map<String, String> textRow = new LinkedHashMap<>();
+            for (int i = 0; i < columns.length; i++) {
+                if (row[i] != null) {
+                    textRow.put(columns[i], row[i].toString());
+                } else if (emptyIsNull) {
+                    textRow.put(columns[i], "");
+                }
+            }
+            textRows.add(textRow);
+        }
+        return textRows;
+    }
+
+    /**
+     * @return <code>true</code> if the text is an integer written without a plus sign, leading zeros or spaces
+     */
+    private static boolean isCanonicalLong(String value){
+        int length = value.length();
+        int start = length > 0 && value.charAt(0) == '-' ? 1 : 0;
+        if (length == start || length - start > 18) {
+            return false;
+        }
+        for (int i = start; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return (value.charAt(start) != '0' || length - start == 1) && !"-0".equals(value);
+    }
+
+    /**
+     * @return <code>true</code> if the text is a floating point number written as {@link Double#toString(double)} writes it
+     */
+    private static boolean isCanonicalDouble(String value){
+        boolean point = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '.') {
+                point = true;
+            } else if ((c < '0' || c > '9') && c != '-' && c != 'E') {
+                return false;
+            }
+        }
+        if (!point) {
+            return false;
+        }
+        try {
+            return Double.toString(Double.parseDouble(value)).equals(value);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
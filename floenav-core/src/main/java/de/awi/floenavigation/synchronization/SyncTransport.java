@@ -0,0 +1,147 @@
+package de.awi.floenavigation.synchronization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * HTTP details of the transport between the Sync Classes of the App and the Sync Server, shared with the stand-in server used for
+ * testing.
+ * <p>
+ *     Bodies are compressed with gzip: the App asks for compressed pull responses with {@link #ACCEPT_ENCODING} and compresses the
+ *     body of a batched push if it is larger than {@link #MIN_COMPRESSED_SIZE}, marking it with {@link #CONTENT_ENCODING}. The
+ *     XML of the pulls repeats the long column names for every value and shrinks to a fraction of its size.
+ * </p>
+ * <p>
+ *     Pulls are conditional: the server sends an {@link #ETAG} with every pull response, which the App sends back with
+ *     {@link #IF_NONE_MATCH} on the next pull of the table. If the table has not changed on the server it answers with
+ *     {@link #NOT_MODIFIED} and no body.
+ * </p>
+ * <p>
+ *     Batches of the batched push are sent with an {@link #IDEMPOTENCY_KEY} which stays the same when a batch is sent again after a
+ *     failed attempt. The server answers a key it has seen with the acknowledgements of the first attempt instead of storing the
+ *     rows again.
+ * </p>
+ * <p>
+ *     Bodies may be sent in the binary encoding of the {@link SyncBinaryCodec} instead: the App asks for binary pull responses with
+ *     {@link #ACCEPT} and marks a binary batch with {@link #CONTENT_TYPE}. A server which does not support it answers with XML and a
+ *     Sync Server which does not support it rejects the batch, so the encoding is switched on by a Configuration Parameter.
+ * </p>
+ */
+public final class SyncTransport {
+
+    /**
+     * Header of the encodings of the response accepted by the client
+     */
+    public static final String ACCEPT_ENCODING = "Accept-Encoding";
+    /**
+     * Header of the encoding of a body
+     */
+    public static final String CONTENT_ENCODING = "Content-Encoding";
+    /**
+     * Value of {@link #ACCEPT_ENCODING} and {@link #CONTENT_ENCODING} for gzip compressed bodies
+     */
+    public static final String GZIP = "gzip";
+    /**
+     * Header of the entity tag of a pull response
+     */
+    public static final String ETAG = "ETag";
+    /**
+     * Header of the entity tag of the last pull response the client has
+     */
+    public static final String IF_NONE_MATCH = "If-None-Match";
+    /**
+     * HTTP status of a pull whose table has not changed since the entity tag sent
+     */
+    public static final int NOT_MODIFIED = 304;
+    /**
+     * Header of the key which identifies a batch of the batched push across its attempts
+     */
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    /**
+     * Header of the content types of the response accepted by the client
+     */
+    public static final String ACCEPT = "Accept";
+    /**
+     * Header of the content type of a body
+     */
+    public static final String CONTENT_TYPE = "Content-Type";
+    /**
+     * Bodies of at most this many bytes are sent uncompressed, since gzip would not make them smaller
+     */
+    public static final int MIN_COMPRESSED_SIZE = 1024;
+
+    private SyncTransport(){
+    }
+
+    /**
+     * @param data uncompressed bytes
+     * @return the bytes compressed with gzip
+     */
+    public static byte[] gzip(byte[] data){
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 4 + 64);
+        try {
+            GZIPOutputStream output = new GZIPOutputStream(compressed);
+            output.write(data);
+            output.close();
+        } catch (IOException e) {
+            //Not thrown by a ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * @param data bytes compressed with gzip
+     * @return the uncompressed bytes
+     * @throws IOException if the data is not valid gzip
+     */
+    public static byte[] gunzip(byte[] data) throws IOException {
+        InputStream input = new GZIPInputStream(new ByteArrayInputStream(data));
+        ByteArrayOutputStream uncompressed = new ByteArrayOutputStream(data.length * 4);
+        byte[] buffer = new byte[8192];
+        int read;
+        try {
+            while ((read = input.read(buffer)) != -1) {
+                uncompressed.write(buffer, 0, read);
+            }
+        } finally {
+            input.close();
+        }
+        return uncompressed.toByteArray();
+    }
+
+    /**
+     * @param headers headers of a request or a response
+     * @return <code>true</code> if the headers mark the body as compressed with gzip
+     */
+    public static boolean isGzip(Map<String, String> headers){
+        String encoding = header(headers, CONTENT_ENCODING);
+        return encoding != null && encoding.trim().equalsIgnoreCase(GZIP);
+    }
+
+    /**
+     * @param headers headers of a request or a response
+     * @param name name of the header, compared ignoring the case as in HTTP
+     * @return the value of the header, <code>null</code> if it is missing
+     */
+    public static String header(Map<String, String> headers, String name){
+        if (headers == null) {
+            return null;
+        }
+        String value = headers.get(name);
+        if (value != null) {
+            return value;
+        }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey())) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,110 @@
+package de.awi.floenavigation.synchronization.server;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import de.awi.floenavigation.synchronization.SyncTable;
+
+/**
+ * Reads the XML of a pull into a {@link SyncTable}, so the stand-in server can answer a pull in the binary encoding and the
+ * benchmarks can compare both.
+ * <p>
+ *     The XML is read as the <code>ShadowTablePull</code> of the App reads it: every element below the root with elements of its own
+ *     is a row, named after the table, and the elements of a row are its values. The elements {@value #VERSION_ELEMENT} and
+ *     {@value #DELETED_ELEMENT} outside the rows hold the version of the server and the keys of the deleted rows of a delta.
+ * </p>
+ */
+public final class PullXml {
+
+    /**
+     * XML element with the current version of the Sync Server
+     */
+    private static final String VERSION_ELEMENT = "SERVER_VERSION";
+    /**
+     * Attribute of the {@link #VERSION_ELEMENT} which is <code>true</code> if only the changes since the version sent are pulled
+     */
+    private static final String DELTA_ATTRIBUTE = "delta";
+    /**
+     * XML element with the key of a row deleted on the Sync Server
+     */
+    private static final String DELETED_ELEMENT = "DELETED";
+
+    /**
+     * Factory of the readers, thread safe once configured
+     */
+    private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    private PullXml(){
+    }
+
+    /**
+     * @param xml the XML of a pull
+     * @return the rows, with a number type for the columns whose values are all written as Java writes the numbers
+     * @throws XMLStreamException if the XML cannot be read
+     */
+    public static SyncTable read(byte[] xml) throws XMLStreamException {
+        XMLStreamReader reader = FACTORY.createXMLStreamReader(new ByteArrayInputStream(xml));
+        try {
+            String table = "";
+            boolean delta = false;
+            long serverVersion = -1;
+            List<String> deletedKeys = new ArrayList<>();
+            List<Map<String, String>> rows = new ArrayList<>();
+            Map<String, String> row = null;
+            String element = null;
+            StringBuilder value = new StringBuilder();
+            int depth = 0;
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        depth++;
+                        if (depth == 3 && row == null) {
+                            row = new LinkedHashMap<>();
+                            table = element;
+                        } else if (depth == 2 && VERSION_ELEMENT.equals(reader.getLocalName())) {
+                            delta = Boolean.parseBoolean(reader.getAttributeValue(null, DELTA_ATTRIBUTE));
+                        }
+                        element = reader.getLocalName();
+                        value.setLength(0);
+                        break;
+
+                    case XMLStreamConstants.CHARACTERS:
+                        value.append(reader.getText());
+                        break;
+
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (depth == 3) {
+                            row.put(reader.getLocalName(), value.toString());
+                        } else if (depth == 2 && row != null) {
+                            rows.add(row);
+                            row = null;
+                        } else if (depth == 2 && VERSION_ELEMENT.equals(reader.getLocalName())) {
+                            serverVersion = Long.parseLong(value.toString().trim());
+                        } else if (depth == 2 && DELETED_ELEMENT.equals(reader.getLocalName())) {
+                            deletedKeys.add(value.toString());
+                        }
+                        depth--;
+                        break;
+                }
+            }
+            return SyncTable.fromText(table, rows, false, delta, serverVersion, deletedKeys);
+        } catch (NumberFormatException e) {
+            throw new XMLStreamException("Invalid " + VERSION_ELEMENT, e);
+        } finally {
+            reader.close();
+        }
+    }
+}
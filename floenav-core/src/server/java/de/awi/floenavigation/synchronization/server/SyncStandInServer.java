@@ -0,0 +1,623 @@
+package de.awi.floenavigation.synchronization.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+
+import javax.xml.stream.XMLStreamException;
+
+import de.awi.floenavigation.synchronization.SyncBatch;
+import de.awi.floenavigation.synchronization.SyncBinaryCodec;
+import de.awi.floenavigation.synchronization.SyncTransport;
+
+/**
+ * Stand-in for the Sync Server, used to test the push of the App without the server of the ship.
+ * <p>
+ *     Every POST to a path ending with <code>Batch.php</code> is read as a {@link SyncBatch} and every row is acknowledged. Every other
+ *     POST is read as the form parameters of a single row and answered with <code>{"success":...}</code> like the PHP scripts of the
+ *     server. The rows are only kept in memory, grouped by table for the batches and by path for the single rows.
+ *     <code>GET /status</code> lists the number of rows and requests received per table and the pulls served.
+ * </p>
+ * <p>
+ *     Every other GET is a pull, answered with the file of the same path below the pull directory, for example
+ *     <code>FixedStation/pushStations.php</code> with the XML of the Fixed Stations. The pulls follow {@link SyncTransport}: the
+ *     response carries an entity tag computed from the file, a pull sending the same tag is answered with 304 and the body is
+ *     compressed with gzip if the client accepts it. Bodies of the batched push compressed with gzip are decompressed. Editing a
+ *     file simulates a change of the table on the server.
+ * </p>
+ * <p>
+ *     A batch sent with a {@link SyncTransport#IDEMPOTENCY_KEY} which has been seen before is answered with the acknowledgements of
+ *     its first attempt and its rows are not stored again, as the App sends the batches of its outbox again after a failed attempt.
+ * </p>
+ * <p>
+ *     A batch sent as {@link SyncBinaryCodec#MEDIA_TYPE} is decoded with the {@link SyncBinaryCodec} and stores the same rows as its
+ *     JSON. A pull accepting {@link SyncBinaryCodec#MEDIA_TYPE} is answered with the XML of the file read by {@link PullXml} and
+ *     encoded as binary, with an entity tag of its own.
+ * </p>
+ * <p>
+ *     Run with <code>./gradlew :floenav-core:runSyncServer -Pport=8080 -PrejectEvery=0 -PpullDir=pulls -PloseAckEvery=0</code> and
+ *     set the Configuration Parameters <code>SYNC_SERVER_HOSTNAME</code> and <code>SYNC_SERVER_PORT</code> of the tablet to the
+ *     address of the computer. With <code>rejectEvery</code> set to <i>n</i>, every <i>n</i>th row is acknowledged with an error to
+ *     test the error handling of the App. With <code>loseAckEvery</code> set to <i>n</i>, the rows of every <i>n</i>th batch are
+ *     stored but the batch is answered with 503, as if the acknowledgement was lost, to test the retries of the App.
+ * </p>
+ * <p>
+ *     A slow link to the ship can be simulated with {@link #setLink(long, long)}, or with <code>-PlatencyMs</code> and
+ *     <code>-PbytesPerSecond</code>: every response is held back by the latency plus the time the bodies of the request and the
+ *     response take at the bandwidth, as if every request had the link to itself.
+ * </p>
+ */
+public class SyncStandInServer {
+
+    /**
+     * Suffix of the paths of the batched push
+     */
+    private static final String BATCH_SUFFIX = "Batch.php";
+    /**
+     * Port used if none is given
+     */
+    private static final int DEFAULT_PORT = 8080;
+    /**
+     * Number of idempotency keys remembered, the oldest are forgotten first
+     */
+    private static final int REMEMBERED_KEYS = 10000;
+
+    /**
+     * Rows received per table
+     */
+    private final Map<String, List<Map<String, String>>> tables = new TreeMap<>();
+    /**
+     * Requests received per table
+     */
+    private final Map<String, Integer> requestCounts = new TreeMap<>();
+    /**
+     * Every <i>n</i>th row is rejected, 0 accepts every row
+     */
+    private final int rejectEvery;
+    /**
+     * Number of rows received in total, used by {@link #rejectEvery}
+     */
+    private long receivedRows = 0;
+    /**
+     * Directory of the files served by the pulls, <code>null</code> if no pulls are served
+     */
+    private final File pullDir;
+    /**
+     * The rows of every <i>n</i>th batch are stored and answered with 503, 0 answers every batch
+     */
+    private final int loseAckEvery;
+    /**
+     * Number of batches received, used by {@link #loseAckEvery}
+     */
+    private long receivedBatches = 0;
+    /**
+     * Acknowledgements of the batches by their idempotency key
+     */
+    private final Map<String, String> acknowledgedKeys = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > REMEMBERED_KEYS;
+        }
+    };
+    /**
+     * Batches answered with the acknowledgements of an earlier attempt
+     */
+    private long replayedBatches = 0;
+    /**
+     * Batches received in the binary encoding, including the replayed ones
+     */
+    private long binaryBatches = 0;
+    /**
+     * Pulls answered with a body in the binary encoding
+     */
+    private long binaryPulls = 0;
+    /**
+     * Pulls answered with a body
+     */
+    private long pulls = 0;
+    /**
+     * Pulls answered with 304 because the file has not changed
+     */
+    private long notModifiedPulls = 0;
+    /**
+     * Bytes of the bodies of the pulls sent, after compression
+     */
+    private long pulledBytes = 0;
+    /**
+     * Bytes of the bodies of the pulls before compression
+     */
+    private long uncompressedPulledBytes = 0;
+    /**
+     * Size of the body of the request being answered by the thread, as received. The attributes of an exchange are shared by all
+     * exchanges of its context, so they cannot hold it.
+     */
+    private final ThreadLocal<Long> requestBytes = new ThreadLocal<Long>() {
+        @Override
+        protected Long initialValue() {
+            return 0L;
+        }
+    };
+    /**
+     * Requests answered, including the pulls not modified and the status
+     */
+    private long answeredRequests = 0;
+    /**
+     * Bytes of the bodies of the requests as received, before decompression
+     */
+    private long receivedBytes = 0;
+    /**
+     * Bytes of the bodies of all responses as sent, after compression
+     */
+    private long sentBytes = 0;
+    /**
+     * Requests answered and bytes of their bodies per path, counted like {@link #answeredRequests}, {@link #receivedBytes} and
+     * {@link #sentBytes}
+     */
+    private final Map<String, long[]> pathTraffic = new TreeMap<>();
+    /**
+     * Time in msecs by which every response is held back
+     */
+    private volatile long latencyMillis = 0;
+    /**
+     * Bandwidth in bytes per second at which the bodies are transferred, 0 for no limit
+     */
+    private volatile long bytesPerSecond = 0;
+    /**
+     * <code>false</code> if the requests are not printed
+     */
+    private volatile boolean verbose = true;
+
+    /**
+     * @param rejectEvery every <i>n</i>th row is rejected, 0 accepts every row
+     */
+    public SyncStandInServer(int rejectEvery){
+        this(rejectEvery, null);
+    }
+
+    /**
+     * @param rejectEvery every <i>n</i>th row is rejected, 0 accepts every row
+     * @param pullDir directory of the files served by the pulls, <code>null</code> to serve no pulls
+     */
+    public SyncStandInServer(int rejectEvery, File pullDir){
+        this(rejectEvery, pullDir, 0);
+    }
+
+    /**
+     * @param rejectEvery every <i>n</i>th row is rejected, 0 accepts every row
+     * @param pullDir directory of the files served by the pulls, <code>null</code> to serve no pulls
+     * @param loseAckEvery the rows of every <i>n</i>th batch are stored and answered with 503, 0 answers every batch
+     */
+    public SyncStandInServer(int rejectEvery, File pullDir, int loseAckEvery){
+        this.rejectEvery = rejectEvery;
+        this.pullDir = pullDir;
+        this.loseAckEvery = loseAckEvery;
+    }
+
+    /**
+     * Starts the server and keeps it running until the process is stopped
+     * @param args the port and optionally the value of <code>rejectEvery</code>, the pull directory, the value of
+     *             <code>loseAckEvery</code>, the latency in msecs and the bandwidth in bytes per second
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int rejectEvery = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        File pullDir = args.length > 2 && !args[2].isEmpty() ? new File(args[2]) : null;
+        int loseAckEvery = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        SyncStandInServer standIn = new SyncStandInServer(rejectEvery, pullDir, loseAckEvery);
+        standIn.setLink(args.length > 4 ? Long.parseLong(args[4]) : 0, args.length > 5 ? Long.parseLong(args[5]) : 0);
+        HttpServer server = standIn.start(port);
+        System.out.println("Sync stand-in server listening on port " + server.getAddress().getPort());
+    }
+
+    /**
+     * Simulates the link between the tablet and the server
+     * @param latencyMillis time in msecs by which every response is held back
+     * @param bytesPerSecond bandwidth at which the bodies of the requests and responses are transferred, 0 for no limit
+     */
+    public void setLink(long latencyMillis, long bytesPerSecond){
+        this.latencyMillis = latencyMillis;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * @param verbose <code>false</code> to stop printing every request, as for the benchmarks
+     */
+    public void setVerbose(boolean verbose){
+        this.verbose = verbose;
+    }
+
+    /**
+     * Drops the rows received and the idempotency keys remembered, as between the runs of a benchmark. The counters are kept.
+     */
+    public synchronized void clearRows(){
+        tables.clear();
+        acknowledgedKeys.clear();
+    }
+
+    /**
+     * Starts the server
+     * @param port port to listen on, 0 picks a free port
+     * @return the running server, stopped with {@link HttpServer#stop(int)}
+     */
+    public HttpServer start(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    requestBytes.set(0L);
+                    handleRequest(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        //Daemon threads, so a process running the server in the background ends when its own work is done
+        server.setExecutor(Executors.newFixedThreadPool(4, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "SyncStandInServer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }));
+        server.start();
+        return server;
+    }
+
+    /**
+     * @param table name of the table or path of the single row push
+     * @return a copy of the rows received for the table
+     */
+    public synchronized List<Map<String, String>> getRows(String table){
+        List<Map<String, String>> rows = tables.get(table);
+        return rows == null ? new ArrayList<Map<String, String>>() : new ArrayList<>(rows);
+    }
+
+    /**
+     * @return the requests answered and the bytes of their bodies so far, the difference of two calls is the traffic in between
+     */
+    public synchronized Traffic getTraffic(){
+        return new Traffic(answeredRequests, receivedBytes, sentBytes);
+    }
+
+    /**
+     * @param pathPrefix start of the paths of the requests, for example <code>/Waypoint/</code> for the push and the pull of the
+     *                   Waypoints, which tells the traffic of the tables apart while they are synchronized at the same time
+     * @return the requests answered on the paths starting with the prefix and the bytes of their bodies so far
+     */
+    public synchronized Traffic getTraffic(String pathPrefix){
+        long requests = 0;
+        long received = 0;
+        long sent = 0;
+        for (Map.Entry<String, long[]> traffic : pathTraffic.entrySet()) {
+            if (traffic.getKey().startsWith(pathPrefix)) {
+                requests += traffic.getValue()[0];
+                received += traffic.getValue()[1];
+                sent += traffic.getValue()[2];
+            }
+        }
+        return new Traffic(requests, received, sent);
+    }
+
+    private void handleRequest(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String method = exchange.getRequestMethod();
+        if ("GET".equals(method) && "/status".equals(path)) {
+            send(exchange, 200, "text/plain; charset=utf-8", status());
+        } else if ("GET".equals(method)) {
+            pull(exchange, path);
+        } else if (!"POST".equals(method)) {
+            send(exchange, 404, "text/plain; charset=utf-8", "Not found");
+        } else if (path.endsWith(BATCH_SUFFIX)) {
+            byte[] body = readBody(exchange);
+            boolean binary = SyncBinaryCodec.isBinary(exchange.getRequestHeaders().getFirst(SyncTransport.CONTENT_TYPE));
+            SyncBatch batch;
+            try {
+                batch = binary ? SyncBinaryCodec.decodeBatch(body) : SyncBatch.fromJson(new String(body, "UTF-8"));
+            } catch (IllegalArgumentException e) {
+                send(exchange, 400, "application/json; charset=utf-8", errorJson(e.getMessage()));
+                return;
+            }
+            String key = exchange.getRequestHeaders().getFirst(SyncTransport.IDEMPOTENCY_KEY);
+            String acks;
+            boolean loseAck;
+            synchronized (this) {
+                if (binary) {
+                    binaryBatches++;
+                }
+                acks = key == null ? null : acknowledgedKeys.get(key);
+                if (acks != null) {
+                    replayedBatches++;
+                    loseAck = false;
+                } else {
+                    acks = SyncBatch.acksToJson(store(batch));
+                    if (key != null) {
+                        acknowledgedKeys.put(key, acks);
+                    }
+                    receivedBatches++;
+                    loseAck = loseAckEvery > 0 && receivedBatches % loseAckEvery == 0;
+                }
+            }
+            if (loseAck) {
+                send(exchange, 503, "text/plain; charset=utf-8", "Acknowledgement lost");
+                log(path + ": " + batch.rows.size() + " rows of " + batch.table + " stored, acknowledgement lost");
+                return;
+            }
+            send(exchange, 200, "application/json; charset=utf-8", acks);
+            log(path + ": " + batch.rows.size() + " rows of " + batch.table + " from row " + batch.firstRow);
+        } else {
+            Map<String, String> row = parseForm(new String(readBody(exchange), "UTF-8"));
+            List<SyncBatch.Ack> acks = store(new SyncBatch(path, 0, singletonList(row)));
+            SyncBatch.Ack ack = acks.get(0);
+            StringBuilder json = new StringBuilder("{");
+            SyncBatch.appendString(json, ack.success ? SyncBatch.SUCCESS : SyncBatch.ERROR);
+            json.append(':');
+            SyncBatch.appendString(json, ack.message);
+            json.append('}');
+            send(exchange, 200, "application/json; charset=utf-8", json.toString());
+        }
+    }
+
+    /**
+     * Answers a pull with the file of the path, or with 304 if the client has the same entity tag. The file is encoded as binary if
+     * the client accepts it and the file can be read as the XML of a pull.
+     */
+    private void pull(HttpExchange exchange, String path) throws IOException {
+        File file = pullDir == null ? null : new File(pullDir, path);
+        if (file == null || !file.isFile() || !file.getCanonicalPath().startsWith(pullDir.getCanonicalPath())) {
+            send(exchange, 404, "text/plain; charset=utf-8", "Not found");
+            return;
+        }
+        byte[] body = readFile(file);
+        String contentType = "text/xml; charset=utf-8";
+        String accept = exchange.getRequestHeaders().getFirst(SyncTransport.ACCEPT);
+        if (accept != null && accept.contains(SyncBinaryCodec.MEDIA_TYPE)) {
+            try {
+                body = SyncBinaryCodec.encodeTable(PullXml.read(body));
+                contentType = SyncBinaryCodec.MEDIA_TYPE;
+            } catch (XMLStreamException e) {
+                log(path + ": not encoded as binary, " + e.getMessage());
+            }
+        }
+        boolean binary = SyncBinaryCodec.MEDIA_TYPE.equals(contentType);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        String etag = "\"" + Long.toHexString(crc.getValue()) + "-" + body.length + (binary ? "-b" : "") + "\"";
+        exchange.getResponseHeaders().set(SyncTransport.ETAG, etag);
+        if (etag.equals(exchange.getRequestHeaders().getFirst(SyncTransport.IF_NONE_MATCH))) {
+            synchronized (this) {
+                notModifiedPulls++;
+            }
+            holdBack(0);
+            answered(path, 0);
+            exchange.sendResponseHeaders(SyncTransport.NOT_MODIFIED, -1);
+            log(path + ": not modified");
+            return;
+        }
+        String accepted = exchange.getRequestHeaders().getFirst(SyncTransport.ACCEPT_ENCODING);
+        byte[] sent = body;
+        if (accepted != null && accepted.contains(SyncTransport.GZIP)) {
+            sent = SyncTransport.gzip(body);
+            exchange.getResponseHeaders().set(SyncTransport.CONTENT_ENCODING, SyncTransport.GZIP);
+        }
+        synchronized (this) {
+            pulls++;
+            if (binary) {
+                binaryPulls++;
+            }
+            pulledBytes += sent.length;
+            uncompressedPulledBytes += body.length;
+        }
+        send(exchange, 200, contentType, sent);
+        log(path + ": " + body.length + (binary ? " binary" : "") + " bytes sent as " + sent.length);
+    }
+
+    /**
+     * Stores the rows of a batch
+     * @return the acknowledgement of every row
+     */
+    private synchronized List<SyncBatch.Ack> store(SyncBatch batch){
+        List<Map<String, String>> rows = tables.get(batch.table);
+        if (rows == null) {
+            rows = new ArrayList<>();
+            tables.put(batch.table, rows);
+        }
+        Integer requests = requestCounts.get(batch.table);
+        requestCounts.put(batch.table, requests == null ? 1 : requests + 1);
+        List<SyncBatch.Ack> acks = new ArrayList<>(batch.rows.size());
+        for (int i = 0; i < batch.rows.size(); i++) {
+            Map<String, String> row = batch.rows.get(i);
+            receivedRows++;
+            if (row.isEmpty()) {
+                acks.add(new SyncBatch.Ack(batch.firstRow + i, false, "Empty row"));
+            } else if (rejectEvery > 0 && receivedRows % rejectEvery == 0) {
+                acks.add(new SyncBatch.Ack(batch.firstRow + i, false, "Rejected by the stand-in server"));
+            } else {
+                rows.add(row);
+                acks.add(new SyncBatch.Ack(batch.firstRow + i, true, "Row inserted"));
+            }
+        }
+        return acks;
+    }
+
+    private synchronized String status(){
+        StringBuilder status = new StringBuilder();
+        for (Map.Entry<String, List<Map<String, String>>> table : tables.entrySet()) {
+            status.append(table.getKey()).append(": ").append(table.getValue().size()).append(" rows in ")
+                    .append(requestCounts.get(table.getKey())).append(" requests\n");
+        }
+        status.append("pulls: ").append(pulls).append(" with ").append(uncompressedPulledBytes).append(" bytes sent as ")
+                .append(pulledBytes).append(", ").append(notModifiedPulls).append(" not modified, ").append(binaryPulls)
+                .append(" binary\n");
+        status.append("batches: ").append(receivedBatches).append(" stored, ").append(replayedBatches).append(" replayed, ")
+                .append(binaryBatches).append(" binary\n");
+        return status.toString();
+    }
+
+    /**
+     * Holds the response back by the time the link set with {@link #setLink(long, long)} takes for the request and the response
+     * @param responseBytes size of the body of the response
+     */
+    private void holdBack(long responseBytes){
+        long bytes = responseBytes + requestBytes.get();
+        long millis = latencyMillis + (bytesPerSecond > 0 ? bytes * 1000 / bytesPerSecond : 0);
+        if (millis > 0) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Counts a request answered with a body of the given size in the {@link #getTraffic()} and in the traffic of its path
+     */
+    private synchronized void answered(String path, long responseBytes){
+        answeredRequests++;
+        receivedBytes += requestBytes.get();
+        sentBytes += responseBytes;
+        long[] traffic = pathTraffic.get(path);
+        if (traffic == null) {
+            traffic = new long[3];
+            pathTraffic.put(path, traffic);
+        }
+        traffic[0]++;
+        traffic[1] += requestBytes.get();
+        traffic[2] += responseBytes;
+    }
+
+    private void log(String message){
+        if (verbose) {
+            System.out.println(message);
+        }
+    }
+
+    private static String errorJson(String message){
+        StringBuilder json = new StringBuilder("{");
+        SyncBatch.appendString(json, SyncBatch.ERROR);
+        json.append(':');
+        SyncBatch.appendString(json, message);
+        json.append('}');
+        return json.toString();
+    }
+
+    private static List<Map<String, String>> singletonList(Map<String, String> row){
+        List<Map<String, String>> rows = new ArrayList<>(1);
+        rows.add(row);
+        return rows;
+    }
+
+    private static Map<String, String> parseForm(String body) throws UnsupportedEncodingException {
+        Map<String, String> row = new LinkedHashMap<>();
+        for (String pair : body.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int separator = pair.indexOf('=');
+            String name = separator < 0 ? pair : pair.substring(0, separator);
+            String value = separator < 0 ? "" : pair.substring(separator + 1);
+            row.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+        return row;
+    }
+
+    private byte[] readBody(HttpExchange exchange) throws IOException {
+        byte[] body = readAll(exchange.getRequestBody());
+        requestBytes.set((long) body.length);
+        if (SyncTransport.GZIP.equalsIgnoreCase(exchange.getRequestHeaders().getFirst(SyncTransport.CONTENT_ENCODING))) {
+            body = SyncTransport.gunzip(body);
+        }
+        return body;
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        InputStream input = new FileInputStream(file);
+        try {
+            return readAll(input);
+        } finally {
+            input.close();
+        }
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
+    }
+
+    private void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        send(exchange, status, contentType, body.getBytes("UTF-8"));
+    }
+
+    private void send(HttpExchange exchange, int status, String contentType, byte[] bytes) throws IOException {
+        holdBack(bytes.length);
+        answered(exchange.getRequestURI().getPath(), bytes.length);
+        exchange.getResponseHeaders().set(SyncTransport.CONTENT_TYPE, contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream output = exchange.getResponseBody();
+        output.write(bytes);
+        output.close();
+    }
+
+    /**
+     * Requests answered by the stand-in server and the bytes of their bodies, as read by a benchmark
+     */
+    public static final class Traffic {
+
+        /**
+         * Number of requests answered
+         */
+        public final long requests;
+        /**
+         * Bytes of the bodies of the requests as received
+         */
+        public final long receivedBytes;
+        /**
+         * Bytes of the bodies of the responses as sent
+         */
+        public final long sentBytes;
+
+        Traffic(long requests, long receivedBytes, long sentBytes){
+            this.requests = requests;
+            this.receivedBytes = receivedBytes;
+            this.sentBytes = sentBytes;
+        }
+
+        /**
+         * @param before traffic read earlier from the same server
+         * @return the traffic since <code>before</code>
+         */
+        public Traffic since(Traffic before){
+            return new Traffic(requests - before.requests, receivedBytes - before.receivedBytes, sentBytes - before.sentBytes);
+        }
+
+        @Override
+        public String toString() {
+            return requests + " requests, " + receivedBytes + " bytes received, " + sentBytes + " bytes sent";
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package de.awi.floenavigation.network;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs chained {@link GossipPeer}s on the loopback interface, each sending by unicast only to its neighbours, and checks that the
+ * entries published on any of them reach all of them through the digests, including a peer which joins late.
+ */
+public class GossipPeerTest {
+
+    /**
+     * Number of peers in the chain, including the late one
+     */
+    private static final int PEERS = 4;
+    /**
+     * Number of digests within which the peers have to converge
+     */
+    private static final int DIGESTS = 5;
+    /**
+     * Fixed stations whose positions are published, so most entries replace older ones
+     */
+    private static final int STATIONS = 20;
+
+    private final List<GossipPeer> peers = new ArrayList<>();
+    /**
+     * Origin and version of the entries received by each peer
+     */
+    private final List<Set<String>> received = new ArrayList<>();
+    /**
+     * Entries given to the listeners more than once
+     */
+    private final AtomicInteger duplicates = new AtomicInteger();
+
+    @After
+    public void tearDown(){
+        for (GossipPeer peer : peers) {
+            peer.stop();
+        }
+    }
+
+    @Test
+    public void chainedPeersConverge() throws Exception {
+        for (int i = 0; i < PEERS; i++) {
+            addPeer(1000 + i);
+        }
+        for (int i = 0; i < PEERS - 1; i++) {
+            peers.get(i).start();
+        }
+        for (int i = 0; i < PEERS - 2; i++) {
+            link(peers.get(i), peers.get(i + 1));
+        }
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 300; i++) {
+            Map<String, String> values = new LinkedHashMap<>();
+            values.put("LATITUDE", String.valueOf(82.5 + i * 1e-5));
+            values.put("LONGITUDE", "15.0");
+            peers.get(i % (PEERS - 1)).publish(GossipEntry.KIND_FIX, String.valueOf(211000000 + i % STATIONS), i, values);
+        }
+        peers.get(0).publish(GossipEntry.KIND_WAYPOINT, "PS118_WP_1", 1, Collections.singletonMap("LABEL", "Waypoint 1"));
+
+        //The last peer joins after the entries were published and only knows the end of the chain
+        GossipPeer late = peers.get(PEERS - 1);
+        late.start();
+        link(peers.get(PEERS - 2), late);
+
+        boolean converged = false;
+        while (!converged && System.currentTimeMillis() - start < DIGESTS * GossipPeer.DIGEST_INTERVAL) {
+            Thread.sleep(50);
+            converged = converged();
+        }
+        assertTrue("Not converged within " + DIGESTS + " digests", converged);
+        assertEquals("Entries given to the listeners twice", 0, duplicates.get());
+
+        int expectedSize = peers.get(0).getState().size();
+        for (int i = 0; i < PEERS; i++) {
+            GossipPeer peer = peers.get(i);
+            assertEquals("Entries of peer " + i, expectedSize, peer.getState().size());
+            assertEquals("Invalid datagrams of peer " + i, 0, peer.getInvalidDatagrams());
+            //Every current entry of the other origins was given to the listener
+            for (int origin = 0; origin < PEERS - 1; origin++) {
+                if (origin == i) {
+                    continue;
+                }
+                GossipState state = peers.get(origin).getState();
+                for (GossipEntry entry : state.entries(state.getId(), 0, state.getVersion(state.getId()))) {
+                    assertTrue("Peer " + i + " did not receive " + entry, received.get(i).contains(entry.origin + ":" + entry.version));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void stoppedPeerKeepsItsEntries() throws Exception {
+        GossipPeer first = addPeer(1);
+        GossipPeer second = addPeer(2);
+        first.start();
+        second.start();
+        link(first, second);
+        first.publish(GossipEntry.KIND_BETA, "", 1000, Collections.singletonMap("BETA", "12.5"));
+
+        long start = System.currentTimeMillis();
+        while (second.getState().getVersion(1) < 1 && System.currentTimeMillis() - start < DIGESTS * GossipPeer.DIGEST_INTERVAL) {
+            Thread.sleep(50);
+        }
+        second.stop();
+        assertEquals(1, second.getState().getVersion(1));
+        assertEquals(1, second.getState().size());
+        assertEquals(-1, second.getLocalPort());
+    }
+
+    private GossipPeer addPeer(long id){
+        final Set<String> seen = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        GossipPeer peer = new GossipPeer(id, null, 0, new GossipPeer.Listener() {
+            @Override
+            public void onEntry(GossipEntry entry) {
+                if (!seen.add(entry.origin + ":" + entry.version)) {
+                    duplicates.incrementAndGet();
+                }
+            }
+        });
+        peers.add(peer);
+        received.add(seen);
+        return peer;
+    }
+
+    private static void link(GossipPeer a, GossipPeer b){
+        a.addPeer(new InetSocketAddress("127.0.0.1", b.getLocalPort()));
+        b.addPeer(new InetSocketAddress("127.0.0.1", a.getLocalPort()));
+    }
+
+    /**
+     * @return <code>true</code> if every peer knows every version of every publishing peer
+     */
+    private boolean converged(){
+        for (GossipPeer peer : peers) {
+            for (int origin = 0; origin < PEERS - 1; origin++) {
+                GossipState publisher = peers.get(origin).getState();
+                if (peer.getState().getVersion(publisher.getId()) != publisher.getVersion(publisher.getId())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
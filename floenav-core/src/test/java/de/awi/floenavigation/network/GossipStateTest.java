@@ -0,0 +1,128 @@
+package de.awi.floenavigation.network;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the version vector of the {@link GossipState}, in particular for entries received out of order.
+ */
+public class GossipStateTest {
+
+    private static final long LOCAL = 1;
+    private static final long REMOTE = 2;
+
+    private static GossipEntry entry(long origin, long version, String key){
+        Map<String, String> values = Collections.singletonMap("LATITUDE", String.valueOf(82.5 + version * 1e-5));
+        return new GossipEntry(origin, version, GossipEntry.KIND_FIX, key, version * 1000, values);
+    }
+
+    @Test
+    public void versionAdvancesOnlyOnceTheGapIsFilled(){
+        GossipState state = new GossipState(LOCAL);
+
+        //The delta of version 3 arrives first, the datagram of versions 1 and 2 was lost
+        assertTrue(state.apply(entry(REMOTE, 3, "211000003")));
+        assertFalse(state.advance(REMOTE, 2, 3));
+        assertEquals(0, state.getVersion(REMOTE));
+
+        assertTrue(state.apply(entry(REMOTE, 1, "211000001")));
+        assertTrue(state.advance(REMOTE, 0, 1));
+        assertEquals(1, state.getVersion(REMOTE));
+
+        assertTrue(state.apply(entry(REMOTE, 2, "211000002")));
+        assertTrue(state.advance(REMOTE, 1, 2));
+        assertEquals(2, state.getVersion(REMOTE));
+
+        //Version 3 is sent again after the next digest, its entry is already known
+        assertFalse(state.apply(entry(REMOTE, 3, "211000003")));
+        assertTrue(state.advance(REMOTE, 2, 3));
+        assertEquals(3, state.getVersion(REMOTE));
+        assertEquals(3, state.size());
+    }
+
+    @Test
+    public void deltaAboveTheVersionVectorDoesNotAdvanceIt(){
+        GossipState state = new GossipState(LOCAL);
+        assertTrue(state.apply(entry(REMOTE, 5, "211000005")));
+        assertFalse(state.advance(REMOTE, 4, 5));
+        assertEquals(0, state.getVersion(REMOTE));
+        assertEquals(Collections.<Long, Long>emptyMap(), state.digest());
+    }
+
+    @Test
+    public void entryIsAppliedOnlyOnce(){
+        GossipState state = new GossipState(LOCAL);
+        assertTrue(state.apply(entry(REMOTE, 1, "211000001")));
+        assertFalse(state.apply(entry(REMOTE, 1, "211000001")));
+        assertTrue(state.advance(REMOTE, 0, 1));
+        assertFalse(state.advance(REMOTE, 0, 1));
+        assertFalse(state.apply(entry(REMOTE, 1, "211000001")));
+    }
+
+    @Test
+    public void olderEntryOfTheSameKeyIsIgnored(){
+        GossipState state = new GossipState(LOCAL);
+        assertTrue(state.apply(entry(REMOTE, 2, "211000001")));
+        assertFalse(state.apply(entry(REMOTE, 1, "211000001")));
+
+        List<GossipEntry> entries = state.entries(REMOTE, 0, 2);
+        assertEquals(1, entries.size());
+        assertEquals(2, entries.get(0).version);
+    }
+
+    @Test
+    public void newerEntryReplacesTheOlderOneOfTheSameKey(){
+        GossipState state = new GossipState(LOCAL);
+        assertTrue(state.apply(entry(REMOTE, 1, "211000001")));
+        assertTrue(state.apply(entry(REMOTE, 2, "211000002")));
+        assertTrue(state.apply(entry(REMOTE, 3, "211000001")));
+        assertTrue(state.advance(REMOTE, 0, 3));
+
+        List<GossipEntry> entries = state.entries(REMOTE, 0, 3);
+        assertEquals(2, entries.size());
+        assertEquals(2, entries.get(0).version);
+        assertEquals(3, entries.get(1).version);
+        assertEquals(2, state.size());
+    }
+
+    @Test
+    public void ownEntriesAreNotAppliedFromOtherPeers(){
+        GossipState state = new GossipState(LOCAL);
+        state.putLocal(GossipEntry.KIND_BETA, "", 1000, Collections.singletonMap("BETA", "12.5"));
+        assertFalse(state.apply(entry(LOCAL, 2, "211000001")));
+        assertFalse(state.advance(LOCAL, 1, 2));
+        assertEquals(1, state.getVersion(LOCAL));
+    }
+
+    @Test
+    public void localEntriesGetIncreasingVersions(){
+        GossipState state = new GossipState(LOCAL);
+        GossipEntry first = state.putLocal(GossipEntry.KIND_BETA, "", 1000, Collections.singletonMap("BETA", "12.5"));
+        GossipEntry second = state.putLocal(GossipEntry.KIND_BETA, "", 2000, Collections.singletonMap("BETA", "12.6"));
+        assertEquals(1, first.version);
+        assertEquals(2, second.version);
+        assertEquals(Collections.singletonMap(LOCAL, 2L), state.digest());
+        assertEquals(Collections.singletonList(second), state.entries(LOCAL, 0, 2));
+    }
+
+    @Test
+    public void entriesAreSelectedAboveFromUpToTo(){
+        GossipState state = new GossipState(LOCAL);
+        for (int version = 1; version <= 4; version++) {
+            state.apply(entry(REMOTE, version, "21100000" + version));
+        }
+        List<GossipEntry> entries = state.entries(REMOTE, 1, 3);
+        assertEquals(2, entries.size());
+        assertEquals(2, entries.get(0).version);
+        assertEquals(3, entries.get(1).version);
+        assertTrue(state.entries(REMOTE, 3, 3).isEmpty());
+        assertTrue(state.entries(LOCAL, 0, 3).isEmpty());
+    }
+}
@@ -0,0 +1,150 @@
+package de.awi.floenavigation.services;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the circular mean of the {@link BetaEstimator}, in particular across the 0/360 degree wrap, and of
+ * {@link BetaEstimator#angularDifference(double, double)}.
+ */
+public class BetaEstimatorTest {
+
+    private static final double DELTA = 1e-9;
+
+    /**
+     * Asserts that two angles are equal, taking the 0/360 degree wrap into account
+     */
+    private static void assertAngle(double expected, double actual, double delta){
+        assertTrue("Expected " + expected + " but was " + actual, Math.abs(BetaEstimator.angularDifference(expected, actual)) < delta);
+    }
+
+    private static void assertAngle(double expected, double actual){
+        assertAngle(expected, actual, DELTA);
+    }
+
+    @Test
+    public void meanAcrossTheWrap(){
+        BetaEstimator estimator = new BetaEstimator();
+        estimator.update(1, 359);
+        estimator.update(2, 1);
+        assertAngle(0, estimator.getMean());
+        estimator.update(3, 3);
+        assertAngle(1, estimator.getMean(), 1e-3);
+        estimator.update(4, 355);
+        assertAngle(359.5, estimator.getMean(), 1e-2);
+    }
+
+    @Test
+    public void meanIsInTheRangeOfADegree(){
+        BetaEstimator estimator = new BetaEstimator();
+        estimator.update(1, -10);
+        estimator.update(2, -30);
+        double mean = estimator.getMean();
+        assertEquals(340, mean, DELTA);
+        //Angles of more than a turn
+        estimator.clear();
+        estimator.update(1, 720 + 45);
+        estimator.update(2, -360 + 45);
+        assertEquals(45, estimator.getMean(), DELTA);
+        for (double beta = -720; beta <= 720; beta += 0.5) {
+            estimator.update(1, beta);
+            estimator.update(2, beta);
+            mean = estimator.getMean();
+            assertTrue("Mean " + mean + " of " + beta, mean >= 0 && mean < 360);
+            assertAngle(beta, mean);
+        }
+    }
+
+    @Test
+    public void contributionsAreReplacedAndRemoved(){
+        BetaEstimator estimator = new BetaEstimator();
+        estimator.update(1, 10);
+        estimator.update(2, 20);
+        estimator.update(1, 30);
+        assertEquals(2, estimator.size());
+        assertEquals(25, estimator.getMean(), DELTA);
+        assertTrue(estimator.remove(2));
+        assertFalse(estimator.remove(2));
+        assertEquals(30, estimator.getMean(), DELTA);
+        assertTrue(estimator.remove(1));
+        assertEquals(0, estimator.size());
+        assertTrue(Double.isNaN(estimator.getMean()));
+    }
+
+    @Test
+    public void oppositeContributionsHaveNoMean(){
+        BetaEstimator estimator = new BetaEstimator();
+        assertTrue(Double.isNaN(estimator.getMean()));
+        estimator.update(1, 0);
+        estimator.update(2, 180);
+        assertTrue(Double.isNaN(estimator.getMean()));
+        estimator.clear();
+        estimator.update(1, 30);
+        estimator.update(2, 150);
+        estimator.update(3, 270);
+        assertTrue(Double.isNaN(estimator.getMean()));
+        estimator.update(4, 90);
+        assertEquals(90, estimator.getMean(), DELTA);
+    }
+
+    @Test
+    public void betaWhichIsNotFiniteIsIgnored(){
+        BetaEstimator estimator = new BetaEstimator();
+        estimator.update(1, 10);
+        estimator.update(1, Double.NaN);
+        estimator.update(2, Double.POSITIVE_INFINITY);
+        assertEquals(1, estimator.size());
+        assertEquals(10, estimator.getMean(), DELTA);
+    }
+
+    @Test
+    public void incrementalMeanMatchesTheMeanOfTheContributions(){
+        BetaEstimator estimator = new BetaEstimator();
+        Random random = new Random(42);
+        double[] betas = new double[100];
+        boolean[] present = new boolean[betas.length];
+        //Around the wrap, and more updates than the interval after which the sums are recalculated
+        for (int update = 0; update < 5000; update++) {
+            int station = random.nextInt(betas.length);
+            if (random.nextInt(4) == 0) {
+                assertEquals(present[station], estimator.remove(station));
+                present[station] = false;
+            } else {
+                betas[station] = 350 + random.nextDouble() * 20;
+                present[station] = true;
+                estimator.update(station, betas[station]);
+            }
+            double sin = 0;
+            double cos = 0;
+            int size = 0;
+            for (int i = 0; i < betas.length; i++) {
+                if (present[i]) {
+                    sin += Math.sin(Math.toRadians(betas[i]));
+                    cos += Math.cos(Math.toRadians(betas[i]));
+                    size++;
+                }
+            }
+            assertEquals(size, estimator.size());
+            if (size > 0) {
+                assertAngle(Math.toDegrees(Math.atan2(sin, cos)), estimator.getMean());
+            }
+        }
+    }
+
+    @Test
+    public void angularDifferenceIsTheShortestTurn(){
+        assertEquals(2, BetaEstimator.angularDifference(1, 359), DELTA);
+        assertEquals(-2, BetaEstimator.angularDifference(359, 1), DELTA);
+        assertEquals(-180, BetaEstimator.angularDifference(180, 0), DELTA);
+        assertEquals(-180, BetaEstimator.angularDifference(0, 180), DELTA);
+        assertEquals(0, BetaEstimator.angularDifference(-720, 0), DELTA);
+        assertEquals(-180, BetaEstimator.angularDifference(540, 0), DELTA);
+        assertEquals(179, BetaEstimator.angularDifference(-181, 0), DELTA);
+        assertEquals(-10, BetaEstimator.angularDifference(350, 360), DELTA);
+    }
+}
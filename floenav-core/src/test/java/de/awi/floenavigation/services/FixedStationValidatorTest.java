@@ -0,0 +1,206 @@
+package de.awi.floenavigation.services;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link FixedStationValidator}: the validation of the received positions against the predictions, the break off of a
+ * station and the packet timeouts of the timer wheel.
+ */
+public class FixedStationValidatorTest {
+
+    private static final long MINUTE = 60 * 1000;
+    private static final long VALIDATION_INTERVAL = 3 * MINUTE;
+    private static final int MIN_INCORRECT_MESSAGES = 3;
+    private static final double ERROR_THRESHOLD = 50;
+    private static final long PREDICTION_ACCURACY_THRESHOLD = 9 * MINUTE;
+    private static final long PACKET_THRESHOLD = 2 * MINUTE;
+    private static final long START = 1530000000000L;
+
+    private static final int MMSI = 211000001;
+    private static final double LATITUDE = 82.5;
+    private static final double LONGITUDE = 15.0;
+    /**
+     * About 110 meters north of the prediction
+     */
+    private static final double INCORRECT_LATITUDE = LATITUDE + 0.001;
+
+    private FixedStationValidator validator;
+
+    @Before
+    public void setUp(){
+        validator = new FixedStationValidator(VALIDATION_INTERVAL, MIN_INCORRECT_MESSAGES);
+        validator.setThresholds(ERROR_THRESHOLD, PREDICTION_ACCURACY_THRESHOLD, PACKET_THRESHOLD);
+    }
+
+    @Test
+    public void stationWithoutPredictionIsNotValidated(){
+        assertEquals(FixedStationValidator.RESULT_UNCHANGED, validator.onReport(MMSI, 0, 0, START));
+        assertTrue(validator.contains(MMSI));
+        assertEquals(0, validator.getIncorrectMessageCount(MMSI));
+    }
+
+    @Test
+    public void everyIncorrectPositionIsReported(){
+        validator.setPrediction(MMSI, LATITUDE, LONGITUDE);
+        assertEquals(FixedStationValidator.RESULT_UNCHANGED, validator.onReport(MMSI, LATITUDE + 0.0001, LONGITUDE, START));
+
+        assertEquals(FixedStationValidator.RESULT_CHANGED, validator.onReport(MMSI, INCORRECT_LATITUDE, LONGITUDE, START));
+        assertEquals(1, validator.getPredictionAccuracy(MMSI));
+        assertEquals(1, validator.getIncorrectMessageCount(MMSI));
+        //Same validation interval, but the count has changed and needs to be written
+        assertEquals(FixedStationValidator.RESULT_CHANGED, validator.onReport(MMSI, INCORRECT_LATITUDE, LONGITUDE, START + MINUTE));
+        assertEquals(1, validator.getPredictionAccuracy(MMSI));
+        assertEquals(2, validator.getIncorrectMessageCount(MMSI));
+        assertEquals(FixedStationValidator.RESULT_CHANGED, validator.onReport(MMSI, INCORRECT_LATITUDE, LONGITUDE,
+                START + VALIDATION_INTERVAL));
+        assertEquals(2, validator.getPredictionAccuracy(MMSI));
+
+        //A correct position resets both values once
+        assertEquals(FixedStationValidator.RESULT_CHANGED, validator.onReport(MMSI, LATITUDE, LONGITUDE, START + 4 * MINUTE));
+        assertEquals(0, validator.getPredictionAccuracy(MMSI));
+        assertEquals(0, validator.getIncorrectMessageCount(MMSI));
+        assertEquals(FixedStationValidator.RESULT_UNCHANGED, validator.onReport(MMSI, LATITUDE, LONGITUDE, START + 5 * MINUTE));
+    }
+
+    @Test
+    public void stationBreaksOffAfterTheThreshold(){
+        validator.setPrediction(MMSI, LATITUDE, LONGITUDE);
+        assertEquals(FixedStationValidator.RESULT_CHANGED, validator.onReport(MMSI, INCORRECT_LATITUDE, LONGITUDE, START));
+        //Incorrect for longer than the threshold, but not with enough messages
+        assertEquals(FixedStationValidator.RESULT_CHANGED, validator.onReport(MMSI, INCORRECT_LATITUDE, LONGITUDE,
+                START + PREDICTION_ACCURACY_THRESHOLD + 1));
+        assertEquals(4, validator.getPredictionAccuracy(MMSI));
+        assertEquals(FixedStationValidator.RESULT_BROKEN, validator.onReport(MMSI, INCORRECT_LATITUDE, LONGITUDE,
+                START + PREDICTION_ACCURACY_THRESHOLD + 2));
+    }
+
+    @Test
+    public void storedStateIsRestored(){
+        //Incorrect for two intervals with two messages before the restart
+        long now = START + 10 * MINUTE;
+        validator.addStation(MMSI, LATITUDE, LONGITUDE, now - MINUTE, 2, 2, now);
+        assertEquals(2, validator.getPredictionAccuracy(MMSI));
+        assertEquals(FixedStationValidator.RESULT_CHANGED, validator.onReport(MMSI, INCORRECT_LATITUDE, LONGITUDE, now));
+        assertEquals(3, validator.getIncorrectMessageCount(MMSI));
+        assertEquals(FixedStationValidator.RESULT_BROKEN, validator.onReport(MMSI, INCORRECT_LATITUDE, LONGITUDE,
+                now + PREDICTION_ACCURACY_THRESHOLD - 2 * VALIDATION_INTERVAL + 1));
+
+        //A station which is already known keeps its state
+        validator.addStation(MMSI, 0, 0, now, 0, 0, now);
+        assertEquals(4, validator.getIncorrectMessageCount(MMSI));
+    }
+
+    @Test
+    public void positionsAcrossTheAntimeridianAndAtThePole(){
+        validator.setPrediction(MMSI, 70.0, 179.9999);
+        assertEquals(FixedStationValidator.RESULT_UNCHANGED, validator.onReport(MMSI, 70.0, -179.9999, START));
+        validator.setPrediction(MMSI + 1, 89.9999, 0);
+        assertEquals(FixedStationValidator.RESULT_UNCHANGED, validator.onReport(MMSI + 1, 89.9999, 180, START));
+        validator.setPrediction(MMSI + 2, 89.99, 0);
+        assertEquals(FixedStationValidator.RESULT_CHANGED, validator.onReport(MMSI + 2, 89.99, 180, START));
+    }
+
+    @Test
+    public void positionWhichIsNotFiniteIsNotValidated(){
+        validator.setPrediction(MMSI, LATITUDE, LONGITUDE);
+        assertEquals(FixedStationValidator.RESULT_UNCHANGED, validator.onReport(MMSI, Double.NaN, LONGITUDE, START));
+        assertEquals(FixedStationValidator.RESULT_UNCHANGED, validator.onReport(MMSI, LATITUDE, Double.POSITIVE_INFINITY, START));
+        assertEquals(0, validator.getIncorrectMessageCount(MMSI));
+        //The packet has still been received
+        assertEquals(0, validator.advance(START + PACKET_THRESHOLD - 1).length);
+        assertTrue(validator.contains(MMSI));
+    }
+
+    @Test
+    public void stationTimesOutWithoutPackets(){
+        validator.onReport(MMSI, LATITUDE, LONGITUDE, START);
+        validator.onReport(MMSI + 1, LATITUDE, LONGITUDE, START);
+        assertEquals(0, validator.advance(START).length);
+        assertEquals(0, validator.advance(START + MINUTE).length);
+        validator.onReport(MMSI + 1, LATITUDE, LONGITUDE, START + MINUTE);
+
+        assertArrayEquals(new int[]{MMSI}, validator.advance(START + PACKET_THRESHOLD + FixedStationValidator.WHEEL_TICK));
+        assertFalse(validator.contains(MMSI));
+        assertEquals(1, validator.size());
+        //Time going backwards does not expire anything
+        assertEquals(0, validator.advance(START).length);
+        assertArrayEquals(new int[]{MMSI + 1}, validator.advance(START + MINUTE + PACKET_THRESHOLD
+                + FixedStationValidator.WHEEL_TICK));
+        assertEquals(0, validator.size());
+    }
+
+    @Test
+    public void overdueStationsAreFoundByTheFirstAdvance(){
+        long now = START + 10 * MINUTE;
+        validator.addStation(MMSI, LATITUDE, LONGITUDE, now - 5 * MINUTE, 0, 0, now);
+        validator.addStation(MMSI + 1, LATITUDE, LONGITUDE, now - MINUTE, 0, 0, now);
+        assertArrayEquals(new int[]{MMSI}, validator.advance(now));
+        assertTrue(validator.contains(MMSI + 1));
+    }
+
+    @Test
+    public void timeoutsAreFoundAfterAGapLongerThanTheWheel(){
+        for (int i = 0; i < 40; i++) {
+            validator.onReport(MMSI + i, LATITUDE, LONGITUDE, START + i * MINUTE);
+        }
+        assertEquals(0, validator.advance(START).length);
+        int[] expired = validator.advance(START + 24 * 60 * MINUTE);
+        assertEquals(40, expired.length);
+        assertEquals(0, validator.size());
+    }
+
+    @Test
+    public void timeoutLongerThanTheWheelIsNotExpiredEarly(){
+        validator.setThresholds(ERROR_THRESHOLD, PREDICTION_ACCURACY_THRESHOLD, 20 * MINUTE);
+        validator.onReport(MMSI, LATITUDE, LONGITUDE, START);
+        for (long now = START; now < START + 20 * MINUTE; now += FixedStationValidator.WHEEL_TICK) {
+            assertEquals("Expired at " + (now - START), 0, validator.advance(now).length);
+        }
+        assertArrayEquals(new int[]{MMSI}, validator.advance(START + 20 * MINUTE + FixedStationValidator.WHEEL_TICK));
+    }
+
+    @Test
+    public void removedStationsKeepTheOthersScheduled(){
+        for (int i = 0; i < 40; i++) {
+            validator.setPrediction(MMSI + i, LATITUDE, LONGITUDE);
+            validator.onReport(MMSI + i, INCORRECT_LATITUDE, LONGITUDE, START + (i % 2) * 5 * MINUTE);
+        }
+        for (int i = 0; i < 40; i += 3) {
+            validator.remove(MMSI + i);
+        }
+        validator.remove(MMSI - 1);
+        assertEquals(26, validator.size());
+        assertEquals(1, validator.getIncorrectMessageCount(MMSI + 38));
+
+        int[] expired = validator.advance(START + PACKET_THRESHOLD + FixedStationValidator.WHEEL_TICK);
+        Arrays.sort(expired);
+        int[] expected = new int[13];
+        int count = 0;
+        for (int i = 0; i < 40; i += 2) {
+            if (i % 3 != 0) {
+                expected[count++] = MMSI + i;
+            }
+        }
+        assertArrayEquals(expected, expired);
+        assertEquals(13, validator.advance(START + 5 * MINUTE + PACKET_THRESHOLD + FixedStationValidator.WHEEL_TICK).length);
+        assertEquals(0, validator.size());
+    }
+
+    @Test
+    public void clearRemovesEveryStation(){
+        validator.onReport(MMSI, LATITUDE, LONGITUDE, START);
+        validator.clear();
+        assertEquals(0, validator.size());
+        assertEquals(0, validator.advance(START + 60 * MINUTE).length);
+        validator.onReport(MMSI, LATITUDE, LONGITUDE, START + 60 * MINUTE);
+        assertArrayEquals(new int[]{MMSI}, validator.advance(START + 63 * MINUTE));
+    }
+}
@@ -0,0 +1,153 @@
+package de.awi.floenavigation.synchronization;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the splitting of the rows into {@link SyncBatch}es and of the round trips of the requests and acknowledgements through
+ * their JSON, in particular of values which need to be escaped.
+ */
+public class SyncBatchTest {
+
+    private static final String TABLE = "WAYPOINTS";
+
+    private static List<Map<String, String>> rows(int count){
+        List<Map<String, String>> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Map<String, String> row = new LinkedHashMap<>();
+            row.put("LABEL_ID", "WP_" + i);
+            row.put("LATITUDE", String.valueOf(82.5 + i * 1e-5));
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @Test
+    public void rowsAreSplitInOrder(){
+        List<Map<String, String>> rows = rows(7);
+        List<SyncBatch> batches = SyncBatch.split(TABLE, rows, 3);
+        assertEquals(3, batches.size());
+        assertEquals(Arrays.asList(0, 3, 6), Arrays.asList(batches.get(0).firstRow, batches.get(1).firstRow, batches.get(2).firstRow));
+        assertEquals(Arrays.asList(3, 3, 1), Arrays.asList(batches.get(0).rows.size(), batches.get(1).rows.size(),
+                batches.get(2).rows.size()));
+        assertEquals(rows.get(6), batches.get(2).rows.get(0));
+        assertEquals(TABLE, batches.get(1).table);
+    }
+
+    @Test
+    public void splitEdges(){
+        assertTrue(SyncBatch.split(TABLE, Collections.<Map<String, String>>emptyList(), 10).isEmpty());
+        assertEquals(1, SyncBatch.split(TABLE, rows(10), 10).size());
+        assertEquals(1, SyncBatch.split(TABLE, rows(10), Integer.MAX_VALUE).size());
+        assertEquals(10, SyncBatch.split(TABLE, rows(10), 1).size());
+        try {
+            SyncBatch.split(TABLE, rows(10), 0);
+            fail("Empty batches allowed");
+        } catch (IllegalArgumentException e) {
+            //Expected
+        }
+    }
+
+    @Test
+    public void requestRoundTripsEscapedValues(){
+        Map<String, String> row = new LinkedHashMap<>();
+        row.put("LABEL_ID", "WP \"North\" \\ ridge");
+        row.put("LABEL", "Line 1\nLine 2\r\tTab \u0001 \u00e4\u00f6\u00fc \u2713 \ud83e\uddca");
+        row.put("LATITUDE", "-82.123456789012345");
+        row.put("EMPTY", "");
+        List<Map<String, String>> rows = Collections.singletonList(row);
+
+        String json = new SyncBatch(TABLE, 1200, rows).toJson();
+        assertFalse("Control character not escaped", json.contains("\n") || json.contains("\u0001"));
+        SyncBatch batch = SyncBatch.fromJson(json);
+        assertEquals(TABLE, batch.table);
+        assertEquals(1200, batch.firstRow);
+        assertEquals(rows, batch.rows);
+        assertEquals(new ArrayList<>(row.keySet()), new ArrayList<>(batch.rows.get(0).keySet()));
+    }
+
+    @Test
+    public void nullValueIsSentEmpty(){
+        Map<String, String> row = new LinkedHashMap<>();
+        row.put("LABEL_ID", null);
+        SyncBatch batch = SyncBatch.fromJson(new SyncBatch(TABLE, 0, Collections.singletonList(row)).toJson());
+        assertEquals("", batch.rows.get(0).get("LABEL_ID"));
+    }
+
+    @Test
+    public void requestOfOtherWritersIsRead(){
+        SyncBatch batch = SyncBatch.fromJson(" { \"rows\" : [ {\"MMSI\": 211202460, \"ALPHA\": -1.5e2, \"NAME\": null,"
+                + " \"SET\": true, \"ESCAPED\": \"\\u00e4\\/\\b\"} ] , \"table\":\"AIS\" } ");
+        assertEquals("AIS", batch.table);
+        assertEquals(0, batch.firstRow);
+        Map<String, String> row = batch.rows.get(0);
+        //Numbers keep their exact digits
+        assertEquals("211202460", row.get("MMSI"));
+        assertEquals("-1.5e2", row.get("ALPHA"));
+        assertEquals("", row.get("NAME"));
+        assertEquals("true", row.get("SET"));
+        assertEquals("\u00e4/\b", row.get("ESCAPED"));
+    }
+
+    @Test
+    public void invalidRequestIsRejected(){
+        for (String json : Arrays.asList(null, "", "[]", "{}", "{\"table\":\"T\"}", "{\"table\":null,\"rows\":[]}",
+                "{\"table\":\"T\",\"rows\":{}}", "{\"table\":\"T\",\"rows\":[1]}", "{\"table\":\"T\",\"firstRow\":\"x\",\"rows\":[]}",
+                "{\"table\":\"T\",\"rows\":[]} trailing", "{\"table\":\"T\",\"rows\":[{\"A\":\"unterminated}]}",
+                "{\"table\":\"T\",\"rows\":[{\"A\":\"\\u12\"}]}", "{\"table\":\"T\" \"rows\":[]}", "{\"table\":\"T\",\"rows\":[")) {
+            try {
+                SyncBatch.fromJson(json);
+                fail("Not rejected: " + json);
+            } catch (IllegalArgumentException e) {
+                //Expected
+            }
+        }
+    }
+
+    @Test
+    public void acksRoundTrip(){
+        List<SyncBatch.Ack> acks = Arrays.asList(
+                new SyncBatch.Ack(200, true, "Station inserted"),
+                new SyncBatch.Ack(201, false, "Duplicate entry \"211202460\"\nfor key 'PRIMARY'"),
+                new SyncBatch.Ack(202, true, null));
+        List<SyncBatch.Ack> read = SyncBatch.acksFromJson(SyncBatch.acksToJson(acks));
+        assertEquals(3, read.size());
+        for (int i = 0; i < acks.size(); i++) {
+            assertEquals(acks.get(i).row, read.get(i).row);
+            assertEquals(acks.get(i).success, read.get(i).success);
+        }
+        assertEquals("Station inserted", read.get(0).message);
+        assertEquals(acks.get(1).message, read.get(1).message);
+        assertEquals("", read.get(2).message);
+        assertTrue(SyncBatch.acksFromJson(SyncBatch.acksToJson(Collections.<SyncBatch.Ack>emptyList())).isEmpty());
+    }
+
+    @Test
+    public void errorOfTheServerIsReported(){
+        try {
+            SyncBatch.acksFromJson("{\"error\":\"Unknown table\"}");
+            fail("Error not reported");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Unknown table", e.getMessage());
+        }
+        for (String json : Arrays.asList("{}", "{\"acks\":[{\"success\":\"OK\"}]}", "{\"acks\":[{\"row\":\"x\"}]}", "<html>")) {
+            try {
+                SyncBatch.acksFromJson(json);
+                fail("Not rejected: " + json);
+            } catch (IllegalArgumentException e) {
+                //Expected
+            }
+        }
+    }
+}
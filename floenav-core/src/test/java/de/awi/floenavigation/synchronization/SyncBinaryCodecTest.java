@@ -0,0 +1,182 @@
+package de.awi.floenavigation.synchronization;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Round trips of the {@link SyncBinaryCodec}: the rows of a batch come back with the same text, the values of a table with the same
+ * type, and data which is not a valid body is rejected with an {@link IllegalArgumentException}.
+ */
+public class SyncBinaryCodecTest {
+
+    private static final String TABLE = "AIS_FIXED_STATION_POSITION";
+
+    private static Map<String, String> row(String... columnsAndValues){
+        Map<String, String> row = new LinkedHashMap<>();
+        for (int i = 0; i < columnsAndValues.length; i += 2) {
+            row.put(columnsAndValues[i], columnsAndValues[i + 1]);
+        }
+        return row;
+    }
+
+    @Test
+    public void batchKeepsTheTextOfEveryValue(){
+        List<Map<String, String>> rows = new ArrayList<>();
+        rows.add(row("MMSI", "211202460", "LATITUDE", "82.5", "ALPHA", "-12.25", "UPDATE_TIME", "1530000000000",
+                "AIS_STATION_NAME", "Hut 1"));
+        //Leading zeros, a plus sign and an exponent are not canonical numbers, so the column keeps the text
+        rows.add(row("MMSI", "007", "LATITUDE", "+82.50", "ALPHA", "1e3", "UPDATE_TIME", "-1", "AIS_STATION_NAME", "Hut 1"));
+        rows.add(row("MMSI", "-5", "LATITUDE", "-0.0", "ALPHA", "NaN", "UPDATE_TIME", "0", "AIS_STATION_NAME", "H\u00fctte \"Nord\" \u2713"));
+
+        SyncBatch batch = SyncBinaryCodec.decodeBatch(SyncBinaryCodec.encodeBatch(new SyncBatch(TABLE, 200, rows)));
+        assertEquals(TABLE, batch.table);
+        assertEquals(200, batch.firstRow);
+        assertEquals(rows, batch.rows);
+    }
+
+    @Test
+    public void missingAndEmptyValuesBecomeEmpty(){
+        List<Map<String, String>> rows = new ArrayList<>();
+        rows.add(row("MMSI", "211202460", "STATION_TYPE", ""));
+        rows.add(row("MMSI", "211202461", "COMMENT", "Near the ridge"));
+        rows.add(row("MMSI", null, "STATION_TYPE", "Tent"));
+
+        SyncBatch batch = SyncBinaryCodec.decodeBatch(SyncBinaryCodec.encodeBatch(new SyncBatch(TABLE, 0, rows)));
+        assertEquals(Arrays.asList(
+                row("MMSI", "211202460", "STATION_TYPE", "", "COMMENT", ""),
+                row("MMSI", "211202461", "STATION_TYPE", "", "COMMENT", "Near the ridge"),
+                row("MMSI", "", "STATION_TYPE", "Tent", "COMMENT", "")), batch.rows);
+    }
+
+    @Test
+    public void emptyBatchRoundTrips(){
+        SyncBatch batch = SyncBinaryCodec.decodeBatch(SyncBinaryCodec.encodeBatch(new SyncBatch(TABLE, 0,
+                Collections.<Map<String, String>>emptyList())));
+        assertEquals(TABLE, batch.table);
+        assertTrue(batch.rows.isEmpty());
+    }
+
+    @Test
+    public void repeatedTextIsWrittenOnce(){
+        List<Map<String, String>> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            rows.add(row("DEVICE_NAME", "CTD Rosette of the Polarstern", "LABEL_ID", "PS118_" + i));
+        }
+        byte[] data = SyncBinaryCodec.encodeBatch(new SyncBatch(TABLE, 0, rows));
+        assertTrue("Repeated text not referenced, " + data.length + " bytes", data.length < 100 * 16);
+        assertEquals(rows, SyncBinaryCodec.decodeBatch(data).rows);
+    }
+
+    @Test
+    public void tableKeepsTheTypesVersionAndDeletedKeys(){
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{"211202460", Long.MAX_VALUE, 82.5, "Hut 1"});
+        rows.add(new Object[]{"211202461", Long.MIN_VALUE, Double.NaN, null});
+        rows.add(new Object[]{"211202462", -1L, -0.0, ""});
+        rows.add(new Object[]{null, null, null, null});
+        SyncTable table = new SyncTable(TABLE, new String[]{"MMSI", "UPDATE_TIME", "LATITUDE", "AIS_STATION_NAME"},
+                new byte[]{SyncTable.TYPE_STRING, SyncTable.TYPE_LONG, SyncTable.TYPE_DOUBLE, SyncTable.TYPE_STRING}, rows, true, 42,
+                Arrays.asList("211202463", "211202464"));
+
+        SyncTable decoded = SyncBinaryCodec.decodeTable(SyncBinaryCodec.encodeTable(table));
+        assertEquals(TABLE, decoded.table);
+        assertArrayEquals(table.columns, decoded.columns);
+        assertArrayEquals(table.types, decoded.types);
+        assertTrue(decoded.delta);
+        assertEquals(42, decoded.serverVersion);
+        assertEquals(table.deletedKeys, decoded.deletedKeys);
+        assertEquals(rows.size(), decoded.rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertArrayEquals(rows.get(i), decoded.rows.get(i));
+        }
+        //Compared by their bits, so the sign of zero is kept
+        assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits((Double) decoded.rows.get(2)[2]));
+        assertNull(decoded.rows.get(1)[3]);
+        assertEquals("", decoded.rows.get(2)[3]);
+    }
+
+    @Test
+    public void fullTableWithoutVersionRoundTrips(){
+        SyncTable table = new SyncTable(TABLE, new String[0], new byte[0], new ArrayList<Object[]>(), false, -1,
+                Collections.<String>emptyList());
+        SyncTable decoded = SyncBinaryCodec.decodeTable(SyncBinaryCodec.encodeTable(table));
+        assertFalse(decoded.delta);
+        assertEquals(-1, decoded.serverVersion);
+        assertEquals(0, decoded.columns.length);
+        assertTrue(decoded.rows.isEmpty());
+        assertTrue(decoded.deletedKeys.isEmpty());
+    }
+
+    @Test
+    public void contentTypeIsRecognised(){
+        assertTrue(SyncBinaryCodec.isBinary(SyncBinaryCodec.MEDIA_TYPE));
+        assertTrue(SyncBinaryCodec.isBinary(" Application/X-FloeNav-Binary; charset=binary"));
+        assertFalse(SyncBinaryCodec.isBinary("application/json"));
+        assertFalse(SyncBinaryCodec.isBinary(null));
+    }
+
+    @Test
+    public void invalidDataIsRejected(){
+        List<Map<String, String>> rows = Collections.singletonList(row("MMSI", "211202460", "AIS_STATION_NAME", "Hut 1"));
+        byte[] batch = SyncBinaryCodec.encodeBatch(new SyncBatch(TABLE, 0, rows));
+        byte[] table = SyncBinaryCodec.encodeTable(SyncTable.fromText(TABLE, rows, false));
+
+        assertBatchRejected(new byte[0]);
+        assertBatchRejected("{\"table\":\"AIS\"}".getBytes());
+        //A table is not a batch and the reverse, and a batch of an unknown format version is rejected
+        assertBatchRejected(table);
+        assertTableRejected(batch);
+        byte[] version = batch.clone();
+        version[3]++;
+        assertBatchRejected(version);
+        //Every truncation ends the data unexpectedly, and data after the rows is not ignored
+        for (int length = 0; length < batch.length; length++) {
+            assertBatchRejected(Arrays.copyOf(batch, length));
+        }
+        for (int length = 0; length < table.length; length++) {
+            assertTableRejected(Arrays.copyOf(table, length));
+        }
+        assertBatchRejected(Arrays.copyOf(batch, batch.length + 1));
+    }
+
+    @Test
+    public void invalidCountIsRejected(){
+        //Magic, a table name of 1 byte and a column count far beyond the end of the data
+        assertBatchRejected(new byte[]{'F', 'N', 'B', 1, 1, 'T', 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x7F});
+        //A text reference to a text which has not been read
+        assertBatchRejected(new byte[]{'F', 'N', 'B', 1, 1, 'T', 0, 1, 1, 'C', SyncTable.TYPE_STRING, 1, 1, 5});
+        //A column of an unknown type
+        assertBatchRejected(new byte[]{'F', 'N', 'B', 1, 1, 'T', 0, 1, 1, 'C', 7, 0});
+    }
+
+    private static void assertBatchRejected(byte[] data){
+        try {
+            SyncBinaryCodec.decodeBatch(data);
+            fail("Batch of " + data.length + " bytes not rejected");
+        } catch (IllegalArgumentException e) {
+            //Expected
+        }
+    }
+
+    private static void assertTableRejected(byte[] data){
+        try {
+            SyncBinaryCodec.decodeTable(data);
+            fail("Table of " + data.length + " bytes not rejected");
+        } catch (IllegalArgumentException e) {
+            //Expected
+        }
+    }
+}